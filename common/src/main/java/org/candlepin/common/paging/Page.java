@@ -25,6 +25,7 @@ public class Page<T> {
     private T pageData;
     private Integer maxRecords;
     private PageRequest pageRequest;
+    private String nextCursor;
 
     public T getPageData() {
         return pageData;
@@ -50,4 +51,18 @@ public class Page<T> {
         this.pageRequest = pageRequest;
     }
 
+    /**
+     * Fetches the encoded cursor of the page following this one, when paging with a cursor.
+     *
+     * @return
+     *  the cursor of the next page, or null if this is the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
 }
@@ -0,0 +1,281 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.common.paging;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Objects;
+
+
+
+/**
+ * Represents the position of the last result of a page fetched with cursor (keyset) paging. The
+ * next page is made up of the results which sort after the sort key and ID of that last result,
+ * which the database can seek to directly, rather than skip an offset of results.
+ * <p></p>
+ * Cursors are passed to and from clients as opaque tokens. Only sort keys of the basic types used
+ * by Candlepin's entities (strings, dates, integers, longs and booleans) can be encoded.
+ */
+public class PageCursor {
+
+    private static final String VERSION = "1";
+    private static final String SEPARATOR = ".";
+
+    private final String sortBy;
+    private final PageRequest.Order order;
+    private final Object value;
+    private final Serializable id;
+
+    /**
+     * Creates a new cursor positioned after the result with the given sort key value and ID.
+     *
+     * @param sortBy
+     *  the name of the field the results are sorted by
+     *
+     * @param order
+     *  the order in which the results are sorted
+     *
+     * @param value
+     *  the value of the sort field of the last result; may be null
+     *
+     * @param id
+     *  the ID of the last result
+     *
+     * @throws IllegalArgumentException
+     *  if sortBy, order or id are null
+     */
+    public PageCursor(String sortBy, PageRequest.Order order, Object value, Serializable id) {
+        if (sortBy == null) {
+            throw new IllegalArgumentException("sortBy is null");
+        }
+
+        if (order == null) {
+            throw new IllegalArgumentException("order is null");
+        }
+
+        if (id == null) {
+            throw new IllegalArgumentException("id is null");
+        }
+
+        this.sortBy = sortBy;
+        this.order = order;
+        this.value = value;
+        this.id = id;
+    }
+
+    public String getSortBy() {
+        return this.sortBy;
+    }
+
+    public PageRequest.Order getOrder() {
+        return this.order;
+    }
+
+    public Object getValue() {
+        return this.value;
+    }
+
+    public Serializable getId() {
+        return this.id;
+    }
+
+    /**
+     * Checks whether or not this cursor was created for results sorted by the given field and
+     * order.
+     *
+     * @param sortBy
+     *  the name of the field the results are sorted by
+     *
+     * @param order
+     *  the order in which the results are sorted
+     *
+     * @return
+     *  true if this cursor may be used to page through results sorted by the field and order;
+     *  false otherwise
+     */
+    public boolean matches(String sortBy, PageRequest.Order order) {
+        return this.sortBy.equals(sortBy) && this.order == order;
+    }
+
+    /**
+     * Checks whether or not the given value can be encoded in a cursor.
+     *
+     * @param value
+     *  the value to check
+     *
+     * @return
+     *  true if the value can be encoded in a cursor; false otherwise
+     */
+    public static boolean isSupportedValue(Object value) {
+        return value == null || value instanceof String || value instanceof Date ||
+            value instanceof Integer || value instanceof Long || value instanceof Boolean;
+    }
+
+    /**
+     * Encodes this cursor as an opaque, URL-safe token.
+     *
+     * @throws IllegalArgumentException
+     *  if the sort value or ID of this cursor are of an unsupported type
+     *
+     * @return
+     *  the encoded cursor
+     */
+    public String encode() {
+        return String.join(SEPARATOR, encodePart(VERSION), encodePart(this.sortBy),
+            encodePart(this.order.name()), encodeValue(this.value), encodeValue(this.id));
+    }
+
+    /**
+     * Decodes a cursor from a token created by {@link #encode()}.
+     *
+     * @param token
+     *  the token to decode
+     *
+     * @throws IllegalArgumentException
+     *  if the token is not a valid cursor
+     *
+     * @return
+     *  the decoded cursor
+     */
+    public static PageCursor decode(String token) {
+        if (token == null) {
+            throw new IllegalArgumentException("token is null");
+        }
+
+        String[] parts = token.split("\\.", -1);
+        if (parts.length != 5 || !VERSION.equals(decodePart(parts[0]))) {
+            throw new IllegalArgumentException("Malformed cursor: " + token);
+        }
+
+        try {
+            Object id = decodeValue(parts[4]);
+            if (!(id instanceof Serializable)) {
+                throw new IllegalArgumentException("Malformed cursor: " + token);
+            }
+
+            return new PageCursor(decodePart(parts[1]), PageRequest.Order.valueOf(decodePart(parts[2])),
+                decodeValue(parts[3]), (Serializable) id);
+        }
+        catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor: " + token, e);
+        }
+    }
+
+    private static String encodePart(String part) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(part.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodePart(String part) {
+        return new String(Base64.getUrlDecoder().decode(part), StandardCharsets.UTF_8);
+    }
+
+    private static String encodeValue(Object value) {
+        if (value == null) {
+            return "n";
+        }
+        else if (value instanceof String) {
+            return "s" + encodePart((String) value);
+        }
+        else if (value instanceof Timestamp) {
+            // Timestamps may carry more precision than milliseconds, which must not be lost for the
+            // cursor to seek past its own result
+            return "t" + ((Timestamp) value).getTime() + "_" + ((Timestamp) value).getNanos();
+        }
+        else if (value instanceof Date) {
+            return "d" + ((Date) value).getTime();
+        }
+        else if (value instanceof Integer) {
+            return "i" + value;
+        }
+        else if (value instanceof Long) {
+            return "l" + value;
+        }
+        else if (value instanceof Boolean) {
+            return "b" + value;
+        }
+
+        throw new IllegalArgumentException("Unsupported cursor value type: " + value.getClass());
+    }
+
+    private static Object decodeValue(String encoded) {
+        if (encoded.isEmpty()) {
+            throw new IllegalArgumentException("Empty cursor value");
+        }
+
+        String value = encoded.substring(1);
+
+        switch (encoded.charAt(0)) {
+            case 'n':
+                return null;
+
+            case 's':
+                return decodePart(value);
+
+            case 't':
+                String[] time = value.split("_", 2);
+                if (time.length != 2) {
+                    throw new IllegalArgumentException("Malformed timestamp: " + value);
+                }
+
+                Timestamp timestamp = new Timestamp(Long.parseLong(time[0]));
+                timestamp.setNanos(Integer.parseInt(time[1]));
+                return timestamp;
+
+            case 'd':
+                return new Date(Long.parseLong(value));
+
+            case 'i':
+                return Integer.valueOf(value);
+
+            case 'l':
+                return Long.valueOf(value);
+
+            case 'b':
+                return Boolean.valueOf(value);
+
+            default:
+                throw new IllegalArgumentException("Unsupported cursor value type: " + encoded.charAt(0));
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+
+        if (!(obj instanceof PageCursor)) {
+            return false;
+        }
+
+        PageCursor that = (PageCursor) obj;
+        return this.sortBy.equals(that.sortBy) && this.order == that.order &&
+            Objects.equals(this.value, that.value) && this.id.equals(that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.sortBy, this.order, this.value, this.id);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PageCursor [sortBy: %s, order: %s, value: %s, id: %s]",
+            this.sortBy, this.order, this.value, this.id);
+    }
+}
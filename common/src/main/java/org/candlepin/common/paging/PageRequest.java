@@ -30,6 +30,7 @@ public class PageRequest {
     public static final String SORT_BY_PARAM = "sort_by";
     public static final String PAGE_PARAM = "page";
     public static final String PER_PAGE_PARAM = "per_page";
+    public static final String CURSOR_PARAM = "cursor";
 
     public static final Integer DEFAULT_PAGE = Integer.valueOf(1);
     public static final Integer DEFAULT_PER_PAGE = Integer.valueOf(10);
@@ -39,6 +40,7 @@ public class PageRequest {
     private Integer perPage;
     private String sortBy;
     private Order order;
+    private String cursor;
 
     public Integer getPage() {
         return page;
@@ -72,7 +74,49 @@ public class PageRequest {
         this.order = order;
     }
 
+    /**
+     * Fetches the cursor of this request. An empty cursor requests the first page of results;
+     * otherwise, the cursor is an encoded {@link PageCursor} positioned after the last result of
+     * the previous page.
+     *
+     * @return
+     *  the cursor of this request, or null if this request does not use cursor paging
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
     public boolean isPaging() {
         return perPage != null && page != null;
     }
+
+    /**
+     * Checks whether or not this request pages through results with a cursor rather than page
+     * numbers. Cursor paging seeks directly to the results following the previous page, and
+     * does not count the total number of results.
+     *
+     * @return
+     *  true if this request uses cursor paging; false otherwise
+     */
+    public boolean isCursorPaging() {
+        return perPage != null && cursor != null;
+    }
+
+    /**
+     * Decodes the cursor of this request.
+     *
+     * @throws IllegalArgumentException
+     *  if the cursor of this request is malformed
+     *
+     * @return
+     *  the position after which the requested page starts, or null if the first page is requested
+     *  or this request does not use cursor paging
+     */
+    public PageCursor getPageCursor() {
+        return cursor != null && !cursor.isEmpty() ? PageCursor.decode(cursor) : null;
+    }
 }
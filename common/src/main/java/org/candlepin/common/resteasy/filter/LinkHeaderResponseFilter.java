@@ -82,8 +82,13 @@ public class LinkHeaderResponseFilter implements ContainerResponseFilter {
             return;
         }
 
+        if (page.getPageRequest() == null) {
+            return;
+        }
+
         // If we aren't paging, then no need for Link headers.
-        if (page.getPageRequest() == null || !page.getPageRequest().isPaging()) {
+        PageRequest pageRequest = page.getPageRequest();
+        if (!pageRequest.isPaging() && !pageRequest.isCursorPaging()) {
             return;
         }
 
@@ -99,6 +104,11 @@ public class LinkHeaderResponseFilter implements ContainerResponseFilter {
         builder = addUnchangingQueryParams(builder, params);
         //TODO add missing parameters like the default limit if no limit is given.
 
+        if (pageRequest.isCursorPaging()) {
+            this.addCursorLinks(page, builder, respContext);
+            return;
+        }
+
         try {
             LinkHeader header = new LinkHeader();
 
@@ -126,10 +136,43 @@ public class LinkHeaderResponseFilter implements ContainerResponseFilter {
         respContext.getHeaders().add(TOTAL_RECORDS_COUNT, page.getMaxRecords());
     }
 
+    /**
+     * Adds the links for a page fetched with a cursor. Cursor paging only moves forward and does
+     * not count the total number of results, so only the next and first links are provided, and
+     * the total count header is omitted.
+     */
+    @SuppressWarnings("rawtypes")
+    protected void addCursorLinks(Page page, UriBuilder builder, ContainerResponseContext respContext) {
+        try {
+            LinkHeader header = new LinkHeader();
+
+            if (page.getNextCursor() != null) {
+                header.addLink("next", "next", buildCursorLink(builder, page.getNextCursor()), LINK_TYPE);
+            }
+
+            header.addLink("first", "first", buildCursorLink(builder, ""), LINK_TYPE);
+
+            respContext.getHeaders().add(LINK_HEADER, header.toString());
+        }
+        catch (LinkTooLongException e) {
+            log.warn("Link length exceeded maximum length ({}). " +
+                "Link headers will be omitted from this response.",
+                MAX_LINK_LENGTH, e);
+        }
+    }
+
+    protected String buildCursorLink(UriBuilder b, String cursor) {
+        return this.buildLink(b, PageRequest.CURSOR_PARAM, cursor);
+    }
+
     protected String buildPageLink(UriBuilder b, int value) {
+        return this.buildLink(b, PageRequest.PAGE_PARAM, String.valueOf(value));
+    }
+
+    private String buildLink(UriBuilder b, String param, String value) {
         // Copy so we can use the same builder for building each link.
         UriBuilder builder = b.clone();
-        builder.queryParam(PageRequest.PAGE_PARAM, String.valueOf(value));
+        builder.queryParam(param, value);
 
         String link = builder.build().toString();
 
@@ -207,7 +250,8 @@ public class LinkHeaderResponseFilter implements ContainerResponseFilter {
         // parameters provided too.
         if (params != null) {
             for (Entry<String, List<String>> e : params.entrySet()) {
-                if (!e.getKey().equals(PageRequest.PAGE_PARAM)) {
+                if (!e.getKey().equals(PageRequest.PAGE_PARAM) &&
+                    !e.getKey().equals(PageRequest.CURSOR_PARAM)) {
                     for (String v : e.getValue()) {
                         builder = builder.queryParam(e.getKey(), v);
                     }
@@ -55,8 +55,12 @@ public class PageRequestFilter implements ContainerRequestFilter {
         String perPage = params.getFirst(PageRequest.PER_PAGE_PARAM);
         String order = params.getFirst(PageRequest.ORDER_PARAM);
         String sortBy = params.getFirst(PageRequest.SORT_BY_PARAM);
+        String cursor = params.getFirst(PageRequest.CURSOR_PARAM);
 
-        if (page != null || perPage != null || order != null || sortBy != null) {
+        if (cursor != null) {
+            p = this.buildCursorPageRequest(cursor, page, perPage, order, sortBy);
+        }
+        else if (page != null || perPage != null || order != null || sortBy != null) {
             p = new PageRequest();
 
             if (order == null) {
@@ -94,6 +98,38 @@ public class PageRequestFilter implements ContainerRequestFilter {
         ResteasyContext.pushContext(PageRequest.class, p);
     }
 
+    private PageRequest buildCursorPageRequest(String cursor, String page, String perPage, String order,
+        String sortBy) {
+
+        I18n i18n = this.i18nProvider.get();
+
+        if (page != null) {
+            throw new BadRequestException(i18n.tr("the page and cursor parameters cannot be combined"));
+        }
+
+        PageRequest p = new PageRequest();
+        p.setOrder(order == null ? PageRequest.DEFAULT_ORDER : readOrder(order));
+        p.setSortBy(sortBy);
+        p.setCursor(cursor);
+
+        try {
+            p.setPerPage(perPage == null ? PageRequest.DEFAULT_PER_PAGE : readInteger(perPage));
+        }
+        catch (NumberFormatException nfe) {
+            throw new BadRequestException(i18n.tr("limit parameter must be a positive integer"), nfe);
+        }
+
+        // Catch malformed cursors here, rather than when the page is fetched
+        try {
+            p.getPageCursor();
+        }
+        catch (IllegalArgumentException e) {
+            throw new BadRequestException(i18n.tr("the cursor parameter is not a valid cursor"), e);
+        }
+
+        return p;
+    }
+
     private Order readOrder(String order) {
         if ("ascending".equalsIgnoreCase(order) || "asc".equalsIgnoreCase(order)) {
             return Order.ASCENDING;
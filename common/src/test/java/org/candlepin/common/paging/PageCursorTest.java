@@ -0,0 +1,131 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.common.paging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.stream.Stream;
+
+
+
+/**
+ * Test suite for the PageCursor class
+ */
+public class PageCursorTest {
+
+    public static Stream<Arguments> cursorValues() {
+        Timestamp timestamp = new Timestamp(1577836800123L);
+        timestamp.setNanos(123456789);
+
+        return Stream.of(
+            Arguments.of(null, "id-1"),
+            Arguments.of("a name. with/separators+and=padding", "id-2"),
+            Arguments.of("", "id-3"),
+            Arguments.of(new Date(1577836800123L), "id-4"),
+            Arguments.of(timestamp, "id-5"),
+            Arguments.of(42, 7L),
+            Arguments.of(42L, 8),
+            Arguments.of(Boolean.TRUE, "id-6"));
+    }
+
+    @ParameterizedTest
+    @MethodSource("cursorValues")
+    public void testEncodeDecodeRoundTrip(Object value, Serializable id) {
+        PageCursor cursor = new PageCursor("name", PageRequest.Order.DESCENDING, value, id);
+        String token = cursor.encode();
+
+        PageCursor decoded = PageCursor.decode(token);
+        assertEquals(cursor, decoded);
+        assertEquals(value, decoded.getValue());
+        assertEquals(id, decoded.getId());
+        assertEquals("name", decoded.getSortBy());
+        assertEquals(PageRequest.Order.DESCENDING, decoded.getOrder());
+    }
+
+    @Test
+    public void testEncodedCursorIsUrlSafe() {
+        PageCursor cursor = new PageCursor("name", PageRequest.Order.ASCENDING, "?&=/+ #", "id");
+        assertTrue(cursor.encode().matches("[A-Za-z0-9_.\\-]+"));
+    }
+
+    @Test
+    public void testTimestampKeepsNanoseconds() {
+        Timestamp timestamp = new Timestamp(1577836800123L);
+        timestamp.setNanos(123456789);
+
+        PageCursor cursor = new PageCursor("created", PageRequest.Order.ASCENDING, timestamp, "id");
+        Timestamp decoded = (Timestamp) PageCursor.decode(cursor.encode()).getValue();
+
+        assertEquals(123456789, decoded.getNanos());
+    }
+
+    @Test
+    public void testMatches() {
+        PageCursor cursor = new PageCursor("name", PageRequest.Order.ASCENDING, "value", "id");
+
+        assertTrue(cursor.matches("name", PageRequest.Order.ASCENDING));
+        assertFalse(cursor.matches("name", PageRequest.Order.DESCENDING));
+        assertFalse(cursor.matches("key", PageRequest.Order.ASCENDING));
+    }
+
+    @Test
+    public void testUnsupportedValueCannotBeEncoded() {
+        assertFalse(PageCursor.isSupportedValue(BigDecimal.ONE));
+
+        PageCursor cursor = new PageCursor("name", PageRequest.Order.ASCENDING, BigDecimal.ONE, "id");
+        assertThrows(IllegalArgumentException.class, cursor::encode);
+    }
+
+    @Test
+    public void testRequiresSortFieldOrderAndId() {
+        assertThrows(IllegalArgumentException.class,
+            () -> new PageCursor(null, PageRequest.Order.ASCENDING, "value", "id"));
+        assertThrows(IllegalArgumentException.class, () -> new PageCursor("name", null, "value", "id"));
+        assertThrows(IllegalArgumentException.class,
+            () -> new PageCursor("name", PageRequest.Order.ASCENDING, "value", null));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "", "abc", "MQ.bmFtZQ.QVNDRU5ESU5H.sdmFsdWU", "Mg.bmFtZQ.QVNDRU5ESU5H.n.n",
+        "MQ.bmFtZQ.Qk9HVVM.n.sYQ", "MQ.bmFtZQ.QVNDRU5ESU5H.ifoo.sYQ", "MQ.bmFtZQ.QVNDRU5ESU5H.n.n" })
+    public void testDecodeMalformedCursor(String token) {
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode(token));
+    }
+
+    @Test
+    public void testEmptyCursorRequestsFirstPage() {
+        PageRequest request = new PageRequest();
+        request.setPerPage(10);
+        request.setCursor("");
+
+        assertTrue(request.isCursorPaging());
+        assertFalse(request.isPaging());
+        assertNull(request.getPageCursor());
+    }
+}
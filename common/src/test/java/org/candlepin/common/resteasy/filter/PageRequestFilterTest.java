@@ -18,10 +18,12 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.when;
 
 import org.candlepin.common.exceptions.BadRequestException;
 import org.candlepin.common.guice.CommonI18nProvider;
+import org.candlepin.common.paging.PageCursor;
 import org.candlepin.common.paging.PageRequest;
 
 import org.jboss.resteasy.core.ResteasyContext;
@@ -174,4 +176,55 @@ public class PageRequestFilterTest {
         assertEquals(PageRequest.Order.DESCENDING, p.getOrder());
         assertEquals("id", p.getSortBy());
     }
+
+    @Test
+    public void testEmptyCursorRequestsFirstPage() throws Exception {
+        mockReq = MockHttpRequest.create("GET",
+            "http://localhost/candlepin/status?cursor=&per_page=25&sort_by=name");
+        when(mockRequestContext.getUriInfo()).thenReturn(mockReq.getUri());
+
+        interceptor.filter(mockRequestContext);
+
+        PageRequest p = ResteasyContext.getContextData(PageRequest.class);
+        assertTrue(p.isCursorPaging());
+        assertFalse(p.isPaging());
+        assertEquals(Integer.valueOf(25), p.getPerPage());
+        assertEquals("name", p.getSortBy());
+        assertNull(p.getPageCursor());
+    }
+
+    @Test
+    public void testCursorUsesDefaultPerPage() throws Exception {
+        String cursor = new PageCursor("name", PageRequest.Order.ASCENDING, "owner", "id-1").encode();
+
+        mockReq = MockHttpRequest.create("GET",
+            "http://localhost/candlepin/status?order=asc&sort_by=name&cursor=" + cursor);
+        when(mockRequestContext.getUriInfo()).thenReturn(mockReq.getUri());
+
+        interceptor.filter(mockRequestContext);
+
+        PageRequest p = ResteasyContext.getContextData(PageRequest.class);
+        assertTrue(p.isCursorPaging());
+        assertEquals(PageRequest.DEFAULT_PER_PAGE, p.getPerPage());
+        assertEquals(cursor, p.getCursor());
+        assertEquals(PageCursor.decode(cursor), p.getPageCursor());
+    }
+
+    @Test
+    public void testDoesNotAllowCursorWithPage() throws Exception {
+        mockReq = MockHttpRequest.create("GET",
+            "http://localhost/candlepin/status?cursor=&page=2");
+        when(mockRequestContext.getUriInfo()).thenReturn(mockReq.getUri());
+
+        assertThrows(BadRequestException.class, () -> interceptor.filter(mockRequestContext));
+    }
+
+    @Test
+    public void testMalformedCursor() throws Exception {
+        mockReq = MockHttpRequest.create("GET",
+            "http://localhost/candlepin/status?cursor=bad_cursor");
+        when(mockRequestContext.getUriInfo()).thenReturn(mockReq.getUri());
+
+        assertThrows(BadRequestException.class, () -> interceptor.filter(mockRequestContext));
+    }
 }
@@ -16,10 +16,12 @@ package org.candlepin.async;
 
 import org.candlepin.model.Owner;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -73,6 +75,8 @@ public class JobConfig<T extends JobConfig> {
     private int retries;
     private String logLevel;
     private boolean logExecutionDetails;
+    private boolean waitWhenBlocked;
+    private List<String> coalesceArguments;
 
     /**
      * Creates an empty JobConfig
@@ -80,6 +84,7 @@ public class JobConfig<T extends JobConfig> {
     public JobConfig() {
         this.arguments = new HashMap<>();
         this.constraints = new HashSet<>();
+        this.coalesceArguments = new ArrayList<>();
 
         this.retries = 0;
         this.logExecutionDetails = true;
@@ -383,6 +388,77 @@ public class JobConfig<T extends JobConfig> {
         return (T) this;
     }
 
+    /**
+     * Fetches whether or not this job should wait for the jobs blocking it to complete, rather than
+     * being aborted, when its queuing constraints are not met.
+     *
+     * @return
+     *  true if this job should wait when it is blocked by its constraints; false otherwise
+     */
+    public boolean waitWhenBlocked() {
+        return this.waitWhenBlocked;
+    }
+
+    /**
+     * Sets whether or not this job should wait for the jobs blocking it to complete, rather than
+     * being aborted, when its queuing constraints are not met. Waiting jobs are released in the
+     * order they were queued, once no other job with the same job key and context owner is queued
+     * or running.
+     *
+     * @param enabled
+     *  true to have this job wait when it is blocked; false to abort it instead
+     *
+     * @return
+     *  this JobConfig instance
+     */
+    public T waitWhenBlocked(boolean enabled) {
+        this.waitWhenBlocked = enabled;
+        return (T) this;
+    }
+
+    /**
+     * Sets the job arguments by which jobs blocking this job are coalesced with it. When this job
+     * is queued, any blocking job with the same job key and the same values for all of the given
+     * arguments which has not yet started will be canceled and replaced by this job.
+     *
+     * @param params
+     *  the argument, or arguments, by which to coalesce jobs
+     *
+     * @throws IllegalArgumentException
+     *  if params is null or empty, or contains a parameter which is null or empty
+     *
+     * @return
+     *  this JobConfig instance
+     */
+    public T coalesceByArguments(String... params) {
+        if (params == null || params.length == 0) {
+            throw new IllegalArgumentException("params is null or empty");
+        }
+
+        List<String> plist = new ArrayList<>(params.length);
+        for (String param : params) {
+            if (param == null || param.isEmpty()) {
+                throw new IllegalArgumentException("params contains a null or empty parameter");
+            }
+
+            plist.add(param);
+        }
+
+        this.coalesceArguments = plist;
+        return (T) this;
+    }
+
+    /**
+     * Fetches the job arguments by which jobs blocking this job are coalesced with it. If this job
+     * does not coalesce blocking jobs, this method returns an empty collection.
+     *
+     * @return
+     *  a collection of job arguments by which blocking jobs are coalesced with this job
+     */
+    public Collection<String> getCoalesceArguments() {
+        return Collections.unmodifiableList(this.coalesceArguments);
+    }
+
     /**
      * Validates whether or not this config is valid. By default, only the job key is required to
      * be a valid job configuration, but subclasses may have more specific requirements.
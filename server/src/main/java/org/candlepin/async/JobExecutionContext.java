@@ -63,6 +63,28 @@ public class JobExecutionContext {
         return this.job.getPrincipalName();
     }
 
+    /**
+     * Fetches the checkpoint recorded by a previous execution attempt of the job. Jobs which commit
+     * their work in several steps may use this to resume the work of a failed attempt.
+     *
+     * @return
+     *  the checkpoint recorded for the executing job, or null if no checkpoint has been recorded
+     */
+    public String getCheckpoint() {
+        return this.job.getCheckpoint();
+    }
+
+    /**
+     * Records a checkpoint for the executing job. The checkpoint is persisted along with the job's
+     * status the next time the status is written out, and is retained should the job be retried.
+     *
+     * @param checkpoint
+     *  the checkpoint to record, or null to clear it
+     */
+    public void setCheckpoint(String checkpoint) {
+        this.job.setCheckpoint(checkpoint);
+    }
+
     /**
      * Sets the result of the job's execution. If the result is not a string, it will be serialized
      * to JSON and stored without any class or other such deserialization information.
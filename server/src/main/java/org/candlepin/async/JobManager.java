@@ -66,6 +66,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -111,6 +112,10 @@ public class JobManager implements ModeChangeListener {
     private static final Object SUSPEND_KEY_DEFAULT = "default_suspend_key";
     private static final Object SUSPEND_KEY_TRIGGERED = "triggered_suspend_key";
 
+    /** The states of jobs which have not yet started and may be replaced by a coalescing job */
+    private static final Set<JobState> COALESCIBLE_JOB_STATES = Collections.unmodifiableSet(
+        EnumSet.of(JobState.CREATED, JobState.WAITING, JobState.SCHEDULED, JobState.QUEUED));
+
     /** Stores our mapping of job keys to job classes */
     private static final Map<String, Class<? extends AsyncJob>> JOB_KEY_MAP = new HashMap<>();
 
@@ -351,6 +356,9 @@ public class JobManager implements ModeChangeListener {
     private Set<String> whitelist;
     private Set<String> blacklist;
     private Map<String, Configuration> jobConfig;
+    private int ownerThreads;
+    private long ownerDeferDelay;
+    private final Map<String, Integer> runningJobsByOwner = new HashMap<>();
 
 
     /**
@@ -407,6 +415,10 @@ public class JobManager implements ModeChangeListener {
         list = config.getList(ConfigProperties.ASYNC_JOBS_BLACKLIST, null);
         this.blacklist = list != null ? new HashSet<>(list) : null;
 
+        // Get the per-owner job execution limits
+        this.ownerThreads = config.getInt(ConfigProperties.ASYNC_JOBS_OWNER_THREADS, 0);
+        this.ownerDeferDelay = config.getLong(ConfigProperties.ASYNC_JOBS_OWNER_DEFER_DELAY, 1000L);
+
         // Read the per-job configuration
         this.jobConfig = new HashMap<>();
         String prefix = ConfigProperties.ASYNC_JOBS_PREFIX;
@@ -1104,24 +1116,41 @@ public class JobManager implements ModeChangeListener {
             // Persist the job status so that the ID will be generated.
             status = this.jobCurator.create(status);
 
+            // Replace any unstarted blocking jobs this job is to be coalesced with
+            Collection<String> coalesceArgs = config.getCoalesceArguments();
+            if (!blockingJobIds.isEmpty() && !coalesceArgs.isEmpty()) {
+                blockingJobIds.removeAll(this.coalesceJobs(status, blockingJobIds, coalesceArgs));
+            }
+
             if (blockingJobIds.isEmpty()) {
                 // Build and send the job message and update the job state accordingly
                 status = this.postJobStatusMessage(status);
                 log.info("Job queued: {}", status);
             }
             else {
-                // TODO: Add support for the WAITING option. For now, always default to ABORTED
-
                 String jobIds = blockingJobIds.stream()
                     .collect(Collectors.joining(", "));
 
                 StringBuilder errmsg = new StringBuilder("Job blocked by the following existing jobs: ")
                     .append(jobIds);
 
-                this.updateJobStatus(status, JobState.ABORTED, errmsg.toString());
+                if (config.waitWhenBlocked()) {
+                    status = this.updateJobStatus(status, JobState.WAITING, errmsg.toString());
+
+                    log.info("Job waiting: {}; blocked by the following existing jobs: {}",
+                        status.getName(), jobIds);
 
-                log.info("Unable to queue job: {}; blocked by the following existing jobs: {}",
-                    status.getName(), jobIds);
+                    // If the blocking jobs are all waiting themselves, nothing will release them
+                    // (we may have raced with the completion of the last running job). Release the
+                    // next waiting job now, which may be this job.
+                    this.releaseWaitingJobs(status.getJobKey(), status.getContextOwnerId());
+                }
+                else {
+                    this.updateJobStatus(status, JobState.ABORTED, errmsg.toString());
+
+                    log.info("Unable to queue job: {}; blocked by the following existing jobs: {}",
+                        status.getName(), jobIds);
+                }
             }
         }
         catch (JobStateManagementException e) {
@@ -1173,6 +1202,139 @@ public class JobManager implements ModeChangeListener {
         return status;
     }
 
+    /**
+     * Cancels the blocking jobs which have not yet started and have the same job key and values
+     * for the given arguments as the inbound job, effectively replacing them with the inbound job.
+     *
+     * @param inbound
+     *  the job being queued
+     *
+     * @param blockingJobIds
+     *  the IDs of the jobs blocking the inbound job
+     *
+     * @param params
+     *  the arguments by which to coalesce jobs
+     *
+     * @throws JobStateManagementException
+     *  if the state of a coalesced job could not be updated
+     *
+     * @return
+     *  a collection containing the IDs of the jobs which were canceled
+     */
+    private Set<String> coalesceJobs(AsyncJobStatus inbound, Collection<String> blockingJobIds,
+        Collection<String> params) throws JobStateManagementException {
+
+        AsyncJobStatusQueryBuilder queryBuilder = new AsyncJobStatusQueryBuilder()
+            .setJobIds(blockingJobIds)
+            .setJobKeys(inbound.getJobKey())
+            .setJobStates(COALESCIBLE_JOB_STATES);
+
+        JobArguments inboundArgs = inbound.getJobArguments();
+        Set<String> coalesced = new HashSet<>();
+
+        for (AsyncJobStatus job : this.jobCurator.findJobs(queryBuilder)) {
+            JobArguments jobArgs = job.getJobArguments();
+
+            boolean match = params.stream()
+                .allMatch(param -> Objects.equals(inboundArgs.getSerializedValue(param),
+                    jobArgs.getSerializedValue(param)));
+
+            if (match) {
+                this.updateJobStatus(job, JobState.CANCELED, "Job replaced by newer job: " + inbound.getId());
+                coalesced.add(job.getId());
+
+                log.info("Job {} ({}) replaced by newer job {}", job.getName(), job.getId(), inbound.getId());
+            }
+        }
+
+        return coalesced;
+    }
+
+    /**
+     * Releases the oldest waiting job with the given job key and context owner, provided no other
+     * job with the same key and owner is queued or running. The candidate jobs are locked, so that
+     * only one caller releases a given waiting job.
+     *
+     * @param jobKey
+     *  the key of the jobs to release
+     *
+     * @param ownerId
+     *  the ID of the context owner of the jobs to release; may be null
+     *
+     * @throws JobStateManagementException
+     *  if the state of the released job could not be updated
+     *
+     * @throws JobMessageDispatchException
+     *  if the job message for the released job could not be dispatched
+     */
+    @Transactional
+    protected void releaseWaitingJobs(String jobKey, String ownerId)
+        throws JobStateManagementException, JobMessageDispatchException {
+
+        Collection<JobState> states = Arrays.stream(JobState.values())
+            .filter(state -> !state.isTerminal())
+            .collect(Collectors.toSet());
+
+        AsyncJobStatusQueryBuilder queryBuilder = new AsyncJobStatusQueryBuilder()
+            .setJobKeys(jobKey)
+            .setOwnerIds(Collections.singleton(ownerId))
+            .setJobStates(states);
+
+        List<String> jobIds = this.jobCurator.findJobs(queryBuilder).stream()
+            .map(AsyncJobStatus::getId)
+            .collect(Collectors.toList());
+
+        // Lock the candidate jobs before checking for active jobs and choosing the job to release,
+        // so concurrent callers serialize here. Since the lock does not reload jobs which are
+        // already loaded, the jobs are refreshed to see any job released by a previous caller.
+        Collection<AsyncJobStatus> jobs = this.jobCurator.lockAndLoad(jobIds);
+        this.jobCurator.refresh(jobs);
+
+        AsyncJobStatus next = null;
+
+        for (AsyncJobStatus job : jobs) {
+            if (job.getState() == null || job.getState().isTerminal()) {
+                // Completed since it was found; it no longer blocks nor waits
+                continue;
+            }
+
+            if (job.getState() != JobState.WAITING) {
+                // Still an active job; it will release the next waiting job once it completes
+                return;
+            }
+
+            if (next == null || job.getCreated().before(next.getCreated())) {
+                next = job;
+            }
+        }
+
+        if (next != null) {
+            next = this.postJobStatusMessage(next);
+            log.info("Waiting job released: {}", next);
+        }
+    }
+
+    /**
+     * Releases the next waiting job with the same key and context owner as the given job, if the
+     * given job is in a terminal state. Failures are logged rather than propagated, as they should
+     * not affect the outcome of the completed job.
+     *
+     * @param status
+     *  the job which may have completed
+     */
+    private void releaseWaitingJobs(AsyncJobStatus status) {
+        if (status == null || status.getState() == null || !status.getState().isTerminal()) {
+            return;
+        }
+
+        try {
+            this.releaseWaitingJobs(status.getJobKey(), status.getContextOwnerId());
+        }
+        catch (Exception e) {
+            log.error("Unable to release jobs waiting on job: {}", status.getName(), e);
+        }
+    }
+
     /**
      * Creates and dispatches a job message for the given job status, then updates the state of
      * the job to QUEUED.
@@ -1203,23 +1365,7 @@ public class JobManager implements ModeChangeListener {
             // Update the job's status
             status = this.updateJobStatus(status, JobState.QUEUED, null);
 
-            // Register our synchronizer to commit or rollback the dispatcher based on whether
-            // or not the current DB transaction completes
-            Session session = this.jobCurator.currentSession();
-            Transaction transaction = session.getTransaction();
-
-            if (transaction != null &&
-                transaction.getStatus().isOneOf(JobMessageSynchronizer.ACTIVE_STATES)) {
-
-                // We have an active transaction (probably); register the synchronizer to pass
-                // through the commit/rollback to the messaging bus.
-                transaction.registerSynchronization(this.synchronizer);
-            }
-            else {
-                // No (active) transaction, immediately commit the messages. This should never happen.
-                log.warn("No active transaction while posting job messages; dispatching immediately.");
-                this.dispatcher.commit();
-            }
+            this.registerMessageSynchronizer();
 
             return status;
         }
@@ -1232,6 +1378,32 @@ public class JobManager implements ModeChangeListener {
         }
     }
 
+    /**
+     * Registers our synchronizer to commit or rollback the dispatcher based on whether or not the
+     * current DB transaction completes. If there is no active transaction, pending job messages
+     * are committed immediately.
+     *
+     * @throws JobMessageDispatchException
+     *  if there is no active transaction and the pending job messages could not be committed
+     */
+    private void registerMessageSynchronizer() throws JobMessageDispatchException {
+        Session session = this.jobCurator.currentSession();
+        Transaction transaction = session.getTransaction();
+
+        if (transaction != null &&
+            transaction.getStatus().isOneOf(JobMessageSynchronizer.ACTIVE_STATES)) {
+
+            // We have an active transaction (probably); register the synchronizer to pass
+            // through the commit/rollback to the messaging bus.
+            transaction.registerSynchronization(this.synchronizer);
+        }
+        else {
+            // No (active) transaction, immediately commit the messages. This should never happen.
+            log.warn("No active transaction while posting job messages; dispatching immediately.");
+            this.dispatcher.commit();
+        }
+    }
+
     /**
      * Executes the specified job immediately on this Candlepin node, skipping any filtering or
      * deduplication mechanisms.
@@ -1260,6 +1432,17 @@ public class JobManager implements ModeChangeListener {
             return status;
         }
 
+        // If this node is already running its share of jobs for the job's owner, put the job back
+        // in the queue so jobs for other owners get a chance to run first
+        String ownerId = status.getContextOwnerId();
+        if (!this.acquireOwnerSlot(ownerId)) {
+            log.debug("Deferring job: {} ({}); owner {} has reached its limit of concurrent jobs",
+                status.getJobKey(), status.getId(), ownerId);
+
+            this.deferJob(status);
+            return status;
+        }
+
         try {
             this.setupJobRuntimeEnvironment(status);
 
@@ -1336,9 +1519,74 @@ public class JobManager implements ModeChangeListener {
         }
         finally {
             this.teardownJobRuntimeEnvironment();
+            this.releaseOwnerSlot(ownerId);
+
+            // If the job is done, release the next job waiting on it, if any
+            this.releaseWaitingJobs(status);
         }
     }
 
+    /**
+     * Attempts to reserve one of the execution slots available to the given owner on this node.
+     * If the per-owner limit is disabled or the job has no owner, this method always succeeds.
+     *
+     * @param ownerId
+     *  the ID of the owner of the job to execute; may be null
+     *
+     * @return
+     *  true if a slot was reserved and the job may be executed; false otherwise
+     */
+    private boolean acquireOwnerSlot(String ownerId) {
+        if (ownerId == null || this.ownerThreads <= 0) {
+            return true;
+        }
+
+        synchronized (this.runningJobsByOwner) {
+            int running = this.runningJobsByOwner.getOrDefault(ownerId, 0);
+            if (running >= this.ownerThreads) {
+                return false;
+            }
+
+            this.runningJobsByOwner.put(ownerId, running + 1);
+            return true;
+        }
+    }
+
+    /**
+     * Releases an execution slot previously reserved for the given owner.
+     *
+     * @param ownerId
+     *  the ID of the owner of the executed job; may be null
+     */
+    private void releaseOwnerSlot(String ownerId) {
+        if (ownerId == null || this.ownerThreads <= 0) {
+            return;
+        }
+
+        synchronized (this.runningJobsByOwner) {
+            this.runningJobsByOwner.computeIfPresent(ownerId, (key, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    /**
+     * Dispatches a new job message for the given job to be delivered after the configured defer
+     * delay, leaving the job in its current state. The message currently being processed for the
+     * job is expected to be committed by the caller.
+     *
+     * @param status
+     *  the job to defer
+     *
+     * @throws JobMessageDispatchException
+     *  if the job message could not be dispatched
+     */
+    @Transactional
+    protected void deferJob(AsyncJobStatus status) throws JobMessageDispatchException {
+        JobMessage message = new JobMessage(status.getId(), status.getJobKey());
+        this.dispatcher.postJobMessage(message, this.ownerDeferDelay);
+
+        this.registerMessageSynchronizer();
+    }
+
     /**
      * Configures the job's runtime environment, performing the following operations:
      *
@@ -1715,6 +1963,7 @@ public class JobManager implements ModeChangeListener {
             }
 
             status = this.jobCurator.merge(status);
+            this.releaseWaitingJobs(status);
         }
 
         return status;
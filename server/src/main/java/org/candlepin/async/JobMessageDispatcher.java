@@ -139,10 +139,30 @@ public class JobMessageDispatcher {
      *  if the message cannot be posted for any reason
      */
     public void postJobMessage(JobMessage jobMessage) throws JobMessageDispatchException {
+        this.postJobMessage(jobMessage, 0);
+    }
+
+    /**
+     * Posts a job message to the backing message bus, to be delivered to job message receivers
+     * after the given delay. The message may or may not be sent immediately. If the message cannot
+     * be posted, this method should throw an exception.
+     *
+     * @param jobMessage
+     *  The JobMessage to post
+     *
+     * @param delay
+     *  The delay, in milliseconds, before the message is delivered; zero or less to deliver the
+     *  message immediately
+     *
+     * @throws JobMessageDispatchException
+     *  if the message cannot be posted for any reason
+     */
+    public void postJobMessage(JobMessage jobMessage, long delay) throws JobMessageDispatchException {
         try {
             CPMSession session = this.getSession();
             CPMMessage message = session.createMessage()
                 .setDurable(true)
+                .setDeliveryDelay(delay)
                 .setProperty(JOB_KEY_MESSAGE_PROPERTY, jobMessage.getJobKey());
 
             String serializedJobMessage = this.objMapper.writeValueAsString(jobMessage);
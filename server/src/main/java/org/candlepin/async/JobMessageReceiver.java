@@ -33,9 +33,12 @@ import com.google.inject.persist.UnitOfWork;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.regex.Matcher;
@@ -64,7 +67,7 @@ public class JobMessageReceiver {
 
     private MessageListener listener;
     private String filter;
-    private Set<CPMSession> sessions;
+    private Map<CPMSession, String> sessions;
     private UnitOfWork unitOfWork;
 
 
@@ -91,21 +94,32 @@ public class JobMessageReceiver {
 
         this.initialized = false;
         this.suspended = false;
-        this.sessions = new HashSet<>();
+        this.sessions = new HashMap<>();
     }
 
     /**
-     * Builds a filter expression to apply to the client consumers used by the message receivers
-     * this factory generates. The expression returned will allow AMQP consumers to filter messages
-     * based on the jobs enabled or disabled in the configuration.
+     * Builds a regex pattern matching the per-job configuration keys with the given suffix. The
+     * first group of the pattern captures the job key.
+     *
+     * @param suffix
+     *  the suffix of the per-job configuration to match
      *
      * @return
-     *  an AMQP filter expression for filtering jobs
+     *  a pattern matching per-job configuration keys with the given suffix
      */
-    private String buildAMQPFilterExpression() {
-        // Default to no filtering
-        String filter = null;
+    private static Pattern buildJobConfigPattern(String suffix) {
+        String prefix = Pattern.quote(ConfigProperties.ASYNC_JOBS_PREFIX);
+        return Pattern.compile("\\A" + prefix + "(.+)\\." + Pattern.quote(suffix) + "\\z");
+    }
 
+    /**
+     * Fetches the keys of the jobs which are disabled on this node, either by being blacklisted or
+     * by being explicitly disabled.
+     *
+     * @return
+     *  a set containing the keys of the jobs disabled on this node
+     */
+    private Set<String> getDisabledJobKeys() {
         Set<String> blacklist = new HashSet<>();
 
         // Add blacklisted jobs
@@ -115,9 +129,7 @@ public class JobMessageReceiver {
         }
 
         // Add jobs explicitly disabled
-        String prefix = Pattern.quote(ConfigProperties.ASYNC_JOBS_PREFIX);
-        String suffix = Pattern.quote(ConfigProperties.ASYNC_JOBS_JOB_ENABLED);
-        Pattern regex = Pattern.compile("\\A" + prefix + "(.+)\\." + suffix + "\\z");
+        Pattern regex = buildJobConfigPattern(ConfigProperties.ASYNC_JOBS_JOB_ENABLED);
 
         for (String key : this.config.getKeys()) {
             Matcher matcher = regex.matcher(key);
@@ -131,9 +143,66 @@ public class JobMessageReceiver {
             }
         }
 
-        list = this.config.getList(ConfigProperties.ASYNC_JOBS_WHITELIST, null);
-        if (list != null) {
+        return blacklist;
+    }
+
+    /**
+     * Fetches the jobs enabled on this node which are configured to be processed by dedicated
+     * threads, mapped to the number of threads to dedicate to them.
+     *
+     * @param disabled
+     *  the keys of the jobs disabled on this node
+     *
+     * @return
+     *  a map of job keys to the number of threads dedicated to processing them
+     */
+    private Map<String, Integer> getDedicatedJobThreads(Set<String> disabled) {
+        Map<String, Integer> dedicated = new HashMap<>();
+
+        List<String> whitelist = this.config.getList(ConfigProperties.ASYNC_JOBS_WHITELIST, null);
+        Pattern regex = buildJobConfigPattern(ConfigProperties.ASYNC_JOBS_JOB_LISTENER_THREADS);
+
+        for (String key : this.config.getKeys()) {
+            Matcher matcher = regex.matcher(key);
+
+            if (matcher.matches()) {
+                String jobKey = matcher.group(1);
+                int threads = this.config.getInt(key, 0);
+
+                if (threads > 0 && !disabled.contains(jobKey) &&
+                    (whitelist == null || whitelist.contains(jobKey))) {
+
+                    dedicated.put(jobKey, threads);
+                }
+            }
+        }
+
+        return dedicated;
+    }
+
+    /**
+     * Builds a filter expression to apply to the client consumers used by the message receivers
+     * this factory generates. The expression returned will allow AMQP consumers to filter messages
+     * based on the jobs enabled or disabled in the configuration, excluding jobs processed by
+     * dedicated threads.
+     *
+     * @param dedicated
+     *  the keys of the jobs processed by dedicated threads
+     *
+     * @return
+     *  an AMQP filter expression for filtering jobs
+     */
+    private String buildAMQPFilterExpression(Set<String> dedicated) {
+        // Default to no filtering
+        String filter = null;
+
+        Set<String> blacklist = this.getDisabledJobKeys();
+        blacklist.addAll(dedicated);
+
+        List<String> whitelist = this.config.getList(ConfigProperties.ASYNC_JOBS_WHITELIST, null);
+        if (whitelist != null) {
             // Whitelist mode (inclusion!)
+            List<String> list = new ArrayList<>(whitelist);
             list.removeAll(blacklist);
 
             if (list.size() > 0) {
@@ -156,13 +225,30 @@ public class JobMessageReceiver {
         return filter;
     }
 
+    /**
+     * Builds a filter expression for the client consumers dedicated to processing the specified
+     * job.
+     *
+     * @param jobKey
+     *  the key of the job to be processed by the consumers
+     *
+     * @return
+     *  an AMQP filter expression selecting only the given job
+     */
+    private String buildAMQPFilterExpression(String jobKey) {
+        return String.format("%s = '%s'", JOB_KEY_MESSAGE_PROPERTY, jobKey);
+    }
+
     /**
      * Creates and configures a new session and consumer
      *
+     * @param filter
+     *  the filter expression to apply to the consumer, or null to consume all job messages
+     *
      * @return
      *  The newly created CPM session
      */
-    private CPMSession createSession() throws CPMException {
+    private CPMSession createSession(String filter) throws CPMException {
         CPMSessionConfig sconfig = this.cpmSessionFactory.createSessionConfig()
             .setTransactional(true);
 
@@ -172,7 +258,7 @@ public class JobMessageReceiver {
 
         CPMConsumerConfig cconfig = session.createConsumerConfig()
             .setQueue(JOB_MESSAGE_QUEUE)
-            .setMessageFilter(this.filter);
+            .setMessageFilter(filter);
 
         session.createConsumer(cconfig)
             .setMessageListener(this.listener);
@@ -188,28 +274,29 @@ public class JobMessageReceiver {
      * will recreate it.
      */
     private void startSessions() throws CPMException {
-        Set<CPMSession> created = null;
+        Map<CPMSession, String> created = null;
 
-        Iterator<CPMSession> iterator = this.sessions.iterator();
+        Iterator<Map.Entry<CPMSession, String>> iterator = this.sessions.entrySet().iterator();
         while (iterator.hasNext()) {
-            CPMSession session = iterator.next();
+            Map.Entry<CPMSession, String> entry = iterator.next();
+            CPMSession session = entry.getKey();
 
             if (session == null || session.isClosed()) {
                 if (created == null) {
-                    created = new HashSet<>();
+                    created = new HashMap<>();
                 }
 
                 iterator.remove();
-                session = this.createSession();
+                session = this.createSession(entry.getValue());
 
-                created.add(session);
+                created.put(session, entry.getValue());
             }
 
             session.start();
         }
 
         if (created != null) {
-            this.sessions.addAll(created);
+            this.sessions.putAll(created);
         }
     }
 
@@ -218,7 +305,7 @@ public class JobMessageReceiver {
      * create new sessions.
      */
     private void stopSessions() throws CPMException {
-        for (CPMSession session : this.sessions) {
+        for (CPMSession session : this.sessions.keySet()) {
             session.stop();
         }
     }
@@ -247,7 +334,8 @@ public class JobMessageReceiver {
 
         try {
             this.listener = new MessageListener(manager, this.mapper, this.unitOfWork);
-            this.filter = this.buildAMQPFilterExpression();
+            Map<String, Integer> dedicatedThreads = this.getDedicatedJobThreads(this.getDisabledJobKeys());
+            this.filter = this.buildAMQPFilterExpression(dedicatedThreads.keySet());
 
             int listenerThreads = this.config.getInt(ConfigProperties.ASYNC_JOBS_THREADS);
             log.info("Creating {} job receiver threads with filter: {}", listenerThreads, this.filter);
@@ -255,8 +343,22 @@ public class JobMessageReceiver {
             for (int i = 0; i < listenerThreads; ++i) {
                 // Each session+consumer gives us an implicit thread for async job processing, so
                 // we don't need to do any additional thread creation/management ourselves.
-                CPMSession session = this.createSession();
-                this.sessions.add(session);
+                CPMSession session = this.createSession(this.filter);
+                this.sessions.put(session, this.filter);
+            }
+
+            // Jobs with dedicated threads get their own sessions, which limits the number of those
+            // jobs running concurrently and keeps them from starving the shared threads
+            for (Map.Entry<String, Integer> entry : dedicatedThreads.entrySet()) {
+                String dedicatedFilter = this.buildAMQPFilterExpression(entry.getKey());
+
+                log.info("Creating {} dedicated job receiver threads for job: {}", entry.getValue(),
+                    entry.getKey());
+
+                for (int i = 0; i < entry.getValue(); ++i) {
+                    CPMSession session = this.createSession(dedicatedFilter);
+                    this.sessions.put(session, dedicatedFilter);
+                }
             }
 
             this.initialized = true;
@@ -275,7 +377,7 @@ public class JobMessageReceiver {
      */
     public synchronized void shutdown() throws JobException {
         try {
-            for (CPMSession session : this.sessions) {
+            for (CPMSession session : this.sessions.keySet()) {
                 session.close();
             }
         }
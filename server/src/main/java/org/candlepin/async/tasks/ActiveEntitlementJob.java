@@ -1,5 +1,5 @@
 /**
- * Copyright (c) 2009 - 2019 Red Hat, Inc.
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
  *
  * This software is licensed to you under the GNU General Public License,
  * version 2 (GPLv2). There is NO WARRANTY for this software, express or
@@ -17,55 +17,283 @@ package org.candlepin.async.tasks;
 import org.candlepin.async.AsyncJob;
 import org.candlepin.async.JobExecutionContext;
 import org.candlepin.async.JobExecutionException;
+import org.candlepin.audit.EventSink;
+import org.candlepin.auth.Principal;
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.guice.CandlepinRequestScope;
+import org.candlepin.guice.PrincipalProvider;
 import org.candlepin.model.Consumer;
 import org.candlepin.model.ConsumerCurator;
 import org.candlepin.policy.SystemPurposeComplianceRules;
 import org.candlepin.policy.js.compliance.ComplianceRules;
 
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
+import com.google.inject.persist.Transactional;
+import com.google.inject.persist.UnitOfWork;
 
+import org.jboss.resteasy.core.ResteasyContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.inject.Provider;
+import javax.persistence.EntityTransaction;
 
 
 
 /**
  * Job to recalculate compliance for consumers when entitlements become active
+ * <p></p>
+ * The affected consumers are split into chunks which are processed concurrently on a bounded pool
+ * of worker threads. Each chunk fetches its consumers along with their entitlements up front, and
+ * is committed in its own transaction, along with the events it generated, so the job never holds
+ * more than a chunk of consumers in memory per worker. Should a chunk fail, the entitlements of its
+ * consumers remain flagged as not yet updated, and are picked up again by the next run.
+ * <p></p>
+ * If the job is executed from within an active transaction, the chunks are instead processed
+ * one after another within that transaction, as the worker threads would not be able to see any
+ * changes it has yet to commit.
  */
 public class ActiveEntitlementJob implements AsyncJob {
+    private static Logger log = LoggerFactory.getLogger(ActiveEntitlementJob.class);
 
     public static final String JOB_KEY = "ActiveEntitlementJob";
     public static final String JOB_NAME = "Active Entitlement";
     public static final String DEFAULT_SCHEDULE = "0 0 0/1 * * ?"; // Every hour
 
+    public static final String CFG_CHUNK_SIZE = "chunk_size";
+    public static final int DEFAULT_CHUNK_SIZE = 100;
+
+    public static final String CFG_THREADS = "threads";
+    public static final int DEFAULT_THREADS = 4;
+
+    private Configuration config;
     private ConsumerCurator consumerCurator;
-    private ComplianceRules complianceRules;
-    private SystemPurposeComplianceRules systemPurposeComplianceRules;
+    private Provider<ComplianceRules> complianceRulesProvider;
+    private Provider<SystemPurposeComplianceRules> systemPurposeComplianceRulesProvider;
+    private Provider<EventSink> eventSinkProvider;
+    private CandlepinRequestScope requestScope;
+    private UnitOfWork unitOfWork;
+    private PrincipalProvider principalProvider;
 
     @Inject
-    public ActiveEntitlementJob(ConsumerCurator consumerCurator, ComplianceRules complianceRules,
-        SystemPurposeComplianceRules systemPurposeComplianceRules) {
+    public ActiveEntitlementJob(Configuration config, ConsumerCurator consumerCurator,
+        Provider<ComplianceRules> complianceRulesProvider,
+        Provider<SystemPurposeComplianceRules> systemPurposeComplianceRulesProvider,
+        Provider<EventSink> eventSinkProvider, CandlepinRequestScope requestScope, UnitOfWork unitOfWork,
+        PrincipalProvider principalProvider) {
 
+        this.config = config;
         this.consumerCurator = consumerCurator;
-        this.complianceRules = complianceRules;
-        this.systemPurposeComplianceRules = systemPurposeComplianceRules;
+        this.complianceRulesProvider = complianceRulesProvider;
+        this.systemPurposeComplianceRulesProvider = systemPurposeComplianceRulesProvider;
+        this.eventSinkProvider = eventSinkProvider;
+        this.requestScope = requestScope;
+        this.unitOfWork = unitOfWork;
+        this.principalProvider = principalProvider;
     }
 
     @Override
     public void execute(JobExecutionContext context) throws JobExecutionException {
+        int chunkSize = this.getPositiveConfig(CFG_CHUNK_SIZE, DEFAULT_CHUNK_SIZE);
+        int threads = this.getPositiveConfig(CFG_THREADS, DEFAULT_THREADS);
+
         List<String> ids = consumerCurator.getConsumerIdsWithStartedEnts();
 
-        if (ids != null && !ids.isEmpty()) {
-            for (String id : ids) {
-                Consumer c = consumerCurator.get(id);
-                complianceRules.getStatus(c);
-                systemPurposeComplianceRules.getStatus(c, c.getEntitlements(), null, true);
+        if (ids == null || ids.isEmpty()) {
+            context.setJobResult("No consumers with entitlements pending activation found");
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        List<List<String>> chunks = Lists.partition(ids, chunkSize);
+
+        EntityTransaction transaction = this.consumerCurator.getTransaction();
+        boolean inline = transaction != null && transaction.isActive();
+        int workers = inline ? 1 : Math.min(threads, chunks.size());
+
+        log.info("Updating entitlement status for {} consumers in {} chunks on {} threads",
+            ids.size(), chunks.size(), workers);
+
+        int[] counts = inline ? this.updateInline(chunks) : this.updateConcurrently(chunks, workers);
+        int updated = counts[0];
+        int failed = counts[1];
+        long elapsed = System.currentTimeMillis() - start;
+
+        if (failed > 0) {
+            String errmsg = String.format(
+                "Entitlement status update failed for %d of %d consumers; %d consumers updated in %d ms",
+                failed, ids.size(), updated, elapsed);
+
+            log.error(errmsg);
+            throw new JobExecutionException(errmsg, false);
+        }
+
+        log.info("Updated entitlement status for {} consumers in {}ms", updated, elapsed);
+        context.setJobResult("Entitlement status updated for %d consumers in %d chunks on %d threads (%d ms)",
+            updated, chunks.size(), workers, elapsed);
+    }
+
+    private int getPositiveConfig(String cfgName, int defaultValue) throws JobExecutionException {
+        String fqcn = ConfigProperties.jobConfig(JOB_KEY, cfgName);
+        int value = this.config.getInt(fqcn, defaultValue);
+
+        if (value < 1) {
+            String errmsg = String.format(
+                "Invalid value for configuration \"%s\", must be a positive integer: %s", fqcn, value);
+
+            log.error(errmsg);
+            throw new JobExecutionException(errmsg, true);
+        }
+
+        return value;
+    }
+
+    /**
+     * Processes each chunk on the current thread, within the active transaction. Failures are not
+     * caught, as they leave the transaction unusable for the remaining chunks.
+     *
+     * @return
+     *  an array containing the number of consumers updated, and the number which failed
+     */
+    private int[] updateInline(List<List<String>> chunks) {
+        ComplianceRules complianceRules = this.complianceRulesProvider.get();
+        SystemPurposeComplianceRules systemPurposeComplianceRules =
+            this.systemPurposeComplianceRulesProvider.get();
+
+        int updated = 0;
+        for (List<String> chunk : chunks) {
+            updated += this.updateChunk(chunk, complianceRules, systemPurposeComplianceRules);
+        }
+
+        return new int[] { updated, 0 };
+    }
+
+    /**
+     * Processes the chunks on a pool of worker threads, each chunk in its own transaction.
+     *
+     * @return
+     *  an array containing the number of consumers updated, and the number which failed
+     */
+    private int[] updateConcurrently(List<List<String>> chunks, int workers) throws JobExecutionException {
+        // The workers run in their own scope, but otherwise in the same environment as the job
+        Principal principal = this.principalProvider.get();
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+
+        ThreadFactory threadFactory = new ThreadFactoryBuilder()
+            .setNameFormat("active-entitlement-%d")
+            .setDaemon(true)
+            .build();
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers, threadFactory);
+
+        try {
+            List<Future<Integer>> futures = new ArrayList<>(chunks.size());
+            for (List<String> chunk : chunks) {
+                futures.add(executor.submit(() -> this.runChunk(chunk, principal, mdc)));
+            }
+
+            int updated = 0;
+            int failed = 0;
+
+            for (int i = 0; i < futures.size(); ++i) {
+                try {
+                    updated += futures.get(i).get();
+                }
+                catch (ExecutionException e) {
+                    // Keep going; the consumers of this chunk will be picked up by the next run
+                    log.error("Unable to update entitlement status for consumers: {}", chunks.get(i),
+                        e.getCause());
+
+                    failed += chunks.get(i).size();
+                }
             }
 
-            context.setJobResult("Entitlement status updated for consumers: %s", ids);
+            return new int[] { updated, failed };
         }
-        else {
-            context.setJobResult("No consumers with entitlements pending activation found");
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JobExecutionException("Interrupted while updating entitlement status", e, false);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int runChunk(List<String> consumerIds, Principal principal, Map<String, String> mdc) {
+        if (mdc != null) {
+            MDC.setContextMap(mdc);
+        }
+
+        this.requestScope.enter();
+
+        if (principal != null) {
+            ResteasyContext.pushContext(Principal.class, principal);
+        }
+
+        // Each chunk gets its own session, which is discarded along with its entities once done
+        this.unitOfWork.begin();
+        EventSink eventSink = null;
+
+        try {
+            eventSink = this.eventSinkProvider.get();
+
+            int updated = this.updateChunk(consumerIds, this.complianceRulesProvider.get(),
+                this.systemPurposeComplianceRulesProvider.get());
+
+            // The chunk has been committed; send the events it generated
+            eventSink.sendEvents();
+            return updated;
+        }
+        catch (RuntimeException e) {
+            if (eventSink != null) {
+                eventSink.rollback();
+            }
+
+            throw e;
+        }
+        finally {
+            this.unitOfWork.end();
+
+            if (principal != null) {
+                ResteasyContext.popContextData(Principal.class);
+            }
+
+            this.requestScope.exit();
+            MDC.clear();
+        }
+    }
+
+    /**
+     * Recalculates the compliance of the consumers with the given IDs within a single transaction.
+     * Consumers which no longer exist are skipped.
+     *
+     * @return
+     *  the number of consumers updated
+     */
+    @Transactional
+    protected int updateChunk(List<String> consumerIds, ComplianceRules complianceRules,
+        SystemPurposeComplianceRules systemPurposeComplianceRules) {
+
+        List<Consumer> consumers = this.consumerCurator.getConsumersWithEntitlements(consumerIds);
+
+        for (Consumer consumer : consumers) {
+            complianceRules.getStatus(consumer);
+            systemPurposeComplianceRules.getStatus(consumer, consumer.getEntitlements(), null, true);
         }
 
+        return consumers.size();
     }
 }
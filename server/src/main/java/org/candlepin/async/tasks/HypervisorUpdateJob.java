@@ -181,9 +181,12 @@ public class HypervisorUpdateJob implements AsyncJob {
     public static class HypervisorUpdateJobConfig extends JobConfig<HypervisorUpdateJobConfig> {
 
         public HypervisorUpdateJobConfig() {
+            // Reports for an owner are processed one at a time. Rather than rejecting reports
+            // received while another is pending, they wait for the current report to be processed.
             this.setJobKey(JOB_KEY)
                 .setJobName(JOB_NAME)
-                .addConstraint(JobConstraints.uniqueByArguments(OWNER_KEY));
+                .addConstraint(JobConstraints.uniqueByArguments(OWNER_KEY))
+                .waitWhenBlocked(true);
         }
 
         /**
@@ -209,6 +212,12 @@ public class HypervisorUpdateJob implements AsyncJob {
         public HypervisorUpdateJobConfig setReporter(final String reporterId) {
             this.setJobArgument(REPORTER_ID_KEY, reporterId);
 
+            // A newer report from the same reporter supersedes any of its reports which have not
+            // yet been processed
+            if (reporterId != null && !reporterId.isEmpty()) {
+                this.coalesceByArguments(OWNER_KEY, REPORTER_ID_KEY);
+            }
+
             return this;
         }
 
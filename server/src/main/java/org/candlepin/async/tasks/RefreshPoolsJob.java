@@ -22,6 +22,9 @@ import org.candlepin.async.JobConfigValidationException;
 import org.candlepin.async.JobConstraints;
 import org.candlepin.async.JobExecutionContext;
 import org.candlepin.async.JobExecutionException;
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.controller.ParallelPoolRefresher;
 import org.candlepin.controller.PoolManager;
 import org.candlepin.controller.Refresher;
 import org.candlepin.model.Owner;
@@ -30,19 +33,35 @@ import org.candlepin.service.SubscriptionServiceAdapter;
 
 import com.google.inject.Inject;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
  * Asynchronous job for refreshing the entitlement pools for specific {@link Owner}.
+ * <p></p>
+ * The subscriptions of the owner are refreshed in independent groups, processed concurrently and
+ * committed separately by the {@link ParallelPoolRefresher}. Should some of the groups fail, the
+ * job fails with a retry, and the retry only processes the subscriptions which have changed since
+ * they were last refreshed. Setting the number of threads to zero, or executing the job from
+ * within an active transaction, refreshes all of the subscriptions within a single transaction
+ * instead.
  */
 public class RefreshPoolsJob implements AsyncJob {
+    private static Logger log = LoggerFactory.getLogger(RefreshPoolsJob.class);
 
     public static final String JOB_KEY = "RefreshPoolsJob";
     public static final String JOB_NAME = "Refresh Pools";
 
+    public static final String CFG_THREADS = "threads";
+    public static final int DEFAULT_THREADS = 4;
+
     protected static final String OWNER_KEY = "org";
     protected static final String LAZY_REGEN = "lazy_regen";
 
+    protected Configuration config;
     protected OwnerCurator ownerCurator;
     protected PoolManager poolManager;
+    protected ParallelPoolRefresher poolRefresher;
     protected SubscriptionServiceAdapter subAdapter;
 
     /**
@@ -121,11 +140,13 @@ public class RefreshPoolsJob implements AsyncJob {
     }
 
     @Inject
-    public RefreshPoolsJob(OwnerCurator ownerCurator, PoolManager poolManager,
-        SubscriptionServiceAdapter subAdapter) {
+    public RefreshPoolsJob(Configuration config, OwnerCurator ownerCurator, PoolManager poolManager,
+        ParallelPoolRefresher poolRefresher, SubscriptionServiceAdapter subAdapter) {
 
+        this.config = config;
         this.ownerCurator = ownerCurator;
         this.poolManager = poolManager;
+        this.poolRefresher = poolRefresher;
         this.subAdapter = subAdapter;
     }
 
@@ -146,6 +167,12 @@ public class RefreshPoolsJob implements AsyncJob {
             throw new JobExecutionException("Nothing to do; owner no longer exists: " + ownerKey, true);
         }
 
+        int threads = this.getThreads();
+        if (threads > 0 && this.poolRefresher.canRefresh()) {
+            this.refreshInGroups(context, owner, lazy, threads);
+            return;
+        }
+
         try {
             // Assume that we verified the request in the resource layer:
             poolManager.getRefresher(this.subAdapter, lazy)
@@ -159,6 +186,54 @@ public class RefreshPoolsJob implements AsyncJob {
         context.setJobResult("Pools refreshed for owner: %s", owner.getDisplayName());
     }
 
+    private int getThreads() throws JobExecutionException {
+        String fqcn = ConfigProperties.jobConfig(JOB_KEY, CFG_THREADS);
+        int value = this.config.getInt(fqcn, DEFAULT_THREADS);
+
+        if (value < 0) {
+            String errmsg = String.format(
+                "Invalid value for configuration \"%s\", must be zero or a positive integer: %s",
+                fqcn, value);
+
+            log.error(errmsg);
+            throw new JobExecutionException(errmsg, true);
+        }
+
+        return value;
+    }
+
+    private void refreshInGroups(JobExecutionContext context, Owner owner, boolean lazy, int threads)
+        throws JobExecutionException {
+
+        boolean incremental = this.config.getBoolean(ConfigProperties.INCREMENTAL_POOL_REFRESH);
+        ParallelPoolRefresher.Result result;
+
+        try {
+            // Resume from the groups committed by any earlier, failed attempt of this job
+            result = this.poolRefresher.refresh(this.subAdapter, owner, lazy, incremental,
+                context.getCheckpoint(), threads);
+        }
+        catch (Exception e) {
+            throw new JobExecutionException(e.getMessage(), e, false);
+        }
+
+        // Recorded with the status of the job, should the failure of a group fail this attempt
+        context.setCheckpoint(result.getCheckpoint());
+
+        if (result.getFailed() > 0) {
+            String errmsg = String.format(
+                "Pool refresh failed for %d subscription(s) of owner %s; %d subscription(s) refreshed",
+                result.getFailed(), owner.getKey(), result.getRefreshed());
+
+            log.error(errmsg);
+            throw new JobExecutionException(errmsg, false);
+        }
+
+        context.setJobResult("Pools refreshed for owner: %s; %d subscription(s) refreshed in %d group(s), " +
+            "%d unchanged, %d resumed", owner.getDisplayName(), result.getRefreshed(), result.getGroups(),
+            result.getUnchanged(), result.getResumed());
+    }
+
     /**
      * Creates a JobConfig configured to execute the refresh pools job. Callers may further manipulate
      * the JobConfig as necessary before queuing it.
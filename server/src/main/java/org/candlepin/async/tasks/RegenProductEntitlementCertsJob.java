@@ -22,11 +22,13 @@ import org.candlepin.async.JobConfigValidationException;
 import org.candlepin.async.JobConstraints;
 import org.candlepin.async.JobExecutionContext;
 import org.candlepin.async.JobExecutionException;
+import org.candlepin.controller.EntitlementCertificateRegenerator;
 import org.candlepin.controller.PoolManager;
 import org.candlepin.model.Owner;
 import org.candlepin.model.OwnerCurator;
 
 import com.google.inject.Inject;
+import com.google.inject.persist.Transactional;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -118,18 +120,25 @@ public class RegenProductEntitlementCertsJob implements AsyncJob {
 
     private PoolManager poolManager;
     private OwnerCurator ownerCurator;
+    private EntitlementCertificateRegenerator regenerator;
 
     /**
      * Instantiates a new instance of the RegenProductEntitlementCertsJob
      *
      * @param poolManager
-     *  the PoolManager instance to use for regenerating entitlement certificates
+     *  the PoolManager instance to use for lazily regenerating entitlement certificates
      *
      * @param ownerCurator
      *  the OwnerCurator instance to use for looking up owners related to the given product
+     *
+     * @param regenerator
+     *  the EntitlementCertificateRegenerator instance to use for immediately regenerating
+     *  entitlement certificates
      */
     @Inject
-    public RegenProductEntitlementCertsJob(PoolManager poolManager, OwnerCurator ownerCurator) {
+    public RegenProductEntitlementCertsJob(PoolManager poolManager, OwnerCurator ownerCurator,
+        EntitlementCertificateRegenerator regenerator) {
+
         if (poolManager == null) {
             throw new IllegalArgumentException("poolManager is null");
         }
@@ -138,8 +147,13 @@ public class RegenProductEntitlementCertsJob implements AsyncJob {
             throw new IllegalArgumentException("ownerCurator is null");
         }
 
+        if (regenerator == null) {
+            throw new IllegalArgumentException("regenerator is null");
+        }
+
         this.poolManager = poolManager;
         this.ownerCurator = ownerCurator;
+        this.regenerator = regenerator;
     }
 
     /**
@@ -161,8 +175,16 @@ public class RegenProductEntitlementCertsJob implements AsyncJob {
             log.info("Regenerating entitlement certificates for {} owners with product: {}",
                 owners.size(), productId);
 
-            for (Owner owner : owners) {
-                this.poolManager.regenerateCertificatesOf(owner, productId, lazyRegen);
+            if (lazyRegen) {
+                for (Owner owner : owners) {
+                    this.poolManager.regenerateCertificatesOf(owner, productId, true);
+                }
+            }
+            else {
+                // Regenerate in chunks, resuming from where any earlier attempt of this job left off
+                this.regenerator.regenerateCertificatesOf(owners, Collections.singleton(productId),
+                    context.getCheckpoint(), (processed, total, checkpoint) ->
+                    this.reportProgress(context, productId, processed, total, checkpoint));
             }
         }
         else {
@@ -173,6 +195,36 @@ public class RegenProductEntitlementCertsJob implements AsyncJob {
             owners.size(), productId);
     }
 
+    /**
+     * Records the progress of an immediate regeneration as the result of the job, and the given
+     * checkpoint as the point from which a retry of the job resumes. The job's status is managed by
+     * the persistence context of the executing thread, so committing this otherwise empty
+     * transaction writes both out while the job is still running.
+     *
+     * @param context
+     *  the execution context of the job
+     *
+     * @param productId
+     *  the ID of the product for which certificates are being regenerated
+     *
+     * @param processed
+     *  the number of entitlements processed so far
+     *
+     * @param total
+     *  the total number of entitlements to process
+     *
+     * @param checkpoint
+     *  the ID of the last entitlement processed
+     */
+    @Transactional
+    protected void reportProgress(JobExecutionContext context, String productId, int processed,
+        int total, String checkpoint) {
+
+        context.setCheckpoint(checkpoint);
+        context.setJobResult("Regenerated certificates for %d of %d entitlements using product: %s",
+            processed, total, productId);
+    }
+
     /**
      * Creates a JobConfig configured to execute this job. Callers may further manipulate the
      * JobConfig as necessary before queuing it.
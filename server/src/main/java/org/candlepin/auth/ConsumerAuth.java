@@ -14,6 +14,7 @@
  */
 package org.candlepin.auth;
 
+import org.candlepin.cache.ConsumerPrincipalCache;
 import org.candlepin.common.exceptions.GoneException;
 import org.candlepin.model.Consumer;
 import org.candlepin.model.ConsumerCurator;
@@ -39,15 +40,17 @@ public abstract class ConsumerAuth implements AuthProvider {
     protected ConsumerCurator consumerCurator;
     protected OwnerCurator ownerCurator;
     protected DeletedConsumerCurator deletedConsumerCurator;
+    protected ConsumerPrincipalCache principalCache;
     private Provider<I18n> i18nProvider;
 
     @Inject
     ConsumerAuth(ConsumerCurator consumerCurator, OwnerCurator ownerCurator,
-        DeletedConsumerCurator deletedConsumerCurator,
+        DeletedConsumerCurator deletedConsumerCurator, ConsumerPrincipalCache principalCache,
         Provider<I18n> i18nProvider) {
         this.consumerCurator = consumerCurator;
         this.ownerCurator = ownerCurator;
         this.deletedConsumerCurator = deletedConsumerCurator;
+        this.principalCache = principalCache;
         this.i18nProvider = i18nProvider;
     }
 
@@ -63,12 +66,8 @@ public abstract class ConsumerAuth implements AuthProvider {
             return null;
         }
 
-        final Consumer consumer = this.consumerCurator.getConsumer(consumerUuid);
+        final Consumer consumer = this.lookupConsumer(consumerUuid);
         if (consumer == null) {
-            if (wasDeleted(consumerUuid)) {
-                throw new GoneException(i18nProvider.get()
-                    .tr("Unit {0} has been deleted", consumerUuid), consumerUuid);
-            }
             return null;
         }
 
@@ -78,8 +77,36 @@ public abstract class ConsumerAuth implements AuthProvider {
         return principal;
     }
 
+    /**
+     * Looks up the {@link Consumer} with the given consumerUuid, checking whether
+     * it was deleted if it cannot be found.
+     *
+     * @param consumerUuid requested consumer
+     * @return the consumer, or null if no such consumer exists
+     * @throws GoneException if the consumer has been deleted
+     */
+    protected Consumer lookupConsumer(final String consumerUuid) {
+        if (this.principalCache.isDeleted(consumerUuid)) {
+            throw this.buildGoneException(consumerUuid);
+        }
+
+        final Consumer consumer = this.consumerCurator.getConsumer(consumerUuid);
+        if (consumer == null && wasDeleted(consumerUuid)) {
+            // Remember the deletion, as the client is likely to keep retrying for a while
+            this.principalCache.markDeleted(consumerUuid);
+            throw this.buildGoneException(consumerUuid);
+        }
+
+        return consumer;
+    }
+
     private boolean wasDeleted(final String consumerUuid) {
         return deletedConsumerCurator.countByConsumerUuid(consumerUuid) > 0;
     }
 
+    private GoneException buildGoneException(final String consumerUuid) {
+        return new GoneException(i18nProvider.get()
+            .tr("Unit {0} has been deleted", consumerUuid), consumerUuid);
+    }
+
 }
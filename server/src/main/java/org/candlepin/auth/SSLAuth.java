@@ -14,8 +14,11 @@
  */
 package org.candlepin.auth;
 
+import org.candlepin.cache.ConsumerPrincipalCache;
+import org.candlepin.model.Consumer;
 import org.candlepin.model.ConsumerCurator;
 import org.candlepin.model.DeletedConsumerCurator;
+import org.candlepin.model.Owner;
 import org.candlepin.model.OwnerCurator;
 
 import com.google.inject.Inject;
@@ -25,6 +28,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xnap.commons.i18n.I18n;
 
+import java.math.BigInteger;
 import java.security.cert.X509Certificate;
 import java.util.HashMap;
 import java.util.Map;
@@ -44,9 +48,9 @@ public class SSLAuth extends ConsumerAuth {
 
     @Inject
     SSLAuth(ConsumerCurator consumerCurator, OwnerCurator ownerCurator,
-        DeletedConsumerCurator deletedConsumerCurator,
+        DeletedConsumerCurator deletedConsumerCurator, ConsumerPrincipalCache principalCache,
         Provider<I18n> i18nProvider) {
-        super(consumerCurator, ownerCurator, deletedConsumerCurator, i18nProvider);
+        super(consumerCurator, ownerCurator, deletedConsumerCurator, principalCache, i18nProvider);
     }
 
     @Override
@@ -66,7 +70,35 @@ public class SSLAuth extends ConsumerAuth {
         // itself.
         X509Certificate identityCert = certs[0];
 
-        return createPrincipal(parseUuid(identityCert));
+        String certificateKey = this.principalCache.isEnabled() ? buildCertificateKey(identityCert) : null;
+        ConsumerPrincipal principal = this.principalCache.get(certificateKey);
+        if (principal != null) {
+            log.debug("principal found in cache for consumer {}", principal.getConsumer().getUuid());
+            return principal;
+        }
+
+        String consumerUuid = parseUuid(identityCert);
+        if (consumerUuid == null) {
+            return null;
+        }
+
+        Consumer consumer = this.lookupConsumer(consumerUuid);
+        if (consumer == null) {
+            return null;
+        }
+
+        Owner owner = this.ownerCurator.findOwnerById(consumer.getOwnerId());
+        this.principalCache.put(certificateKey, consumer, owner);
+
+        return new ConsumerPrincipal(consumer, owner);
+    }
+
+    // Identifies a certificate by its issuer and serial, which together are unique
+    private String buildCertificateKey(X509Certificate cert) {
+        X500Principal issuer = cert.getIssuerX500Principal();
+        BigInteger serial = cert.getSerialNumber();
+
+        return issuer != null && serial != null ? serial.toString(16) + ":" + issuer.getName() : null;
     }
 
     // Pulls the consumer uuid off of the x509 cert.
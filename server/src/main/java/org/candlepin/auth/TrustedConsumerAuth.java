@@ -14,6 +14,7 @@
  */
 package org.candlepin.auth;
 
+import org.candlepin.cache.ConsumerPrincipalCache;
 import org.candlepin.model.ConsumerCurator;
 import org.candlepin.model.DeletedConsumerCurator;
 import org.candlepin.model.OwnerCurator;
@@ -37,9 +38,9 @@ public class TrustedConsumerAuth extends ConsumerAuth {
 
     @Inject
     TrustedConsumerAuth(ConsumerCurator consumerCurator, OwnerCurator ownerCurator,
-        DeletedConsumerCurator deletedConsumerCurator,
+        DeletedConsumerCurator deletedConsumerCurator, ConsumerPrincipalCache principalCache,
         Provider<I18n> i18nProvider) {
-        super(consumerCurator, ownerCurator, deletedConsumerCurator, i18nProvider);
+        super(consumerCurator, ownerCurator, deletedConsumerCurator, principalCache, i18nProvider);
     }
 
     @Override
@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.bind;
+
+import org.candlepin.model.Consumer;
+import org.candlepin.model.Pool;
+import org.candlepin.model.PoolQuantity;
+import org.candlepin.model.Product;
+import org.candlepin.policy.ValidationResult;
+import org.candlepin.policy.js.compliance.ComplianceStatus;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+
+
+/**
+ * Carries the state computed while selecting the best pools for an autobind into the bind chain
+ * which creates the entitlements, so the chain does not need to re-fetch the candidate pools or
+ * re-evaluate the rules for pools which were already validated.
+ * <p></p>
+ * Pools are validated during selection with the best-pools caller and a quantity of one. Since
+ * every rule which fails for the bind caller also fails (or warns) for the best-pools caller, a
+ * clean result can be reused at bind time, except for the checks which depend on the bind caller
+ * or on the requested quantity. Those pools are re-validated by the bind chain as usual.
+ */
+public class AutobindContext {
+
+    private final Consumer consumer;
+    private ComplianceStatus complianceStatus;
+    private final Map<String, Pool> pools;
+    private final Map<String, ValidationResult> results;
+
+    public AutobindContext(Consumer consumer) {
+        this.consumer = consumer;
+        this.pools = new HashMap<>();
+        this.results = new HashMap<>();
+    }
+
+    public Consumer getConsumer() {
+        return this.consumer;
+    }
+
+    public ComplianceStatus getComplianceStatus() {
+        return this.complianceStatus;
+    }
+
+    public void setComplianceStatus(ComplianceStatus complianceStatus) {
+        this.complianceStatus = complianceStatus;
+    }
+
+    /**
+     * Records the result of validating the given pool with a quantity of one during pool
+     * selection.
+     *
+     * @param pool
+     *  the validated pool
+     *
+     * @param result
+     *  the result of the pre-entitlement rules check for the pool
+     */
+    public void addValidationResult(Pool pool, ValidationResult result) {
+        if (pool != null && pool.getId() != null) {
+            this.pools.put(pool.getId(), pool);
+            this.results.put(pool.getId(), result);
+        }
+    }
+
+    /**
+     * Fetches the pool validated during selection with the given ID.
+     *
+     * @param poolId
+     *  the ID of the pool to fetch
+     *
+     * @return
+     *  the pool with the given ID, or null if the pool was not validated during selection
+     */
+    public Pool getPool(String poolId) {
+        return this.pools.get(poolId);
+    }
+
+    public Map<String, ValidationResult> getValidationResults() {
+        return Collections.unmodifiableMap(this.results);
+    }
+
+    /**
+     * Checks whether or not the result of validating the given pool quantity during selection can
+     * be used in place of running the pre-entitlement rules again for the bind caller. This is
+     * only the case for pools which passed validation cleanly, are bound with a quantity of one,
+     * and are not subject to the bind-only instance-multiplier or unmapped guest start date
+     * checks.
+     *
+     * @param poolQuantity
+     *  the pool and quantity about to be bound
+     *
+     * @return
+     *  true if the selection result may be reused for the pool quantity; false otherwise
+     */
+    public boolean isReusable(PoolQuantity poolQuantity) {
+        Pool pool = poolQuantity.getPool();
+        ValidationResult result = pool != null ? this.results.get(pool.getId()) : null;
+
+        if (result == null || result.hasErrors() || result.hasWarnings()) {
+            return false;
+        }
+
+        Integer quantity = poolQuantity.getQuantity();
+        return quantity != null && quantity == 1 &&
+            !pool.hasMergedProductAttribute(Product.Attributes.INSTANCE_MULTIPLIER) &&
+            !pool.isUnmappedGuestPool();
+    }
+}
@@ -63,6 +63,21 @@ public class BindChain {
         operations.add(complianceOp);
     }
 
+    /**
+     * Sets the state carried over from autobind pool selection, allowing the chain to reuse the
+     * pools and rules results computed while selecting the pools to bind.
+     *
+     * @param autobindContext
+     *  the autobind context to use, or null to run the chain without one
+     *
+     * @return
+     *  this bind chain
+     */
+    public BindChain setAutobindContext(AutobindContext autobindContext) {
+        this.context.setAutobindContext(autobindContext);
+        return this;
+    }
+
     private boolean preProcess(BindContext context) {
         for (BindOperation operation : operations) {
             log.debug("Starting preprocess of {}", operation.getClass().getSimpleName());
@@ -106,10 +121,18 @@ public class BindChain {
 
     public Collection<Entitlement> run() throws EntitlementRefusedException {
         if (preProcess(context)) {
-            lock(context);
-            if (execute(context)) {
-                return context.getEntitlementMap().values();
+            try {
+                lock(context);
+                if (execute(context)) {
+                    return context.getEntitlementMap().values();
+                }
+            }
+            catch (RuntimeException e) {
+                context.cancelReservations();
+                throw e;
             }
+
+            context.cancelReservations();
         }
         throw context.getException();
     }
@@ -14,6 +14,8 @@
  */
 package org.candlepin.bind;
 
+import org.candlepin.controller.PoolQuantityEscrow;
+import org.candlepin.controller.PoolQuantityEscrow.Reservation;
 import org.candlepin.model.Consumer;
 import org.candlepin.model.ConsumerCurator;
 import org.candlepin.model.ConsumerType;
@@ -35,7 +37,11 @@ import org.xnap.commons.i18n.I18n;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * - Container class for holding bind information.
@@ -53,13 +59,16 @@ public class BindContext {
     private Map<String, PoolQuantity> poolQuantities;
     private Map<String, Entitlement> entitlementMap;
     private Map<String, Integer> quantities;
+    private Map<String, Reservation> reservations = new HashMap<>();
     private boolean quantityRequested = false;
     //change to generic type in future if needed
     private EntitlementRefusedException exception;
+    private AutobindContext autobindContext;
     private PoolCurator poolCurator;
     private ConsumerCurator consumerCurator;
     private ConsumerTypeCurator consumerTypeCurator;
     private OwnerCurator ownerCurator;
+    private PoolQuantityEscrow escrow;
     private I18n i18n;
 
     @Inject
@@ -67,6 +76,7 @@ public class BindContext {
         ConsumerCurator consumerCurator,
         ConsumerTypeCurator consumerTypeCurator,
         OwnerCurator ownerCurator,
+        PoolQuantityEscrow escrow,
         I18n i18n,
         @Assisted Consumer consumer,
         @Assisted Map<String, Integer> quantities) {
@@ -75,6 +85,7 @@ public class BindContext {
         this.consumerCurator = consumerCurator;
         this.consumerTypeCurator = consumerTypeCurator;
         this.ownerCurator = ownerCurator;
+        this.escrow = escrow;
         this.i18n = i18n;
         this.consumer = consumer;
         this.quantities = quantities;
@@ -103,7 +114,7 @@ public class BindContext {
         if (poolQuantities == null) {
             poolQuantities = new HashMap<>();
 
-            for (Pool pool : poolCurator.listAllByIds(quantities.keySet())) {
+            for (Pool pool : this.fetchPools()) {
                 Integer quantity = quantities.get(pool.getId());
                 if (quantity > 0) {
                     quantityRequested = true;
@@ -122,14 +133,92 @@ public class BindContext {
     }
 
     /**
-     * locks the pools and replaces the existing entities in poolQuantities.
+     * Fetches the requested pools, reusing those already fetched during autobind pool selection
+     * and only looking up the remainder.
+     */
+    private Iterable<Pool> fetchPools() {
+        if (autobindContext == null) {
+            return poolCurator.listAllByIds(quantities.keySet());
+        }
+
+        List<Pool> pools = new LinkedList<>();
+        Set<String> missing = new HashSet<>();
+        for (String poolId : quantities.keySet()) {
+            Pool pool = autobindContext.getPool(poolId);
+            if (pool != null) {
+                pools.add(pool);
+            }
+            else {
+                missing.add(poolId);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            for (Pool pool : poolCurator.listAllByIds(missing)) {
+                pools.add(pool);
+            }
+        }
+
+        return pools;
+    }
+
+    /**
+     * locks the pools and replaces the existing entities in poolQuantities. Quantity requested from
+     * pools eligible for escrow is reserved from this node's lease on the pool instead, in which
+     * case the pool is neither locked nor replaced.
      */
     public void lockPools() {
-        Collection<Pool> pools = poolCurator.lockAndLoad(poolQuantities.keySet());
-        this.poolCurator.refresh(pools);
-        for (Pool pool: pools) {
-            poolQuantities.get(pool.getId()).setPool(pool);
+        Set<String> poolIds = new HashSet<>(poolQuantities.keySet());
+
+        if (escrow.isEnabled()) {
+            ConsumerType ctype = this.getConsumerType();
+
+            for (PoolQuantity poolQuantity : poolQuantities.values()) {
+                Pool pool = poolQuantity.getPool();
+
+                if (poolQuantity.getQuantity() > 0 && escrow.isEligible(pool, ctype)) {
+                    Reservation reservation = escrow.reserve(pool, poolQuantity.getQuantity());
+
+                    if (reservation != null) {
+                        reservations.put(pool.getId(), reservation);
+                        poolIds.remove(pool.getId());
+                    }
+                }
+            }
+        }
+
+        if (!poolIds.isEmpty()) {
+            Collection<Pool> pools = poolCurator.lockAndLoad(poolIds);
+            this.poolCurator.refresh(pools);
+            for (Pool pool: pools) {
+                poolQuantities.get(pool.getId()).setPool(pool);
+            }
+        }
+    }
+
+    /**
+     * @param poolId
+     *  the ID of the pool to check
+     *
+     * @return
+     *  true if the quantity requested from the given pool was reserved from a lease, and is
+     *  already counted as consumed by the pool; false otherwise
+     */
+    public boolean isReserved(String poolId) {
+        return reservations.containsKey(poolId);
+    }
+
+    /**
+     * Returns the quantity reserved for a bind which did not go through to the leases it was
+     * reserved from. The reservations of a bind which did go through are settled along with its
+     * transaction instead, and returned if that transaction rolls back.
+     */
+    public void cancelReservations() {
+        for (Reservation reservation : reservations.values()) {
+            escrow.cancel(reservation);
         }
+
+        reservations.clear();
     }
 
     public Consumer getLockedConsumer() {
@@ -157,6 +246,19 @@ public class BindContext {
         return entitlementMap;
     }
 
+    /**
+     * @return
+     *  the state carried over from autobind pool selection, or null if the pools being bound
+     *  were not selected by an autobind
+     */
+    public AutobindContext getAutobindContext() {
+        return autobindContext;
+    }
+
+    public void setAutobindContext(AutobindContext autobindContext) {
+        this.autobindContext = autobindContext;
+    }
+
     public EntitlementRefusedException getException() {
         return exception;
     }
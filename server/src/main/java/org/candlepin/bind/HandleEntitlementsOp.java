@@ -82,14 +82,20 @@ public class HandleEntitlementsOp implements BindOperation {
             ent.setConsumer(consumer);
             ent.setOwner(pool.getOwner());
 
+            consumer.addEntitlement(ent);
+            consumer.setEntitlementCount(consumer.getEntitlementCount() + quantity);
+
+            // Quantity reserved from a lease is already counted, and the pool isn't locked
+            if (context.isReserved(pool.getId())) {
+                continue;
+            }
+
             pool.setConsumed(pool.getConsumed() + quantity);
 
             if (ctype.isManifest()) {
                 pool.setExported(pool.getExported() + quantity);
             }
 
-            consumer.addEntitlement(ent);
-            consumer.setEntitlementCount(consumer.getEntitlementCount() + quantity);
             poolsToSave.add(pool);
         }
 
@@ -27,6 +27,10 @@ import com.google.inject.assistedinject.Assisted;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -60,8 +64,7 @@ public class PreEntitlementRulesCheckOp implements BindOperation {
         Map<String, PoolQuantity> poolQuantityMap = context.getPoolQuantities();
         if (context.isQuantityRequested()) {
             log.debug("Running pre-entitlement rules.");
-            // XXX preEntitlement is run twice for new entitlement creation
-            results = enforcer.preEntitlement(context.getConsumer(), poolQuantityMap.values(), callerType);
+            results = this.runRules(context, poolQuantityMap.values());
 
             EntitlementRefusedException exception = checkResults();
             if (exception != null) {
@@ -74,7 +77,8 @@ public class PreEntitlementRulesCheckOp implements BindOperation {
 
     /**
      * The pool's quantity might have changed since we last fetched it,
-     * so ensure that the pool still has enough quantity left.
+     * so ensure that the pool still has enough quantity left. Pools whose
+     * quantity was reserved from a lease are only checked for expiration.
      * @param context
      */
     @Override
@@ -82,8 +86,10 @@ public class PreEntitlementRulesCheckOp implements BindOperation {
         if (context.isQuantityRequested()) {
             for (PoolQuantity poolQuantity : context.getPoolQuantities().values()) {
                 Pool pool = poolQuantity.getPool();
-                enforcer.finishValidation(results.get(pool.getId()),
-                    pool, context.getPoolQuantities().get(pool.getId()).getQuantity());
+
+                // Quantity reserved from a lease is already counted as consumed by the pool
+                int quantity = context.isReserved(pool.getId()) ? 0 : poolQuantity.getQuantity();
+                enforcer.finishValidation(results.get(pool.getId()), pool, quantity);
             }
 
             EntitlementRefusedException exception = checkResults();
@@ -96,6 +102,43 @@ public class PreEntitlementRulesCheckOp implements BindOperation {
         return true;
     }
 
+    /**
+     * Runs the pre-entitlement rules for the given pool quantities. If the pools were selected by
+     * an autobind, pools which were already validated cleanly during selection are not sent
+     * through the rules again; only their quantity and expiration checks are repeated here.
+     */
+    private Map<String, ValidationResult> runRules(BindContext context,
+        Collection<PoolQuantity> poolQuantities) {
+
+        AutobindContext autobindContext = context.getAutobindContext();
+        if (autobindContext == null || callerType != CallerType.BIND) {
+            return enforcer.preEntitlement(context.getConsumer(), poolQuantities, callerType);
+        }
+
+        Map<String, ValidationResult> output = new HashMap<>();
+        List<PoolQuantity> unvalidated = new ArrayList<>();
+
+        for (PoolQuantity poolQuantity : poolQuantities) {
+            if (autobindContext.isReusable(poolQuantity)) {
+                ValidationResult result = new ValidationResult();
+                enforcer.finishValidation(result, poolQuantity.getPool(), poolQuantity.getQuantity());
+                output.put(poolQuantity.getPool().getId(), result);
+            }
+            else {
+                unvalidated.add(poolQuantity);
+            }
+        }
+
+        log.debug("Reusing pool selection rules results for {} of {} pools", output.size(),
+            poolQuantities.size());
+
+        if (!unvalidated.isEmpty()) {
+            output.putAll(enforcer.preEntitlement(context.getConsumer(), unvalidated, callerType));
+        }
+
+        return output;
+    }
+
     private EntitlementRefusedException checkResults() {
         boolean success = true;
         for (Map.Entry<String, ValidationResult> entry : results.entrySet()) {
@@ -0,0 +1,167 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.cache;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.dto.rules.v1.ComplianceStatusDTO;
+
+import com.google.inject.Inject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Singleton;
+
+
+
+/**
+ * A bounded, least-recently-used cache of compliance rule results, keyed by a fingerprint of the
+ * inputs the rules were run against.
+ * <p></p>
+ * Most compliance checks are triggered by check-ins and status requests for consumers whose
+ * entitlements, installed products and facts have not changed since their last check, and which
+ * would produce the same result as before. Caching the output of the rules, rather than the
+ * resulting ComplianceStatus, allows those checks to skip running the rules while still building
+ * a status against the entitlements of the current session.
+ * <p></p>
+ * Results are copied in and out of the cache, so callers are free to modify them.
+ */
+@Singleton
+public class ComplianceStatusCache {
+
+    private final int maxSize;
+    private final Map<String, ComplianceStatusDTO> statuses;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    @Inject
+    public ComplianceStatusCache(Configuration config) {
+        this(config.getInt(ConfigProperties.COMPLIANCE_CACHE_SIZE));
+    }
+
+    /**
+     * Creates a new compliance status cache which holds at most the given number of results.
+     *
+     * @param maxSize
+     *  the maximum number of results to hold; zero or less disables caching
+     */
+    public ComplianceStatusCache(int maxSize) {
+        this.maxSize = Math.max(0, maxSize);
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+
+        this.statuses = new LinkedHashMap<String, ComplianceStatusDTO>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ComplianceStatusDTO> eldest) {
+                return this.size() > ComplianceStatusCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * @return
+     *  true if this cache holds any results; false if caching has been disabled
+     */
+    public boolean isEnabled() {
+        return this.maxSize > 0;
+    }
+
+    /**
+     * Fetches a copy of the compliance result cached for the given input fingerprint.
+     *
+     * @param key
+     *  the fingerprint of the inputs to the compliance rules
+     *
+     * @return
+     *  a copy of the cached result, or null if no result is cached for the fingerprint
+     */
+    public ComplianceStatusDTO get(String key) {
+        if (!this.isEnabled() || key == null) {
+            return null;
+        }
+
+        ComplianceStatusDTO status;
+        synchronized (this.statuses) {
+            status = this.statuses.get(key);
+        }
+
+        if (status == null) {
+            this.misses.incrementAndGet();
+            return null;
+        }
+
+        this.hits.incrementAndGet();
+        return status.clone();
+    }
+
+    /**
+     * Caches a copy of the compliance result calculated for the given input fingerprint.
+     *
+     * @param key
+     *  the fingerprint of the inputs to the compliance rules
+     *
+     * @param status
+     *  the result of the compliance rules
+     */
+    public void put(String key, ComplianceStatusDTO status) {
+        if (!this.isEnabled() || key == null || status == null) {
+            return;
+        }
+
+        ComplianceStatusDTO copy = status.clone();
+        synchronized (this.statuses) {
+            this.statuses.put(key, copy);
+        }
+    }
+
+    /**
+     * Removes all cached results.
+     */
+    public void clear() {
+        synchronized (this.statuses) {
+            this.statuses.clear();
+        }
+    }
+
+    /**
+     * @return
+     *  the number of results currently cached
+     */
+    public int size() {
+        synchronized (this.statuses) {
+            return this.statuses.size();
+        }
+    }
+
+    /**
+     * @return
+     *  the number of lookups served from the cache
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return
+     *  the number of lookups which required running the compliance rules
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+}
@@ -0,0 +1,312 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.cache;
+
+import org.candlepin.auth.ConsumerPrincipal;
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.Owner;
+
+import com.google.inject.Inject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import javax.inject.Singleton;
+
+
+
+/**
+ * A bounded, short-lived cache of the consumers and owners behind consumer principals, keyed by
+ * the client certificate the consumer authenticated with.
+ * <p></p>
+ * Every request authenticated with a consumer's identity certificate needs the consumer and its
+ * owner to build a principal, which costs a couple of queries before the request is even
+ * dispatched. Clients check in frequently with the same certificate, so the lookups are cached
+ * for a short time, and dropped early when the consumer is deleted, its owner is changed, or its
+ * identity certificate is regenerated.
+ * <p></p>
+ * Consumers known to have been deleted are cached as well, so that clients which keep retrying
+ * with the certificate of a deleted consumer do not repeatedly look for it in the database.
+ * <p></p>
+ * Only the fields of the consumer and owner needed for authorization are cached, rather than the
+ * entities themselves, as those belong to the session of the request which looked them up. A new
+ * principal is built for each lookup, from new consumer and owner instances which are detached
+ * from any session and only suitable for authorization.
+ */
+@Singleton
+public class ConsumerPrincipalCache {
+
+    /**
+     * The cached fields of a consumer and its owner, and the time after which they may no longer
+     * be used
+     */
+    private static class Entry {
+        private final String consumerId;
+        private final String consumerUuid;
+        private final String consumerName;
+        private final String username;
+        private final String ownerId;
+        private final String ownerKey;
+        private final String ownerDisplayName;
+        private final long expiration;
+
+        public Entry(Consumer consumer, Owner owner, long expiration) {
+            this.consumerId = consumer.getId();
+            this.consumerUuid = consumer.getUuid();
+            this.consumerName = consumer.getName();
+            this.username = consumer.getUsername();
+            this.ownerId = owner.getId();
+            this.ownerKey = owner.getKey();
+            this.ownerDisplayName = owner.getDisplayName();
+            this.expiration = expiration;
+        }
+
+        public ConsumerPrincipal buildPrincipal() {
+            Owner owner = new Owner(this.ownerKey, this.ownerDisplayName);
+            owner.setId(this.ownerId);
+
+            Consumer consumer = new Consumer();
+            consumer.setId(this.consumerId);
+            consumer.setUuid(this.consumerUuid);
+            consumer.setName(this.consumerName);
+            consumer.setUsername(this.username);
+            consumer.setOwner(owner);
+
+            return new ConsumerPrincipal(consumer, owner);
+        }
+    }
+
+    private final int maxSize;
+    private final long ttl;
+    private final LongSupplier clock;
+    private final Map<String, Entry> principals;
+    private final Map<String, Long> deletedConsumers;
+
+    @Inject
+    public ConsumerPrincipalCache(Configuration config) {
+        this(config.getInt(ConfigProperties.CONSUMER_PRINCIPAL_CACHE_SIZE),
+            config.getLong(ConfigProperties.CONSUMER_PRINCIPAL_CACHE_TTL));
+    }
+
+    /**
+     * Creates a new principal cache which holds at most the given number of principals and deleted
+     * consumers, each for the given length of time.
+     *
+     * @param maxSize
+     *  the maximum number of principals, and of deleted consumers, to hold; zero or less disables
+     *  caching
+     *
+     * @param ttl
+     *  the number of milliseconds for which cached lookups may be used; zero or less disables
+     *  caching
+     */
+    public ConsumerPrincipalCache(int maxSize, long ttl) {
+        this(maxSize, ttl, System::currentTimeMillis);
+    }
+
+    ConsumerPrincipalCache(int maxSize, long ttl, LongSupplier clock) {
+        this.maxSize = ttl > 0 ? Math.max(0, maxSize) : 0;
+        this.ttl = ttl;
+        this.clock = clock;
+
+        this.principals = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return this.size() > ConsumerPrincipalCache.this.maxSize;
+            }
+        };
+
+        this.deletedConsumers = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return this.size() > ConsumerPrincipalCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * @return
+     *  true if this cache holds any lookups; false if caching has been disabled
+     */
+    public boolean isEnabled() {
+        return this.maxSize > 0;
+    }
+
+    /**
+     * Builds a principal from the consumer and owner cached for the given certificate.
+     *
+     * @param certificateKey
+     *  a key uniquely identifying the certificate the consumer authenticated with
+     *
+     * @return
+     *  a new principal for the cached consumer, or null if no unexpired lookup is cached for the
+     *  certificate
+     */
+    public ConsumerPrincipal get(String certificateKey) {
+        if (!this.isEnabled() || certificateKey == null) {
+            return null;
+        }
+
+        Entry entry;
+        synchronized (this.principals) {
+            entry = this.principals.get(certificateKey);
+
+            if (entry != null && entry.expiration <= this.clock.getAsLong()) {
+                this.principals.remove(certificateKey);
+                entry = null;
+            }
+        }
+
+        return entry != null ? entry.buildPrincipal() : null;
+    }
+
+    /**
+     * Caches the consumer and owner looked up for the given certificate.
+     *
+     * @param certificateKey
+     *  a key uniquely identifying the certificate the consumer authenticated with
+     *
+     * @param consumer
+     *  the consumer identified by the certificate
+     *
+     * @param owner
+     *  the owner of the consumer
+     */
+    public void put(String certificateKey, Consumer consumer, Owner owner) {
+        if (!this.isEnabled() || certificateKey == null || consumer == null || owner == null ||
+            owner.getId() == null) {
+            return;
+        }
+
+        Entry entry = new Entry(consumer, owner, this.clock.getAsLong() + this.ttl);
+        synchronized (this.principals) {
+            this.principals.put(certificateKey, entry);
+        }
+    }
+
+    /**
+     * Checks whether or not the consumer with the given UUID is cached as having been deleted.
+     *
+     * @param consumerUuid
+     *  the UUID of the consumer to check
+     *
+     * @return
+     *  true if the consumer is known to have been deleted; false otherwise
+     */
+    public boolean isDeleted(String consumerUuid) {
+        if (!this.isEnabled() || consumerUuid == null) {
+            return false;
+        }
+
+        synchronized (this.deletedConsumers) {
+            Long expiration = this.deletedConsumers.get(consumerUuid);
+
+            if (expiration != null && expiration <= this.clock.getAsLong()) {
+                this.deletedConsumers.remove(consumerUuid);
+                expiration = null;
+            }
+
+            return expiration != null;
+        }
+    }
+
+    /**
+     * Caches the consumer with the given UUID as having been deleted.
+     *
+     * @param consumerUuid
+     *  the UUID of the deleted consumer
+     */
+    public void markDeleted(String consumerUuid) {
+        if (!this.isEnabled() || consumerUuid == null) {
+            return;
+        }
+
+        synchronized (this.deletedConsumers) {
+            this.deletedConsumers.put(consumerUuid, this.clock.getAsLong() + this.ttl);
+        }
+    }
+
+    /**
+     * Removes any lookups cached for the consumer with the given UUID. This should be called
+     * whenever the consumer is deleted or its identity certificate is regenerated, once the
+     * transaction making the change has completed; otherwise a concurrent request may cache the
+     * consumer again before the change is visible to it.
+     *
+     * @param consumerUuid
+     *  the UUID of the consumer to remove
+     */
+    public void invalidateConsumer(String consumerUuid) {
+        if (!this.isEnabled() || consumerUuid == null) {
+            return;
+        }
+
+        synchronized (this.principals) {
+            this.principals.values().removeIf(entry -> consumerUuid.equals(entry.consumerUuid));
+        }
+
+        synchronized (this.deletedConsumers) {
+            this.deletedConsumers.remove(consumerUuid);
+        }
+    }
+
+    /**
+     * Removes any lookups cached for consumers of the owner with the given ID. This should be
+     * called whenever the owner is updated or deleted, once the transaction making the change has
+     * completed.
+     *
+     * @param ownerId
+     *  the ID of the owner to remove
+     */
+    public void invalidateOwner(String ownerId) {
+        if (!this.isEnabled() || ownerId == null) {
+            return;
+        }
+
+        synchronized (this.principals) {
+            this.principals.values().removeIf(entry -> ownerId.equals(entry.ownerId));
+        }
+    }
+
+    /**
+     * Removes all cached lookups.
+     */
+    public void clear() {
+        synchronized (this.principals) {
+            this.principals.clear();
+        }
+
+        synchronized (this.deletedConsumers) {
+            this.deletedConsumers.clear();
+        }
+    }
+
+    /**
+     * @return
+     *  the number of principals currently cached, including any which have expired but have yet
+     *  to be removed
+     */
+    public int size() {
+        synchronized (this.principals) {
+            return this.principals.size();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.cache;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+
+import com.google.inject.Inject;
+
+import org.apache.commons.codec.binary.Hex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Singleton;
+
+
+
+/**
+ * A bounded, least-recently-used cache of encoded V3 entitlement content payloads.
+ * <p></p>
+ * The content payload carried in a V3 entitlement certificate is built entirely from the content
+ * paths of the entitled products. Building it requires constructing the path tree and Huffman
+ * tries for every path, which is expensive for products with many content sets. Since many
+ * consumers entitled to the same SKU end up with the same set of paths, the encoded payload is
+ * cached against a digest of the paths and reused.
+ * <p></p>
+ * The key is derived from the paths themselves rather than the versions of the products they
+ * came from, as the paths are also filtered per consumer by architecture, environment and the
+ * consumer's other entitlements; any such difference yields a different key.
+ */
+@Singleton
+public class ContentPayloadCache {
+    private static Logger log = LoggerFactory.getLogger(ContentPayloadCache.class);
+
+    /**
+     * Builds the content payload for a set of paths when it is not present in the cache
+     */
+    public interface PayloadBuilder {
+        byte[] build() throws IOException;
+    }
+
+    private final int maxSize;
+    private final Map<String, byte[]> payloads;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    @Inject
+    public ContentPayloadCache(Configuration config) {
+        this(config.getInt(ConfigProperties.CONTENT_PAYLOAD_CACHE_SIZE));
+    }
+
+    /**
+     * Creates a new content payload cache which holds at most the given number of payloads.
+     *
+     * @param maxSize
+     *  the maximum number of payloads to hold; zero or less disables caching
+     */
+    public ContentPayloadCache(int maxSize) {
+        this.maxSize = Math.max(0, maxSize);
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+
+        this.payloads = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return this.size() > ContentPayloadCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Fetches the encoded content payload for the given content paths, building and caching it
+     * with the provided builder if it has not yet been cached.
+     *
+     * @param paths
+     *  the content paths encoded in the payload
+     *
+     * @param builder
+     *  the builder to use to encode the payload if it is not already cached
+     *
+     * @throws IOException
+     *  if the payload needs to be built and cannot be encoded
+     *
+     * @return
+     *  the encoded content payload for the given paths
+     */
+    public byte[] get(Collection<String> paths, PayloadBuilder builder) throws IOException {
+        if (this.maxSize == 0) {
+            return builder.build();
+        }
+
+        String key = this.buildKey(paths);
+        byte[] payload;
+
+        synchronized (this.payloads) {
+            payload = this.payloads.get(key);
+        }
+
+        if (payload != null) {
+            this.hits.incrementAndGet();
+            return payload.clone();
+        }
+
+        this.misses.incrementAndGet();
+        payload = builder.build();
+
+        synchronized (this.payloads) {
+            this.payloads.put(key, payload.clone());
+        }
+
+        log.debug("Cached content payload for {} paths ({} bytes)", paths.size(), payload.length);
+        return payload;
+    }
+
+    private String buildKey(Collection<String> paths) {
+        // The payload encodes the set of paths, so the order in which they arrive does not matter
+        List<String> sorted = new ArrayList<>(paths);
+        Collections.sort(sorted);
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String path : sorted) {
+                digest.update(path.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+
+            return sorted.size() + ":" + new String(Hex.encodeHex(digest.digest()));
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Removes all cached payloads.
+     */
+    public void clear() {
+        synchronized (this.payloads) {
+            this.payloads.clear();
+        }
+    }
+
+    /**
+     * @return
+     *  the number of payloads currently cached
+     */
+    public int size() {
+        synchronized (this.payloads) {
+            return this.payloads.size();
+        }
+    }
+
+    /**
+     * @return
+     *  the number of payload lookups served from the cache
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return
+     *  the number of payload lookups which required building the payload
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+}
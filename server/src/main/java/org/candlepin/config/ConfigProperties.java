@@ -264,13 +264,32 @@ public class ConfigProperties {
     public static final String CRL_FILE_PATH = "candlepin.crl.file";
 
     /**
-     * The number of uncollected and expired cert serials will be processed at a time while updating
-     * the CRL file. It is important to note that both uncollected and expired serials will be batched
-     * at the specified amount.
+     * The number of uncollected and expired cert serials which will be marked as collected or deleted
+     * in a single transaction after updating the CRL file. It is important to note that both
+     * uncollected and expired serials will be batched at the specified amount.
      *
      */
     public static final String CRL_SERIAL_BATCH_SIZE = "candlepin.crl.update_serial_batch_size";
 
+    /**
+     * Whether or not to maintain an RFC 5280 delta CRL between rebuilds of the CRL file. While enabled,
+     * revocations are written to the much smaller delta CRL, and the CRL file is only rebuilt once the
+     * delta CRL grows too large or the CRL file grows too old.
+     */
+    public static final String CRL_DELTA_ENABLED = "candlepin.crl.delta.enabled";
+    public static final String CRL_DELTA_FILE_PATH = "candlepin.crl.delta.file";
+
+    /**
+     * The number of entries the delta CRL may list before the CRL file is rebuilt.
+     */
+    public static final String CRL_DELTA_MAX_ENTRIES = "candlepin.crl.delta.max_entries";
+
+    /**
+     * The number of hours after which the CRL file is rebuilt, regardless of the size of the delta
+     * CRL. This should be less than the nextUpdate delta of the CRL.
+     */
+    public static final String CRL_DELTA_REBUILD_INTERVAL = "candlepin.crl.delta.rebuild_interval_hours";
+
     public static final String IDENTITY_CERT_YEAR_ADDENDUM = "candlepin.identityCert.yr.addendum";
     /**
      * Identity certificate expiry threshold in days
@@ -301,6 +320,19 @@ public class ConfigProperties {
     public static final String ASYNC_JOBS_JOB_ENABLED = "enabled";
     public static final String ASYNC_JOBS_JOB_SCHEDULE = "schedule";
 
+    // Per-job number of dedicated job processing threads. Jobs configured with dedicated threads are
+    // processed only by those threads, limiting their concurrency on this node and preventing them
+    // from occupying the threads shared by all other jobs. Not to be confused with the "threads"
+    // setting some jobs use for the worker threads within a single execution.
+    public static final String ASYNC_JOBS_JOB_LISTENER_THREADS = "listener_threads";
+
+    // The maximum number of jobs for a single owner which may be executed concurrently on this node.
+    // Jobs received beyond this limit are put back at the end of the queue after the defer delay (in
+    // milliseconds), allowing jobs for other owners to be processed in the meantime. Zero or a
+    // negative value disables the limit.
+    public static final String ASYNC_JOBS_OWNER_THREADS = "candlepin.async.owner_threads";
+    public static final String ASYNC_JOBS_OWNER_DEFER_DELAY = "candlepin.async.owner_defer_delay";
+
     // "Temporary" configuration to limit the scope of the jobs/schedule endpoint. Only job keys
     // specified in this property will be allowed to be triggered via the schedule endpoint.
     public static final String ASYNC_JOBS_TRIGGERABLE_JOBS = "candlepin.async.triggerable_jobs";
@@ -357,6 +389,136 @@ public class ConfigProperties {
 
     public static final String ENTITLER_BULK_SIZE = "entitler.bulk.size";
 
+    /**
+     * The engine used to calculate consumer compliance status. May be "javascript" to use the
+     * get_status function of the rules, or "native" to use the Java implementation of the same
+     * rules. Both are expected to produce identical results.
+     */
+    public static final String COMPLIANCE_ENGINE = "candlepin.compliance.engine";
+    public static final String COMPLIANCE_ENGINE_JS = "javascript";
+    public static final String COMPLIANCE_ENGINE_NATIVE = "native";
+
+    /**
+     * The maximum number of compliance rule results kept in memory for reuse by status checks
+     * whose inputs have not changed. A value of zero disables the cache.
+     */
+    public static final String COMPLIANCE_CACHE_SIZE = "candlepin.compliance.cache.size";
+
+    /**
+     * The granularity, in minutes, of the dates on which cached compliance results may be reused.
+     * Results are only reused for status checks falling into the same window of this length.
+     */
+    public static final String COMPLIANCE_CACHE_DATE_BUCKET =
+        "candlepin.compliance.cache.date_bucket_minutes";
+
+    /**
+     * The maximum number of encoded V3 entitlement content payloads kept in memory for reuse by
+     * certificates with the same set of content paths. A value of zero disables the cache.
+     */
+    public static final String CONTENT_PAYLOAD_CACHE_SIZE = "candlepin.entitlement_cert.content_cache.size";
+
+    /**
+     * The number of entitlements whose certificates are regenerated, and committed, together when
+     * regenerating certificates in chunks.
+     */
+    public static final String ENTITLEMENT_CERT_REGEN_CHUNK_SIZE =
+        "candlepin.entitlement_cert.regen.chunk_size";
+
+    /** The number of threads used to regenerate chunks of entitlement certificates concurrently */
+    public static final String ENTITLEMENT_CERT_REGEN_THREADS = "candlepin.entitlement_cert.regen.threads";
+
+    /**
+     * The number of results fetched and serialized together when streaming query results to a
+     * client. Entities loaded for a batch are detached from the session once it has been written.
+     */
+    public static final String QUERY_STREAM_BATCH_SIZE = "candlepin.query.stream_batch_size";
+
+    /**
+     * The longest time, in milliseconds, a consumer check-in may be held in memory before it is
+     * written to the database. Check-ins are coalesced and written in batches on this interval. A
+     * value of zero writes each check-in immediately.
+     */
+    public static final String CONSUMER_CHECKIN_FLUSH_INTERVAL = "candlepin.consumer_checkin.flush_interval";
+
+    /** The number of pending consumer check-ins which triggers an early write */
+    public static final String CONSUMER_CHECKIN_FLUSH_THRESHOLD =
+        "candlepin.consumer_checkin.flush_threshold";
+
+    /**
+     * The maximum number of consumer principals, keyed by client certificate, and of deleted
+     * consumers kept in memory for authenticating consumers. A value of zero disables the cache.
+     */
+    public static final String CONSUMER_PRINCIPAL_CACHE_SIZE = "candlepin.auth.principal_cache.size";
+
+    /**
+     * The time, in milliseconds, for which a cached consumer principal or deleted consumer may be
+     * used to authenticate consumers. A value of zero disables the cache.
+     */
+    public static final String CONSUMER_PRINCIPAL_CACHE_TTL = "candlepin.auth.principal_cache.ttl";
+
+    /**
+     * The number of hosts of a hypervisor report which are reconciled, and committed, together.
+     * Existing hosts are loaded for the whole report up front, rather than one at a time. A value
+     * of zero reconciles, and commits, each host on its own.
+     */
+    public static final String HYPERVISOR_UPDATE_CHUNK_SIZE = "candlepin.hypervisor_update.chunk_size";
+
+    /**
+     * The number of RSA key pairs generated ahead of time for new consumers. A value of zero
+     * generates each key pair as it is needed.
+     */
+    public static final String KEY_PAIR_POOL_SIZE = "candlepin.pki.key_pair_pool.size";
+
+    /** The number of low-priority threads generating key pairs for the key pair pool */
+    public static final String KEY_PAIR_POOL_THREADS = "candlepin.pki.key_pair_pool.threads";
+
+    /**
+     * Whether or not pool refreshes only process the subscriptions which have changed since their
+     * pools were last refreshed, as determined by a fingerprint of each subscription and the
+     * products it references. When disabled, every subscription is processed on each refresh.
+     */
+    public static final String INCREMENTAL_POOL_REFRESH = "candlepin.pool_refresh.incremental";
+
+    /**
+     * Whether or not binds to large pools are granted from blocks of quantity leased by this node,
+     * rather than by locking the pool and updating its consumed quantity on every bind.
+     */
+    public static final String POOL_ESCROW_ENABLED = "candlepin.pool_escrow.enabled";
+
+    /**
+     * The smallest quantity a pool must have for its binds to be granted from leases. Unlimited
+     * pools are always eligible.
+     */
+    public static final String POOL_ESCROW_MIN_QUANTITY = "candlepin.pool_escrow.min_quantity";
+
+    /** The quantity leased from a pool at a time */
+    public static final String POOL_ESCROW_LEASE_SIZE = "candlepin.pool_escrow.lease_size";
+
+    /**
+     * The time, in milliseconds, for which a lease holds its quantity without being renewed. Leases
+     * of a node which stops renewing them are reclaimed once they expire.
+     */
+    public static final String POOL_ESCROW_LEASE_DURATION = "candlepin.pool_escrow.lease_duration";
+
+    /**
+     * The interval, in milliseconds, on which leases are renewed, idle leases are released and
+     * expired leases are reclaimed. This must be well under half of the lease duration.
+     */
+    public static final String POOL_ESCROW_RECONCILE_INTERVAL = "candlepin.pool_escrow.reconcile_interval";
+
+    /**
+     * Whether or not owner info is stored in a per-owner summary and served from it until the
+     * owner's entitlements or pools change.
+     */
+    public static final String OWNER_INFO_SUMMARY_ENABLED = "candlepin.owner_info.summary.enabled";
+
+    /**
+     * The maximum age, in seconds, of a stored owner info summary. Summaries are recomputed once
+     * they reach this age, bounding the staleness of counts which are not tracked by the summary,
+     * such as consumer registrations and compliance status changes.
+     */
+    public static final String OWNER_INFO_SUMMARY_MAX_AGE = "candlepin.owner_info.summary.max_age";
+
     public static final Map<String, String> DEFAULT_PROPERTIES = new HashMap<String, String>() {
         private static final long serialVersionUID = 1L;
 
@@ -409,6 +571,28 @@ public class ConfigProperties {
             this.put(AUDIT_FILTER_ENABLED, "false");
 
             this.put(ENTITLER_BULK_SIZE, "1000");
+            this.put(COMPLIANCE_ENGINE, COMPLIANCE_ENGINE_JS);
+            this.put(COMPLIANCE_CACHE_SIZE, "10000");
+            this.put(COMPLIANCE_CACHE_DATE_BUCKET, "60");
+            this.put(CONTENT_PAYLOAD_CACHE_SIZE, "500");
+            this.put(ENTITLEMENT_CERT_REGEN_CHUNK_SIZE, "250");
+            this.put(ENTITLEMENT_CERT_REGEN_THREADS, "4");
+            this.put(QUERY_STREAM_BATCH_SIZE, "500");
+            this.put(CONSUMER_CHECKIN_FLUSH_INTERVAL, "5000"); // milliseconds
+            this.put(CONSUMER_CHECKIN_FLUSH_THRESHOLD, "1000");
+            this.put(CONSUMER_PRINCIPAL_CACHE_SIZE, "10000");
+            this.put(CONSUMER_PRINCIPAL_CACHE_TTL, "30000"); // milliseconds
+            this.put(HYPERVISOR_UPDATE_CHUNK_SIZE, "100");
+            this.put(KEY_PAIR_POOL_SIZE, "0");
+            this.put(KEY_PAIR_POOL_THREADS, "1");
+            this.put(INCREMENTAL_POOL_REFRESH, "false");
+            this.put(POOL_ESCROW_ENABLED, "false");
+            this.put(POOL_ESCROW_MIN_QUANTITY, "1000");
+            this.put(POOL_ESCROW_LEASE_SIZE, "50");
+            this.put(POOL_ESCROW_LEASE_DURATION, "600000"); // milliseconds
+            this.put(POOL_ESCROW_RECONCILE_INTERVAL, "60000"); // milliseconds
+            this.put(OWNER_INFO_SUMMARY_ENABLED, "false");
+            this.put(OWNER_INFO_SUMMARY_MAX_AGE, "300"); // seconds
 
             /**
             * These default DO_NOT_FILTER events are those events needed by
@@ -431,6 +615,10 @@ public class ConfigProperties {
             this.put(CRL_FILE_PATH, "/var/lib/candlepin/candlepin-crl.crl");
             this.put(CRL_NEXT_UPDATE_DELTA, "1");
             this.put(CRL_SERIAL_BATCH_SIZE, "1000000");
+            this.put(CRL_DELTA_ENABLED, "false");
+            this.put(CRL_DELTA_FILE_PATH, "/var/lib/candlepin/candlepin-delta-crl.crl");
+            this.put(CRL_DELTA_MAX_ENTRIES, "100000");
+            this.put(CRL_DELTA_REBUILD_INTERVAL, "12");
 
             this.put(SYNC_WORK_DIR, "/var/cache/candlepin/sync");
             this.put(CONSUMER_FACTS_MATCHER, ".*");
@@ -504,6 +692,8 @@ public class ConfigProperties {
             this.put(ASYNC_JOBS_QUEUE_WHILE_SUSPENDED, "true");
             this.put(ASYNC_JOBS_SCHEDULER_ENABLED, "true");
             this.put(ASYNC_JOBS_THREAD_SHUTDOWN_TIMEOUT, "600"); // 10 minutes
+            this.put(ASYNC_JOBS_OWNER_THREADS, "0");
+            this.put(ASYNC_JOBS_OWNER_DEFER_DELAY, "1000");
 
             this.put(jobConfig(ActiveEntitlementJob.JOB_KEY, ASYNC_JOBS_JOB_SCHEDULE),
                 ActiveEntitlementJob.DEFAULT_SCHEDULE);
@@ -20,6 +20,7 @@ import org.candlepin.audit.Event.Type;
 import org.candlepin.audit.EventBuilder;
 import org.candlepin.audit.EventFactory;
 import org.candlepin.audit.EventSink;
+import org.candlepin.bind.AutobindContext;
 import org.candlepin.bind.BindChainFactory;
 import org.candlepin.bind.PoolOperationCallback;
 import org.candlepin.common.config.Configuration;
@@ -39,14 +40,17 @@ import org.candlepin.model.Content;
 import org.candlepin.model.Entitlement;
 import org.candlepin.model.EntitlementCertificateCurator;
 import org.candlepin.model.EntitlementCurator;
+import org.candlepin.model.Owned;
 import org.candlepin.model.Owner;
 import org.candlepin.model.OwnerContentCurator;
 import org.candlepin.model.OwnerCurator;
+import org.candlepin.model.OwnerInfoSummaryCurator;
 import org.candlepin.model.OwnerProductCurator;
 import org.candlepin.model.Pool;
 import org.candlepin.model.Pool.PoolType;
 import org.candlepin.model.PoolCurator;
 import org.candlepin.model.PoolFilterBuilder;
+import org.candlepin.model.PoolIndex;
 import org.candlepin.model.PoolQuantity;
 import org.candlepin.model.Product;
 import org.candlepin.model.ProductCurator;
@@ -117,6 +121,7 @@ public class CandlepinPoolManager implements PoolManager {
     private I18n i18n;
 
     private PoolCurator poolCurator;
+    private PoolIndex poolIndex;
     private static Logger log = LoggerFactory.getLogger(CandlepinPoolManager.class);
 
     private static final int MAX_ENTITLE_RETRIES = 3;
@@ -144,6 +149,7 @@ public class CandlepinPoolManager implements PoolManager {
     private CdnCurator cdnCurator;
     private OwnerManager ownerManager;
     private BindChainFactory bindChainFactory;
+    private OwnerInfoSummaryCurator ownerInfoSummaryCurator;
 
     @Inject protected JsonProvider jsonProvider;
 
@@ -179,9 +185,12 @@ public class CandlepinPoolManager implements PoolManager {
         OwnerManager ownerManager,
         CdnCurator cdnCurator,
         I18n i18n,
-        BindChainFactory bindChainFactory) {
+        BindChainFactory bindChainFactory,
+        PoolIndex poolIndex,
+        OwnerInfoSummaryCurator ownerInfoSummaryCurator) {
 
         this.poolCurator = poolCurator;
+        this.poolIndex = poolIndex;
         this.sink = sink;
         this.eventFactory = eventFactory;
         this.config = config;
@@ -207,18 +216,49 @@ public class CandlepinPoolManager implements PoolManager {
         this.cdnCurator = cdnCurator;
         this.i18n = i18n;
         this.bindChainFactory = bindChainFactory;
+        this.ownerInfoSummaryCurator = ownerInfoSummaryCurator;
     }
-
     /*
      * We need to update/regen entitlements in the same transaction we update pools
      * so we don't miss anything
      */
     @Transactional
-    @SuppressWarnings("checkstyle:methodlength")
     @Traceable
     void refreshPoolsWithRegeneration(SubscriptionServiceAdapter subAdapter,
         @TraceableParam("owner") Owner owner, boolean lazy) {
 
+        boolean incremental = this.config.getBoolean(ConfigProperties.INCREMENTAL_POOL_REFRESH);
+        PoolRefreshPlan plan = this.planPoolRefresh(subAdapter, owner, incremental);
+
+        this.refreshSubscriptions(plan.getOwner(), plan.getPending(), plan.getImportedProducts(),
+            plan.getUpdatedProducts(), plan.getFingerprints(), lazy);
+
+        this.completePoolRefresh(plan, lazy);
+    }
+
+    /**
+     * Begins a pool refresh for the given owner by fetching its subscriptions from upstream and
+     * importing their products and content. The pools of the subscriptions are left untouched;
+     * they are refreshed by processing the returned plan.
+     *
+     * @param subAdapter
+     *  the subscription service adapter from which to fetch the subscriptions of the owner
+     *
+     * @param owner
+     *  the owner whose pools are to be refreshed
+     *
+     * @param skipUnchanged
+     *  whether or not to skip subscriptions whose fingerprint has not changed since their pools
+     *  were last refreshed
+     *
+     * @return
+     *  the plan of the pool refresh
+     */
+    @Transactional
+    @SuppressWarnings("checkstyle:methodlength")
+    PoolRefreshPlan planPoolRefresh(SubscriptionServiceAdapter subAdapter, Owner owner,
+        boolean skipUnchanged) {
+
         Date now = new Date();
         owner = this.resolveOwner(owner);
         log.info("Refreshing pools for owner: {}", owner);
@@ -260,9 +300,13 @@ public class CandlepinPoolManager implements PoolManager {
             .importProducts(owner, productMap, importedContent);
 
         Map<String, Product> importedProducts = importResult.getImportedEntities();
-        Map<String, Product> updatedProducts = importResult.getUpdatedEntities();
 
-        log.debug("Refreshing {} pool(s)...", subscriptionMap.size());
+        // Subscriptions whose fingerprint is unchanged since their pools were last refreshed need
+        // not be processed again when skipping unchanged subscriptions
+        Map<String, String> fingerprints = this.poolCurator.getMasterPoolRefreshFingerprints(owner);
+        Map<String, String> updatedFingerprints = new HashMap<>();
+        List<SubscriptionInfo> pending = new ArrayList<>();
+
         for (Iterator<? extends SubscriptionInfo> si = subscriptionMap.values().iterator(); si.hasNext();) {
             SubscriptionInfo sub = si.next();
 
@@ -273,17 +317,137 @@ public class CandlepinPoolManager implements PoolManager {
                 continue;
             }
 
+            String fingerprint = SubscriptionFingerprinter.fingerprint(sub, importedProducts);
+            if (fingerprint.equals(fingerprints.get(sub.getId()))) {
+                if (skipUnchanged) {
+                    log.debug("Skipping unchanged subscription: {}", sub);
+                    continue;
+                }
+            }
+            else {
+                updatedFingerprints.put(sub.getId(), fingerprint);
+            }
+
+            pending.add(sub);
+        }
+
+        return new PoolRefreshPlan(owner, now, new HashSet<>(subscriptionMap.keySet()), pending,
+            updatedFingerprints, importedProducts, importResult.getUpdatedEntities());
+    }
+
+    /**
+     * Refreshes the pools of a group of the pending subscriptions of a pool refresh within a
+     * transaction of its own. The existing pools of the subscriptions are locked up front, in the
+     * order of their IDs, so groups processed concurrently cannot deadlock on them.
+     * <p></p>
+     * Once the transaction commits, the subscriptions of the group are recorded as refreshed, and
+     * will be skipped by refreshes which skip unchanged subscriptions.
+     *
+     * @param plan
+     *  the plan of the pool refresh
+     *
+     * @param subscriptions
+     *  the group of pending subscriptions whose pools are to be refreshed
+     *
+     * @param lazy
+     *  whether or not to regenerate the certificates of affected entitlements lazily
+     */
+    @Transactional
+    void refreshSubscriptionGroup(PoolRefreshPlan plan, Collection<SubscriptionInfo> subscriptions,
+        boolean lazy) {
+
+        Owner owner = this.resolveOwner(plan.getOwner());
+
+        // The products of the plan belong to the session in which it was built
+        Set<String> productIds = new HashSet<>();
+        Set<String> subscriptionIds = new HashSet<>();
+
+        for (SubscriptionInfo sub : subscriptions) {
+            subscriptionIds.add(sub.getId());
+
+            addProductIds(productIds, sub.getProduct());
+            addProductIds(productIds, sub.getDerivedProduct());
+            addProductIds(productIds, sub.getProvidedProducts());
+            addProductIds(productIds, sub.getDerivedProvidedProducts());
+        }
+
+        Map<String, Product> importedProducts = new HashMap<>();
+        Map<String, Product> updatedProducts = new HashMap<>();
+
+        for (Product product : this.ownerProductCurator.getProductsByIds(owner, productIds)) {
+            importedProducts.put(product.getId(), product);
+
+            if (plan.getUpdatedProducts().containsKey(product.getId())) {
+                updatedProducts.put(product.getId(), product);
+            }
+        }
+
+        this.poolCurator.lock(this.poolCurator.getPoolsBySubscriptionIds(subscriptionIds).list());
+
+        this.refreshSubscriptions(owner, subscriptions, importedProducts, updatedProducts,
+            plan.getFingerprints(), lazy);
+    }
+
+    private static void addProductIds(Set<String> productIds, ProductInfo product) {
+        if (product != null && product.getId() != null) {
+            productIds.add(product.getId());
+        }
+    }
+
+    private static void addProductIds(Set<String> productIds, Collection<? extends ProductInfo> products) {
+        if (products != null) {
+            for (ProductInfo product : products) {
+                addProductIds(productIds, product);
+            }
+        }
+    }
+
+    private void refreshSubscriptions(Owner owner, Collection<SubscriptionInfo> subscriptions,
+        Map<String, Product> importedProducts, Map<String, Product> updatedProducts,
+        Map<String, String> fingerprints, boolean lazy) {
+
+        log.debug("Refreshing {} pool(s)...", subscriptions.size());
+        Map<String, String> updatedFingerprints = new HashMap<>();
+
+        for (SubscriptionInfo sub : subscriptions) {
             log.debug("Processing subscription: {}", sub);
             Pool pool = this.convertToMasterPoolImpl(sub, owner, importedProducts);
             pool.setLocked(true);
             this.refreshPoolsForMasterPool(pool, false, lazy, updatedProducts);
+
+            if (fingerprints.containsKey(sub.getId())) {
+                updatedFingerprints.put(sub.getId(), fingerprints.get(sub.getId()));
+            }
         }
 
+        if (!updatedFingerprints.isEmpty()) {
+            this.poolCurator.updateMasterPoolRefreshFingerprints(owner, updatedFingerprints);
+        }
+    }
+
+    /**
+     * Completes a pool refresh once its pending subscriptions have been processed, by deleting the
+     * pools of subscriptions which no longer exist upstream and updating the floating pools of the
+     * owner.
+     *
+     * @param plan
+     *  the plan of the pool refresh
+     *
+     * @param lazy
+     *  whether or not to regenerate the certificates of affected entitlements lazily
+     *
+     * @return
+     *  the owner whose pools were refreshed
+     */
+    @Transactional
+    Owner completePoolRefresh(PoolRefreshPlan plan, boolean lazy) {
+        Owner owner = this.resolveOwner(plan.getOwner());
+
         // delete pools whose subscription disappeared:
         log.debug("Deleting pools for absent subscriptions...");
         List<Pool> poolsToDelete = new ArrayList<>();
 
-        for (Pool pool : poolCurator.getPoolsFromBadSubs(owner, subscriptionMap.keySet())) {
+        for (Pool pool : poolCurator.getPoolsFromBadSubs(owner, plan.getSubscriptionIds())) {
             if (this.isManaged(pool)) {
                 poolsToDelete.add(pool);
             }
@@ -291,13 +455,32 @@ public class CandlepinPoolManager implements PoolManager {
 
         deletePools(poolsToDelete);
 
-        // TODO: break this call into smaller pieces. There may be lots of floating pools
-        log.debug("Updating floating pools...");
-        List<Pool> floatingPools = poolCurator.getOwnersFloatingPools(owner);
-        updateFloatingPools(floatingPools, lazy, updatedProducts);
+        // Stack derived pools only change along with the pools or products they're derived from
+        Map<String, Product> updatedProducts = plan.getUpdatedProducts();
+        if (plan.getUnchanged() == 0 || !plan.getPending().isEmpty() || !poolsToDelete.isEmpty() ||
+            !updatedProducts.isEmpty()) {
+
+            if (!updatedProducts.isEmpty()) {
+                updatedProducts = new HashMap<>();
+
+                for (Product product : this.ownerProductCurator.getProductsByIds(owner,
+                    plan.getUpdatedProducts().keySet())) {
 
-        log.info("Refresh pools for owner: {} completed in: {}ms", owner.getKey(),
-            System.currentTimeMillis() - now.getTime());
+                    updatedProducts.put(product.getId(), product);
+                }
+            }
+
+            // TODO: break this call into smaller pieces. There may be lots of floating pools
+            log.debug("Updating floating pools...");
+            List<Pool> floatingPools = poolCurator.getOwnersFloatingPools(owner);
+            updateFloatingPools(floatingPools, lazy, updatedProducts);
+        }
+
+        log.info("Refresh pools for owner: {} completed in: {}ms; processed {} subscription(s), " +
+            "skipped {} unchanged", owner.getKey(), System.currentTimeMillis() - plan.getStarted().getTime(),
+            plan.getPending().size(), plan.getUnchanged());
+
+        return owner;
     }
 
     private Owner resolveOwner(Owner owner) {
@@ -605,6 +788,10 @@ public class CandlepinPoolManager implements PoolManager {
             this.poolCurator.flush();
         }
 
+        this.markOwnerInfoStale(updatedPools.stream()
+            .map(PoolUpdate::getPool)
+            .collect(Collectors.toList()));
+
         // Check if we need to execute the revocation plan
         if (poolsQtyUpdated.size() > 0) {
             this.revokeEntitlementsFromOverflowingPools(poolsQtyUpdated);
@@ -745,6 +932,8 @@ public class CandlepinPoolManager implements PoolManager {
                 pool = this.poolCurator.merge(pool);
                 log.debug("  updated pool: {}", pool);
             }
+
+            this.markOwnerInfoStale(Collections.singleton(pool));
         }
 
         return pool;
@@ -773,6 +962,8 @@ public class CandlepinPoolManager implements PoolManager {
                     log.debug("  updated pool: {}", pool);
                 }
             }
+
+            this.markOwnerInfoStale(pools);
         }
 
         return pools;
@@ -1161,6 +1352,7 @@ public class CandlepinPoolManager implements PoolManager {
         Collection<String> fromPools = data.getPossiblePools();
         Date entitleDate = data.getOnDate();
         String ownerId = consumer.getOwnerId();
+        AutobindContext autobindContext = new AutobindContext(consumer);
 
         List<PoolQuantity> bestPools = new ArrayList<>();
         // fromPools will be empty if the dev pool was already created.
@@ -1170,14 +1362,20 @@ public class CandlepinPoolManager implements PoolManager {
             bestPools.add(pq);
         }
         else {
-            bestPools = getBestPools(consumer, productIds, entitleDate, ownerId, null, fromPools);
+            bestPools = getBestPools(consumer, productIds, entitleDate, ownerId, null, fromPools,
+                autobindContext);
         }
 
         if (bestPools == null) {
             return null;
         }
 
-        return entitleByPools(consumer, convertToMap(bestPools));
+        Map<String, Integer> poolQuantities = convertToMap(bestPools);
+        if (MapUtils.isEmpty(poolQuantities)) {
+            return new ArrayList<>();
+        }
+
+        return createEntitlements(consumer, poolQuantities, CallerType.BIND, autobindContext);
     }
 
     /**
@@ -1479,6 +1677,27 @@ public class CandlepinPoolManager implements PoolManager {
         String serviceLevelOverride, Collection<String> fromPools)
         throws EntitlementRefusedException {
 
+        return this.getBestPools(consumer, productIds, entitleDate, ownerId, serviceLevelOverride,
+            fromPools, null);
+    }
+
+    /**
+     * Selects the best pools for the given consumer, recording the compliance status and the
+     * rules results computed along the way in the given autobind context so they may be reused
+     * when binding the selected pools.
+     *
+     * @param autobindContext
+     *  the autobind context in which to record the selection state, or null if the selection
+     *  state is not needed
+     *
+     * @return
+     *  the selected pools and quantities, sorted to avoid deadlocks when locking them
+     */
+    protected List<PoolQuantity> getBestPools(Consumer consumer,
+        String[] productIds, Date entitleDate, String ownerId,
+        String serviceLevelOverride, Collection<String> fromPools, AutobindContext autobindContext)
+        throws EntitlementRefusedException {
+
         Map<String, ValidationResult> failedResults = new HashMap<>();
 
         Date activePoolDate = entitleDate;
@@ -1497,6 +1716,10 @@ public class CandlepinPoolManager implements PoolManager {
         // array of product IDs with the array the consumer actually needs. (i.e. during
         // a healing request)
         ComplianceStatus compliance = complianceRules.getStatus(consumer, entitleDate, false);
+        if (autobindContext != null) {
+            autobindContext.setComplianceStatus(compliance);
+        }
+
         if (productIds == null || productIds.length == 0) {
             log.debug("No products specified for bind, checking compliance to see what is needed.");
             Set<String> tmpSet = new HashSet<>();
@@ -1512,81 +1735,40 @@ public class CandlepinPoolManager implements PoolManager {
             }
         }
 
-        // Bulk fetch our provided product IDs so we're not hitting the DB several times
-        // for this lookup.
-        Map<String, Set<String>> providedProductIds = this.poolCurator.getProvidedProductIds(allOwnerPools);
+        // Narrow the available pools down to those which provide a requested product, complete a
+        // partial stack, or match the consumer's add-ons or role, using the owner's pool index
+        // rather than examining each pool's attributes. Provided product IDs are only fetched for
+        // pools which have not yet been indexed or have changed since.
+        Set<String> partialStackIds = compliance != null ? compliance.getPartialStacks().keySet() : null;
+        List<Pool> candidatePools = this.poolIndex.select(ownerId, allOwnerPools,
+            this.poolCurator::getProvidedProductIds, Arrays.asList(productIds), partialStackIds,
+            consumer.getAddOns(), consumer.getRole());
 
-        for (Pool pool : allOwnerPools) {
-            boolean providesProduct = false;
-            boolean matchesAddOns = false;
-            boolean matchesRole = false;
-
-            // We want to complete partial stacks if possible, even if they do not provide any products
-            Product poolProduct = pool.getProduct();
-            String stackingId = poolProduct.getAttributeValue(Product.Attributes.STACKING_ID);
+        log.debug("Pool index selected {} of {} available pools", candidatePools.size(),
+            allOwnerPools.size());
 
-            if (stackingId != null && compliance.getPartialStacks().containsKey(stackingId)) {
-                providesProduct = true;
-            }
-            else {
-                Set<String> poolProvidedProductIds = providedProductIds.get(pool.getId());
-                String poolProductId = pool.getProduct() != null ? pool.getProduct().getId() : null;
-
-                if (poolProductId != null) {
-                    // Add the base product to our list of "provided" products
-                    if (poolProvidedProductIds != null) {
-                        poolProvidedProductIds.add(poolProductId);
-                    }
-                    else {
-                        poolProvidedProductIds = Collections.singleton(poolProductId);
-                    }
-                }
+        // Validate all of the candidates in a single pass through the rules
+        List<PoolQuantity> candidateQuantities = new ArrayList<>(candidatePools.size());
+        for (Pool pool : candidatePools) {
+            candidateQuantities.add(new PoolQuantity(pool, 1));
+        }
 
-                if (poolProvidedProductIds != null) {
-                    for (String productId : productIds) {
-                        if (poolProvidedProductIds.contains(productId)) {
-                            providesProduct = true;
-                            break;
-                        }
-                    }
-                }
+        Map<String, ValidationResult> results = candidateQuantities.isEmpty() ?
+            Collections.emptyMap() :
+            enforcer.preEntitlement(consumer, candidateQuantities, CallerType.BEST_POOLS);
 
-                if (!providesProduct) {
-                    Set<String> consumerAddOns = consumer.getAddOns() != null ?
-                        consumer.getAddOns() : new HashSet<>();
-                    List<String> prodAddOns =
-                        pool.getProductAttributeValue(Product.Attributes.ADDONS) != null ?
-                        Arrays.asList(pool.getProductAttributeValue(Product.Attributes.ADDONS)
-                        .trim().split("\\s*,\\s*")) : Collections.emptyList();
-
-                    for (String consumerAddOn: consumerAddOns) {
-                        if (prodAddOns.stream().anyMatch(str -> str.equalsIgnoreCase(consumerAddOn.trim()))) {
-                            matchesAddOns = true;
-                            break;
-                        }
-                    }
-                    String consumerRole = consumer.getRole() != null ?  consumer.getRole() : "";
-                    String[] prodRoles = pool.getProductAttributeValue(Product.Attributes.ROLES) != null ?
-                        pool.getProductAttributeValue(Product.Attributes.ROLES).split(",") :
-                        new String[]{};
-                    for (String prodRole : prodRoles) {
-                        if (consumerRole.equalsIgnoreCase(prodRole)) {
-                            matchesRole = true;
-                        }
-                    }
-                }
+        for (Pool pool : candidatePools) {
+            ValidationResult result = results.get(pool.getId());
+            if (autobindContext != null) {
+                autobindContext.addValidationResult(pool, result);
             }
 
-            if (providesProduct || matchesAddOns || matchesRole) {
-                ValidationResult result = enforcer.preEntitlement(consumer, pool, 1, CallerType.BEST_POOLS);
-
-                if (result.hasErrors() || result.hasWarnings()) {
-                    failedResults.put(pool.getId(), result);
-                    log.debug("Pool filtered from candidates due to rules failure: {}", pool.getId());
-                }
-                else {
-                    filteredPools.add(pool);
-                }
+            if (result.hasErrors() || result.hasWarnings()) {
+                failedResults.put(pool.getId(), result);
+                log.debug("Pool filtered from candidates due to rules failure: {}", pool.getId());
+            }
+            else {
+                filteredPools.add(pool);
             }
         }
 
@@ -1685,6 +1867,7 @@ public class CandlepinPoolManager implements PoolManager {
         }
         poolCurator.merge(pool);
         consumer.setEntitlementCount(consumer.getEntitlementCount() + change);
+        this.markOwnerInfoStale(Collections.singleton(consumer));
 
         Map<String, Entitlement> entMap = new HashMap<>();
         entMap.put(pool.getId(), entitlement);
@@ -1746,11 +1929,20 @@ public class CandlepinPoolManager implements PoolManager {
     protected List<Entitlement> createEntitlements(Consumer consumer, Map<String, Integer> poolQuantityMap,
         CallerType caller) throws EntitlementRefusedException {
 
+        return this.createEntitlements(consumer, poolQuantityMap, caller, null);
+    }
+
+    @Transactional
+    protected List<Entitlement> createEntitlements(Consumer consumer, Map<String, Integer> poolQuantityMap,
+        CallerType caller, AutobindContext autobindContext) throws EntitlementRefusedException {
+
         Collection<Entitlement> ents = bindChainFactory
             .create(consumer, poolQuantityMap, caller)
+            .setAutobindContext(autobindContext)
             .run();
 
         poolCurator.flush();
+        this.markOwnerInfoStale(Collections.singleton(consumer));
 
         return new ArrayList<>(ents);
     }
@@ -1945,6 +2137,8 @@ public class CandlepinPoolManager implements PoolManager {
         entitlementCurator.flush();
         log.info("All deletes flushed successfully");
 
+        this.markOwnerInfoStale(entsToRevoke);
+
         Map<Consumer, List<Entitlement>> consumerSortedEntitlements = entitlementCurator
             .getDistinctConsumers(entsToRevoke);
 
@@ -2002,6 +2196,29 @@ public class CandlepinPoolManager implements PoolManager {
         }
     }
 
+    /**
+     * Flags the owner info summaries of the owners of the given pools, entitlements or consumers
+     * as stale, so the owner info is recomputed on its next request. Does nothing if owner info
+     * summaries are disabled.
+     *
+     * @param owned
+     *  a collection of owned objects which have been created, updated or deleted
+     */
+    private void markOwnerInfoStale(Collection<? extends Owned> owned) {
+        if (owned == null || !this.config.getBoolean(ConfigProperties.OWNER_INFO_SUMMARY_ENABLED)) {
+            return;
+        }
+
+        Set<String> ownerIds = new HashSet<>();
+        for (Owned entity : owned) {
+            if (entity != null && entity.getOwnerId() != null) {
+                ownerIds.add(entity.getOwnerId());
+            }
+        }
+
+        this.ownerInfoSummaryCurator.markStale(ownerIds);
+    }
+
     /**
      * Helper method for log debug messages
      * @param entitlements
@@ -2264,6 +2481,8 @@ public class CandlepinPoolManager implements PoolManager {
             this.poolCurator.flush();
             log.info("Pools successfully deleted");
 
+            this.markOwnerInfoStale(pools);
+
             if (!entitlements.isEmpty()) {
                 // Update entitlement counts on affected, non-deleted pools
                 log.info("Updating entitlement counts on remaining, affected pools...");
@@ -2485,14 +2704,6 @@ public class CandlepinPoolManager implements PoolManager {
             filters.addAttributeFilter(Pool.Attributes.DEVELOPMENT_POOL, "!true");
         }
 
-        Page<List<Pool>> page = this.poolCurator.listAvailableEntitlementPools(consumer,
-            ownerId, productId, subscriptionId, activeOn, filters, pageRequest, postFilter,
-            addFuture, onlyFuture, after);
-
-        if (consumer == null && key == null) {
-            return page;
-        }
-
         // If the consumer was specified, we need to filter out any
         // pools that the consumer will not be able to attach.
         // If querying for pools available to a specific consumer, we need
@@ -2500,25 +2711,45 @@ public class CandlepinPoolManager implements PoolManager {
         // Note that something could change between the time we list a pool as
         // available, and the consumer requests the actual entitlement, and the
         // request still could fail.
-        List<Pool> resultingPools = page.getPageData();
-
-        if (consumer != null) {
-            resultingPools = enforcer.filterPools(consumer, resultingPools, includeWarnings);
+        if (postFilter && pageRequest != null && (pageRequest.isPaging() || pageRequest.isCursorPaging())) {
+            // Filter the pools in batches as they're read, so only the requested page is held
+            return this.poolCurator.listAvailableEntitlementPools(consumer, ownerId, productId,
+                subscriptionId, activeOn, filters, pageRequest,
+                pools -> this.filterAvailablePools(consumer, key, pools, includeWarnings),
+                addFuture, onlyFuture, after);
         }
 
-        if (key != null) {
-            resultingPools = this.filterPoolsForActKey(key, resultingPools, includeWarnings);
+        Page<List<Pool>> page = this.poolCurator.listAvailableEntitlementPools(consumer,
+            ownerId, productId, subscriptionId, activeOn, filters, pageRequest, postFilter,
+            addFuture, onlyFuture, after);
+
+        if (!postFilter) {
+            return page;
         }
 
+        List<Pool> resultingPools = this.filterAvailablePools(consumer, key, page.getPageData(),
+            includeWarnings);
+
         // Set maxRecords once we are done filtering
         page.setMaxRecords(resultingPools.size());
+        page.setPageData(resultingPools);
+        return page;
+    }
+
+    private List<Pool> filterAvailablePools(Consumer consumer, ActivationKey key, List<Pool> pools,
+        boolean includeWarnings) {
+
+        List<Pool> resultingPools = pools;
+
+        if (consumer != null) {
+            resultingPools = enforcer.filterPools(consumer, resultingPools, includeWarnings);
+        }
 
-        if (pageRequest != null && pageRequest.isPaging()) {
-            resultingPools = poolCurator.takeSubList(pageRequest, resultingPools);
+        if (key != null) {
+            resultingPools = this.filterPoolsForActKey(key, resultingPools, includeWarnings);
         }
 
-        page.setPageData(resultingPools);
-        return page;
+        return resultingPools;
     }
 
     /**
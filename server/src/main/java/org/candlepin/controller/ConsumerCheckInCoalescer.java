@@ -0,0 +1,261 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.controller;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.controller.mode.CandlepinModeManager;
+import org.candlepin.controller.mode.CandlepinModeManager.Mode;
+import org.candlepin.controller.mode.ModeChangeListener;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerCurator;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.inject.Singleton;
+
+
+
+/**
+ * The ConsumerCheckInCoalescer records consumer check-ins in memory and writes them to the
+ * database in batches, rather than updating each consumer's row as it checks in.
+ * <p></p>
+ * Clients tend to check in on the same schedule, resulting in bursts of single-row updates
+ * contending for locks on the consumer table. Instead, only the latest check-in of each consumer
+ * is kept, and pending check-ins are written no later than the configured flush interval after
+ * they are recorded, or sooner once enough of them have accumulated. Pending check-ins are also
+ * written when Candlepin enters suspend mode and when it shuts down.
+ * <p></p>
+ * Until the coalescer is started, or if the flush interval is zero, check-ins are written
+ * immediately.
+ */
+@Singleton
+public class ConsumerCheckInCoalescer implements ModeChangeListener {
+    private static Logger log = LoggerFactory.getLogger(ConsumerCheckInCoalescer.class);
+
+    private static final long SHUTDOWN_TIMEOUT = 30;
+
+    private final ConsumerCurator consumerCurator;
+    private final CandlepinModeManager modeManager;
+    private final long flushInterval;
+    private final int flushThreshold;
+
+    private final ConcurrentMap<String, Date> pending;
+    private final AtomicBoolean flushQueued;
+    private final Object flushLock;
+    private volatile ScheduledExecutorService executor;
+
+    @Inject
+    public ConsumerCheckInCoalescer(Configuration config, ConsumerCurator consumerCurator,
+        CandlepinModeManager modeManager) {
+
+        this.consumerCurator = consumerCurator;
+        this.modeManager = modeManager;
+        this.flushInterval = config.getLong(ConfigProperties.CONSUMER_CHECKIN_FLUSH_INTERVAL);
+        this.flushThreshold = Math.max(1, config.getInt(ConfigProperties.CONSUMER_CHECKIN_FLUSH_THRESHOLD));
+
+        this.pending = new ConcurrentHashMap<>();
+        this.flushQueued = new AtomicBoolean(false);
+        this.flushLock = new Object();
+    }
+
+    /**
+     * Starts writing check-ins in batches on the configured interval. If the interval is zero or
+     * the coalescer has already been started, this method does nothing.
+     */
+    public synchronized void start() {
+        if (this.flushInterval <= 0 || this.executor != null) {
+            return;
+        }
+
+        ThreadFactory threadFactory = new ThreadFactoryBuilder()
+            .setNameFormat("consumer-checkin-flush-%d")
+            .setDaemon(true)
+            .build();
+
+        this.executor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        this.executor.scheduleWithFixedDelay(this::flushQuietly, this.flushInterval, this.flushInterval,
+            TimeUnit.MILLISECONDS);
+
+        this.modeManager.registerModeChangeListener(this);
+
+        log.info("Writing consumer check-ins in batches every {}ms", this.flushInterval);
+    }
+
+    /**
+     * Stops the background writer and writes any pending check-ins. Check-ins recorded once the
+     * coalescer has been shut down are written immediately.
+     */
+    public synchronized void shutdown() {
+        ScheduledExecutorService executor = this.executor;
+        if (executor == null) {
+            return;
+        }
+
+        this.executor = null;
+        this.modeManager.removeModeChangeListener(this);
+        executor.shutdown();
+
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS)) {
+                log.warn("Timed out waiting for consumer check-ins to be written");
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        this.flush();
+    }
+
+    /**
+     * Records a check-in for the given consumer at the current time.
+     *
+     * @param consumer
+     *  the consumer which checked in
+     */
+    public void checkIn(Consumer consumer) {
+        this.checkIn(consumer, new Date());
+    }
+
+    /**
+     * Records a check-in for the given consumer. If the consumer has a pending check-in, only the
+     * later of the two is kept.
+     *
+     * @param consumer
+     *  the consumer which checked in
+     *
+     * @param checkinDate
+     *  the time of the check-in
+     */
+    public void checkIn(Consumer consumer, Date checkinDate) {
+        ScheduledExecutorService executor = this.executor;
+
+        if (executor == null) {
+            this.consumerCurator.updateLastCheckin(consumer, checkinDate);
+            return;
+        }
+
+        this.pending.merge(consumer.getId(), checkinDate, ConsumerCheckInCoalescer::latest);
+
+        if (this.pending.size() >= this.flushThreshold && this.flushQueued.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::flushQuietly);
+            }
+            catch (RejectedExecutionException e) {
+                // We're shutting down; the final flush will pick up the pending check-ins
+                this.flushQueued.set(false);
+            }
+        }
+    }
+
+    /**
+     * @return
+     *  the number of consumers with a check-in yet to be written
+     */
+    public int getPendingCount() {
+        return this.pending.size();
+    }
+
+    /**
+     * Writes all pending check-ins to the database. If writing fails, the check-ins are kept to be
+     * retried on the next flush.
+     *
+     * @return
+     *  the number of consumers updated
+     */
+    public int flush() {
+        // Impl note: this doesn't synchronize on the coalescer itself, as shutting down waits on
+        // the background writer while holding that lock
+        synchronized (this.flushLock) {
+            this.flushQueued.set(false);
+
+            Map<String, Date> checkins = new HashMap<>();
+            for (String consumerId : this.pending.keySet()) {
+                Date checkinDate = this.pending.remove(consumerId);
+
+                if (checkinDate != null) {
+                    checkins.put(consumerId, checkinDate);
+                }
+            }
+
+            if (checkins.isEmpty()) {
+                return 0;
+            }
+
+            try {
+                int count = this.consumerCurator.updateLastCheckins(checkins);
+                log.debug("Wrote {} consumer check-ins", count);
+
+                return count;
+            }
+            catch (RuntimeException e) {
+                // Keep the check-ins for the next attempt, unless the consumer has since checked in
+                // again
+                checkins.forEach((consumerId, checkinDate) ->
+                    this.pending.merge(consumerId, checkinDate, ConsumerCheckInCoalescer::latest));
+                throw e;
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            this.flush();
+        }
+        catch (Exception e) {
+            // Exceptions would cancel the scheduled task, so we log them and try again later
+            log.error("Unable to write {} pending consumer check-ins", this.pending.size(), e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void handleModeChange(CandlepinModeManager manager, Mode previousMode, Mode currentMode) {
+        ScheduledExecutorService executor = this.executor;
+
+        // Write out what we have while requests are suspended, rather than hold it for the duration
+        if (currentMode == Mode.SUSPEND && executor != null) {
+            try {
+                executor.execute(this::flushQuietly);
+            }
+            catch (RejectedExecutionException e) {
+                // We're shutting down; the final flush will pick up the pending check-ins
+            }
+        }
+    }
+
+    private static Date latest(Date first, Date second) {
+        return first.after(second) ? first : second;
+    }
+}
@@ -14,6 +14,7 @@
  */
 package org.candlepin.controller;
 
+import org.candlepin.audit.Event;
 import org.candlepin.audit.EventFactory;
 import org.candlepin.audit.EventSink;
 import org.candlepin.model.Consumer;
@@ -38,6 +39,7 @@ import com.google.inject.persist.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -217,7 +219,10 @@ public class EntitlementCertificateGenerator {
             this.regenerateCertificatesLazyImpl(entitlements);
         }
         else {
-            this.regenerateCertificatesImpl(entitlements);
+            for (Entitlement entitlement : this.regenerateCertificatesImpl(entitlements)) {
+                // send entitlement changed event.
+                this.eventSink.queueEvent(this.eventFactory.entitlementChanged(entitlement));
+            }
         }
     }
 
@@ -233,9 +238,12 @@ public class EntitlementCertificateGenerator {
     }
 
     /**
-     * Regenerates the certificates for the specified entitlements.
+     * Regenerates the certificates for the specified entitlements, returning the entitlements
+     * which were successfully regenerated.
      */
-    private void regenerateCertificatesImpl(Iterable<Entitlement> entitlements) {
+    private List<Entitlement> regenerateCertificatesImpl(Iterable<Entitlement> entitlements) {
+        List<Entitlement> regenerated = new ArrayList<>();
+
         if (entitlements != null) {
             Set<String> entIds = new HashSet<>();
 
@@ -249,10 +257,8 @@ public class EntitlementCertificateGenerator {
                     entitlement.setDirty(false);
                     entitlement.setCertificates(Collections.singleton(generated));
 
-                    // send entitlement changed event.
-                    this.eventSink.queueEvent(this.eventFactory.entitlementChanged(entitlement));
-
                     entIds.add(entitlement.getId());
+                    regenerated.add(entitlement);
                 }
                 catch (CertificateSizeException cse) {
                     // Uh oh... do nothing for now.
@@ -267,6 +273,40 @@ public class EntitlementCertificateGenerator {
             // Save everything
             this.entitlementCurator.saveOrUpdateAll(entitlements, false, false);
         }
+
+        return regenerated;
+    }
+
+    /**
+     * Regenerates the certificates of the dirty entitlements with the given IDs within a single
+     * transaction. Entitlements which no longer exist, or which are no longer dirty, are skipped.
+     * <p></p>
+     * Rather than being queued, the entitlement changed events for the regenerated entitlements are
+     * returned to the caller. This allows chunks of entitlements to be regenerated on worker
+     * threads while the events are sent from the thread which owns the event sink.
+     *
+     * @param entitlementIds
+     *  A collection of IDs of the entitlements for which to regenerate certificates
+     *
+     * @return
+     *  a list containing the entitlement changed events for the regenerated entitlements
+     */
+    @Transactional
+    public List<Event> regenerateDirtyCertificates(Collection<String> entitlementIds) {
+        List<Entitlement> dirty = new ArrayList<>();
+
+        for (Entitlement entitlement : this.entitlementCurator.listAllByIds(entitlementIds)) {
+            if (entitlement.isDirty()) {
+                dirty.add(entitlement);
+            }
+        }
+
+        List<Event> events = new ArrayList<>();
+        for (Entitlement entitlement : this.regenerateCertificatesImpl(dirty)) {
+            events.add(this.eventFactory.entitlementChanged(entitlement));
+        }
+
+        return events;
     }
 
     /**
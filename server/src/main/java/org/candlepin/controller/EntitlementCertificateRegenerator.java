@@ -0,0 +1,295 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.controller;
+
+import org.candlepin.audit.Event;
+import org.candlepin.audit.EventSink;
+import org.candlepin.auth.Principal;
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.guice.PrincipalProvider;
+import org.candlepin.model.EntitlementCurator;
+import org.candlepin.model.Owner;
+import org.candlepin.model.Pool;
+import org.candlepin.model.PoolCurator;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+
+import org.jboss.resteasy.core.ResteasyContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.persistence.EntityTransaction;
+
+
+
+/**
+ * The EntitlementCertificateRegenerator immediately regenerates the certificates of a large
+ * number of entitlements by splitting them into chunks which are regenerated concurrently on a
+ * bounded pool of worker threads.
+ * <p></p>
+ * Each chunk is regenerated and committed in its own transaction, so a run never holds locks on
+ * more than one chunk of entitlements per worker, and a failure only loses the work of the chunks
+ * in flight. The entitlement changed events of each chunk are sent as soon as the chunk has been
+ * committed, rather than at the end of the run.
+ * <p></p>
+ * Entitlements are processed in the order of their IDs. As chunks complete, the listener receives
+ * the ID of the last entitlement of the completed prefix of the run as a checkpoint; restarting an
+ * interrupted run with that checkpoint skips every entitlement up to and including it. Before any
+ * chunk is processed, the remaining entitlements are marked dirty in a separate transaction, so
+ * entitlements left behind by an interrupted run are also regenerated lazily, on their consumers'
+ * next check-in.
+ * <p></p>
+ * Runs must not be started from within an active transaction, as the worker threads would not be
+ * able to see the entitlements marked dirty by it.
+ */
+public class EntitlementCertificateRegenerator {
+    private static Logger log = LoggerFactory.getLogger(EntitlementCertificateRegenerator.class);
+
+    /**
+     * Receives progress updates as the chunks of a regeneration run complete
+     */
+    public interface ProgressListener {
+        /**
+         * Called on the thread which started the run each time a chunk of entitlements has been
+         * committed and its events sent.
+         *
+         * @param processed
+         *  the number of entitlements processed so far
+         *
+         * @param total
+         *  the total number of entitlements to process in the run
+         *
+         * @param checkpoint
+         *  the ID of the last entitlement processed; every entitlement with a lower ID has been
+         *  processed as well
+         */
+        void onProgress(int processed, int total, String checkpoint);
+    }
+
+    private final Configuration config;
+    private final EntitlementCertificateGenerator ecGenerator;
+    private final EntitlementCurator entitlementCurator;
+    private final PoolCurator poolCurator;
+    private final EventSink eventSink;
+    private final PrincipalProvider principalProvider;
+
+    @Inject
+    public EntitlementCertificateRegenerator(Configuration config,
+        EntitlementCertificateGenerator ecGenerator, EntitlementCurator entitlementCurator,
+        PoolCurator poolCurator, EventSink eventSink, PrincipalProvider principalProvider) {
+
+        this.config = config;
+        this.ecGenerator = ecGenerator;
+        this.entitlementCurator = entitlementCurator;
+        this.poolCurator = poolCurator;
+        this.eventSink = eventSink;
+        this.principalProvider = principalProvider;
+    }
+
+    /**
+     * Regenerates the entitlement certificates for all available pools using any of the specified
+     * products, effective for the given owners.
+     *
+     * @param owners
+     *  A collection of owners for which the certificates should be regenerated
+     *
+     * @param productIds
+     *  A collection of IDs of the products for which to regenerate affected certificates
+     *
+     * @param resumeAfter
+     *  The checkpoint of an earlier, interrupted run; entitlements with IDs up to and including it
+     *  are considered to be regenerated already. If null, all of the entitlements are regenerated.
+     *
+     * @param listener
+     *  An optional listener to receive progress updates
+     *
+     * @throws IllegalStateException
+     *  if called from within an active transaction
+     *
+     * @return
+     *  the number of entitlement certificates regenerated
+     */
+    public int regenerateCertificatesOf(Collection<Owner> owners, Collection<String> productIds,
+        String resumeAfter, ProgressListener listener) {
+
+        Set<String> poolIds = new HashSet<>();
+        Date now = new Date();
+
+        for (Owner owner : owners) {
+            for (Pool pool : this.poolCurator.listAvailableEntitlementPools(null, owner, productIds, now)) {
+                poolIds.add(pool.getId());
+            }
+        }
+
+        List<String> entitlementIds = this.entitlementCurator.listEntitlementIdsByPoolIds(poolIds);
+        return this.regenerateCertificates(entitlementIds, resumeAfter, listener);
+    }
+
+    /**
+     * Regenerates the certificates of the entitlements with the given IDs.
+     *
+     * @param entitlementIds
+     *  A collection of IDs of the entitlements for which to regenerate certificates
+     *
+     * @param resumeAfter
+     *  The checkpoint of an earlier, interrupted run; entitlements with IDs up to and including it
+     *  are considered to be regenerated already. If null, all of the entitlements are regenerated.
+     *
+     * @param listener
+     *  An optional listener to receive progress updates
+     *
+     * @throws IllegalStateException
+     *  if called from within an active transaction
+     *
+     * @return
+     *  the number of entitlement certificates regenerated
+     */
+    public int regenerateCertificates(Collection<String> entitlementIds, String resumeAfter,
+        ProgressListener listener) {
+
+        EntityTransaction transaction = this.entitlementCurator.getTransaction();
+        if (transaction != null && transaction.isActive()) {
+            throw new IllegalStateException(
+                "Entitlement certificates cannot be regenerated in chunks within an active transaction");
+        }
+
+        if (entitlementIds == null || entitlementIds.isEmpty()) {
+            return 0;
+        }
+
+        NavigableSet<String> sorted = new TreeSet<>(entitlementIds);
+        int total = sorted.size();
+
+        List<String> ids = new ArrayList<>(resumeAfter != null ? sorted.tailSet(resumeAfter, false) : sorted);
+        if (ids.isEmpty()) {
+            log.info("All {} entitlements have been regenerated by an earlier run", total);
+            return 0;
+        }
+
+        int chunkSize = Math.max(1, this.config.getInt(ConfigProperties.ENTITLEMENT_CERT_REGEN_CHUNK_SIZE));
+        int threads = Math.max(1, this.config.getInt(ConfigProperties.ENTITLEMENT_CERT_REGEN_THREADS));
+
+        long start = System.currentTimeMillis();
+        this.entitlementCurator.markEntitlementsDirty(ids);
+
+        List<List<String>> chunks = Lists.partition(ids, chunkSize);
+        log.info("Regenerating certificates for {} of {} entitlements in {} chunks on {} threads",
+            ids.size(), total, chunks.size(), Math.min(threads, chunks.size()));
+
+        // Events are built on the worker threads, which need the principal of this thread to do so
+        Principal principal = this.principalProvider.get();
+
+        ThreadFactory threadFactory = new ThreadFactoryBuilder()
+            .setNameFormat("entitlement-cert-regen-%d")
+            .setDaemon(true)
+            .build();
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, chunks.size()),
+            threadFactory);
+
+        try {
+            List<Future<List<Event>>> futures = new ArrayList<>(chunks.size());
+            for (List<String> chunk : chunks) {
+                futures.add(executor.submit(() -> this.regenerateChunk(chunk, principal)));
+            }
+
+            int processed = total - ids.size();
+            int regenerated = 0;
+
+            // Chunks are consumed in order, so the checkpoint only ever covers committed chunks
+            for (int i = 0; i < futures.size(); ++i) {
+                List<Event> events = this.waitForChunk(futures.get(i));
+                List<String> chunk = chunks.get(i);
+
+                // The event sink is not thread safe, so events are only queued from this thread. They
+                // are sent right away, as the chunk is already committed and a failure of a later
+                // chunk must not lose them.
+                for (Event event : events) {
+                    this.eventSink.queueEvent(event);
+                }
+
+                this.eventSink.sendEvents();
+
+                processed += chunk.size();
+                regenerated += events.size();
+
+                if (listener != null) {
+                    listener.onProgress(processed, total, chunk.get(chunk.size() - 1));
+                }
+            }
+
+            log.info("Regenerated {} entitlement certificates in {}ms", regenerated,
+                System.currentTimeMillis() - start);
+
+            return regenerated;
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<Event> regenerateChunk(List<String> entitlementIds, Principal principal) {
+        if (principal != null) {
+            ResteasyContext.pushContext(Principal.class, principal);
+        }
+
+        try {
+            // The generator opens a unit of work and transaction for the chunk on this thread
+            return this.ecGenerator.regenerateDirtyCertificates(entitlementIds);
+        }
+        finally {
+            // Only pop the principal if one was pushed above
+            if (principal != null) {
+                ResteasyContext.popContextData(Principal.class);
+            }
+        }
+    }
+
+    private List<Event> waitForChunk(Future<List<Event>> future) {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while regenerating entitlement certificates", e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+
+            throw new RuntimeException("Unable to regenerate entitlement certificates", cause);
+        }
+    }
+}
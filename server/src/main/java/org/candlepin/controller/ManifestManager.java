@@ -49,6 +49,7 @@ import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.DeferredFileOutputStream;
 import org.apache.commons.lang.StringUtils;
 import org.quartz.JobDetail;
 import org.slf4j.Logger;
@@ -59,6 +60,7 @@ import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Map;
 import java.util.Set;
 
@@ -73,6 +75,10 @@ import javax.servlet.http.HttpServletResponse;
 public class ManifestManager {
 
     private static Logger log = LoggerFactory.getLogger(ManifestManager.class);
+
+    /** The size beyond which a manifest written to a response is spilled to a temporary file */
+    public static final int EXPORT_MEMORY_THRESHOLD = 4 * 1024 * 1024;
+
     private ManifestFileService manifestFileService;
     private Exporter exporter;
     private Importer importer;
@@ -158,6 +164,67 @@ public class ManifestManager {
         return export;
     }
 
+    /**
+     * Generates a manifest for the specified consumer and writes it to the specified response.
+     * <p></p>
+     * Once any part of a response has been committed its status can no longer be changed, so a
+     * failure part way through a streamed manifest would leave the client with a truncated archive
+     * and a success status. To avoid that, the manifest is generated in full before anything is
+     * written to the response: it is held in memory up to {@value #EXPORT_MEMORY_THRESHOLD} bytes
+     * and spilled to a temporary file beyond that. Any failure to generate the manifest therefore
+     * leaves the response untouched, and the client receives an error response instead.
+     *
+     * @param consumerUuid the target consumer's UUID.
+     * @param cdnLabel the CDN label to store in the meta file.
+     * @param webUrl the URL pointing to the manifest's originating web application.
+     * @param apiUrl the API URL pointing to the manifest's originating candlepin API.
+     * @param extensionData data to be passed to the {@link ExportExtensionAdapter} when creating
+     *                      a new export of the target consumer.
+     * @param response the response to write the manifest to.
+     * @throws ExportCreationException when an export fails.
+     * @throws IseException if there was an issue writing the manifest to the response.
+     */
+    public void writeManifestToResponse(String consumerUuid, String cdnLabel, String webUrl, String apiUrl,
+        Map<String, String> extensionData, HttpServletResponse response)
+        throws ExportCreationException, IseException {
+
+        log.info("Exporting consumer {}", consumerUuid);
+
+        Consumer consumer = validateConsumerForExport(consumerUuid, cdnLabel);
+        poolManager.regenerateDirtyEntitlements(consumer);
+
+        DeferredFileOutputStream manifest =
+            new DeferredFileOutputStream(EXPORT_MEMORY_THRESHOLD, "export", ".zip", null);
+
+        try {
+            try {
+                exporter.writeFullExport(consumer, cdnLabel, webUrl, apiUrl, extensionData, manifest);
+            }
+            finally {
+                manifest.close();
+            }
+
+            response.setContentType("application/zip");
+            response.setHeader("Content-Disposition",
+                String.format("attachment; filename=%s-export.zip", consumer.getUuid()));
+
+            // NOTE: The output stream is expected to be closed by its creator.
+            OutputStream output = response.getOutputStream();
+            manifest.writeTo(output);
+            output.flush();
+        }
+        catch (IOException e) {
+            throw new IseException(i18n.tr("Unable to download manifest for consumer: {0}",
+                consumer.getUuid()), e);
+        }
+        finally {
+            // Only set if the manifest outgrew the memory threshold
+            FileUtils.deleteQuietly(manifest.getFile());
+        }
+
+        sink.queueEvent(eventFactory.exportCreated(consumer));
+    }
+
     /**
      * Stores the specified archive via the {@link ManifestFileService} and triggers an
      * asynchronous manifest import.
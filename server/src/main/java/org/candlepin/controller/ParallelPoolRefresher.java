@@ -0,0 +1,432 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.controller;
+
+import org.candlepin.audit.EventSink;
+import org.candlepin.auth.Principal;
+import org.candlepin.guice.CandlepinRequestScope;
+import org.candlepin.guice.PrincipalProvider;
+import org.candlepin.model.Owner;
+import org.candlepin.model.PoolCurator;
+import org.candlepin.model.Product;
+import org.candlepin.service.SubscriptionServiceAdapter;
+import org.candlepin.service.model.ProductInfo;
+import org.candlepin.service.model.SubscriptionInfo;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.persist.Transactional;
+import com.google.inject.persist.UnitOfWork;
+
+import org.jboss.resteasy.core.ResteasyContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.inject.Provider;
+import javax.persistence.EntityTransaction;
+
+
+
+/**
+ * The ParallelPoolRefresher refreshes the pools of an owner with its subscriptions split into
+ * independent groups, which are processed concurrently on a bounded pool of worker threads.
+ * <p></p>
+ * Subscriptions sharing a stack are grouped together, as their pools are consumed and revoked
+ * together; every other subscription forms a group of its own. Each group is committed in its own
+ * transaction, after locking the existing pools of its subscriptions in the order of their IDs.
+ * The products and content of the subscriptions are imported up front, and the pools of absent
+ * subscriptions are deleted and the floating pools of the owner updated once every group has been
+ * processed, each in a transaction of its own.
+ * <p></p>
+ * A group which fails is rolled back on its own, while the remaining groups carry on. Groups are
+ * processed in the order of their keys, and the result of a refresh carries the key of the last
+ * group of its completed prefix as a checkpoint. A refresh which resumes a failed one from that
+ * checkpoint skips the groups up to and including it, unless the fingerprint of any of their
+ * subscriptions has changed since.
+ * <p></p>
+ * Refreshes must not be started from within an active transaction, as the worker threads would
+ * not be able to see the products imported by it.
+ */
+public class ParallelPoolRefresher {
+    private static Logger log = LoggerFactory.getLogger(ParallelPoolRefresher.class);
+
+    /**
+     * The outcome of a pool refresh
+     */
+    public static class Result {
+        private final int groups;
+        private final int refreshed;
+        private final int failed;
+        private final int unchanged;
+        private final int resumed;
+        private final String checkpoint;
+
+        public Result(int groups, int refreshed, int failed, int unchanged, int resumed, String checkpoint) {
+            this.groups = groups;
+            this.refreshed = refreshed;
+            this.failed = failed;
+            this.unchanged = unchanged;
+            this.resumed = resumed;
+            this.checkpoint = checkpoint;
+        }
+
+        /**
+         * @return
+         *  the number of groups the pending subscriptions were split into
+         */
+        public int getGroups() {
+            return this.groups;
+        }
+
+        /**
+         * @return
+         *  the number of subscriptions whose pools were refreshed
+         */
+        public int getRefreshed() {
+            return this.refreshed;
+        }
+
+        /**
+         * @return
+         *  the number of subscriptions whose pools failed to refresh
+         */
+        public int getFailed() {
+            return this.failed;
+        }
+
+        /**
+         * @return
+         *  the number of subscriptions skipped, as they have not changed since their pools were
+         *  last refreshed
+         */
+        public int getUnchanged() {
+            return this.unchanged;
+        }
+
+        /**
+         * @return
+         *  the number of subscriptions skipped, as their pools were refreshed by the refresh being
+         *  resumed
+         */
+        public int getResumed() {
+            return this.resumed;
+        }
+
+        /**
+         * @return
+         *  the key of the last group of the completed prefix of the refresh, from which a failed
+         *  refresh may be resumed; or null if no group has completed
+         */
+        public String getCheckpoint() {
+            return this.checkpoint;
+        }
+    }
+
+    private final CandlepinPoolManager poolManager;
+    private final Provider<CandlepinPoolManager> poolManagerProvider;
+    private final OwnerManager ownerManager;
+    private final PoolCurator poolCurator;
+    private final Provider<EventSink> eventSinkProvider;
+    private final CandlepinRequestScope requestScope;
+    private final UnitOfWork unitOfWork;
+    private final PrincipalProvider principalProvider;
+
+    @Inject
+    public ParallelPoolRefresher(CandlepinPoolManager poolManager,
+        Provider<CandlepinPoolManager> poolManagerProvider, OwnerManager ownerManager,
+        PoolCurator poolCurator, Provider<EventSink> eventSinkProvider, CandlepinRequestScope requestScope,
+        UnitOfWork unitOfWork, PrincipalProvider principalProvider) {
+
+        this.poolManager = poolManager;
+        this.poolManagerProvider = poolManagerProvider;
+        this.ownerManager = ownerManager;
+        this.poolCurator = poolCurator;
+        this.eventSinkProvider = eventSinkProvider;
+        this.requestScope = requestScope;
+        this.unitOfWork = unitOfWork;
+        this.principalProvider = principalProvider;
+    }
+
+    /**
+     * Checks whether or not refreshes may be started from the current thread. Refreshes cannot be
+     * started from within an active transaction.
+     *
+     * @return
+     *  true if a refresh may be started from the current thread; false otherwise
+     */
+    public boolean canRefresh() {
+        EntityTransaction transaction = this.poolCurator.getTransaction();
+        return transaction == null || !transaction.isActive();
+    }
+
+    /**
+     * Refreshes the pools of the given owner.
+     *
+     * @param subAdapter
+     *  the subscription service adapter from which to fetch the subscriptions of the owner
+     *
+     * @param owner
+     *  the owner whose pools are to be refreshed
+     *
+     * @param lazy
+     *  whether or not to regenerate the certificates of affected entitlements lazily
+     *
+     * @param skipUnchanged
+     *  whether or not to skip subscriptions which have not changed since their pools were last
+     *  refreshed
+     *
+     * @param resumeAfter
+     *  the checkpoint of a failed refresh to resume, or null to refresh every group
+     *
+     * @param threads
+     *  the maximum number of groups to process concurrently
+     *
+     * @throws IllegalStateException
+     *  if called from within an active transaction
+     *
+     * @return
+     *  the outcome of the refresh
+     */
+    public Result refresh(SubscriptionServiceAdapter subAdapter, Owner owner, boolean lazy,
+        boolean skipUnchanged, String resumeAfter, int threads) {
+
+        if (!this.canRefresh()) {
+            throw new IllegalStateException(
+                "Pools cannot be refreshed in groups within an active transaction");
+        }
+
+        PoolRefreshPlan plan = this.poolManager.planPoolRefresh(subAdapter, owner, skipUnchanged);
+        NavigableMap<String, List<SubscriptionInfo>> groups = partition(plan.getPending());
+        int resumed = 0;
+
+        if (resumeAfter != null) {
+            // Groups up to the checkpoint were committed by the refresh being resumed; only those
+            // with subscriptions which changed since need to be processed again
+            Iterator<List<SubscriptionInfo>> gi = groups.headMap(resumeAfter, true).values().iterator();
+            while (gi.hasNext()) {
+                List<SubscriptionInfo> group = gi.next();
+
+                if (group.stream().noneMatch(sub -> plan.getFingerprints().containsKey(sub.getId()))) {
+                    resumed += group.size();
+                    gi.remove();
+                }
+            }
+        }
+
+        int workers = Math.max(1, Math.min(threads, groups.size()));
+
+        log.info("Refreshing {} subscription(s) for owner {} in {} group(s) on {} thread(s); {} resumed",
+            plan.getPending().size() - resumed, plan.getOwner().getKey(), groups.size(), workers, resumed);
+
+        GroupCounts counts = new GroupCounts(resumeAfter);
+        if (!groups.isEmpty()) {
+            this.refreshGroups(plan, groups, lazy, workers, counts);
+        }
+
+        this.completeRefresh(plan, lazy, counts.failed == 0);
+
+        return new Result(groups.size(), counts.refreshed, counts.failed, plan.getUnchanged(), resumed,
+            counts.checkpoint);
+    }
+
+    /**
+     * Splits the given subscriptions into groups which can be refreshed independently of one
+     * another. Subscriptions whose product shares a stacking ID are grouped together; every other
+     * subscription forms a group of its own.
+     *
+     * @param subscriptions
+     *  the subscriptions to split into groups
+     *
+     * @return
+     *  a map of group key to the subscriptions of the group, sorted by key
+     */
+    static NavigableMap<String, List<SubscriptionInfo>> partition(
+        Collection<SubscriptionInfo> subscriptions) {
+
+        NavigableMap<String, List<SubscriptionInfo>> groups = new TreeMap<>();
+
+        for (SubscriptionInfo sub : subscriptions) {
+            ProductInfo product = sub.getProduct();
+            String stackingId = product != null ?
+                product.getAttributeValue(Product.Attributes.STACKING_ID) :
+                null;
+
+            String key = stackingId != null && !stackingId.isEmpty() ?
+                "stack:" + stackingId :
+                "subscription:" + sub.getId();
+
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add(sub);
+        }
+
+        return groups;
+    }
+
+    /**
+     * Tallies the outcome of the groups of a refresh
+     */
+    private static class GroupCounts {
+        private int refreshed;
+        private int failed;
+        private String checkpoint;
+        private boolean prefixCompleted = true;
+
+        public GroupCounts(String checkpoint) {
+            this.checkpoint = checkpoint;
+        }
+
+        public void completed(String key, int subscriptions) {
+            this.refreshed += subscriptions;
+
+            if (this.prefixCompleted && (this.checkpoint == null || key.compareTo(this.checkpoint) > 0)) {
+                this.checkpoint = key;
+            }
+        }
+
+        public void failed(String key, int subscriptions) {
+            this.failed += subscriptions;
+
+            // Groups up to the checkpoint are only processed again if they changed, in which case
+            // a failure leaves them changed for the next attempt as well
+            if (this.checkpoint == null || key.compareTo(this.checkpoint) > 0) {
+                this.prefixCompleted = false;
+            }
+        }
+    }
+
+    /**
+     * Processes the groups on a pool of worker threads, each group in its own transaction, in the
+     * order of their keys.
+     */
+    private void refreshGroups(PoolRefreshPlan plan, NavigableMap<String, List<SubscriptionInfo>> groups,
+        boolean lazy, int workers, GroupCounts counts) {
+
+        // The workers run in their own scope, but otherwise in the same environment as the caller
+        Principal principal = this.principalProvider.get();
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+
+        ThreadFactory threadFactory = new ThreadFactoryBuilder()
+            .setNameFormat("pool-refresh-%d")
+            .setDaemon(true)
+            .build();
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers, threadFactory);
+
+        try {
+            List<String> keys = new ArrayList<>(groups.keySet());
+            List<Future<Integer>> futures = new ArrayList<>(keys.size());
+            for (String key : keys) {
+                List<SubscriptionInfo> group = groups.get(key);
+                futures.add(executor.submit(() -> this.runGroup(plan, group, lazy, principal, mdc)));
+            }
+
+            for (int i = 0; i < futures.size(); ++i) {
+                String key = keys.get(i);
+
+                try {
+                    counts.completed(key, futures.get(i).get());
+                }
+                catch (ExecutionException e) {
+                    // Keep going; the subscriptions of this group will be picked up when resuming
+                    log.error("Unable to refresh pools for subscription group {} ({} of {})", key, i + 1,
+                        keys.size(), e.getCause());
+
+                    counts.failed(key, groups.get(key).size());
+                }
+
+                log.debug("Processed {} of {} subscription group(s)", i + 1, keys.size());
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while refreshing pools", e);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int runGroup(PoolRefreshPlan plan, List<SubscriptionInfo> group, boolean lazy,
+        Principal principal, Map<String, String> mdc) {
+
+        if (mdc != null) {
+            MDC.setContextMap(mdc);
+        }
+
+        this.requestScope.enter();
+
+        if (principal != null) {
+            ResteasyContext.pushContext(Principal.class, principal);
+        }
+
+        // Each group gets its own session, which is discarded along with its entities once done
+        this.unitOfWork.begin();
+        EventSink eventSink = null;
+
+        try {
+            eventSink = this.eventSinkProvider.get();
+            this.poolManagerProvider.get().refreshSubscriptionGroup(plan, group, lazy);
+
+            // The group has been committed; send the events it generated
+            eventSink.sendEvents();
+            return group.size();
+        }
+        catch (RuntimeException e) {
+            if (eventSink != null) {
+                eventSink.rollback();
+            }
+
+            throw e;
+        }
+        finally {
+            this.unitOfWork.end();
+
+            if (principal != null) {
+                ResteasyContext.popContextData(Principal.class);
+            }
+
+            this.requestScope.exit();
+            MDC.clear();
+        }
+    }
+
+    /**
+     * Deletes the pools of absent subscriptions, updates the floating pools and recalculates the
+     * consumed quantities of the pools of the owner. The refresh date of the owner is only updated
+     * if every group was refreshed.
+     */
+    @Transactional
+    protected void completeRefresh(PoolRefreshPlan plan, boolean lazy, boolean succeeded) {
+        Owner owner = this.poolManager.completePoolRefresh(plan, lazy);
+        this.poolManager.recalculatePoolQuantitiesForOwner(owner);
+
+        if (succeeded) {
+            this.ownerManager.updateRefreshDate(owner);
+        }
+    }
+}
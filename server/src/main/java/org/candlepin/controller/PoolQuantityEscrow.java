@@ -0,0 +1,692 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.controller;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.ConsumerType;
+import org.candlepin.model.Pool;
+import org.candlepin.model.Pool.PoolType;
+import org.candlepin.model.PoolCurator;
+import org.candlepin.model.PoolQuantityLease;
+import org.candlepin.model.PoolQuantityLeaseCurator;
+import org.candlepin.model.Product;
+import org.candlepin.util.Util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.persist.Transactional;
+
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.hibernate.resource.transaction.spi.TransactionStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.inject.Singleton;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+
+
+/**
+ * The PoolQuantityEscrow grants entitlements from large pools out of blocks of quantity leased by
+ * this node, rather than by locking the pool and updating its consumed quantity on every bind.
+ * <p></p>
+ * Concurrent binds against a popular pool otherwise serialize on the lock of its row. Instead, a
+ * block of the pool's quantity is leased in a short transaction of its own, counting the whole
+ * block as consumed, and binds are satisfied from it in memory. Leases are recorded in the
+ * database so their unused quantity stays counted when the consumed quantity of the pool is
+ * recalculated; each reservation is tied to the transaction of its bind, which deducts it from
+ * the recorded lease as it commits, or returns it to the lease if it rolls back. On the reconcile
+ * interval, leases are renewed, idle leases are released, and the expired leases of nodes which
+ * stopped renewing them are reclaimed. Leases are also released when Candlepin shuts down.
+ * <p></p>
+ * Until the escrow is started, or if it is disabled, nothing is reserved and binds lock the pool
+ * as usual.
+ */
+@Singleton
+public class PoolQuantityEscrow {
+    private static Logger log = LoggerFactory.getLogger(PoolQuantityEscrow.class);
+
+    /** The longest time, in seconds, a bind waits on a lease before locking the pool instead */
+    private static final long LEASE_TIMEOUT = 10;
+    private static final long SHUTDOWN_TIMEOUT = 30;
+    private static final int MAX_RESERVE_ATTEMPTS = 3;
+
+    /** The transaction states in which a reservation can be tied to the transaction */
+    private static final TransactionStatus[] ACTIVE_STATES = {
+        TransactionStatus.ACTIVE, TransactionStatus.MARKED_ROLLBACK
+    };
+
+    private final PoolCurator poolCurator;
+    private final PoolQuantityLeaseCurator leaseCurator;
+    private final boolean enabled;
+    private final long minQuantity;
+    private final long leaseSize;
+    private final long leaseDuration;
+    private final long reconcileInterval;
+    private final String node;
+
+    private final ConcurrentMap<String, Lease> leases;
+    private volatile ExecutorService leaseExecutor;
+    private volatile ScheduledExecutorService reconcileExecutor;
+
+    /**
+     * A quantity reserved from the lease this node holds on a pool. A reservation is settled once
+     * it has been used by a committed bind or returned to its lease; its state is guarded by the
+     * monitor of its lease.
+     */
+    public static final class Reservation {
+        private final Lease lease;
+        private final String leaseId;
+        private final long quantity;
+        private boolean settled;
+
+        private Reservation(Lease lease, String leaseId, long quantity) {
+            this.lease = lease;
+            this.leaseId = leaseId;
+            this.quantity = quantity;
+        }
+
+        public long getQuantity() {
+            return this.quantity;
+        }
+    }
+
+    /**
+     * The in-memory state of a lease held by this node; guarded by its own monitor.
+     */
+    private static final class Lease {
+        private final String poolId;
+        private String leaseId;
+        private long remaining;
+        private long usableUntil;
+        private long lastUsed;
+        private CompletableFuture<Void> pending;
+
+        private Lease(String poolId) {
+            this.poolId = poolId;
+            this.lastUsed = System.currentTimeMillis();
+        }
+
+        private long getUsable(long now) {
+            return this.leaseId != null && now < this.usableUntil ? this.remaining : 0;
+        }
+
+        private boolean take(long quantity, long now) {
+            if (this.getUsable(now) < quantity) {
+                return false;
+            }
+
+            this.remaining -= quantity;
+            this.lastUsed = now;
+            return true;
+        }
+    }
+
+    /**
+     * The outcome of updating a lease in the database: the lease, and the quantity added to it
+     */
+    static final class Grant {
+        private final String leaseId;
+        private final long extra;
+
+        private Grant(String leaseId, long extra) {
+            this.leaseId = leaseId;
+            this.extra = extra;
+        }
+    }
+
+    /**
+     * Settles a reservation with the transaction of the bind it was made for. The quantity is
+     * deducted from the recorded lease just before the transaction commits, so the lease row is
+     * only locked while committing, and is returned to the in-memory lease if the transaction
+     * rolls back.
+     */
+    private class ReservationSynchronizer implements Synchronization {
+        private final Reservation reservation;
+
+        private ReservationSynchronizer(Reservation reservation) {
+            this.reservation = reservation;
+        }
+
+        @Override
+        public void beforeCompletion() {
+            recordUse(this.reservation);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (status == Status.STATUS_COMMITTED) {
+                synchronized (this.reservation.lease) {
+                    this.reservation.settled = true;
+                }
+            }
+            else {
+                cancel(this.reservation);
+            }
+        }
+    }
+
+    @Inject
+    public PoolQuantityEscrow(Configuration config, PoolCurator poolCurator,
+        PoolQuantityLeaseCurator leaseCurator) {
+
+        this.poolCurator = poolCurator;
+        this.leaseCurator = leaseCurator;
+        this.enabled = config.getBoolean(ConfigProperties.POOL_ESCROW_ENABLED);
+        this.minQuantity = config.getLong(ConfigProperties.POOL_ESCROW_MIN_QUANTITY);
+        this.leaseSize = Math.max(1, config.getLong(ConfigProperties.POOL_ESCROW_LEASE_SIZE));
+        this.leaseDuration = config.getLong(ConfigProperties.POOL_ESCROW_LEASE_DURATION);
+        this.reconcileInterval = config.getLong(ConfigProperties.POOL_ESCROW_RECONCILE_INTERVAL);
+        this.node = Util.getHostname();
+
+        this.leases = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Starts granting entitlements from leased quantity and reconciling leases on the configured
+     * interval. If the escrow is disabled or has already been started, this method does nothing.
+     */
+    public synchronized void start() {
+        if (!this.enabled || this.reconcileExecutor != null) {
+            return;
+        }
+
+        this.leaseExecutor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+            .setNameFormat("pool-escrow-%d")
+            .setDaemon(true)
+            .build());
+
+        ThreadFactory threadFactory = new ThreadFactoryBuilder()
+            .setNameFormat("pool-escrow-reconcile-%d")
+            .setDaemon(true)
+            .build();
+
+        this.reconcileExecutor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        this.reconcileExecutor.scheduleWithFixedDelay(this::reconcileQuietly, this.reconcileInterval,
+            this.reconcileInterval, TimeUnit.MILLISECONDS);
+
+        log.info("Granting entitlements from leases of {} for pools with a quantity of at least {}",
+            this.leaseSize, this.minQuantity);
+    }
+
+    /**
+     * Stops reconciling leases and releases the unused quantity of every lease held by this node.
+     * Once shut down, nothing is reserved.
+     */
+    public synchronized void shutdown() {
+        ScheduledExecutorService reconcileExecutor = this.reconcileExecutor;
+        ExecutorService leaseExecutor = this.leaseExecutor;
+
+        if (reconcileExecutor == null) {
+            return;
+        }
+
+        this.reconcileExecutor = null;
+        this.leaseExecutor = null;
+        reconcileExecutor.shutdown();
+        leaseExecutor.shutdown();
+
+        try {
+            if (!reconcileExecutor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS) ||
+                !leaseExecutor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS)) {
+                log.warn("Timed out waiting for pool quantity leases to be updated");
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (Lease lease : this.leases.values()) {
+            this.release(lease);
+        }
+    }
+
+    /**
+     * @return
+     *  true if the escrow has been started and reserves quantity from leases; false otherwise
+     */
+    public boolean isEnabled() {
+        return this.leaseExecutor != null;
+    }
+
+    /**
+     * Checks whether or not binds of the given consumer type to the given pool may be granted from
+     * leased quantity. Pools tracked by bonus pools, and binds of manifest consumers, which update
+     * the exported quantity of the pool, are never eligible.
+     *
+     * @param pool
+     *  the pool to check
+     *
+     * @param type
+     *  the type of the consumer binding to the pool
+     *
+     * @return
+     *  true if binds to the pool may be granted from leased quantity; false otherwise
+     */
+    public boolean isEligible(Pool pool, ConsumerType type) {
+        if (!this.isEnabled() || type == null || type.isManifest()) {
+            return false;
+        }
+
+        if (pool.getType() != PoolType.NORMAL ||
+            pool.hasMergedProductAttribute(Product.Attributes.VIRT_LIMIT)) {
+            return false;
+        }
+
+        return pool.isUnlimited() || pool.getQuantity() >= this.minQuantity;
+    }
+
+    /**
+     * Reserves the given quantity of the pool from the lease this node holds on it, leasing more
+     * of the pool as necessary. The reserved quantity is already counted as consumed by the pool.
+     * The reservation is tied to the current transaction: it is deducted from the recorded lease
+     * if the transaction commits, and returned to the lease if it rolls back.
+     *
+     * @param pool
+     *  the pool from which to reserve quantity
+     *
+     * @param quantity
+     *  the quantity to reserve
+     *
+     * @return
+     *  the reservation, or null if the quantity could not be reserved, in which case the bind
+     *  should lock the pool instead
+     */
+    public Reservation reserve(Pool pool, long quantity) {
+        if (!this.isEnabled() || quantity <= 0) {
+            return null;
+        }
+
+        Lease lease = this.leases.computeIfAbsent(pool.getId(), Lease::new);
+        boolean extended = false;
+
+        for (int attempt = 0; attempt < MAX_RESERVE_ATTEMPTS; ++attempt) {
+            CompletableFuture<Void> pending;
+
+            Reservation reservation = null;
+
+            synchronized (lease) {
+                if (lease.take(quantity, System.currentTimeMillis())) {
+                    reservation = new Reservation(lease, lease.leaseId, quantity);
+                }
+                else if (lease.pending == null) {
+                    if (extended) {
+                        return null;
+                    }
+
+                    try {
+                        lease.pending = this.extend(lease, quantity);
+                        extended = true;
+                    }
+                    catch (RejectedExecutionException e) {
+                        // We're shutting down
+                        return null;
+                    }
+                }
+
+                pending = lease.pending;
+            }
+
+            if (reservation != null) {
+                this.enlist(reservation);
+                return reservation;
+            }
+
+            try {
+                pending.get(LEASE_TIMEOUT, TimeUnit.SECONDS);
+            }
+            catch (ExecutionException | TimeoutException e) {
+                log.warn("Unable to lease quantity from pool {}; locking it instead", pool.getId());
+                return null;
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the quantity of a reservation which was not used to the lease it was reserved from.
+     * Cancelling a reservation which has already been settled has no effect.
+     *
+     * @param reservation
+     *  the reservation to cancel
+     */
+    public void cancel(Reservation reservation) {
+        Lease lease = reservation.lease;
+
+        synchronized (lease) {
+            if (reservation.settled) {
+                return;
+            }
+
+            reservation.settled = true;
+
+            // If the lease has been replaced since, the quantity is recovered on recalculation
+            if (reservation.leaseId.equals(lease.leaseId)) {
+                lease.remaining += reservation.quantity;
+            }
+        }
+    }
+
+    /**
+     * Ties the given reservation to the current transaction.
+     */
+    private void enlist(Reservation reservation) {
+        Session session = this.leaseCurator.currentSession();
+        Transaction transaction = session != null ? session.getTransaction() : null;
+
+        if (transaction != null && transaction.getStatus().isOneOf(ACTIVE_STATES)) {
+            transaction.registerSynchronization(new ReservationSynchronizer(reservation));
+        }
+        else {
+            // Binds always run in a transaction, so this should never happen. The quantity stays
+            // recorded as unused until the lease is released.
+            log.warn("No active transaction while reserving quantity from pool {}",
+                reservation.lease.poolId);
+        }
+    }
+
+    /**
+     * Deducts the quantity of the given reservation from its lease in the database, unless it has
+     * been cancelled. Called as the transaction of the bind commits.
+     *
+     * @param reservation
+     *  the reservation used by the bind
+     */
+    protected void recordUse(Reservation reservation) {
+        synchronized (reservation.lease) {
+            if (reservation.settled) {
+                return;
+            }
+        }
+
+        this.leaseCurator.useQuantity(reservation.leaseId, reservation.quantity);
+    }
+
+    /**
+     * Renews the leases held by this node, releases those which have not been used for the lease
+     * duration, and reclaims the expired leases of every node.
+     */
+    public void reconcile() {
+        long now = System.currentTimeMillis();
+
+        for (Lease lease : this.leases.values()) {
+            CompletableFuture<Void> pending = new CompletableFuture<>();
+            String leaseId;
+
+            synchronized (lease) {
+                // Leases being extended are renewed along the way
+                if (lease.pending != null) {
+                    continue;
+                }
+
+                if (lease.leaseId == null || now - lease.lastUsed >= this.leaseDuration) {
+                    this.release(lease);
+                    continue;
+                }
+
+                leaseId = lease.leaseId;
+                lease.pending = pending;
+            }
+
+            try {
+                Grant grant = this.updateLease(lease.poolId, leaseId, 0, 0);
+                this.apply(lease, grant, now);
+            }
+            catch (RuntimeException e) {
+                log.error("Unable to renew lease on pool {}", lease.poolId, e);
+            }
+            finally {
+                synchronized (lease) {
+                    lease.pending = null;
+                }
+
+                pending.complete(null);
+            }
+        }
+
+        int reclaimed = this.reclaimExpiredLeases();
+        if (reclaimed > 0) {
+            log.info("Reclaimed {} expired pool quantity lease(s)", reclaimed);
+        }
+    }
+
+    private void reconcileQuietly() {
+        try {
+            this.reconcile();
+        }
+        catch (Exception e) {
+            // Exceptions would cancel the scheduled task, so we log them and try again later
+            log.error("Unable to reconcile pool quantity leases", e);
+        }
+    }
+
+    /**
+     * Extends the given lease in a transaction of its own. Must be called while holding the
+     * monitor of the lease, which keeps the task from completing before it is recorded as pending.
+     */
+    private CompletableFuture<Void> extend(Lease lease, long quantity) {
+        long now = System.currentTimeMillis();
+        String leaseId = lease.leaseId;
+        long held = leaseId != null ? lease.remaining : 0;
+
+        return CompletableFuture.runAsync(() -> {
+            try {
+                Grant grant = this.updateLease(lease.poolId, leaseId, held, quantity);
+                this.apply(lease, grant, now);
+            }
+            catch (RuntimeException e) {
+                log.error("Unable to lease quantity from pool {}", lease.poolId, e);
+                throw e;
+            }
+            finally {
+                synchronized (lease) {
+                    lease.pending = null;
+                }
+            }
+        }, this.leaseExecutor);
+    }
+
+    /**
+     * Applies the outcome of updating a lease in the database to its in-memory state. Quantity
+     * reserved from the lease in the meantime has already been taken from the in-memory lease.
+     */
+    private void apply(Lease lease, Grant grant, long updatedAt) {
+        synchronized (lease) {
+            if (grant == null || grant.leaseId == null) {
+                lease.leaseId = null;
+                lease.remaining = 0;
+
+                if (grant == null) {
+                    // The pool is gone
+                    this.leases.remove(lease.poolId, lease);
+                }
+
+                return;
+            }
+
+            if (grant.leaseId.equals(lease.leaseId)) {
+                lease.remaining += grant.extra;
+            }
+            else {
+                // Our previous lease, if any, expired and was reclaimed along with its quantity
+                lease.leaseId = grant.leaseId;
+                lease.remaining = grant.extra;
+            }
+
+            // Only use the lease for half of its duration, so it is never used past its expiration
+            // on another node's clock
+            lease.usableUntil = updatedAt + this.leaseDuration / 2;
+            this.leases.putIfAbsent(lease.poolId, lease);
+        }
+    }
+
+    /**
+     * Stops using the given lease and releases its unused quantity. Must be called while holding
+     * the monitor of the lease, or once nothing else uses it.
+     */
+    private void release(Lease lease) {
+        String leaseId = lease.leaseId;
+        long unused = lease.remaining;
+
+        lease.leaseId = null;
+        lease.remaining = 0;
+        this.leases.remove(lease.poolId, lease);
+
+        if (leaseId != null) {
+            try {
+                this.releaseLease(leaseId, unused);
+            }
+            catch (RuntimeException e) {
+                // The lease will be reclaimed once it expires
+                log.error("Unable to release lease on pool {}", lease.poolId, e);
+            }
+        }
+    }
+
+    /**
+     * Renews the given lease, and leases more of the pool if the unused quantity of the lease is
+     * less than the quantity needed. At least the configured lease size is leased at a time,
+     * provided the pool has enough quantity available. The recorded quantity of the lease is only
+     * ever increased here; binds deduct the quantity they use as they commit.
+     *
+     * @param poolId
+     *  the ID of the pool on which the lease is held
+     *
+     * @param leaseId
+     *  the ID of the lease, or null if no lease is held on the pool
+     *
+     * @param held
+     *  the quantity of the lease not yet reserved by this node
+     *
+     * @param needed
+     *  the quantity needed from the lease
+     *
+     * @return
+     *  the ID of the lease and the quantity added to it, or null if the pool no longer exists
+     */
+    @Transactional
+    protected Grant updateLease(String poolId, String leaseId, long held, long needed) {
+        Pool pool = this.poolCurator.lockAndLoad(poolId);
+        PoolQuantityLease lease = leaseId != null ? this.leaseCurator.get(leaseId) : null;
+
+        if (pool == null) {
+            if (lease != null) {
+                this.leaseCurator.delete(lease);
+            }
+
+            return null;
+        }
+
+        // If our lease has expired and been reclaimed, its quantity is no longer counted
+        long shortfall = needed - (lease != null ? held : 0);
+        long extra = 0;
+
+        if (shortfall > 0) {
+            long available = pool.isUnlimited() ?
+                Long.MAX_VALUE :
+                pool.getQuantity() - pool.getConsumed();
+
+            if (available >= shortfall) {
+                extra = Math.min(available, Math.max(this.leaseSize, shortfall));
+                pool.setConsumed(pool.getConsumed() + extra);
+            }
+        }
+
+        if (lease == null) {
+            if (extra == 0) {
+                return new Grant(null, 0);
+            }
+
+            lease = this.leaseCurator.create(new PoolQuantityLease(poolId, this.node), false);
+        }
+
+        lease.setQuantity(lease.getQuantity() + extra);
+        lease.setExpiration(new Date(System.currentTimeMillis() + this.leaseDuration));
+
+        return new Grant(lease.getId(), extra);
+    }
+
+    /**
+     * Deletes the given lease, returning its unused quantity to the pool.
+     *
+     * @param leaseId
+     *  the ID of the lease to release
+     *
+     * @param unused
+     *  the unused quantity of the lease
+     */
+    @Transactional
+    protected void releaseLease(String leaseId, long unused) {
+        PoolQuantityLease lease = this.leaseCurator.get(leaseId);
+
+        if (lease == null) {
+            return;
+        }
+
+        Pool pool = this.poolCurator.lockAndLoad(lease.getPoolId());
+        if (pool != null) {
+            pool.setConsumed(Math.max(0, pool.getConsumed() - unused));
+        }
+
+        this.leaseCurator.delete(lease);
+    }
+
+    /**
+     * Deletes the leases which have expired and recalculates the consumed quantity of their pools,
+     * which no longer counts the unused quantity of the expired leases.
+     *
+     * @return
+     *  the number of leases reclaimed
+     */
+    @Transactional
+    protected int reclaimExpiredLeases() {
+        Date now = new Date();
+        List<String> poolIds = this.leaseCurator.getPoolIdsWithExpiredLeases(now);
+
+        if (poolIds.isEmpty()) {
+            return 0;
+        }
+
+        // Lock the pools first, so leases granted concurrently are counted by the recalculation
+        this.poolCurator.lockAndLoad(poolIds);
+
+        int reclaimed = this.leaseCurator.deleteExpiredLeases(now);
+        this.poolCurator.calculateConsumedForPools(poolIds);
+
+        return reclaimed;
+    }
+}
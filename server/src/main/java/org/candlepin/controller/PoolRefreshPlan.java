@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.controller;
+
+import org.candlepin.model.Owner;
+import org.candlepin.model.Product;
+import org.candlepin.service.model.SubscriptionInfo;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+
+/**
+ * The PoolRefreshPlan carries the state of a pool refresh for a single owner between its phases:
+ * the subscriptions received from upstream, those which need to be processed, and the products
+ * imported for them.
+ * <p></p>
+ * The imported products are only attached to the session in which the plan was built; refreshes
+ * processing the plan across several transactions must look them up again by ID.
+ */
+class PoolRefreshPlan {
+
+    private final Owner owner;
+    private final Date started;
+    private final Set<String> subscriptionIds;
+    private final List<SubscriptionInfo> pending;
+    private final Map<String, String> fingerprints;
+    private final Map<String, Product> importedProducts;
+    private final Map<String, Product> updatedProducts;
+
+    /**
+     * Creates a new plan for refreshing the pools of the given owner.
+     *
+     * @param owner
+     *  the owner whose pools are being refreshed
+     *
+     * @param started
+     *  the time at which the refresh started
+     *
+     * @param subscriptionIds
+     *  the IDs of all of the active subscriptions of the owner
+     *
+     * @param pending
+     *  the subscriptions whose pools need to be refreshed
+     *
+     * @param fingerprints
+     *  a map of subscription ID to the new fingerprint of each pending subscription whose
+     *  fingerprint has changed
+     *
+     * @param importedProducts
+     *  a map of product ID to the products imported for the subscriptions
+     *
+     * @param updatedProducts
+     *  a map of product ID to the imported products which changed
+     */
+    PoolRefreshPlan(Owner owner, Date started, Set<String> subscriptionIds, List<SubscriptionInfo> pending,
+        Map<String, String> fingerprints, Map<String, Product> importedProducts,
+        Map<String, Product> updatedProducts) {
+
+        this.owner = owner;
+        this.started = started;
+        this.subscriptionIds = Collections.unmodifiableSet(subscriptionIds);
+        this.pending = Collections.unmodifiableList(pending);
+        this.fingerprints = Collections.unmodifiableMap(fingerprints);
+        this.importedProducts = Collections.unmodifiableMap(importedProducts);
+        this.updatedProducts = Collections.unmodifiableMap(updatedProducts);
+    }
+
+    public Owner getOwner() {
+        return this.owner;
+    }
+
+    public Date getStarted() {
+        return this.started;
+    }
+
+    public Set<String> getSubscriptionIds() {
+        return this.subscriptionIds;
+    }
+
+    public List<SubscriptionInfo> getPending() {
+        return this.pending;
+    }
+
+    /**
+     * @return
+     *  the number of active subscriptions which were skipped, as they have not changed since their
+     *  pools were last refreshed
+     */
+    public int getUnchanged() {
+        return this.subscriptionIds.size() - this.pending.size();
+    }
+
+    public Map<String, String> getFingerprints() {
+        return this.fingerprints;
+    }
+
+    public Map<String, Product> getImportedProducts() {
+        return this.importedProducts;
+    }
+
+    public Map<String, Product> getUpdatedProducts() {
+        return this.updatedProducts;
+    }
+}
@@ -27,6 +27,7 @@ import org.candlepin.model.OwnerProductCurator;
 import org.candlepin.model.Product;
 import org.candlepin.model.ProductContent;
 import org.candlepin.model.ProductCurator;
+import org.candlepin.model.ProductDigest;
 import org.candlepin.service.model.BrandingInfo;
 import org.candlepin.service.model.ContentInfo;
 import org.candlepin.service.model.ProductContentInfo;
@@ -313,14 +314,53 @@ public class ProductManager {
         Map<String, List<Product>> existingVersions = new HashMap<>();
         List<OwnerProduct> ownerProductBuffer = new LinkedList<>();
 
-        // - Divide imported products into sets of updates and creates
+        // - Discard any imported products the owner already has with the same content digest.
+        //   Digests are strong hashes of the product data, so a match is trusted without loading
+        //   or comparing the existing product.
+        log.debug("Checking for unchanged products...");
+        Map<String, String> productDigests = new HashMap<>();
+        for (ProductInfo update : productData.values()) {
+            if (update.getId() != null && update.getName() != null) {
+                String digest = ProductDigest.calculate(update, importedContent);
+
+                if (digest != null) {
+                    productDigests.put(update.getId(), digest);
+                }
+            }
+        }
+
+        Map<String, String> unchanged = this.ownerProductCurator
+            .getLockedProductUuidsByDigests(owner, productDigests);
+
+        Map<String, Product> references = this.productCurator.getProductReferences(unchanged.values());
+        for (Map.Entry<String, String> entry : unchanged.entrySet()) {
+            skippedProducts.put(entry.getKey(), references.get(entry.getValue()));
+        }
+
+        productDigests.clear();
+
+        Set<String> productIds = new HashSet<>(productData.keySet());
+        productIds.removeAll(skippedProducts.keySet());
+
+        // - Divide the remaining imported products into sets of updates and creates
         log.debug("Fetching existing products for update...");
-        for (Product product : this.ownerProductCurator.getProductsByIds(owner, productData.keySet())) {
+        for (Product product : this.ownerProductCurator.getProductsByIds(owner, productIds)) {
             ProductInfo update = productData.get(product.getId());
 
             if (product.isLocked() && !isChangedBy(product, update)) {
                 // This product won't be changing, so we'll just pretend it's not being imported at all
                 skippedProducts.put(product.getId(), product);
+
+                // Products persisted before digests were introduced won't have one yet; store it
+                // so the product is skipped by its digest on the next import
+                if (product.getContentDigest() == null) {
+                    String digest = ProductDigest.calculate(product);
+
+                    if (digest != null) {
+                        productDigests.put(product.getUuid(), digest);
+                    }
+                }
+
                 continue;
             }
 
@@ -334,6 +374,9 @@ public class ProductManager {
             productVersions.put(product.getId(), product.getEntityVersion());
         }
 
+        this.productCurator.updateContentDigests(productDigests);
+        productDigests = null;
+
         log.debug("Validating new products...");
         for (ProductInfo update : productData.values()) {
             if (!skippedProducts.containsKey(update.getId()) &&
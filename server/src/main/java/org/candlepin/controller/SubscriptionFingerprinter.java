@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.controller;
+
+import org.candlepin.model.Product;
+import org.candlepin.service.model.CdnInfo;
+import org.candlepin.service.model.CertificateInfo;
+import org.candlepin.service.model.ProductInfo;
+import org.candlepin.service.model.SubscriptionInfo;
+
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+
+
+/**
+ * Builds fingerprints of subscriptions which change whenever the pools created from a subscription
+ * may need to change, allowing pool refreshes to skip subscriptions which have not changed since
+ * their pools were last refreshed.
+ * <p></p>
+ * A fingerprint covers every field of the subscription, along with the versions of the products
+ * it references, as imported for the owner being refreshed. Product versions include the content
+ * of each product, so a change to a product or its content shared by several subscriptions changes
+ * the fingerprint of each.
+ */
+public final class SubscriptionFingerprinter {
+
+    /** Changing the version invalidates all existing fingerprints */
+    private static final String VERSION = "1";
+
+    private SubscriptionFingerprinter() {
+        // Intentionally left empty
+    }
+
+    /**
+     * Builds the fingerprint of the given subscription.
+     *
+     * @param subscription
+     *  the subscription to fingerprint
+     *
+     * @param products
+     *  a map of product ID to the products imported for the owner of the subscription
+     *
+     * @return
+     *  a hex-encoded, 64 character fingerprint of the subscription
+     */
+    public static String fingerprint(SubscriptionInfo subscription, Map<String, Product> products) {
+        if (subscription == null) {
+            throw new IllegalArgumentException("subscription is null");
+        }
+
+        StringBuilder builder = new StringBuilder();
+
+        put(builder, VERSION);
+        put(builder, subscription.getId());
+        putProduct(builder, subscription.getProduct(), products);
+        putProducts(builder, subscription.getProvidedProducts(), products);
+        putProduct(builder, subscription.getDerivedProduct(), products);
+        putProducts(builder, subscription.getDerivedProvidedProducts(), products);
+        put(builder, subscription.getQuantity());
+        put(builder, subscription.getStartDate());
+        put(builder, subscription.getEndDate());
+        put(builder, subscription.getLastModified());
+        put(builder, subscription.getContractNumber());
+        put(builder, subscription.getAccountNumber());
+        put(builder, subscription.getOrderNumber());
+        put(builder, subscription.getUpstreamPoolId());
+        put(builder, subscription.getUpstreamEntitlementId());
+        put(builder, subscription.getUpstreamConsumerId());
+
+        CdnInfo cdn = subscription.getCdn();
+        put(builder, cdn != null ? cdn.getLabel() : null);
+
+        CertificateInfo certificate = subscription.getCertificate();
+        put(builder, certificate != null ? certificate.getKey() : null);
+        put(builder, certificate != null ? certificate.getCertificate() : null);
+
+        return Hashing.sha256()
+            .hashString(builder, StandardCharsets.UTF_8)
+            .toString();
+    }
+
+    private static void putProduct(StringBuilder builder, ProductInfo product,
+        Map<String, Product> products) {
+
+        String id = product != null ? product.getId() : null;
+        Product imported = id != null ? products.get(id) : null;
+
+        put(builder, id);
+        put(builder, imported != null ? imported.getEntityVersion() : null);
+    }
+
+    private static void putProducts(StringBuilder builder, Collection<? extends ProductInfo> collection,
+        Map<String, Product> products) {
+
+        if (collection == null) {
+            put(builder, null);
+            return;
+        }
+
+        // Sort by ID, so the order in which the products were received does not matter
+        TreeMap<String, ProductInfo> sorted = new TreeMap<>();
+        for (ProductInfo product : collection) {
+            if (product != null && product.getId() != null) {
+                sorted.put(product.getId(), product);
+            }
+        }
+
+        put(builder, sorted.size());
+        for (ProductInfo product : sorted.values()) {
+            putProduct(builder, product, products);
+        }
+    }
+
+    /**
+     * Appends a length-prefixed value, so that no two sequences of values produce the same input
+     */
+    private static void put(StringBuilder builder, Object value) {
+        if (value == null) {
+            builder.append("-;");
+            return;
+        }
+
+        String string = value instanceof Date ?
+            String.valueOf(((Date) value).getTime()) :
+            Objects.toString(value);
+
+        builder.append(string.length()).append(':').append(string).append(';');
+    }
+}
@@ -0,0 +1,209 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.dto.api.v1;
+
+import org.candlepin.dto.CandlepinDTO;
+
+import org.apache.commons.lang.builder.EqualsBuilder;
+import org.apache.commons.lang.builder.HashCodeBuilder;
+
+import java.util.Date;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+
+
+
+/**
+ * A DTO representation of the statistics on the pending and running jobs with a given job key
+ */
+@XmlAccessorType(XmlAccessType.PROPERTY)
+public class JobQueueStatisticsDTO extends CandlepinDTO<JobQueueStatisticsDTO> {
+
+    public static final long serialVersionUID = 1L;
+
+    private String jobKey;
+    private Long waiting;
+    private Long queued;
+    private Long running;
+    private Date oldestPending;
+    private Long longestWait;
+
+    /**
+     * Initializes a new JobQueueStatisticsDTO instance with null values.
+     */
+    public JobQueueStatisticsDTO() {
+        // Intentionally left empty
+    }
+
+    /**
+     * Initializes a new JobQueueStatisticsDTO instance which is a shallow copy of the provided
+     * source entity.
+     *
+     * @param source
+     *  The source entity to copy
+     */
+    public JobQueueStatisticsDTO(JobQueueStatisticsDTO source) {
+        super(source);
+    }
+
+    public String getJobKey() {
+        return this.jobKey;
+    }
+
+    public JobQueueStatisticsDTO setJobKey(String jobKey) {
+        this.jobKey = jobKey;
+        return this;
+    }
+
+    /**
+     * Returns the number of jobs waiting for other jobs to complete before being queued.
+     *
+     * @return the number of waiting jobs
+     */
+    public Long getWaiting() {
+        return this.waiting;
+    }
+
+    public JobQueueStatisticsDTO setWaiting(Long waiting) {
+        this.waiting = waiting;
+        return this;
+    }
+
+    /**
+     * Returns the number of jobs queued for execution.
+     *
+     * @return the number of queued jobs
+     */
+    public Long getQueued() {
+        return this.queued;
+    }
+
+    public JobQueueStatisticsDTO setQueued(Long queued) {
+        this.queued = queued;
+        return this;
+    }
+
+    /**
+     * Returns the number of jobs currently running.
+     *
+     * @return the number of running jobs
+     */
+    public Long getRunning() {
+        return this.running;
+    }
+
+    public JobQueueStatisticsDTO setRunning(Long running) {
+        this.running = running;
+        return this;
+    }
+
+    /**
+     * Returns the time at which the longest pending (waiting or queued) job entered its current
+     * state.
+     *
+     * @return the time the oldest pending job has been pending since, or null if no jobs are pending
+     */
+    public Date getOldestPending() {
+        return this.oldestPending;
+    }
+
+    public JobQueueStatisticsDTO setOldestPending(Date oldestPending) {
+        this.oldestPending = oldestPending;
+        return this;
+    }
+
+    /**
+     * Returns how long, in milliseconds, the longest pending job has been pending.
+     *
+     * @return the longest wait time of the pending jobs, or null if no jobs are pending
+     */
+    public Long getLongestWait() {
+        return this.longestWait;
+    }
+
+    public JobQueueStatisticsDTO setLongestWait(Long longestWait) {
+        this.longestWait = longestWait;
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return String.format("JobQueueStatisticsDTO [job key: %s, waiting: %s, queued: %s, running: %s]",
+            this.getJobKey(), this.getWaiting(), this.getQueued(), this.getRunning());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+
+        if (obj instanceof JobQueueStatisticsDTO) {
+            JobQueueStatisticsDTO that = (JobQueueStatisticsDTO) obj;
+
+            EqualsBuilder builder = new EqualsBuilder()
+                .append(this.getJobKey(), that.getJobKey())
+                .append(this.getWaiting(), that.getWaiting())
+                .append(this.getQueued(), that.getQueued())
+                .append(this.getRunning(), that.getRunning())
+                .append(this.getOldestPending(), that.getOldestPending())
+                .append(this.getLongestWait(), that.getLongestWait());
+
+            return builder.isEquals();
+        }
+
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        HashCodeBuilder builder = new HashCodeBuilder(37, 7)
+            .append(this.getJobKey())
+            .append(this.getWaiting())
+            .append(this.getQueued())
+            .append(this.getRunning())
+            .append(this.getOldestPending())
+            .append(this.getLongestWait());
+
+        return builder.toHashCode();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public JobQueueStatisticsDTO populate(JobQueueStatisticsDTO source) {
+        super.populate(source);
+
+        this.setJobKey(source.getJobKey());
+        this.setWaiting(source.getWaiting());
+        this.setQueued(source.getQueued());
+        this.setRunning(source.getRunning());
+        this.setOldestPending(source.getOldestPending());
+        this.setLongestWait(source.getLongestWait());
+
+        return this;
+    }
+}
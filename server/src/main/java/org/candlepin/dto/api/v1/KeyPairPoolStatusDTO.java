@@ -0,0 +1,235 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.dto.api.v1;
+
+import org.candlepin.dto.CandlepinDTO;
+import org.candlepin.pki.KeyPairPool;
+
+import io.swagger.annotations.ApiModel;
+
+import org.apache.commons.lang.builder.EqualsBuilder;
+import org.apache.commons.lang.builder.HashCodeBuilder;
+
+
+
+/**
+ * KeyPairPoolStatusDTO
+ */
+@ApiModel(description = "Status of the pool of pre-generated consumer key pairs")
+public class KeyPairPoolStatusDTO extends CandlepinDTO<KeyPairPoolStatusDTO> {
+
+    private Boolean enabled;
+    private Integer depth;
+    private Integer capacity;
+    private Long generated;
+    private Double refillRate;
+    private Long hits;
+    private Long misses;
+
+    /**
+     * Initializes a new KeyPairPoolStatusDTO instance with null values.
+     */
+    public KeyPairPoolStatusDTO() {
+        // Intentionally left empty
+    }
+
+    public KeyPairPoolStatusDTO(KeyPairPool pool) {
+        this.enabled = pool.isEnabled();
+        this.depth = pool.getDepth();
+        this.capacity = pool.getCapacity();
+        this.generated = pool.getGeneratedCount();
+        this.refillRate = pool.getRefillRate();
+        this.hits = pool.getHits();
+        this.misses = pool.getMisses();
+    }
+
+    /**
+     * Initializes a new KeyPairPoolStatusDTO instance which is a shallow copy of the provided
+     * source entity.
+     *
+     * @param source
+     *  The source entity to copy
+     */
+    public KeyPairPoolStatusDTO(KeyPairPoolStatusDTO source) {
+        super(source);
+    }
+
+    public Boolean isEnabled() {
+        return this.enabled;
+    }
+
+    public KeyPairPoolStatusDTO setEnabled(Boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+    /**
+     * @return
+     *  the number of pre-generated key pairs held by the pool
+     */
+    public Integer getDepth() {
+        return this.depth;
+    }
+
+    public KeyPairPoolStatusDTO setDepth(Integer depth) {
+        this.depth = depth;
+        return this;
+    }
+
+    /**
+     * @return
+     *  the maximum number of pre-generated key pairs held by the pool
+     */
+    public Integer getCapacity() {
+        return this.capacity;
+    }
+
+    public KeyPairPoolStatusDTO setCapacity(Integer capacity) {
+        this.capacity = capacity;
+        return this;
+    }
+
+    /**
+     * @return
+     *  the number of key pairs generated in the background since the pool was started
+     */
+    public Long getGenerated() {
+        return this.generated;
+    }
+
+    public KeyPairPoolStatusDTO setGenerated(Long generated) {
+        this.generated = generated;
+        return this;
+    }
+
+    /**
+     * @return
+     *  the average number of key pairs generated in the background per second
+     */
+    public Double getRefillRate() {
+        return this.refillRate;
+    }
+
+    public KeyPairPoolStatusDTO setRefillRate(Double refillRate) {
+        this.refillRate = refillRate;
+        return this;
+    }
+
+    /**
+     * @return
+     *  the number of key pairs served from the pool
+     */
+    public Long getHits() {
+        return this.hits;
+    }
+
+    public KeyPairPoolStatusDTO setHits(Long hits) {
+        this.hits = hits;
+        return this;
+    }
+
+    /**
+     * @return
+     *  the number of key pairs generated inline because the pool was empty
+     */
+    public Long getMisses() {
+        return this.misses;
+    }
+
+    public KeyPairPoolStatusDTO setMisses(Long misses) {
+        this.misses = misses;
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return String.format("KeyPairPoolStatusDTO [enabled: %s, depth: %s, capacity: %s, hits: %s, " +
+            "misses: %s]", this.isEnabled(), this.getDepth(), this.getCapacity(), this.getHits(),
+            this.getMisses());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+
+        if (obj instanceof KeyPairPoolStatusDTO) {
+            KeyPairPoolStatusDTO that = (KeyPairPoolStatusDTO) obj;
+
+            EqualsBuilder builder = new EqualsBuilder()
+                .append(this.isEnabled(), that.isEnabled())
+                .append(this.getDepth(), that.getDepth())
+                .append(this.getCapacity(), that.getCapacity())
+                .append(this.getGenerated(), that.getGenerated())
+                .append(this.getRefillRate(), that.getRefillRate())
+                .append(this.getHits(), that.getHits())
+                .append(this.getMisses(), that.getMisses());
+
+            return builder.isEquals();
+        }
+
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        HashCodeBuilder builder = new HashCodeBuilder(7, 17)
+            .append(this.isEnabled())
+            .append(this.getDepth())
+            .append(this.getCapacity())
+            .append(this.getGenerated())
+            .append(this.getRefillRate())
+            .append(this.getHits())
+            .append(this.getMisses());
+
+        return builder.toHashCode();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public KeyPairPoolStatusDTO clone() {
+        return super.clone();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public KeyPairPoolStatusDTO populate(KeyPairPoolStatusDTO source) {
+        super.populate(source);
+
+        this.setEnabled(source.isEnabled());
+        this.setDepth(source.getDepth());
+        this.setCapacity(source.getCapacity());
+        this.setGenerated(source.getGenerated());
+        this.setRefillRate(source.getRefillRate());
+        this.setHits(source.getHits());
+        this.setMisses(source.getMisses());
+
+        return this;
+    }
+}
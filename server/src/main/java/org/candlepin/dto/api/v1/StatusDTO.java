@@ -77,6 +77,11 @@ public class StatusDTO extends CandlepinDTO<StatusDTO> {
     @ApiModelProperty(example = "[ \"cores\", \"ram\", \"instance_multiplier\" ]")
     private Set<String> capabilities;
 
+    /**
+     * The state of the pool of pre-generated consumer key pairs
+     */
+    private KeyPairPoolStatusDTO keyPairPool;
+
 
     /**
      * Initializes a new StatusDTO instance with null values.
@@ -271,6 +276,15 @@ public class StatusDTO extends CandlepinDTO<StatusDTO> {
         return this;
     }
 
+    public KeyPairPoolStatusDTO getKeyPairPool() {
+        return keyPairPool;
+    }
+
+    public StatusDTO setKeyPairPool(KeyPairPoolStatusDTO keyPairPool) {
+        this.keyPairPool = keyPairPool;
+        return this;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -294,7 +308,8 @@ public class StatusDTO extends CandlepinDTO<StatusDTO> {
                 .append(this.getRelease(), that.getRelease())
                 .append(this.getStandalone(), that.getStandalone())
                 .append(this.getTimeUTC(), that.getTimeUTC())
-                .append(this.getManagerCapabilities(), that.getManagerCapabilities());
+                .append(this.getManagerCapabilities(), that.getManagerCapabilities())
+                .append(this.getKeyPairPool(), that.getKeyPairPool());
 
             return builder.isEquals();
         }
@@ -318,7 +333,8 @@ public class StatusDTO extends CandlepinDTO<StatusDTO> {
             .append(this.getRelease())
             .append(this.getStandalone())
             .append(this.getTimeUTC())
-            .append(this.getManagerCapabilities());
+            .append(this.getManagerCapabilities())
+            .append(this.getKeyPairPool());
 
         return builder.toHashCode();
     }
@@ -340,6 +356,9 @@ public class StatusDTO extends CandlepinDTO<StatusDTO> {
         copy.setManagerCapabilities(null);
         copy.setManagerCapabilities(capabilities);
 
+        KeyPairPoolStatusDTO keyPairPool = this.getKeyPairPool();
+        copy.setKeyPairPool(keyPairPool != null ? keyPairPool.clone() : null);
+
         return copy;
     }
 
@@ -361,6 +380,7 @@ public class StatusDTO extends CandlepinDTO<StatusDTO> {
         this.setStandalone(source.getStandalone());
         this.setTimeUTC(source.getTimeUTC());
         this.setManagerCapabilities(source.getManagerCapabilities());
+        this.setKeyPairPool(source.getKeyPairPool());
 
         return this;
     }
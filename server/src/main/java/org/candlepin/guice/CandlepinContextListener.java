@@ -29,10 +29,13 @@ import org.candlepin.common.config.MapConfiguration;
 import org.candlepin.common.logging.LoggingConfigurator;
 import org.candlepin.config.ConfigProperties;
 import org.candlepin.config.DatabaseConfigFactory;
+import org.candlepin.controller.ConsumerCheckInCoalescer;
+import org.candlepin.controller.PoolQuantityEscrow;
 import org.candlepin.controller.QpidStatusMonitor;
 import org.candlepin.controller.SuspendModeTransitioner;
 import org.candlepin.logging.LoggerContextListener;
 import org.candlepin.messaging.CPMContextListener;
+import org.candlepin.pki.KeyPairPool;
 import org.candlepin.pki.impl.JSSProviderLoader;
 import org.candlepin.resteasy.AnnotationLocator;
 import org.candlepin.swagger.CandlepinSwaggerModelConverter;
@@ -95,6 +98,9 @@ public class CandlepinContextListener extends GuiceResteasyBootstrapServletConte
 
     private ActiveMQContextListener activeMQContextListener;
     private JobManager jobManager;
+    private ConsumerCheckInCoalescer checkInCoalescer;
+    private KeyPairPool keyPairPool;
+    private PoolQuantityEscrow poolQuantityEscrow;
     private LoggerContextListener loggerListener;
     private CrlFileUtil crlFileUtil;
 
@@ -215,6 +221,18 @@ public class CandlepinContextListener extends GuiceResteasyBootstrapServletConte
         this.jobManager.initialize();
         this.jobManager.start();
 
+        // Start writing consumer check-ins in batches
+        this.checkInCoalescer = injector.getInstance(ConsumerCheckInCoalescer.class);
+        this.checkInCoalescer.start();
+
+        // Start granting entitlements from leased pool quantity, if enabled
+        this.poolQuantityEscrow = injector.getInstance(PoolQuantityEscrow.class);
+        this.poolQuantityEscrow.start();
+
+        // Start pre-generating key pairs for new consumers
+        this.keyPairPool = injector.getInstance(KeyPairPool.class);
+        this.keyPairPool.start();
+
         loggerListener = injector.getInstance(LoggerContextListener.class);
 
         // Custom ModelConverter to handle our specific serialization requirements
@@ -263,6 +281,20 @@ public class CandlepinContextListener extends GuiceResteasyBootstrapServletConte
         // Tear down the job system
         this.jobManager.shutdown();
 
+        // Write out any check-ins still pending before the persistence layer goes away
+        if (this.checkInCoalescer != null) {
+            this.checkInCoalescer.shutdown();
+        }
+
+        if (this.keyPairPool != null) {
+            this.keyPairPool.shutdown();
+        }
+
+        // Return unused leased quantity to the pools before the persistence layer goes away
+        if (this.poolQuantityEscrow != null) {
+            this.poolQuantityEscrow.shutdown();
+        }
+
         // if amqp is enabled, close all connections.
         if (config.getBoolean(ConfigProperties.AMQP_INTEGRATION_ENABLED)) {
             Util.closeSafely(injector.getInstance(AMQPBusPublisher.class), "AMQPBusPublisher");
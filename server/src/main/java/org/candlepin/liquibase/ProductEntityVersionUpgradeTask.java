@@ -0,0 +1,262 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.liquibase;
+
+import liquibase.database.Database;
+import liquibase.exception.DatabaseException;
+
+import org.apache.commons.lang.builder.HashCodeBuilder;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+
+/**
+ * The ProductEntityVersionUpgradeTask recalculates the entity versions of branded products.
+ * <p></p>
+ * Branding used to contribute its hash code to the version of the product it is attached to, and
+ * that hash code included the UUID of the product, which made the stored versions of branded
+ * products inconsistent with the versions calculated for incoming products. Branding now
+ * contributes only its own fields, so the stored versions of branded products must be refreshed.
+ * Unbranded products are not affected.
+ * <p></p>
+ * The version is calculated the same way as Product.getEntityVersion, using the stored versions of
+ * the products' content.
+ */
+public class ProductEntityVersionUpgradeTask extends LiquibaseCustomTask {
+
+    public ProductEntityVersionUpgradeTask(Database database, CustomTaskLogger logger) {
+        super(database, logger);
+    }
+
+    /**
+     * Calculates the entity version of a product from its stored data.
+     *
+     * @param productId
+     *  the Red Hat ID of the product
+     *
+     * @param name
+     *  the name of the product
+     *
+     * @param multiplier
+     *  the multiplier of the product, or null
+     *
+     * @param attributes
+     *  the attributes of the product
+     *
+     * @param dependentProductIds
+     *  the IDs of the products the product depends on
+     *
+     * @param contentVersions
+     *  the version of each of the product's content, combined with whether it is enabled
+     *
+     * @param brandingVersions
+     *  the version of each of the product's branding
+     *
+     * @return
+     *  the entity version of the product
+     */
+    protected static int calculateEntityVersion(String productId, String name, Long multiplier,
+        Map<String, String> attributes, Collection<String> dependentProductIds,
+        Collection<Integer> contentVersions, Collection<Integer> brandingVersions) {
+
+        HashCodeBuilder builder = new HashCodeBuilder(37, 7)
+            .append(productId)
+            .append(name)
+            .append(multiplier)
+            .append(attributes);
+
+        if (!dependentProductIds.isEmpty()) {
+            int accumulator = 0;
+            for (String pid : dependentProductIds) {
+                accumulator += (pid != null ? pid.hashCode() : 0);
+            }
+
+            builder.append(accumulator);
+        }
+
+        if (!contentVersions.isEmpty()) {
+            builder.append(sum(contentVersions));
+        }
+
+        if (!brandingVersions.isEmpty()) {
+            builder.append(sum(brandingVersions));
+        }
+
+        return builder.toHashCode();
+    }
+
+    /**
+     * Calculates the version a product content mapping contributes to its product.
+     *
+     * @param contentVersion
+     *  the entity version of the content
+     *
+     * @param enabled
+     *  whether or not the content is enabled
+     *
+     * @return
+     *  the version of the product content mapping
+     */
+    protected static int calculateContentVersion(int contentVersion, boolean enabled) {
+        int hash = 17;
+
+        hash = 7 * hash + contentVersion;
+        hash = 7 * hash + (enabled ? 1 : 0);
+
+        return hash;
+    }
+
+    /**
+     * Calculates the version a branding contributes to its product.
+     *
+     * @param name
+     *  the name of the branding
+     *
+     * @param productId
+     *  the ID of the branded engineering product
+     *
+     * @param type
+     *  the type of the branding
+     *
+     * @return
+     *  the version of the branding
+     */
+    protected static int calculateBrandingVersion(String name, String productId, String type) {
+        return new HashCodeBuilder(129, 15)
+            .append(name)
+            .append(productId)
+            .append(type)
+            .toHashCode();
+    }
+
+    private static int sum(Collection<Integer> values) {
+        int accumulator = 0;
+        for (Integer value : values) {
+            accumulator += value;
+        }
+
+        return accumulator;
+    }
+
+    /**
+     * Executes the product entity version upgrade task.
+     *
+     * @throws DatabaseException
+     *  if an error occurs while performing a database operation
+     *
+     * @throws SQLException
+     *  if an error occurs while executing an SQL statement
+     */
+    public void execute() throws DatabaseException, SQLException {
+        // Store the connection's auto commit setting, so we may temporarily clobber it.
+        boolean autocommit = this.connection.getAutoCommit();
+        this.connection.setAutoCommit(false);
+
+        List<String> uuids = new ArrayList<>();
+        ResultSet results = this.executeQuery(
+            "SELECT DISTINCT product_uuid FROM cp2_product_branding");
+
+        while (results.next()) {
+            uuids.add(results.getString(1));
+        }
+
+        results.close();
+        this.logger.info(String.format("Recalculating entity versions of %d branded products", uuids.size()));
+
+        int count = 0;
+        for (String uuid : uuids) {
+            results = this.executeQuery(
+                "SELECT product_id, name, multiplier FROM cp2_products WHERE uuid = ?", uuid);
+
+            if (!results.next()) {
+                results.close();
+                continue;
+            }
+
+            String productId = results.getString(1);
+            String name = results.getString(2);
+            Long multiplier = results.getLong(3);
+            if (results.wasNull()) {
+                multiplier = null;
+            }
+
+            results.close();
+
+            Map<String, String> attributes = new HashMap<>();
+            results = this.executeQuery(
+                "SELECT name, value FROM cp2_product_attributes WHERE product_uuid = ?", uuid);
+
+            while (results.next()) {
+                attributes.put(results.getString(1), results.getString(2));
+            }
+
+            results.close();
+
+            List<String> dependentProductIds = new ArrayList<>();
+            results = this.executeQuery(
+                "SELECT element FROM cp2_product_dependent_products WHERE product_uuid = ?", uuid);
+
+            while (results.next()) {
+                dependentProductIds.add(results.getString(1));
+            }
+
+            results.close();
+
+            List<Integer> contentVersions = new ArrayList<>();
+            results = this.executeQuery(
+                "SELECT C.entity_version, PC.enabled " +
+                "FROM cp2_product_content PC " +
+                "  INNER JOIN cp2_content C ON C.uuid = PC.content_uuid " +
+                "WHERE PC.product_uuid = ?", uuid);
+
+            while (results.next()) {
+                contentVersions.add(calculateContentVersion(results.getInt(1), results.getBoolean(2)));
+            }
+
+            results.close();
+
+            List<Integer> brandingVersions = new ArrayList<>();
+            results = this.executeQuery(
+                "SELECT name, product_id, type FROM cp2_product_branding WHERE product_uuid = ?", uuid);
+
+            while (results.next()) {
+                brandingVersions.add(calculateBrandingVersion(results.getString(1), results.getString(2),
+                    results.getString(3)));
+            }
+
+            results.close();
+
+            int version = calculateEntityVersion(productId, name, multiplier, attributes,
+                dependentProductIds, contentVersions, brandingVersions);
+
+            count += this.executeUpdate("UPDATE cp2_products SET entity_version = ? WHERE uuid = ?",
+                version, uuid);
+        }
+
+        this.logger.info(String.format("%d product entity versions updated", count));
+
+        // Commit & restore original autocommit state
+        this.connection.commit();
+        this.connection.setAutoCommit(autocommit);
+    }
+
+}
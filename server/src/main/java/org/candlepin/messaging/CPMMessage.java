@@ -68,6 +68,18 @@ public interface CPMMessage {
      */
     boolean isDurable();
 
+    /**
+     * Sets the delay before this message is delivered to consumers once it has been sent. A delay
+     * of zero or less delivers the message immediately.
+     *
+     * @param delay
+     *  the delivery delay, in milliseconds
+     *
+     * @return
+     *  a reference to this message
+     */
+    CPMMessage setDeliveryDelay(long delay);
+
 
     // Message details
     /**
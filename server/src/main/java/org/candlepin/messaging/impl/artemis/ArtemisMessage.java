@@ -108,6 +108,18 @@ public class ArtemisMessage implements CPMMessage {
         return this.message.isDurable();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CPMMessage setDeliveryDelay(long delay) {
+        if (delay > 0) {
+            this.message.setScheduledDeliveryTime(System.currentTimeMillis() + delay);
+        }
+
+        return this;
+    }
+
     // CPMMessage setExpiration(long duration);
 
     // boolean hasExpired();
@@ -17,8 +17,10 @@ package org.candlepin.model;
 import org.candlepin.auth.Principal;
 import org.candlepin.auth.permissions.Permission;
 import org.candlepin.common.config.Configuration;
+import org.candlepin.common.exceptions.BadRequestException;
 import org.candlepin.common.exceptions.ConcurrentModificationException;
 import org.candlepin.common.paging.Page;
+import org.candlepin.common.paging.PageCursor;
 import org.candlepin.common.paging.PageRequest;
 import org.candlepin.config.DatabaseConfigFactory;
 import org.candlepin.guice.PrincipalProvider;
@@ -29,21 +31,27 @@ import com.google.inject.Provider;
 import com.google.inject.persist.Transactional;
 
 import org.hibernate.Criteria;
+import org.hibernate.HibernateException;
 import org.hibernate.LockMode;
 import org.hibernate.LockOptions;
 import org.hibernate.NaturalIdLoadAccess;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
 import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.DetachedCriteria;
 import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projection;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.engine.spi.EntityKey;
 import org.hibernate.internal.CriteriaImpl;
 import org.hibernate.internal.SessionImpl;
 import org.hibernate.metadata.ClassMetadata;
 import org.hibernate.query.NativeQuery;
+import org.hibernate.resource.transaction.spi.TransactionStatus;
 import org.hibernate.transform.ResultTransformer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -53,11 +61,16 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.function.UnaryOperator;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityTransaction;
@@ -68,6 +81,7 @@ import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
+import javax.transaction.Synchronization;
 
 /**
  * AbstractHibernateCurator base class for all Candlepin curators. Curators are
@@ -289,7 +303,11 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
     public Page<List<E>> listAll(PageRequest pageRequest) {
         Page<List<E>> page = new Page<>();
 
-        if (pageRequest != null) {
+        if (pageRequest != null && pageRequest.isCursorPaging()) {
+            page.setPageData(loadCursorPageData(createSecureCriteria(), page, pageRequest));
+            page.setPageRequest(pageRequest);
+        }
+        else if (pageRequest != null) {
             Criteria count = createSecureCriteria();
             page.setMaxRecords(findRowCount(count));
 
@@ -318,6 +336,81 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
         return c.list();
     }
 
+    /**
+     * Loads the page of results following the cursor of the given page request, setting the
+     * cursor of the next page on the given page. The total number of results is not counted.
+     */
+    @SuppressWarnings("unchecked")
+    private List<E> loadCursorPageData(Criteria c, Page<?> page, PageRequest pageRequest) {
+        this.applyCursor(c, pageRequest);
+
+        int perPage = pageRequest.getPerPage();
+
+        // Fetch one more result than requested to find out whether or not there's a next page
+        c.setMaxResults(perPage + 1);
+        List<E> results = c.list();
+
+        if (results.size() > perPage) {
+            results = new ArrayList<>(results.subList(0, perPage));
+            page.setNextCursor(this.buildCursor(pageRequest, results.get(perPage - 1)));
+        }
+
+        return results;
+    }
+
+    /**
+     * Applies the ordering and restriction selecting the page following the cursor of the given
+     * page request to a criteria.
+     *
+     * @throws BadRequestException
+     *  if the cursor was issued for a different sort field or order than requested
+     */
+    private void applyCursor(Criteria c, PageRequest pageRequest) {
+        PageCursor cursor = pageRequest.getPageCursor();
+
+        if (cursor != null) {
+            if (!cursor.matches(CursorPaging.getSortBy(pageRequest), CursorPaging.getOrder(pageRequest))) {
+                throw new BadRequestException(this.i18nProvider.get()
+                    .tr("The cursor does not match the requested sort field and order"));
+            }
+
+            c.add(CursorPaging.getRestriction(cursor));
+        }
+
+        for (Order order : CursorPaging.getOrders(pageRequest)) {
+            c.addOrder(order);
+        }
+    }
+
+    /**
+     * Builds the cursor positioned after the given entity for the given page request.
+     *
+     * @throws BadRequestException
+     *  if the requested sort field cannot be used to page by cursor
+     */
+    private String buildCursor(PageRequest pageRequest, E entity) {
+        String sortBy = CursorPaging.getSortBy(pageRequest);
+
+        try {
+            Object value = entity.getId();
+
+            if (!CursorPaging.ID_PROPERTY.equals(sortBy)) {
+                ClassMetadata metadata = this.currentSession().getSessionFactory()
+                    .getClassMetadata(this.entityType);
+
+                value = metadata.getPropertyValue(entity, sortBy);
+            }
+
+            return CursorPaging.buildCursor(pageRequest, value, entity.getId());
+        }
+        catch (HibernateException | IllegalArgumentException e) {
+            log.debug("Unable to build cursor over field: {}", sortBy, e);
+
+            throw new BadRequestException(this.i18nProvider.get()
+                .tr("Results cannot be paged by cursor when sorted by \"{0}\"", sortBy), e);
+        }
+    }
+
     private Order createPagingOrder(PageRequest p) {
         String sortBy = (p.getSortBy() == null) ? AbstractHibernateObject.DEFAULT_SORT_FIELD : p.getSortBy();
         PageRequest.Order order = (p.getOrder() == null) ? PageRequest.DEFAULT_ORDER : p.getOrder();
@@ -536,7 +629,11 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
     public Page<List<E>> listByCriteria(Criteria c, PageRequest pageRequest) {
         Page<List<E>> page = new Page<>();
 
-        if (pageRequest != null) {
+        if (pageRequest != null && pageRequest.isCursorPaging()) {
+            page.setPageData(loadCursorPageData(c, page, pageRequest));
+            page.setPageRequest(pageRequest);
+        }
+        else if (pageRequest != null) {
             // see https://forum.hibernate.org/viewtopic.php?t=974802
 
             // Save original Projection and ResultTransformer
@@ -563,6 +660,124 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
         return page;
     }
 
+    /**
+     * Lists the results of the given criteria which pass the given filter, paged according to the
+     * given page request.
+     * <p></p>
+     * Rather than fetching every result and filtering them all before taking the requested page,
+     * results are scrolled through and filtered in batches, and only those on the requested page
+     * are kept in memory; the others are evicted from the session once their batch has been
+     * filtered. When paging with a cursor, scrolling stops as soon as the page is filled; otherwise
+     * the remaining results must still be filtered to count them.
+     *
+     * @param c
+     *  the criteria to list the results of
+     *
+     * @param pageRequest
+     *  the page request, or null to list all of the filtered results
+     *
+     * @param filter
+     *  the filter to apply to each batch of results; must return the results to keep, in order
+     *
+     * @return
+     *  the requested page of filtered results
+     */
+    @SuppressWarnings("unchecked")
+    @Transactional
+    public Page<List<E>> listByCriteria(Criteria c, PageRequest pageRequest, UnaryOperator<List<E>> filter) {
+        boolean cursorPaging = pageRequest != null && pageRequest.isCursorPaging();
+        boolean paging = pageRequest != null && pageRequest.isPaging();
+
+        int offset = paging ? (pageRequest.getPage() - 1) * pageRequest.getPerPage() : 0;
+        int limit = (cursorPaging || paging) ? pageRequest.getPerPage() : Integer.MAX_VALUE;
+
+        if (cursorPaging) {
+            this.applyCursor(c, pageRequest);
+        }
+        else if (pageRequest != null) {
+            c.addOrder(this.createPagingOrder(pageRequest));
+        }
+
+        int batchSize = Math.max(this.getBatchBlockSize(), 1);
+        c.setFetchSize(batchSize);
+
+        List<E> pageData = new ArrayList<>();
+        Set<E> retained = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<E> batch = new ArrayList<>(batchSize);
+        int matched = 0;
+        boolean hasNext = false;
+
+        // Entities already in the session belong to the caller and must not be evicted with the
+        // scrolled entities which are not kept
+        Session session = this.currentSession();
+        Set<Serializable> managedIds = new HashSet<>();
+        String entityName = this.entityType.getName();
+        for (Object element : session.getStatistics().getEntityKeys()) {
+            EntityKey key = (EntityKey) element;
+
+            if (entityName.equals(key.getEntityName())) {
+                managedIds.add(key.getIdentifier());
+            }
+        }
+
+        ScrollableResults results = c.scroll(ScrollMode.FORWARD_ONLY);
+        try {
+            boolean more = true;
+
+            while (more && !hasNext) {
+                more = results.next();
+
+                if (more) {
+                    batch.add((E) results.get(0));
+                }
+
+                if (batch.size() >= batchSize || (!more && !batch.isEmpty())) {
+                    for (E entity : filter.apply(batch)) {
+                        if (cursorPaging && pageData.size() >= limit) {
+                            hasNext = true;
+                            break;
+                        }
+
+                        if (matched >= offset && pageData.size() < limit) {
+                            pageData.add(entity);
+                            retained.add(entity);
+                        }
+
+                        ++matched;
+                    }
+
+                    // Evict everything in the batch which did not make it onto the page, so the
+                    // session holds no more than the page and the batch being filtered
+                    for (E entity : batch) {
+                        if (!retained.contains(entity) && !managedIds.contains(entity.getId())) {
+                            session.evict(entity);
+                        }
+                    }
+
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+        }
+        finally {
+            results.close();
+        }
+
+        Page<List<E>> page = new Page<>();
+
+        if (hasNext) {
+            page.setNextCursor(this.buildCursor(pageRequest, pageData.get(pageData.size() - 1)));
+        }
+
+        if (!cursorPaging) {
+            page.setMaxRecords(matched);
+        }
+
+        page.setPageData(pageData);
+        page.setPageRequest(pageRequest);
+
+        return page;
+    }
+
     /**
      * @param entity to be deleted.
      */
@@ -654,6 +869,37 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
         return manager != null ? manager.getTransaction() : null;
     }
 
+    /**
+     * Runs the given action once the current transaction completes, whether it is committed or
+     * rolled back. If there is no active transaction, the action is run immediately.
+     *
+     * @param action
+     *  the action to run
+     */
+    public void runAfterCompletion(Runnable action) {
+        Session session = this.currentSession();
+        Transaction transaction = session != null ? session.getTransaction() : null;
+
+        if (transaction != null &&
+            transaction.getStatus().isOneOf(TransactionStatus.ACTIVE, TransactionStatus.MARKED_ROLLBACK)) {
+
+            transaction.registerSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                    // Intentionally left empty
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    action.run();
+                }
+            });
+        }
+        else {
+            action.run();
+        }
+    }
+
     /**
      * Creates a new transactional wrapper using the specified action.
      *
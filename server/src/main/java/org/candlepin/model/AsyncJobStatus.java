@@ -165,6 +165,8 @@ public class AsyncJobStatus extends AbstractHibernateObject {
     @Column(name = "job_result")
     private String result;
 
+    private String checkpoint;
+
 
 
     /**
@@ -772,6 +774,32 @@ public class AsyncJobStatus extends AbstractHibernateObject {
         return this;
     }
 
+    /**
+     * Fetches the checkpoint recorded by a previous execution attempt of this job. If the job has
+     * not recorded a checkpoint, this method returns null.
+     *
+     * @return
+     *  the checkpoint recorded by this job, or null if the job has not recorded a checkpoint
+     */
+    public String getCheckpoint() {
+        return this.checkpoint;
+    }
+
+    /**
+     * Sets the checkpoint of this job. Unlike the job result, the checkpoint is retained between
+     * execution attempts, allowing a retried job to resume work committed by earlier attempts.
+     *
+     * @param checkpoint
+     *  the checkpoint to record for this job, or null to clear it
+     *
+     * @return
+     *  this job status instance
+     */
+    public AsyncJobStatus setCheckpoint(String checkpoint) {
+        this.checkpoint = checkpoint;
+        return this;
+    }
+
     /**
      * @{inheritDoc}
      */
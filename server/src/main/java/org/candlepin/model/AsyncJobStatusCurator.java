@@ -23,8 +23,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 import javax.inject.Singleton;
@@ -277,6 +279,77 @@ public class AsyncJobStatusCurator extends AbstractHibernateCurator<AsyncJobStat
         }
     }
 
+    /**
+     * Statistics on the pending and running jobs with a given job key
+     */
+    public static class JobQueueStatistics {
+        private final String jobKey;
+        private long waiting;
+        private long queued;
+        private long running;
+        private Date oldestPending;
+
+        public JobQueueStatistics(String jobKey) {
+            this.jobKey = jobKey;
+        }
+
+        public String getJobKey() {
+            return this.jobKey;
+        }
+
+        /**
+         * @return
+         *  the number of jobs waiting for other jobs to complete before being queued
+         */
+        public long getWaiting() {
+            return this.waiting;
+        }
+
+        /**
+         * @return
+         *  the number of jobs queued for execution
+         */
+        public long getQueued() {
+            return this.queued;
+        }
+
+        /**
+         * @return
+         *  the number of jobs currently running
+         */
+        public long getRunning() {
+            return this.running;
+        }
+
+        /**
+         * @return
+         *  the time at which the longest pending (waiting or queued) job entered its current state,
+         *  or null if there are no pending jobs
+         */
+        public Date getOldestPending() {
+            return this.oldestPending;
+        }
+
+        private void add(JobState state, long count, Date since) {
+            switch (state) {
+                case WAITING:
+                    this.waiting += count;
+                    break;
+
+                case RUNNING:
+                    this.running += count;
+                    return;
+
+                default:
+                    this.queued += count;
+            }
+
+            if (since != null && (this.oldestPending == null || since.before(this.oldestPending))) {
+                this.oldestPending = since;
+            }
+        }
+    }
+
     /**
      * Creates a new AsyncJobStatusCurator instance
      */
@@ -321,6 +394,32 @@ public class AsyncJobStatusCurator extends AbstractHibernateCurator<AsyncJobStat
         return states != null ? this.getJobsInState(Arrays.asList(states)) : new ArrayList<>();
     }
 
+    /**
+     * Fetches statistics on the jobs waiting, queued or running across all nodes, grouped by job
+     * key. Job keys without any such jobs are not included.
+     *
+     * @return
+     *  a list of job queue statistics, ordered by job key
+     */
+    public List<JobQueueStatistics> getJobQueueStatistics() {
+        String jpql = "SELECT aj.jobKey, aj.state, COUNT(aj), MIN(aj.updated) FROM AsyncJobStatus aj " +
+            "WHERE aj.state IN (:states) " +
+            "GROUP BY aj.jobKey, aj.state";
+
+        List<Object[]> rows = this.getEntityManager()
+            .createQuery(jpql, Object[].class)
+            .setParameter("states", EnumSet.of(JobState.WAITING, JobState.QUEUED, JobState.RUNNING))
+            .getResultList();
+
+        Map<String, JobQueueStatistics> stats = new TreeMap<>();
+        for (Object[] row : rows) {
+            stats.computeIfAbsent((String) row[0], JobQueueStatistics::new)
+                .add((JobState) row[1], (Long) row[2], (Date) row[3]);
+        }
+
+        return new ArrayList<>(stats.values());
+    }
+
     /**
      * Fetches a collection of jobs currently in non-terminal states
      *
@@ -189,6 +189,22 @@ public class Branding extends AbstractHibernateObject<Branding> implements Brand
             .toHashCode();
     }
 
+    /**
+     * Calculates and returns a version hash for this entity. Unlike the hashCode method, the
+     * version only depends on the branding itself, and not on the product it is attached to, so
+     * it is the same before and after the product is persisted.
+     *
+     * @return
+     *  a version hash for this entity
+     */
+    public int getEntityVersion() {
+        return new HashCodeBuilder(129, 15)
+            .append(this.name)
+            .append(this.productId)
+            .append(this.type)
+            .toHashCode();
+    }
+
     @Override
     public Branding clone() {
         Branding copy;
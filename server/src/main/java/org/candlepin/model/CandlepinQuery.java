@@ -14,9 +14,12 @@
  */
 package org.candlepin.model;
 
+import org.candlepin.common.paging.Page;
+import org.candlepin.common.paging.PageRequest;
 import org.candlepin.util.ElementTransformer;
 
 import org.hibernate.Session;
+import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.Order;
 
 import java.util.Iterator;
@@ -77,6 +80,19 @@ public interface CandlepinQuery<T> extends Iterable<T> {
      */
     CandlepinQuery<T> setMaxResults(int limit);
 
+    /**
+     * Sets the number of rows the JDBC driver should fetch from the database at a time when
+     * iterating the results of this query.
+     *
+     * @param fetchSize
+     *  The number of rows to fetch at a time. Values of zero or less will restore the driver's
+     *  default fetch size.
+     *
+     * @return
+     *  this query instance
+     */
+    CandlepinQuery<T> setFetchSize(int fetchSize);
+
     /**
      * Adds the specified ordering when executing this query.
      *
@@ -88,6 +104,17 @@ public interface CandlepinQuery<T> extends Iterable<T> {
      */
     CandlepinQuery<T> addOrder(Order order);
 
+    /**
+     * Adds the specified restriction when executing this query.
+     *
+     * @param criterion
+     *  The restriction to apply when executing this query
+     *
+     * @return
+     *  this query instance
+     */
+    CandlepinQuery<T> addRestriction(Criterion criterion);
+
     /**
      * Sets the locking mode for the query. The lock mode will be applied to the database rows
      * representing the entities returned by this query.
@@ -282,4 +309,23 @@ public interface CandlepinQuery<T> extends Iterable<T> {
      */
     int getRowCount();
 
+    /**
+     * Executes this query and fetches the page of results requested by the given cursor page
+     * request. The cursor of the following page, if any, is built from the entity backing the last
+     * result on the page, so no query beyond the one fetching the page is needed. Any restriction
+     * selecting the page after the request's cursor, and the ordering required for cursor paging,
+     * must already have been applied to this query.
+     *
+     * @param pageRequest
+     *  The cursor page request for which to fetch a page of results
+     *
+     * @throws IllegalArgumentException
+     *  if the results cannot be paged by the requested sort field
+     *
+     * @return
+     *  a page containing the requested results, and the cursor of the following page if another
+     *  page follows
+     */
+    Page<List<T>> listCursorPage(PageRequest pageRequest);
+
 }
@@ -59,6 +59,23 @@ public class CertificateSerialCurator extends AbstractHibernateCurator<Certifica
         return this.cpQueryFactory.<Long>buildQuery(this.currentSession(), criteria);
     }
 
+    /**
+     * Fetches a collection of serials from revoked certificate serials that have not expired,
+     * whether or not they have been collected. These are the serials which belong on the CRL. If
+     * there are no such certificate serials, this method returns an empty collection.
+     *
+     * @return
+     *  a collection of serials from revoked certificate serials that have not expired
+     */
+    public CandlepinQuery<Long> getRevokedCertSerials() {
+        DetachedCriteria criteria = DetachedCriteria.forClass(CertificateSerial.class)
+            .add(Restrictions.ge("expiration", getExpiryRestriction()))
+            .add(Restrictions.eq("revoked", true))
+            .setProjection(Projections.id()); // Note: the ID *is* the serial for cert serials
+
+        return this.cpQueryFactory.<Long>buildQuery(this.currentSession(), criteria);
+    }
+
     /**
      * Fetches a collection of serials from revoked certficiate serials that expired prior to
      * midnight, yesterday in UTC. If there are no such certificate serials, this method returns an
@@ -15,6 +15,7 @@
 package org.candlepin.model;
 
 import org.candlepin.auth.Principal;
+import org.candlepin.cache.ConsumerPrincipalCache;
 import org.candlepin.common.config.Configuration;
 import org.candlepin.common.exceptions.BadRequestException;
 import org.candlepin.common.exceptions.NotFoundException;
@@ -43,6 +44,7 @@ import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Property;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.criterion.Subqueries;
+import org.hibernate.query.NativeQuery;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -64,6 +66,7 @@ import javax.inject.Provider;
 import javax.inject.Singleton;
 import javax.persistence.LockModeType;
 import javax.persistence.PersistenceException;
+import javax.persistence.TemporalType;
 import javax.persistence.TypedQuery;
 
 
@@ -83,6 +86,7 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
     @Inject private OwnerCurator ownerCurator;
     @Inject private Provider<HostCache> cachedHostsProvider;
     @Inject private PrincipalProvider principalProvider;
+    @Inject private ConsumerPrincipalCache principalCache;
 
     public ConsumerCurator() {
         super(Consumer.class);
@@ -124,6 +128,10 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
 
         // Save our deletion record
         this.deletedConsumerCurator.saveOrUpdate(deletedConsumer);
+
+        // Stop authenticating the consumer from any cached lookups once the deletion is visible
+        String consumerUuid = entity.getUuid();
+        this.runAfterCompletion(() -> this.principalCache.invalidateConsumer(consumerUuid));
     }
 
     @Transactional
@@ -577,6 +585,62 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
             .executeUpdate();
     }
 
+    /**
+     * Updates the last check-in time of each of the given consumers, using as few statements as
+     * possible. Consumers which no longer exist are skipped.
+     *
+     * @param checkins
+     *  A mapping of consumer IDs to the time of their latest check-in
+     *
+     * @return
+     *  the number of consumers updated
+     */
+    @Transactional
+    public int updateLastCheckins(Map<String, Date> checkins) {
+        if (checkins == null || checkins.isEmpty()) {
+            return 0;
+        }
+
+        int count = 0;
+        int lastBlock = -1;
+        NativeQuery query = null;
+
+        for (List<Map.Entry<String, Date>> block : Iterables.partition(checkins.entrySet(),
+            this.getCaseBlockSize())) {
+
+            if (block.size() != lastBlock) {
+                // Rebuild the statement for the new block size
+                StringBuilder cases = new StringBuilder("CASE id");
+                for (int i = 0; i < block.size(); ++i) {
+                    cases.append(" WHEN :id").append(i).append(" THEN :date").append(i);
+                }
+
+                String sql = "UPDATE " + Consumer.DB_TABLE +
+                    " SET lastcheckin = " + cases + " ELSE lastcheckin END," +
+                    " updated = " + cases + " ELSE updated END" +
+                    " WHERE id IN (:ids)";
+
+                query = this.currentSession().createNativeQuery(sql);
+                lastBlock = block.size();
+            }
+
+            List<String> ids = new ArrayList<>(block.size());
+            for (int i = 0; i < block.size(); ++i) {
+                Map.Entry<String, Date> entry = block.get(i);
+
+                query.setParameter("id" + i, entry.getKey())
+                    .setParameter("date" + i, entry.getValue(), TemporalType.TIMESTAMP);
+
+                ids.add(entry.getKey());
+            }
+
+            count += query.setParameterList("ids", ids)
+                .executeUpdate();
+        }
+
+        return count;
+    }
+
     @Transactional
     public void heartbeatUpdate(final String reporterId, final Date checkIn, final String ownerKey)
         throws PersistenceException {
@@ -987,6 +1051,119 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
             .setLockMode(LockModeType.PESSIMISTIC_WRITE);
     }
 
+    /**
+     * Fetches the hypervisor consumers of the given owner matching the given hypervisor IDs, along
+     * with their facts. The consumers are looked up in blocks, rather than with one query per
+     * hypervisor, making this suitable for loading every host of a large hypervisor report at once.
+     * <p></p>
+     * This is an unsecured query, manually limited to an owner by the parameter given.
+     *
+     * @param ownerId
+     *  the ID of the owner to limit results to
+     *
+     * @param hypervisorIds
+     *  a collection of hypervisor IDs as reported by the virt fabric
+     *
+     * @return
+     *  a map of lower-case hypervisor ID to the consumer registered with it; hypervisor IDs without
+     *  a registered consumer are not present in the map
+     */
+    @Transactional
+    public Map<String, Consumer> getHostConsumersByHypervisorId(String ownerId,
+        Collection<String> hypervisorIds) {
+
+        Map<String, Consumer> hosts = new HashMap<>();
+        if (hypervisorIds == null || hypervisorIds.isEmpty()) {
+            return hosts;
+        }
+
+        Set<String> lowerIds = hypervisorIds.stream()
+            .map(String::toLowerCase)
+            .collect(Collectors.toSet());
+
+        String jpql = "SELECT DISTINCT c FROM Consumer c JOIN FETCH c.hypervisorId h " +
+            "LEFT JOIN FETCH c.facts " +
+            "WHERE c.ownerId = :owner_id AND h.hypervisorId IN (:hypervisor_ids)";
+
+        TypedQuery<Consumer> query = this.getEntityManager()
+            .createQuery(jpql, Consumer.class)
+            .setParameter("owner_id", ownerId);
+
+        for (List<String> block : Iterables.partition(lowerIds, getInBlockSize())) {
+            for (Consumer consumer : query.setParameter("hypervisor_ids", block).getResultList()) {
+                hosts.put(consumer.getHypervisorId().getHypervisorId().toLowerCase(), consumer);
+            }
+        }
+
+        return hosts;
+    }
+
+    /**
+     * Fetches the consumers of the given owner reporting one of the given system UUIDs in their
+     * {@link Consumer.Facts#SYSTEM_UUID} fact. If several consumers report the same system UUID,
+     * only the most recently updated is returned for it.
+     * <p></p>
+     * This is an unsecured query, manually limited to an owner by the parameter given.
+     *
+     * @param ownerId
+     *  the ID of the owner to limit results to
+     *
+     * @param systemUuids
+     *  a collection of system UUIDs
+     *
+     * @return
+     *  a map of lower-case system UUID to the consumer reporting it; system UUIDs not reported by
+     *  any consumer are not present in the map
+     */
+    @SuppressWarnings("unchecked")
+    @Transactional
+    public Map<String, Consumer> getConsumersBySystemUuid(String ownerId, Collection<String> systemUuids) {
+        Map<String, Consumer> consumers = new HashMap<>();
+        if (systemUuids == null || systemUuids.isEmpty()) {
+            return consumers;
+        }
+
+        Set<String> lowerUuids = systemUuids.stream()
+            .map(String::toLowerCase)
+            .collect(Collectors.toSet());
+
+        String sql = "select cp_consumer.id, lower(cp_consumer_facts.element) from cp_consumer " +
+            "inner join cp_consumer_facts " +
+            "on cp_consumer.id = cp_consumer_facts.cp_consumer_id " +
+            "where cp_consumer_facts.mapkey = '" + Consumer.Facts.SYSTEM_UUID + "' and " +
+            "lower(cp_consumer_facts.element) in (:uuids) " +
+            "and cp_consumer.owner_id = :ownerid " +
+            "order by cp_consumer.updated desc";
+
+        Query query = this.currentSession()
+            .createSQLQuery(sql)
+            .setParameter("ownerid", ownerId);
+
+        // Consumers are ordered by their last update, so the first seen for a UUID is the newest
+        Map<String, String> consumerIds = new HashMap<>();
+        for (List<String> block : Iterables.partition(lowerUuids, getInBlockSize())) {
+            query.setParameterList("uuids", block);
+
+            for (Object[] row : (List<Object[]>) query.list()) {
+                consumerIds.putIfAbsent((String) row[1], (String) row[0]);
+            }
+        }
+
+        Map<String, Consumer> consumersById = new HashMap<>();
+        for (Consumer consumer : this.getConsumers(new ArrayList<>(new HashSet<>(consumerIds.values())))) {
+            consumersById.put(consumer.getId(), consumer);
+        }
+
+        for (Entry<String, String> entry : consumerIds.entrySet()) {
+            Consumer consumer = consumersById.get(entry.getValue());
+            if (consumer != null) {
+                consumers.put(entry.getKey(), consumer);
+            }
+        }
+
+        return consumers;
+    }
+
     private Criterion getHypervisorIdRestriction(Iterable<String> hypervisorIds) {
         Disjunction disjunction = Restrictions.disjunction();
         for (String hid : hypervisorIds) {
@@ -1258,33 +1435,6 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
         return ((Long) crit.uniqueResult()).intValue();
     }
 
-    /**
-     * Finds the consumer count for an Owner based on type.
-     *
-     * @param owner the owner to count consumers for
-     * @param type the type of the Consumer to filter on.
-     * @return the number of consumers based on the type.
-     */
-    public int getConsumerCount(Owner owner, ConsumerType type) {
-        Criteria c = this.createSecureCriteria()
-            .add(Restrictions.eq("ownerId", owner.getId()))
-            .add(Restrictions.eq("typeId", type.getId()))
-            .setProjection(Projections.rowCount());
-
-        return ((Long) c.uniqueResult()).intValue();
-    }
-
-    public int getConsumerEntitlementCount(Owner owner, ConsumerType type) {
-        Criteria c = createSecureCriteria()
-            .add(Restrictions.eq("ownerId", owner.getId()))
-            .add(Restrictions.eq("typeId", type.getId()))
-            .createAlias("entitlements", "ent")
-            .setProjection(Projections.sum("ent.quantity"));
-
-        Long result = (Long) c.uniqueResult();
-        return result == null ? 0 : result.intValue();
-    }
-
     @SuppressWarnings("unchecked")
     public List<String> getConsumerIdsWithStartedEnts() {
         Date now = new Date();
@@ -1297,6 +1447,37 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
             .list();
     }
 
+    /**
+     * Fetches the consumers with the specified IDs, along with their entitlements and the pools
+     * from which the entitlements were granted. Fetching these together avoids a query per consumer
+     * when the entitlements of many consumers are to be examined, such as when calculating their
+     * compliance. If a consumer does not exist for a given ID, it is silently skipped.
+     *
+     * @param consumerIds
+     *  A collection of consumer IDs specifying the consumers to fetch
+     *
+     * @return
+     *  A list containing the consumers with the specified IDs
+     */
+    public List<Consumer> getConsumersWithEntitlements(Collection<String> consumerIds) {
+        List<Consumer> consumers = new ArrayList<>();
+
+        if (consumerIds != null && !consumerIds.isEmpty()) {
+            for (List<String> block : Iterables.partition(consumerIds, this.getInBlockSize())) {
+                List<Consumer> fetched = this.currentSession().createCriteria(Consumer.class)
+                    .add(Restrictions.in("id", block))
+                    .setFetchMode("entitlements", FetchMode.JOIN)
+                    .setFetchMode("entitlements.pool", FetchMode.JOIN)
+                    .setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY)
+                    .list();
+
+                consumers.addAll(fetched);
+            }
+        }
+
+        return consumers;
+    }
+
     /**
      * Clears (nulls) the content access mode for any consumer belonging to the given owner, that is
      * using a mode which is no longer in the provided set of existing modes.
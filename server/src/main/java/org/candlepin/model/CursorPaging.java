@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import org.candlepin.common.paging.PageCursor;
+import org.candlepin.common.paging.PageRequest;
+
+import org.hibernate.NullPrecedence;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Restrictions;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+
+
+/**
+ * The CursorPaging class provides the criteria used to page through results with a
+ * {@link PageCursor}.
+ * <p></p>
+ * Results are ordered by the requested sort field, with nulls last in either direction, and then
+ * by ID, giving every result a unique position. The page following a cursor is then selected by
+ * restricting the results to those positioned after it, which the database can satisfy with an
+ * index seek, no matter how deep into the results the page lies.
+ */
+public final class CursorPaging {
+
+    /** The property name Hibernate resolves to the identifier of any entity */
+    public static final String ID_PROPERTY = "id";
+
+    private CursorPaging() {
+        // Intentionally left empty
+    }
+
+    /**
+     * Fetches the field by which results are sorted for the given page request.
+     *
+     * @param pageRequest
+     *  the page request
+     *
+     * @return
+     *  the requested sort field, or the default sort field if none was requested
+     */
+    public static String getSortBy(PageRequest pageRequest) {
+        return pageRequest.getSortBy() != null ?
+            pageRequest.getSortBy() :
+            AbstractHibernateObject.DEFAULT_SORT_FIELD;
+    }
+
+    /**
+     * Fetches the order in which results are sorted for the given page request.
+     *
+     * @param pageRequest
+     *  the page request
+     *
+     * @return
+     *  the requested order, or the default order if none was requested
+     */
+    public static PageRequest.Order getOrder(PageRequest pageRequest) {
+        return pageRequest.getOrder() != null ? pageRequest.getOrder() : PageRequest.DEFAULT_ORDER;
+    }
+
+    /**
+     * Builds the orderings which give each result a unique position when paging with a cursor.
+     *
+     * @param pageRequest
+     *  the page request
+     *
+     * @return
+     *  the orderings to apply to the query, in order
+     */
+    public static List<Order> getOrders(PageRequest pageRequest) {
+        String sortBy = getSortBy(pageRequest);
+        boolean ascending = getOrder(pageRequest) == PageRequest.Order.ASCENDING;
+
+        Order idOrder = ascending ? Order.asc(ID_PROPERTY) : Order.desc(ID_PROPERTY);
+        if (ID_PROPERTY.equals(sortBy)) {
+            return Collections.singletonList(idOrder);
+        }
+
+        Order sortOrder = (ascending ? Order.asc(sortBy) : Order.desc(sortBy)).nulls(NullPrecedence.LAST);
+        return Arrays.asList(sortOrder, idOrder);
+    }
+
+    /**
+     * Builds the restriction selecting the results positioned after the given cursor.
+     *
+     * @param cursor
+     *  the cursor positioned after the last result of the previous page
+     *
+     * @return
+     *  a criterion selecting the results following the cursor
+     */
+    public static Criterion getRestriction(PageCursor cursor) {
+        String sortBy = cursor.getSortBy();
+        boolean ascending = cursor.getOrder() == PageRequest.Order.ASCENDING;
+
+        Criterion afterId = ascending ?
+            Restrictions.gt(ID_PROPERTY, cursor.getId()) :
+            Restrictions.lt(ID_PROPERTY, cursor.getId());
+
+        if (ID_PROPERTY.equals(sortBy)) {
+            return afterId;
+        }
+
+        // Nulls are sorted last, so once we've reached them, only the remaining nulls follow
+        if (cursor.getValue() == null) {
+            return Restrictions.and(Restrictions.isNull(sortBy), afterId);
+        }
+
+        Criterion afterValue = ascending ?
+            Restrictions.gt(sortBy, cursor.getValue()) :
+            Restrictions.lt(sortBy, cursor.getValue());
+
+        return Restrictions.or(
+            afterValue,
+            Restrictions.and(Restrictions.eq(sortBy, cursor.getValue()), afterId),
+            Restrictions.isNull(sortBy));
+    }
+
+    /**
+     * Builds the cursor positioned after the result with the given sort field value and ID.
+     *
+     * @param pageRequest
+     *  the page request the result was fetched for
+     *
+     * @param value
+     *  the value of the sort field of the result
+     *
+     * @param id
+     *  the ID of the result
+     *
+     * @throws IllegalArgumentException
+     *  if the sort field value or ID are of a type which cannot be encoded in a cursor
+     *
+     * @return
+     *  the encoded cursor
+     */
+    public static String buildCursor(PageRequest pageRequest, Object value, Serializable id) {
+        if (!PageCursor.isSupportedValue(value) || !PageCursor.isSupportedValue(id)) {
+            throw new IllegalArgumentException("Unable to page by cursor over the field: " +
+                getSortBy(pageRequest));
+        }
+
+        return new PageCursor(getSortBy(pageRequest), getOrder(pageRequest), value, id).encode();
+    }
+}
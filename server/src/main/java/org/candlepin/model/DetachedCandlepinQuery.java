@@ -14,17 +14,21 @@
  */
 package org.candlepin.model;
 
+import org.candlepin.common.paging.Page;
+import org.candlepin.common.paging.PageRequest;
 import org.candlepin.util.ElementTransformer;
 
 import com.google.inject.persist.Transactional;
 
 import org.hibernate.CacheMode;
 import org.hibernate.Criteria;
+import org.hibernate.Hibernate;
 import org.hibernate.LockMode;
 import org.hibernate.ScrollMode;
 import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projection;
 import org.hibernate.criterion.Projections;
@@ -32,8 +36,10 @@ import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.hibernate.engine.spi.SessionImplementor;
 import org.hibernate.internal.CriteriaImpl;
 import org.hibernate.loader.criteria.CriteriaQueryTranslator;
+import org.hibernate.metadata.ClassMetadata;
 import org.hibernate.type.Type;
 
+import java.io.Serializable;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -63,6 +69,7 @@ public class DetachedCandlepinQuery<T> implements CandlepinQuery<T> {
 
     protected int offset;
     protected int limit;
+    protected int fetchSize;
     protected LockMode lockMode;
 
     /**
@@ -96,6 +103,7 @@ public class DetachedCandlepinQuery<T> implements CandlepinQuery<T> {
 
         this.offset = -1;
         this.limit = -1;
+        this.fetchSize = -1;
         this.lockMode = null;
     }
 
@@ -170,6 +178,10 @@ public class DetachedCandlepinQuery<T> implements CandlepinQuery<T> {
             executable.setMaxResults(this.limit);
         }
 
+        if (this.fetchSize > 0) {
+            executable.setFetchSize(this.fetchSize);
+        }
+
         if (this.lockMode != null) {
             executable.setLockMode(this.lockMode);
         }
@@ -210,6 +222,15 @@ public class DetachedCandlepinQuery<T> implements CandlepinQuery<T> {
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CandlepinQuery<T> setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -223,6 +244,19 @@ public class DetachedCandlepinQuery<T> implements CandlepinQuery<T> {
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CandlepinQuery<T> addRestriction(Criterion criterion) {
+        if (criterion == null) {
+            throw new IllegalArgumentException("criterion is null");
+        }
+
+        this.criteria.add(criterion);
+        return this;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -415,6 +449,56 @@ public class DetachedCandlepinQuery<T> implements CandlepinQuery<T> {
         return (T) executable.uniqueResult();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Page<List<T>> listCursorPage(PageRequest pageRequest) {
+        int perPage = pageRequest.getPerPage();
+
+        // Fetch one more result than requested to find out whether or not there's a next page
+        Criteria executable = this.getExecutableCriteria();
+        executable.setMaxResults(perPage + 1);
+
+        List<T> results = (List<T>) executable.list();
+
+        Page<List<T>> page = new Page<>();
+        page.setPageRequest(pageRequest);
+
+        if (results.size() > perPage) {
+            results = new ArrayList<>(results.subList(0, perPage));
+            page.setNextCursor(this.buildCursor(pageRequest, results.get(perPage - 1)));
+        }
+
+        page.setPageData(results);
+
+        return page;
+    }
+
+    /**
+     * Builds the cursor positioned after the given result for the given page request.
+     *
+     * @throws IllegalArgumentException
+     *  if the result is not an entity, or the requested sort field is not one of its properties
+     */
+    private String buildCursor(PageRequest pageRequest, Object result) {
+        String sortBy = CursorPaging.getSortBy(pageRequest);
+        ClassMetadata metadata = this.session.getSessionFactory()
+            .getClassMetadata(Hibernate.getClass(result));
+
+        if (metadata == null) {
+            throw new IllegalArgumentException("result is not an entity: " + result);
+        }
+
+        Serializable id = this.session.getIdentifier(result);
+        Object value = CursorPaging.ID_PROPERTY.equals(sortBy) ?
+            id :
+            metadata.getPropertyValue(result, sortBy);
+
+        return CursorPaging.buildCursor(pageRequest, value, id);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -14,9 +14,12 @@
  */
 package org.candlepin.model;
 
+import org.candlepin.common.paging.Page;
+import org.candlepin.common.paging.PageRequest;
 import org.candlepin.util.ElementTransformer;
 
 import org.hibernate.Session;
+import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.Order;
 
 import java.util.Collections;
@@ -108,6 +111,19 @@ public class EmptyCandlepinQuery<T> implements CandlepinQuery<T> {
         return this;
     }
 
+    /**
+     * Returns a reference to this CandlepinQuery instance.
+     *
+     * @param fetchSize
+     *
+     * @return
+     *  this query instance
+     */
+    @Override
+    public CandlepinQuery<T> setFetchSize(int fetchSize) {
+        return this;
+    }
+
     /**
      * Returns a reference to this CandlepinQuery instance.
      *
@@ -121,6 +137,19 @@ public class EmptyCandlepinQuery<T> implements CandlepinQuery<T> {
         return this;
     }
 
+    /**
+     * Returns a reference to this CandlepinQuery instance.
+     *
+     * @param criterion
+     *
+     * @return
+     *  this query instance
+     */
+    @Override
+    public CandlepinQuery<T> addRestriction(Criterion criterion) {
+        return this;
+    }
+
     /**
      * Returns a reference to this CandlepinQuery instance.
      *
@@ -287,4 +316,21 @@ public class EmptyCandlepinQuery<T> implements CandlepinQuery<T> {
     public int getRowCount() {
         return 0;
     }
+
+    /**
+     * Returns an empty page.
+     *
+     * @param pageRequest
+     *
+     * @return
+     *  an empty page
+     */
+    @Override
+    public Page<List<T>> listCursorPage(PageRequest pageRequest) {
+        Page<List<T>> page = new Page<>();
+        page.setPageData(Collections.<T>emptyList());
+        page.setPageRequest(pageRequest);
+
+        return page;
+    }
 }
@@ -54,6 +54,7 @@ import java.util.Set;
 import javax.inject.Singleton;
 import javax.persistence.EntityManager;
 import javax.persistence.Query;
+import javax.persistence.TypedQuery;
 
 
 
@@ -698,6 +699,30 @@ public class EntitlementCurator extends AbstractHibernateCurator<Entitlement> {
         return count;
     }
 
+    /**
+     * Lists the IDs of all entitlements of the given pools.
+     *
+     * @param poolIds
+     *  A collection of IDs of the pools for which to list entitlement IDs
+     *
+     * @return
+     *  A list of IDs of the entitlements of the given pools
+     */
+    public List<String> listEntitlementIdsByPoolIds(Collection<String> poolIds) {
+        List<String> entitlementIds = new ArrayList<>();
+
+        if (poolIds != null && !poolIds.isEmpty()) {
+            String jpql = "SELECT e.id FROM Entitlement e WHERE e.pool.id IN (:pool_ids)";
+            TypedQuery<String> query = this.getEntityManager().createQuery(jpql, String.class);
+
+            for (List<String> block : this.partition(poolIds)) {
+                entitlementIds.addAll(query.setParameter("pool_ids", block).getResultList());
+            }
+        }
+
+        return entitlementIds;
+    }
+
     /**
      * @deprecated
      *  This method is a utility method for revokeEntitlements and, as it has no communication with
@@ -14,6 +14,8 @@
  */
 package org.candlepin.model;
 
+import org.candlepin.cache.ConsumerPrincipalCache;
+
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 
@@ -47,12 +49,39 @@ import javax.inject.Singleton;
 public class OwnerCurator extends AbstractHibernateCurator<Owner> {
 
     @Inject private CandlepinQueryFactory cpQueryFactory;
+    @Inject private ConsumerPrincipalCache principalCache;
+    @Inject private PoolIndex poolIndex;
     private static Logger log = LoggerFactory.getLogger(OwnerCurator.class);
 
     public OwnerCurator() {
         super(Owner.class);
     }
 
+    @Override
+    @Transactional
+    public Owner merge(Owner entity) {
+        Owner merged = super.merge(entity);
+
+        // Consumers authenticated from cached lookups would otherwise see the old owner
+        String ownerId = merged.getId();
+        this.runAfterCompletion(() -> this.principalCache.invalidateOwner(ownerId));
+        return merged;
+    }
+
+    @Override
+    @Transactional
+    public void delete(Owner entity) {
+        super.delete(entity);
+
+        if (entity != null) {
+            String ownerId = entity.getId();
+            this.runAfterCompletion(() -> this.principalCache.invalidateOwner(ownerId));
+
+            // Drop the deleted owner's pool index, rather than holding it for the life of the app
+            this.poolIndex.invalidateOwner(entity.getId());
+        }
+    }
+
     /**
      * Fetches the Owner for the specified ownerId. If the ownerId is null or owner was not found, this
      * method throws an exception.
@@ -15,13 +15,16 @@
 
 package org.candlepin.model;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * OwnerInfo NOTE: this class only contains dynamic values. it should *not* be
- * saved to the db.
+ * saved to the db, other than in serialized form by the OwnerInfoSummary.
  */
 public class OwnerInfo {
 
@@ -159,7 +162,9 @@ public class OwnerInfo {
         private int physical;
         private int guest;
 
-        public ConsumptionTypeCounts(int physical, int guest) {
+        @JsonCreator
+        public ConsumptionTypeCounts(@JsonProperty("physical") int physical,
+            @JsonProperty("guest") int guest) {
             this.physical = physical;
             this.guest = guest;
         }
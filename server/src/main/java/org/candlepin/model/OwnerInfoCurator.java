@@ -14,21 +14,19 @@
  */
 package org.candlepin.model;
 
+import org.candlepin.auth.Principal;
+import org.candlepin.auth.permissions.OwnerPermission;
+import org.candlepin.auth.permissions.Permission;
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.guice.PrincipalProvider;
+
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 
 import org.hibernate.Criteria;
-import org.hibernate.Query;
-import org.hibernate.Session;
-import org.hibernate.criterion.Criterion;
-import org.hibernate.criterion.DetachedCriteria;
-import org.hibernate.criterion.Disjunction;
-import org.hibernate.criterion.LikeExpression;
 import org.hibernate.criterion.Projections;
-import org.hibernate.criterion.Property;
 import org.hibernate.criterion.Restrictions;
-import org.hibernate.criterion.Subqueries;
-import org.hibernate.type.StringType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,12 +35,14 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
 
 import javax.inject.Singleton;
 import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
 
 /**
  * OwnerInfoCurator
@@ -51,74 +51,185 @@ import javax.persistence.EntityManager;
 public class OwnerInfoCurator {
     private static Logger log = LoggerFactory.getLogger(OwnerInfoCurator.class);
 
+    /** The pool and product attributes used to compute the pool and family counts */
+    private static final List<String> POOL_ATTRIBUTES = Arrays.asList(
+        Pool.Attributes.REQUIRES_CONSUMER_TYPE,
+        Pool.Attributes.ENABLED_CONSUMER_TYPES,
+        Pool.Attributes.PRODUCT_FAMILY,
+        Pool.Attributes.VIRT_ONLY);
+
     private Provider<EntityManager> entityManager;
     private ConsumerTypeCurator consumerTypeCurator;
     private ConsumerCurator consumerCurator;
     private PoolCurator poolCurator;
+    private OwnerInfoSummaryCurator summaryCurator;
+    private PrincipalProvider principalProvider;
+    private Configuration config;
 
     @Inject
     public OwnerInfoCurator(Provider<EntityManager> entityManager,
         ConsumerCurator consumerCurator, ConsumerTypeCurator consumerTypeCurator,
-        PoolCurator poolCurator) {
+        PoolCurator poolCurator, OwnerInfoSummaryCurator summaryCurator,
+        PrincipalProvider principalProvider, Configuration config) {
         this.entityManager = entityManager;
         this.consumerCurator = consumerCurator;
         this.consumerTypeCurator = consumerTypeCurator;
         this.poolCurator = poolCurator;
+        this.summaryCurator = summaryCurator;
+        this.principalProvider = principalProvider;
+        this.config = config;
     }
 
+    /**
+     * Fetches the owner info for the given owner. If owner info summaries are enabled and the
+     * current principal can see all of the owner's consumers and pools, the owner info is served
+     * from the owner's summary, which is recomputed if it is stale or has reached its maximum age.
+     *
+     * @param owner
+     *  the owner for which to fetch the owner info
+     *
+     * @return
+     *  the owner info for the given owner
+     */
     public OwnerInfo getByOwner(Owner owner) {
-        OwnerInfo info = new OwnerInfo();
+        if (!this.config.getBoolean(ConfigProperties.OWNER_INFO_SUMMARY_ENABLED) ||
+            !this.hasOwnerWideAccess(owner)) {
+
+            return this.buildOwnerInfo(owner, new Date());
+        }
+
+        long maxAge = this.config.getLong(ConfigProperties.OWNER_INFO_SUMMARY_MAX_AGE) * 1000;
         Date now = new Date();
 
-        // TODO:
-        // Make sure this doesn't choke on MySQL, since we're doing queries with the cursor open.
+        OwnerInfoSummary summary = this.summaryCurator.get(owner.getId());
+        if (summary != null && !summary.isStale() && summary.getComputed() != null &&
+            now.getTime() - summary.getComputed().getTime() < maxAge) {
+
+            OwnerInfo info = summary.getOwnerInfo();
+            if (info != null) {
+                return info;
+            }
+        }
+
+        OwnerInfo info = this.buildOwnerInfo(owner, now);
+
+        // If another request stored the summary concurrently, the info we computed is still valid
+        // for this request
+        this.summaryCurator.storeOwnerInfo(owner.getId(), info, now);
+
+        return info;
+    }
+
+    /**
+     * Checks if the current principal can see all of the consumers and pools of the given owner,
+     * in which case the owner info computed for it may be shared with other such principals.
+     */
+    private boolean hasOwnerWideAccess(Owner owner) {
+        Principal principal = this.principalProvider.get();
+
+        if (principal == null || principal.hasFullAccess()) {
+            return true;
+        }
+
+        for (Permission permission : principal.getPermissions()) {
+            if (permission instanceof OwnerPermission && permission.getOwner() != null &&
+                owner.getId().equals(permission.getOwner().getId())) {
+
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Computes the owner info for the given owner. The counts are fetched with a fixed number of
+     * grouped queries, regardless of the number of consumer types and product families, and the
+     * per-type and per-family pool counts are derived from the attributes of the active pools.
+     */
+    private OwnerInfo buildOwnerInfo(Owner owner, Date now) {
+        OwnerInfo info = new OwnerInfo();
+
+        Map<String, Integer> consumerCounts = this.getConsumerCountsByType(owner);
+        Map<String, Integer> entitlementCounts = this.getEntitlementCountsByType(owner);
+        Collection<PoolData> pools = this.getActivePools(owner, now);
 
         List<ConsumerType> types = consumerTypeCurator.listAll().list();
-        HashMap<String, ConsumerType> typeHash = new HashMap<>();
         for (ConsumerType type : types) {
-            // Store off the type for later use
-            typeHash.put(type.getLabel(), type);
-
-            // Do the real work
-            int consumers = consumerCurator.getConsumerCount(owner, type);
-            int entCount = consumerCurator.getConsumerEntitlementCount(owner, type);
-            info.addTypeTotal(type, consumers, entCount);
+            info.addTypeTotal(type, consumerCounts.getOrDefault(type.getId(), 0),
+                entitlementCounts.getOrDefault(type.getId(), 0));
 
-            int count = getRequiresConsumerTypeCount(type, owner, now);
+            int count = this.countPools(pools, pool ->
+                matchesValue(pool.getAttribute(Pool.Attributes.REQUIRES_CONSUMER_TYPE), type.getLabel()));
             info.addToConsumerTypeCountByPool(type, count);
 
-            count = getEnabledConsumerTypeCount(type, owner, now);
+            count = this.countPools(pools, pool ->
+                matchesListValue(pool.getAttribute(Pool.Attributes.ENABLED_CONSUMER_TYPES), type.getLabel()));
             if (count > 0) {
                 info.addToEnabledConsumerTypeCountByPool(type, count);
             }
         }
 
-        int activePools = getActivePoolCount(owner, now);
-        info.addDefaultEnabledConsumerTypeCount(activePools);
+        info.addDefaultEnabledConsumerTypeCount(pools.size());
 
-        Collection<String> families = getProductFamilies(owner, now);
+        for (String family : this.getProductFamilies(pools, now)) {
+            int virtualCount = this.sumPoolQuantities(pools, pool -> isVirtOnly(pool) &&
+                matchesValue(pool.getAttribute(Pool.Attributes.PRODUCT_FAMILY), family));
+            int totalCount = this.sumPoolQuantities(pools, pool ->
+                matchesValue(pool.getAttribute(Pool.Attributes.PRODUCT_FAMILY), family));
 
-        for (String family : families) {
-            int virtualCount = getProductFamilyCount(owner, now, family, true);
-            int totalCount = getProductFamilyCount(owner, now, family, false);
             info.addToEntitlementsConsumedByFamily(family, totalCount - virtualCount, virtualCount);
         }
 
-        int virtTotalEntitlements = getProductFamilyCount(owner, now, null, true);
-        int totalEntitlements = getProductFamilyCount(owner, now, null, false);
+        int virtTotalEntitlements = this.sumPoolQuantities(pools, OwnerInfoCurator::isVirtOnly);
+        int totalEntitlements = this.sumPoolQuantities(pools, pool -> true);
 
         info.addDefaultEntitlementsConsumedByFamily(
             totalEntitlements - virtTotalEntitlements,
             virtTotalEntitlements);
 
-        setConsumerGuestCounts(owner, info);
+        int totalConsumers = consumerCounts.values().stream().mapToInt(Integer::intValue).sum();
+        setConsumerGuestCounts(owner, info, totalConsumers);
         setConsumerCountsByComplianceStatus(owner, info);
 
         return info;
     }
 
+    @SuppressWarnings("checkstyle:indentation")
+    private Map<String, Integer> getConsumerCountsByType(Owner owner) {
+        Criteria criteria = consumerCurator.createSecureCriteria()
+            .add(Restrictions.eq("ownerId", owner.getId()))
+            .setProjection(Projections.projectionList()
+                .add(Projections.groupProperty("typeId"))
+                .add(Projections.rowCount()));
+
+        return this.toCountMap(criteria);
+    }
+
+    @SuppressWarnings("checkstyle:indentation")
+    private Map<String, Integer> getEntitlementCountsByType(Owner owner) {
+        Criteria criteria = consumerCurator.createSecureCriteria()
+            .add(Restrictions.eq("ownerId", owner.getId()))
+            .createAlias("entitlements", "ent")
+            .setProjection(Projections.projectionList()
+                .add(Projections.groupProperty("typeId"))
+                .add(Projections.sum("ent.quantity")));
+
+        return this.toCountMap(criteria);
+    }
+
     @SuppressWarnings("unchecked")
-    private void setConsumerGuestCounts(Owner owner, OwnerInfo info) {
+    private Map<String, Integer> toCountMap(Criteria criteria) {
+        Map<String, Integer> counts = new HashMap<>();
+
+        for (Object[] row : (List<Object[]>) criteria.list()) {
+            counts.put((String) row[0], row[1] != null ? ((Number) row[1]).intValue() : 0);
+        }
+
+        return counts;
+    }
+
+    private void setConsumerGuestCounts(Owner owner, OwnerInfo info, int totalConsumers) {
         Criteria cr = consumerCurator.createSecureCriteria()
             .createAlias("facts", "f")
             .add(Restrictions.eq("ownerId", owner.getId()))
@@ -127,12 +238,6 @@ public class OwnerInfoCurator {
             .setProjection(Projections.count("id"));
 
         int guestCount = ((Long) cr.uniqueResult()).intValue();
-
-        Criteria totalConsumersCriteria = consumerCurator.createSecureCriteria()
-            .add(Restrictions.eq("ownerId", owner.getId()))
-            .setProjection(Projections.count("id"));
-
-        int totalConsumers = ((Long) totalConsumersCriteria.uniqueResult()).intValue();
         int physicalCount = totalConsumers - guestCount;
 
         info.setGuestCount(guestCount);
@@ -156,229 +261,170 @@ public class OwnerInfoCurator {
         }
     }
 
-    private int getActivePoolCount(Owner owner, Date date) {
-        Criteria activePoolCountCrit = poolCurator.createSecureCriteria()
+    /**
+     * Fetches the pools of the given owner which are active on the given date and visible to the
+     * current principal, along with the attributes needed to compute the owner info and the total
+     * quantity of their entitlements.
+     */
+    @SuppressWarnings({"unchecked", "checkstyle:indentation"})
+    private Collection<PoolData> getActivePools(Owner owner, Date date) {
+        Map<String, PoolData> pools = new HashMap<>();
+
+        Criteria criteria = poolCurator.createSecureCriteria()
             .add(Restrictions.eq("owner", owner))
             .add(Restrictions.le("startDate", date))
             .add(Restrictions.ge("endDate", date))
-            .setProjection(Projections.count("id"));
-        return ((Long) activePoolCountCrit.uniqueResult()).intValue();
-    }
-
-    @SuppressWarnings("checkstyle:indentation")
-    private int getRequiresConsumerTypeCount(ConsumerType type, Owner owner, Date date) {
-        Criteria criteria = poolCurator.createSecureCriteria("Pool")
-            .createAlias("product", "Product")
-            .setProjection(Projections.countDistinct("Pool.id"));
+            .setProjection(Projections.projectionList()
+                .add(Projections.id())
+                .add(Projections.property("startDate"))
+                .add(Projections.property("endDate")));
 
-        criteria.add(Restrictions.eq("owner", owner))
-            .add(Restrictions.le("startDate", date))
-            .add(Restrictions.ge("endDate", date))
-            .add(this.addAttributeFilterSubquery(Pool.Attributes.REQUIRES_CONSUMER_TYPE, Arrays.asList(
-                type.getLabel()
-            )));
+        for (Object[] row : (List<Object[]>) criteria.list()) {
+            pools.put((String) row[0], new PoolData((Date) row[1], (Date) row[2]));
+        }
 
-        return ((Long) criteria.uniqueResult()).intValue();
-    }
+        if (pools.isEmpty()) {
+            return pools.values();
+        }
 
-    @SuppressWarnings("checkstyle:indentation")
-    private int getEnabledConsumerTypeCount(ConsumerType type, Owner owner, Date date) {
-        Criteria criteria = poolCurator.createSecureCriteria("Pool")
-            .createAlias("product", "Product")
-            .setProjection(Projections.countDistinct("Pool.id"));
+        String poolAttribJpql = "SELECT pool.id, KEY(attr), VALUE(attr) FROM Pool pool " +
+            "JOIN pool.attributes attr " +
+            "WHERE pool.owner = :owner AND pool.startDate <= :date AND pool.endDate >= :date " +
+            "AND KEY(attr) IN (:attributes)";
 
-        criteria.add(Restrictions.eq("owner", owner))
-            .add(Restrictions.le("startDate", date))
-            .add(Restrictions.ge("endDate", date))
-            .add(this.addAttributeFilterSubquery(Pool.Attributes.ENABLED_CONSUMER_TYPES, Arrays.asList(
-                type.getLabel() + ",*", "*," + type.getLabel(), "*," + type.getLabel() + ",*", type.getLabel()
-            )));
+        for (Object[] row : this.queryActivePools(poolAttribJpql, owner, date, true)) {
+            PoolData pool = pools.get((String) row[0]);
+            if (pool != null) {
+                pool.poolAttributes.put((String) row[1], (String) row[2]);
+            }
+        }
 
-        return ((Long) criteria.uniqueResult()).intValue();
-    }
+        String prodAttribJpql = "SELECT pool.id, KEY(attr), VALUE(attr) FROM Pool pool " +
+            "JOIN pool.product prod JOIN prod.attributes attr " +
+            "WHERE pool.owner = :owner AND pool.startDate <= :date AND pool.endDate >= :date " +
+            "AND KEY(attr) IN (:attributes)";
 
-    @SuppressWarnings("checkstyle:indentation")
-    private Criterion addAttributeFilterSubquery(String key, Collection<String> values) {
-        key = this.sanitizeMatchesFilter(key);
-
-        // Find all pools which have the given attribute (and values) on a product, unless the pool
-        // defines that same attribute
-        DetachedCriteria poolAttrSubquery = DetachedCriteria.forClass(Pool.class, "PoolI")
-            .createAlias("PoolI.attributes", "attrib")
-            .setProjection(Projections.id())
-            .add(Property.forName("Pool.id").eqProperty("PoolI.id"))
-            .add(new CPLikeExpression("attrib.indices", key, '!', false));
-
-        // Impl note:
-        // The SQL restriction below uses some Hibernate magic value to get the pool ID from the
-        // outer-most query. We can't use {alias} here, since we're basing the subquery on Product
-        // instead of Pool to save ourselves an unnecessary join. Similarly, we use an SQL
-        // restriction here because we can query the information we need, hitting only one table
-        // with direct SQL, whereas the matching criteria query would end up requiring a minimum of
-        // one join to get from pool to pool attributes.
-        DetachedCriteria prodAttrSubquery = DetachedCriteria.forClass(Product.class, "ProdI")
-            .createAlias("ProdI.attributes", "attrib")
-            .setProjection(Projections.id())
-            .add(Property.forName("Product.uuid").eqProperty("ProdI.uuid"))
-            .add(new CPLikeExpression("attrib.indices", key, '!', false))
-            .add(Restrictions.sqlRestriction(
-                "NOT EXISTS (SELECT poolattr.pool_id FROM cp_pool_attribute poolattr " +
-                "WHERE poolattr.pool_id = this_.id AND LOWER(poolattr.name) LIKE LOWER(?) ESCAPE '!')",
-                key, StringType.INSTANCE
-            ));
-
-        if (values != null && !values.isEmpty()) {
-            Disjunction poolAttrValueDisjunction = Restrictions.disjunction();
-            Disjunction prodAttrValueDisjunction = Restrictions.disjunction();
-
-            for (String attrValue : values) {
-                if (attrValue == null || attrValue.isEmpty()) {
-                    poolAttrValueDisjunction.add(Restrictions.isNull("attrib.elements"))
-                        .add(Restrictions.eq("attrib.elements", ""));
-
-                    prodAttrValueDisjunction.add(Restrictions.isNull("attrib.elements"))
-                        .add(Restrictions.eq("attrib.elements", ""));
-                }
-                else {
-                    attrValue = this.sanitizeMatchesFilter(attrValue);
-                    poolAttrValueDisjunction.add(
-                        new CPLikeExpression("attrib.elements", attrValue, '!', true));
-                    prodAttrValueDisjunction.add(
-                        new CPLikeExpression("attrib.elements", attrValue, '!', true));
-                }
+        for (Object[] row : this.queryActivePools(prodAttribJpql, owner, date, true)) {
+            PoolData pool = pools.get((String) row[0]);
+            if (pool != null) {
+                pool.productAttributes.put((String) row[1], (String) row[2]);
             }
-
-            poolAttrSubquery.add(poolAttrValueDisjunction);
-            prodAttrSubquery.add(prodAttrValueDisjunction);
         }
 
-        return Restrictions.or(
-            Subqueries.exists(poolAttrSubquery),
-            Subqueries.exists(prodAttrSubquery)
-        );
-    }
+        String quantityJpql = "SELECT pool.id, SUM(ent.quantity) FROM Entitlement ent " +
+            "JOIN ent.pool pool " +
+            "WHERE pool.owner = :owner AND pool.startDate <= :date AND pool.endDate >= :date " +
+            "GROUP BY pool.id";
 
-    private String sanitizeMatchesFilter(String matches) {
-        StringBuilder output = new StringBuilder();
-        boolean escaped = false;
-
-        for (int index = 0; index < matches.length(); ++index) {
-            char c = matches.charAt(index);
-
-            switch (c) {
-                case '!':
-                case '_':
-                case '%':
-                    output.append('!').append(c);
-                    break;
-
-                case '\\':
-                    if (escaped) {
-                        output.append(c);
-                    }
-
-                    escaped = !escaped;
-                    break;
-
-                case '*':
-                case '?':
-                    if (!escaped) {
-                        output.append(c == '*' ? '%' : '_');
-                        break;
-                    }
-
-                default:
-                    output.append(c);
-                    escaped = false;
+        for (Object[] row : this.queryActivePools(quantityJpql, owner, date, false)) {
+            PoolData pool = pools.get((String) row[0]);
+            if (pool != null && row[1] != null) {
+                pool.quantity = ((Number) row[1]).intValue();
             }
         }
 
-        return output.toString();
+        return pools.values();
     }
 
-    // TODO: Move this to the CPRestrictions class (as a pair of .like and .ilike methods) once
-    // this branch and the branch that contain it are merged together.
-    private static class CPLikeExpression extends LikeExpression {
-        public CPLikeExpression(String property, String value, char escape, boolean ignoreCase) {
-            super(property, value, escape, ignoreCase);
+    private List<Object[]> queryActivePools(String jpql, Owner owner, Date date, boolean attributes) {
+        TypedQuery<Object[]> query = this.entityManager.get()
+            .createQuery(jpql, Object[].class)
+            .setParameter("owner", owner)
+            .setParameter("date", date);
+
+        if (attributes) {
+            query.setParameter("attributes", POOL_ATTRIBUTES);
         }
+
+        return query.getResultList();
     }
 
-    private Collection<String> getProductFamilies(Owner owner, Date date) {
+    /**
+     * Fetches the product families of the given pools, limited to the pools strictly active on the
+     * given date.
+     */
+    private Collection<String> getProductFamilies(Collection<PoolData> pools, Date date) {
         Set<String> families = new HashSet<>();
 
-        String queryStr = "select distinct value(attr) from Pool p " +
-            "join p.attributes as attr " +
-            "where p.owner = :owner " +
-            "and p.startDate < :date and p.endDate > :date " +
-            "and key(attr) = :attribute";
-
-        Query query = currentSession().createQuery(queryStr)
-            .setEntity("owner", owner)
-            .setParameter("date", date)
-            .setParameter("attribute", Pool.Attributes.PRODUCT_FAMILY);
-
-        Iterator iter = query.iterate();
-        while (iter.hasNext()) {
-            String family = (String) iter.next();
-            families.add(family);
-        }
+        for (PoolData pool : pools) {
+            String family = pool.getAttribute(Pool.Attributes.PRODUCT_FAMILY);
 
-        queryStr = "select distinct value(prod) from Pool p " +
-            "join p.product.attributes as prod " +
-            "where p.owner = :owner " +
-            "and p.startDate < :date and p.endDate > :date " +
-            "and key(prod) = :attribute " +
-            "and p not in (SELECT DISTINCT p2 FROM Pool p2 JOIN p2.attributes AS attr2 " +
-            "    WHERE key(attr2) = :attribute)";
-
-        query = currentSession().createQuery(queryStr)
-            .setEntity("owner", owner)
-            .setParameter("date", date)
-            .setParameter("attribute", Pool.Attributes.PRODUCT_FAMILY);
-
-        iter = query.iterate();
-        while (iter.hasNext()) {
-            String family = (String) iter.next();
-            families.add(family);
+            if (family != null && pool.startDate.before(date) && pool.endDate.after(date)) {
+                families.add(family);
+            }
         }
 
         return families;
     }
 
-    /*
-     * If called with virt = false, returns the total number of all entitlements in
-     * that family for that owner. So you probably want to subtract  the result of
-     * virt=true from that.
-     *
-     * use family = null to get counts for all pools.
-     */
-    private int getProductFamilyCount(Owner owner, Date date, String family, boolean virt) {
-        Criteria criteria = poolCurator.createSecureCriteria("Pool")
-            .createAlias("entitlements", "Ent")
-            .createAlias("product", "Product")
-            .setProjection(Projections.sum("Ent.quantity"));
+    private int countPools(Collection<PoolData> pools, Predicate<PoolData> filter) {
+        int count = 0;
 
-        criteria.add(Restrictions.eq("owner", owner))
-            .add(Restrictions.le("startDate", date))
-            .add(Restrictions.ge("endDate", date));
+        for (PoolData pool : pools) {
+            if (filter.test(pool)) {
+                ++count;
+            }
+        }
+
+        return count;
+    }
 
-        if (family != null) {
-            criteria.add(this.addAttributeFilterSubquery(
-                Pool.Attributes.PRODUCT_FAMILY, Arrays.asList(family)
-            ));
+    private int sumPoolQuantities(Collection<PoolData> pools, Predicate<PoolData> filter) {
+        int sum = 0;
+
+        for (PoolData pool : pools) {
+            if (filter.test(pool)) {
+                sum += pool.quantity;
+            }
         }
 
-        if (virt) {
-            criteria.add(this.addAttributeFilterSubquery(Pool.Attributes.VIRT_ONLY, Arrays.asList("true")));
+        return sum;
+    }
+
+    private static boolean isVirtOnly(PoolData pool) {
+        return matchesValue(pool.getAttribute(Pool.Attributes.VIRT_ONLY), "true");
+    }
+
+    private static boolean matchesValue(String attribute, String value) {
+        return attribute != null && attribute.equalsIgnoreCase(value);
+    }
+
+    /**
+     * Checks if the given value is one of the values of a comma-separated attribute value
+     */
+    private static boolean matchesListValue(String attribute, String value) {
+        if (attribute != null) {
+            for (String element : attribute.split(",", -1)) {
+                if (element.equalsIgnoreCase(value)) {
+                    return true;
+                }
+            }
         }
 
-        Long res = (Long) criteria.uniqueResult();
-        return res != null ? res.intValue() : 0;
+        return false;
     }
 
-    protected Session currentSession() {
-        Session sess = (Session) entityManager.get().getDelegate();
-        return sess;
+    /**
+     * The dates, relevant attributes and consumed entitlement quantity of an active pool. Pool
+     * attributes take precedence over the attributes of the pool's product, even if the pool
+     * attribute has a different value.
+     */
+    private static class PoolData {
+        private final Date startDate;
+        private final Date endDate;
+        private final Map<String, String> poolAttributes = new HashMap<>();
+        private final Map<String, String> productAttributes = new HashMap<>();
+        private int quantity;
+
+        public PoolData(Date startDate, Date endDate) {
+            this.startDate = startDate;
+            this.endDate = endDate;
+        }
+
+        public String getAttribute(String key) {
+            return this.poolAttributes.containsKey(key) ?
+                this.poolAttributes.get(key) :
+                this.productAttributes.get(key);
+        }
     }
 }
@@ -0,0 +1,171 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import org.candlepin.util.ObjectMapperFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+
+
+/**
+ * An OwnerInfoSummary stores a previously computed OwnerInfo for a single owner, allowing owner
+ * info requests to be served without recomputing the consumer and entitlement counts each time.
+ * The summary is flagged as stale when the entitlements or pools of the owner change, and is
+ * recomputed on the next request for the owner's info.
+ */
+@Entity
+@Table(name = OwnerInfoSummary.DB_TABLE)
+public class OwnerInfoSummary extends AbstractHibernateObject<OwnerInfoSummary> {
+    private static Logger log = LoggerFactory.getLogger(OwnerInfoSummary.class);
+
+    /** Basic ObjectMapper to use for serializing the owner info */
+    private static final ObjectMapper MAPPER = ObjectMapperFactory.getObjectMapper();
+
+    /** Name of the table backing this object in the database */
+    public static final String DB_TABLE = "cp_owner_info_summary";
+
+    @Id
+    @Column(name = "owner_id", length = 32)
+    @Size(max = 32)
+    @NotNull
+    private String ownerId;
+
+    @Column(name = "owner_info")
+    private String ownerInfo;
+
+    @Column(nullable = false)
+    @NotNull
+    private Boolean stale;
+
+    @Column
+    private Date computed;
+
+    public OwnerInfoSummary() {
+        // Intentionally left empty
+    }
+
+    public OwnerInfoSummary(String ownerId) {
+        this.ownerId = ownerId;
+        this.stale = true;
+    }
+
+    @Override
+    public String getId() {
+        return this.ownerId;
+    }
+
+    public String getOwnerId() {
+        return this.ownerId;
+    }
+
+    public OwnerInfoSummary setOwnerId(String ownerId) {
+        this.ownerId = ownerId;
+        return this;
+    }
+
+    /**
+     * Fetches the owner info stored in this summary.
+     *
+     * @return
+     *  the stored owner info, or null if no owner info has been stored or it cannot be read
+     */
+    public OwnerInfo getOwnerInfo() {
+        try {
+            return this.ownerInfo != null ? MAPPER.readValue(this.ownerInfo, OwnerInfo.class) : null;
+        }
+        catch (Exception e) {
+            log.warn("Unable to deserialize owner info summary for owner: {}", this.ownerId, e);
+            return null;
+        }
+    }
+
+    /**
+     * Fetches the serialized owner info stored in this summary.
+     *
+     * @return
+     *  the serialized owner info, or null if no owner info has been stored
+     */
+    String getSerializedOwnerInfo() {
+        return this.ownerInfo;
+    }
+
+    /**
+     * Sets the owner info stored in this summary.
+     *
+     * @param ownerInfo
+     *  the owner info to store, or null to clear the stored info
+     *
+     * @throws IllegalArgumentException
+     *  if the owner info cannot be serialized
+     *
+     * @return
+     *  a reference to this summary
+     */
+    public OwnerInfoSummary setOwnerInfo(OwnerInfo ownerInfo) {
+        try {
+            this.ownerInfo = ownerInfo != null ? MAPPER.writeValueAsString(ownerInfo) : null;
+        }
+        catch (Exception e) {
+            throw new IllegalArgumentException("Unable to serialize owner info", e);
+        }
+
+        return this;
+    }
+
+    /**
+     * @return
+     *  true if the owner's entitlements or pools have changed since the summary was computed
+     */
+    public Boolean isStale() {
+        return this.stale;
+    }
+
+    public OwnerInfoSummary setStale(Boolean stale) {
+        this.stale = stale;
+        return this;
+    }
+
+    /**
+     * @return
+     *  the time at which the stored owner info was computed
+     */
+    public Date getComputed() {
+        return this.computed;
+    }
+
+    public OwnerInfoSummary setComputed(Date computed) {
+        this.computed = computed;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("OwnerInfoSummary [owner: %s, stale: %s, computed: %s]",
+            this.ownerId, this.stale, this.computed);
+    }
+}
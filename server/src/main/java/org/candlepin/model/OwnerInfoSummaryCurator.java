@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import com.google.inject.persist.Transactional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import javax.inject.Singleton;
+
+
+
+/**
+ * OwnerInfoSummaryCurator
+ */
+@Singleton
+public class OwnerInfoSummaryCurator extends AbstractHibernateCurator<OwnerInfoSummary> {
+    private static Logger log = LoggerFactory.getLogger(OwnerInfoSummaryCurator.class);
+
+    public OwnerInfoSummaryCurator() {
+        super(OwnerInfoSummary.class);
+    }
+
+    /**
+     * Stores the given owner info as the summary for the specified owner, replacing any existing
+     * summary and clearing its stale flag.
+     * <p></p>
+     * If the owner does not yet have a summary, it is inserted under a savepoint, so that a summary
+     * stored concurrently by another request does not abort the current transaction. In that case
+     * the other request's summary is kept and this method returns false.
+     *
+     * @param ownerId
+     *  the ID of the owner for which to store the summary
+     *
+     * @param ownerInfo
+     *  the owner info to store
+     *
+     * @param computed
+     *  the time at which the owner info was computed
+     *
+     * @return
+     *  true if the summary was stored; false if another summary was stored concurrently
+     */
+    @Transactional
+    public boolean storeOwnerInfo(String ownerId, OwnerInfo ownerInfo, Date computed) {
+        OwnerInfoSummary summary = this.get(ownerId);
+
+        if (summary != null) {
+            summary.setOwnerInfo(ownerInfo)
+                .setComputed(computed)
+                .setStale(false);
+
+            this.merge(summary);
+            return true;
+        }
+
+        summary = new OwnerInfoSummary(ownerId)
+            .setOwnerInfo(ownerInfo)
+            .setComputed(computed)
+            .setStale(false);
+
+        return this.insertIfAbsent(summary);
+    }
+
+    /**
+     * Inserts the given summary unless a summary for the same owner already exists. The insert is
+     * performed under a savepoint which is rolled back if the insert fails, leaving the current
+     * transaction usable.
+     */
+    private boolean insertIfAbsent(OwnerInfoSummary summary) {
+        String sql = "INSERT INTO " + OwnerInfoSummary.DB_TABLE +
+            " (owner_id, created, updated, owner_info, stale, computed) VALUES (?, ?, ?, ?, ?, ?)";
+
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        Timestamp computed = summary.getComputed() != null ?
+            new Timestamp(summary.getComputed().getTime()) :
+            null;
+
+        return this.currentSession().doReturningWork(connection -> {
+            Savepoint savepoint = connection.setSavepoint();
+
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setString(1, summary.getOwnerId());
+                statement.setTimestamp(2, now);
+                statement.setTimestamp(3, now);
+                statement.setString(4, summary.getSerializedOwnerInfo());
+                statement.setBoolean(5, summary.isStale());
+                statement.setTimestamp(6, computed);
+                statement.executeUpdate();
+
+                connection.releaseSavepoint(savepoint);
+                return true;
+            }
+            catch (SQLException e) {
+                // Most likely another request inserted the owner's summary first; its summary is
+                // as current as ours, so keep it.
+                connection.rollback(savepoint);
+                log.debug("Unable to insert owner info summary for owner: {}", summary.getOwnerId(), e);
+
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Flags the summaries of the specified owners as stale. Summaries which are already stale are
+     * not updated, so only the first change following the computation of a summary writes to it.
+     *
+     * @param ownerIds
+     *  a collection of IDs of the owners for which to flag the summaries
+     *
+     * @return
+     *  the number of summaries flagged as stale
+     */
+    @Transactional
+    public int markStale(Collection<String> ownerIds) {
+        int count = 0;
+
+        if (ownerIds != null && !ownerIds.isEmpty()) {
+            String jpql = "UPDATE OwnerInfoSummary summary SET summary.stale = true " +
+                "WHERE summary.ownerId IN (:owner_ids) AND summary.stale = false";
+
+            for (List<String> block : this.partition(ownerIds)) {
+                count += this.getEntityManager()
+                    .createQuery(jpql)
+                    .setParameter("owner_ids", block)
+                    .executeUpdate();
+            }
+        }
+
+        return count;
+    }
+}
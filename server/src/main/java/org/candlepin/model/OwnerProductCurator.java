@@ -502,6 +502,52 @@ public class OwnerProductCurator extends AbstractHibernateCurator<OwnerProduct>
         return this.cpQueryFactory.<Product>buildQuery();
     }
 
+    /**
+     * Fetches the UUIDs of the locked products belonging to the given owner whose content digests
+     * match those provided for their Red Hat product IDs. Only the IDs, UUIDs and digests of the
+     * products are fetched, and the lookup is driven by the indexed digest column. Since digests are
+     * strong hashes of the product data, a match may be trusted as an unchanged product without
+     * loading or comparing it. Products which have not had their digest calculated never match.
+     *
+     * @param owner
+     *  The owner whose products should be checked
+     *
+     * @param productDigests
+     *  A mapping of Red Hat product IDs to content digests to check
+     *
+     * @return
+     *  a mapping of Red Hat product IDs to the UUIDs of the matching products
+     */
+    public Map<String, String> getLockedProductUuidsByDigests(Owner owner,
+        Map<String, String> productDigests) {
+
+        Map<String, String> uuids = new HashMap<>();
+
+        if (productDigests == null || productDigests.isEmpty()) {
+            return uuids;
+        }
+
+        List<Object[]> rows = this.currentSession().createCriteria(OwnerProduct.class)
+            .createAlias("owner", "owner")
+            .createAlias("product", "product")
+            .add(Restrictions.eq("owner.id", owner.getId()))
+            .add(Restrictions.eq("product.locked", true))
+            .add(CPRestrictions.in("product.contentDigest", productDigests.values()))
+            .setProjection(Projections.projectionList()
+                .add(Projections.property("product.id"))
+                .add(Projections.property("product.uuid"))
+                .add(Projections.property("product.contentDigest")))
+            .list();
+
+        for (Object[] row : rows) {
+            if (row[2] != null && row[2].equals(productDigests.get((String) row[0]))) {
+                uuids.put((String) row[0], (String) row[1]);
+            }
+        }
+
+        return uuids;
+    }
+
     /**
      * Updates the product references currently pointing to the original product to instead point to
      * the updated product for the specified owners.
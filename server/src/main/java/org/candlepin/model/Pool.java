@@ -368,6 +368,14 @@ public class Pool extends AbstractHibernateObject<Pool> implements Owned, Named,
     @Size(max = 255)
     private String upstreamPoolId;
 
+    /**
+     * Fingerprint of the subscription and product versions this master pool was last refreshed
+     * from; used to skip refreshing pools whose subscription has not changed.
+     */
+    @Column(name = "refresh_fingerprint")
+    @Size(max = 64)
+    private String refreshFingerprint;
+
     @Column(name = "upstream_entitlement_id")
     @Size(max = 37)
     private String upstreamEntitlementId;
@@ -1491,6 +1499,16 @@ public class Pool extends AbstractHibernateObject<Pool> implements Owned, Named,
         this.upstreamPoolId = upstreamPoolId;
     }
 
+    @JsonIgnore
+    public String getRefreshFingerprint() {
+        return this.refreshFingerprint;
+    }
+
+    @JsonIgnore
+    public void setRefreshFingerprint(String refreshFingerprint) {
+        this.refreshFingerprint = refreshFingerprint;
+    }
+
     public String getUpstreamEntitlementId() {
         return upstreamEntitlementId;
     }
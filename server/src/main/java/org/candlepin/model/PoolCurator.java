@@ -61,6 +61,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.function.UnaryOperator;
 
 import javax.inject.Singleton;
 import javax.persistence.TypedQuery;
@@ -76,6 +77,16 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
     /** The recommended number of expired pools to fetch in a single call to listExpiredPools */
     public static final int EXPIRED_POOL_BLOCK_SIZE = 1000;
 
+    /**
+     * The consumed quantity of a pool, as calculated from its entitlements and the unused quantity
+     * of unexpired pool quantity leases. Entitlements granted from a lease are deducted from it in
+     * the same transaction, so they are not counted twice.
+     */
+    private static final String CONSUMED_QUANTITY_EXPRESSION =
+        "coalesce((select sum(ent.quantity) from Entitlement ent where ent.pool.id = p.id), 0) + " +
+        "coalesce((select sum(lease.quantity) from PoolQuantityLease lease " +
+        "where lease.poolId = p.id and lease.expiration >= :now), 0)";
+
     private static Logger log = LoggerFactory.getLogger(PoolCurator.class);
     private ConsumerCurator consumerCurator;
     private ConsumerTypeCurator consumerTypeCurator;
@@ -83,6 +94,9 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
     @Inject
     protected Injector injector;
 
+    @Inject
+    protected PoolIndex poolIndex;
+
     @Inject
     public PoolCurator(ConsumerCurator consumerCurator, ConsumerTypeCurator consumerTypeCurator) {
         super(Pool.class);
@@ -344,12 +358,51 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
      * @return List of entitlement pools.
      */
     @Transactional
-    @SuppressWarnings({"unchecked", "checkstyle:indentation", "checkstyle:methodlength"})
-    // TODO: Remove the methodlength suppression once this method is cleaned up
     public Page<List<Pool>> listAvailableEntitlementPools(Consumer consumer, String ownerId,
         Collection<String> productIds, String subscriptionId, Date activeOn, PoolFilterBuilder filters,
         PageRequest pageRequest, boolean postFilter, boolean addFuture, boolean onlyFuture, Date after) {
 
+        return this.listAvailableEntitlementPools(consumer, ownerId, productIds, subscriptionId, activeOn,
+            filters, pageRequest, postFilter, null, addFuture, onlyFuture, after);
+    }
+
+    /**
+     * List entitlement pools, filtering them in java before they are paged.
+     *
+     * Pools are fetched and passed through the result filter in batches, such that only the
+     * pools on the requested page are held in memory, rather than every pool matching the
+     * criteria.
+     *
+     * @param consumer Consumer being entitled.
+     * @param ownerId Owner whose subscriptions should be inspected.
+     * @param productId only entitlements which provide this product are included.
+     * @param subscriptionId only entitlements from this subscription are included.
+     * @param activeOn Indicates to return only pools valid on this date.
+     *        Set to null for no date filtering.
+     * @param filters filter builder with set filters to apply to the criteria.
+     * @param pageRequest used to specify paging criteria.
+     * @param resultFilter the filter to apply to each batch of pools; must return the pools to
+     *        keep, in order.
+     * @return List of entitlement pools.
+     */
+    @Transactional
+    public Page<List<Pool>> listAvailableEntitlementPools(Consumer consumer, String ownerId,
+        String productId, String subscriptionId, Date activeOn, PoolFilterBuilder filters,
+        PageRequest pageRequest, UnaryOperator<List<Pool>> resultFilter, boolean addFuture,
+        boolean onlyFuture, Date after) {
+
+        return this.listAvailableEntitlementPools(consumer, ownerId,
+            (productId != null ? Arrays.asList(productId) : (Collection<String>) null), subscriptionId,
+            activeOn, filters, pageRequest, true, resultFilter, addFuture, onlyFuture, after);
+    }
+
+    @SuppressWarnings({"unchecked", "checkstyle:indentation", "checkstyle:methodlength"})
+    // TODO: Remove the methodlength suppression once this method is cleaned up
+    private Page<List<Pool>> listAvailableEntitlementPools(Consumer consumer, String ownerId,
+        Collection<String> productIds, String subscriptionId, Date activeOn, PoolFilterBuilder filters,
+        PageRequest pageRequest, boolean postFilter, UnaryOperator<List<Pool>> resultFilter,
+        boolean addFuture, boolean onlyFuture, Date after) {
+
         if (log.isDebugEnabled()) {
             log.debug("Listing available pools for:");
             log.debug("    consumer: {}", consumer);
@@ -581,7 +634,9 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
                 .createAlias("product", "Product");
             criteria.add(CPRestrictions.in("id", poolIds));
 
-            return this.listByCriteria(criteria, pageRequest, postFilter);
+            return resultFilter != null ?
+                this.listByCriteria(criteria, pageRequest, resultFilter) :
+                this.listByCriteria(criteria, pageRequest, postFilter);
         }
 
         Page<List<Pool>> output = new Page<>();
@@ -1066,6 +1121,7 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
 
             // Perform the actual deletion...
             this.currentSession().delete(entity);
+            this.removeFromIndex(entity);
 
             // Maintain runtime consistency. The entitlements for the pool have been deleted on the
             // database because delete is cascaded on Pool.entitlements relation
@@ -1102,6 +1158,64 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
         }
     }
 
+    @Override
+    @Transactional
+    public Pool merge(Pool entity) {
+        this.invalidateIndex(entity);
+        return super.merge(entity);
+    }
+
+    @Override
+    @Transactional
+    public Pool saveOrUpdate(Pool entity) {
+        this.invalidateIndex(entity);
+        return super.saveOrUpdate(entity);
+    }
+
+    @Override
+    public Collection<Pool> updateAll(Collection<Pool> entities, boolean flush, boolean evict) {
+        this.invalidateIndex(entities);
+        return super.updateAll(entities, flush, evict);
+    }
+
+    @Override
+    public Iterable<Pool> saveOrUpdateAll(Iterable<Pool> entities, boolean flush, boolean evict) {
+        this.invalidateIndex(entities);
+        return super.saveOrUpdateAll(entities, flush, evict);
+    }
+
+    @Override
+    public Collection<Pool> mergeAll(Collection<Pool> entities, boolean flush) {
+        this.invalidateIndex(entities);
+        return super.mergeAll(entities, flush);
+    }
+
+    /**
+     * Flags the given pool as modified in the pool index, if the index is available.
+     *
+     * @param pool
+     *  the pool being modified
+     */
+    private void invalidateIndex(Pool pool) {
+        if (this.poolIndex != null) {
+            this.poolIndex.invalidate(pool);
+        }
+    }
+
+    private void invalidateIndex(Iterable<Pool> pools) {
+        if (this.poolIndex != null && pools != null) {
+            for (Pool pool : pools) {
+                this.poolIndex.invalidate(pool);
+            }
+        }
+    }
+
+    private void removeFromIndex(Pool pool) {
+        if (this.poolIndex != null) {
+            this.poolIndex.remove(pool);
+        }
+    }
+
     /**
      * Batch deletes a list of pools.
      *
@@ -1408,6 +1522,65 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
         }
     }
 
+    /**
+     * Fetches the refresh fingerprints of the master pools of the given owner. Master pools which
+     * have not yet been fingerprinted are not included.
+     *
+     * @param owner
+     *  The owner for which to fetch master pool fingerprints
+     *
+     * @return
+     *  A map of subscription ID to the refresh fingerprint of its master pool
+     */
+    public Map<String, String> getMasterPoolRefreshFingerprints(Owner owner) {
+        String jpql = "SELECT ss.subscriptionId, ss.pool.refreshFingerprint FROM SourceSubscription ss " +
+            "WHERE ss.pool.owner.id = :owner_id AND ss.subscriptionSubKey = 'master' " +
+            "AND ss.pool.refreshFingerprint IS NOT NULL";
+
+        List<Object[]> rows = this.getEntityManager()
+            .createQuery(jpql, Object[].class)
+            .setParameter("owner_id", owner.getId())
+            .getResultList();
+
+        Map<String, String> fingerprints = new HashMap<>();
+        for (Object[] row : rows) {
+            fingerprints.put((String) row[0], (String) row[1]);
+        }
+
+        return fingerprints;
+    }
+
+    /**
+     * Sets the refresh fingerprints of the master pools of the given owner.
+     *
+     * @param owner
+     *  The owner of the master pools to update
+     *
+     * @param fingerprints
+     *  A map of subscription ID to the refresh fingerprint to set on its master pool
+     *
+     * @return
+     *  the number of master pools updated
+     */
+    public int updateMasterPoolRefreshFingerprints(Owner owner, Map<String, String> fingerprints) {
+        String jpql = "UPDATE Pool p SET p.refreshFingerprint = :fingerprint " +
+            "WHERE p.owner.id = :owner_id AND p.id IN (SELECT ss.pool.id FROM SourceSubscription ss " +
+            "WHERE ss.subscriptionId = :sub_id AND ss.subscriptionSubKey = 'master')";
+
+        Query query = this.currentSession()
+            .createQuery(jpql)
+            .setParameter("owner_id", owner.getId());
+
+        int updated = 0;
+        for (Entry<String, String> entry : fingerprints.entrySet()) {
+            updated += query.setParameter("sub_id", entry.getKey())
+                .setParameter("fingerprint", entry.getValue())
+                .executeUpdate();
+        }
+
+        return updated;
+    }
+
     /**
      * Retrieves the set of all known product IDs, as determined by looking only at pool data. If
      * there are no known products, this method returns an empty set.
@@ -1563,16 +1736,52 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
             .setParameter("pool", pool).getSingleResult() > 0;
     }
 
+    /**
+     * Recalculates the consumed quantity of the pools of the given owner from their entitlements,
+     * and the unused quantity of any unexpired pool quantity leases.
+     *
+     * @param owner
+     *  the owner whose pools are to be updated
+     */
     public void calculateConsumedForOwnersPools(Owner owner) {
-        String stmt = "update Pool p set p.consumed = coalesce(" +
-            "(select sum(quantity) from Entitlement ent where ent.pool.id = p.id),0) " +
-            "where p.owner = :owner";
+        String stmt = "update Pool p set p.consumed = " + CONSUMED_QUANTITY_EXPRESSION +
+            " where p.owner = :owner";
 
         Query q = currentSession().createQuery(stmt);
         q.setParameter("owner", owner);
+        q.setParameter("now", new Date());
         q.executeUpdate();
     }
 
+    /**
+     * Recalculates the consumed quantity of the given pools from their entitlements, and the
+     * unused quantity of any unexpired pool quantity leases.
+     *
+     * @param poolIds
+     *  the IDs of the pools to update
+     *
+     * @return
+     *  the number of pools updated
+     */
+    public int calculateConsumedForPools(Collection<String> poolIds) {
+        int updated = 0;
+
+        if (poolIds != null && !poolIds.isEmpty()) {
+            String stmt = "update Pool p set p.consumed = " + CONSUMED_QUANTITY_EXPRESSION +
+                " where p.id in (:poolIds)";
+
+            Query q = currentSession().createQuery(stmt);
+            q.setParameter("now", new Date());
+
+            for (List<String> block : this.partition(poolIds)) {
+                q.setParameterList("poolIds", block);
+                updated += q.executeUpdate();
+            }
+        }
+
+        return updated;
+    }
+
     public void calculateExportedForOwnersPools(Owner owner) {
         String stmt = "update Pool p set p.exported = coalesce(" +
             "(select sum(ent.quantity) FROM Entitlement ent, Consumer cons, ConsumerType ctype " +
@@ -0,0 +1,466 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import com.google.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+
+
+/**
+ * The PoolIndex maintains a per-owner, in-memory index of the attributes used to select autobind
+ * candidates: the product and provided product IDs, stacking ID, add-ons and roles of each pool.
+ * Each of these columns maps a value to a bitset of the index rows which carry it, allowing the
+ * candidate pools for a bind to be found with a handful of set unions rather than by re-parsing
+ * the attributes of every pool available to the consumer.
+ * <p></p>
+ * Rows are stamped with the last-updated time of the pool and its product, and are re-indexed
+ * when a pool is seen with a different stamp. Writes made through the PoolCurator additionally
+ * invalidate the affected rows, bumping the version of the owner's index, and the index of an owner
+ * is dropped entirely once the owner is deleted.
+ */
+@Singleton
+public class PoolIndex {
+    private static Logger log = LoggerFactory.getLogger(PoolIndex.class);
+
+    private final ConcurrentMap<String, OwnerIndex> owners = new ConcurrentHashMap<>();
+
+    /**
+     * The columns of an owner's index. Each column maps a (normalized) value to the set of rows
+     * which carry that value.
+     */
+    private enum Column {
+        PRODUCT,
+        STACK,
+        ADDON,
+        ROLE
+    }
+
+    /**
+     * The index of the pools for a single owner.
+     */
+    private static class OwnerIndex {
+        private final AtomicLong version = new AtomicLong();
+        private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+
+        // Row data, guarded by the OwnerIndex's monitor
+        private final Map<String, Integer> rows = new HashMap<>();
+        private final List<String> poolIds = new ArrayList<>();
+        private final List<String> stamps = new ArrayList<>();
+        private final List<Map<Column, Set<String>>> values = new ArrayList<>();
+        private final Deque<Integer> freeRows = new ArrayDeque<>();
+        private final Map<Column, Map<String, BitSet>> columns = new HashMap<>();
+
+        public OwnerIndex() {
+            for (Column column : Column.values()) {
+                this.columns.put(column, new HashMap<>());
+            }
+        }
+
+        public void invalidate(String poolId) {
+            this.dirty.add(poolId);
+            this.version.incrementAndGet();
+        }
+
+        public synchronized void remove(String poolId) {
+            Integer row = this.rows.remove(poolId);
+
+            if (row != null) {
+                this.clearRow(row);
+                this.poolIds.set(row, null);
+                this.stamps.set(row, null);
+                this.freeRows.push(row);
+            }
+
+            this.dirty.remove(poolId);
+            this.version.incrementAndGet();
+        }
+
+        private void clearRow(int row) {
+            Map<Column, Set<String>> rowValues = this.values.get(row);
+
+            if (rowValues != null) {
+                for (Map.Entry<Column, Set<String>> entry : rowValues.entrySet()) {
+                    Map<String, BitSet> column = this.columns.get(entry.getKey());
+
+                    for (String value : entry.getValue()) {
+                        BitSet bits = column.get(value);
+
+                        if (bits != null) {
+                            bits.clear(row);
+
+                            if (bits.isEmpty()) {
+                                column.remove(value);
+                            }
+                        }
+                    }
+                }
+
+                this.values.set(row, null);
+            }
+        }
+
+        private int allocateRow(String poolId) {
+            Integer row = this.rows.get(poolId);
+
+            if (row == null) {
+                row = this.freeRows.isEmpty() ? this.poolIds.size() : this.freeRows.pop();
+
+                if (row == this.poolIds.size()) {
+                    this.poolIds.add(poolId);
+                    this.stamps.add(null);
+                    this.values.add(null);
+                }
+                else {
+                    this.poolIds.set(row, poolId);
+                }
+
+                this.rows.put(poolId, row);
+            }
+            else {
+                this.clearRow(row);
+            }
+
+            return row;
+        }
+
+        public void index(Pool pool, String stamp, Set<String> providedProductIds) {
+            int row = this.allocateRow(pool.getId());
+            Map<Column, Set<String>> rowValues = extractValues(pool, providedProductIds);
+
+            for (Map.Entry<Column, Set<String>> entry : rowValues.entrySet()) {
+                Map<String, BitSet> column = this.columns.get(entry.getKey());
+
+                for (String value : entry.getValue()) {
+                    column.computeIfAbsent(value, key -> new BitSet()).set(row);
+                }
+            }
+
+            this.values.set(row, rowValues);
+            this.stamps.set(row, stamp);
+        }
+
+        public boolean isCurrent(Pool pool, String stamp) {
+            Integer row = this.rows.get(pool.getId());
+            return row != null && !this.dirty.contains(pool.getId()) && stamp.equals(this.stamps.get(row));
+        }
+
+        public int getRow(String poolId) {
+            Integer row = this.rows.get(poolId);
+            return row != null ? row : -1;
+        }
+
+        public BitSet select(Map<Column, Set<String>> query) {
+            BitSet selected = new BitSet();
+
+            for (Map.Entry<Column, Set<String>> entry : query.entrySet()) {
+                Map<String, BitSet> column = this.columns.get(entry.getKey());
+
+                for (String value : entry.getValue()) {
+                    BitSet bits = column.get(value);
+
+                    if (bits != null) {
+                        selected.or(bits);
+                    }
+                }
+            }
+
+            return selected;
+        }
+    }
+
+    /**
+     * Extracts the indexed values for each column from the given pool.
+     */
+    private static Map<Column, Set<String>> extractValues(Pool pool, Set<String> providedProductIds) {
+        Map<Column, Set<String>> values = new HashMap<>();
+        Set<String> products = new HashSet<>();
+
+        if (providedProductIds != null) {
+            products.addAll(providedProductIds);
+        }
+
+        Product product = pool.getProduct();
+        if (product != null) {
+            if (product.getId() != null) {
+                products.add(product.getId());
+            }
+
+            String stackingId = product.getAttributeValue(Product.Attributes.STACKING_ID);
+            if (stackingId != null) {
+                values.put(Column.STACK, Collections.singleton(stackingId));
+            }
+
+            String addons = product.getAttributeValue(Product.Attributes.ADDONS);
+            if (addons != null) {
+                Set<String> tokens = new HashSet<>();
+                for (String addon : addons.trim().split("\\s*,\\s*")) {
+                    tokens.add(normalize(addon));
+                }
+
+                values.put(Column.ADDON, tokens);
+            }
+
+            String roles = product.getAttributeValue(Product.Attributes.ROLES);
+            if (roles != null) {
+                Set<String> tokens = new HashSet<>();
+                for (String role : roles.split(",")) {
+                    tokens.add(normalize(role));
+                }
+
+                values.put(Column.ROLE, tokens);
+            }
+        }
+
+        values.put(Column.PRODUCT, products);
+        return values;
+    }
+
+    private static boolean matches(Map<Column, Set<String>> values, Map<Column, Set<String>> query) {
+        for (Map.Entry<Column, Set<String>> entry : values.entrySet()) {
+            for (String value : entry.getValue()) {
+                if (query.get(entry.getKey()).contains(value)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static String normalize(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    private static String stamp(Pool pool) {
+        Product product = pool.getProduct();
+
+        StringBuilder builder = new StringBuilder()
+            .append(pool.getUpdated() != null ? pool.getUpdated().getTime() : 0);
+
+        if (product != null) {
+            builder.append(':').append(product.getUuid())
+                .append(':').append(product.getUpdated() != null ? product.getUpdated().getTime() : 0);
+        }
+
+        return builder.toString();
+    }
+
+    private OwnerIndex getOwnerIndex(String ownerId) {
+        return this.owners.computeIfAbsent(ownerId != null ? ownerId : "", key -> new OwnerIndex());
+    }
+
+    /**
+     * Marks the given pool as modified, forcing it to be re-indexed the next time it is
+     * considered as a candidate.
+     *
+     * @param pool
+     *  the pool which was modified
+     */
+    public void invalidate(Pool pool) {
+        if (pool == null || pool.getId() == null) {
+            return;
+        }
+
+        String ownerId = pool.getOwnerId();
+        if (ownerId != null) {
+            OwnerIndex index = this.owners.get(ownerId);
+            if (index != null) {
+                index.invalidate(pool.getId());
+            }
+        }
+        else {
+            for (OwnerIndex index : this.owners.values()) {
+                index.invalidate(pool.getId());
+            }
+        }
+    }
+
+    /**
+     * Removes the given pool from the index.
+     *
+     * @param pool
+     *  the pool which was deleted
+     */
+    public void remove(Pool pool) {
+        if (pool == null || pool.getId() == null) {
+            return;
+        }
+
+        String ownerId = pool.getOwnerId();
+        if (ownerId != null) {
+            OwnerIndex index = this.owners.get(ownerId);
+            if (index != null) {
+                index.remove(pool.getId());
+            }
+        }
+        else {
+            for (OwnerIndex index : this.owners.values()) {
+                index.remove(pool.getId());
+            }
+        }
+    }
+
+    /**
+     * Drops the index for the given owner entirely.
+     *
+     * @param ownerId
+     *  the ID of the owner for which to drop the index
+     */
+    public void invalidateOwner(String ownerId) {
+        if (ownerId != null) {
+            this.owners.remove(ownerId);
+        }
+    }
+
+    /**
+     * Fetches the current version of the index for the given owner. The version is incremented
+     * every time a pool belonging to the owner is invalidated or removed.
+     *
+     * @param ownerId
+     *  the ID of the owner
+     *
+     * @return
+     *  the current version of the owner's index
+     */
+    public long getVersion(String ownerId) {
+        OwnerIndex index = ownerId != null ? this.owners.get(ownerId) : null;
+        return index != null ? index.version.get() : 0;
+    }
+
+    /**
+     * Selects the pools from the given collection of available pools which provide any of the given
+     * products, complete any of the given stacks, or match any of the given add-ons or role. Pools
+     * which are not yet indexed, or have changed since they were indexed, are (re)indexed before
+     * selection.
+     *
+     * @param ownerId
+     *  the ID of the owner of the pools
+     *
+     * @param pools
+     *  the pools available to the consumer
+     *
+     * @param providedProductFetcher
+     *  a function used to fetch a mapping of pool IDs to provided product IDs for pools which need
+     *  to be indexed
+     *
+     * @param productIds
+     *  the IDs of the products for which to find pools
+     *
+     * @param stackIds
+     *  the stacking IDs of pools to select regardless of the products they provide
+     *
+     * @param addons
+     *  the add-ons of the consumer
+     *
+     * @param role
+     *  the role of the consumer
+     *
+     * @return
+     *  the candidate pools, in the order they appear in the given collection
+     */
+    public List<Pool> select(String ownerId, Collection<Pool> pools,
+        Function<Collection<Pool>, Map<String, Set<String>>> providedProductFetcher,
+        Collection<String> productIds, Collection<String> stackIds, Collection<String> addons, String role) {
+
+        List<Pool> candidates = new LinkedList<>();
+
+        if (pools == null || pools.isEmpty()) {
+            return candidates;
+        }
+
+        Map<Column, Set<String>> query = new HashMap<>();
+        query.put(Column.PRODUCT, productIds != null ? new HashSet<>(productIds) : Collections.emptySet());
+        query.put(Column.STACK, stackIds != null ? new HashSet<>(stackIds) : Collections.emptySet());
+        query.put(Column.ADDON, new HashSet<>());
+        query.put(Column.ROLE, Collections.singleton(normalize(role != null ? role : "")));
+
+        if (addons != null) {
+            for (String addon : addons) {
+                query.get(Column.ADDON).add(normalize(addon.trim()));
+            }
+        }
+
+        OwnerIndex index = this.getOwnerIndex(ownerId);
+
+        synchronized (index) {
+            Map<Pool, String> stale = new HashMap<>();
+            for (Pool pool : pools) {
+                if (pool.getId() == null) {
+                    continue;
+                }
+
+                String stamp = stamp(pool);
+                if (!index.isCurrent(pool, stamp)) {
+                    // Clear the dirty flag before fetching anything, so a concurrent invalidation
+                    // during re-indexing is not lost
+                    index.dirty.remove(pool.getId());
+                    stale.put(pool, stamp);
+                }
+            }
+
+            if (!stale.isEmpty()) {
+                log.debug("Indexing {} of {} pools for owner {}", stale.size(), pools.size(), ownerId);
+                Map<String, Set<String>> providedProductIds = providedProductFetcher.apply(stale.keySet());
+
+                for (Map.Entry<Pool, String> entry : stale.entrySet()) {
+                    Pool pool = entry.getKey();
+                    index.index(pool, entry.getValue(),
+                        providedProductIds != null ? providedProductIds.get(pool.getId()) : null);
+                }
+            }
+
+            BitSet selected = index.select(query);
+
+            for (Pool pool : pools) {
+                if (pool.getId() == null) {
+                    // Unpersisted pools can't be indexed; match them directly
+                    if (matches(extractValues(pool, null), query)) {
+                        candidates.add(pool);
+                    }
+
+                    continue;
+                }
+
+                int row = index.getRow(pool.getId());
+                if (row >= 0 && selected.get(row)) {
+                    candidates.add(pool);
+                }
+            }
+        }
+
+        return candidates;
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import org.hibernate.annotations.GenericGenerator;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+
+
+/**
+ * A PoolQuantityLease records a block of a pool's quantity held in escrow by a single Candlepin
+ * node. The leased quantity is counted as consumed by the pool, allowing the node to grant
+ * entitlements from it without locking the pool. The quantity recorded here is the leased quantity
+ * not yet used by committed entitlements, as binds granted from the lease deduct their quantity
+ * as they commit. It is only counted towards the pool's consumed quantity until the lease expires.
+ */
+@Entity
+@Table(name = PoolQuantityLease.DB_TABLE)
+public class PoolQuantityLease extends AbstractHibernateObject<PoolQuantityLease> {
+
+    /** Name of the table backing this object in the database */
+    public static final String DB_TABLE = "cp_pool_quantity_lease";
+
+    @Id
+    @GeneratedValue(generator = "system-uuid")
+    @GenericGenerator(name = "system-uuid", strategy = "uuid")
+    @Column(length = 32)
+    @NotNull
+    private String id;
+
+    @Column(name = "pool_id", length = 32, nullable = false)
+    @Size(max = 32)
+    @NotNull
+    private String poolId;
+
+    @Column(name = "node", length = 255, nullable = false)
+    @Size(max = 255)
+    @NotNull
+    private String node;
+
+    @Column(nullable = false)
+    @NotNull
+    private Long quantity;
+
+    @Column(nullable = false)
+    @NotNull
+    private Date expiration;
+
+    public PoolQuantityLease() {
+        // Intentionally left empty
+    }
+
+    public PoolQuantityLease(String poolId, String node) {
+        this.poolId = poolId;
+        this.node = node;
+        this.quantity = 0L;
+    }
+
+    @Override
+    public String getId() {
+        return this.id;
+    }
+
+    public PoolQuantityLease setId(String id) {
+        this.id = id;
+        return this;
+    }
+
+    public String getPoolId() {
+        return this.poolId;
+    }
+
+    public PoolQuantityLease setPoolId(String poolId) {
+        this.poolId = poolId;
+        return this;
+    }
+
+    /**
+     * @return
+     *  the hostname of the node holding this lease
+     */
+    public String getNode() {
+        return this.node;
+    }
+
+    public PoolQuantityLease setNode(String node) {
+        this.node = node;
+        return this;
+    }
+
+    public Long getQuantity() {
+        return this.quantity;
+    }
+
+    public PoolQuantityLease setQuantity(Long quantity) {
+        this.quantity = quantity;
+        return this;
+    }
+
+    public Date getExpiration() {
+        return this.expiration;
+    }
+
+    public PoolQuantityLease setExpiration(Date expiration) {
+        this.expiration = expiration;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PoolQuantityLease [id: %s, pool: %s, node: %s, quantity: %s, expiration: %s]",
+            this.id, this.poolId, this.node, this.quantity, this.expiration);
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import java.util.Date;
+import java.util.List;
+
+import javax.inject.Singleton;
+
+
+
+/**
+ * PoolQuantityLeaseCurator
+ */
+@Singleton
+public class PoolQuantityLeaseCurator extends AbstractHibernateCurator<PoolQuantityLease> {
+
+    public PoolQuantityLeaseCurator() {
+        super(PoolQuantityLease.class);
+    }
+
+    /**
+     * Fetches the IDs of the pools with leases which expired before the given date.
+     *
+     * @param date
+     *  the date against which to check lease expiration
+     *
+     * @return
+     *  a list of IDs of pools with expired leases
+     */
+    public List<String> getPoolIdsWithExpiredLeases(Date date) {
+        String jpql = "SELECT DISTINCT lease.poolId FROM PoolQuantityLease lease " +
+            "WHERE lease.expiration < :date";
+
+        return this.getEntityManager()
+            .createQuery(jpql, String.class)
+            .setParameter("date", date)
+            .getResultList();
+    }
+
+    /**
+     * Deducts the given quantity, used by an entitlement granted from the lease, from the unused
+     * quantity of the specified lease. If the lease no longer exists, this method does nothing.
+     *
+     * @param leaseId
+     *  the ID of the lease from which the quantity was used
+     *
+     * @param quantity
+     *  the quantity used
+     *
+     * @return
+     *  the number of leases updated
+     */
+    public int useQuantity(String leaseId, long quantity) {
+        String jpql = "UPDATE PoolQuantityLease lease SET lease.quantity = lease.quantity - :quantity " +
+            "WHERE lease.id = :lease_id";
+
+        return this.getEntityManager()
+            .createQuery(jpql)
+            .setParameter("quantity", quantity)
+            .setParameter("lease_id", leaseId)
+            .executeUpdate();
+    }
+
+    /**
+     * Deletes the leases which expired before the given date. The quantity held by expired leases
+     * is no longer counted towards the consumed quantity of their pools once those are
+     * recalculated.
+     *
+     * @param date
+     *  the date against which to check lease expiration
+     *
+     * @return
+     *  the number of leases deleted
+     */
+    public int deleteExpiredLeases(Date date) {
+        String jpql = "DELETE FROM PoolQuantityLease lease WHERE lease.expiration < :date";
+
+        return this.getEntityManager()
+            .createQuery(jpql)
+            .setParameter("date", date)
+            .executeUpdate();
+    }
+}
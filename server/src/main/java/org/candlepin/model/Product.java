@@ -245,6 +245,10 @@ public class Product extends AbstractHibernateObject implements SharedEntity, Li
     @Column(name = "entity_version")
     private Integer entityVersion;
 
+    @XmlTransient
+    @Column(name = "content_digest")
+    private String contentDigest;
+
     @XmlTransient
     @Column
     @Type(type = "org.hibernate.type.NumericBooleanType")
@@ -1252,7 +1256,7 @@ public class Product extends AbstractHibernateObject implements SharedEntity, Li
         if (!this.branding.isEmpty()) {
             accumulator = 0;
             for (Branding branding : this.branding) {
-                accumulator += (branding != null ? branding.hashCode() : 0);
+                accumulator += (branding != null ? branding.getEntityVersion() : 0);
             }
 
             builder.append(accumulator);
@@ -1261,12 +1265,25 @@ public class Product extends AbstractHibernateObject implements SharedEntity, Li
         return builder.toHashCode();
     }
 
+    /**
+     * Fetches the content digest stored for this product. The digest is calculated when the product
+     * is persisted; products persisted before digests were introduced may not have one.
+     *
+     * @return
+     *  the stored content digest of this product, or null if it does not have one
+     */
+    @XmlTransient
+    public String getContentDigest() {
+        return this.contentDigest;
+    }
+
     // TODO: Maybe remove these isChangedBy methods and move them to the translation bits?
 
     @PrePersist
     @PreUpdate
     public void updateEntityVersion() {
         this.entityVersion = this.getEntityVersion();
+        this.contentDigest = ProductDigest.calculate(this);
     }
 
 }
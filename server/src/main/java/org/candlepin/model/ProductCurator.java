@@ -100,6 +100,62 @@ public class ProductCurator extends AbstractHibernateCurator<Product> {
         return this.cpQueryFactory.<Product>buildQuery(this.currentSession(), criteria);
     }
 
+    /**
+     * Fetches references to the products with the given UUIDs without loading them. The products
+     * are only loaded from the database, or the cache, when their state is first accessed, so the
+     * UUIDs must belong to existing products.
+     *
+     * @param uuids
+     *  A collection of UUIDs of existing products
+     *
+     * @return
+     *  a mapping of UUIDs to references to the products with those UUIDs
+     */
+    public Map<String, Product> getProductReferences(Collection<String> uuids) {
+        Map<String, Product> products = new HashMap<>();
+
+        if (uuids != null) {
+            Session session = this.currentSession();
+
+            for (String uuid : uuids) {
+                products.put(uuid, session.load(Product.class, uuid));
+            }
+        }
+
+        return products;
+    }
+
+    /**
+     * Stores the given content digests for products which were persisted without one. Products are
+     * immutable, so the digests are written directly to the database rather than through any
+     * entities currently in the session.
+     *
+     * @param productDigests
+     *  A mapping of product UUIDs to the content digests to store for them
+     *
+     * @return
+     *  the number of products updated
+     */
+    @Transactional
+    public int updateContentDigests(Map<String, String> productDigests) {
+        int count = 0;
+
+        if (productDigests != null && !productDigests.isEmpty()) {
+            String sql = "UPDATE " + Product.DB_TABLE + " SET content_digest = :digest " +
+                "WHERE uuid = :uuid AND content_digest IS NULL";
+
+            Query query = this.getEntityManager().createNativeQuery(sql);
+
+            for (Map.Entry<String, String> entry : productDigests.entrySet()) {
+                count += query.setParameter("digest", entry.getValue())
+                    .setParameter("uuid", entry.getKey())
+                    .executeUpdate();
+            }
+        }
+
+        return count;
+    }
+
     public Set<Product> getPoolDerivedProvidedProductsCached(Pool pool) {
         return getPoolDerivedProvidedProductsCached(pool.getId());
     }
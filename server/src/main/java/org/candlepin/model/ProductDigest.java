@@ -0,0 +1,205 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import org.candlepin.service.model.BrandingInfo;
+import org.candlepin.service.model.ContentInfo;
+import org.candlepin.service.model.ProductContentInfo;
+import org.candlepin.service.model.ProductInfo;
+
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+
+
+/**
+ * Calculates the content digest of products: a SHA-256 hash of the canonical form of a product's
+ * data, including the data of its content. Unlike the entity version, the digest is strong enough
+ * that two products with the same digest may be treated as identical without comparing them.
+ * <p></p>
+ * The digest of a product entity and the digest of product info describing the same product are
+ * always equal. Collections which are not set on product info are treated as empty, as they would
+ * be on a product created from it.
+ */
+public final class ProductDigest {
+
+    /** Changing the version invalidates all existing digests */
+    private static final String VERSION = "1";
+
+    private ProductDigest() {
+        // Intentionally left empty
+    }
+
+    /**
+     * Calculates the content digest of the given product, using the content it references.
+     *
+     * @param product
+     *  the product for which to calculate the digest
+     *
+     * @return
+     *  a hex-encoded, 64 character digest of the product, or null if the product references
+     *  incomplete content
+     */
+    public static String calculate(ProductInfo product) {
+        return calculate(product, null);
+    }
+
+    /**
+     * Calculates the content digest of the given product, resolving the content it references by
+     * content ID from the given content map.
+     *
+     * @param product
+     *  the product for which to calculate the digest
+     *
+     * @param contentMap
+     *  a mapping of content ID to the content to use for the product's content references, or null
+     *  to use the content referenced by the product as-is
+     *
+     * @return
+     *  a hex-encoded, 64 character digest of the product, or null if the product references content
+     *  which is incomplete or cannot be resolved
+     */
+    public static String calculate(ProductInfo product, Map<String, ? extends ContentInfo> contentMap) {
+        if (product == null) {
+            throw new IllegalArgumentException("product is null");
+        }
+
+        StringBuilder builder = new StringBuilder();
+
+        put(builder, VERSION);
+        put(builder, product.getId());
+        put(builder, product.getName());
+
+        // Products normalize their multipliers, so the digest must as well
+        Long multiplier = product.getMultiplier();
+        put(builder, multiplier != null ? Math.max(1L, multiplier) : 1L);
+
+        Map<String, String> attributes = product.getAttributes() != null ?
+            new TreeMap<>(product.getAttributes()) :
+            Collections.emptyMap();
+
+        put(builder, attributes.size());
+        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+            put(builder, attribute.getKey());
+            put(builder, attribute.getValue());
+        }
+
+        List<String> elements = new ArrayList<>();
+        if (product.getDependentProductIds() != null) {
+            elements.addAll(new HashSet<>(product.getDependentProductIds()));
+        }
+
+        putSorted(builder, elements);
+
+        elements.clear();
+        if (product.getProductContent() != null) {
+            for (ProductContentInfo productContent : product.getProductContent()) {
+                ContentInfo content = productContent != null ? productContent.getContent() : null;
+
+                if (content != null && contentMap != null) {
+                    content = contentMap.get(content.getId());
+                }
+
+                if (content == null || content.getId() == null) {
+                    return null;
+                }
+
+                StringBuilder element = new StringBuilder();
+                putContent(element, content);
+                put(element, Boolean.TRUE.equals(productContent.isEnabled()));
+
+                elements.add(element.toString());
+            }
+        }
+
+        putSorted(builder, elements);
+
+        elements.clear();
+        if (product.getBranding() != null) {
+            for (BrandingInfo branding : product.getBranding()) {
+                if (branding != null) {
+                    StringBuilder element = new StringBuilder();
+                    put(element, branding.getProductId());
+                    put(element, branding.getName());
+                    put(element, branding.getType());
+
+                    elements.add(element.toString());
+                }
+            }
+        }
+
+        putSorted(builder, elements);
+
+        return Hashing.sha256()
+            .hashString(builder, StandardCharsets.UTF_8)
+            .toString();
+    }
+
+    private static void putContent(StringBuilder builder, ContentInfo content) {
+        put(builder, content.getId());
+        put(builder, content.getType());
+        put(builder, content.getLabel());
+        put(builder, content.getName());
+        put(builder, content.getVendor());
+        put(builder, content.getContentUrl());
+        put(builder, content.getRequiredTags());
+        put(builder, content.getReleaseVersion());
+        put(builder, content.getGpgUrl());
+        put(builder, content.getArches());
+        put(builder, content.getMetadataExpiration());
+
+        List<String> requiredProductIds = new ArrayList<>();
+        if (content.getRequiredProductIds() != null) {
+            requiredProductIds.addAll(content.getRequiredProductIds());
+        }
+
+        putSorted(builder, requiredProductIds);
+    }
+
+    /**
+     * Appends the given values in sorted order, so the order in which they were received does not
+     * matter
+     */
+    private static void putSorted(StringBuilder builder, List<String> values) {
+        values.sort(Comparator.nullsFirst(Comparator.naturalOrder()));
+
+        put(builder, values.size());
+        for (String value : values) {
+            put(builder, value);
+        }
+    }
+
+    /**
+     * Appends a length-prefixed value, so that no two sequences of values produce the same input
+     */
+    private static void put(StringBuilder builder, Object value) {
+        if (value == null) {
+            builder.append("-;");
+            return;
+        }
+
+        String string = Objects.toString(value);
+        builder.append(string.length()).append(':').append(string).append(';');
+    }
+}
@@ -14,11 +14,15 @@
  */
 package org.candlepin.model;
 
+import org.candlepin.common.paging.Page;
+import org.candlepin.common.paging.PageRequest;
 import org.candlepin.util.ElementTransformer;
 
 import org.hibernate.Session;
+import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.Order;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -146,6 +150,15 @@ public class TransformedCandlepinQuery<I, O> implements CandlepinQuery<O> {
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CandlepinQuery<O> setFetchSize(int fetchSize) {
+        this.query.setFetchSize(fetchSize);
+        return this;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -155,6 +168,15 @@ public class TransformedCandlepinQuery<I, O> implements CandlepinQuery<O> {
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CandlepinQuery<O> addRestriction(Criterion criterion) {
+        this.query.addRestriction(criterion);
+        return this;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -293,4 +315,24 @@ public class TransformedCandlepinQuery<I, O> implements CandlepinQuery<O> {
         return this.query.getRowCount();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Page<List<O>> listCursorPage(PageRequest pageRequest) {
+        Page<List<I>> source = this.query.listCursorPage(pageRequest);
+
+        List<O> output = new ArrayList<>(source.getPageData().size());
+        for (I element : source.getPageData()) {
+            output.add(this.transformer.transform(element));
+        }
+
+        Page<List<O>> page = new Page<>();
+        page.setPageData(output);
+        page.setPageRequest(source.getPageRequest());
+        page.setNextCursor(source.getNextCursor());
+
+        return page;
+    }
+
 }
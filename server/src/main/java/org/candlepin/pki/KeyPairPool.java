@@ -0,0 +1,273 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pki;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Singleton;
+
+
+
+/**
+ * The KeyPairPool holds a bounded number of RSA key pairs generated ahead of time by low-priority
+ * background threads, so that consumer registration need not wait on key generation.
+ * <p></p>
+ * Generating a key pair is by far the most expensive step of registering a consumer, and during
+ * mass provisioning it shows up as long tail latency on every registration. Pairs are drawn from
+ * the pool as they are needed and replaced in the background. Should the pool run dry, or until
+ * it is started, pairs are generated inline instead.
+ */
+@Singleton
+public class KeyPairPool {
+    private static Logger log = LoggerFactory.getLogger(KeyPairPool.class);
+
+    private static final long SHUTDOWN_TIMEOUT = 10;
+    private static final long MIN_RETRY_DELAY = 1000;
+    private static final long MAX_RETRY_DELAY = 60000;
+
+    private final PKIUtility pki;
+    private final int capacity;
+    private final int threads;
+
+    private final BlockingQueue<KeyPair> pairs;
+    private final AtomicLong generated;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private volatile ExecutorService executor;
+    private volatile long startTime;
+
+    @Inject
+    public KeyPairPool(Configuration config, PKIUtility pki) {
+        this(pki, config.getInt(ConfigProperties.KEY_PAIR_POOL_SIZE),
+            config.getInt(ConfigProperties.KEY_PAIR_POOL_THREADS));
+    }
+
+    /**
+     * Creates a new key pair pool which holds at most the given number of pre-generated pairs.
+     *
+     * @param pki
+     *  the PKIUtility with which to generate key pairs
+     *
+     * @param capacity
+     *  the maximum number of pairs to hold; zero or less disables the pool
+     *
+     * @param threads
+     *  the number of background threads generating pairs; zero or less disables the pool
+     */
+    public KeyPairPool(PKIUtility pki, int capacity, int threads) {
+        if (pki == null) {
+            throw new IllegalArgumentException("pki is null");
+        }
+
+        this.pki = pki;
+        this.capacity = Math.max(0, capacity);
+        this.threads = Math.max(0, threads);
+
+        this.pairs = new ArrayBlockingQueue<>(Math.max(1, this.capacity));
+        this.generated = new AtomicLong();
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+    }
+
+    /**
+     * @return
+     *  true if this pool pre-generates key pairs; false if it has been disabled
+     */
+    public boolean isEnabled() {
+        return this.capacity > 0 && this.threads > 0;
+    }
+
+    /**
+     * Starts filling the pool in the background. If the pool is disabled or has already been
+     * started, this method does nothing.
+     */
+    public synchronized void start() {
+        if (!this.isEnabled() || this.executor != null) {
+            return;
+        }
+
+        ThreadFactory threadFactory = new ThreadFactoryBuilder()
+            .setNameFormat("key-pair-pool-%d")
+            .setDaemon(true)
+            .setPriority(Thread.MIN_PRIORITY)
+            .build();
+
+        this.startTime = System.currentTimeMillis();
+        this.executor = Executors.newFixedThreadPool(this.threads, threadFactory);
+
+        for (int i = 0; i < this.threads; ++i) {
+            this.executor.execute(this::refill);
+        }
+
+        log.info("Pre-generating up to {} key pairs with {} thread(s)", this.capacity, this.threads);
+    }
+
+    /**
+     * Stops filling the pool and discards any pairs it holds. Pairs taken once the pool has been
+     * shut down are generated inline.
+     */
+    public synchronized void shutdown() {
+        ExecutorService executor = this.executor;
+        if (executor == null) {
+            return;
+        }
+
+        this.executor = null;
+        executor.shutdownNow();
+
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS)) {
+                log.warn("Timed out waiting for key pair generation to stop");
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        this.pairs.clear();
+
+        log.info("Key pair pool stopped; generated: {}, served from pool: {}, generated inline: {}",
+            this.getGeneratedCount(), this.getHits(), this.getMisses());
+    }
+
+    /**
+     * Takes a key pair from the pool, or generates one inline if the pool is empty. Each pair is
+     * handed out no more than once.
+     *
+     * @throws NoSuchAlgorithmException
+     *  if the pool is empty and a key pair cannot be generated
+     *
+     * @return
+     *  a new key pair
+     */
+    public KeyPair take() throws NoSuchAlgorithmException {
+        KeyPair pair = this.pairs.poll();
+
+        if (pair != null) {
+            this.hits.incrementAndGet();
+            return pair;
+        }
+
+        this.misses.incrementAndGet();
+        return this.pki.generateNewKeyPair();
+    }
+
+    /**
+     * Generates key pairs until the pool is shut down, blocking while the pool is full. Should key
+     * generation fail, the failure is logged and generation is retried with an increasing delay,
+     * during which key pairs taken from an empty pool are generated inline.
+     */
+    private void refill() {
+        long delay = MIN_RETRY_DELAY;
+
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                KeyPair pair = this.pki.generateNewKeyPair();
+
+                this.pairs.put(pair);
+                this.generated.incrementAndGet();
+
+                delay = MIN_RETRY_DELAY;
+            }
+            catch (InterruptedException e) {
+                // Shutting down; nothing more to do
+                return;
+            }
+            catch (Exception e) {
+                log.error("Unable to pre-generate key pair; retrying in {}ms", delay, e);
+
+                try {
+                    Thread.sleep(delay);
+                }
+                catch (InterruptedException ie) {
+                    return;
+                }
+
+                delay = Math.min(delay * 2, MAX_RETRY_DELAY);
+            }
+        }
+    }
+
+    /**
+     * @return
+     *  the number of pre-generated key pairs currently held by the pool
+     */
+    public int getDepth() {
+        return this.pairs.size();
+    }
+
+    /**
+     * @return
+     *  the maximum number of pre-generated key pairs held by the pool
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * @return
+     *  the number of key pairs generated in the background since the pool was started
+     */
+    public long getGeneratedCount() {
+        return this.generated.get();
+    }
+
+    /**
+     * @return
+     *  the average number of key pairs generated in the background per second since the pool was
+     *  started, or zero if the pool has not been started
+     */
+    public double getRefillRate() {
+        long elapsed = System.currentTimeMillis() - this.startTime;
+        if (this.executor == null || elapsed <= 0) {
+            return 0;
+        }
+
+        return this.generated.get() * 1000.0 / elapsed;
+    }
+
+    /**
+     * @return
+     *  the number of key pairs served from the pool
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return
+     *  the number of key pairs generated inline because the pool was empty
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+}
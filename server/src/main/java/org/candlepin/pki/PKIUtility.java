@@ -51,6 +51,21 @@ public interface PKIUtility {
      */
     X509CRL createX509CRL(List<X509CRLEntryWrapper> entries, BigInteger crlNumber);
 
+    /**
+     * Generate a delta CRL, as defined in RFC 5280 section 5.2.4, against the base CRL with the given
+     * CRL number. Revoked entries are listed with a reason of privilegeWithdrawn, while entries which
+     * have been removed from the base CRL are listed with a reason of removeFromCRL. The CRL will be
+     * signed with the key retrieved from CertificateReader.
+     *
+     * @param revoked the entries revoked since the base CRL was issued
+     * @param removed the entries removed from the base CRL since it was issued
+     * @param crlNumber the CRL number to use
+     * @param baseCrlNumber the CRL number of the base CRL
+     * @return the x509 delta CRL
+     */
+    X509CRL createX509DeltaCRL(List<X509CRLEntryWrapper> revoked, List<X509CRLEntryWrapper> removed,
+        BigInteger crlNumber, BigInteger baseCrlNumber);
+
     /**
      * Take an X509Certificate object and return a byte[] of the certificate,
      * PEM encoded
@@ -114,7 +129,44 @@ public interface PKIUtility {
     boolean verifySHA256WithRSAHashAgainstCACerts(File input, byte[] signedHash)
         throws CertificateException, IOException;
 
+    /**
+     * Verifies a SHA256withRSA signature against the CA certificate and any upstream CA
+     * certificates, given the SHA-256 digest of the signed data rather than the data itself. This
+     * allows data to be verified as it is streamed, without being read a second time for each
+     * certificate.
+     *
+     * @param digest
+     *  the SHA-256 digest of the signed data
+     *
+     * @param signedHash
+     *  the signature to verify
+     *
+     * @throws CertificateException
+     *  if the CA certificates cannot be read
+     *
+     * @throws IOException
+     *  if an IOException occurs while reading the CA certificates
+     *
+     * @return
+     *  true if the signature was made by one of the CA certificates; false otherwise
+     */
+    boolean verifySHA256DigestAgainstCACerts(byte[] digest, byte[] signedHash)
+        throws CertificateException, IOException;
+
     KeyPair generateNewKeyPair() throws NoSuchAlgorithmException;
 
     byte[] getSHA256WithRSAHash(InputStream input);
+
+    /**
+     * Computes a SHA256withRSA signature from a precomputed SHA-256 digest, signed with the CA
+     * key. The result is identical to that of {@link #getSHA256WithRSAHash(InputStream)} over
+     * the digested data.
+     *
+     * @param digest
+     *  the SHA-256 digest of the data to sign
+     *
+     * @return
+     *  the SHA256withRSA signature of the digested data
+     */
+    byte[] signSHA256Digest(byte[] digest);
 }
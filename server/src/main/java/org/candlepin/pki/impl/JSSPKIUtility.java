@@ -53,6 +53,7 @@ import org.mozilla.jss.netscape.security.x509.CertificateSubjectName;
 import org.mozilla.jss.netscape.security.x509.CertificateValidity;
 import org.mozilla.jss.netscape.security.x509.CertificateVersion;
 import org.mozilla.jss.netscape.security.x509.CertificateX509Key;
+import org.mozilla.jss.netscape.security.x509.DeltaCRLIndicatorExtension;
 import org.mozilla.jss.netscape.security.x509.Extension;
 import org.mozilla.jss.netscape.security.x509.GeneralName;
 import org.mozilla.jss.netscape.security.x509.GeneralNames;
@@ -60,6 +61,7 @@ import org.mozilla.jss.netscape.security.x509.GeneralNamesException;
 import org.mozilla.jss.netscape.security.x509.KeyIdentifier;
 import org.mozilla.jss.netscape.security.x509.KeyUsageExtension;
 import org.mozilla.jss.netscape.security.x509.PKIXExtensions;
+import org.mozilla.jss.netscape.security.x509.RevocationReason;
 import org.mozilla.jss.netscape.security.x509.RevokedCertImpl;
 import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
 import org.mozilla.jss.netscape.security.x509.SubjectAlternativeNameExtension;
@@ -281,8 +283,6 @@ public class JSSPKIUtility extends ProviderBasedPKIUtility {
     @Override
     public X509CRL createX509CRL(List<X509CRLEntryWrapper> entries, BigInteger crlNumber) {
         try {
-            X509Certificate caCert = reader.getCACert();
-
             CRLExtensions entryExtensions = new CRLExtensions();
             entryExtensions.add(CRLReasonExtension.PRIVILEGE_WITHDRAWN);
 
@@ -292,28 +292,71 @@ public class JSSPKIUtility extends ProviderBasedPKIUtility {
 
             CRLExtensions crlExtensions = new CRLExtensions();
             crlExtensions.add(new CRLNumberExtension(crlNumber));
-            crlExtensions.add(buildAuthorityKeyIdentifier(caCert));
 
-            X500Name issuer = new X500Name(caCert.getIssuerX500Principal().getEncoded());
-            Date until = Util.addDaysToDt(config.getInt(ConfigProperties.CRL_NEXT_UPDATE_DELTA));
-            X509CRLImpl crlImpl = new X509CRLImpl(
-                issuer,
-                new Date(),
-                until,
-                revokedCerts.toArray(new RevokedCertificate[] {}),
-                crlExtensions
-            );
+            return this.buildX509CRL(revokedCerts, crlExtensions);
+        }
+        catch (GeneralSecurityException | IOException | InvalidBERException e) {
+            throw new RuntimeException("Error creating CRL", e);
+        }
+    }
+
+    @Override
+    public X509CRL createX509DeltaCRL(List<X509CRLEntryWrapper> revoked, List<X509CRLEntryWrapper> removed,
+        BigInteger crlNumber, BigInteger baseCrlNumber) {
 
-            crlImpl.sign(reader.getCaKey(), SIGNING_ALG_ID);
+        try {
+            CRLExtensions revokedExtensions = new CRLExtensions();
+            revokedExtensions.add(CRLReasonExtension.PRIVILEGE_WITHDRAWN);
 
-            CertificateFactory cf = CertificateFactory.getInstance("X.509");
-            return (X509CRL) cf.generateCRL(new ByteArrayInputStream(crlImpl.getEncoded()));
+            CRLExtensions removedExtensions = new CRLExtensions();
+            removedExtensions.add(new CRLReasonExtension(RevocationReason.REMOVE_FROM_CRL));
+
+            List<RevokedCertificate> revokedCerts = new ArrayList<>();
+            for (X509CRLEntryWrapper entry : revoked) {
+                revokedCerts.add(new RevokedCertImpl(entry.getSerialNumber(), entry.getRevocationDate(),
+                    revokedExtensions));
+            }
+
+            for (X509CRLEntryWrapper entry : removed) {
+                revokedCerts.add(new RevokedCertImpl(entry.getSerialNumber(), entry.getRevocationDate(),
+                    removedExtensions));
+            }
+
+            // The delta CRL indicator is critical, so clients which don't understand delta CRLs
+            // won't mistake this for a complete CRL
+            CRLExtensions crlExtensions = new CRLExtensions();
+            crlExtensions.add(new CRLNumberExtension(crlNumber));
+            crlExtensions.add(new DeltaCRLIndicatorExtension(baseCrlNumber));
+
+            return this.buildX509CRL(revokedCerts, crlExtensions);
         }
         catch (GeneralSecurityException | IOException | InvalidBERException e) {
-            throw new RuntimeException("Error creating CRL", e);
+            throw new RuntimeException("Error creating delta CRL", e);
         }
     }
 
+    private X509CRL buildX509CRL(List<RevokedCertificate> revokedCerts, CRLExtensions crlExtensions)
+        throws GeneralSecurityException, IOException, InvalidBERException {
+
+        X509Certificate caCert = reader.getCACert();
+        crlExtensions.add(buildAuthorityKeyIdentifier(caCert));
+
+        X500Name issuer = new X500Name(caCert.getIssuerX500Principal().getEncoded());
+        Date until = Util.addDaysToDt(config.getInt(ConfigProperties.CRL_NEXT_UPDATE_DELTA));
+        X509CRLImpl crlImpl = new X509CRLImpl(
+            issuer,
+            new Date(),
+            until,
+            revokedCerts.toArray(new RevokedCertificate[] {}),
+            crlExtensions
+        );
+
+        crlImpl.sign(reader.getCaKey(), SIGNING_ALG_ID);
+
+        CertificateFactory cf = CertificateFactory.getInstance("X.509");
+        return (X509CRL) cf.generateCRL(new ByteArrayInputStream(crlImpl.getEncoded()));
+    }
+
     /**
      * Calculate the KeyIdentifier for an RSAPublicKey and place it in an AuthorityKeyIdentifier extension.
      *
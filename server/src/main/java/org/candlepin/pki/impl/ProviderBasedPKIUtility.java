@@ -66,6 +66,12 @@ public abstract class ProviderBasedPKIUtility implements PKIUtility {
 
     public static final int RSA_KEY_SIZE = 4096;
 
+    /** The DER encoding of a DigestInfo for a SHA-256 digest, less the digest itself */
+    private static final byte[] SHA256_DIGEST_INFO_PREFIX = {
+        0x30, 0x31, 0x30, 0x0d, 0x06, 0x09, 0x60, (byte) 0x86, 0x48, 0x01, 0x65, 0x03, 0x04, 0x02, 0x01,
+        0x05, 0x00, 0x04, 0x20
+    };
+
     protected CertificateReader reader;
     protected SubjectKeyIdentifierWriter subjectKeyWriter;
     protected Configuration config;
@@ -94,6 +100,20 @@ public abstract class ProviderBasedPKIUtility implements PKIUtility {
     @Override
     public abstract X509CRL createX509CRL(List<X509CRLEntryWrapper> entries, BigInteger crlNumber);
 
+    /**
+     * Generate an X.509 delta CRL listing the changes made against the base CRL with the given CRL
+     * number.  Delta CRLs are small, so they are always generated in full rather than modified.
+     *
+     * @param revoked the entries revoked since the base CRL was issued
+     * @param removed the entries removed from the base CRL since it was issued
+     * @param crlNumber the CRL number to use
+     * @param baseCrlNumber the CRL number of the base CRL
+     * @return the x509 delta CRL
+     */
+    @Override
+    public abstract X509CRL createX509DeltaCRL(List<X509CRLEntryWrapper> revoked,
+        List<X509CRLEntryWrapper> removed, BigInteger crlNumber, BigInteger baseCrlNumber);
+
     public KeyPair decodeKeys(byte[] privKeyBits, byte[] pubKeyBits)
         throws InvalidKeySpecException, NoSuchAlgorithmException {
 
@@ -218,6 +238,26 @@ public abstract class ProviderBasedPKIUtility implements PKIUtility {
         }
     }
 
+    /**
+     * Compute a SHA256withRSA digital signature from a precomputed SHA-256 digest. The digest is
+     * signed with the CA key retrieved using CertificateReader.
+     * @param digest the SHA-256 digest of the data to sign
+     * @return a byte array of the SHA256withRSA digital signature
+     */
+    @Override
+    public byte[] signSHA256Digest(byte[] digest) {
+        try {
+            Signature signature = Signature.getInstance("NONEwithRSA");
+            signature.initSign(reader.getCaKey());
+            signature.update(buildSHA256DigestInfo(digest));
+
+            return signature.sign();
+        }
+        catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     @Override
     public boolean verifySHA256WithRSAHashAgainstCACerts(File input, byte[] signedHash)
         throws CertificateException, IOException {
@@ -242,6 +282,58 @@ public abstract class ProviderBasedPKIUtility implements PKIUtility {
         return false;
     }
 
+    @Override
+    public boolean verifySHA256DigestAgainstCACerts(byte[] digest, byte[] signedHash)
+        throws CertificateException, IOException {
+
+        // A SHA256withRSA signature is the PKCS #1 encoding of the DigestInfo of the SHA-256 digest of
+        // the data, which we can check directly for each certificate without rehashing the data
+        byte[] digestInfo = buildSHA256DigestInfo(digest);
+
+        log.debug("Verify against: {}", reader.getCACert().getSerialNumber());
+        if (verifyDigestInfo(digestInfo, signedHash, reader.getCACert())) {
+            return true;
+        }
+
+        for (X509Certificate cert : reader.getUpstreamCACerts()) {
+            log.debug("Verify against: {}", cert.getSerialNumber());
+
+            if (verifyDigestInfo(digestInfo, signedHash, cert)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /*
+     * SHA256withRSA signs the DER encoded DigestInfo of the data's digest; building it ourselves
+     * lets a precomputed digest be signed or verified with NONEwithRSA.
+     */
+    private static byte[] buildSHA256DigestInfo(byte[] digest) {
+        byte[] digestInfo = new byte[SHA256_DIGEST_INFO_PREFIX.length + digest.length];
+        System.arraycopy(SHA256_DIGEST_INFO_PREFIX, 0, digestInfo, 0, SHA256_DIGEST_INFO_PREFIX.length);
+        System.arraycopy(digest, 0, digestInfo, SHA256_DIGEST_INFO_PREFIX.length, digest.length);
+
+        return digestInfo;
+    }
+
+    private boolean verifyDigestInfo(byte[] digestInfo, byte[] signedHash, Certificate certificate) {
+        try {
+            Signature signature = Signature.getInstance("NONEwithRSA");
+            signature.initVerify(certificate);
+            signature.update(digestInfo);
+
+            return signature.verify(signedHash);
+        }
+        catch (SignatureException se) {
+            return false;
+        }
+        catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * Verify a digital signature.  The method calculates a digital signature using the SHA256withRSA
      * algorithm (and the public key from the certificate parameter) and then compares it with the signature
@@ -0,0 +1,219 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js;
+
+import org.candlepin.model.Rules.RulesSourceEnum;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.RhinoException;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.Undefined;
+import org.mozilla.javascript.Wrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+
+/**
+ * An immutable snapshot of a single compiled version of the rules. The snapshot holds the sealed
+ * global scope the rules were executed in, along with the namespace objects resolved from it,
+ * which are shared by every JsRunner created against this version of the rules.
+ * <p></p>
+ * When the rules change, the JsRunnerProvider builds a new runtime and swaps it in; runners which
+ * were created against the previous runtime continue to use it until they are discarded.
+ */
+public class JsRulesRuntime {
+    private static Logger log = LoggerFactory.getLogger(JsRulesRuntime.class);
+
+    /** Suffix of the global functions which provide the rules namespaces */
+    public static final String NAMESPACE_SUFFIX = "_name_space";
+
+    private final Scriptable scope;
+    private final Date updated;
+    private final String rulesVersion;
+    private final RulesSourceEnum rulesSource;
+    private final long initTime;
+
+    private final Map<String, Object> namespaces;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    /**
+     * Creates a new runtime around the given sealed scope and pre-resolves every namespace
+     * function defined by the rules.
+     *
+     * @param scope
+     *  the sealed global scope containing the executed rules
+     *
+     * @param updated
+     *  the last-updated timestamp of the rules compiled into the scope
+     *
+     * @param rulesVersion
+     *  the version of the compiled rules
+     *
+     * @param rulesSource
+     *  the source of the compiled rules
+     *
+     * @param initTime
+     *  the time, in milliseconds, spent compiling and executing the rules
+     */
+    public JsRulesRuntime(Scriptable scope, Date updated, String rulesVersion, RulesSourceEnum rulesSource,
+        long initTime) {
+
+        this.scope = scope;
+        this.updated = updated;
+        this.rulesVersion = rulesVersion;
+        this.rulesSource = rulesSource;
+
+        this.namespaces = new ConcurrentHashMap<>();
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+
+        long start = System.currentTimeMillis();
+        for (Object id : scope.getIds()) {
+            if (id instanceof String && ((String) id).endsWith(NAMESPACE_SUFFIX)) {
+                try {
+                    Object nsobj = this.resolveNamespace((String) id);
+                    if (nsobj != null) {
+                        this.namespaces.put((String) id, nsobj);
+                    }
+                }
+                catch (RuleParseException e) {
+                    // Leave it to be resolved (and fail) when a runner actually asks for it
+                    log.warn("Unable to pre-initialize rules namespace: {}", id, e);
+                }
+            }
+        }
+
+        this.initTime = initTime + (System.currentTimeMillis() - start);
+        log.debug("Pre-initialized {} rules namespaces: {}", this.namespaces.size(),
+            this.namespaces.keySet());
+    }
+
+    /**
+     * Creates a new lightweight, thread/request local scope backed by the sealed global scope of
+     * this runtime.
+     *
+     * @return
+     *  a new scope for executing rules
+     */
+    public Scriptable createScope() {
+        Context context = Context.enter();
+        try {
+            Scriptable rulesScope = context.newObject(this.scope);
+            rulesScope.setPrototype(this.scope);
+            rulesScope.setParentScope(null);
+
+            return rulesScope;
+        }
+        finally {
+            Context.exit();
+        }
+    }
+
+    /**
+     * Fetches the object for the given rules namespace, evaluating the namespace function only
+     * if it has not yet been evaluated for this version of the rules.
+     *
+     * @param namespace
+     *  the name of the namespace function to resolve
+     *
+     * @throws RuleParseException
+     *  if the namespace function cannot be evaluated
+     *
+     * @return
+     *  the namespace object, or null if the namespace function returned nothing
+     */
+    public Object getNamespace(String namespace) {
+        Object nsobj = this.namespaces.get(namespace);
+
+        if (nsobj != null) {
+            this.hits.incrementAndGet();
+            return nsobj;
+        }
+
+        this.misses.incrementAndGet();
+        nsobj = this.resolveNamespace(namespace);
+
+        if (nsobj != null) {
+            this.namespaces.putIfAbsent(namespace, nsobj);
+        }
+
+        return nsobj;
+    }
+
+    private Object resolveNamespace(String namespace) {
+        Context context = Context.enter();
+        try {
+            Object func = ScriptableObject.getProperty(this.scope, namespace);
+            Object result = ((Function) func).call(context, this.scope, this.scope, Context.emptyArgs);
+
+            if (result instanceof Wrapper) {
+                result = ((Wrapper) result).unwrap();
+            }
+
+            return result instanceof Undefined ? null : result;
+        }
+        catch (RhinoException | ClassCastException e) {
+            throw new RuleParseException(e);
+        }
+        finally {
+            Context.exit();
+        }
+    }
+
+    public Date getUpdated() {
+        return this.updated;
+    }
+
+    public String getRulesVersion() {
+        return this.rulesVersion;
+    }
+
+    public RulesSourceEnum getRulesSource() {
+        return this.rulesSource;
+    }
+
+    /**
+     * @return
+     *  the time, in milliseconds, spent compiling the rules and initializing their namespaces
+     */
+    public long getInitTime() {
+        return this.initTime;
+    }
+
+    /**
+     * @return
+     *  the number of namespace lookups served from the pre-initialized namespaces
+     */
+    public long getNamespaceHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return
+     *  the number of namespace lookups which required evaluating the namespace function
+     */
+    public long getNamespaceMisses() {
+        return this.misses.get();
+    }
+}
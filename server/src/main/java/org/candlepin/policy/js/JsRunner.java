@@ -36,6 +36,7 @@ public class JsRunner {
     private Object rulesNameSpace;
     private String namespace;
     private Scriptable scope;
+    private JsRulesRuntime runtime;
 
     private boolean initialized = false;
 
@@ -43,6 +44,18 @@ public class JsRunner {
         this.scope = scope;
     }
 
+    /**
+     * Creates a new JsRunner executing against the given rules runtime. Namespaces are fetched
+     * from the runtime's pre-initialized namespaces rather than being evaluated per runner.
+     *
+     * @param runtime
+     *  the rules runtime to execute against
+     */
+    public JsRunner(JsRulesRuntime runtime) {
+        this.runtime = runtime;
+        this.scope = runtime.createScope();
+    }
+
     /**
      * initialize the javascript rules for the provided namespace. you must run
      * this
@@ -54,8 +67,11 @@ public class JsRunner {
     public void init(String namespace) {
         this.namespace = namespace;
 
-        if (!initialized) {
-
+        if (!initialized && this.runtime != null) {
+            this.rulesNameSpace = this.runtime.getNamespace(namespace);
+            this.initialized = true;
+        }
+        else if (!initialized) {
             Context context = Context.enter();
             try {
                 Object func = ScriptableObject.getProperty(scope, namespace);
@@ -74,6 +90,16 @@ public class JsRunner {
         }
     }
 
+    /**
+     * Fetches the rules runtime this runner executes against, if it was created from one.
+     *
+     * @return
+     *  the rules runtime of this runner, or null if this runner was created from a scope
+     */
+    public JsRulesRuntime getRuntime() {
+        return this.runtime;
+    }
+
     public void reinitTo(String namespace) {
         initialized = false;
         init(namespace);
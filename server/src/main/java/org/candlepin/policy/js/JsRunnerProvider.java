@@ -30,36 +30,42 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Date;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Reads/compiles our javascript rules and the standard js objects only
  * once across the JVM lifetime (and whenever the rules require a recompile), and creates
  * lightweight execution scopes per thread/request.
+ * <p></p>
+ * The compiled rules are held in an immutable JsRulesRuntime, which also carries the
+ * pre-initialized rules namespaces. Fetching a runner never blocks; when the rules change, a new
+ * runtime is compiled and swapped in, while runners created from the previous runtime finish out
+ * their requests against it.
  */
 public class JsRunnerProvider implements Provider<JsRunner> {
     private static Logger log = LoggerFactory.getLogger(JsRunnerProvider.class);
 
     private RulesCurator rulesCurator;
     private Provider<JsRunnerRequestCache> cacheProvider;
-    private Script script;
-    private Scriptable scope;
+
     /**
-     * This date is basically a version of the rules that this
-     * JSRunnerProvider compiled. Note that in clustered environment,
-     * multiple nodes must compile same version of rules. Thats why
-     * this JsRunnerProvider uses database to make sure it compiles and
-     * uses the database dictated version.
+     * The runtime for the current version of the rules. Its updated date is basically a version
+     * of the rules that this JSRunnerProvider compiled. Note that in clustered environment,
+     * multiple nodes must compile same version of rules. Thats why this JsRunnerProvider uses
+     * database to make sure it compiles and uses the database dictated version.
      */
-    private volatile Date currentRulesUpdated;
+    private final AtomicReference<JsRulesRuntime> runtime = new AtomicReference<>();
 
-    // Store the version and source of the compiled rules:
-    private String rulesVersion;
-    private RulesSourceEnum rulesSource;
+    // Serializes compilation only; runners are handed out without taking this lock
+    private final Lock compileLock = new ReentrantLock();
 
-    // Use this lock to access script, scope and updated
-    private ReadWriteLock scriptLock = new ReentrantReadWriteLock();
+    // Runtime metrics, retained across rules versions
+    private final AtomicLong runnerCount = new AtomicLong();
+    private final AtomicLong compileCount = new AtomicLong();
+    private final AtomicLong totalInitTime = new AtomicLong();
 
     /**
      * DynamicScopeContextFactory - replace the standard rhino context factory with one that
@@ -102,36 +108,45 @@ public class JsRunnerProvider implements Provider<JsRunner> {
     }
 
     public void compileRules(boolean forceRefresh) {
-        scriptLock.writeLock().lock();
+        compileLock.lock();
         try {
-            // Check to see if we need to recompile. we do this inside the write lock
+            // Check to see if we need to recompile. we do this inside the lock
             // just to avoid race conditions where we might double compile
             Date newUpdated = rulesCurator.getUpdated();
-            if (!forceRefresh && newUpdated.equals(this.currentRulesUpdated)) {
+            JsRulesRuntime current = this.runtime.get();
+            if (!forceRefresh && current != null && newUpdated.equals(current.getUpdated())) {
                 return;
             }
 
             log.info("Recompiling rules with timestamp: {}", newUpdated);
 
+            long start = System.currentTimeMillis();
             Context context = Context.enter();
             context.setOptimizationLevel(9);
-            scope = context.initStandardObjects(null, true);
+            Scriptable scope = context.initStandardObjects(null, true);
+            Rules rules;
             try {
-                Rules rules = rulesCurator.getRules();
-                rulesVersion = rules.getVersion();
-                rulesSource = rules.getRulesSource();
-                script = context.compileString(
+                rules = rulesCurator.getRules();
+                Script script = context.compileString(
                     rules.getRules(), "rules", 1, null);
                 script.exec(context, scope);
                 ((ScriptableObject) scope).sealObject();
-                this.currentRulesUpdated = newUpdated;
             }
             finally {
                 Context.exit();
             }
+
+            JsRulesRuntime compiled = new JsRulesRuntime(scope, newUpdated, rules.getVersion(),
+                rules.getRulesSource(), System.currentTimeMillis() - start);
+
+            this.runtime.set(compiled);
+            this.compileCount.incrementAndGet();
+            this.totalInitTime.addAndGet(compiled.getInitTime());
+
+            log.info("Rules runtime initialized in {}ms", compiled.getInitTime());
         }
         finally {
-            scriptLock.writeLock().unlock();
+            compileLock.unlock();
         }
     }
 
@@ -151,38 +166,72 @@ public class JsRunnerProvider implements Provider<JsRunner> {
          * Create a new thread/request local javascript scope for the JsRules,
          * based on the preinitialized global one (which contains our js rules).
          */
-        // Avoid a write lock if we can
-        if (!updated.equals(this.currentRulesUpdated)) {
+        JsRulesRuntime current = this.runtime.get();
+        if (current == null || !updated.equals(current.getUpdated())) {
             compileRules();
-        }
-        Scriptable rulesScope;
-        scriptLock.readLock().lock();
-        try {
-            Context context = Context.enter();
-            rulesScope = context.newObject(scope);
-            rulesScope.setPrototype(scope);
-            rulesScope.setParentScope(null);
-            Context.exit();
-        }
-        finally {
-            scriptLock.readLock().unlock();
+            current = this.runtime.get();
         }
 
-        return new JsRunner(rulesScope);
+        this.runnerCount.incrementAndGet();
+        return new JsRunner(current);
     }
 
     public String getRulesVersion() {
-        if (rulesVersion == null) {
-            compileRules();
-        }
-        return rulesVersion;
+        return this.getRuntime().getRulesVersion();
     }
 
     public RulesSourceEnum getRulesSource() {
-        if (rulesSource == null) {
+        return this.getRuntime().getRulesSource();
+    }
+
+    private JsRulesRuntime getRuntime() {
+        JsRulesRuntime current = this.runtime.get();
+        if (current == null) {
             compileRules();
+            current = this.runtime.get();
         }
-        return rulesSource;
+
+        return current;
+    }
+
+    /**
+     * @return
+     *  the number of runners handed out by this provider
+     */
+    public long getRunnerCount() {
+        return this.runnerCount.get();
+    }
+
+    /**
+     * @return
+     *  the number of times the rules have been compiled into a new runtime
+     */
+    public long getCompileCount() {
+        return this.compileCount.get();
+    }
+
+    /**
+     * @return
+     *  the total time, in milliseconds, spent compiling rules runtimes
+     */
+    public long getTotalInitTime() {
+        return this.totalInitTime.get();
+    }
+
+    /**
+     * @return
+     *  the number of namespace lookups served by the current runtime's pre-initialized namespaces
+     */
+    public long getNamespaceHits() {
+        return this.getRuntime().getNamespaceHits();
+    }
+
+    /**
+     * @return
+     *  the number of namespace lookups the current runtime had to evaluate on demand
+     */
+    public long getNamespaceMisses() {
+        return this.getRuntime().getNamespaceMisses();
     }
 
 }
@@ -15,6 +15,9 @@
 package org.candlepin.policy.js.compliance;
 
 import org.candlepin.audit.EventSink;
+import org.candlepin.cache.ComplianceStatusCache;
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
 import org.candlepin.dto.ModelTranslator;
 import org.candlepin.dto.rules.v1.ComplianceReasonDTO;
 import org.candlepin.dto.rules.v1.ComplianceStatusDTO;
@@ -31,10 +34,12 @@ import org.candlepin.model.EntitlementCurator;
 import org.candlepin.model.GuestId;
 import org.candlepin.model.Pool;
 import org.candlepin.model.Product;
+import org.candlepin.policy.js.JsRulesRuntime;
 import org.candlepin.policy.js.JsRunner;
 import org.candlepin.policy.js.JsonJsContext;
 import org.candlepin.policy.js.RuleExecutionException;
 import org.candlepin.policy.js.RulesObjectMapper;
+import org.candlepin.policy.js.compliance.hash.ComplianceInputHasher;
 import org.candlepin.policy.js.compliance.hash.ComplianceStatusHasher;
 
 import com.google.inject.Inject;
@@ -51,6 +56,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -72,11 +78,15 @@ public class ComplianceRules {
     private ConsumerTypeCurator consumerTypeCurator;
     private RulesObjectMapper mapper;
     private ModelTranslator translator;
+    private NativeComplianceEngine nativeEngine;
+    private ComplianceStatusCache statusCache;
+    private long cacheBucketLength;
 
     @Inject
     public ComplianceRules(JsRunner jsRules, EntitlementCurator entCurator,
         StatusReasonMessageGenerator generator, EventSink eventSink, ConsumerCurator consumerCurator,
-        ConsumerTypeCurator consumerTypeCurator, RulesObjectMapper mapper, ModelTranslator translator) {
+        ConsumerTypeCurator consumerTypeCurator, RulesObjectMapper mapper, ModelTranslator translator,
+        Configuration config, ComplianceStatusCache statusCache) {
 
         this.jsRules = jsRules;
         this.entCurator = entCurator;
@@ -86,6 +96,18 @@ public class ComplianceRules {
         this.consumerTypeCurator = consumerTypeCurator;
         this.mapper = mapper;
         this.translator = translator;
+        this.statusCache = statusCache;
+        this.cacheBucketLength = TimeUnit.MINUTES.toMillis(
+            config.getInt(ConfigProperties.COMPLIANCE_CACHE_DATE_BUCKET, 60));
+
+        String engine = config.getString(ConfigProperties.COMPLIANCE_ENGINE,
+            ConfigProperties.COMPLIANCE_ENGINE_JS);
+        if (ConfigProperties.COMPLIANCE_ENGINE_NATIVE.equalsIgnoreCase(engine)) {
+            this.nativeEngine = new NativeComplianceEngine();
+        }
+        else if (!ConfigProperties.COMPLIANCE_ENGINE_JS.equalsIgnoreCase(engine)) {
+            log.warn("Unknown compliance engine \"{}\"; defaulting to the JavaScript rules", engine);
+        }
 
         jsRules.init("compliance_name_space");
     }
@@ -192,24 +214,54 @@ public class ComplianceRules {
             return new ComplianceStatus(new Date());
         }
 
-        JsonJsContext args = new JsonJsContext(mapper);
-        args.put("consumer", this.translator.translate(consumer, ConsumerDTO.class));
-        args.put("entitlements", entStream);
-        args.put("ondate", date);
-        args.put("calculateCompliantUntil", calculateCompliantUntil);
-        args.put("calculateProductComplianceDateRanges", calculateProductComplianceDateRanges);
-        args.put("log", log, false);
-        args.put("guestIds", guestIdStream);
+        Set<Entitlement> allEntitlements = Stream.concat(
+            newEntitlements != null ? newEntitlements.stream() : Stream.empty(),
+            consumer.getEntitlements() != null ? consumer.getEntitlements().stream() : Stream.empty())
+            .collect(Collectors.toSet());
+
+        String inputHash = this.getComplianceInputHash(consumer, allEntitlements, date,
+            calculateCompliantUntil, calculateProductComplianceDateRanges);
+
+        ComplianceStatusDTO statusDTO = inputHash != null ? this.statusCache.get(inputHash) : null;
+        boolean cached = statusDTO != null;
+        String json = null;
+
+        if (cached) {
+            log.debug("Reusing compliance rules result for consumer: {}", consumer.getUuid());
+
+            // The cached result was calculated for a date within the same bucket, or for this exact
+            // date if product compliance date ranges were calculated
+            statusDTO.setDate(date);
+        }
+        else if (this.nativeEngine != null) {
+            statusDTO = this.nativeEngine.getStatus(this.translator.translate(consumer, ConsumerDTO.class),
+                entStream.collect(Collectors.toList()), guestIdStream.collect(Collectors.toList()), date,
+                calculateCompliantUntil, calculateProductComplianceDateRanges);
+        }
+        else {
+            JsonJsContext args = new JsonJsContext(mapper);
+            args.put("consumer", this.translator.translate(consumer, ConsumerDTO.class));
+            args.put("entitlements", entStream);
+            args.put("ondate", date);
+            args.put("calculateCompliantUntil", calculateCompliantUntil);
+            args.put("calculateProductComplianceDateRanges", calculateProductComplianceDateRanges);
+            args.put("log", log, false);
+            args.put("guestIds", guestIdStream);
+
+            json = jsRules.runJsFunction(String.class, "get_status", args);
+        }
 
-        // Convert the JSON returned into a ComplianceStatus object:
-        String json = jsRules.runJsFunction(String.class, "get_status", args);
         try {
-            ComplianceStatusDTO statusDTO = mapper.toObject(json, ComplianceStatusDTO.class);
+            // Convert the JSON returned into a ComplianceStatus object:
+            if (statusDTO == null) {
+                statusDTO = mapper.toObject(json, ComplianceStatusDTO.class);
+            }
+
+            if (inputHash != null && !cached) {
+                this.statusCache.put(inputHash, statusDTO);
+            }
+
             ComplianceStatus status = new ComplianceStatus();
-            Set<Entitlement> allEntitlements = Stream.concat(
-                newEntitlements != null ? newEntitlements.stream() : Stream.empty(),
-                consumer.getEntitlements() != null ? consumer.getEntitlements().stream() : Stream.empty())
-                .collect(Collectors.toSet());
             populateEntity(status, statusDTO, allEntitlements);
 
             for (ComplianceReason reason : status.getReasons()) {
@@ -266,6 +318,11 @@ public class ComplianceRules {
             consumer.getGuestIds().stream()
                 .map(this.translator.getStreamMapper(GuestId.class, GuestIdDTO.class));
 
+        if (this.nativeEngine != null) {
+            return this.nativeEngine.isStackCompliant(this.translator.translate(consumer, ConsumerDTO.class),
+                stackId, entStream.collect(Collectors.toList()), guestIdStream.collect(Collectors.toList()));
+        }
+
         JsonJsContext args = new JsonJsContext(mapper);
         args.put("stack_id", stackId);
         args.put("consumer", this.translator.translate(consumer, ConsumerDTO.class));
@@ -287,6 +344,13 @@ public class ComplianceRules {
             consumer.getGuestIds().stream()
                 .map(this.translator.getStreamMapper(GuestId.class, GuestIdDTO.class));
 
+        if (this.nativeEngine != null) {
+            return this.nativeEngine.isEntitlementCompliant(
+                this.translator.translate(consumer, ConsumerDTO.class),
+                this.translator.translate(ent, EntitlementDTO.class),
+                entStream.collect(Collectors.toList()), guestIdStream.collect(Collectors.toList()));
+        }
+
         JsonJsContext args = new JsonJsContext(mapper);
         args.put("consumer", this.translator.translate(consumer, ConsumerDTO.class));
         args.put("entitlement", this.translator.translate(ent, EntitlementDTO.class));
@@ -302,6 +366,40 @@ public class ComplianceRules {
         return hasher.hash();
     }
 
+    /**
+     * Builds a fingerprint of the inputs to the compliance rules for the given consumer, used to
+     * look up the rules' result for an unchanged consumer in the compliance status cache.
+     *
+     * @return
+     *  the input fingerprint, or null if the result of the rules cannot be cached for the inputs
+     */
+    private String getComplianceInputHash(Consumer consumer, Collection<Entitlement> entitlements, Date date,
+        boolean calculateCompliantUntil, boolean calculateProductComplianceDateRanges) {
+
+        if (this.statusCache == null || !this.statusCache.isEnabled() ||
+            !ComplianceInputHasher.canHash(entitlements)) {
+            return null;
+        }
+
+        String rulesVersion;
+        if (this.nativeEngine != null) {
+            rulesVersion = ConfigProperties.COMPLIANCE_ENGINE_NATIVE;
+        }
+        else {
+            JsRulesRuntime runtime = this.jsRules.getRuntime();
+            if (runtime == null) {
+                // Without a runtime, we can't tell which version of the rules we're running
+                return null;
+            }
+
+            rulesVersion = runtime.getRulesVersion() + ":" +
+                (runtime.getUpdated() != null ? runtime.getUpdated().getTime() : null);
+        }
+
+        return new ComplianceInputHasher(rulesVersion, consumer, entitlements, date, this.cacheBucketLength,
+            calculateCompliantUntil, calculateProductComplianceDateRanges).hash();
+    }
+
 
     /**
      * Populates an entity that is to be created with data from the provided DTO.
@@ -354,7 +452,9 @@ public class ComplianceRules {
                         ComplianceReason reason = new ComplianceReason();
                         reason.setKey(reasonDTO.getKey());
                         reason.setMessage(reasonDTO.getMessage());
-                        reason.setAttributes(reasonDTO.getAttributes());
+                        // Copied, as the DTO may be shared through the compliance status cache
+                        reason.setAttributes(reasonDTO.getAttributes() != null ?
+                            new HashMap<>(reasonDTO.getAttributes()) : null);
                         reasons.add(reason);
                     }
                 }
@@ -0,0 +1,1292 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.compliance;
+
+import org.candlepin.dto.rules.v1.ComplianceReasonDTO;
+import org.candlepin.dto.rules.v1.ComplianceStatusDTO;
+import org.candlepin.dto.rules.v1.ConsumerDTO;
+import org.candlepin.dto.rules.v1.EntitlementDTO;
+import org.candlepin.dto.rules.v1.GuestIdDTO;
+import org.candlepin.dto.rules.v1.PoolDTO;
+import org.candlepin.util.DateRange;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+
+
+/**
+ * The NativeComplianceEngine is a Java implementation of the compliance namespace of the rules
+ * (get_status, is_stack_compliant and is_ent_compliant). It operates on the same rules DTOs that
+ * are normally serialized into the JS context and produces the same ComplianceStatusDTO the rules
+ * would return, without the JSON round trip or the Rhino runtime.
+ * <p></p>
+ * Since the output must match the output of the rules exactly, this implementation deliberately
+ * mirrors the JavaScript semantics the rules rely upon: attributes with a value of "0" are
+ * considered unset, fact values are compared using JS number coercion, integer attributes are
+ * parsed with parseInt semantics, and reason attribute values are rendered the same way
+ * JSON.stringify would render them. Any change made to the compliance namespace in rules.js must
+ * be reflected here, and verified with the differential test for this class.
+ */
+public class NativeComplianceEngine {
+    private static Logger log = LoggerFactory.getLogger(NativeComplianceEngine.class);
+
+    private static final String SOCKET_FACT = "cpu.cpu_socket(s)";
+    private static final String RAM_FACT = "memory.memtotal";
+    private static final String CORES_FACT = "cpu.core(s)_per_socket";
+    private static final String ARCH_FACT = "uname.machine";
+    private static final String IS_VIRT_GUEST_FACT = "virt.is_guest";
+    private static final String STORAGE_BAND_USAGE = "band.storage.usage";
+
+    private static final String SOCKETS_ATTRIBUTE = "sockets";
+    private static final String CORES_ATTRIBUTE = "cores";
+    private static final String ARCH_ATTRIBUTE = "arch";
+    private static final String RAM_ATTRIBUTE = "ram";
+    private static final String INSTANCE_ATTRIBUTE = "instance_multiplier";
+    private static final String REQUIRES_HOST_ATTRIBUTE = "requires_host";
+    private static final String UNMAPPED_GUESTS_ONLY = "unmapped_guests_only";
+    private static final String GUEST_LIMIT_ATTRIBUTE = "guest_limit";
+    private static final String VCPU_ATTRIBUTE = "vcpu";
+    private static final String STACKING_ID_ATTRIBUTE = "stacking_id";
+    private static final String STORAGE_BAND_ATTRIBUTE = "storage_band";
+
+    private static final String TRACKER_TYPE_STACK = "STACK";
+    private static final String TRACKER_TYPE_ENTITLEMENT = "ENTITLEMENT";
+
+    private static final Map<String, String> ATTRIBUTES_TO_CONSUMER_FACTS = new HashMap<>();
+    static {
+        ATTRIBUTES_TO_CONSUMER_FACTS.put(SOCKETS_ATTRIBUTE, SOCKET_FACT);
+        ATTRIBUTES_TO_CONSUMER_FACTS.put(CORES_ATTRIBUTE, CORES_FACT);
+        ATTRIBUTES_TO_CONSUMER_FACTS.put(ARCH_ATTRIBUTE, ARCH_FACT);
+        ATTRIBUTES_TO_CONSUMER_FACTS.put(RAM_ATTRIBUTE, RAM_FACT);
+        ATTRIBUTES_TO_CONSUMER_FACTS.put(VCPU_ATTRIBUTE, CORES_FACT);
+        ATTRIBUTES_TO_CONSUMER_FACTS.put(STORAGE_BAND_ATTRIBUTE, STORAGE_BAND_USAGE);
+    }
+
+    private static final List<String> PHYSICAL_ATTRIBUTES = Arrays.asList(SOCKETS_ATTRIBUTE,
+        CORES_ATTRIBUTE, RAM_ATTRIBUTE, ARCH_ATTRIBUTE, GUEST_LIMIT_ATTRIBUTE, STORAGE_BAND_ATTRIBUTE);
+
+    private static final List<String> VIRT_ATTRIBUTES = Arrays.asList(VCPU_ATTRIBUTE, RAM_ATTRIBUTE,
+        ARCH_ATTRIBUTE, GUEST_LIMIT_ATTRIBUTE, STORAGE_BAND_ATTRIBUTE);
+
+    private static final List<String> UNCHECKED_WHEN_HOST_RESTRICTED = Arrays.asList(RAM_ATTRIBUTE,
+        VCPU_ATTRIBUTE);
+
+    private static final List<String> GLOBAL_ATTRIBUTES = Collections.singletonList(GUEST_LIMIT_ATTRIBUTE);
+
+    private static final Pattern JS_DECIMAL_LITERAL =
+        Pattern.compile("[+-]?(\\d+\\.?\\d*|\\.\\d+)([eE][+-]?\\d+)?");
+
+    /**
+     * Calculates the compliance status for the given consumer on the specified date. This is the
+     * equivalent of the get_status function of the compliance namespace.
+     *
+     * @param consumer
+     *  the consumer for which to calculate the compliance status
+     *
+     * @param entitlements
+     *  the entitlements to consider, in the order they would be provided to the rules
+     *
+     * @param guestIds
+     *  the guest IDs of the consumer, used to determine guest limit coverage
+     *
+     * @param ondate
+     *  the date on which to calculate the status
+     *
+     * @param calculateCompliantUntil
+     *  whether or not to calculate the compliant-until date
+     *
+     * @param calculateProductComplianceDateRanges
+     *  whether or not to calculate the compliance date ranges for the consumer's installed products
+     *
+     * @return
+     *  a ComplianceStatusDTO representing the status of the consumer
+     */
+    public ComplianceStatusDTO getStatus(ConsumerDTO consumer, Collection<EntitlementDTO> entitlements,
+        Collection<GuestIdDTO> guestIds, Date ondate, boolean calculateCompliantUntil,
+        boolean calculateProductComplianceDateRanges) {
+
+        if (consumer == null) {
+            throw new IllegalArgumentException("consumer is null");
+        }
+
+        if (ondate == null) {
+            throw new IllegalArgumentException("ondate is null");
+        }
+
+        Context context = new Context(consumer, guestIds);
+        List<Ent> ents = context.wrap(entitlements);
+
+        StatusBuilder status = this.getComplianceStatusOnDate(context, ents, ondate.getTime());
+        Long compliantUntil = null;
+        Map<String, DateRange> productComplianceDateRanges = null;
+
+        if (status.isCompliant() && calculateCompliantUntil && ents.size() > 0) {
+            compliantUntil = this.determineCompliantUntilDate(context, ents, ondate.getTime());
+        }
+
+        if (status.isPartiallyCompliant() && calculateProductComplianceDateRanges && ents.size() > 0) {
+            productComplianceDateRanges = this.getProductComplianceDateRanges(context, ents,
+                ondate.getTime(), status);
+        }
+
+        ComplianceStatusDTO dto = status.toDTO();
+        dto.setCompliantUntil(compliantUntil != null ? new Date(compliantUntil) : null);
+        dto.setProductComplianceDateRanges(productComplianceDateRanges);
+
+        return dto;
+    }
+
+    /**
+     * Checks if the given stack is fully covered by the provided entitlements. This is the
+     * equivalent of the is_stack_compliant function of the compliance namespace.
+     *
+     * @param consumer
+     *  the consumer to check
+     *
+     * @param stackId
+     *  the ID of the stack to check
+     *
+     * @param entitlements
+     *  the entitlements to consider
+     *
+     * @param guestIds
+     *  the guest IDs of the consumer
+     *
+     * @return
+     *  true if the stack covers the consumer; false otherwise
+     */
+    public boolean isStackCompliant(ConsumerDTO consumer, String stackId,
+        Collection<EntitlementDTO> entitlements, Collection<GuestIdDTO> guestIds) {
+
+        Context context = new Context(consumer, guestIds);
+        return this.getStackCoverage(context, stackId, context.wrap(entitlements)).covered;
+    }
+
+    /**
+     * Checks if the given entitlement covers the consumer on its own. This is the equivalent of
+     * the is_ent_compliant function of the compliance namespace.
+     *
+     * @param consumer
+     *  the consumer to check
+     *
+     * @param entitlement
+     *  the entitlement to check
+     *
+     * @param entitlements
+     *  the consumer's entitlements, used for global attributes
+     *
+     * @param guestIds
+     *  the guest IDs of the consumer
+     *
+     * @return
+     *  true if the entitlement covers the consumer; false otherwise
+     */
+    public boolean isEntitlementCompliant(ConsumerDTO consumer, EntitlementDTO entitlement,
+        Collection<EntitlementDTO> entitlements, Collection<GuestIdDTO> guestIds) {
+
+        Context context = new Context(consumer, guestIds);
+        Ent ent = context.wrap(Collections.singletonList(entitlement)).get(0);
+
+        return this.getEntitlementCoverage(context, ent, context.wrap(entitlements)).covered;
+    }
+
+    private StatusBuilder getComplianceStatusOnDate(Context context, List<Ent> entitlements, long ondate) {
+        StatusBuilder status = new StatusBuilder(ondate);
+        ConsumerDTO consumer = context.consumer;
+
+        // Track the stack IDs we've already checked to save some time
+        Set<String> compliantStackIds = new HashSet<>();
+        Set<String> nonCompliantStackIds = new HashSet<>();
+
+        log.debug("Checking compliance status for consumer: {} on date: {}", consumer.getUuid(),
+            new Date(ondate));
+
+        List<Ent> entitlementsOnDate = this.filterEntitlementsByDate(entitlements, ondate);
+        for (Ent ent : entitlementsOnDate) {
+            List<String> relevantPids = this.findRelevantPids(ent, consumer);
+
+            boolean partiallyStacked = false;
+            boolean stacked = ent.pool.isStacked();
+
+            // If the pool is stacked, check that the stack requirements are met
+            if (stacked) {
+                String stackId = ent.pool.getProductAttribute(STACKING_ID_ATTRIBUTE);
+
+                if (nonCompliantStackIds.contains(stackId)) {
+                    partiallyStacked = true;
+                    status.addPartialStack(stackId, ent);
+                }
+                else if (!compliantStackIds.contains(stackId)) {
+                    Coverage stackCoverage = this.getStackCoverage(context, stackId, entitlementsOnDate);
+
+                    if (!stackCoverage.covered) {
+                        partiallyStacked = true;
+                        status.addPartialStack(stackId, ent);
+                        nonCompliantStackIds.add(stackId);
+                        status.addReasons(stackCoverage.reasons);
+                    }
+                    else {
+                        compliantStackIds.add(stackId);
+                    }
+                }
+            }
+
+            // If we have no installed products and the entitlement is partially covered, we want
+            // the system to be partial.
+            Coverage entCoverage = null;
+            if (relevantPids.isEmpty() && !stacked) {
+                entCoverage = this.getEntitlementCoverage(context, ent, entitlementsOnDate);
+                if (!entCoverage.covered) {
+                    status.addReasons(entCoverage.reasons);
+                }
+            }
+
+            // If the consumer has an entitlement from a pool marked unmapped_guests_only it can
+            // only hope to be yellow
+            if (equalsIgnoreCase("true", ent.pool.getAttribute(UNMAPPED_GUESTS_ONLY))) {
+                status.addReason(this.buildUnmappedEntitlementReason(ent.id));
+            }
+
+            for (String pid : relevantPids) {
+                if (partiallyStacked) {
+                    status.addPartialProduct(pid, ent);
+                    continue;
+                }
+
+                if (entCoverage == null) {
+                    entCoverage = this.getEntitlementCoverage(context, ent, entitlementsOnDate);
+                }
+
+                if (!entCoverage.covered && !stacked) {
+                    status.addPartialProduct(pid, ent);
+                    status.addReasons(entCoverage.reasons);
+                }
+                else {
+                    status.addCompliantProduct(pid, ent);
+                }
+            }
+        }
+
+        // If we also found a regular entitlement which provides a partially compliant product, it
+        // should not be considered partially compliant as well. The stack stays in the partial
+        // stacks list, as it should still be repaired.
+        status.partiallyCompliantProducts.keySet().removeAll(status.compliantProducts.keySet());
+
+        // Any installed products we didn't find an entitlement for are not compliant
+        for (String pid : installedProducts(consumer)) {
+            if (!status.compliantProducts.containsKey(pid) &&
+                !status.partiallyCompliantProducts.containsKey(pid)) {
+
+                status.nonCompliantProducts.add(pid);
+                status.addReason(this.buildInstalledProductReason(pid));
+            }
+        }
+
+        return status;
+    }
+
+    private Long determineCompliantUntilDate(Context context, List<Ent> entitlements, long startDate) {
+        List<String> installedProducts = installedProducts(context.consumer);
+        if (installedProducts.isEmpty()) {
+            return null;
+        }
+
+        List<Ent> entitlementsProvidingProducts = new ArrayList<>();
+        for (Ent ent : entitlements) {
+            for (String pid : installedProducts) {
+                if (ent.pool.provides(pid)) {
+                    entitlementsProvidingProducts.add(ent);
+                    break;
+                }
+            }
+        }
+
+        long lastDate = startDate;
+        for (long date : this.getSortedEntitlementDates(entitlementsProvidingProducts, false, true)) {
+            // Ignore past dates and duplicates
+            if (date <= lastDate) {
+                continue;
+            }
+
+            // Need to check if we are still compliant after the end date, so we add one second
+            long dateToCheck = date + 1000;
+            lastDate = dateToCheck;
+
+            if (!this.getComplianceStatusOnDate(context, entitlements, dateToCheck).isCompliant()) {
+                return dateToCheck;
+            }
+        }
+
+        return null;
+    }
+
+    @SuppressWarnings("checkstyle:methodlength")
+    private Map<String, DateRange> getProductComplianceDateRanges(Context context, List<Ent> entitlements,
+        long ondate, StatusBuilder compStatus) {
+
+        Map<String, DateRange> ranges = new LinkedHashMap<>();
+        List<String> installedProducts = installedProducts(context.consumer);
+
+        if (installedProducts.isEmpty()) {
+            return ranges;
+        }
+
+        List<Long> dates = this.getSortedEntitlementDates(entitlements, true, true);
+        int dateCount = dates.size();
+        int nextDate = -1;
+
+        // Find our next date in the future
+        for (int i = dateCount - 1; i >= 0; --i) {
+            if (dates.get(i) - ondate <= 0) {
+                nextDate = i + 1;
+                break;
+            }
+        }
+
+        Map<String, Long[]> prodDateRanges = new LinkedHashMap<>();
+        for (int i = installedProducts.size() - 1; i >= 0; --i) {
+            String pid = installedProducts.get(i);
+
+            if (!compStatus.nonCompliantProducts.contains(pid)) {
+                prodDateRanges.put(pid, new Long[2]);
+            }
+        }
+
+        if (!prodDateRanges.isEmpty()) {
+            int pidCount = prodDateRanges.size();
+
+            // Find start dates
+            int complete = 0;
+            long lastValidDate = ondate;
+
+            for (int i = nextDate - 1; i >= 0; --i) {
+                // We add a millisecond to the date to move us just outside the range of the
+                // entitlement from which the date came, to avoid bridging coverage gaps.
+                StatusBuilder status = this.getComplianceStatusOnDate(context, entitlements,
+                    dates.get(i) + 1);
+
+                for (Map.Entry<String, Long[]> entry : prodDateRanges.entrySet()) {
+                    String pid = entry.getKey();
+                    Long[] range = entry.getValue();
+
+                    if (range[0] == null && (status.nonCompliantProducts.contains(pid) ||
+                        (compStatus.isProductCompliant(pid) && !status.isProductCompliant(pid)) ||
+                        (compStatus.isProductPartial(pid) && !status.isProductPartial(pid)))) {
+
+                        range[0] = lastValidDate;
+                        ++complete;
+                    }
+                }
+
+                if (complete >= pidCount) {
+                    break;
+                }
+
+                lastValidDate = dates.get(i);
+            }
+
+            // Find end dates
+            complete = 0;
+            for (int i = nextDate; i < dateCount; ++i) {
+                StatusBuilder status = this.getComplianceStatusOnDate(context, entitlements,
+                    dates.get(i) + 1);
+
+                for (Map.Entry<String, Long[]> entry : prodDateRanges.entrySet()) {
+                    String pid = entry.getKey();
+                    Long[] range = entry.getValue();
+
+                    if (range[1] == null && (status.nonCompliantProducts.contains(pid) ||
+                        (compStatus.isProductCompliant(pid) && !status.isProductCompliant(pid)) ||
+                        (compStatus.isProductPartial(pid) && !status.isProductPartial(pid) &&
+                        !status.isProductCompliant(pid)))) {
+
+                        range[1] = dates.get(i);
+                        ++complete;
+                    }
+                }
+
+                if (complete >= pidCount) {
+                    break;
+                }
+            }
+
+            // Any products which were valid all the way to the ends of our date ranges will have
+            // null dates; set those to our extremes.
+            for (Map.Entry<String, Long[]> entry : prodDateRanges.entrySet()) {
+                Long[] range = entry.getValue();
+
+                long start = range[0] != null ? range[0] : dates.get(0);
+                long end = range[1] != null ? range[1] : dates.get(dateCount - 1);
+
+                ranges.put(entry.getKey(), new DateRange(new Date(start), new Date(end)));
+            }
+        }
+
+        return ranges;
+    }
+
+    private List<Ent> filterEntitlementsByDate(List<Ent> entitlements, long date) {
+        List<Ent> filtered = new ArrayList<>();
+
+        for (Ent ent : entitlements) {
+            if (ent.startDate <= date && ent.endDate >= date) {
+                filtered.add(ent);
+            }
+        }
+
+        return filtered;
+    }
+
+    private List<Long> getSortedEntitlementDates(List<Ent> entitlements, boolean useStartDates,
+        boolean useEndDates) {
+
+        // Note: duplicates are intentionally retained, as the rules do not actually filter them
+        List<Long> dates = new ArrayList<>();
+
+        for (Ent ent : entitlements) {
+            if (useStartDates) {
+                dates.add(ent.startDate);
+            }
+
+            if (useEndDates) {
+                dates.add(ent.endDate);
+            }
+        }
+
+        Collections.sort(dates);
+        return dates;
+    }
+
+    private List<String> findRelevantPids(Ent ent, ConsumerDTO consumer) {
+        List<String> pids = new ArrayList<>();
+
+        for (String pid : installedProducts(consumer)) {
+            if (ent.pool.provides(pid)) {
+                pids.add(pid);
+            }
+        }
+
+        return pids;
+    }
+
+    private Coverage getStackCoverage(Context context, String stackId, List<Ent> entitlements) {
+        log.debug("Checking stack compliance for: {}", stackId);
+        Tracker tracker = new Tracker(context, stackId);
+
+        for (Ent ent : entitlements) {
+            if (ent.pool.isStacked() &&
+                Objects.equals(ent.pool.getProductAttribute(STACKING_ID_ATTRIBUTE), stackId)) {
+
+                tracker.updateAccumulatedFromEnt(ent);
+            }
+        }
+
+        return this.getCoverage(context, tracker, entitlements);
+    }
+
+    private Coverage getEntitlementCoverage(Context context, Ent ent, List<Ent> entitlements) {
+        log.debug("Checking compliance for entitlement: {}", ent.id);
+        Tracker tracker = new Tracker(context, null);
+        tracker.updateAccumulatedFromEnt(ent);
+
+        return this.getCoverage(context, tracker, entitlements);
+    }
+
+    /**
+     * Port of CoverageCalculator.getStackCoverage and getCoverageForTracker
+     */
+    private Coverage getCoverage(Context context, Tracker tracker, List<Ent> entitlements) {
+        List<String> attributes = context.complianceAttributes;
+
+        for (String attribute : attributes) {
+            if (tracker.enforces(attribute) && GLOBAL_ATTRIBUTES.contains(attribute)) {
+                tracker.accumulatedValues.put(attribute, this.getGuestLimit(attribute, entitlements));
+            }
+        }
+
+        int coverageCount = 0;
+        List<ComplianceReasonDTO> reasons = new ArrayList<>();
+
+        for (String attribute : attributes) {
+            // If the value doesn't exist we do not enforce it
+            if (!tracker.enforces(attribute)) {
+                ++coverageCount;
+                continue;
+            }
+
+            ComplianceReasonDTO reason;
+            switch (attribute) {
+                case ARCH_ATTRIBUTE:
+                    reason = this.checkArchCondition(context, tracker, attribute);
+                    break;
+
+                case GUEST_LIMIT_ATTRIBUTE:
+                    reason = this.checkGuestLimitCondition(context, tracker, attribute);
+                    break;
+
+                default:
+                    reason = this.checkDefaultCondition(context, tracker, attribute);
+            }
+
+            if (reason == null) {
+                ++coverageCount;
+            }
+            else {
+                reasons.add(reason);
+            }
+        }
+
+        return new Coverage(coverageCount == attributes.size(), reasons);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ComplianceReasonDTO checkArchCondition(Context context, Tracker tracker, String attribute) {
+        List<String> supportedArchs = (List<String>) tracker.accumulatedValues.get(attribute);
+        Map<String, String> facts = facts(context.consumer);
+        String consumerArch = facts.get(ARCH_FACT);
+        String consumerType = context.consumer.getType() != null ?
+            context.consumer.getType().getLabel() :
+            null;
+
+        if (supportedArchs != null) {
+            for (String archString : supportedArchs) {
+                if (!architectureMatches(archString, consumerArch, consumerType)) {
+                    log.debug("  System architecture not covered by: {}", archString);
+                    return this.buildReason(attribute.toUpperCase(Locale.ROOT), tracker.type, tracker.id,
+                        consumerArch, archString);
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private ComplianceReasonDTO checkGuestLimitCondition(Context context, Tracker tracker,
+        String attribute) {
+
+        Object consumerQuantity = this.getFact(context, attribute);
+        Object sourceValue = tracker.accumulatedValues.get(attribute);
+
+        boolean covered = isNegativeOne(sourceValue) ||
+            greaterOrEqual(parseInt(sourceValue), toNumber(consumerQuantity));
+
+        return covered ? null : this.buildReason(attribute.toUpperCase(Locale.ROOT), tracker.type,
+            tracker.id, consumerQuantity, sourceValue);
+    }
+
+    private ComplianceReasonDTO checkDefaultCondition(Context context, Tracker tracker, String attribute) {
+        Object consumerQuantity = this.getFact(context, attribute);
+        Object sourceValue = tracker.accumulatedValues.get(attribute);
+
+        boolean covered = greaterOrEqual(parseInt(sourceValue), toNumber(consumerQuantity));
+
+        return covered ? null : this.buildReason(attribute.toUpperCase(Locale.ROOT), tracker.type,
+            tracker.id, consumerQuantity, sourceValue);
+    }
+
+    /**
+     * Port of GlobalAttributeCalculator's guest_limit calculator
+     */
+    private Double getGuestLimit(String attribute, List<Ent> entitlements) {
+        Double total = null;
+
+        for (Ent ent : entitlements) {
+            String value = ent.pool.getProductAttribute(attribute);
+
+            if (value != null) {
+                if (total == null) {
+                    total = 0.0;
+                }
+
+                double poolValue = parseInt(value);
+                if (poolValue == -1) {
+                    return poolValue;
+                }
+
+                if (poolValue > total) {
+                    total = poolValue;
+                }
+            }
+        }
+
+        return total;
+    }
+
+    /**
+     * Port of FactValueCalculator.getFact. Returns either the raw fact string or a number, as the
+     * rules do; the distinction matters for the reason attributes.
+     */
+    private Object getFact(Context context, String attribute) {
+        switch (attribute) {
+            case RAM_ATTRIBUTE:
+                Object consumerRam = this.getRawFact(context, attribute);
+                return jsRound(parseInt(consumerRam) / 1024 / 1024);
+
+            case CORES_ATTRIBUTE:
+                Object sockets = this.getFact(context, SOCKETS_ATTRIBUTE);
+                Object coresPerSocket = this.getRawFact(context, attribute);
+                return toNumber(coresPerSocket) * toNumber(sockets);
+
+            case VCPU_ATTRIBUTE:
+                return this.getFact(context, CORES_ATTRIBUTE);
+
+            case GUEST_LIMIT_ATTRIBUTE:
+                return (double) context.getActiveGuestCount();
+
+            default:
+                return this.getRawFact(context, attribute);
+        }
+    }
+
+    private Object getRawFact(Context context, String attribute) {
+        String value = facts(context.consumer).get(ATTRIBUTES_TO_CONSUMER_FACTS.get(attribute));
+        return value != null && !value.isEmpty() ? value : (Object) 1.0;
+    }
+
+    private ComplianceReasonDTO buildReason(String key, String sourceType, String id, Object has,
+        Object covered) {
+
+        Map<String, String> attributes = new HashMap<>();
+        attributes.put("has", toJsonString(has));
+        attributes.put("covered", toJsonString(covered));
+
+        if (TRACKER_TYPE_STACK.equals(sourceType)) {
+            attributes.put("stack_id", id);
+        }
+        else if (TRACKER_TYPE_ENTITLEMENT.equals(sourceType)) {
+            attributes.put("entitlement_id", id);
+        }
+
+        return new ComplianceReasonDTO()
+            .setKey(key)
+            .setMessage(key)
+            .setAttributes(attributes);
+    }
+
+    private ComplianceReasonDTO buildInstalledProductReason(String pid) {
+        return new ComplianceReasonDTO()
+            .setKey("NOTCOVERED")
+            .setMessage("NOTCOVERED")
+            .setAttributes(Collections.singletonMap("product_id", pid));
+    }
+
+    private ComplianceReasonDTO buildUnmappedEntitlementReason(String entitlementId) {
+        return new ComplianceReasonDTO()
+            .setKey("UNMAPPEDGUEST")
+            .setMessage("UNMAPPEDGUEST")
+            .setAttributes(Collections.singletonMap("entitlement_id", entitlementId));
+    }
+
+    private static boolean architectureMatches(String productArchStr, String consumerUnameMachine,
+        String consumerType) {
+
+        // Non-system consumers without an architecture fact can pass this rule regardless what
+        // arch the product requires.
+        if ((consumerUnameMachine == null || consumerUnameMachine.isEmpty()) &&
+            !"system".equals(consumerType)) {
+            return true;
+        }
+
+        if (productArchStr != null) {
+            List<String> supportedArches = new ArrayList<>(
+                Arrays.asList(productArchStr.toUpperCase(Locale.ROOT).split(",", -1)));
+
+            // If X86 is supported, add all variants to this list
+            if (supportedArches.contains("X86")) {
+                supportedArches.add("I386");
+                supportedArches.add("I586");
+                supportedArches.add("I686");
+            }
+
+            if (!supportedArches.contains("ALL") &&
+                (consumerUnameMachine == null || consumerUnameMachine.isEmpty() ||
+                !supportedArches.contains(consumerUnameMachine.toUpperCase(Locale.ROOT)))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static List<String> installedProducts(ConsumerDTO consumer) {
+        Set<String> installed = consumer.getInstalledProducts();
+        return installed != null ? new ArrayList<>(installed) : Collections.emptyList();
+    }
+
+    private static Map<String, String> facts(ConsumerDTO consumer) {
+        Map<String, String> facts = consumer.getFacts();
+        return facts != null ? facts : Collections.emptyMap();
+    }
+
+    private static boolean isGuest(ConsumerDTO consumer) {
+        String value = facts(consumer).get(IS_VIRT_GUEST_FACT);
+        return value != null && !value.isEmpty() && equalsIgnoreCase("true", value);
+    }
+
+    private static boolean isGuestActive(GuestIdDTO guest) {
+        Map<String, String> attributes = guest.getAttributes();
+
+        if (attributes != null && "libvirt".equals(attributes.get("virtWhoType")) &&
+            attributes.containsKey("active")) {
+
+            return "1".equals(attributes.get("active"));
+        }
+
+        return false;
+    }
+
+    private static boolean equalsIgnoreCase(String str1, String str2) {
+        return str1 == null ? str2 == null : str1.equalsIgnoreCase(str2);
+    }
+
+    /*
+     * JavaScript value semantics. Values handled by the rules are represented as Strings, Doubles
+     * or nulls.
+     */
+
+    /**
+     * Equivalent of the JS Number() conversion
+     */
+    private static double toNumber(Object value) {
+        if (value == null) {
+            return 0;
+        }
+
+        if (value instanceof Double) {
+            return (Double) value;
+        }
+
+        String str = value.toString().trim();
+        if (str.isEmpty()) {
+            return 0;
+        }
+
+        if (str.startsWith("0x") || str.startsWith("0X")) {
+            try {
+                return Long.parseLong(str.substring(2), 16);
+            }
+            catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+
+        switch (str) {
+            case "Infinity":
+            case "+Infinity":
+                return Double.POSITIVE_INFINITY;
+
+            case "-Infinity":
+                return Double.NEGATIVE_INFINITY;
+
+            default:
+                return JS_DECIMAL_LITERAL.matcher(str).matches() ? Double.parseDouble(str) : Double.NaN;
+        }
+    }
+
+    /**
+     * Equivalent of the JS parseInt() function with no radix
+     */
+    private static double parseInt(Object value) {
+        String str = value instanceof Double ? toJsString((Double) value) : String.valueOf(value);
+
+        int offset = 0;
+        int length = str.length();
+        while (offset < length && Character.isWhitespace(str.charAt(offset))) {
+            ++offset;
+        }
+
+        boolean negative = false;
+        if (offset < length && (str.charAt(offset) == '-' || str.charAt(offset) == '+')) {
+            negative = str.charAt(offset) == '-';
+            ++offset;
+        }
+
+        int radix = 10;
+        if (offset + 1 < length && str.charAt(offset) == '0' &&
+            (str.charAt(offset + 1) == 'x' || str.charAt(offset + 1) == 'X')) {
+            radix = 16;
+            offset += 2;
+        }
+
+        double result = 0;
+        int digits = 0;
+        for (; offset < length; ++offset, ++digits) {
+            int digit = Character.digit(str.charAt(offset), radix);
+            if (digit < 0) {
+                break;
+            }
+
+            result = result * radix + digit;
+        }
+
+        if (digits == 0) {
+            return Double.NaN;
+        }
+
+        return negative ? -result : result;
+    }
+
+    /**
+     * Equivalent of the JS "value | 0" idiom
+     */
+    private static double toInt32(Object value) {
+        double number = toNumber(value);
+
+        if (Double.isNaN(number) || Double.isInfinite(number)) {
+            return 0;
+        }
+
+        return (int) (long) number;
+    }
+
+    private static double jsRound(double value) {
+        return Double.isNaN(value) ? value : Math.floor(value + 0.5);
+    }
+
+    private static boolean greaterOrEqual(double lhs, double rhs) {
+        // Comparisons involving NaN are always false, which is what Java does as well
+        return lhs >= rhs;
+    }
+
+    private static boolean isNegativeOne(Object value) {
+        return value instanceof Double && (Double) value == -1;
+    }
+
+    /**
+     * Renders a number the same way JS's Number.prototype.toString would
+     */
+    private static String toJsString(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "Infinity" : "-Infinity";
+        }
+
+        if (value == 0) {
+            return "0";
+        }
+
+        double abs = Math.abs(value);
+        if (abs >= 1e-6 && abs < 1e21) {
+            return new BigDecimal(Double.toString(value)).stripTrailingZeros().toPlainString();
+        }
+
+        // Exponential notation: Java renders 1.0E-7 where JS renders 1e-7
+        String str = Double.toString(value).replace(".0E", "E").toLowerCase(Locale.ROOT);
+        return str.contains("e-") ? str : str.replace("e", "e+");
+    }
+
+    /**
+     * Renders a value the way it would appear after JSON.stringify and a deserialization into a
+     * string map.
+     */
+    private static String toJsonString(Object value) {
+        if (value instanceof Double) {
+            double number = (Double) value;
+            return Double.isNaN(number) || Double.isInfinite(number) ? null : toJsString(number);
+        }
+
+        return value != null ? value.toString() : null;
+    }
+
+    /**
+     * The per-call evaluation context
+     */
+    private static class Context {
+        private final ConsumerDTO consumer;
+        private final Collection<GuestIdDTO> guestIds;
+        private final boolean guest;
+        private final List<String> complianceAttributes;
+        private Integer activeGuestCount;
+
+        public Context(ConsumerDTO consumer, Collection<GuestIdDTO> guestIds) {
+            this.consumer = consumer;
+            this.guestIds = guestIds;
+            this.guest = isGuest(consumer);
+
+            // Depending on the consumer, different attributes may affect compliance
+            this.complianceAttributes = this.guest ? VIRT_ATTRIBUTES : PHYSICAL_ATTRIBUTES;
+        }
+
+        public int getActiveGuestCount() {
+            if (this.activeGuestCount == null) {
+                int count = 0;
+
+                if (this.guestIds != null) {
+                    for (GuestIdDTO guestId : this.guestIds) {
+                        if (guestId != null && isGuestActive(guestId)) {
+                            ++count;
+                        }
+                    }
+                }
+
+                this.activeGuestCount = count;
+            }
+
+            return this.activeGuestCount;
+        }
+
+        public List<Ent> wrap(Collection<EntitlementDTO> entitlements) {
+            List<Ent> output = new ArrayList<>();
+
+            if (entitlements != null) {
+                for (EntitlementDTO entitlement : entitlements) {
+                    output.add(new Ent(entitlement, new PoolView(entitlement.getPool(), this.guest)));
+                }
+            }
+
+            return output;
+        }
+    }
+
+    /**
+     * An entitlement, as seen by the compliance rules
+     */
+    private static class Ent {
+        private final EntitlementDTO dto;
+        private final PoolView pool;
+        private final String id;
+        private final double quantity;
+        private final long startDate;
+        private final long endDate;
+
+        public Ent(EntitlementDTO dto, PoolView pool) {
+            this.dto = dto;
+            this.pool = pool;
+            this.id = dto.getId();
+            this.quantity = dto.getQuantity() != null ? dto.getQuantity() : 0;
+
+            // new Date(null) in JS yields the epoch
+            this.startDate = dto.getStartDate() != null ? dto.getStartDate().getTime() : 0;
+            this.endDate = dto.getEndDate() != null ? dto.getEndDate().getTime() : 0;
+        }
+    }
+
+    /**
+     * A read-only view of a pool DTO providing the attribute lookup semantics of the rules. This
+     * is the equivalent of the createPool function.
+     */
+    private static class PoolView {
+        private final PoolDTO dto;
+        private final Map<String, String> attributes;
+        private final Map<String, String> productAttributes;
+        private final Set<String> products;
+
+        public PoolView(PoolDTO dto, boolean guest) {
+            this.dto = dto;
+            this.attributes = dto.getAttributes() != null ?
+                new HashMap<>(dto.getAttributes()) :
+                new HashMap<>();
+            this.productAttributes = dto.getProductAttributes() != null ?
+                dto.getProductAttributes() :
+                Collections.emptyMap();
+
+            this.products = new LinkedHashSet<>();
+            if (dto.getProvidedProducts() != null) {
+                for (PoolDTO.ProvidedProductDTO provided : dto.getProvidedProducts()) {
+                    if (provided != null) {
+                        this.products.add(provided.getProductId());
+                    }
+                }
+            }
+
+            // When the pool is missing vcpu and the consumer is virtual, the pool should use cores
+            // instead. Like the rules, this is reflected in the pool returned with the status.
+            if (guest && !this.hasAttribute(VCPU_ATTRIBUTE) && this.hasAttribute(CORES_ATTRIBUTE)) {
+                double vcpu = parseInt(this.getAttribute(CORES_ATTRIBUTE));
+
+                // The rules append the attribute, so it's only visible to lookups if it wasn't
+                // already present with an unset value
+                if (!this.attributes.containsKey(VCPU_ATTRIBUTE)) {
+                    this.attributes.put(VCPU_ATTRIBUTE, toJsString(vcpu));
+                }
+
+                Map<String, String> updated = dto.getAttributes() != null ?
+                    new HashMap<>(dto.getAttributes()) :
+                    new HashMap<>();
+
+                updated.put(VCPU_ATTRIBUTE, toJsonString(vcpu));
+                dto.setAttributes(updated);
+            }
+        }
+
+        private static String findAttributeIn(String name, Map<String, String> attributes) {
+            String value = attributes.get(name);
+
+            // An attribute is considered not set if it has a value of 0
+            return "0".equals(value) ? null : value;
+        }
+
+        public String getAttribute(String name) {
+            String value = findAttributeIn(name, this.attributes);
+            return value != null ? value : findAttributeIn(name, this.productAttributes);
+        }
+
+        public boolean hasAttribute(String name) {
+            return this.getAttribute(name) != null;
+        }
+
+        public String getProductAttribute(String name) {
+            String value = findAttributeIn(name, this.productAttributes);
+            return value != null ? value : findAttributeIn(name, this.attributes);
+        }
+
+        public boolean isStacked() {
+            return this.productAttributes.containsKey(STACKING_ID_ATTRIBUTE);
+        }
+
+        public boolean provides(String productId) {
+            return Objects.equals(this.dto.getProductId(), productId) || this.products.contains(productId);
+        }
+    }
+
+    /**
+     * Port of the compliance tracker, which tracks the accumulated values of an entitlement or a
+     * stack of entitlements.
+     */
+    private static class Tracker {
+        private final Context context;
+        private final String type;
+        private String id;
+
+        private final List<String> entitlementIds;
+        private final Map<String, Object> accumulatedValues;
+        private String hostRestricted;
+
+        public Tracker(Context context, String id) {
+            this.context = context;
+            this.id = id;
+            this.type = id == null ? TRACKER_TYPE_ENTITLEMENT : TRACKER_TYPE_STACK;
+
+            this.entitlementIds = new ArrayList<>();
+            this.accumulatedValues = new HashMap<>();
+        }
+
+        public boolean enforces(String attribute) {
+            // Guests are not subjected to Sockets/RAM/Cores/Vcpus limitations if using a
+            // host-restricted sub-pool.
+            if (this.hostRestricted != null && this.context.guest &&
+                UNCHECKED_WHEN_HOST_RESTRICTED.contains(attribute)) {
+                return false;
+            }
+
+            return this.accumulatedValues.containsKey(attribute);
+        }
+
+        public void updateAccumulatedFromEnt(Ent ent) {
+            if (TRACKER_TYPE_ENTITLEMENT.equals(this.type) && this.entitlementIds.isEmpty()) {
+                this.id = ent.id;
+            }
+
+            // The rules use the "in" operator on an array for this check, which tests the array's
+            // property names rather than its values.
+            if (this.isArrayProperty(ent.id)) {
+                return;
+            }
+
+            this.entitlementIds.add(ent.id);
+
+            // If quantity is > 1 but the entitlement is not stacked only calculate compliance
+            // for quantity 1
+            double quantity = ent.quantity;
+            if (!ent.pool.isStacked() && quantity > 1) {
+                quantity = 1;
+            }
+
+            this.updateAccumulatedFromPool(ent.pool, quantity);
+        }
+
+        @SuppressWarnings("unchecked")
+        public void updateAccumulatedFromPool(PoolView pool, double quantity) {
+            String requiresHost = pool.getAttribute(REQUIRES_HOST_ATTRIBUTE);
+            if (requiresHost != null && !requiresHost.isEmpty()) {
+                this.hostRestricted = requiresHost;
+            }
+
+            for (String attribute : this.context.complianceAttributes) {
+                String poolValue = pool.getProductAttribute(attribute);
+                if (poolValue == null) {
+                    continue;
+                }
+
+                Object stackValue = this.enforces(attribute) ? this.accumulatedValues.get(attribute) : null;
+                Object accumulated;
+
+                switch (attribute) {
+                    case ARCH_ATTRIBUTE:
+                        // Architecture is accumulated by adding each pool value to a list of arch
+                        // strings.
+                        List<String> archs = stackValue != null ?
+                            (List<String>) stackValue :
+                            new ArrayList<>();
+
+                        archs.add(poolValue);
+                        accumulated = archs;
+                        break;
+
+                    case SOCKETS_ATTRIBUTE:
+                        double increment = parseInt(pool.getProductAttribute(INSTANCE_ATTRIBUTE));
+                        if (Double.isNaN(increment) || increment == 0) {
+                            increment = 1;
+                        }
+
+                        // Use lowest quantity evenly divisible by the instance multiplier
+                        double adjusted = quantity - (quantity % increment);
+                        accumulated = toInt32(stackValue) + (parseInt(poolValue) * adjusted) / increment;
+                        break;
+
+                    case GUEST_LIMIT_ATTRIBUTE:
+                        // Value doesn't matter, just need it to be enforced
+                        accumulated = -1.0;
+                        break;
+
+                    default:
+                        accumulated = toInt32(stackValue) + (parseInt(poolValue) * quantity);
+                }
+
+                this.accumulatedValues.put(attribute, accumulated);
+            }
+        }
+
+        private boolean isArrayProperty(String property) {
+            if ("length".equals(property)) {
+                return true;
+            }
+
+            if (property == null || property.isEmpty() ||
+                (property.length() > 1 && property.charAt(0) == '0')) {
+                return false;
+            }
+
+            for (int i = 0; i < property.length(); ++i) {
+                if (property.charAt(i) < '0' || property.charAt(i) > '9') {
+                    return false;
+                }
+            }
+
+            try {
+                return Long.parseLong(property) < this.entitlementIds.size();
+            }
+            catch (NumberFormatException e) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * The coverage result of a tracker
+     */
+    private static class Coverage {
+        private final boolean covered;
+        private final List<ComplianceReasonDTO> reasons;
+
+        public Coverage(boolean covered, List<ComplianceReasonDTO> reasons) {
+            this.covered = covered;
+            this.reasons = reasons;
+        }
+    }
+
+    /**
+     * The status built during a compliance evaluation
+     */
+    private static class StatusBuilder {
+        private final long date;
+        private final Map<String, Set<EntitlementDTO>> partialStacks;
+        private final Map<String, Set<EntitlementDTO>> partiallyCompliantProducts;
+        private final Map<String, Set<EntitlementDTO>> compliantProducts;
+        private final Set<String> nonCompliantProducts;
+        private final Set<ComplianceReasonDTO> reasons;
+
+        public StatusBuilder(long date) {
+            this.date = date;
+            this.partialStacks = new LinkedHashMap<>();
+            this.partiallyCompliantProducts = new LinkedHashMap<>();
+            this.compliantProducts = new LinkedHashMap<>();
+            this.nonCompliantProducts = new LinkedHashSet<>();
+            this.reasons = new LinkedHashSet<>();
+        }
+
+        public void addPartialStack(String stackId, Ent ent) {
+            // JS coerces a null key to the string "null"
+            this.partialStacks.computeIfAbsent(String.valueOf(stackId), k -> new LinkedHashSet<>())
+                .add(ent.dto);
+        }
+
+        public void addPartialProduct(String productId, Ent ent) {
+            this.partiallyCompliantProducts.computeIfAbsent(productId, k -> new LinkedHashSet<>())
+                .add(ent.dto);
+        }
+
+        public void addCompliantProduct(String productId, Ent ent) {
+            this.compliantProducts.computeIfAbsent(productId, k -> new LinkedHashSet<>())
+                .add(ent.dto);
+        }
+
+        public void addReason(ComplianceReasonDTO reason) {
+            this.reasons.add(reason);
+        }
+
+        public void addReasons(Collection<ComplianceReasonDTO> reasons) {
+            this.reasons.addAll(reasons);
+        }
+
+        public boolean isProductCompliant(String productId) {
+            return this.compliantProducts.containsKey(productId);
+        }
+
+        public boolean isProductPartial(String productId) {
+            return this.partiallyCompliantProducts.containsKey(productId);
+        }
+
+        public boolean isCompliant() {
+            return this.nonCompliantProducts.isEmpty() && this.partiallyCompliantProducts.isEmpty();
+        }
+
+        public boolean isPartiallyCompliant() {
+            return !this.compliantProducts.isEmpty() || !this.partiallyCompliantProducts.isEmpty();
+        }
+
+        public ComplianceStatusDTO toDTO() {
+            return new ComplianceStatusDTO()
+                .setDate(new Date(this.date))
+                .setCompliantProducts(this.compliantProducts)
+                .setPartiallyCompliantProducts(this.partiallyCompliantProducts)
+                .setPartialStacks(this.partialStacks)
+                .setNonCompliantProducts(this.nonCompliantProducts)
+                .setReasons(this.reasons);
+        }
+    }
+
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.compliance.hash;
+
+import org.candlepin.model.Consumer;
+import org.candlepin.model.Entitlement;
+
+import java.util.Collection;
+import java.util.Date;
+
+/**
+ * Creates a hash of the inputs to the compliance rules, such that two status calculations with
+ * the same hash are expected to produce the same result.
+ *
+ * Pools are hashed by what they provide rather than their consumption, and products by version,
+ * so that entitlements granted to other consumers do not change the hash. The date of the
+ * calculation is reduced to a bucket of the given length along with the phase of each entitlement
+ * relative to the date, so that a hash only changes over time when an entitlement starts or
+ * expires, or the bucket rolls over. Product compliance date ranges are bounded by the date of the
+ * calculation itself, so when they are requested, the exact date is hashed instead.
+ */
+public class ComplianceInputHasher extends Hasher {
+
+    public ComplianceInputHasher(String rulesVersion, Consumer consumer, Collection<Entitlement> entitlements,
+        Date date, long bucketLength, boolean calculateCompliantUntil,
+        boolean calculateProductComplianceDateRanges) {
+
+        long dateKey = bucketLength > 0 && !calculateProductComplianceDateRanges ?
+            date.getTime() / bucketLength :
+            date.getTime();
+
+        putObject(rulesVersion, HashableStringGenerators.STRING);
+        putObject(";" + dateKey + ";" +
+            calculateCompliantUntil + ";" + calculateProductComplianceDateRanges + ";",
+            HashableStringGenerators.STRING);
+
+        putObject(consumer.getUuid() + ";" + consumer.getTypeId() + ";", HashableStringGenerators.STRING);
+        putCollection(consumer.getFacts() != null ? consumer.getFacts().entrySet() : null,
+            HashableStringGenerators.DELIMITED_STRING_ENTRY);
+        putObject(";", HashableStringGenerators.STRING);
+        putCollection(consumer.getInstalledProducts(), HashableStringGenerators.INSTALLED_PRODUCT);
+        putObject(";", HashableStringGenerators.STRING);
+        putCollection(consumer.getGuestIds(), HashableStringGenerators.GUEST_ID);
+        putObject(";", HashableStringGenerators.STRING);
+        putCollection(entitlements, new EntitlementPhaseGenerator(date));
+    }
+
+    /**
+     * Checks whether or not the given entitlements can be hashed by this hasher. Entitlements which
+     * have not yet been persisted cannot be told apart from one another, and may not be hashed.
+     *
+     * @param entitlements
+     *  the entitlements to check
+     *
+     * @return
+     *  true if the entitlements can be hashed; false otherwise
+     */
+    public static boolean canHash(Collection<Entitlement> entitlements) {
+        for (Entitlement entitlement : entitlements) {
+            if (entitlement.getId() == null || entitlement.getPool() == null ||
+                entitlement.getPool().getId() == null) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Generates a string from an {@link Entitlement}, including whether it has yet to start, is
+     * active, or has expired on the given date.
+     */
+    private static class EntitlementPhaseGenerator implements HashableStringGenerator<Entitlement> {
+        private final Date date;
+
+        public EntitlementPhaseGenerator(Date date) {
+            this.date = date;
+        }
+
+        @Override
+        public String generate(Entitlement target) {
+            if (target == null) {
+                return null;
+            }
+
+            Date start = target.getStartDate();
+            Date end = target.getEndDate();
+            String phase = start != null && this.date.before(start) ? "pending" :
+                end != null && this.date.after(end) ? "expired" : "active";
+
+            return target.getId() + ";" + target.getQuantity() + ";" + phase + ";" +
+                (end != null ? end.getTime() : null) + ";" +
+                HashableStringGenerators.generateFromObject(target.getPool(),
+                HashableStringGenerators.POOL_DEFINITION) + "|";
+        }
+    }
+
+}
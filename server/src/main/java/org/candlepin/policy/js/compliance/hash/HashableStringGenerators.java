@@ -18,7 +18,9 @@ package org.candlepin.policy.js.compliance.hash;
 import org.candlepin.model.Consumer;
 import org.candlepin.model.ConsumerInstalledProduct;
 import org.candlepin.model.Entitlement;
+import org.candlepin.model.GuestId;
 import org.candlepin.model.Pool;
+import org.candlepin.model.Product;
 import org.candlepin.policy.js.compliance.ComplianceReason;
 
 import java.util.Collection;
@@ -37,6 +39,8 @@ public class HashableStringGenerators {
 
     public static final StringGenerator STRING = new StringGenerator();
     public static final StringEntryGenerator STRING_ENTRY = new StringEntryGenerator();
+    public static final DelimitedStringEntryGenerator DELIMITED_STRING_ENTRY =
+        new DelimitedStringEntryGenerator();
     public static final EntitlementSetEntryGenerator ENTITLEMENT_SET_ENTRY =
         new EntitlementSetEntryGenerator();
     public static final EntitlementGenerator ENTITLEMENT = new EntitlementGenerator();
@@ -45,6 +49,9 @@ public class HashableStringGenerators {
     public static final ConsumerGenerator CONSUMER = new ConsumerGenerator();
     public static final ConsumerInstalledProductGenerator INSTALLED_PRODUCT =
         new ConsumerInstalledProductGenerator();
+    public static final PoolDefinitionGenerator POOL_DEFINITION = new PoolDefinitionGenerator();
+    public static final ProductGenerator PRODUCT = new ProductGenerator();
+    public static final GuestIdGenerator GUEST_ID = new GuestIdGenerator();
 
 
     private HashableStringGenerators() {
@@ -157,16 +164,6 @@ public class HashableStringGenerators {
             return target.getId() + getTime(target.getUpdated());
         }
 
-        /**
-         * Safely get time from a date. If the specified date is null, return null;
-         *
-         * @param date the target date
-         * @return time as long, or null if the specified date is null;
-         */
-        private Long getTime(Date date) {
-            return date == null ? null : date.getTime();
-        }
-
     }
 
     /**
@@ -199,6 +196,28 @@ public class HashableStringGenerators {
 
     }
 
+    /**
+     * Generates a string from an {@link Entry} of String key and String intended for use in a hash,
+     * prefixing the key and value with their lengths so that distinct entries can never generate
+     * the same string.
+     */
+    static class DelimitedStringEntryGenerator implements HashableStringGenerator<Entry<String, String>> {
+
+        @Override
+        public String generate(Entry<String, String> target) {
+            if (target == null) {
+                return null;
+            }
+
+            return delimit(target.getKey()) + delimit(target.getValue());
+        }
+
+        private String delimit(String value) {
+            return value == null ? "-1:" : value.length() + ":" + value;
+        }
+
+    }
+
     /**
      * Generates a String from a {@link Consumer} intended for use in a hash.
      */
@@ -239,4 +258,70 @@ public class HashableStringGenerators {
 
     }
 
+    /**
+     * Generates a string from the parts of a {@link Pool} which define what it provides, rather than
+     * its consumption, intended for use in a hash.
+     */
+    private static class PoolDefinitionGenerator implements HashableStringGenerator<Pool> {
+
+        @Override
+        public String generate(Pool target) {
+            if (target == null) {
+                return null;
+            }
+
+            String generated = target.getId() + ";";
+            generated += getTime(target.getStartDate()) + ";" + getTime(target.getEndDate()) + ";";
+            generated += generateFromObject(target.getProduct(), PRODUCT) + ";";
+            generated += generateFromObject(target.getDerivedProduct(), PRODUCT) + ";";
+            generated += generateFromCollection(target.getProvidedProducts(), PRODUCT) + ";";
+            generated += generateFromCollection(target.getAttributes().entrySet(), DELIMITED_STRING_ENTRY);
+            return generated;
+        }
+
+    }
+
+    /**
+     * Generates a string from a {@link Product} version intended for use in a hash.
+     */
+    private static class ProductGenerator implements HashableStringGenerator<Product> {
+
+        @Override
+        public String generate(Product target) {
+            if (target == null) {
+                return null;
+            }
+
+            return target.getUuid() + ":" + getTime(target.getUpdated()) + ",";
+        }
+
+    }
+
+    /**
+     * Generates a string from a {@link GuestId} intended for use in a hash.
+     */
+    private static class GuestIdGenerator implements HashableStringGenerator<GuestId> {
+
+        @Override
+        public String generate(GuestId target) {
+            if (target == null) {
+                return null;
+            }
+
+            return target.getGuestId() + "{" +
+                generateFromCollection(target.getAttributes().entrySet(), DELIMITED_STRING_ENTRY) + "}";
+        }
+
+    }
+
+    /**
+     * Safely get time from a date. If the specified date is null, return null;
+     *
+     * @param date the target date
+     * @return time as long, or null if the specified date is null;
+     */
+    private static Long getTime(Date date) {
+        return date == null ? null : date.getTime();
+    }
+
 }
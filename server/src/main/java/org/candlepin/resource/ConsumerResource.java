@@ -2421,7 +2421,9 @@ public class ConsumerResource {
     }
 
     /**
-     * Retrieves a compressed file representation of a Consumer (manifest).
+     * Retrieves a compressed file representation of a Consumer (manifest). The manifest is
+     * generated in full before it is written to the response, so a failure to generate it results
+     * in an error response rather than a truncated archive.
      *
      * @deprecated use GET /consumers/:consumer_uuid/export/async
      * @param response
@@ -2429,7 +2431,6 @@ public class ConsumerResource {
      * @param cdnLabel
      * @param webAppPrefix
      * @param apiUrl
-     * @return the generated file archive.
      */
     @Deprecated
     @ApiOperation(
@@ -2441,7 +2442,7 @@ public class ConsumerResource {
     @Produces("application/zip")
     @GET
     @Path("{consumer_uuid}/export")
-    public File exportData(
+    public void exportData(
         @Context HttpServletResponse response,
         @PathParam("consumer_uuid") @Verify(Consumer.class) String consumerUuid,
         @QueryParam("cdn_label") String cdnLabel,
@@ -2456,10 +2457,8 @@ public class ConsumerResource {
         ConsumerType ctype = this.consumerTypeCurator.getConsumerType(consumer);
 
         try {
-            File archive = manifestManager.generateManifest(consumerUuid, cdnLabel, webAppPrefix, apiUrl,
-                getExtensionParamMap(extensionArgs));
-            response.addHeader("Content-Disposition", "attachment; filename=" + archive.getName());
-            return archive;
+            manifestManager.writeManifestToResponse(consumerUuid, cdnLabel, webAppPrefix, apiUrl,
+                getExtensionParamMap(extensionArgs), response);
         }
         catch (ExportCreationException e) {
             throw new IseException(i18n.tr("Unable to create export archive"), e);
@@ -17,6 +17,7 @@ package org.candlepin.resource;
 import org.candlepin.auth.Principal;
 import org.candlepin.common.config.Configuration;
 import org.candlepin.common.exceptions.IseException;
+import org.candlepin.common.exceptions.NotFoundException;
 import org.candlepin.config.ConfigProperties;
 import org.candlepin.model.CertificateSerial;
 import org.candlepin.model.CertificateSerialCurator;
@@ -27,8 +28,12 @@ import com.google.inject.Inject;
 
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
 import io.swagger.annotations.Authorization;
 
+import org.xnap.commons.i18n.I18n;
+
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -58,16 +63,18 @@ public class CrlResource {
     private CrlFileUtil crlFileUtil;
     private PKIUtility pkiUtility;
     private CertificateSerialCurator certificateSerialCurator;
+    private I18n i18n;
 
 
     @Inject
     public CrlResource(Configuration config, CrlFileUtil crlFileUtil, PKIUtility pkiUtility,
-        CertificateSerialCurator certificateSerialCurator) {
+        CertificateSerialCurator certificateSerialCurator, I18n i18n) {
 
         this.config = config;
         this.crlFileUtil = crlFileUtil;
         this.pkiUtility = pkiUtility;
         this.certificateSerialCurator = certificateSerialCurator;
+        this.i18n = i18n;
     }
 
     @ApiOperation(notes = "Retrieves the Certificate Revocation List", value = "getCurrentCrl", response =
@@ -96,6 +103,36 @@ public class CrlResource {
         }
     }
 
+    @ApiOperation(notes = "Retrieves the delta Certificate Revocation List listing the changes made " +
+        "since the current Certificate Revocation List was issued", value = "getDeltaCrl",
+        response = String.class)
+    @ApiResponses({ @ApiResponse(code = 404, message = "") })
+    @GET
+    @Path("delta")
+    @Produces(MediaType.TEXT_PLAIN)
+    public Response getDeltaCrl(@Context Principal principal) throws CRLException {
+        File crlFile = new File(getCrlFilePath());
+
+        if (!this.crlFileUtil.isDeltaCRLEnabled()) {
+            throw new NotFoundException(i18n.tr("Delta CRLs are not enabled"));
+        }
+
+        File deltaFile = this.crlFileUtil.getDeltaCRLFile();
+
+        try {
+            this.crlFileUtil.syncCRLWithDB(crlFile);
+
+            if (!deltaFile.exists() || deltaFile.length() < 1) {
+                throw new IseException(i18n.tr("Delta CRL could not be generated"));
+            }
+
+            return Response.ok().entity(new FileInputStream(deltaFile)).build();
+        }
+        catch (IOException e) {
+            throw new IseException(e.getMessage(), e);
+        }
+    }
+
     @ApiOperation(notes = "Deletes a Certificate from the Revocation List", value = "unrevoke")
     @DELETE
     @Produces(MediaType.APPLICATION_JSON)
@@ -112,7 +149,7 @@ public class CrlResource {
             }
 
             if (serials.size() > 0) {
-                this.crlFileUtil.updateCRLFile(crlFile, null, serials);
+                this.crlFileUtil.updateCRL(crlFile, null, serials);
             }
         }
         catch (IOException e) {
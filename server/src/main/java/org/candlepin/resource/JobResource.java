@@ -29,11 +29,13 @@ import org.candlepin.common.paging.PageRequest;
 import org.candlepin.config.ConfigProperties;
 import org.candlepin.dto.ModelTranslator;
 import org.candlepin.dto.api.v1.AsyncJobStatusDTO;
+import org.candlepin.dto.api.v1.JobQueueStatisticsDTO;
 import org.candlepin.dto.api.v1.SchedulerStatusDTO;
 import org.candlepin.model.AsyncJobStatus;
 import org.candlepin.model.AsyncJobStatus.JobState;
 import org.candlepin.model.AsyncJobStatusCurator;
 import org.candlepin.model.AsyncJobStatusCurator.AsyncJobStatusQueryBuilder;
+import org.candlepin.model.AsyncJobStatusCurator.JobQueueStatistics;
 import org.candlepin.model.InvalidOrderKeyException;
 import org.candlepin.model.Owner;
 import org.candlepin.model.OwnerCurator;
@@ -218,6 +220,11 @@ public class JobResource {
         // Do paging bits, if necessary
         PageRequest pageRequest = ResteasyContext.getContextData(PageRequest.class);
         if (pageRequest != null) {
+            if (pageRequest.isCursorPaging()) {
+                String errmsg = this.i18n.tr("This endpoint does not support paging by cursor.");
+                throw new BadRequestException(errmsg);
+            }
+
             Page<Stream<AsyncJobStatusDTO>> page = new Page<>();
             page.setPageRequest(pageRequest);
 
@@ -254,6 +261,33 @@ public class JobResource {
         }
     }
 
+    @ApiOperation(
+        value = "fetches the number of waiting, queued and running jobs and the longest wait time of " +
+            "pending jobs, for each job key",
+        response = JobQueueStatisticsDTO.class, responseContainer = "list")
+    @GET
+    @Path("/statistics")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Transactional
+    public Stream<JobQueueStatisticsDTO> getJobQueueStatistics() {
+        long now = System.currentTimeMillis();
+
+        return this.jobCurator.getJobQueueStatistics().stream()
+            .map(stats -> this.buildJobQueueStatisticsDTO(stats, now));
+    }
+
+    private JobQueueStatisticsDTO buildJobQueueStatisticsDTO(JobQueueStatistics stats, long now) {
+        Date oldestPending = stats.getOldestPending();
+
+        return new JobQueueStatisticsDTO()
+            .setJobKey(stats.getJobKey())
+            .setWaiting(stats.getWaiting())
+            .setQueued(stats.getQueued())
+            .setRunning(stats.getRunning())
+            .setOldestPending(oldestPending)
+            .setLongestWait(oldestPending != null ? Math.max(0, now - oldestPending.getTime()) : null);
+    }
+
     @ApiOperation(
         value = "fetches the job status associated with the specified job ID",
         response = AsyncJobStatusDTO.class)
@@ -24,11 +24,13 @@ import org.candlepin.config.ConfigProperties;
 import org.candlepin.controller.mode.CandlepinModeManager;
 import org.candlepin.controller.mode.CandlepinModeManager.Mode;
 import org.candlepin.controller.mode.ModeChangeReason;
+import org.candlepin.dto.api.v1.KeyPairPoolStatusDTO;
 import org.candlepin.dto.api.v1.KeycloakStatusDTO;
 import org.candlepin.dto.api.v1.StatusDTO;
 import org.candlepin.guice.CandlepinCapabilities;
 import org.candlepin.model.Rules.RulesSourceEnum;
 import org.candlepin.model.RulesCurator;
+import org.candlepin.pki.KeyPairPool;
 import org.candlepin.policy.js.JsRunnerProvider;
 
 import com.google.inject.Inject;
@@ -76,17 +78,19 @@ public class StatusResource {
     private CandlepinCache candlepinCache;
     private CandlepinModeManager modeManager;
     private KeycloakConfiguration keycloakConfig;
+    private KeyPairPool keyPairPool;
 
     @Inject
     public StatusResource(RulesCurator rulesCurator, Configuration config, JsRunnerProvider jsProvider,
         CandlepinCache candlepinCache, CandlepinModeManager modeManager,
-        KeycloakConfiguration keycloakConfig) {
+        KeycloakConfiguration keycloakConfig, KeyPairPool keyPairPool) {
 
         this.rulesCurator = Objects.requireNonNull(rulesCurator);
         this.jsProvider = Objects.requireNonNull(jsProvider);
         this.candlepinCache = Objects.requireNonNull(candlepinCache);
         this.modeManager = Objects.requireNonNull(modeManager);
         this.keycloakConfig = Objects.requireNonNull(keycloakConfig);
+        this.keyPairPool = Objects.requireNonNull(keyPairPool);
 
         Map<String, String> map = VersionUtil.getVersionMap();
         version = map.get("version");
@@ -113,7 +117,16 @@ public class StatusResource {
      *   "standalone" : true,
      *   "timeUTC" : [date],
      *   "managerCapabilities" : [ "cores", "ram", "instance_multiplier" ],
-     *   "rulesSource" : "DEFAULT"
+     *   "rulesSource" : "DEFAULT",
+     *   "keyPairPool" : {
+     *     "enabled" : true,
+     *     "depth" : 20,
+     *     "capacity" : 20,
+     *     "generated" : 150,
+     *     "refillRate" : 2.5,
+     *     "hits" : 130,
+     *     "misses" : 4
+     *   }
      * }
      * </pre>
      * <p>
@@ -180,6 +193,7 @@ public class StatusResource {
             .setModeReason(mcr != null ? mcr.toString() : null)
             .setModeChangeTime(mcr != null ? mcr.getTime() : null)
             .setManagerCapabilities(caps)
+            .setKeyPairPool(new KeyPairPoolStatusDTO(this.keyPairPool))
             .setTimeUTC(new Date());
 
         statusCache.setStatus(status);
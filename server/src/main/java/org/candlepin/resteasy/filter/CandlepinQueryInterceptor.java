@@ -14,23 +14,35 @@
  */
 package org.candlepin.resteasy.filter;
 
+import org.candlepin.common.config.Configuration;
+import org.candlepin.common.exceptions.BadRequestException;
 import org.candlepin.common.paging.Page;
+import org.candlepin.common.paging.PageCursor;
 import org.candlepin.common.paging.PageRequest;
+import org.candlepin.config.ConfigProperties;
 import org.candlepin.model.AbstractHibernateObject;
 import org.candlepin.model.CandlepinQuery;
+import org.candlepin.model.CursorPaging;
 import org.candlepin.model.ResultIterator;
 import org.candlepin.resteasy.JsonProvider;
 
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 
+import org.hibernate.CacheMode;
+import org.hibernate.HibernateException;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.Order;
 import org.jboss.resteasy.core.ResteasyContext;
+import org.xnap.commons.i18n.I18n;
 
+import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
 
 import javax.persistence.EntityManager;
@@ -51,12 +63,17 @@ public class CandlepinQueryInterceptor implements ContainerResponseFilter {
 
     protected final JsonProvider jsonProvider;
     protected final Provider<EntityManager> emProvider;
+    protected final javax.inject.Provider<I18n> i18nProvider;
+    protected final int batchSize;
 
     @Inject
-    public CandlepinQueryInterceptor(
-        final JsonProvider jsonProvider, final Provider<EntityManager> emProvider) {
+    public CandlepinQueryInterceptor(final JsonProvider jsonProvider,
+        final Provider<EntityManager> emProvider, final javax.inject.Provider<I18n> i18nProvider,
+        final Configuration config) {
         this.jsonProvider = Objects.requireNonNull(jsonProvider);
+        this.i18nProvider = Objects.requireNonNull(i18nProvider);
         this.emProvider = Objects.requireNonNull(emProvider);
+        this.batchSize = Math.max(1, config.getInt(ConfigProperties.QUERY_STREAM_BATCH_SIZE));
     }
 
     /**
@@ -86,11 +103,12 @@ public class CandlepinQueryInterceptor implements ContainerResponseFilter {
                 // our cursor mid-stream.
                 query.useSession(session);
 
-                // Apply any paging config we may have
-                this.applyPaging(pageRequest, query);
+                // Apply any paging config we may have. Cursor pages are fetched up front, as their
+                // next cursor is derived from the last result on the page.
+                List<?> pageData = this.applyPaging(pageRequest, query);
 
                 // Set the output streamer that will stream our query result
-                responseContext.setEntity(this.buildOutputStreamer(session, query));
+                responseContext.setEntity(this.buildOutputStreamer(session, query, pageData));
             }
             catch (RuntimeException e) {
                 if (session != null) {
@@ -103,9 +121,13 @@ public class CandlepinQueryInterceptor implements ContainerResponseFilter {
         }
     }
 
-    private void applyPaging(final PageRequest pageRequest, final CandlepinQuery query) {
+    private List<?> applyPaging(final PageRequest pageRequest, final CandlepinQuery query) {
         if (pageRequest == null) {
-            return;
+            return null;
+        }
+
+        if (pageRequest.isCursorPaging()) {
+            return this.applyCursorPaging(pageRequest, query);
         }
 
         // Impl note:
@@ -136,21 +158,90 @@ public class CandlepinQueryInterceptor implements ContainerResponseFilter {
 
             ResteasyContext.pushContext(Page.class, page);
         }
+
+        return null;
     }
 
-    private StreamingOutput buildOutputStreamer(Session session, CandlepinQuery query) {
+    private List<?> applyCursorPaging(final PageRequest pageRequest, final CandlepinQuery query) {
+        I18n i18n = this.i18nProvider.get();
+        String sortField = CursorPaging.getSortBy(pageRequest);
+        PageCursor cursor = pageRequest.getPageCursor();
+
+        if (cursor != null) {
+            if (!cursor.matches(sortField, CursorPaging.getOrder(pageRequest))) {
+                throw new BadRequestException(
+                    i18n.tr("The cursor does not match the requested sort field and order"));
+            }
+
+            query.addRestriction(CursorPaging.getRestriction(cursor));
+        }
+
+        for (Order order : CursorPaging.getOrders(pageRequest)) {
+            query.addOrder(order);
+        }
+
+        // The link header is written before the results are streamed, so we need to know up front
+        // whether or not another page follows this one. Rather than counting every result, fetch
+        // the page along with the result following it, if any, and build the cursor from the last
+        // result on the page.
+        Page<List<?>> page;
+
+        try {
+            page = query.listCursorPage(pageRequest);
+        }
+        catch (HibernateException | IllegalArgumentException | ClassCastException e) {
+            throw new BadRequestException(
+                i18n.tr("Results cannot be paged by cursor when sorted by \"{0}\"", sortField), e);
+        }
+
+        List<?> pageData = page.getPageData();
+
+        // Note: we don't need to store the page data in the page
+        page.setPageData(null);
+        ResteasyContext.pushContext(Page.class, page);
+
+        return pageData;
+    }
+
+    private StreamingOutput buildOutputStreamer(Session session, CandlepinQuery query, List<?> pageData) {
         ObjectMapper mapper = this.jsonProvider
             .locateMapper(Object.class, MediaType.APPLICATION_JSON_TYPE);
 
+        // We flush once per batch rather than after every element
+        ObjectWriter writer = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        int batchSize = this.batchSize;
+
+        // Have the driver fetch rows in batches, rather than buffer the entire result set
+        query.setFetchSize(batchSize);
+
         return stream -> {
+            // The results are only read to be written out, so there's no need for Hibernate to keep
+            // snapshots of them for dirty checking, or to put them in the second-level cache.
+            session.setDefaultReadOnly(true);
+            session.setCacheMode(CacheMode.GET);
+
             try (
                 JsonGenerator generator = mapper.getJsonFactory().createGenerator(stream);
-                ResultIterator<Object> iterator = query.iterate()) {
+                ResultIterator<Object> results = pageData == null ? query.iterate() : null) {
 
+                Iterator<?> iterator = results != null ? results : pageData.iterator();
                 generator.writeStartArray();
 
+                int count = 0;
                 while (iterator.hasNext()) {
-                    mapper.writeValue(generator, iterator.next());
+                    writer.writeValue(generator, iterator.next());
+
+                    if (++count % batchSize == 0) {
+                        generator.flush();
+
+                        // Detach everything loaded for the batch, including any lazily loaded
+                        // associations, so the session doesn't grow along with the result set.
+                        // Fetched cursor pages are bounded by the page size, and the results still
+                        // to be written must remain attached.
+                        if (results != null) {
+                            session.clear();
+                        }
+                    }
                 }
 
                 generator.writeEndArray();
@@ -14,6 +14,7 @@
  */
 package org.candlepin.service.impl;
 
+import org.candlepin.cache.ConsumerPrincipalCache;
 import org.candlepin.model.CertificateSerial;
 import org.candlepin.model.CertificateSerialCurator;
 import org.candlepin.model.Consumer;
@@ -49,6 +50,7 @@ public class DefaultIdentityCertServiceAdapter implements
     private IdentityCertificateCurator idCertCurator;
     private KeyPairCurator keyPairCurator;
     private CertificateSerialCurator serialCurator;
+    private ConsumerPrincipalCache principalCache;
     private Function<Date, Date> endDateGenerator;
 
     @SuppressWarnings("unchecked")
@@ -57,11 +59,13 @@ public class DefaultIdentityCertServiceAdapter implements
         IdentityCertificateCurator identityCertCurator,
         KeyPairCurator keyPairCurator,
         CertificateSerialCurator serialCurator,
+        ConsumerPrincipalCache principalCache,
         @Named("endDateGenerator") Function endDtGen) {
         this.pki = pki;
         this.idCertCurator = identityCertCurator;
         this.keyPairCurator = keyPairCurator;
         this.serialCurator = serialCurator;
+        this.principalCache = principalCache;
         this.endDateGenerator = endDtGen;
     }
 
@@ -115,6 +119,11 @@ public class DefaultIdentityCertServiceAdapter implements
             idCertCurator.delete(certificate);
         }
 
+        // Don't keep authenticating the consumer from what was cached for its old certificate, once
+        // the new one has been committed
+        String consumerUuid = consumer.getUuid();
+        this.idCertCurator.runAfterCompletion(() -> this.principalCache.invalidateConsumer(consumerUuid));
+
         return generate(consumer);
     }
 
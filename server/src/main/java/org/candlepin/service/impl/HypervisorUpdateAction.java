@@ -36,6 +36,7 @@ import org.candlepin.resource.util.GuestMigration;
 import org.candlepin.service.SubscriptionServiceAdapter;
 import org.candlepin.util.Transactional;
 
+import com.google.common.collect.Iterables;
 import com.google.inject.Inject;
 
 import org.apache.commons.lang.StringUtils;
@@ -43,9 +44,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -107,6 +110,27 @@ public class HypervisorUpdateAction {
         parseHypervisorList(hypervisors, hosts, guests, incomingHosts);
         VirtConsumerMap hypervisorConsumersMap = new VirtConsumerMap();
 
+        int chunkSize = this.config.getInt(ConfigProperties.HYPERVISOR_UPDATE_CHUNK_SIZE);
+        if (chunkSize > 0) {
+            this.reconcileHostsInChunks(owner, hosts, incomingHosts, result, hypervisorConsumersMap, create,
+                principal, jobReporterId, chunkSize);
+        }
+        else {
+            this.reconcileHosts(owner, hosts, incomingHosts, result, hypervisorConsumersMap, create,
+                principal, jobReporterId);
+        }
+
+        return new Result(result, hypervisorConsumersMap);
+    }
+
+    /**
+     * Reconciles each of the given hosts in a transaction of its own, looking up the existing host
+     * consumer of each as it is reconciled.
+     */
+    private void reconcileHosts(Owner owner, Collection<String> hosts, Map<String, Consumer> incomingHosts,
+        HypervisorUpdateResultDTO result, VirtConsumerMap hypervisorConsumersMap, boolean create,
+        String principal, String jobReporterId) {
+
         HypervisorUpdateAction act = this;
         Transactional<Consumer> transaction = this.consumerCurator.transactional(args ->
             act.reconcileHost((Owner) args[0], (Consumer) args[1], (HypervisorUpdateResultDTO) args[2],
@@ -130,8 +154,169 @@ public class HypervisorUpdateAction {
                     hypervisorId, e);
             }
         }
+    }
 
-        return new Result(result, hypervisorConsumersMap);
+    /**
+     * Reconciles the given hosts in chunks, each committed in a single transaction. The existing host
+     * consumers of each chunk are loaded, locked and refreshed together at the start of its
+     * transaction, so the changes to each host are determined in memory from its current state and
+     * written together when the chunk is flushed.
+     * <p></p>
+     * Should a chunk fail, its transaction is rolled back and its hosts are reconciled one at a time
+     * instead, such that only the hosts which cannot be reconciled are reported as failed, exactly
+     * as they would be had they been reconciled individually from the start.
+     */
+    @SuppressWarnings("unchecked")
+    private void reconcileHostsInChunks(Owner owner, Collection<String> hosts,
+        Map<String, Consumer> incomingHosts, HypervisorUpdateResultDTO result,
+        VirtConsumerMap hypervisorConsumersMap, boolean create, String principal, String jobReporterId,
+        int chunkSize) {
+
+        HypervisorUpdateAction act = this;
+        Transactional<List<Consumer>> transaction = this.consumerCurator.transactional(args ->
+            act.reconcileChunk((Owner) args[0], (List<String>) args[1], (Map<String, Consumer>) args[2],
+            (HypervisorUpdateResultDTO) args[3], (Boolean) args[4], (String) args[5], (String) args[6],
+            (List<Consumer>) args[7]))
+            .onCommit(status -> sink.sendEvents())
+            .onRollback(status -> sink.rollback());
+
+        for (List<String> chunk : Iterables.partition(hosts, chunkSize)) {
+            HypervisorUpdateResultDTO chunkResult = new HypervisorUpdateResultDTO();
+            List<Consumer> touched = new ArrayList<>();
+
+            try {
+                List<Consumer> reconciled = transaction.execute(owner, chunk, incomingHosts, chunkResult,
+                    create, principal, jobReporterId, touched);
+
+                for (Consumer knownHost : reconciled) {
+                    hypervisorConsumersMap.add(knownHost.getHypervisorId().getHypervisorId(), knownHost);
+                }
+
+                this.mergeResult(result, chunkResult);
+            }
+            catch (Exception e) {
+                log.debug("Unable to reconcile chunk of {} hypervisor(s); reconciling individually:",
+                    chunk.size(), e);
+
+                // Discard any state left over from the failed chunk before trying each host again
+                this.consumerCurator.evictAll(touched);
+
+                VirtConsumerMap chunkConsumersMap = new VirtConsumerMap();
+                this.reconcileHosts(owner, chunk, incomingHosts, result, chunkConsumersMap, create,
+                    principal, jobReporterId);
+
+                for (Consumer knownHost : chunkConsumersMap.getConsumers()) {
+                    hypervisorConsumersMap.add(knownHost.getHypervisorId().getHypervisorId(), knownHost);
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads the existing host consumers for each of the given hypervisors, matching them by
+     * hypervisor ID and, if enabled, system UUID.
+     */
+    private KnownHosts loadKnownHosts(Owner owner, Collection<String> hosts,
+        Map<String, Consumer> incomingHosts) {
+
+        Map<String, Consumer> byHypervisorId = new HashMap<>(this.consumerCurator
+            .getHostConsumersByHypervisorId(owner.getId(), hosts));
+
+        Map<String, Consumer> bySystemUuid = new HashMap<>();
+        if (this.config.getBoolean(ConfigProperties.USE_SYSTEM_UUID_FOR_MATCHING)) {
+            Set<String> systemUuids = new HashSet<>();
+
+            for (String hypervisorId : hosts) {
+                String systemUuid = incomingHosts.get(hypervisorId).getFact(Consumer.Facts.SYSTEM_UUID);
+                if (systemUuid != null && !byHypervisorId.containsKey(hypervisorId.toLowerCase())) {
+                    systemUuids.add(systemUuid);
+                }
+            }
+
+            bySystemUuid.putAll(this.consumerCurator.getConsumersBySystemUuid(owner.getId(), systemUuids));
+        }
+
+        return new KnownHosts(byHypervisorId, bySystemUuid,
+            this.config.getBoolean(ConfigProperties.USE_SYSTEM_UUID_FOR_MATCHING));
+    }
+
+    /**
+     * Reconciles a chunk of hosts against their existing host consumers. The existing hosts of the
+     * chunk are loaded and locked in a consistent order before any are modified, then refreshed,
+     * since the session may still hold them as they were when an earlier chunk was committed.
+     * Changes are flushed once, after every host of the chunk has been reconciled.
+     */
+    private List<Consumer> reconcileChunk(Owner owner, List<String> chunk,
+        Map<String, Consumer> incomingHosts, HypervisorUpdateResultDTO result, boolean create,
+        String principal, String jobReporterId, List<Consumer> touched) {
+
+        KnownHosts knownHosts = this.loadKnownHosts(owner, chunk, incomingHosts);
+        log.debug("Loaded {} existing host consumer(s) for {} reported hypervisor(s)", knownHosts.size(),
+            chunk.size());
+
+        Map<Consumer, Consumer> existingHosts = new IdentityHashMap<>();
+        for (String hypervisorId : chunk) {
+            Consumer incomingHost = incomingHosts.get(hypervisorId);
+            Consumer existingHost = knownHosts.get(incomingHost);
+
+            if (existingHost != null) {
+                existingHosts.put(incomingHost, existingHost);
+                touched.add(existingHost);
+            }
+        }
+
+        this.consumerCurator.refresh(this.consumerCurator.lock(existingHosts.values()));
+
+        List<Consumer> reconciled = new ArrayList<>();
+        for (String hypervisorId : chunk) {
+            Consumer incomingHost = incomingHosts.get(hypervisorId);
+            Consumer existingHost = existingHosts.get(incomingHost);
+            if (existingHost != null) {
+                // The hypervisor ID of the host may change, so forget how it was known beforehand
+                knownHosts.remove(existingHost);
+            }
+
+            Consumer resultHost = this.reconcileHost(owner, incomingHost, existingHost, result, create,
+                principal, jobReporterId, false);
+
+            if (resultHost != null) {
+                if (existingHost == null) {
+                    touched.add(resultHost);
+                }
+
+                knownHosts.add(resultHost);
+                reconciled.add(resultHost);
+            }
+        }
+
+        this.consumerCurator.flush();
+        return reconciled;
+    }
+
+    /**
+     * Adds the outcome of a committed chunk of hosts to the result of the entire update.
+     */
+    private void mergeResult(HypervisorUpdateResultDTO result, HypervisorUpdateResultDTO chunkResult) {
+        if (chunkResult.getCreated() != null) {
+            chunkResult.getCreated().forEach(result::addCreated);
+        }
+
+        if (chunkResult.getUpdated() != null) {
+            chunkResult.getUpdated().forEach(result::addUpdated);
+        }
+
+        if (chunkResult.getUnchanged() != null) {
+            chunkResult.getUnchanged().forEach(result::addUnchanged);
+        }
+
+        if (chunkResult.getFailedUpdate() != null) {
+            List<String> failed = new ArrayList<>(chunkResult.getFailedUpdate());
+            if (result.getFailedUpdate() != null) {
+                failed.addAll(result.getFailedUpdate());
+            }
+
+            result.setFailedUpdate(failed);
+        }
     }
 
     public Consumer reconcileHost(Owner owner, Consumer incomingHost, HypervisorUpdateResultDTO result,
@@ -142,6 +327,30 @@ public class HypervisorUpdateAction {
             hypervisorId,
             config.getBoolean(ConfigProperties.USE_SYSTEM_UUID_FOR_MATCHING) ? systemUuid : null);
 
+        return this.reconcileHost(owner, incomingHost, resultHost, result, create, principal, jobReporterId,
+            true);
+    }
+
+    /**
+     * Reconciles an incoming host with its existing host consumer, creating one if it does not yet
+     * exist and creation was requested.
+     *
+     * @param existingHost
+     *  the existing host consumer of the incoming host, or null if it has no host consumer
+     *
+     * @param flush
+     *  whether or not to flush the changes to the host consumer immediately
+     *
+     * @return
+     *  the created or updated host consumer, or null if the host does not exist and was not created
+     */
+    private Consumer reconcileHost(Owner owner, Consumer incomingHost, Consumer existingHost,
+        HypervisorUpdateResultDTO result, boolean create, String principal, String jobReporterId,
+        boolean flush) {
+
+        String hypervisorId = incomingHost.getHypervisorId().getHypervisorId();
+        Consumer resultHost = existingHost;
+
         if (jobReporterId == null) {
             log.debug("hypervisor checkin reported asynchronously without reporter id " +
                 "for hypervisor:{} of owner:{}", hypervisorId, owner.getKey());
@@ -165,7 +374,7 @@ public class HypervisorUpdateAction {
                     guestMigration.migrate(false);
                 }
                 try {
-                    consumerCurator.create(resultHost);
+                    consumerCurator.create(resultHost, flush);
                     result.addCreated(this.translator.translate(resultHost, HypervisorConsumerDTO.class));
                     Event event = evtFactory.consumerCreated(resultHost);
                     sink.queueEvent(event);
@@ -232,7 +441,7 @@ public class HypervisorUpdateAction {
             }
 
             try {
-                consumerCurator.update(resultHost);
+                consumerCurator.update(resultHost, flush);
             }
             catch (Exception e) {
                 result.addFailed(hypervisorId,
@@ -384,6 +593,69 @@ public class HypervisorUpdateAction {
         return incHypervisorId;
     }
 
+    /**
+     * The existing host consumers of a hypervisor report, by lower-case hypervisor ID and, when
+     * matching hosts by system UUID, by lower-case system UUID.
+     */
+    private static class KnownHosts {
+        private final Map<String, Consumer> byHypervisorId;
+        private final Map<String, Consumer> bySystemUuid;
+        private final boolean matchSystemUuid;
+
+        KnownHosts(Map<String, Consumer> byHypervisorId, Map<String, Consumer> bySystemUuid,
+            boolean matchSystemUuid) {
+            this.byHypervisorId = byHypervisorId;
+            this.bySystemUuid = bySystemUuid;
+            this.matchSystemUuid = matchSystemUuid;
+        }
+
+        /**
+         * Finds the existing host consumer of an incoming host, first by its hypervisor ID, then by
+         * its system UUID.
+         */
+        public Consumer get(Consumer incomingHost) {
+            Consumer host = this.byHypervisorId.get(
+                incomingHost.getHypervisorId().getHypervisorId().toLowerCase());
+
+            String systemUuid = incomingHost.getFact(Consumer.Facts.SYSTEM_UUID);
+            if (host == null && this.matchSystemUuid && systemUuid != null) {
+                host = this.bySystemUuid.get(systemUuid.toLowerCase());
+            }
+
+            return host;
+        }
+
+        public void add(Consumer host) {
+            if (host.getHypervisorId() != null && host.getHypervisorId().getHypervisorId() != null) {
+                this.byHypervisorId.put(host.getHypervisorId().getHypervisorId().toLowerCase(), host);
+            }
+
+            String systemUuid = host.getFact(Consumer.Facts.SYSTEM_UUID);
+            if (this.matchSystemUuid && systemUuid != null) {
+                this.bySystemUuid.put(systemUuid.toLowerCase(), host);
+            }
+        }
+
+        public void remove(Consumer host) {
+            if (host.getHypervisorId() != null && host.getHypervisorId().getHypervisorId() != null) {
+                this.byHypervisorId.remove(host.getHypervisorId().getHypervisorId().toLowerCase(), host);
+            }
+
+            String systemUuid = host.getFact(Consumer.Facts.SYSTEM_UUID);
+            if (systemUuid != null) {
+                this.bySystemUuid.remove(systemUuid.toLowerCase(), host);
+            }
+        }
+
+        public void removeAll(Collection<Consumer> hosts) {
+            hosts.forEach(this::remove);
+        }
+
+        public int size() {
+            return this.byHypervisorId.size() + this.bySystemUuid.size();
+        }
+    }
+
     /**
      * Result of hypervisor update operation
      */
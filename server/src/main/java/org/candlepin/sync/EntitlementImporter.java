@@ -76,6 +76,37 @@ public class EntitlementImporter {
         throws IOException, SyncDataFormatException {
 
         EntitlementDTO entitlement = mapper.readValue(reader, EntitlementDTO.class);
+        return this.importObject(entitlement, owner, productsById, consumerUuid, meta);
+    }
+
+    /**
+     * Builds a local subscription from an upstream entitlement which has already been read from
+     * the manifest.
+     *
+     * @param entitlement
+     *  the upstream entitlement to convert
+     *
+     * @param owner
+     *  the owner importing the entitlement
+     *
+     * @param productsById
+     *  the products imported from the manifest, mapped by product ID
+     *
+     * @param consumerUuid
+     *  the UUID of the upstream consumer
+     *
+     * @param meta
+     *  the metadata of the manifest
+     *
+     * @throws SyncDataFormatException
+     *  if the entitlement references a product which is not present in the manifest
+     *
+     * @return
+     *  the subscription built from the entitlement
+     */
+    public SubscriptionDTO importObject(EntitlementDTO entitlement, Owner owner,
+        Map<String, ProductDTO> productsById, String consumerUuid, Meta meta)
+        throws SyncDataFormatException {
 
         SubscriptionDTO subscription = new SubscriptionDTO();
 
@@ -48,17 +48,25 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
-import java.io.FileWriter;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -71,6 +79,10 @@ import java.util.zip.ZipOutputStream;
  * Exporter
  */
 public class Exporter {
+    public static final String CONSUMER_EXPORT = "consumer_export.zip";
+    public static final String SIGNATURE = "signature";
+
+    private static final String EXPORT_DIR = "export";
     private static final String EXTENSIONS_BASE_DIR = "extensions";
 
     private static Logger log = LoggerFactory.getLogger(Exporter.class);
@@ -163,186 +175,188 @@ public class Exporter {
      */
     public File getFullExport(Consumer consumer, String cdnLabel, String webUrl,
         String apiUrl, Map<String, String> extensionData) throws ExportCreationException {
-        try {
-            File tmpDir = syncUtils.makeTempDir("export");
-            File baseDir = new File(tmpDir.getAbsolutePath(), "export");
-            baseDir.mkdir();
-
-            exportMeta(baseDir, cdnLabel);
-            exportConsumer(baseDir, consumer, webUrl, apiUrl);
-            exportIdentityCertificate(baseDir, consumer);
-            exportEntitlements(baseDir, consumer);
-            exportEntitlementsCerts(baseDir, consumer, null, true);
-            exportProducts(baseDir, consumer);
-            exportConsumerTypes(baseDir);
-            exportRules(baseDir);
-            exportDistributorVersions(baseDir);
-            exportContentDeliveryNetworks(baseDir);
-            exportExtensionData(baseDir, consumer, extensionData);
-            return makeArchive(consumer, tmpDir, baseDir);
-        }
-        catch (IOException e) {
-            log.error("Error generating entitlement export", e);
-            throw new ExportCreationException("Unable to create export archive", e);
-        }
+
+        return this.writeArchiveFile(consumer,
+            out -> this.writeFullExport(consumer, cdnLabel, webUrl, apiUrl, extensionData, out));
+    }
+
+    /**
+     * Writes a manifest archive for the target {@link Consumer} to the given output stream. The
+     * exported objects are streamed straight into the archive, which is signed as it is written, so
+     * the manifest is produced in a single pass without any temporary files.
+     *
+     * @param consumer the target consumer to export.
+     * @param cdnLabel the CDN label to store in the meta file.
+     * @param webUrl the URL pointing to the manifest's originating web application.
+     * @param apiUrl the API URL pointing to the manifest's originating candlepin API.
+     * @param extensionData the data to pass to the {@link ExportExtensionAdapter}
+     * @param output the stream to write the manifest to; the stream is not closed.
+     * @throws ExportCreationException when an error occurs while creating the manifest.
+     */
+    public void writeFullExport(Consumer consumer, String cdnLabel, String webUrl, String apiUrl,
+        Map<String, String> extensionData, OutputStream output) throws ExportCreationException {
+
+        this.writeSignedArchive(consumer, output, out -> {
+            exportMeta(out, cdnLabel);
+            exportConsumer(out, consumer, webUrl, apiUrl);
+            exportIdentityCertificate(out, consumer);
+            exportEntitlements(out, consumer);
+            exportEntitlementsCerts(out, consumer, null, true);
+            exportProducts(out, consumer);
+            exportConsumerTypes(out);
+            exportRules(out);
+            exportDistributorVersions(out);
+            exportContentDeliveryNetworks(out);
+            exportExtensionData(out, consumer, extensionData);
+        });
     }
 
     public File getEntitlementExport(Consumer consumer, Set<Long> serials) throws ExportCreationException {
-        // TODO: need to delete tmpDir (which contains the archive,
-        // which we need to return...)
+        return this.writeArchiveFile(consumer, output -> this.writeSignedArchive(consumer, output, out -> {
+            exportMeta(out, null);
+            exportEntitlementsCerts(out, consumer, serials, false);
+        }));
+    }
+
+    /**
+     * Writes an archive to a new file in the sync work directory.
+     *
+     * @param consumer the consumer being exported.
+     * @param writer writes the archive to the file.
+     * @return the archive file.
+     */
+    private File writeArchiveFile(Consumer consumer, ArchiveWriter writer) throws ExportCreationException {
+        File tmpDir = null;
+
         try {
-            File tmpDir = syncUtils.makeTempDir("export");
-            File baseDir = new File(tmpDir.getAbsolutePath(), "export");
-            baseDir.mkdir();
+            tmpDir = syncUtils.makeTempDir("export");
+            File archive = new File(tmpDir, String.format("%s-%s.zip", consumer.getUuid(), EXPORT_DIR));
+
+            log.info("Creating archive of consumer {} in: {}", consumer.getUuid(), archive.getAbsolutePath());
+            try (OutputStream output = new BufferedOutputStream(new FileOutputStream(archive))) {
+                writer.write(output);
+            }
 
-            exportMeta(baseDir, null);
-            exportEntitlementsCerts(baseDir, consumer, serials, false);
-            return makeArchive(consumer, tmpDir, baseDir);
+            return archive;
         }
         catch (IOException e) {
             log.error("Error generating entitlement export", e);
+            this.deleteDirectory(tmpDir);
             throw new ExportCreationException("Unable to create export archive", e);
         }
+        catch (ExportCreationException | RuntimeException e) {
+            this.deleteDirectory(tmpDir);
+            throw e;
+        }
+    }
+
+    private void deleteDirectory(File directory) {
+        if (directory != null) {
+            try {
+                FileUtils.deleteDirectory(directory);
+            }
+            catch (IOException e) {
+                // It'll get cleaned up by the ManifestCleanerJob
+                log.warn("Unable to delete export directory: {}", directory, e);
+            }
+        }
     }
 
     /**
-     * Create a tar.gz archive of the exported directory.
+     * Writes a signed archive. The exported entries are written to a nested consumer export
+     * archive, which is digested as it is written. The signature of the consumer export then
+     * follows it in the outer archive.
      *
-     * @param exportDir Directory where Candlepin data was exported.
-     * @return File reference to the new archive zip.
+     * @param consumer the consumer being exported.
+     * @param output the stream to write the signed archive to; the stream is not closed.
+     * @param contents writes the entries of the consumer export.
      */
-    private File makeArchive(Consumer consumer, File tempDir, File exportDir)
-        throws IOException {
-        String exportFileName = String.format("%s-%s.zip", consumer.getUuid(), exportDir.getName());
-        log.info("Creating archive of " + exportDir.getAbsolutePath() + " in: " +
-            exportFileName);
-
-        File archive = createZipArchiveWithDir(tempDir, exportDir, "consumer_export.zip",
-            "Candlepin export for " + consumer.getUuid());
+    private void writeSignedArchive(Consumer consumer, OutputStream output, ExportWriter contents)
+        throws ExportCreationException {
 
-        InputStream archiveInputStream = null;
         try {
-            archiveInputStream = new FileInputStream(archive);
-            File signedArchive = createSignedZipArchive(
-                tempDir, archive, exportFileName,
-                pki.getSHA256WithRSAHash(archiveInputStream),
-                "signed Candlepin export for " + consumer.getUuid());
-
-            log.debug("Returning file: " + archive.getAbsolutePath());
-            return signedArchive;
-        }
-        finally {
-            if (archiveInputStream != null) {
-                try {
-                    archiveInputStream.close();
-                }
-                catch (Exception e) {
-                    // nothing to do
-                }
-            }
-        }
-    }
+            ZipOutputStream archive = new ZipOutputStream(output);
+            archive.setComment("signed Candlepin export for " + consumer.getUuid());
+            archive.putNextEntry(new ZipEntry(CONSUMER_EXPORT));
 
-    private File createZipArchiveWithDir(File tempDir, File exportDir,
-        String exportFileName, String comment)
-        throws FileNotFoundException, IOException {
+            MessageDigest digest = createDigest();
+            ZipOutputStream export = new ZipOutputStream(new DigestOutputStream(archive, digest));
+            export.setComment("Candlepin export for " + consumer.getUuid());
 
-        File archive = new File(tempDir, exportFileName);
-        ZipOutputStream out = null;
-        try {
-            out = new ZipOutputStream(new FileOutputStream(archive));
-            out.setComment(comment);
-            addFilesToArchive(out, exportDir.getParent().length() + 1, exportDir);
+            contents.write(export);
+
+            // Finish, rather than close, the nested archive so the outer archive remains open
+            export.finish();
+            archive.closeEntry();
+
+            addSignatureToArchive(archive, pki.signSHA256Digest(digest.digest()));
+
+            archive.finish();
+            archive.flush();
         }
-        finally {
-            if (out != null) {
-                out.close();
-            }
+        catch (IOException e) {
+            log.error("Error generating entitlement export", e);
+            throw new ExportCreationException("Unable to create export archive", e);
         }
-        return archive;
     }
 
-    private File createSignedZipArchive(File tempDir, File toAdd,
-        String exportFileName, byte[] signature, String comment)
-        throws FileNotFoundException, IOException {
-
-        File archive = new File(tempDir, exportFileName);
-        ZipOutputStream out = null;
+    private MessageDigest createDigest() {
         try {
-            out = new ZipOutputStream(new FileOutputStream(archive));
-            out.setComment(comment);
-            addFileToArchive(out, toAdd.getParent().length() + 1, toAdd);
-            addSignatureToArchive(out, signature);
+            return MessageDigest.getInstance("SHA-256");
         }
-        finally {
-            if (out != null) {
-                out.close();
-            }
+        catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
         }
-        return archive;
     }
 
-    private void addFilesToArchive(ZipOutputStream out, int charsToDropFromName,
-        File directory) throws IOException {
-        for (File file : directory.listFiles()) {
-            if (file.isDirectory()) {
-                addFilesToArchive(out, charsToDropFromName, file);
-            }
-            else {
-                addFileToArchive(out, charsToDropFromName, file);
-            }
-        }
+    /**
+     * Starts a new entry in the consumer export and returns a writer for its contents. Closing
+     * the writer closes the entry, but not the archive.
+     *
+     * @param out the consumer export archive.
+     * @param path the path of the entry, relative to the export directory.
+     * @return a writer for the contents of the entry.
+     */
+    private Writer newEntryWriter(ZipOutputStream out, String path) throws IOException {
+        return new OutputStreamWriter(newEntryStream(out, path), StandardCharsets.UTF_8);
     }
 
-    private void addFileToArchive(ZipOutputStream out, int charsToDropFromName,
-        File file) throws IOException, FileNotFoundException {
-        log.debug("Adding file to archive: " +
-            file.getAbsolutePath().substring(charsToDropFromName));
-        out.putNextEntry(new ZipEntry(
-            file.getAbsolutePath().substring(charsToDropFromName)));
-        FileInputStream in = null;
-        try {
-            in = new FileInputStream(file);
+    private OutputStream newEntryStream(ZipOutputStream archive, String path) throws IOException {
+        log.debug("Adding file to archive: {}/{}", EXPORT_DIR, path);
+        archive.putNextEntry(new ZipEntry(EXPORT_DIR + "/" + path));
 
-            byte [] buf = new byte[1024];
-            int len;
-            while ((len = in.read(buf)) > 0) {
-                out.write(buf, 0, len);
+        return new FilterOutputStream(archive) {
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                this.out.write(bytes, offset, length);
             }
-            out.closeEntry();
-        }
-        finally {
-            if (in != null) {
-                in.close();
+
+            @Override
+            public void close() throws IOException {
+                archive.flush();
+                archive.closeEntry();
             }
-        }
+        };
     }
 
     private void addSignatureToArchive(ZipOutputStream out, byte[] signature)
-        throws IOException, FileNotFoundException {
+        throws IOException {
 
         log.debug("Adding signature to archive.");
-        out.putNextEntry(new ZipEntry("signature"));
+        out.putNextEntry(new ZipEntry(SIGNATURE));
         out.write(signature, 0, signature.length);
         out.closeEntry();
     }
 
-    private void exportMeta(File baseDir, String cdnKey)
+    private void exportMeta(ZipOutputStream out, String cdnKey)
         throws IOException {
-        File file = new File(baseDir.getCanonicalPath(), "meta.json");
-        FileWriter writer = null;
-        try {
-            writer = new FileWriter(file);
+
+        try (Writer writer = newEntryWriter(out, "meta.json")) {
             Meta m = new Meta(getVersion(), new Date(),
                 principalProvider.get().getName(),
                 null, cdnKey);
             meta.export(mapper, writer, m);
         }
-        finally {
-            if (writer != null) {
-                writer.close();
-            }
-        }
     }
 
     private String getPrefixWebUrl(String override) {
@@ -372,30 +386,20 @@ public class Exporter {
         return map.get("version") + "-" + map.get("release");
     }
 
-    private void exportConsumer(File baseDir, Consumer consumer, String webAppPrefix,
+    private void exportConsumer(ZipOutputStream out, Consumer consumer, String webAppPrefix,
         String apiUrl)
         throws IOException {
-        File file = new File(baseDir.getCanonicalPath(), "consumer.json");
-        FileWriter writer = null;
-        try {
-            writer = new FileWriter(file);
+
+        try (Writer writer = newEntryWriter(out, "consumer.json")) {
             this.consumerExporter.export(mapper, writer, consumer,
                 getPrefixWebUrl(webAppPrefix), getPrefixApiUrl(apiUrl));
         }
-        finally {
-            if (writer != null) {
-                writer.close();
-            }
-        }
     }
 
-    private void exportEntitlementsCerts(File baseDir, Consumer consumer,
+    private void exportEntitlementsCerts(ZipOutputStream out, Consumer consumer,
         Set<Long> serials, boolean manifest)
         throws IOException {
 
-        File entCertDir = new File(baseDir.getCanonicalPath(), "entitlement_certificates");
-        entCertDir.mkdir();
-
         for (EntitlementCertificate cert : entCertAdapter.listForConsumer(consumer)) {
             if (manifest && !this.exportRules.canExport(cert.getEntitlement())) {
                 if (log.isDebugEnabled()) {
@@ -407,42 +411,29 @@ public class Exporter {
 
             if ((serials == null) || (serials.contains(cert.getSerial().getId()))) {
                 log.debug("Exporting entitlement certificate: " + cert.getSerial());
-                File file = new File(entCertDir.getCanonicalPath(),
-                    cert.getSerial().getId() + ".pem");
-                FileWriter writer = null;
-                try {
-                    writer = new FileWriter(file);
+
+                String path = "entitlement_certificates/" + cert.getSerial().getId() + ".pem";
+                try (Writer writer = newEntryWriter(out, path)) {
                     entCert.export(writer, cert);
                 }
-                finally {
-                    if (writer != null) {
-                        writer.close();
-                    }
-                }
             }
         }
     }
 
-    private void exportIdentityCertificate(File baseDir, Consumer consumer)
+    private void exportIdentityCertificate(ZipOutputStream out, Consumer consumer)
         throws IOException {
 
-        File idcertdir = new File(baseDir.getCanonicalPath(), "upstream_consumer");
-        idcertdir.mkdir();
-
         IdentityCertificate cert = consumer.getIdCert();
-        File file = new File(idcertdir.getCanonicalPath(),
-            cert.getSerial().getId() + ".json");
+        String path = "upstream_consumer/" + cert.getSerial().getId() + ".json";
 
         // paradigm dictates this should go in an exporter.export method
-        try (FileWriter writer = new FileWriter(file)) {
+        try (Writer writer = newEntryWriter(out, path)) {
             mapper.writeValue(writer, this.translator.translate(cert, CertificateDTO.class));
         }
     }
 
-    private void exportEntitlements(File baseDir, Consumer consumer)
+    private void exportEntitlements(ZipOutputStream out, Consumer consumer)
         throws IOException, ExportCreationException {
-        File entCertDir = new File(baseDir.getCanonicalPath(), "entitlements");
-        entCertDir.mkdir();
 
         for (Entitlement ent : entitlementCurator.listByConsumer(consumer)) {
             if (ent.isDirty()) {
@@ -462,24 +453,14 @@ public class Exporter {
             if (log.isDebugEnabled()) {
                 log.debug("Exporting entitlement for product" + ent.getPool().getProductId());
             }
-            FileWriter writer = null;
-            try {
-                File file = new File(entCertDir.getCanonicalPath(), ent.getId() + ".json");
-                writer = new FileWriter(file);
+
+            try (Writer writer = newEntryWriter(out, "entitlements/" + ent.getId() + ".json")) {
                 entExporter.export(mapper, writer, ent);
             }
-            finally {
-                if (writer != null) {
-                    writer.close();
-                }
-            }
         }
     }
 
-    private void exportProducts(File baseDir, Consumer consumer) throws IOException {
-        File productDir = new File(baseDir.getCanonicalPath(), "products");
-        productDir.mkdir();
-
+    private void exportProducts(ZipOutputStream out, Consumer consumer) throws IOException {
         Map<String, Product> products = new HashMap<>();
         for (Entitlement entitlement : consumer.getEntitlements()) {
             Pool pool = entitlement.getPool();
@@ -509,19 +490,10 @@ public class Exporter {
             // product.setUuid(null);
             // product.setOwner(null);
 
-            String path = productDir.getCanonicalPath();
             String productId = product.getId();
-            File file = new File(path, productId + ".json");
-            FileWriter writer = null;
-            try {
-                writer = new FileWriter(file);
+            try (Writer writer = newEntryWriter(out, "products/" + productId + ".json")) {
                 productExporter.export(mapper, writer, product);
             }
-            finally {
-                if (writer != null) {
-                    writer.close();
-                }
-            }
 
             // Real products have a numeric id.
             if (StringUtils.isNumeric(product.getId())) {
@@ -533,119 +505,73 @@ public class Exporter {
                 // so just skip over this if we get null back
                 // XXX: need to decide if the cert should always be in the export, or never.
                 if (cert != null) {
-                    file = new File(productDir.getCanonicalPath(), product.getId() + ".pem");
-                    writer = new FileWriter(file);
-                    productCertExporter.export(writer, cert);
-                    writer.close();
+                    try (Writer writer = newEntryWriter(out, "products/" + productId + ".pem")) {
+                        productCertExporter.export(writer, cert);
+                    }
                 }
             }
         }
     }
 
-    private void exportConsumerTypes(File baseDir) throws IOException {
-        File typeDir = new File(baseDir.getCanonicalPath(), "consumer_types");
-        typeDir.mkdir();
-
+    private void exportConsumerTypes(ZipOutputStream out) throws IOException {
         for (ConsumerType type : consumerTypeCurator.listAll()) {
-            File file = new File(typeDir.getCanonicalPath(), type.getLabel() + ".json");
-            FileWriter writer = null;
-            try {
-                writer = new FileWriter(file);
+            try (Writer writer = newEntryWriter(out, "consumer_types/" + type.getLabel() + ".json")) {
                 consumerType.export(mapper, writer, type);
             }
-            finally {
-                if (writer != null) {
-                    writer.close();
-                }
-            }
         }
     }
 
-    private void exportRules(File baseDir) throws IOException {
+    private void exportRules(ZipOutputStream out) throws IOException {
         // Because old candlepin servers assume to import a file in rules dir, we had to
         // move to a new directory for versioned rules file:
-        File newRulesDir = new File(baseDir.getCanonicalPath(), "rules2");
-        newRulesDir.mkdir();
-        File newRulesFile = new File(newRulesDir.getCanonicalPath(), "rules.js");
-        FileWriter writer = null;
-        try {
-            writer = new FileWriter(newRulesFile);
+        try (Writer writer = newEntryWriter(out, "rules2/rules.js")) {
             rules.export(writer);
         }
-        finally {
-            if (writer != null) {
-                writer.close();
-            }
-        }
 
-        exportLegacyRules(baseDir);
+        exportLegacyRules(out);
     }
 
     /*
      * We still need to export a copy of the deprecated default-rules.js so new manifests
      * can still be imported by old candlepin servers.
      */
-    private void exportLegacyRules(File baseDir) throws IOException {
-        File oldRulesDir = new File(baseDir.getCanonicalPath(), "rules");
-        oldRulesDir.mkdir();
-        File oldRulesFile = new File(oldRulesDir.getCanonicalPath(), "default-rules.js");
-
+    private void exportLegacyRules(ZipOutputStream out) throws IOException {
         // TODO: does this need a "exporter" object as well?
-        FileUtils.copyFile(new File(
-            this.getClass().getResource(LEGACY_RULES_FILE).getPath()),
-            oldRulesFile);
+        try (InputStream input = this.getClass().getResourceAsStream(LEGACY_RULES_FILE);
+            OutputStream output = newEntryStream(out, "rules/default-rules.js")) {
+
+            IOUtils.copy(input, output);
+        }
     }
 
-    private void exportDistributorVersions(File baseDir) throws IOException {
+    private void exportDistributorVersions(ZipOutputStream out) throws IOException {
         List<DistributorVersion> versions = distVerCurator.findAll();
         if (versions == null || versions.isEmpty()) {
             return;
         }
 
-        File distVerDir = new File(baseDir.getCanonicalPath(), "distributor_version");
-        distVerDir.mkdir();
-
-        FileWriter writer = null;
         for (DistributorVersion dv : versions) {
             if (log.isDebugEnabled()) {
                 log.debug("Exporting Distributor Version" + dv.getName());
             }
-            try {
-                File file = new File(distVerDir.getCanonicalPath(), dv.getName() + ".json");
-                writer = new FileWriter(file);
+
+            try (Writer writer = newEntryWriter(out, "distributor_version/" + dv.getName() + ".json")) {
                 distVerExporter.export(mapper, writer, dv);
             }
-            finally {
-                if (writer != null) {
-                    writer.close();
-                }
-            }
         }
     }
 
-    private void exportContentDeliveryNetworks(File baseDir) throws IOException {
+    private void exportContentDeliveryNetworks(ZipOutputStream out) throws IOException {
         ResultIterator<Cdn> iterator = this.cdnCurator.listAll().iterate();
 
         try {
-            if (iterator.hasNext()) {
-                File cdnDir = new File(baseDir.getCanonicalPath(), "content_delivery_network");
-                cdnDir.mkdir();
-
-                while (iterator.hasNext()) {
-                    Cdn cdn = iterator.next();
-                    log.debug("Exporting CDN: {}", cdn.getName());
-
-                    FileWriter writer = null;
-                    try {
-                        File file = new File(cdnDir.getCanonicalPath(), cdn.getLabel() + ".json");
-                        writer = new FileWriter(file);
-                        cdnExporter.export(mapper, writer, cdn);
-                    }
-                    finally {
-                        if (writer != null) {
-                            writer.close();
-                        }
-                    }
+            while (iterator.hasNext()) {
+                Cdn cdn = iterator.next();
+                log.debug("Exporting CDN: {}", cdn.getName());
+
+                String path = "content_delivery_network/" + cdn.getLabel() + ".json";
+                try (Writer writer = newEntryWriter(out, path)) {
+                    cdnExporter.export(mapper, writer, cdn);
                 }
             }
         }
@@ -654,11 +580,58 @@ public class Exporter {
         }
     }
 
-    private void exportExtensionData(File baseDir, Consumer targetConsumer, Map<String, String> extensionData)
-        throws IOException {
-        File extensionDir = new File(baseDir.getCanonicalPath(), EXTENSIONS_BASE_DIR);
-        extensionDir.mkdir();
-        exportExtensionAdapter.extendManifest(extensionDir, targetConsumer, extensionData);
+    private void exportExtensionData(ZipOutputStream out, Consumer targetConsumer,
+        Map<String, String> extensionData) throws IOException {
+
+        // The extension adapter writes its files to a directory, which we then copy into the
+        // archive; in most deployments it writes nothing at all
+        File extensionDir = syncUtils.makeTempDir(EXTENSIONS_BASE_DIR);
+
+        try {
+            exportExtensionAdapter.extendManifest(extensionDir, targetConsumer, extensionData);
+            addFilesToArchive(out, EXTENSIONS_BASE_DIR, extensionDir);
+        }
+        finally {
+            this.deleteDirectory(extensionDir);
+        }
+    }
+
+    private void addFilesToArchive(ZipOutputStream out, String path, File directory) throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            String filePath = path + "/" + file.getName();
+
+            if (file.isDirectory()) {
+                addFilesToArchive(out, filePath, file);
+            }
+            else {
+                try (InputStream input = new FileInputStream(file);
+                    OutputStream output = newEntryStream(out, filePath)) {
+
+                    IOUtils.copy(input, output);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the contents of an archive to a stream.
+     */
+    @FunctionalInterface
+    private interface ArchiveWriter {
+        void write(OutputStream out) throws IOException, ExportCreationException;
+    }
+
+    /**
+     * Writes the entries of a consumer export to its archive.
+     */
+    @FunctionalInterface
+    private interface ExportWriter {
+        void write(ZipOutputStream out) throws IOException, ExportCreationException;
     }
 
 }
@@ -21,11 +21,11 @@ import org.candlepin.controller.ContentAccessManager.ContentAccessMode;
 import org.candlepin.controller.PoolManager;
 import org.candlepin.controller.Refresher;
 import org.candlepin.dto.ModelTranslator;
-import org.candlepin.dto.manifest.v1.CdnDTO;
 import org.candlepin.dto.manifest.v1.CertificateDTO;
 import org.candlepin.dto.manifest.v1.ConsumerDTO;
 import org.candlepin.dto.manifest.v1.ConsumerTypeDTO;
 import org.candlepin.dto.manifest.v1.DistributorVersionDTO;
+import org.candlepin.dto.manifest.v1.EntitlementDTO;
 import org.candlepin.dto.manifest.v1.ProductDTO;
 import org.candlepin.dto.manifest.v1.SubscriptionDTO;
 import org.candlepin.model.CdnCurator;
@@ -66,13 +66,14 @@ import org.xnap.commons.i18n.I18n;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.io.StringReader;
 import java.security.cert.CertificateException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -80,8 +81,6 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 import javax.persistence.PersistenceException;
 
@@ -185,14 +184,21 @@ public class Importer {
 
     public ImportRecord loadExport(Owner owner, File archive, ConflictOverrides overrides,
         String uploadedFileName) throws ImporterException {
-        try {
-            return doExport(owner, unpackExportFile(archive.getName(), new FileInputStream(archive)),
-                overrides, uploadedFileName);
+        ManifestContents contents;
+
+        try (InputStream input = new FileInputStream(archive)) {
+            contents = this.readManifest(archive.getName(), input, overrides);
         }
         catch (FileNotFoundException e) {
             log.error(String.format("Could not find import archive: %s", archive.getAbsolutePath()));
             throw new ImporterException(i18n.tr("Uploaded manifest file does not exist."), e);
         }
+        catch (IOException e) {
+            log.error("Unable to read export archive", e);
+            throw new ImportExtractionException(i18n.tr("Unable to extract export archive"), e);
+        }
+
+        return this.doImport(owner, contents, overrides, uploadedFileName);
     }
 
     /**
@@ -208,8 +214,8 @@ public class Importer {
     public ImportRecord loadStoredExport(ManifestFile export, Owner owner, ConflictOverrides overrides,
         String uploadedFileName) throws ImporterException {
         try {
-            ImportRecord result = doExport(owner, extractFromService(export), overrides, uploadedFileName);
-            return result;
+            return this.doImport(owner, this.readFromService(export, overrides), overrides,
+                uploadedFileName);
         }
         catch (ManifestFileServiceException e) {
             throw new ImporterException("Could not load stored manifest file for async import", e);
@@ -293,18 +299,57 @@ public class Importer {
     // NOTE: Some DBs, such as postgres, require large object streaming to be in a single transaction.
     //       Because of this, we make this method transactional.
     /**
-     * Pulls the manifest from the {@link ManifestFileService} and unpacks it. The manifest file
-     * is deleted as soon as it is extracted.
+     * Streams the manifest from the {@link ManifestFileService} and reads its contents.
      *
-     * @param storedFileId the manifest's file ID.
-     * @return a {@link File} pointing to the unpacked manifest directory.
+     * @param export the manifest file to read.
+     * @param overrides the conflicts that are to be overridden.
+     * @return the contents of the manifest.
      * @throws ManifestFileServiceException
      * @throws ImporterException
      */
     @Transactional
-    protected File extractFromService(ManifestFile export)
+    protected ManifestContents readFromService(ManifestFile export, ConflictOverrides overrides)
         throws ManifestFileServiceException, ImporterException {
-        return unpackExportFile(export.getId(), export.getInputStream());
+
+        try (InputStream input = export.getInputStream()) {
+            return this.readManifest(export.getId(), input, overrides);
+        }
+        catch (IOException e) {
+            log.error("Unable to read export archive", e);
+            throw new ImportExtractionException(i18n.tr("Unable to extract export archive"), e);
+        }
+    }
+
+    /**
+     * Reads a manifest archive as it is streamed, verifying its signature without extracting it
+     * to disk. Only the consumer export is spooled to a temporary directory, so that it is not
+     * parsed before its signature has been verified.
+     *
+     * @param archiveName the name of the archive, used in error messages.
+     * @param input a stream providing the archive.
+     * @param overrides the conflicts that are to be overridden.
+     * @return the contents of the manifest.
+     * @throws IOException if the archive cannot be read.
+     * @throws ImporterException if the archive is malformed or fails the signature check.
+     */
+    protected ManifestContents readManifest(String archiveName, InputStream input,
+        ConflictOverrides overrides) throws IOException, ImporterException {
+
+        File workDir = syncUtils.makeTempDir("import");
+        ManifestReader reader = new ManifestReader(mapper, pki, i18n, consumerTypeCurator,
+            distVerCurator, cdnCurator, workDir);
+
+        try {
+            return reader.read(archiveName, input, overrides);
+        }
+        catch (CertificateException e) {
+            log.error("Certificate exception checking archive signature", e);
+            throw new ImportExtractionException(
+                i18n.tr("Certificate exception checking archive signature"), e);
+        }
+        finally {
+            FileUtils.deleteQuietly(workDir);
+        }
     }
 
     /**
@@ -319,7 +364,20 @@ public class Importer {
     protected void validateMetadata(String type, Owner owner, File meta, ConflictOverrides forcedConflicts)
         throws IOException, ImporterException {
 
-        Meta m = mapper.readValue(meta, Meta.class);
+        this.validateMetadata(type, owner, mapper.readValue(meta, Meta.class), forcedConflicts);
+    }
+
+    /**
+     * Check to make sure the meta data is newer than the imported data.
+     * @param type ExporterMetadata.TYPE_PER_USER or TYPE_SYSTEM
+     * @param owner Owner in the case of PER_USER
+     * @param m the metadata read from the manifest
+     * @param forcedConflicts Conflicts we will override if encountered
+     * @throws ImporterException thrown if the metadata is invalid.
+     */
+    protected void validateMetadata(String type, Owner owner, Meta m, ConflictOverrides forcedConflicts)
+        throws ImporterException {
+
         if (type == null) {
             throw new ImporterException(i18n.tr("Wrong metadata type"));
         }
@@ -376,69 +434,22 @@ public class Importer {
         }
     }
 
-    private ImportRecord doExport(Owner owner, File exportDir, ConflictOverrides overrides,
+    private ImportRecord doImport(Owner owner, ManifestContents contents, ConflictOverrides overrides,
         String uploadedFileName) throws ImporterException {
 
         Map<String, Object> result = new HashMap<>();
         try {
-            File signature = new File(exportDir, "signature");
-            if (signature.length() == 0) {
-                throw new ImportExtractionException(
-                    i18n.tr("The archive does not contain the required signature file"));
-            }
-
-            boolean verifiedSignature = pki.verifySHA256WithRSAHashAgainstCACerts(
-                new File(exportDir, "consumer_export.zip"), loadSignature(new File(exportDir, "signature")));
-
-            if (!verifiedSignature) {
-                log.warn("Archive signature check failed.");
-
-                if (!overrides.isForced(Conflict.SIGNATURE_CONFLICT)) {
-                    /*
-                     * Normally for import conflicts that can be overridden, we try to
-                     * report them all the first time so if the user intends to override,
-                     * they can do so with just one more request. However in the case of
-                     * a bad signature, we're going to report immediately due to the nature
-                     * of what this might mean.
-                     */
-                    throw new ImportConflictException(i18n.tr("Archive failed signature check"),
-                        Conflict.SIGNATURE_CONFLICT);
-                }
-                else {
-                    log.warn("Ignoring signature check failure.");
-                }
-            }
-
-            File consumerExport = new File(exportDir, "consumer_export.zip");
-            File consumerExportDir = extractArchive(exportDir, consumerExport.getName(),
-                new FileInputStream(consumerExport));
-
-            Map<String, File> importFiles = new HashMap<>();
-            File[] listFiles = consumerExportDir.listFiles();
-            if (listFiles == null || listFiles.length == 0) {
-                throw new ImportExtractionException(i18n.tr("The consumer_export archive has no contents"));
-            }
-            for (File file : listFiles) {
-                importFiles.put(file.getName(), file);
-            }
-
-            // Need the rules file as well which is in a nested dir:
-            File rulesFile = new File(consumerExportDir, ImportFile.RULES_FILE.fileName());
-            importFiles.put(ImportFile.RULES_FILE.fileName(), rulesFile);
-
-            List<SubscriptionDTO> importSubs = importObjects(owner, importFiles, overrides);
-            Meta m = mapper.readValue(importFiles.get(ImportFile.META.fileName()), Meta.class);
+            List<SubscriptionDTO> importSubs = importManifest(owner, contents, overrides);
 
             result.put("subscriptions", importSubs);
-            result.put("meta", m);
+            result.put("meta", contents.getMeta());
 
             sink.emitImportCreated(owner);
             return recordImportSuccess(owner, result, overrides, uploadedFileName);
         }
-        catch (FileNotFoundException fnfe) {
-            log.error("Archive file does not contain consumer_export.zip", fnfe);
-            throw new ImportExtractionException(i18n.tr("The archive does not contain " +
-                                           "the required consumer_export.zip file"));
+        catch (IOException e) {
+            log.error("Exception caught importing archive", e);
+            throw new ImportExtractionException(i18n.tr("Unable to extract export archive"), e, result);
         }
         catch (ConstraintViolationException cve) {
             log.error("Failed to import archive", cve);
@@ -448,111 +459,103 @@ public class Importer {
             log.error("Failed to import archive", pe);
             throw new ImporterException(i18n.tr("Failed to import archive"), pe, result);
         }
-        catch (IOException e) {
-            log.error("Exception caught importing archive", e);
-            throw new ImportExtractionException(i18n.tr("Unable to extract export archive"), e, result);
-        }
-        catch (CertificateException e) {
-            log.error("Certificate exception checking archive signature", e);
-            throw new ImportExtractionException(
-                i18n.tr("Certificate exception checking archive signature"), e, result);
-        }
-        finally {
-            if (exportDir != null) {
-                try {
-                    FileUtils.deleteDirectory(exportDir);
-                }
-                catch (IOException e) {
-                    log.error("Failed to delete extracted export", e);
-                }
-            }
-        }
     }
 
-    @SuppressWarnings("checkstyle:methodlength")
+    /**
+     * Imports the contents of a manifest which has already been read, and its signature verified,
+     * by a {@link ManifestReader}.
+     *
+     * @param owner the owner to import the manifest into.
+     * @param contents the contents of the manifest.
+     * @param overrides the conflicts that are to be overridden.
+     * @return the subscriptions imported from the manifest.
+     * @throws IOException if the rules of the manifest cannot be read.
+     * @throws ImporterException if the manifest cannot be imported.
+     */
     @Transactional(rollbackOn = {IOException.class, ImporterException.class,
         RuntimeException.class, ImportConflictException.class})
     // WARNING: Keep this method public, otherwise @Transactional is ignored:
-    public List<SubscriptionDTO> importObjects(Owner owner, Map<String, File> importFiles,
+    public List<SubscriptionDTO> importManifest(Owner owner, ManifestContents contents,
         ConflictOverrides overrides) throws IOException, ImporterException {
         ownerCurator.lock(owner);
 
-        log.debug("Importing objects for owner: {}", owner);
+        log.debug("Importing manifest for owner: {}", owner);
 
-        File metadata = importFiles.get(ImportFile.META.fileName());
-        if (metadata == null) {
+        Meta meta = contents.getMeta();
+        if (meta == null) {
             throw new ImporterException(i18n.tr("The archive does not contain the required meta.json file"));
         }
-        File consumerTypes = importFiles.get(ImportFile.CONSUMER_TYPE.fileName());
-        if (consumerTypes == null) {
+        if (contents.getConsumerTypes() == null) {
             throw new ImporterException(
                 i18n.tr("The archive does not contain the required consumer_types directory"));
         }
-        File consumerFile = importFiles.get(ImportFile.CONSUMER.fileName());
-        if (consumerFile == null) {
+        if (contents.getConsumer() == null) {
             throw new ImporterException(
                 i18n.tr("The archive does not contain the required consumer.json file"));
         }
-        File products = importFiles.get(ImportFile.PRODUCTS.fileName());
-        File entitlements = importFiles.get(ImportFile.ENTITLEMENTS.fileName());
-        if (products != null && entitlements == null) {
+        if (contents.getProducts() != null && contents.getEntitlements() == null) {
             throw new ImporterException(
                 i18n.tr("The archive does not contain the required entitlements directory"));
         }
 
-        // system level elements
-        /*
-         * Checking a system wide last import date breaks multi-tenant deployments whenever
-         * one org imports a manifest slightly older than another org who has already
-         * imported. Disabled for now. See bz #769644.
-         */
-        // validateMetadata(ExporterMetadata.TYPE_SYSTEM, null, metadata, force);
-
-        // If any calls find conflicts we'll assemble them into one exception detailing all
-        // the conflicts which occurred, so the caller can override them all at once
-        // if desired:
         List<ImportConflictException> conflictExceptions = new LinkedList<>();
 
-        File rules = importFiles.get(ImportFile.RULES_FILE.fileName());
-        importRules(rules, metadata);
+        if (contents.getRules() != null) {
+            rulesImporter.importObject(new StringReader(contents.getRules()));
+        }
+        else {
+            log.warn("Skipping rules import, manifest does not contain rules file: {}",
+                ImportFile.RULES_FILE.fileName());
+        }
 
-        importConsumerTypes(consumerTypes.listFiles());
+        new ConsumerTypeImporter(consumerTypeCurator).store(contents.getConsumerTypes());
 
-        File distributorVersions = importFiles.get(ImportFile.DISTRIBUTOR_VERSIONS.fileName());
-        if (distributorVersions != null) {
-            importDistributorVersions(distributorVersions.listFiles());
+        if (contents.getDistributorVersions() != null) {
+            new DistributorVersionImporter(distVerCurator).store(contents.getDistributorVersions());
         }
 
-        File cdns = importFiles.get(ImportFile.CONTENT_DELIVERY_NETWORKS.fileName());
-        if (cdns != null) {
-            importContentDeliveryNetworks(cdns.listFiles());
+        if (contents.getCdns() != null) {
+            new CdnImporter(cdnCurator).store(contents.getCdns());
         }
 
         // per user elements
         try {
-            validateMetadata(ExporterMetadata.TYPE_PER_USER, owner, metadata, overrides);
+            validateMetadata(ExporterMetadata.TYPE_PER_USER, owner, meta, overrides);
         }
         catch (ImportConflictException e) {
             conflictExceptions.add(e);
         }
 
-        ConsumerDTO consumer = null;
+        ConsumerDTO consumer = contents.getConsumer();
         try {
-            Meta m = mapper.readValue(metadata, Meta.class);
-            File upstreamFile = importFiles.get(ImportFile.UPSTREAM_CONSUMER.fileName());
-            File[] dafiles = new File[0];
-
-            if (upstreamFile != null) {
-                dafiles = upstreamFile.listFiles();
-            }
-
-            consumer = importConsumer(owner, consumerFile, dafiles, overrides, m);
+            IdentityCertificate idcert = buildIdentityCertificate(contents.getUpstreamIdentityCertificate());
+            importConsumer(owner, consumer, idcert, overrides, meta);
         }
         catch (ImportConflictException e) {
             conflictExceptions.add(e);
         }
 
         // At this point we're done checking for any potential conflicts:
+        this.checkConflicts(conflictExceptions);
+
+        List<SubscriptionDTO> importSubs;
+        if (contents.getProducts() != null) {
+            importSubs = importEntitlements(owner, contents.getProducts(), contents.getEntitlements(),
+                consumer.getUuid(), meta);
+        }
+        else {
+            log.warn("No products found to import, skipping product import.");
+            log.warn("No entitlements in manifest, removing all subscriptions for owner.");
+            importSubs = importEntitlements(owner, new HashSet<>(), new ArrayList<>(), consumer.getUuid(),
+                meta);
+        }
+
+        return this.refreshImportedPools(owner, consumer, importSubs);
+    }
+
+    private void checkConflicts(List<ImportConflictException> conflictExceptions)
+        throws ImportConflictException {
+
         if (!conflictExceptions.isEmpty()) {
             log.error("Conflicts occurred during import that were not overridden:");
             for (ImportConflictException e : conflictExceptions) {
@@ -561,29 +564,10 @@ public class Importer {
 
             throw new ImportConflictException(conflictExceptions);
         }
+    }
 
-        if (consumer == null) {
-            throw new IllegalStateException("No consumer found during import");
-        }
-
-        // If the consumer has no entitlements, this products directory will end up empty.
-        // This also implies there will be no entitlements to import.
-        Meta meta = mapper.readValue(metadata, Meta.class);
-        List<SubscriptionDTO> importSubs;
-        if (importFiles.get(ImportFile.PRODUCTS.fileName()) != null) {
-            ProductImporter importer = new ProductImporter();
-
-            Set<ProductDTO> productsToImport = importProducts(
-                importFiles.get(ImportFile.PRODUCTS.fileName()).listFiles(), importer, owner);
-
-            importSubs = importEntitlements(
-                owner, productsToImport, entitlements.listFiles(), consumer.getUuid(), meta);
-        }
-        else {
-            log.warn("No products found to import, skipping product import.");
-            log.warn("No entitlements in manifest, removing all subscriptions for owner.");
-            importSubs = importEntitlements(owner, new HashSet<>(), new File[]{}, consumer.getUuid(), meta);
-        }
+    private List<SubscriptionDTO> refreshImportedPools(Owner owner, ConsumerDTO consumer,
+        List<SubscriptionDTO> importSubs) {
 
         // Setup our import subscription adapter with the subscriptions imported:
         final String contentAccessMode = ContentAccessMode
@@ -602,46 +586,6 @@ public class Importer {
         return importSubs;
     }
 
-    protected void importRules(File rulesFile, File metadata) throws IOException {
-        Reader reader = null;
-
-        try {
-            reader = new FileReader(rulesFile);
-            rulesImporter.importObject(reader);
-        }
-        catch (FileNotFoundException fnfe) {
-            log.warn("Skipping rules import, manifest does not contain rules file: {}",
-                ImportFile.RULES_FILE.fileName());
-
-            return;
-        }
-        finally {
-            if (reader != null) {
-                reader.close();
-            }
-        }
-    }
-
-    protected void importConsumerTypes(File[] consumerTypes) throws IOException {
-        ConsumerTypeImporter importer = new ConsumerTypeImporter(consumerTypeCurator);
-        Set<ConsumerType> consumerTypeObjs = new HashSet<>();
-
-        for (File consumerType : consumerTypes) {
-            Reader reader = null;
-            try {
-                reader = new FileReader(consumerType);
-                consumerTypeObjs.add(importer.createObject(mapper, reader));
-            }
-            finally {
-                if (reader != null) {
-                    reader.close();
-                }
-            }
-        }
-
-        importer.store(consumerTypeObjs);
-    }
-
     protected ConsumerDTO importConsumer(Owner owner, File consumerFile, File[] upstreamConsumer,
         ConflictOverrides forcedConflicts, Meta meta) throws IOException, SyncDataFormatException {
 
@@ -651,10 +595,7 @@ public class Importer {
                 log.debug("Import upstream consumeridentity certificate: {}", uc.getName());
 
                 try (Reader reader = new FileReader(uc)) {
-                    CertificateDTO dtoCert = mapper.readValue(reader, CertificateDTO.class);
-                    idcert = new IdentityCertificate();
-                    ImporterUtils.populateEntity(idcert, dtoCert);
-                    idcert.setId(dtoCert.getId());
+                    idcert = buildIdentityCertificate(mapper.readValue(reader, CertificateDTO.class));
                 }
             }
             else {
@@ -663,62 +604,54 @@ public class Importer {
         }
 
         ConsumerImporter importer = new ConsumerImporter(ownerCurator, idCertCurator, i18n, csCurator);
-        Reader reader = null;
         ConsumerDTO consumer = null;
 
-        try {
-            reader = new FileReader(consumerFile);
+        try (Reader reader = new FileReader(consumerFile)) {
             consumer = importer.createObject(mapper, reader);
-            // we can not rely on the actual ConsumerType in the ConsumerDto
-            // because it could have an id not in our database. We need to
-            // stick with the label. Hence we need to lookup the ACTUAL type
-            // by label here before attempting to store the UpstreamConsumer
-            ConsumerType type = consumerTypeCurator.getByLabel(consumer.getType().getLabel());
-            consumer.setType(this.translator.translate(type, ConsumerTypeDTO.class));
-
-            // in older manifests the web app prefix will not
-            // be on the consumer, we can use the one stored in
-            // the metadata
-            if (StringUtils.isEmpty(consumer.getUrlWeb())) {
-                consumer.setUrlWeb(meta.getWebAppPrefix());
-            }
-
-            importer.store(owner, consumer, forcedConflicts, idcert);
         }
-        finally {
-            if (reader != null) {
-                reader.close();
-            }
+
+        return importConsumer(owner, consumer, idcert, forcedConflicts, meta);
+    }
+
+    private IdentityCertificate buildIdentityCertificate(CertificateDTO dtoCert) {
+        if (dtoCert == null) {
+            return null;
         }
 
-        return consumer;
+        IdentityCertificate idcert = new IdentityCertificate();
+        ImporterUtils.populateEntity(idcert, dtoCert);
+        idcert.setId(dtoCert.getId());
+
+        return idcert;
     }
 
-    protected Set<ProductDTO> importProducts(File[] products, ProductImporter importer, Owner owner)
-        throws IOException {
+    protected ConsumerDTO importConsumer(Owner owner, ConsumerDTO consumer, IdentityCertificate idcert,
+        ConflictOverrides forcedConflicts, Meta meta) throws SyncDataFormatException {
 
-        Set<ProductDTO> productsToImport = new HashSet<>();
-        for (File product : products) {
-            // Skip product.pem's, we just need the json to import:
-            if (product.getName().endsWith(".json")) {
-                log.debug("Importing product {} for owner {}", product.getName(), owner.getKey());
+        ConsumerImporter importer = new ConsumerImporter(ownerCurator, idCertCurator, i18n, csCurator);
 
-                try (Reader reader = new FileReader(product)) {
-                    productsToImport.add(importer.createObject(mapper, reader, owner));
-                }
-            }
+        // we can not rely on the actual ConsumerType in the ConsumerDto
+        // because it could have an id not in our database. We need to
+        // stick with the label. Hence we need to lookup the ACTUAL type
+        // by label here before attempting to store the UpstreamConsumer
+        ConsumerType type = consumerTypeCurator.getByLabel(consumer.getType().getLabel());
+        consumer.setType(this.translator.translate(type, ConsumerTypeDTO.class));
+
+        // in older manifests the web app prefix will not
+        // be on the consumer, we can use the one stored in
+        // the metadata
+        if (StringUtils.isEmpty(consumer.getUrlWeb())) {
+            consumer.setUrlWeb(meta.getWebAppPrefix());
         }
 
-        // TODO: Do we need to cleanup unused products? Looked at this earlier and it
-        // looks somewhat complex and a little bit dangerous, so we're leaving them
-        // around for now.
+        importer.store(owner, consumer, forcedConflicts, idcert);
 
-        return productsToImport;
+        return consumer;
     }
 
     protected List<SubscriptionDTO> importEntitlements(Owner owner, Set<ProductDTO> products,
-        File[] entitlements, String consumerUuid, Meta meta)
-        throws IOException, SyncDataFormatException {
+        Collection<EntitlementDTO> entitlements, String consumerUuid, Meta meta)
+        throws SyncDataFormatException {
 
         log.debug("Importing entitlements for owner: {}", owner);
 
@@ -735,19 +668,9 @@ public class Importer {
         }
 
         List<SubscriptionDTO> subscriptionsToImport = new ArrayList<>();
-        for (File entitlement : entitlements) {
-            Reader reader = null;
-            try {
-                log.debug("Import entitlement: {}", entitlement.getName());
-                reader = new FileReader(entitlement);
-                subscriptionsToImport.add(
-                    importer.importObject(mapper, reader, owner, productsById, consumerUuid, meta));
-            }
-            finally {
-                if (reader != null) {
-                    reader.close();
-                }
-            }
+        for (EntitlementDTO entitlement : entitlements) {
+            subscriptionsToImport.add(
+                importer.importObject(entitlement, owner, productsById, consumerUuid, meta));
         }
 
         // Reconcile the subscriptions so they line up with pools we're tracking
@@ -756,96 +679,6 @@ public class Importer {
         return subscriptionsToImport;
     }
 
-    /**
-     * Create a tar.gz archive of the exported directory.
-     *
-     * @param exportDir Directory where Candlepin data was exported.
-     * @return File reference to the new archive tar.gz.
-     */
-    private File extractArchive(File tempDir, String exportFileName, InputStream exportFileStream)
-        throws IOException, ImportExtractionException {
-
-        log.debug("Extracting archive to: {}", tempDir.getAbsolutePath());
-
-        byte[] buf = new byte[1024];
-        ZipInputStream zipinputstream = null;
-
-        try {
-            zipinputstream = new ZipInputStream(exportFileStream);
-            ZipEntry zipentry = zipinputstream.getNextEntry();
-
-            if (zipentry == null) {
-                throw new ImportExtractionException(i18n.tr(
-                    "The archive {0} is not a properly compressed file or is empty", exportFileName));
-            }
-
-            while (zipentry != null) {
-                //for each entry to be extracted
-                String entryName = zipentry.getName();
-                log.debug("entryname {}", entryName);
-
-                File newFile = new File(entryName);
-                String directory = newFile.getParent();
-                if (directory != null) {
-                    new File(tempDir, directory).mkdirs();
-                }
-
-                FileOutputStream fileoutputstream = null;
-                try {
-                    fileoutputstream = new FileOutputStream(new File(tempDir, entryName));
-                    int n;
-                    while ((n = zipinputstream.read(buf, 0, 1024)) > -1) {
-                        fileoutputstream.write(buf, 0, n);
-                    }
-                }
-                finally {
-                    if (fileoutputstream != null) {
-                        fileoutputstream.close();
-                    }
-                }
-
-                zipinputstream.closeEntry();
-                zipentry = zipinputstream.getNextEntry();
-            }
-        }
-        finally {
-            if (zipinputstream != null) {
-                zipinputstream.close();
-            }
-        }
-
-        return new File(tempDir.getAbsolutePath(), "export");
-    }
-
-    private byte[] loadSignature(File signatureFile) throws IOException {
-        FileInputStream signature = null;
-        // signature is never going to be a huge file, therefore cast is a-okay
-        byte[] signatureBytes = new byte[(int) signatureFile.length()];
-
-        try {
-            signature = new FileInputStream(signatureFile);
-
-            int offset = 0;
-            int numRead = 0;
-            while (offset < signatureBytes.length && numRead >= 0) {
-                numRead = signature.read(signatureBytes, offset, signatureBytes.length - offset);
-                offset += numRead;
-            }
-
-            return signatureBytes;
-        }
-        finally {
-            if (signature != null) {
-                try {
-                    signature.close();
-                }
-                catch (IOException e) {
-                    // nothing we can do about this
-                }
-            }
-        }
-    }
-
     protected void importDistributorVersions(File[] versionFiles) throws IOException {
         DistributorVersionImporter importer = new DistributorVersionImporter(distVerCurator);
         Set<DistributorVersionDTO> distVers = new HashSet<>();
@@ -865,26 +698,6 @@ public class Importer {
         importer.store(distVers);
     }
 
-    protected void importContentDeliveryNetworks(File[] cdnFiles) throws IOException {
-        CdnImporter importer = new CdnImporter(cdnCurator);
-        Set<CdnDTO> cdns = new HashSet<>();
-
-        for (File cdnFile : cdnFiles) {
-            Reader reader = null;
-            try {
-                reader = new FileReader(cdnFile);
-                cdns.add(importer.createObject(mapper, reader));
-            }
-            finally {
-                if (reader != null) {
-                    reader.close();
-                }
-            }
-        }
-
-        importer.store(cdns);
-    }
-
     private ImportUpstreamConsumer createImportUpstreamConsumer(Owner owner, UpstreamConsumer uc) {
         ImportUpstreamConsumer iup = null;
         if (uc == null && owner != null) {
@@ -900,17 +713,4 @@ public class Importer {
         return iup;
     }
 
-    private File unpackExportFile(String fileName, InputStream exportInputStream)
-        throws ImportExtractionException {
-        try {
-            File tmpDir = syncUtils.makeTempDir("import");
-            extractArchive(tmpDir, fileName, exportInputStream);
-            return tmpDir;
-        }
-        catch (IOException e) {
-            log.error("Unable to extract export archive", e);
-            throw new ImportExtractionException(i18n.tr("Unable to extract export archive"), e);
-        }
-    }
-
 }
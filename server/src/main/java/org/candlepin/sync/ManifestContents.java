@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.sync;
+
+import org.candlepin.dto.manifest.v1.CdnDTO;
+import org.candlepin.dto.manifest.v1.CertificateDTO;
+import org.candlepin.dto.manifest.v1.ConsumerDTO;
+import org.candlepin.dto.manifest.v1.DistributorVersionDTO;
+import org.candlepin.dto.manifest.v1.EntitlementDTO;
+import org.candlepin.dto.manifest.v1.ProductDTO;
+import org.candlepin.model.ConsumerType;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+
+
+/**
+ * The ManifestContents class holds the objects read from a manifest by the {@link ManifestReader},
+ * ready to be imported.
+ * <p></p>
+ * Collections of objects which are read from a directory of the manifest are null when the
+ * manifest does not contain the directory, and empty when the directory holds no objects.
+ */
+public class ManifestContents {
+
+    private Meta meta;
+    private String rules;
+    private ConsumerDTO consumer;
+    private CertificateDTO upstreamIdentityCertificate;
+    private Set<ConsumerType> consumerTypes;
+    private Set<DistributorVersionDTO> distributorVersions;
+    private Set<CdnDTO> cdns;
+    private Set<ProductDTO> products;
+    private List<EntitlementDTO> entitlements;
+
+    public Meta getMeta() {
+        return this.meta;
+    }
+
+    public void setMeta(Meta meta) {
+        this.meta = meta;
+    }
+
+    public String getRules() {
+        return this.rules;
+    }
+
+    public void setRules(String rules) {
+        this.rules = rules;
+    }
+
+    public ConsumerDTO getConsumer() {
+        return this.consumer;
+    }
+
+    public void setConsumer(ConsumerDTO consumer) {
+        this.consumer = consumer;
+    }
+
+    public CertificateDTO getUpstreamIdentityCertificate() {
+        return this.upstreamIdentityCertificate;
+    }
+
+    public void setUpstreamIdentityCertificate(CertificateDTO certificate) {
+        this.upstreamIdentityCertificate = certificate;
+    }
+
+    public Set<ConsumerType> getConsumerTypes() {
+        return this.consumerTypes;
+    }
+
+    public void addConsumerType(ConsumerType consumerType) {
+        if (this.consumerTypes == null) {
+            this.consumerTypes = new HashSet<>();
+        }
+
+        this.consumerTypes.add(consumerType);
+    }
+
+    public Set<DistributorVersionDTO> getDistributorVersions() {
+        return this.distributorVersions;
+    }
+
+    public void addDistributorVersion(DistributorVersionDTO distributorVersion) {
+        if (this.distributorVersions == null) {
+            this.distributorVersions = new HashSet<>();
+        }
+
+        this.distributorVersions.add(distributorVersion);
+    }
+
+    public Set<CdnDTO> getCdns() {
+        return this.cdns;
+    }
+
+    public void addCdn(CdnDTO cdn) {
+        if (this.cdns == null) {
+            this.cdns = new HashSet<>();
+        }
+
+        this.cdns.add(cdn);
+    }
+
+    public Set<ProductDTO> getProducts() {
+        return this.products;
+    }
+
+    /**
+     * Notes that the manifest contains a products directory, regardless of whether or not any
+     * products are read from it.
+     */
+    public void addProductsDirectory() {
+        if (this.products == null) {
+            this.products = new HashSet<>();
+        }
+    }
+
+    public void addProduct(ProductDTO product) {
+        this.addProductsDirectory();
+        this.products.add(product);
+    }
+
+    public List<EntitlementDTO> getEntitlements() {
+        return this.entitlements;
+    }
+
+    public void addEntitlement(EntitlementDTO entitlement) {
+        if (this.entitlements == null) {
+            this.entitlements = new ArrayList<>();
+        }
+
+        this.entitlements.add(entitlement);
+    }
+}
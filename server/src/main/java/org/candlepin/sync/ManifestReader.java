@@ -0,0 +1,310 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.sync;
+
+import org.candlepin.dto.manifest.v1.CertificateDTO;
+import org.candlepin.dto.manifest.v1.ConsumerDTO;
+import org.candlepin.dto.manifest.v1.EntitlementDTO;
+import org.candlepin.model.CdnCurator;
+import org.candlepin.model.ConsumerTypeCurator;
+import org.candlepin.model.DistributorVersionCurator;
+import org.candlepin.pki.PKIUtility;
+import org.candlepin.sync.Importer.Conflict;
+import org.candlepin.sync.Importer.ImportFile;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnap.commons.i18n.I18n;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+
+
+/**
+ * The ManifestReader reads the contents of a signed manifest archive as it is streamed, without
+ * extracting the archive to disk.
+ * <p></p>
+ * The consumer export is digested for the signature check as it is copied, unparsed, to a single
+ * spool file in the work directory. As the entries of an archive may appear in any order, the
+ * signature is only verified once the whole archive has been read. The consumer export is parsed
+ * from the spool file only after its signature has been verified, so none of its contents are
+ * processed unless the archive can be trusted, or the signature check has been forced. Nothing
+ * read from the manifest should be stored before this reader returns.
+ */
+public class ManifestReader {
+    private static Logger log = LoggerFactory.getLogger(ManifestReader.class);
+
+    public static final String CONSUMER_EXPORT = "consumer_export.zip";
+    public static final String SIGNATURE = "signature";
+    public static final String EXPORT_DIR = "export/";
+
+    private final ObjectMapper mapper;
+    private final PKIUtility pki;
+    private final I18n i18n;
+    private final ConsumerTypeImporter consumerTypeImporter;
+    private final DistributorVersionImporter distVerImporter;
+    private final CdnImporter cdnImporter;
+    private final ProductImporter productImporter;
+    private final File workDir;
+
+    public ManifestReader(ObjectMapper mapper, PKIUtility pki, I18n i18n,
+        ConsumerTypeCurator consumerTypeCurator, DistributorVersionCurator distVerCurator,
+        CdnCurator cdnCurator, File workDir) {
+
+        // Entries are parsed directly from the zip stream, which must remain open for the entries
+        // which follow
+        this.mapper = mapper.copy();
+        this.mapper.configure(JsonParser.Feature.AUTO_CLOSE_SOURCE, false);
+
+        this.pki = pki;
+        this.i18n = i18n;
+        this.consumerTypeImporter = new ConsumerTypeImporter(consumerTypeCurator);
+        this.distVerImporter = new DistributorVersionImporter(distVerCurator);
+        this.cdnImporter = new CdnImporter(cdnCurator);
+        this.productImporter = new ProductImporter();
+        this.workDir = workDir;
+    }
+
+    /**
+     * Reads the contents of a signed manifest archive and verifies its signature.
+     *
+     * @param archiveName
+     *  the name of the archive, used in error messages
+     *
+     * @param archive
+     *  a stream providing the archive; the stream is read to its end, but not closed. The consumer
+     *  export it contains is spooled to the work directory, and removed before this method returns
+     *
+     * @param overrides
+     *  the conflicts to override; a failed signature check is ignored if forced
+     *
+     * @throws ImportConflictException
+     *  if the signature check fails and has not been forced
+     *
+     * @throws ImporterException
+     *  if the archive is malformed or missing required entries
+     *
+     * @throws CertificateException
+     *  if the CA certificates used to verify the signature cannot be read
+     *
+     * @throws IOException
+     *  if the archive cannot be read
+     *
+     * @return
+     *  the contents of the manifest
+     */
+    public ManifestContents read(String archiveName, InputStream archive, ConflictOverrides overrides)
+        throws ImporterException, CertificateException, IOException {
+
+        File spool = File.createTempFile("consumer_export", ".zip", this.workDir);
+
+        try {
+            byte[] digest = null;
+            byte[] signature = null;
+
+            ZipInputStream zip = new ZipInputStream(archive);
+            ZipEntry entry = zip.getNextEntry();
+
+            if (entry == null) {
+                throw new ImportExtractionException(i18n.tr(
+                    "The archive {0} is not a properly compressed file or is empty", archiveName));
+            }
+
+            for (; entry != null; entry = zip.getNextEntry()) {
+                log.debug("entryname {}", entry.getName());
+
+                if (CONSUMER_EXPORT.equals(entry.getName())) {
+                    // The consumer export is untrusted until its signature has been verified, so it
+                    // is only digested and spooled here
+                    MessageDigest md = createDigest();
+
+                    try (OutputStream output = new FileOutputStream(spool)) {
+                        IOUtils.copy(new DigestInputStream(zip, md), output);
+                    }
+
+                    digest = md.digest();
+                }
+                else if (SIGNATURE.equals(entry.getName())) {
+                    signature = IOUtils.toByteArray(zip);
+                }
+                else {
+                    log.debug("Skipping unexpected archive entry: {}", entry.getName());
+                }
+
+                zip.closeEntry();
+            }
+
+            if (signature == null || signature.length == 0) {
+                throw new ImportExtractionException(
+                    i18n.tr("The archive does not contain the required signature file"));
+            }
+
+            if (digest == null) {
+                log.error("Archive file does not contain {}", CONSUMER_EXPORT);
+                throw new ImportExtractionException(
+                    i18n.tr("The archive does not contain the required consumer_export.zip file"));
+            }
+
+            if (!this.pki.verifySHA256DigestAgainstCACerts(digest, signature)) {
+                log.warn("Archive signature check failed.");
+
+                if (!overrides.isForced(Conflict.SIGNATURE_CONFLICT)) {
+                    /*
+                     * Normally for import conflicts that can be overridden, we try to
+                     * report them all the first time so if the user intends to override,
+                     * they can do so with just one more request. However in the case of
+                     * a bad signature, we're going to report immediately due to the nature
+                     * of what this might mean.
+                     */
+                    throw new ImportConflictException(i18n.tr("Archive failed signature check"),
+                        Conflict.SIGNATURE_CONFLICT);
+                }
+                else {
+                    log.warn("Ignoring signature check failure.");
+                }
+            }
+
+            ManifestContents contents = new ManifestContents();
+            try (InputStream input = new BufferedInputStream(new FileInputStream(spool))) {
+                this.readConsumerExport(input, contents);
+            }
+
+            return contents;
+        }
+        finally {
+            if (!spool.delete()) {
+                log.warn("Unable to delete consumer export spool file: {}", spool);
+            }
+        }
+    }
+
+    private MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void readConsumerExport(InputStream input, ManifestContents contents)
+        throws ImporterException, IOException {
+
+        // Note that the inner zip stream is deliberately left open; the caller owns the stream
+        ZipInputStream zip = new ZipInputStream(input);
+        ZipEntry entry = zip.getNextEntry();
+
+        if (entry == null) {
+            throw new ImportExtractionException(i18n.tr(
+                "The archive {0} is not a properly compressed file or is empty", CONSUMER_EXPORT));
+        }
+
+        boolean found = false;
+        for (; entry != null; entry = zip.getNextEntry()) {
+            String name = entry.getName();
+            log.debug("entryname {}", name);
+
+            if (!entry.isDirectory() && name.startsWith(EXPORT_DIR) && name.length() > EXPORT_DIR.length()) {
+                this.readEntry(name.substring(EXPORT_DIR.length()), zip, contents);
+                found = true;
+            }
+
+            zip.closeEntry();
+        }
+
+        if (!found) {
+            throw new ImportExtractionException(i18n.tr("The consumer_export archive has no contents"));
+        }
+    }
+
+    private void readEntry(String path, InputStream input, ManifestContents contents) throws IOException {
+        Reader reader = new InputStreamReader(input, StandardCharsets.UTF_8);
+
+        if (ImportFile.RULES_FILE.fileName().equals(path)) {
+            contents.setRules(IOUtils.toString(reader));
+            return;
+        }
+
+        int separator = path.indexOf('/');
+        String directory = separator > 0 ? path.substring(0, separator) : null;
+        String fileName = path.substring(separator + 1);
+
+        if (directory == null) {
+            if (ImportFile.META.fileName().equals(fileName)) {
+                contents.setMeta(this.mapper.readValue(reader, Meta.class));
+            }
+            else if (ImportFile.CONSUMER.fileName().equals(fileName)) {
+                contents.setConsumer(this.mapper.readValue(reader, ConsumerDTO.class));
+            }
+            else {
+                log.debug("Skipping manifest file: {}", path);
+            }
+        }
+        else if (ImportFile.CONSUMER_TYPE.fileName().equals(directory)) {
+            contents.addConsumerType(this.consumerTypeImporter.createObject(this.mapper, reader));
+        }
+        else if (ImportFile.DISTRIBUTOR_VERSIONS.fileName().equals(directory)) {
+            contents.addDistributorVersion(this.distVerImporter.createObject(this.mapper, reader));
+        }
+        else if (ImportFile.CONTENT_DELIVERY_NETWORKS.fileName().equals(directory)) {
+            contents.addCdn(this.cdnImporter.createObject(this.mapper, reader));
+        }
+        else if (ImportFile.UPSTREAM_CONSUMER.fileName().equals(directory)) {
+            if (fileName.endsWith(".json")) {
+                log.debug("Import upstream consumer identity certificate: {}", fileName);
+                contents.setUpstreamIdentityCertificate(this.mapper.readValue(reader, CertificateDTO.class));
+            }
+            else {
+                log.warn("Extra file found in upstream_consumer directory: {}", fileName);
+            }
+        }
+        else if (ImportFile.PRODUCTS.fileName().equals(directory)) {
+            // Skip product.pem's, we just need the json to import:
+            if (fileName.endsWith(".json")) {
+                log.debug("Reading product {}", fileName);
+                contents.addProduct(this.productImporter.createObject(this.mapper, reader, null));
+            }
+            else {
+                contents.addProductsDirectory();
+            }
+        }
+        else if (ImportFile.ENTITLEMENTS.fileName().equals(directory)) {
+            log.debug("Reading entitlement: {}", fileName);
+            contents.addEntitlement(this.mapper.readValue(reader, EntitlementDTO.class));
+        }
+        else {
+            log.debug("Skipping manifest file: {}", path);
+        }
+    }
+}
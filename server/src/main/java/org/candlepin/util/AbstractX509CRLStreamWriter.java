@@ -30,6 +30,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.math.BigInteger;
 import java.security.PrivateKey;
 import java.security.Signature;
 import java.util.Date;
@@ -44,6 +45,8 @@ public abstract class AbstractX509CRLStreamWriter implements X509CRLStreamWriter
     protected boolean locked = false;
     protected boolean preScanned = false;
     protected String signingAlg;
+    protected BigInteger minimumCrlNumber;
+    protected BigInteger crlNumber;
 
     /**
      * Echo tag without tracking and without signing.
@@ -150,6 +153,38 @@ public abstract class AbstractX509CRLStreamWriter implements X509CRLStreamWriter
         return preScan(crlToChange, null);
     }
 
+    @Override
+    public X509CRLStreamWriter setMinimumCrlNumber(BigInteger crlNumber) {
+        if (preScanned) {
+            throw new IllegalStateException("preScan has already been run.");
+        }
+
+        this.minimumCrlNumber = crlNumber;
+        return this;
+    }
+
+    @Override
+    public BigInteger getCrlNumber() {
+        return this.crlNumber;
+    }
+
+    /**
+     * Determines the CRL number of the modified CRL from that of the existing CRL.
+     *
+     * @param oldCrlNumber the CRL number of the existing CRL
+     * @return the CRL number of the modified CRL
+     */
+    protected BigInteger nextCrlNumber(BigInteger oldCrlNumber) {
+        BigInteger next = oldCrlNumber.add(BigInteger.ONE);
+
+        if (this.minimumCrlNumber != null && this.minimumCrlNumber.compareTo(next) > 0) {
+            next = this.minimumCrlNumber;
+        }
+
+        this.crlNumber = next;
+        return next;
+    }
+
     @Override
     public X509CRLStreamWriter lock() {
         if (locked) {
@@ -21,6 +21,7 @@ import org.candlepin.pki.CertificateReader;
 import org.candlepin.pki.PKIUtility;
 import org.candlepin.pki.X509CRLEntryWrapper;
 
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.google.inject.persist.Transactional;
@@ -29,9 +30,11 @@ import org.apache.commons.codec.binary.Base64InputStream;
 import org.apache.commons.codec.binary.Base64OutputStream;
 import org.apache.commons.io.IOUtils;
 import org.mozilla.jss.asn1.InvalidBERException;
+import org.mozilla.jss.netscape.security.util.DerValue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
@@ -46,19 +49,28 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.security.GeneralSecurityException;
 import java.security.PrivateKey;
+import java.security.cert.CRLReason;
+import java.security.cert.CertificateFactory;
 import java.security.cert.X509CRL;
 import java.security.cert.X509CRLEntry;
 import java.security.interfaces.RSAPrivateKey;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.regex.Pattern;
@@ -77,6 +89,10 @@ public class CrlFileUtil {
     // to call ordinal because the JDK CRLReason class is an enum.
     private static final int PRIVILEGE_WITHDRAWN = 9;
 
+    // See https://tools.ietf.org/html/rfc5280#section-5.2.3 and section 5.2.4
+    private static final String CRL_NUMBER_OID = "2.5.29.20";
+    private static final String DELTA_CRL_INDICATOR_OID = "2.5.29.27";
+
     private static final Pattern CRL_HEADER_PATTERN = Pattern.compile("^(-+)BEGIN (.+)\\1$");
     private static final Pattern CRL_FOOTER_PATTERN = Pattern.compile("^(-+)END (.+)\\1$");
     private static final Pattern WHITESPACE = Pattern.compile("^\\s.*$");
@@ -107,15 +123,21 @@ public class CrlFileUtil {
      *  If an IO error occurs while initializing the CRL file
      */
     public void initializeCRLFile(File file, Collection<BigInteger> revoke) throws IOException {
+        this.initializeCRLFile(file, toRevocationMap(revoke, new Date()), BigInteger.ONE);
+    }
+
+    private void initializeCRLFile(File file, Map<BigInteger, Date> revoke, BigInteger crlNumber)
+        throws IOException {
+
         FileOutputStream output = null;
 
         List<X509CRLEntryWrapper> entries = new LinkedList<>();
 
-        for (BigInteger serial : revoke) {
-            entries.add(new X509CRLEntryWrapper(serial, new Date()));
+        for (Map.Entry<BigInteger, Date> entry : revoke.entrySet()) {
+            entries.add(new X509CRLEntryWrapper(entry.getKey(), entry.getValue()));
         }
 
-        X509CRL crl = this.pkiUtility.createX509CRL(entries, BigInteger.ONE);
+        X509CRL crl = this.pkiUtility.createX509CRL(entries, crlNumber);
 
         try {
             output = new FileOutputStream(file);
@@ -190,9 +212,47 @@ public class CrlFileUtil {
     public void updateCRLFile(File file, final Collection<BigInteger> revoke,
         final Collection<BigInteger> unrevoke) throws IOException {
 
+        this.writeCRLFile(file, toRevocationMap(revoke, new Date()), unrevokeValidator(unrevoke), null,
+            false);
+    }
+
+    /**
+     * Writes the specified CRL file, adding or removing the given entries. If the file does not
+     * exist or appears to be empty, it will be initialized before processing the entries.
+     *
+     * @param file
+     *  The CRL file to update
+     *
+     * @param revoke
+     *  A mapping of serials to revoke (add) to their revocation dates; serials already listed on the
+     *  CRL keep their existing entries
+     *
+     * @param validator
+     *  A validator selecting the existing entries to remove, or null to keep all existing entries
+     *
+     * @param minimumCrlNumber
+     *  The lowest CRL number the updated CRL may have, or null to simply increment it
+     *
+     * @param force
+     *  Whether or not to rewrite the CRL file even if there are no entries to add or remove
+     *
+     * @throws IOException
+     *  if an IO error occurs while updating the CRL file
+     *
+     * @return
+     *  the CRL number of the updated CRL, or null if the CRL file was not modified
+     */
+    private BigInteger writeCRLFile(File file, Map<BigInteger, Date> revoke,
+        final CRLEntryValidator validator, BigInteger minimumCrlNumber, boolean force)
+        throws IOException {
+
         if (!file.exists() || file.length() == 0) {
-            this.initializeCRLFile(file, revoke);
-            return;
+            BigInteger crlNumber = minimumCrlNumber != null ?
+                minimumCrlNumber.max(BigInteger.ONE) :
+                BigInteger.ONE;
+
+            this.initializeCRLFile(file, revoke, crlNumber);
+            return crlNumber;
         }
 
         File strippedFile = stripCRLFile(file);
@@ -225,33 +285,33 @@ public class CrlFileUtil {
                 throw new IOException("Could not read DER", e);
             }
 
-            // Add new entries
-            if (revoke != null) {
-                Date now = new Date();
-                for (BigInteger serial : revoke) {
-
-                    writer.add(serial, now, PRIVILEGE_WITHDRAWN);
-                }
-            }
+            writer.setMinimumCrlNumber(minimumCrlNumber);
 
             // Unfortunately, we need to do the prescan before checking if we have changes queued,
-            // or we could miss cases where we have entries to remove, but nothing to add.
-            if (unrevoke != null && !unrevoke.isEmpty()) {
-                writer.preScan(reaper, new CRLEntryValidator() {
-                    public boolean shouldDelete(X509CRLEntry entry) {
-                        BigInteger certSerial = entry.getSerialNumber();
-                        return unrevoke.contains(certSerial);
+            // or we could miss cases where we have entries to remove, but nothing to add. The
+            // prescan also tells us which of the serials to revoke are already on the CRL.
+            final Map<BigInteger, Date> additions = new LinkedHashMap<>(revoke);
+
+            writer.preScan(reaper, new CRLEntryValidator() {
+                public boolean shouldDelete(X509CRLEntry entry) {
+                    if (validator != null && validator.shouldDelete(entry)) {
+                        return true;
                     }
-                });
-            }
-            else {
-                writer.preScan(reaper);
+
+                    additions.remove(entry.getSerialNumber());
+                    return false;
+                }
+            });
+
+            // Add new entries
+            for (Map.Entry<BigInteger, Date> entry : additions.entrySet()) {
+                writer.add(entry.getKey(), entry.getValue(), PRIVILEGE_WITHDRAWN);
             }
 
             writer.setSigningAlgorithm(PKIUtility.SIGNATURE_ALGO);
 
             // Verify we actually have work to do now
-            if (writer.hasChangesQueued()) {
+            if (writer.hasChangesQueued() || force) {
                 output = new BufferedOutputStream(new FileOutputStream(file));
                 filter = new FilterOutputStream(output) {
                     private boolean needsLineBreak = true;
@@ -292,6 +352,8 @@ public class CrlFileUtil {
 
                 output.write("-----END X509 CRL-----\n".getBytes());
                 output.close();
+
+                return writer.getCrlNumber();
             }
         }
         catch (GeneralSecurityException e) {
@@ -314,107 +376,345 @@ public class CrlFileUtil {
                 log.error("Unable to delete temporary CRL file: {}", strippedFile);
             }
         }
+
+        return null;
     }
 
     /**
-     * Sync the specified CRL file with the database. The sync will be done in batches of the
-     * specified amount.
+     * Checks whether or not delta CRLs are maintained alongside the CRL file.
      *
-     * @param crlFile the CRL file to sync with the DB.
-     * @param batchSize the number of DB records to process at a time.
-     * @return the number of records synced.
-     * @throws IOException
+     * @return
+     *  true if delta CRLs are enabled; false otherwise
      */
-    @Transactional
-    public int batchSyncCRLWithDB(File crlFile, int batchSize) throws IOException {
-        log.debug("Processing next batch of {} serials.", batchSize);
+    public boolean isDeltaCRLEnabled() {
+        return this.config.getBoolean(ConfigProperties.CRL_DELTA_ENABLED);
+    }
+
+    /**
+     * Fetches the configured location of the delta CRL.
+     *
+     * @return
+     *  the delta CRL file
+     */
+    public File getDeltaCRLFile() {
+        return new File(this.config.getString(ConfigProperties.CRL_DELTA_FILE_PATH));
+    }
 
-        List<Long> uncollected = this.certificateSerialCurator.getUncollectedRevokedCertSerials()
-            .setMaxResults(batchSize).list();
-        Set<BigInteger> revoke = new HashSet<>(uncollected.size());
+    /**
+     * Applies the given changes to the CRL. If delta CRLs are disabled, this behaves exactly like
+     * updateCRLFile. Otherwise, the changes are written to the delta CRL, and the CRL file is only
+     * rebuilt once the delta CRL lists too many entries, the CRL file grows too old, or there is
+     * no usable delta CRL for the current CRL file.
+     *
+     * @param crlFile
+     *  The CRL file to update
+     *
+     * @param revoke
+     *  A collection of serials to revoke (add)
+     *
+     * @param unrevoke
+     *  A collection of serials to unrevoke (remove)
+     *
+     * @throws IOException
+     *  if an IO error occurs while updating the CRL file or the delta CRL
+     */
+    public void updateCRL(File crlFile, Collection<BigInteger> revoke, Collection<BigInteger> unrevoke)
+        throws IOException {
 
-        List<Long> expired = this.certificateSerialCurator.getExpiredRevokedCertSerials()
-            .setMaxResults(batchSize).list();
-        Set<BigInteger> unrevoke = new HashSet<>(expired.size());
+        Lock writeLock = this.lock.writeLock();
+        writeLock.lock();
 
-        // Return false if there was nothing to collect.
-        if (uncollected.isEmpty() && expired.isEmpty()) {
-            return 0;
+        try {
+            if (this.isDeltaCRLEnabled()) {
+                this.updateDeltaCRL(crlFile, this.getDeltaCRLFile(), revoke, unrevoke);
+            }
+            else {
+                this.updateCRLFile(crlFile, revoke, unrevoke);
+            }
         }
+        finally {
+            writeLock.unlock();
+        }
+    }
 
-        // Convert our serials to BigIntegers for the CRL processing; also do some basic filtering since
-        // we're iterating anyway
-        if (uncollected.size() > 0) {
-            for (Iterator<Long> ci = uncollected.iterator(); ci.hasNext();) {
-                Long serial = ci.next();
+    private void updateDeltaCRL(File crlFile, File deltaFile, Collection<BigInteger> revoke,
+        Collection<BigInteger> unrevoke) throws IOException {
 
-                if (serial != null) {
-                    revoke.add(BigInteger.valueOf(serial));
-                }
-                else {
-                    ci.remove();
+        Date now = new Date();
+        DeltaCRL delta = this.readDeltaCRL(crlFile, deltaFile);
+
+        if (delta == null) {
+            // Without a usable delta CRL we have no record of what has changed since the CRL file
+            // was written, and the serials listed only on the lost delta CRL have already been
+            // collected. The CRL file is therefore rebuilt from the revoked serials in the database,
+            // and a new delta starts there.
+            log.info("No usable delta CRL found; rebuilding CRL file from the database");
+
+            final Set<BigInteger> revoked = toBigIntegers(filterSerials(
+                this.certificateSerialCurator.getRevokedCertSerials().list()));
+
+            if (revoke != null) {
+                revoked.addAll(revoke);
+            }
+
+            if (unrevoke != null) {
+                revoked.removeAll(unrevoke);
+            }
+
+            this.rebuildCRLFile(crlFile, deltaFile, toRevocationMap(revoked, now), new CRLEntryValidator() {
+                public boolean shouldDelete(X509CRLEntry entry) {
+                    return !revoked.contains(entry.getSerialNumber());
                 }
+            }, null);
+
+            return;
+        }
+
+        boolean changed = false;
+
+        if (revoke != null) {
+            for (BigInteger serial : revoke) {
+                changed |= delta.removed.remove(serial) != null;
+                changed |= delta.revoked.putIfAbsent(serial, now) == null;
             }
         }
 
-        if (expired.size() > 0) {
-            for (Iterator<Long> ci = expired.iterator(); ci.hasNext();) {
-                Long serial = ci.next();
+        if (unrevoke != null) {
+            for (BigInteger serial : unrevoke) {
+                changed |= delta.revoked.remove(serial) != null;
+                changed |= delta.removed.putIfAbsent(serial, now) == null;
+            }
+        }
 
-                if (serial != null) {
-                    unrevoke.add(BigInteger.valueOf(serial));
-                }
-                else {
-                    ci.remove();
+        int maxEntries = this.config.getInt(ConfigProperties.CRL_DELTA_MAX_ENTRIES);
+        long maxAge = TimeUnit.HOURS.toMillis(
+            this.config.getLong(ConfigProperties.CRL_DELTA_REBUILD_INTERVAL));
+        BigInteger crlNumber = delta.crlNumber.add(BigInteger.ONE);
+
+        if (delta.revoked.size() + delta.removed.size() > maxEntries) {
+            log.info("Delta CRL exceeds {} entries; rebuilding CRL file", maxEntries);
+            this.rebuildCRLFile(crlFile, deltaFile, delta.revoked, unrevokeValidator(delta.removed.keySet()),
+                crlNumber);
+        }
+        else if (now.getTime() - crlFile.lastModified() >= maxAge) {
+            log.info("CRL file is older than the configured rebuild interval; rebuilding CRL file");
+            this.rebuildCRLFile(crlFile, deltaFile, delta.revoked, unrevokeValidator(delta.removed.keySet()),
+                crlNumber);
+        }
+        else if (changed) {
+            log.debug("Writing delta CRL {} against CRL {}", crlNumber, delta.baseCrlNumber);
+            this.writeDeltaCRL(deltaFile, crlNumber, delta.baseCrlNumber, delta.revoked, delta.removed);
+        }
+    }
+
+    /**
+     * Rebuilds the CRL file with the given changes in a single pass, and replaces the delta CRL
+     * with an empty delta CRL against the rebuilt CRL file.
+     */
+    private void rebuildCRLFile(File crlFile, File deltaFile, Map<BigInteger, Date> revoke,
+        CRLEntryValidator validator, BigInteger minimumCrlNumber) throws IOException {
+
+        BigInteger crlNumber = this.writeCRLFile(crlFile, revoke, validator, minimumCrlNumber, true);
+
+        if (crlNumber != null) {
+            this.writeDeltaCRL(deltaFile, crlNumber.add(BigInteger.ONE), crlNumber,
+                Collections.emptyMap(), Collections.emptyMap());
+        }
+    }
+
+    /**
+     * Reads the delta CRL, provided it was issued against the current CRL file.
+     *
+     * @return
+     *  the contents of the delta CRL, or null if there is no usable delta CRL
+     */
+    private DeltaCRL readDeltaCRL(File crlFile, File deltaFile) {
+        if (!crlFile.exists() || crlFile.length() == 0 || !deltaFile.exists() || deltaFile.length() == 0) {
+            return null;
+        }
+
+        // The delta CRL is always written after the CRL file it was issued against, so an older delta
+        // CRL must predate a rewrite of the CRL file.
+        if (deltaFile.lastModified() < crlFile.lastModified()) {
+            log.warn("Delta CRL {} is older than CRL file {}; discarding it", deltaFile, crlFile);
+            return null;
+        }
+
+        try (InputStream input = new BufferedInputStream(new FileInputStream(deltaFile))) {
+            CertificateFactory cf = CertificateFactory.getInstance("X.509");
+            X509CRL crl = (X509CRL) cf.generateCRL(input);
+
+            BigInteger crlNumber = readIntegerExtension(crl, CRL_NUMBER_OID);
+            BigInteger baseCrlNumber = readIntegerExtension(crl, DELTA_CRL_INDICATOR_OID);
+
+            if (crlNumber == null || baseCrlNumber == null) {
+                log.warn("Delta CRL {} is missing its CRL number or delta CRL indicator; discarding it",
+                    deltaFile);
+
+                return null;
+            }
+
+            DeltaCRL delta = new DeltaCRL(crlNumber, baseCrlNumber);
+
+            if (crl.getRevokedCertificates() != null) {
+                for (X509CRLEntry entry : crl.getRevokedCertificates()) {
+                    if (entry.getRevocationReason() == CRLReason.REMOVE_FROM_CRL) {
+                        delta.removed.put(entry.getSerialNumber(), entry.getRevocationDate());
+                    }
+                    else {
+                        delta.revoked.put(entry.getSerialNumber(), entry.getRevocationDate());
+                    }
                 }
             }
+
+            return delta;
+        }
+        catch (IOException | GeneralSecurityException e) {
+            log.warn("Unable to read delta CRL {}; discarding it", deltaFile, e);
+            return null;
         }
+    }
 
-        if (revoke.size() > 0 || unrevoke.size() > 0) {
-            log.info("Updating CRL file; adding {} newly revoked serials, removing {} expired serials",
-                revoke.size(), unrevoke.size());
+    /**
+     * Writes a new delta CRL. The delta CRL is written to a temporary file first and then moved
+     * into place, so it can be served while it is being replaced.
+     */
+    private void writeDeltaCRL(File deltaFile, BigInteger crlNumber, BigInteger baseCrlNumber,
+        Map<BigInteger, Date> revoked, Map<BigInteger, Date> removed) throws IOException {
 
-            this.updateCRLFile(crlFile, revoke, unrevoke);
+        X509CRL crl = this.pkiUtility.createX509DeltaCRL(toEntries(revoked), toEntries(removed),
+            crlNumber, baseCrlNumber);
 
-            // Do some cleanup so we don't leave a bunch of cert serials lying around
-            if (uncollected.size() > 0) {
-                int collected = this.certificateSerialCurator.markSerialsAsCollected(uncollected);
+        File tempFile = File.createTempFile("candlepin_delta_crl_", ".pem",
+            deltaFile.getAbsoluteFile().getParentFile());
 
-                if (collected != uncollected.size()) {
-                    // We have a severe problem here.
-                    log.error("Unable to collect all expected revoked serials; collected: {}, revoked: {}",
-                        collected, uncollected.size());
-                }
-                else {
-                    log.debug("Collected {} revoked serials", collected);
-                }
+        try {
+            try (OutputStream output = new FileOutputStream(tempFile)) {
+                this.pkiUtility.writePemEncoded(crl, output);
+            }
+
+            Files.move(tempFile.toPath(), deltaFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            if (tempFile.exists() && !tempFile.delete()) {
+                log.error("Unable to delete temporary CRL file: {}", tempFile);
             }
+        }
+    }
 
-            if (expired.size() > 0) {
-                int deleted = this.certificateSerialCurator.deleteSerials(expired);
+    private static BigInteger readIntegerExtension(X509CRL crl, String oid) throws IOException {
+        byte[] value = crl.getExtensionValue(oid);
 
-                if (deleted != expired.size()) {
-                    log.error("Unable to delete all expected expired serials; deleted: {}, expired: {}",
-                        deleted, expired.size());
-                }
-                else {
-                    log.info("Deleted {} expired serials", deleted);
-                }
+        if (value == null) {
+            return null;
+        }
+
+        // The extension value is an octet string wrapping the DER encoded integer
+        return new DerValue(new DerValue(value).getOctetString()).getInteger().toBigInteger();
+    }
+
+    private static Map<BigInteger, Date> toRevocationMap(Collection<BigInteger> serials, Date date) {
+        Map<BigInteger, Date> revocations = new LinkedHashMap<>();
+
+        if (serials != null) {
+            for (BigInteger serial : serials) {
+                revocations.put(serial, date);
             }
         }
-        return uncollected.size() + expired.size();
+
+        return revocations;
+    }
+
+    private static CRLEntryValidator unrevokeValidator(final Collection<BigInteger> unrevoke) {
+        if (unrevoke == null || unrevoke.isEmpty()) {
+            return null;
+        }
+
+        return new CRLEntryValidator() {
+            public boolean shouldDelete(X509CRLEntry entry) {
+                return unrevoke.contains(entry.getSerialNumber());
+            }
+        };
+    }
+
+    private static List<X509CRLEntryWrapper> toEntries(Map<BigInteger, Date> revocations) {
+        List<X509CRLEntryWrapper> entries = new ArrayList<>(revocations.size());
+
+        for (Map.Entry<BigInteger, Date> entry : revocations.entrySet()) {
+            entries.add(new X509CRLEntryWrapper(entry.getKey(), entry.getValue()));
+        }
+
+        return entries;
+    }
+
+    private static List<Long> filterSerials(List<Long> serials) {
+        List<Long> filtered = new ArrayList<>(serials.size());
+
+        for (Long serial : serials) {
+            if (serial != null) {
+                filtered.add(serial);
+            }
+        }
+
+        return filtered;
+    }
+
+    private static Set<BigInteger> toBigIntegers(List<Long> serials) {
+        Set<BigInteger> converted = new HashSet<>(serials.size());
+
+        for (Long serial : serials) {
+            converted.add(BigInteger.valueOf(serial));
+        }
+
+        return converted;
     }
 
     /**
-     * Sync the specified CRL file with the database. The sync will be done in batches
-     * defined by the candlepin configuration property (default 1,000,000).
+     * Marks the given revoked serials as collected and deletes the given expired serials once they
+     * have been written to the CRL.
+     *
+     * @param uncollected the revoked serials which have been added to the CRL
+     * @param expired the expired serials which have been removed from the CRL
+     */
+    @Transactional
+    public void collectSerials(List<Long> uncollected, List<Long> expired) {
+        // Do some cleanup so we don't leave a bunch of cert serials lying around
+        if (uncollected.size() > 0) {
+            int collected = this.certificateSerialCurator.markSerialsAsCollected(uncollected);
+
+            if (collected != uncollected.size()) {
+                // We have a severe problem here.
+                log.error("Unable to collect all expected revoked serials; collected: {}, revoked: {}",
+                    collected, uncollected.size());
+            }
+            else {
+                log.debug("Collected {} revoked serials", collected);
+            }
+        }
+
+        if (expired.size() > 0) {
+            int deleted = this.certificateSerialCurator.deleteSerials(expired);
+
+            if (deleted != expired.size()) {
+                log.error("Unable to delete all expected expired serials; deleted: {}, expired: {}",
+                    deleted, expired.size());
+            }
+            else {
+                log.info("Deleted {} expired serials", deleted);
+            }
+        }
+    }
+
+    /**
+     * Sync the specified CRL file with the database. All outstanding revoked and expired serials are
+     * gathered up front and applied to the CRL in a single pass; the serials are then collected in
+     * transactions of the size defined by the candlepin configuration property (default 1,000,000).
      *
      * @param file the CRL file to be synced
      * @throws IOException
      */
     public void syncCRLWithDB(File file) throws IOException {
-        // Batch size will be defaulted to 1 million. This will keep the memory and CPU
-        // usage at a reasonable level during the update.
         int batchSize = config.getInt(ConfigProperties.CRL_SERIAL_BATCH_SIZE);
 
         // First clean up any serials that are already expired, revoked and not collected
@@ -422,14 +722,48 @@ public class CrlFileUtil {
         int deleted = certificateSerialCurator.deleteRevokedExpiredAndNotCollectedSerials();
         log.debug("Deleted {} cert serials that were expired, revoked and not yet collected.", deleted);
 
-        int totalProcessed = 0;
-        boolean moreToProcess = true;
-        while (moreToProcess) {
-            int processedRecordCount = this.batchSyncCRLWithDB(file, batchSize);
-            moreToProcess = processedRecordCount != 0;
-            totalProcessed += processedRecordCount;
+        List<Long> uncollected = filterSerials(
+            this.certificateSerialCurator.getUncollectedRevokedCertSerials().list());
+        List<Long> expired = filterSerials(
+            this.certificateSerialCurator.getExpiredRevokedCertSerials().list());
+
+        if (uncollected.size() > 0 || expired.size() > 0) {
+            log.info("Updating CRL file; adding {} newly revoked serials, removing {} expired serials",
+                uncollected.size(), expired.size());
+
+            this.updateCRL(file, toBigIntegers(uncollected), toBigIntegers(expired));
+
+            for (List<Long> block : Lists.partition(uncollected, batchSize)) {
+                log.debug("Processing next batch of {} serials.", batchSize);
+                this.collectSerials(block, Collections.emptyList());
+            }
+
+            for (List<Long> block : Lists.partition(expired, batchSize)) {
+                log.debug("Processing next batch of {} serials.", batchSize);
+                this.collectSerials(Collections.emptyList(), block);
+            }
+        }
+        else if (this.isDeltaCRLEnabled()) {
+            // Nothing to add, but the CRL file may still be due for its periodic rebuild
+            this.updateCRL(file, null, null);
+        }
+
+        log.info("CRL sync processed a total of {} serials.", uncollected.size() + expired.size());
+    }
+
+    /**
+     * The contents of a delta CRL
+     */
+    private static class DeltaCRL {
+        private final BigInteger crlNumber;
+        private final BigInteger baseCrlNumber;
+        private final Map<BigInteger, Date> revoked = new LinkedHashMap<>();
+        private final Map<BigInteger, Date> removed = new LinkedHashMap<>();
+
+        public DeltaCRL(BigInteger crlNumber, BigInteger baseCrlNumber) {
+            this.crlNumber = crlNumber;
+            this.baseCrlNumber = baseCrlNumber;
         }
-        log.info("CRL sync processed a total of {} serials.", totalProcessed);
     }
 
 }
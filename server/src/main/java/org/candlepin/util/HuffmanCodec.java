@@ -0,0 +1,331 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import org.candlepin.util.X509V3ExtensionUtil.HuffNode;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+
+
+/**
+ * Bit-level encoder and decoder for the Huffman tries used in the V3 entitlement content payload.
+ * <p></p>
+ * The code for each symbol in the trie is computed once, up front, and stored as a long and a bit
+ * length, so encoding a symbol is a single table lookup followed by writing its bits directly
+ * into the output buffer. Decoding walks the trie one bit at a time straight off the payload
+ * bytes. A left branch in the trie is encoded as a 0 bit and a right branch as a 1 bit, with the
+ * most significant bit of each byte written first.
+ */
+public class HuffmanCodec {
+
+    /** The maximum length, in bits, of a code which can be held in the code table */
+    public static final int MAX_CODE_LENGTH = 64;
+
+    private final HuffNode trie;
+    private final Map<Object, Long> codes;
+    private final Map<Object, Integer> lengths;
+
+    /**
+     * Creates a new codec for the given trie, computing the code for every symbol in it.
+     *
+     * @param trie
+     *  the root node of the trie to use for encoding and decoding
+     *
+     * @throws IllegalArgumentException
+     *  if the trie is null
+     *
+     * @throws IllegalStateException
+     *  if the trie is deeper than the maximum code length
+     */
+    public HuffmanCodec(HuffNode trie) {
+        if (trie == null) {
+            throw new IllegalArgumentException("trie is null");
+        }
+
+        this.trie = trie;
+        this.codes = new HashMap<>();
+        this.lengths = new HashMap<>();
+
+        Deque<HuffNode> nodes = new ArrayDeque<>();
+        Deque<Long> nodeCodes = new ArrayDeque<>();
+        Deque<Integer> nodeLengths = new ArrayDeque<>();
+
+        nodes.push(trie);
+        nodeCodes.push(0L);
+        nodeLengths.push(0);
+
+        while (!nodes.isEmpty()) {
+            HuffNode node = nodes.pop();
+            long code = nodeCodes.pop();
+            int length = nodeLengths.pop();
+
+            if (node.getValue() != null) {
+                // Symbols are expected to be unique; should one appear twice, keep the first
+                if (!this.codes.containsKey(node.getValue())) {
+                    this.codes.put(node.getValue(), code);
+                    this.lengths.put(node.getValue(), length);
+                }
+
+                continue;
+            }
+
+            if (length >= MAX_CODE_LENGTH && (node.getLeft() != null || node.getRight() != null)) {
+                throw new IllegalStateException("Huffman trie exceeds the maximum code length of " +
+                    MAX_CODE_LENGTH + " bits");
+            }
+
+            // Push right first so the left branch is visited first
+            if (node.getRight() != null) {
+                nodes.push(node.getRight());
+                nodeCodes.push((code << 1) | 1L);
+                nodeLengths.push(length + 1);
+            }
+
+            if (node.getLeft() != null) {
+                nodes.push(node.getLeft());
+                nodeCodes.push(code << 1);
+                nodeLengths.push(length + 1);
+            }
+        }
+    }
+
+    /**
+     * Checks whether or not the given symbol is present in the trie backing this codec.
+     *
+     * @param symbol
+     *  the symbol to check
+     *
+     * @return
+     *  true if the symbol can be encoded by this codec; false otherwise
+     */
+    public boolean contains(Object symbol) {
+        return this.codes.containsKey(symbol);
+    }
+
+    /**
+     * Fetches the code for the given symbol, right-aligned in the returned long.
+     *
+     * @param symbol
+     *  the symbol for which to fetch the code
+     *
+     * @throws IllegalArgumentException
+     *  if the symbol is not present in the trie
+     *
+     * @return
+     *  the code for the symbol
+     */
+    public long getCode(Object symbol) {
+        Long code = this.codes.get(symbol);
+        if (code == null) {
+            throw new IllegalArgumentException("symbol not present in trie: " + symbol);
+        }
+
+        return code;
+    }
+
+    /**
+     * Fetches the length, in bits, of the code for the given symbol.
+     *
+     * @param symbol
+     *  the symbol for which to fetch the code length
+     *
+     * @throws IllegalArgumentException
+     *  if the symbol is not present in the trie
+     *
+     * @return
+     *  the length of the code for the symbol
+     */
+    public int getCodeLength(Object symbol) {
+        Integer length = this.lengths.get(symbol);
+        if (length == null) {
+            throw new IllegalArgumentException("symbol not present in trie: " + symbol);
+        }
+
+        return length;
+    }
+
+    /**
+     * Writes the code for the given symbol to the specified bit writer.
+     *
+     * @param writer
+     *  the bit writer to receive the code
+     *
+     * @param symbol
+     *  the symbol to encode
+     *
+     * @throws IllegalArgumentException
+     *  if the symbol is not present in the trie
+     */
+    public void encode(BitWriter writer, Object symbol) {
+        writer.write(this.getCode(symbol), this.getCodeLength(symbol));
+    }
+
+    /**
+     * Reads the next symbol from the given bit reader.
+     *
+     * @param reader
+     *  the bit reader from which to read the symbol
+     *
+     * @throws IllegalStateException
+     *  if the bits read do not describe a path in the trie
+     *
+     * @return
+     *  the decoded symbol, or null if the reader ran out of bits before a full code was read
+     */
+    public Object decode(BitReader reader) {
+        HuffNode node = this.trie;
+
+        while (node.getValue() == null) {
+            int bit = reader.read();
+            if (bit < 0) {
+                return null;
+            }
+
+            node = bit == 0 ? node.getLeft() : node.getRight();
+            if (node == null) {
+                throw new IllegalStateException("Encoded path not in trie");
+            }
+        }
+
+        return node.getValue();
+    }
+
+    /**
+     * Packs bits, most significant bit first, into an underlying byte stream.
+     */
+    public static class BitWriter {
+        private final ByteArrayOutputStream output;
+        private int current;
+        private int count;
+
+        /**
+         * Creates a new bit writer which writes completed bytes to the given stream.
+         *
+         * @param output
+         *  the stream to receive the packed bytes
+         */
+        public BitWriter(ByteArrayOutputStream output) {
+            if (output == null) {
+                throw new IllegalArgumentException("output is null");
+            }
+
+            this.output = output;
+        }
+
+        /**
+         * Writes the lowest <tt>length</tt> bits of the given value, most significant first.
+         *
+         * @param bits
+         *  the value containing the bits to write
+         *
+         * @param length
+         *  the number of bits to write, from zero to {@link HuffmanCodec#MAX_CODE_LENGTH}
+         */
+        public void write(long bits, int length) {
+            if (length < 0 || length > MAX_CODE_LENGTH) {
+                throw new IllegalArgumentException("invalid bit length: " + length);
+            }
+
+            int remaining = length;
+            while (remaining > 0) {
+                int take = Math.min(remaining, 8 - this.count);
+                int shift = remaining - take;
+
+                this.current = (this.current << take) | (int) ((bits >>> shift) & ((1 << take) - 1));
+                this.count += take;
+                remaining -= take;
+
+                if (this.count == 8) {
+                    this.output.write(this.current);
+                    this.current = 0;
+                    this.count = 0;
+                }
+            }
+        }
+
+        /**
+         * Writes any partially filled byte, padding its unused low-order bits with zeros.
+         */
+        public void flush() {
+            if (this.count > 0) {
+                this.output.write(this.current << (8 - this.count));
+                this.current = 0;
+                this.count = 0;
+            }
+        }
+    }
+
+    /**
+     * Reads bits, most significant bit first, from a byte array.
+     */
+    public static class BitReader {
+        private final byte[] input;
+        private final int end;
+        private int offset;
+        private int bit;
+
+        /**
+         * Creates a new bit reader over the given range of a byte array.
+         *
+         * @param input
+         *  the byte array from which to read bits
+         *
+         * @param offset
+         *  the offset of the first byte to read
+         *
+         * @param length
+         *  the number of bytes to read
+         */
+        public BitReader(byte[] input, int offset, int length) {
+            if (input == null) {
+                throw new IllegalArgumentException("input is null");
+            }
+
+            if (offset < 0 || length < 0 || offset + length > input.length) {
+                throw new IllegalArgumentException("invalid range");
+            }
+
+            this.input = input;
+            this.offset = offset;
+            this.end = offset + length;
+            this.bit = 0;
+        }
+
+        /**
+         * Reads the next bit.
+         *
+         * @return
+         *  the next bit as 0 or 1, or -1 if no bits remain
+         */
+        public int read() {
+            if (this.offset >= this.end) {
+                return -1;
+            }
+
+            int value = (this.input[this.offset] >> (7 - this.bit)) & 1;
+            if (++this.bit == 8) {
+                this.bit = 0;
+                this.offset++;
+            }
+
+            return value;
+        }
+    }
+}
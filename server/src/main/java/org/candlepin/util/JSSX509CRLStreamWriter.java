@@ -331,7 +331,7 @@ public class JSSX509CRLStreamWriter extends AbstractX509CRLStreamWriter {
                 if (ext.getExtensionId().equals(PKIXExtensions.CRLNumber_Id)) {
                     CRLNumberExtension crlNumExt = (CRLNumberExtension) ext;
                     BigInteger crlNum = (BigInteger) crlNumExt.get(CRLNumberExtension.NUMBER);
-                    newExts.add(new CRLNumberExtension(ext.isCritical(), crlNum.add(BigInteger.ONE)));
+                    newExts.add(new CRLNumberExtension(ext.isCritical(), this.nextCrlNumber(crlNum)));
                 }
                 else if (ext.getExtensionId().equals(PKIXExtensions.AuthorityKey_Id)) {
                     aki.setCritical(ext.isCritical());
@@ -456,7 +456,7 @@ public class JSSX509CRLStreamWriter extends AbstractX509CRLStreamWriter {
             for (Extension e : exts) {
                 if (e.getExtensionId().equals(PKIXExtensions.CRLNumber_Id)) {
                     DerValue crlNum = new DerValue(e.getExtensionValue());
-                    BigInteger newCrlNum = crlNum.getInteger().toBigInteger().add(BigInteger.ONE);
+                    BigInteger newCrlNum = this.nextCrlNumber(crlNum.getInteger().toBigInteger());
 
                     modifiedExts.addElement(new org.mozilla.jss.pkix.cert.Extension(
                         new OBJECT_IDENTIFIER(e.getExtensionId().toString()), e.isCritical(),
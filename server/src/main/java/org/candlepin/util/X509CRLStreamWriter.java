@@ -58,6 +58,22 @@ public interface X509CRLStreamWriter {
 
     boolean hasChangesQueued();
 
+    /**
+     * Sets the lowest CRL number the modified CRL may have.  The CRL number of the existing CRL is
+     * normally incremented by one, but is raised to this value when it would otherwise be lower, so
+     * the modified CRL can follow any delta CRLs issued against the existing one.  This must be
+     * called before the stream is pre-scanned.
+     *
+     * @param crlNumber the lowest CRL number to use
+     * @return itself
+     */
+    X509CRLStreamWriter setMinimumCrlNumber(BigInteger crlNumber);
+
+    /**
+     * @return the CRL number of the modified CRL, or null if it has not been determined yet
+     */
+    BigInteger getCrlNumber();
+
     /**
      * Write a modified CRL to the given output stream.  This method will add each entry provided
      * via the add() method.
@@ -14,6 +14,7 @@
  */
 package org.candlepin.util;
 
+import org.candlepin.cache.ContentPayloadCache;
 import org.candlepin.common.config.Configuration;
 import org.candlepin.config.ConfigProperties;
 import org.candlepin.model.Branding;
@@ -52,6 +53,7 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.zip.Deflater;
@@ -68,6 +70,7 @@ public class X509V3ExtensionUtil extends X509Util {
     private ObjectMapper mapper;
     private Configuration config;
     private EntitlementCurator entCurator;
+    private ContentPayloadCache payloadCache;
     public static final String CERT_VERSION = "3.4";
 
     private long pathNodeId = 0;
@@ -77,12 +80,14 @@ public class X509V3ExtensionUtil extends X509Util {
 
     @Inject
     public X509V3ExtensionUtil(Configuration config, EntitlementCurator entCurator,
-        @Named("X509V3ExtensionUtilObjectMapper") ObjectMapper objectMapper) {
+        @Named("X509V3ExtensionUtilObjectMapper") ObjectMapper objectMapper,
+        ContentPayloadCache payloadCache) {
 
         // Output everything in UTC
         this.config = config;
         this.entCurator = entCurator;
         this.mapper = objectMapper;
+        this.payloadCache = payloadCache;
     }
 
     public Set<X509ExtensionWrapper> getExtensions() {
@@ -122,6 +127,21 @@ public class X509V3ExtensionUtil extends X509Util {
 
     private byte[] retrieveContentValue(EntitlementBody eb) throws IOException {
         List<Content> contentList = getContentList(eb);
+        if (this.payloadCache == null) {
+            return this.buildContentValue(contentList);
+        }
+
+        // The payload is determined entirely by the set of content paths, so consumers entitled to
+        // the same content can share an already encoded payload
+        List<String> paths = new ArrayList<>(contentList.size());
+        for (Content content : contentList) {
+            paths.add(content.getPath());
+        }
+
+        return this.payloadCache.get(paths, () -> this.buildContentValue(contentList));
+    }
+
+    private byte[] buildContentValue(List<Content> contentList) throws IOException {
         PathNode treeRoot = makePathTree(contentList, new PathNode());
         List<String> nodeStrings = orderStrings(treeRoot);
         if (nodeStrings.size() == 0) {
@@ -736,37 +756,19 @@ public class X509V3ExtensionUtil extends X509Util {
         else {
             baos.write(nodeSize);
         }
-        StringBuilder bits = new StringBuilder();
-        String endNodeLocation = findHuffPath(stringParent, END_NODE);
+        HuffmanCodec stringCodec = new HuffmanCodec(stringParent);
+        HuffmanCodec pathNodeCodec = new HuffmanCodec(pathNodeParent);
+        HuffmanCodec.BitWriter bits = new HuffmanCodec.BitWriter(baos);
+
         for (PathNode pn : pathNodes) {
             for (NodePair np : pn.getChildren()) {
-                bits.append(findHuffPath(stringParent, np.getName()));
-                bits.append(findHuffPath(pathNodeParent, np.getConnection()));
-            }
-            bits.append(endNodeLocation);
-            while (bits.length() >= 8) {
-                int next = 0;
-                for (int i = 0; i < 8; i++) {
-                    next = (byte) next << 1;
-                    if (bits.charAt(i) == '1') {
-                        next++;
-                    }
-                }
-                baos.write(next);
-                bits.delete(0, 8);
+                stringCodec.encode(bits, np.getName());
+                pathNodeCodec.encode(bits, np.getConnection());
             }
+            stringCodec.encode(bits, END_NODE);
         }
 
-        if (bits.length() > 0) {
-            int next = 0;
-            for (int i = 0;  i < 8; i++) {
-                next = (byte) next << 1;
-                if (i < bits.length() && bits.charAt(i) == '1') {
-                    next++;
-                }
-            }
-            baos.write(next);
-        }
+        bits.flush();
         byte[] result = baos.toByteArray();
         if (treeDebug) {
             ByteArrayInputStream bais = new ByteArrayInputStream(result);
@@ -864,36 +866,38 @@ public class X509V3ExtensionUtil extends X509Util {
         if (nodesList.get(0).getValue() instanceof PathNode) {
             nodesList.remove(0);
         }
-        while (nodesList.size() > 1) {
-            int node1 = findSmallest(-1, nodesList);
-            int node2 = findSmallest(node1, nodesList);
-            HuffNode hn1 = nodesList.get(node1);
-            HuffNode hn2 = nodesList.get(node2);
-            HuffNode merged = mergeNodes(hn1, hn2);
-            nodesList.remove(hn1);
-            nodesList.remove(hn2);
-            nodesList.add(merged);
+
+        // Repeatedly merge the two lightest nodes. Ties go to the node which was added first, with
+        // merged nodes added after all existing nodes, which yields the same trie as scanning the
+        // list for the two smallest nodes on every pass.
+        final List<HuffNode> nodes = new ArrayList<>(nodesList);
+        PriorityQueue<Integer> queue = new PriorityQueue<>(Math.max(1, nodes.size()), (lhs, rhs) -> {
+            int result = Integer.compare(nodes.get(lhs).getWeight(), nodes.get(rhs).getWeight());
+            return result != 0 ? result : Integer.compare(lhs, rhs);
+        });
+
+        for (int i = 0; i < nodes.size(); i++) {
+            queue.add(i);
+        }
+
+        while (queue.size() > 1) {
+            HuffNode hn1 = nodes.get(queue.poll());
+            HuffNode hn2 = nodes.get(queue.poll());
+            nodes.add(mergeNodes(hn1, hn2));
+            queue.add(nodes.size() - 1);
         }
+
+        nodesList.clear();
+        if (!queue.isEmpty()) {
+            nodesList.add(nodes.get(queue.poll()));
+        }
+
         if (treeDebug) {
             printTrie(nodesList.get(0), 0);
         }
         return nodesList.get(0);
     }
 
-    private int findSmallest(int exclude, List<HuffNode> nodes) {
-        int smallest = -1;
-        for (int index = 0; index < nodes.size(); index++) {
-            if (index == exclude) {
-                continue;
-            }
-            if (smallest == -1 || nodes.get(index).getWeight() <
-                nodes.get(smallest).getWeight()) {
-                smallest = index;
-            }
-        }
-        return smallest;
-    }
-
     private HuffNode mergeNodes(HuffNode left, HuffNode right) {
         return new HuffNode(null, left.weight + right.weight, left, right);
     }
@@ -927,7 +931,6 @@ public class X509V3ExtensionUtil extends X509Util {
         triePathDictionary.addAll(pathDictionary);
         HuffNode pathTrie = makeTrie(triePathDictionary);
 
-        StringBuffer nodeBits = new StringBuffer();
         ByteArrayInputStream bais = new ByteArrayInputStream(payload, (int) read,
             (int) (payload.length - read));
 
@@ -960,16 +963,6 @@ public class X509V3ExtensionUtil extends X509Util {
             nodeCount = total;
         }
 
-        value = bais.read();
-        while (value != -1) {
-            String someBits = Integer.toString(value, 2);
-            for (int pad = 0; pad < 8 - someBits.length(); pad++) {
-                nodeBits.append("0");
-            }
-            nodeBits.append(someBits);
-            value = bais.read();
-        }
-
         for (int j = 0; j < nodeCount; j++) {
             nodeDictionary.add(new HuffNode(new PathNode(), j));
         }
@@ -979,6 +972,8 @@ public class X509V3ExtensionUtil extends X509Util {
         HuffNode nodeTrie = makeTrie(trieNodeDictionary);
 
         // populate the PathNodes so we can rebuild the cool url tree
+        HuffmanCodec.BitReader nodeBits = new HuffmanCodec.BitReader(payload,
+            payload.length - bais.available(), bais.available());
         Set<PathNode> pathNodes =  populatePathNodes(nodeDictionary, pathTrie, nodeTrie, nodeBits);
         // find the root, he has no parents. He does have children
         // added child check because we have a blank placeholder node for the single segment case
@@ -1021,50 +1016,34 @@ public class X509V3ExtensionUtil extends X509Util {
     }
 
     private Set<PathNode> populatePathNodes(List<HuffNode> nodeDictionary,
-        HuffNode pathTrie, HuffNode nodeTrie, StringBuffer nodeBits) {
+        HuffNode pathTrie, HuffNode nodeTrie, HuffmanCodec.BitReader nodeBits) {
+
+        HuffmanCodec pathCodec = new HuffmanCodec(pathTrie);
+        HuffmanCodec nodeCodec = new HuffmanCodec(nodeTrie);
+
         Set<PathNode> pathNodes = new HashSet<>();
         for (HuffNode node : nodeDictionary) {
-            pathNodes.add((PathNode) node.getValue());
-            boolean stillNode = true;
-            while (stillNode) {
-                // get first child name
-                // if its END_NODE we are done
-                String nameValue = null;
-                StringBuilder nameBits = new StringBuilder();
-                while (nameValue == null && stillNode) {
-                    nameBits.append(nodeBits.charAt(0));
-                    nodeBits.deleteCharAt(0);
-                    Object lookupValue = findHuffNodeValueByBits(pathTrie,
-                        nameBits.toString());
-                    if (lookupValue != null) {
-                        if (lookupValue.equals(END_NODE)) {
-                            stillNode = false;
-                            break;
-                        }
-                        nameValue = (String) lookupValue;
-                    }
-                    if (nodeBits.length() == 0) {
-                        stillNode = false;
-                    }
+            PathNode parent = (PathNode) node.getValue();
+            pathNodes.add(parent);
+
+            // read (name, node) pairs until the end marker; stop entirely if we run out of bits
+            while (true) {
+                Object nameValue = pathCodec.decode(nodeBits);
+                if (nameValue == null) {
+                    return pathNodes;
                 }
 
-                PathNode nodeValue = null;
-                StringBuilder pathBits = new StringBuilder();
-                while (nodeValue == null && stillNode) {
-                    pathBits.append(nodeBits.charAt(0));
-                    nodeBits.deleteCharAt(0);
-                    PathNode lookupValue = (PathNode) findHuffNodeValueByBits(nodeTrie,
-                        pathBits.toString());
-                    if (lookupValue != null) {
-                        nodeValue = lookupValue;
-                        nodeValue.addParent((PathNode) node.getValue());
-                        ((PathNode) node.getValue()).addChild(
-                            new NodePair(nameValue, nodeValue));
-                    }
-                    if (nodeBits.length() == 0) {
-                        stillNode = false;
-                    }
+                if (nameValue.equals(END_NODE)) {
+                    break;
                 }
+
+                PathNode nodeValue = (PathNode) nodeCodec.decode(nodeBits);
+                if (nodeValue == null) {
+                    return pathNodes;
+                }
+
+                nodeValue.addParent(parent);
+                parent.addChild(new NodePair((String) nameValue, nodeValue));
             }
         }
         return pathNodes;
@@ -26,6 +26,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.AdditionalAnswers.returnsFirstArg;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyLong;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doAnswer;
@@ -104,6 +105,7 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -387,6 +389,94 @@ public class JobManagerTest {
         verify(spy).execute(any());
     }
 
+    @Test
+    public void testJobIsDeferredWhenOwnerReachesConcurrentJobLimit() throws Exception {
+        this.config.setProperty(ConfigProperties.ASYNC_JOBS_OWNER_THREADS, "1");
+        this.config.setProperty(ConfigProperties.ASYNC_JOBS_OWNER_DEFER_DELAY, "5000");
+
+        Owner owner = new Owner("test_owner", "owner_name");
+        owner.setId("test_owner_id");
+
+        AsyncJobStatus status1 = this.createJobStatus("job-1", owner, JobState.QUEUED)
+            .setJobKey(TestJob.JOB_KEY);
+        AsyncJobStatus status2 = this.createJobStatus("job-2", owner, JobState.QUEUED)
+            .setJobKey(TestJob.JOB_KEY);
+
+        this.injectMockedJobStatus(status1);
+        this.injectMockedJobStatus(status2);
+
+        JobManager manager = createJobManager();
+        manager.initialize();
+        manager.start();
+
+        // Receive the second job while the first job for the same owner is still running
+        AtomicInteger executions = new AtomicInteger();
+        final AsyncJob job = mock(AsyncJob.class);
+        doAnswer(iom -> {
+            if (executions.getAndIncrement() == 0) {
+                manager.executeJob(new JobMessage("job-2", TestJob.JOB_KEY));
+            }
+
+            return null;
+        }).when(job).execute(any());
+        doReturn(job).when(injector).getInstance(TestJob.class);
+
+        manager.executeJob(new JobMessage("job-1", TestJob.JOB_KEY));
+
+        assertEquals(JobState.FINISHED, status1.getState());
+        assertEquals(JobState.QUEUED, status2.getState());
+        verify(job, times(1)).execute(any());
+
+        ArgumentCaptor<JobMessage> captor = ArgumentCaptor.forClass(JobMessage.class);
+        verify(this.dispatcher, times(1)).postJobMessage(captor.capture(), eq(5000L));
+        assertEquals("job-2", captor.getValue().getJobId());
+
+        // Once the first job is done, the deferred job runs normally
+        manager.executeJob(new JobMessage("job-2", TestJob.JOB_KEY));
+
+        assertEquals(JobState.FINISHED, status2.getState());
+        verify(job, times(2)).execute(any());
+    }
+
+    @Test
+    public void testJobsForDifferentOwnersAreNotDeferred() throws Exception {
+        this.config.setProperty(ConfigProperties.ASYNC_JOBS_OWNER_THREADS, "1");
+
+        Owner owner1 = new Owner("test_owner-1", "owner_name-1");
+        owner1.setId("test_owner_id-1");
+        Owner owner2 = new Owner("test_owner-2", "owner_name-2");
+        owner2.setId("test_owner_id-2");
+
+        AsyncJobStatus status1 = this.createJobStatus("job-1", owner1, JobState.QUEUED)
+            .setJobKey(TestJob.JOB_KEY);
+        AsyncJobStatus status2 = this.createJobStatus("job-2", owner2, JobState.QUEUED)
+            .setJobKey(TestJob.JOB_KEY);
+
+        this.injectMockedJobStatus(status1);
+        this.injectMockedJobStatus(status2);
+
+        JobManager manager = createJobManager();
+        manager.initialize();
+        manager.start();
+
+        AtomicInteger executions = new AtomicInteger();
+        final AsyncJob job = mock(AsyncJob.class);
+        doAnswer(iom -> {
+            if (executions.getAndIncrement() == 0) {
+                manager.executeJob(new JobMessage("job-2", TestJob.JOB_KEY));
+            }
+
+            return null;
+        }).when(job).execute(any());
+        doReturn(job).when(injector).getInstance(TestJob.class);
+
+        manager.executeJob(new JobMessage("job-1", TestJob.JOB_KEY));
+
+        assertEquals(JobState.FINISHED, status1.getState());
+        assertEquals(JobState.FINISHED, status2.getState());
+        verify(this.dispatcher, never()).postJobMessage(any(JobMessage.class), anyLong());
+    }
+
     @Test
     public void testJobManagerDoesNotExecuteCanceledJob() throws JobException {
         AsyncJobStatus status = this.createJobStatus(JOB_ID)
@@ -1289,6 +1379,117 @@ public class JobManagerTest {
         assertThat(result.getJobResult(), containsString("Job blocked by the following existing jobs:"));
     }
 
+    @Test
+    public void testBlockedJobWaitsWhenConfigured() throws Exception {
+        AsyncJobStatus running = this.createJobStatus("job-1", null, JobState.RUNNING)
+            .setJobKey(TestJob.JOB_KEY);
+
+        JobConfig builder = JobConfig.forJob(TestJob.JOB_KEY)
+            .addConstraint((curator, job) -> Arrays.asList("job-1"))
+            .waitWhenBlocked(true);
+
+        JobManager manager = this.createJobManager();
+        manager.initialize();
+        manager.start();
+
+        // Stubbed after initialization so abandoned job recovery does not pick up the existing job
+        doReturn(Arrays.asList(running)).when(this.jobCurator)
+            .findJobs(Mockito.any(AsyncJobStatusQueryBuilder.class));
+
+        AsyncJobStatus result = manager.queueJob(builder);
+
+        assertNotNull(result);
+        assertEquals(JobState.WAITING, result.getState());
+        assertThat(result.getJobResult(), containsString("Job blocked by the following existing jobs:"));
+        verify(this.dispatcher, never()).postJobMessage(Mockito.any(JobMessage.class));
+    }
+
+    @Test
+    public void testBlockedJobReleasesOldestWaitingJobWithoutActiveJobs() throws Exception {
+        AsyncJobStatus waiting = this.createJobStatus("job-1", null, JobState.WAITING)
+            .setJobKey(TestJob.JOB_KEY);
+        waiting.setCreated(new Date());
+
+        JobConfig builder = JobConfig.forJob(TestJob.JOB_KEY)
+            .addConstraint((curator, job) -> Arrays.asList("job-1"))
+            .waitWhenBlocked(true);
+
+        JobManager manager = this.createJobManager();
+        manager.initialize();
+        manager.start();
+
+        // Stubbed after initialization so abandoned job recovery does not pick up the existing job
+        doReturn(Arrays.asList(waiting)).when(this.jobCurator)
+            .findJobs(Mockito.any(AsyncJobStatusQueryBuilder.class));
+        doReturn(Arrays.asList(waiting)).when(this.jobCurator).lockAndLoad(Mockito.anyIterable());
+
+        AsyncJobStatus result = manager.queueJob(builder);
+
+        assertNotNull(result);
+        assertEquals(JobState.WAITING, result.getState());
+        assertEquals(JobState.QUEUED, waiting.getState());
+        verify(this.jobCurator, times(1)).lockAndLoad(Mockito.anyIterable());
+        verify(this.dispatcher, times(1)).postJobMessage(Mockito.any(JobMessage.class));
+    }
+
+    @Test
+    public void testJobReplacesUnstartedCoalescedJobs() throws Exception {
+        Map<String, Object> ejobData = new HashMap<>();
+        ejobData.put("arg1", "val1");
+
+        AsyncJobStatus queued = this.createJobStatus("job-1", null, JobState.QUEUED)
+            .setJobKey(TestJob.JOB_KEY)
+            .setJobArguments(this.buildJobArguments(ejobData));
+
+        JobConfig builder = JobConfig.forJob(TestJob.JOB_KEY)
+            .addConstraint((curator, job) -> Arrays.asList("job-1"))
+            .coalesceByArguments("arg1")
+            .setJobArgument("arg1", "val1");
+
+        JobManager manager = this.createJobManager();
+        manager.initialize();
+        manager.start();
+
+        // Stubbed after initialization so abandoned job recovery does not pick up the existing job
+        doReturn(Arrays.asList(queued)).when(this.jobCurator)
+            .findJobs(Mockito.any(AsyncJobStatusQueryBuilder.class));
+
+        AsyncJobStatus result = manager.queueJob(builder);
+
+        assertNotNull(result);
+        assertEquals(JobState.QUEUED, result.getState());
+        assertEquals(JobState.CANCELED, queued.getState());
+    }
+
+    @Test
+    public void testJobDoesNotReplaceJobsWithDifferentArguments() throws Exception {
+        Map<String, Object> ejobData = new HashMap<>();
+        ejobData.put("arg1", "val2");
+
+        AsyncJobStatus queued = this.createJobStatus("job-1", null, JobState.QUEUED)
+            .setJobKey(TestJob.JOB_KEY)
+            .setJobArguments(this.buildJobArguments(ejobData));
+
+        JobConfig builder = JobConfig.forJob(TestJob.JOB_KEY)
+            .addConstraint((curator, job) -> Arrays.asList("job-1"))
+            .coalesceByArguments("arg1")
+            .setJobArgument("arg1", "val1");
+
+        JobManager manager = this.createJobManager();
+        manager.initialize();
+        manager.start();
+
+        // Stubbed after initialization so abandoned job recovery does not pick up the existing job
+        doReturn(Arrays.asList(queued)).when(this.jobCurator)
+            .findJobs(Mockito.any(AsyncJobStatusQueryBuilder.class));
+
+        AsyncJobStatus result = manager.queueJob(builder);
+
+        assertNotNull(result);
+        assertEquals(JobState.ABORTED, result.getState());
+        assertEquals(JobState.QUEUED, queued.getState());
+    }
+
     @Test
     public void jobStatusFound() {
         String jobId = "jobId";
@@ -1616,6 +1817,53 @@ public class JobManagerTest {
         assertEquals(JobState.CANCELED, output.getState());
     }
 
+    @Test
+    public void testCancelJobReleasesWaitingJob() throws Exception {
+        AsyncJobStatus expected = this.createJobStatus("job_id", null, JobState.QUEUED)
+            .setJobKey(TestJob.JOB_KEY);
+        this.injectMockedJobStatus(expected);
+
+        AsyncJobStatus waiting = this.createJobStatus("waiting_job_id", null, JobState.WAITING)
+            .setJobKey(TestJob.JOB_KEY);
+        waiting.setCreated(new Date());
+
+        doReturn(Arrays.asList(waiting)).when(this.jobCurator)
+            .findJobs(Mockito.any(AsyncJobStatusQueryBuilder.class));
+        doReturn(Arrays.asList(waiting)).when(this.jobCurator).lockAndLoad(Mockito.anyIterable());
+
+        JobManager manager = this.createJobManager();
+        AsyncJobStatus output = manager.cancelJob(expected.getId());
+
+        assertEquals(JobState.CANCELED, output.getState());
+        assertEquals(JobState.QUEUED, waiting.getState());
+        verify(this.dispatcher, times(1)).postJobMessage(Mockito.any(JobMessage.class));
+    }
+
+    @Test
+    public void testCancelJobDoesNotReleaseWaitingJobReleasedConcurrently() throws Exception {
+        AsyncJobStatus expected = this.createJobStatus("job_id", null, JobState.QUEUED)
+            .setJobKey(TestJob.JOB_KEY);
+        this.injectMockedJobStatus(expected);
+
+        AsyncJobStatus waiting = this.createJobStatus("waiting_job_id", null, JobState.WAITING)
+            .setJobKey(TestJob.JOB_KEY);
+        waiting.setCreated(new Date());
+
+        // Another caller releases the waiting job before this one acquires the lock
+        doReturn(Arrays.asList(waiting)).when(this.jobCurator)
+            .findJobs(Mockito.any(AsyncJobStatusQueryBuilder.class));
+        doReturn(Arrays.asList(waiting)).when(this.jobCurator).lockAndLoad(Mockito.anyIterable());
+        doAnswer(iom -> waiting.setState(JobState.QUEUED)).when(this.jobCurator)
+            .refresh(Mockito.<Iterable<AsyncJobStatus>>any());
+
+        JobManager manager = this.createJobManager();
+        AsyncJobStatus output = manager.cancelJob(expected.getId());
+
+        assertEquals(JobState.CANCELED, output.getState());
+        assertEquals(JobState.QUEUED, waiting.getState());
+        verify(this.dispatcher, never()).postJobMessage(Mockito.any(JobMessage.class));
+    }
+
     @Test
     public void testCancelJobDisablesRetryForRunningJobs() {
         String jobId = "job_id";
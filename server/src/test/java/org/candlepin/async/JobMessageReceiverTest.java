@@ -14,7 +14,9 @@
  */
 package org.candlepin.async;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.doAnswer;
@@ -28,6 +30,8 @@ import static org.mockito.Mockito.verify;
 import org.candlepin.common.config.Configuration;
 import org.candlepin.config.CandlepinCommonTestConfig;
 import org.candlepin.config.ConfigProperties;
+import org.candlepin.async.tasks.ActiveEntitlementJob;
+import org.candlepin.async.tasks.RefreshPoolsJob;
 import org.candlepin.messaging.CPMConsumer;
 import org.candlepin.messaging.CPMConsumerConfig;
 import org.candlepin.messaging.CPMException;
@@ -44,6 +48,11 @@ import com.google.inject.persist.UnitOfWork;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
 
 
 
@@ -103,9 +112,8 @@ public class JobMessageReceiverTest {
 
     private CPMSession createMockCPMSession(CPMConsumer consumer) throws CPMException {
         CPMSession session = mock(CPMSession.class);
-        CPMConsumerConfig cconfig = new CPMConsumerConfig();
 
-        doReturn(cconfig).when(session).createConsumerConfig();
+        doAnswer(iom -> new CPMConsumerConfig()).when(session).createConsumerConfig();
         doReturn(consumer).when(session).createConsumer();
         doReturn(consumer).when(session).createConsumer(any(CPMConsumerConfig.class));
 
@@ -117,9 +125,8 @@ public class JobMessageReceiverTest {
         CPMConsumer consumer = mock(CPMConsumer.class);
 
         doAnswer(iom -> {
-                CPMMessageListener prev = container.get();
                 container.set((CPMMessageListener) iom.getArguments()[0]);
-                return prev;
+                return iom.getMock();
             })
             .when(consumer)
             .setMessageListener(any(CPMMessageListener.class));
@@ -155,6 +162,76 @@ public class JobMessageReceiverTest {
     }
 
 
+    private List<String> getConsumerFilters(int expectedConsumers) throws Exception {
+        ArgumentCaptor<CPMConsumerConfig> captor = ArgumentCaptor.forClass(CPMConsumerConfig.class);
+        verify(this.session, times(expectedConsumers)).createConsumer(captor.capture());
+
+        return captor.getAllValues().stream()
+            .map(CPMConsumerConfig::getMessageFilter)
+            .sorted()
+            .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testJobsWithDedicatedThreadsAreProcessedByDedicatedConsumers() throws Exception {
+        this.config.setProperty(ConfigProperties.jobConfig("DedicatedJob",
+            ConfigProperties.ASYNC_JOBS_JOB_LISTENER_THREADS), "2");
+
+        this.buildJobMessageReceiver();
+
+        List<String> expected = Arrays.asList(
+            "job_key = 'DedicatedJob'",
+            "job_key = 'DedicatedJob'",
+            "job_key NOT IN ('DedicatedJob')");
+
+        assertEquals(expected, this.getConsumerFilters(3));
+    }
+
+    @Test
+    public void testDedicatedThreadsIgnoredForDisabledJobs() throws Exception {
+        this.config.setProperty(ConfigProperties.jobConfig("DisabledJob",
+            ConfigProperties.ASYNC_JOBS_JOB_LISTENER_THREADS), "2");
+        this.config.setProperty(
+            ConfigProperties.jobConfig("DisabledJob", ConfigProperties.ASYNC_JOBS_JOB_ENABLED), "false");
+
+        this.buildJobMessageReceiver();
+
+        assertEquals(Arrays.asList("job_key NOT IN ('DisabledJob')"), this.getConsumerFilters(1));
+    }
+
+    @Test
+    public void testDedicatedThreadsWithWhitelist() throws Exception {
+        this.config.setProperty(ConfigProperties.ASYNC_JOBS_WHITELIST, "SharedJob, DedicatedJob");
+        this.config.setProperty(ConfigProperties.jobConfig("DedicatedJob",
+            ConfigProperties.ASYNC_JOBS_JOB_LISTENER_THREADS), "1");
+        this.config.setProperty(ConfigProperties.jobConfig("OtherJob",
+            ConfigProperties.ASYNC_JOBS_JOB_LISTENER_THREADS), "1");
+
+        this.buildJobMessageReceiver();
+
+        List<String> expected = Arrays.asList(
+            "job_key = 'DedicatedJob'",
+            "job_key IN ('SharedJob')");
+
+        assertEquals(expected, this.getConsumerFilters(2));
+    }
+
+    @Test
+    public void testJobThreadSettingsDoNotCreateDedicatedConsumers() throws Exception {
+        // These configure the worker threads used within a single job, not listener threads
+        this.config.setProperty(ConfigProperties.jobConfig(RefreshPoolsJob.JOB_KEY,
+            RefreshPoolsJob.CFG_THREADS), "4");
+        this.config.setProperty(ConfigProperties.jobConfig(ActiveEntitlementJob.JOB_KEY,
+            ActiveEntitlementJob.CFG_THREADS), "4");
+
+        this.buildJobMessageReceiver();
+
+        // A single shared consumer, without any filter
+        ArgumentCaptor<CPMConsumerConfig> captor = ArgumentCaptor.forClass(CPMConsumerConfig.class);
+        verify(this.session, times(1)).createConsumer(captor.capture());
+        assertNull(captor.getValue().getMessageFilter());
+    }
+
     @Test
     public void testMessageAckAndSessionCommitOnSuccess() throws Exception {
         CPMMessage message = this.createCPMMessage("test_id", "test_key");
@@ -18,23 +18,55 @@ package org.candlepin.async.tasks;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 
 import org.candlepin.async.JobExecutionContext;
 import org.candlepin.async.JobExecutionException;
+import org.candlepin.audit.EventSink;
+import org.candlepin.auth.Principal;
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.guice.CandlepinRequestScope;
+import org.candlepin.guice.PrincipalProvider;
 import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerCurator;
 import org.candlepin.model.ConsumerInstalledProduct;
 import org.candlepin.model.ConsumerType;
 import org.candlepin.model.Entitlement;
 import org.candlepin.model.Owner;
 import org.candlepin.model.Pool;
 import org.candlepin.model.Product;
+import org.candlepin.policy.SystemPurposeComplianceRules;
+import org.candlepin.policy.js.compliance.ComplianceRules;
 import org.candlepin.test.DatabaseTestFixture;
 import org.candlepin.util.Util;
 
+import com.google.inject.persist.UnitOfWork;
+
+import org.jboss.resteasy.core.ResteasyContext;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.inject.Inject;
 
@@ -50,6 +82,13 @@ public class ActiveEntitlementJobTest extends DatabaseTestFixture {
     private Consumer consumer;
     private Product prod;
 
+    private ConsumerCurator mockConsumerCurator;
+    private EventSink mockEventSink;
+    private CandlepinRequestScope mockRequestScope;
+    private UnitOfWork mockUnitOfWork;
+    private Principal mockPrincipal;
+    private Map<List<String>, Object[]> processedChunks;
+
     @BeforeEach
     public void setUp() {
         owner = new Owner("test-owner", "Test Owner");
@@ -87,6 +126,39 @@ public class ActiveEntitlementJobTest extends DatabaseTestFixture {
         assertTrue(entitlementCurator.get(ent.getId()).isUpdatedOnStart());
     }
 
+    @Test
+    public void testActiveEntitlementJobInChunks() throws JobExecutionException {
+        String chunkSizeConfig = ConfigProperties.jobConfig(ActiveEntitlementJob.JOB_KEY,
+            ActiveEntitlementJob.CFG_CHUNK_SIZE);
+        this.config.setProperty(chunkSizeConfig, "1");
+
+        Consumer consumer2 = new Consumer("another consumer", "username", owner, ct);
+        consumer2.addInstalledProduct(new ConsumerInstalledProduct(prod.getId(), prod.getName()));
+        consumerCurator.create(consumer2);
+
+        Pool p = createPool(owner, prod, 5L, Util.yesterday(), Util.tomorrow());
+        Entitlement ent1 = this
+            .createEntitlement(owner, consumer, p, createEntitlementCertificate("entkey1", "ecert1"));
+        ent1.setUpdatedOnStart(false);
+        entitlementCurator.create(ent1);
+
+        Entitlement ent2 = this
+            .createEntitlement(owner, consumer2, p, createEntitlementCertificate("entkey2", "ecert2"));
+        ent2.setUpdatedOnStart(false);
+        entitlementCurator.create(ent2);
+
+        JobExecutionContext context = mock(JobExecutionContext.class);
+        job.execute(context);
+        consumerCurator.flush();
+        consumerCurator.refresh(consumer);
+        consumerCurator.refresh(consumer2);
+
+        assertEquals("valid", consumer.getEntitlementStatus());
+        assertEquals("valid", consumer2.getEntitlementStatus());
+        assertTrue(entitlementCurator.get(ent1.getId()).isUpdatedOnStart());
+        assertTrue(entitlementCurator.get(ent2.getId()).isUpdatedOnStart());
+    }
+
     @Test
     public void testActiveEntitlementJobNoChange() throws JobExecutionException {
         Pool p = createPool(owner, prod, 5L, Util.yesterday(), Util.tomorrow());
@@ -125,5 +197,112 @@ public class ActiveEntitlementJobTest extends DatabaseTestFixture {
         // Should not have changed
         assertFalse(entitlementCurator.get(ent.getId()).isUpdatedOnStart());
     }
-}
 
+    /**
+     * Builds a job around mocked collaborators, which processes the given consumers in chunks of two
+     * on two worker threads. Each chunk records the principal, MDC request type and thread it was
+     * processed with, and any chunk containing the failing consumer throws an exception.
+     */
+    private ActiveEntitlementJob buildMockedJob(List<String> consumerIds, String failingId) {
+        Configuration config = mock(Configuration.class);
+        doReturn(2).when(config).getInt(anyString(), anyInt());
+
+        doReturn(consumerIds).when(this.mockConsumerCurator).getConsumerIdsWithStartedEnts();
+        doAnswer(iom -> {
+            Collection<String> chunk = iom.getArgument(0);
+            this.processedChunks.put(new ArrayList<>(chunk), new Object[] {
+                ResteasyContext.getContextData(Principal.class), MDC.get("requestType"),
+                Thread.currentThread().getName() });
+
+            if (chunk.contains(failingId)) {
+                throw new RuntimeException("chunk failure");
+            }
+
+            List<Consumer> consumers = new ArrayList<>();
+            for (String id : chunk) {
+                Consumer consumer = new Consumer();
+                consumer.setId(id);
+                consumers.add(consumer);
+            }
+
+            return consumers;
+        }).when(this.mockConsumerCurator).getConsumersWithEntitlements(any(Collection.class));
+
+        PrincipalProvider principalProvider = mock(PrincipalProvider.class);
+        doReturn(this.mockPrincipal).when(principalProvider).get();
+
+        return new ActiveEntitlementJob(config, this.mockConsumerCurator, () -> mock(ComplianceRules.class),
+            () -> mock(SystemPurposeComplianceRules.class), () -> this.mockEventSink, this.mockRequestScope,
+            this.mockUnitOfWork, principalProvider);
+    }
+
+    private void initMocks() {
+        this.mockConsumerCurator = mock(ConsumerCurator.class);
+        this.mockEventSink = mock(EventSink.class);
+        this.mockRequestScope = mock(CandlepinRequestScope.class);
+        this.mockUnitOfWork = mock(UnitOfWork.class);
+        this.mockPrincipal = mock(Principal.class);
+        this.processedChunks = new ConcurrentHashMap<>();
+    }
+
+    @Test
+    public void testActiveEntitlementJobUpdatesChunksConcurrently() throws JobExecutionException {
+        this.initMocks();
+        ActiveEntitlementJob mockedJob = this.buildMockedJob(Arrays.asList("c1", "c2", "c3", "c4", "c5"),
+            null);
+
+        JobExecutionContext context = mock(JobExecutionContext.class);
+        MDC.put("requestType", "job");
+
+        try {
+            mockedJob.execute(context);
+        }
+        finally {
+            MDC.remove("requestType");
+        }
+
+        // Each chunk is processed once, in its own unit of work and request scope
+        assertEquals(3, this.processedChunks.size());
+        assertTrue(this.processedChunks.containsKey(Arrays.asList("c1", "c2")));
+        assertTrue(this.processedChunks.containsKey(Arrays.asList("c3", "c4")));
+        assertTrue(this.processedChunks.containsKey(Collections.singletonList("c5")));
+
+        verify(this.mockUnitOfWork, times(3)).begin();
+        verify(this.mockUnitOfWork, times(3)).end();
+        verify(this.mockRequestScope, times(3)).enter();
+        verify(this.mockRequestScope, times(3)).exit();
+        verify(this.mockEventSink, times(3)).sendEvents();
+        verify(this.mockEventSink, never()).rollback();
+        verify(context).setJobResult(anyString(), eq(5), eq(3), eq(2), any());
+
+        // The workers run as the job's principal, with the job's logging context
+        for (Object[] processed : this.processedChunks.values()) {
+            assertEquals(this.mockPrincipal, processed[0]);
+            assertEquals("job", processed[1]);
+            assertTrue(((String) processed[2]).startsWith("active-entitlement-"));
+        }
+    }
+
+    @Test
+    public void testActiveEntitlementJobFailsWhenChunkFails() {
+        this.initMocks();
+        ActiveEntitlementJob mockedJob = this.buildMockedJob(Arrays.asList("c1", "c2", "c3", "c4", "c5"),
+            "c3");
+
+        JobExecutionContext context = mock(JobExecutionContext.class);
+        JobExecutionException exception = assertThrows(JobExecutionException.class,
+            () -> mockedJob.execute(context));
+
+        assertTrue(exception.getMessage().contains("failed for 2 of 5 consumers; 3 consumers updated"));
+        assertFalse(exception.isTerminal());
+
+        // The remaining chunks are still processed and committed; the failed chunk's events are dropped
+        assertEquals(3, this.processedChunks.size());
+        verify(this.mockUnitOfWork, times(3)).begin();
+        verify(this.mockUnitOfWork, times(3)).end();
+        verify(this.mockRequestScope, times(3)).exit();
+        verify(this.mockEventSink, times(2)).sendEvents();
+        verify(this.mockEventSink, times(1)).rollback();
+        verifyZeroInteractions(context);
+    }
+}
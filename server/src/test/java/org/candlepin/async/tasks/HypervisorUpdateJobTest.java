@@ -17,13 +17,19 @@ package org.candlepin.async.tasks;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyIterable;
 import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -42,12 +48,14 @@ import org.candlepin.config.ConfigProperties;
 import org.candlepin.dto.ModelTranslator;
 import org.candlepin.dto.StandardTranslator;
 import org.candlepin.dto.api.v1.ConsumerDTO;
+import org.candlepin.dto.api.v1.HypervisorUpdateResultDTO;
 import org.candlepin.model.Consumer;
 import org.candlepin.model.ConsumerCurator;
 import org.candlepin.model.ConsumerType;
 import org.candlepin.model.ConsumerType.ConsumerTypeEnum;
 import org.candlepin.model.ConsumerTypeCurator;
 import org.candlepin.model.EnvironmentCurator;
+import org.candlepin.model.GuestId;
 import org.candlepin.model.HypervisorId;
 import org.candlepin.model.Owner;
 import org.candlepin.model.OwnerCurator;
@@ -66,12 +74,18 @@ import org.mockito.Mockito;
 import org.xnap.commons.i18n.I18n;
 import org.xnap.commons.i18n.I18nFactory;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.function.Function;
 
 import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
 
 
 
@@ -155,6 +169,22 @@ public class HypervisorUpdateJobTest {
         assertDoesNotThrow(config::validate);
     }
 
+    @Test
+    public void reportsFromSameReporterAreCoalesced() {
+        JobConfig config = createJobConfig("reporter_id");
+
+        assertTrue(config.waitWhenBlocked());
+        assertEquals(Arrays.asList("org", "reporter_id"), new ArrayList<>(config.getCoalesceArguments()));
+    }
+
+    @Test
+    public void reportsWithoutReporterAreNotCoalesced() {
+        JobConfig config = createJobConfig(null);
+
+        assertTrue(config.waitWhenBlocked());
+        assertTrue(config.getCoalesceArguments().isEmpty());
+    }
+
     @Test
     public void ownerMustBePresent() {
         JobConfig config = HypervisorUpdateJob.createJobConfig()
@@ -203,7 +233,7 @@ public class HypervisorUpdateJobTest {
         HypervisorUpdateJob job = new HypervisorUpdateJob(ownerCurator, consumerCurator,
             translator, hypervisorUpdateAction, i18n, objectMapper);
         job.execute(ctx);
-        verify(consumerCurator).create(any(Consumer.class));
+        verify(consumerCurator).create(any(Consumer.class), eq(true));
     }
 
     @Test
@@ -221,7 +251,7 @@ public class HypervisorUpdateJobTest {
             translator, hypervisorUpdateAction, i18n, objectMapper);
         job.execute(ctx);
         ArgumentCaptor<Consumer> argument = ArgumentCaptor.forClass(Consumer.class);
-        verify(consumerCurator).create(argument.capture());
+        verify(consumerCurator).create(argument.capture(), eq(true));
         Consumer created = argument.getValue();
         assertEquals("createReporterId", created.getHypervisorId().getReporterId());
     }
@@ -247,7 +277,7 @@ public class HypervisorUpdateJobTest {
             translator, hypervisorUpdateAction, i18n, objectMapper);
         job.execute(ctx);
         verify(consumerResource).checkForFactsUpdate(any(Consumer.class), any(Consumer.class));
-        verify(consumerCurator, times(1)).update(any(Consumer.class));
+        verify(consumerCurator, times(1)).update(any(Consumer.class), eq(true));
     }
 
     @Test
@@ -307,7 +337,7 @@ public class HypervisorUpdateJobTest {
         job.execute(ctx);
 
         ArgumentCaptor<Consumer> updateCaptor = ArgumentCaptor.forClass(Consumer.class);
-        verify(consumerCurator, times(1)).update(updateCaptor.capture());
+        verify(consumerCurator, times(1)).update(updateCaptor.capture(), eq(true));
 
         Consumer updated = updateCaptor.getValue();
         assertEquals("expected_hypervisor_id", updated.getHypervisorId().getHypervisorId());
@@ -349,7 +379,7 @@ public class HypervisorUpdateJobTest {
         job.execute(ctx);
 
         ArgumentCaptor<Consumer> createCaptor = ArgumentCaptor.forClass(Consumer.class);
-        verify(consumerCurator, times(1)).create(createCaptor.capture());
+        verify(consumerCurator, times(1)).create(createCaptor.capture(), eq(true));
 
         Consumer created = createCaptor.getValue();
         assertEquals("expected_hypervisor_id", created.getHypervisorId().getHypervisorId());
@@ -405,6 +435,77 @@ public class HypervisorUpdateJobTest {
         job.execute(ctx);
     }
 
+    @Test
+    public void hypervisorUpdateInChunks() throws Exception {
+        when(ownerCurator.findOwnerById(eq("joe"))).thenReturn(owner);
+        when(config.getInt(eq(ConfigProperties.HYPERVISOR_UPDATE_CHUNK_SIZE))).thenReturn(2);
+
+        Consumer existing = new Consumer();
+        existing.ensureUUID();
+        existing.setName("hypervisor_2");
+        existing.setOwner(owner);
+        existing.setHypervisorId(new HypervisorId("uuid_2"));
+
+        Map<String, Consumer> knownHosts = new HashMap<>();
+        knownHosts.put("uuid_2", existing);
+        when(consumerCurator.getHostConsumersByHypervisorId(eq("joe"), anyCollection()))
+            .thenReturn(knownHosts);
+        when(consumerCurator.lock(anyIterable())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<Consumer> hypervisors = new ArrayList<>();
+        for (int i = 1; i <= 3; ++i) {
+            Consumer hypervisor = new Consumer();
+            hypervisor.setName("hypervisor_" + i);
+            hypervisor.setHypervisorId(new HypervisorId("UUID_" + i));
+            hypervisor.addGuestId(new GuestId("guest_" + i));
+            hypervisors.add(hypervisor);
+        }
+
+        HypervisorUpdateResultDTO result = hypervisorUpdateAction
+            .update(owner, hypervisors, true, "joe user", "reporter").getResult();
+
+        assertEquals(2, result.getCreated().size());
+        assertEquals(1, result.getUpdated().size());
+        assertEquals(existing.getUuid(), result.getUpdated().iterator().next().getUuid());
+        assertNull(result.getFailedUpdate());
+
+        verify(consumerCurator, never()).getExistingConsumerByHypervisorIdOrUuid(anyString(), anyString(),
+            nullable(String.class));
+        verify(consumerCurator, times(2)).create(any(Consumer.class), eq(false));
+        verify(consumerCurator, times(1)).update(eq(existing), eq(false));
+        verify(consumerCurator, times(2)).flush();
+
+        // The existing hosts of each chunk are loaded and refreshed within the chunk's transaction
+        verify(consumerCurator, times(2)).getHostConsumersByHypervisorId(eq("joe"), anyCollection());
+        verify(consumerCurator).refresh(argThat((Iterable<Consumer> hosts) ->
+            hosts.iterator().hasNext() && hosts.iterator().next() == existing));
+        verify(sink, times(2)).sendEvents();
+    }
+
+    @Test
+    public void hypervisorUpdateChunkFailureReconcilesIndividually() throws Exception {
+        when(ownerCurator.findOwnerById(eq("joe"))).thenReturn(owner);
+        when(config.getInt(eq(ConfigProperties.HYPERVISOR_UPDATE_CHUNK_SIZE))).thenReturn(10);
+        when(consumerCurator.getHostConsumersByHypervisorId(eq("joe"), anyCollection()))
+            .thenReturn(new HashMap<>());
+        doThrow(new PersistenceException("chunk failure")).when(consumerCurator).flush();
+
+        Consumer hypervisor = new Consumer();
+        hypervisor.setName("hypervisor_1");
+        hypervisor.setHypervisorId(new HypervisorId("uuid_1"));
+
+        HypervisorUpdateResultDTO result = hypervisorUpdateAction
+            .update(owner, new ArrayList<>(Arrays.asList(hypervisor)), true, "joe user", "reporter")
+            .getResult();
+
+        assertEquals(1, result.getCreated().size());
+        verify(sink, times(1)).rollback();
+        verify(consumerCurator, times(1)).evictAll(anyCollection());
+        verify(consumerCurator, times(1)).getExistingConsumerByHypervisorIdOrUuid(eq("joe"), eq("uuid_1"),
+            isNull());
+        verify(consumerCurator, times(1)).create(any(Consumer.class), eq(true));
+    }
+
     private JobConfig createJobConfig(final String reporterId) {
         return HypervisorUpdateJob.createJobConfig()
             .setOwner(owner)
@@ -461,7 +562,7 @@ public class HypervisorUpdateJobTest {
         job.execute(ctx);
 
         ArgumentCaptor<Consumer> updateCaptor = ArgumentCaptor.forClass(Consumer.class);
-        verify(consumerCurator, times(1)).update(updateCaptor.capture());
+        verify(consumerCurator, times(1)).update(updateCaptor.capture(), eq(true));
         Consumer updated = updateCaptor.getValue();
 
         assertNotNull(updated.getRHCloudProfileModified());
@@ -492,7 +593,7 @@ public class HypervisorUpdateJobTest {
         job.execute(ctx);
 
         ArgumentCaptor<Consumer> updateCaptor = ArgumentCaptor.forClass(Consumer.class);
-        verify(consumerCurator, times(1)).create(updateCaptor.capture());
+        verify(consumerCurator, times(1)).create(updateCaptor.capture(), eq(true));
         Consumer updated = updateCaptor.getValue();
 
         assertNotNull(updated.getRHCloudProfileModified());
@@ -533,7 +634,7 @@ public class HypervisorUpdateJobTest {
         job.execute(ctx);
 
         ArgumentCaptor<Consumer> updateCaptor = ArgumentCaptor.forClass(Consumer.class);
-        verify(consumerCurator, times(1)).update(updateCaptor.capture());
+        verify(consumerCurator, times(1)).update(updateCaptor.capture(), eq(true));
         Consumer updated = updateCaptor.getValue();
 
         assertEquals(currentDate, updated.getRHCloudProfileModified());
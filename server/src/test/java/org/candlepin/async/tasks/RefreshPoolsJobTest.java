@@ -22,6 +22,9 @@ import org.candlepin.async.JobConfig;
 import org.candlepin.async.JobConfigValidationException;
 import org.candlepin.async.JobExecutionContext;
 import org.candlepin.async.JobExecutionException;
+import org.candlepin.config.CandlepinCommonTestConfig;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.controller.ParallelPoolRefresher;
 import org.candlepin.controller.PoolManager;
 import org.candlepin.controller.Refresher;
 import org.candlepin.model.AsyncJobStatus;
@@ -45,9 +48,13 @@ public class RefreshPoolsJobTest {
     @Mock protected PoolManager poolManager;
     @Mock protected SubscriptionServiceAdapter subAdapter;
     @Mock protected Refresher refresher;
+    @Mock protected ParallelPoolRefresher poolRefresher;
+
+    private CandlepinCommonTestConfig config = new CandlepinCommonTestConfig();
 
     private RefreshPoolsJob buildRefreshPoolsJob() {
-        return new RefreshPoolsJob(this.ownerCurator, this.poolManager, this.subAdapter);
+        return new RefreshPoolsJob(this.config, this.ownerCurator, this.poolManager, this.poolRefresher,
+            this.subAdapter);
     }
 
     private Owner createTestOwner(String key, String logLevel) {
@@ -180,4 +187,142 @@ public class RefreshPoolsJobTest {
         Exception e = assertThrows(JobExecutionException.class, () -> job.execute(context));
         assertEquals("Nothing to do; owner no longer exists: " + owner.getKey(), e.getMessage());
     }
+
+    @Test
+    public void ensureJobRefreshesInGroups() throws Exception {
+        Owner owner = createTestOwner("my-test-owner", "test-log-level");
+        owner.setDisplayName("my-test-owner-displayname");
+        JobConfig jobConfig = RefreshPoolsJob.createJobConfig()
+            .setOwner(owner)
+            .setLazyRegeneration(true);
+
+        RefreshPoolsJob job = this.buildRefreshPoolsJob();
+
+        AsyncJobStatus status = mock(AsyncJobStatus.class);
+        JobExecutionContext context = spy(new JobExecutionContext(status));
+        doReturn(jobConfig.getJobArguments()).when(status).getJobArguments();
+
+        doReturn(owner).when(ownerCurator).getByKey(eq("my-test-owner"));
+        doReturn(true).when(poolRefresher).canRefresh();
+        doReturn(new ParallelPoolRefresher.Result(2, 3, 0, 4, 0, "subscription:sub")).when(poolRefresher)
+            .refresh(eq(subAdapter), eq(owner), eq(true), eq(false), isNull(),
+            eq(RefreshPoolsJob.DEFAULT_THREADS));
+
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+
+        job.execute(context);
+
+        verify(context, times(1)).setJobResult(captor.capture());
+        verify(poolManager, never()).getRefresher(any(SubscriptionServiceAdapter.class), anyBoolean());
+
+        assertEquals("Pools refreshed for owner: my-test-owner-displayname; 3 subscription(s) refreshed " +
+            "in 2 group(s), 4 unchanged, 0 resumed", captor.getValue());
+    }
+
+    @Test
+    public void ensureRetriedJobResumesRefresh() throws Exception {
+        Owner owner = createTestOwner("my-test-owner", "test-log-level");
+        JobConfig jobConfig = RefreshPoolsJob.createJobConfig()
+            .setOwner(owner)
+            .setLazyRegeneration(false);
+
+        this.config.setProperty(ConfigProperties.jobConfig(RefreshPoolsJob.JOB_KEY,
+            RefreshPoolsJob.CFG_THREADS), "2");
+
+        RefreshPoolsJob job = this.buildRefreshPoolsJob();
+
+        AsyncJobStatus status = mock(AsyncJobStatus.class);
+        JobExecutionContext context = spy(new JobExecutionContext(status));
+        doReturn(jobConfig.getJobArguments()).when(status).getJobArguments();
+        doReturn("stack:stack-1").when(status).getCheckpoint();
+
+        doReturn(owner).when(ownerCurator).getByKey(eq("my-test-owner"));
+        doReturn(true).when(poolRefresher).canRefresh();
+        doReturn(new ParallelPoolRefresher.Result(1, 1, 0, 0, 5, "stack:stack-2")).when(poolRefresher)
+            .refresh(eq(subAdapter), eq(owner), eq(false), eq(false), eq("stack:stack-1"), eq(2));
+
+        job.execute(context);
+
+        verify(poolRefresher, times(1))
+            .refresh(eq(subAdapter), eq(owner), eq(false), eq(false), eq("stack:stack-1"), eq(2));
+    }
+
+    @Test
+    public void ensureIncrementalRefreshSkipsUnchangedSubscriptions() throws Exception {
+        Owner owner = createTestOwner("my-test-owner", "test-log-level");
+        JobConfig jobConfig = RefreshPoolsJob.createJobConfig()
+            .setOwner(owner)
+            .setLazyRegeneration(true);
+
+        this.config.setProperty(ConfigProperties.INCREMENTAL_POOL_REFRESH, "true");
+
+        RefreshPoolsJob job = this.buildRefreshPoolsJob();
+
+        AsyncJobStatus status = mock(AsyncJobStatus.class);
+        JobExecutionContext context = spy(new JobExecutionContext(status));
+        doReturn(jobConfig.getJobArguments()).when(status).getJobArguments();
+
+        doReturn(owner).when(ownerCurator).getByKey(eq("my-test-owner"));
+        doReturn(true).when(poolRefresher).canRefresh();
+        doReturn(new ParallelPoolRefresher.Result(1, 1, 0, 5, 0, "stack:stack-1")).when(poolRefresher)
+            .refresh(eq(subAdapter), eq(owner), eq(true), eq(true), isNull(), anyInt());
+
+        job.execute(context);
+
+        verify(poolRefresher, times(1))
+            .refresh(eq(subAdapter), eq(owner), eq(true), eq(true), isNull(), anyInt());
+    }
+
+    @Test
+    public void ensureFailedGroupsFailJobWithRetry() {
+        Owner owner = createTestOwner("my-test-owner", "test-log-level");
+        JobConfig jobConfig = RefreshPoolsJob.createJobConfig()
+            .setOwner(owner)
+            .setLazyRegeneration(true);
+
+        RefreshPoolsJob job = this.buildRefreshPoolsJob();
+
+        AsyncJobStatus status = mock(AsyncJobStatus.class);
+        JobExecutionContext context = spy(new JobExecutionContext(status));
+        doReturn(jobConfig.getJobArguments()).when(status).getJobArguments();
+
+        doReturn(owner).when(ownerCurator).getByKey(eq("my-test-owner"));
+        doReturn(true).when(poolRefresher).canRefresh();
+        doReturn(new ParallelPoolRefresher.Result(3, 4, 2, 0, 0, "stack:stack-1")).when(poolRefresher)
+            .refresh(eq(subAdapter), eq(owner), eq(true), eq(false), isNull(), anyInt());
+
+        JobExecutionException e = assertThrows(JobExecutionException.class, () -> job.execute(context));
+        assertFalse(e.isTerminal());
+
+        // The checkpoint is kept for the retry of the job
+        verify(context, times(1)).setCheckpoint(eq("stack:stack-1"));
+        assertEquals("Pool refresh failed for 2 subscription(s) of owner my-test-owner; " +
+            "4 subscription(s) refreshed", e.getMessage());
+    }
+
+    @Test
+    public void ensureJobRefreshesInSingleTransactionWithoutThreads() throws Exception {
+        Owner owner = createTestOwner("my-test-owner", "test-log-level");
+        JobConfig jobConfig = RefreshPoolsJob.createJobConfig()
+            .setOwner(owner)
+            .setLazyRegeneration(true);
+
+        this.config.setProperty(ConfigProperties.jobConfig(RefreshPoolsJob.JOB_KEY,
+            RefreshPoolsJob.CFG_THREADS), "0");
+
+        RefreshPoolsJob job = this.buildRefreshPoolsJob();
+
+        AsyncJobStatus status = mock(AsyncJobStatus.class);
+        JobExecutionContext context = spy(new JobExecutionContext(status));
+        doReturn(jobConfig.getJobArguments()).when(status).getJobArguments();
+
+        doReturn(owner).when(ownerCurator).getByKey(eq("my-test-owner"));
+        doReturn(refresher).when(poolManager).getRefresher(eq(subAdapter), eq(true));
+        doReturn(refresher).when(refresher).add(eq(owner));
+
+        job.execute(context);
+
+        verify(refresher, times(1)).run();
+        verify(poolRefresher, never()).refresh(any(), any(), anyBoolean(), anyBoolean(), any(), anyInt());
+    }
 }
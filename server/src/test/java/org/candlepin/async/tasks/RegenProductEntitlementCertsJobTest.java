@@ -20,6 +20,7 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyBoolean;
 import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
@@ -31,6 +32,8 @@ import org.candlepin.async.JobArguments;
 import org.candlepin.async.JobConfig;
 import org.candlepin.async.JobExecutionContext;
 import org.candlepin.async.JobExecutionException;
+import org.candlepin.controller.EntitlementCertificateRegenerator;
+import org.candlepin.controller.EntitlementCertificateRegenerator.ProgressListener;
 import org.candlepin.controller.PoolManager;
 import org.candlepin.model.CandlepinQuery;
 import org.candlepin.model.Owner;
@@ -59,15 +62,18 @@ public class RegenProductEntitlementCertsJobTest {
 
     protected PoolManager mockPoolManager;
     protected OwnerCurator mockOwnerCurator;
+    protected EntitlementCertificateRegenerator mockRegenerator;
 
     @BeforeEach
     public void setUp() {
         this.mockPoolManager = mock(PoolManager.class);
         this.mockOwnerCurator = mock(OwnerCurator.class);
+        this.mockRegenerator = mock(EntitlementCertificateRegenerator.class);
     }
 
     public RegenProductEntitlementCertsJob buildTestJob() {
-        return new RegenProductEntitlementCertsJob(this.mockPoolManager, this.mockOwnerCurator);
+        return new RegenProductEntitlementCertsJob(this.mockPoolManager, this.mockOwnerCurator,
+            this.mockRegenerator);
     }
 
     @Test
@@ -185,4 +191,47 @@ public class RegenProductEntitlementCertsJobTest {
         verify(this.mockPoolManager, never())
             .regenerateCertificatesOf(any(Owner.class), anyString(), anyBoolean());
     }
+
+    @Test
+    public void testImmediateExecutionRegeneratesInChunks() throws JobExecutionException {
+        String productId = "test_prod_id";
+        Set<String> productIds = Collections.singleton(productId);
+        String checkpoint = "ent-4";
+
+        Owner owner1 = new Owner("test_owner_key-1", "test_owner_name-1");
+        Owner owner2 = new Owner("test_owner_key-2", "test_owner_name-2");
+        Collection<Owner> matchingOwners = Arrays.asList(owner1, owner2);
+
+        CandlepinQuery<Owner> ownerQuery = mock(CandlepinQuery.class);
+        doReturn(matchingOwners).when(ownerQuery).list();
+        doReturn(ownerQuery).when(this.mockOwnerCurator).getOwnersWithProducts(eq(productIds));
+
+        doAnswer(iom -> {
+            ProgressListener listener = iom.getArgument(3);
+            listener.onProgress(7, 10, "ent-6");
+            listener.onProgress(10, 10, "ent-9");
+            return 5;
+        }).when(this.mockRegenerator).regenerateCertificatesOf(eq(matchingOwners), eq(productIds),
+            eq(checkpoint), any(ProgressListener.class));
+
+        JobConfig config = RegenProductEntitlementCertsJob.createJobConfig()
+            .setProductId(productId)
+            .setLazyRegeneration(false);
+
+        JobExecutionContext context = mock(JobExecutionContext.class);
+        doReturn(config.getJobArguments()).when(context).getJobArguments();
+        doReturn(checkpoint).when(context).getCheckpoint();
+
+        RegenProductEntitlementCertsJob testJob = this.buildTestJob();
+        testJob.execute(context);
+
+        verify(this.mockRegenerator, times(1)).regenerateCertificatesOf(eq(matchingOwners),
+            eq(productIds), eq(checkpoint), any(ProgressListener.class));
+        verify(this.mockPoolManager, never())
+            .regenerateCertificatesOf(any(Owner.class), anyString(), anyBoolean());
+        verify(context, times(1)).setCheckpoint(eq("ent-6"));
+        verify(context, times(1)).setCheckpoint(eq("ent-9"));
+        verify(context, times(1)).setJobResult(anyString(), eq(7), eq(10), eq(productId));
+        verify(context, times(1)).setJobResult(anyString(), eq(10), eq(10), eq(productId));
+    }
 }
@@ -15,11 +15,17 @@
 package org.candlepin.auth;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import org.candlepin.cache.ConsumerPrincipalCache;
+import org.candlepin.common.exceptions.GoneException;
 import org.candlepin.model.Consumer;
 import org.candlepin.model.ConsumerCurator;
 import org.candlepin.model.ConsumerType;
@@ -35,8 +41,11 @@ import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.xnap.commons.i18n.I18n;
+import org.xnap.commons.i18n.I18nFactory;
 
+import java.math.BigInteger;
 import java.security.cert.X509Certificate;
+import java.util.Locale;
 
 import javax.inject.Provider;
 import javax.security.auth.x500.X500Principal;
@@ -49,14 +58,20 @@ public class SSLAuthTest {
     @Mock private DeletedConsumerCurator deletedConsumerCurator;
     @Mock private Provider<I18n> i18nProvider;
 
+    private ConsumerPrincipalCache principalCache;
     private SSLAuth auth;
 
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
+        when(this.i18nProvider.get())
+            .thenReturn(I18nFactory.getI18n(getClass(), Locale.US, I18nFactory.FALLBACK));
+
+        this.principalCache = new ConsumerPrincipalCache(10, 60000);
         this.auth = new SSLAuth(this.consumerCurator,
             this.ownerCurator,
             this.deletedConsumerCurator,
+            this.principalCache,
             this.i18nProvider);
     }
 
@@ -118,11 +133,64 @@ public class SSLAuthTest {
         assertNull(this.auth.getPrincipal(httpRequest));
     }
 
+    /**
+     * Principals are reused for the same certificate until the consumer is removed from the cache
+     *
+     * @throws Exception
+     */
+    @Test
+    public void cachedPrincipalForSameCertificate() throws Exception {
+        Owner owner = new Owner("test owner");
+        owner.setId(TestUtil.randomString());
+        Consumer consumer = new Consumer("machine_name", "test user", owner, null);
+        consumer.setUuid("453-44423-235");
+
+        mockCert("CN=453-44423-235", BigInteger.TEN);
+        when(this.consumerCurator.getConsumer("453-44423-235")).thenReturn(consumer);
+        when(this.ownerCurator.findOwnerById(owner.getOwnerId())).thenReturn(owner);
+
+        Principal first = this.auth.getPrincipal(httpRequest);
+        Principal second = this.auth.getPrincipal(httpRequest);
+
+        assertEquals(first, second);
+        assertNotSame(first, second);
+        verify(this.consumerCurator, times(1)).getConsumer("453-44423-235");
+        verify(this.ownerCurator, times(1)).findOwnerById(owner.getOwnerId());
+
+        this.principalCache.invalidateConsumer("453-44423-235");
+        assertEquals(first, this.auth.getPrincipal(httpRequest));
+        verify(this.consumerCurator, times(2)).getConsumer("453-44423-235");
+    }
+
+    /**
+     * Consumers which were deleted are only looked up once while cached
+     *
+     * @throws Exception
+     */
+    @Test
+    public void deletedConsumerIsCached() throws Exception {
+        mockCert("CN=235-8", BigInteger.ONE);
+        when(this.consumerCurator.getConsumer("235-8")).thenReturn(null);
+        when(this.deletedConsumerCurator.countByConsumerUuid("235-8")).thenReturn(1);
+
+        assertThrows(GoneException.class, () -> this.auth.getPrincipal(httpRequest));
+        assertThrows(GoneException.class, () -> this.auth.getPrincipal(httpRequest));
+
+        verify(this.consumerCurator, times(1)).getConsumer("235-8");
+        verify(this.deletedConsumerCurator, times(1)).countByConsumerUuid("235-8");
+    }
+
     private void mockCert(String dn) {
+        this.mockCert(dn, null);
+    }
+
+    private void mockCert(String dn, BigInteger serial) {
         X509Certificate idCert =  mock(X509Certificate.class);
         X500Principal principal = new X500Principal(dn);
 
         when(idCert.getSubjectX500Principal()).thenReturn(principal);
+        when(idCert.getIssuerX500Principal()).thenReturn(new X500Principal("CN=candlepin"));
+        when(idCert.getSerialNumber()).thenReturn(serial);
         when(this.httpRequest.getAttribute("javax.servlet.request.X509Certificate"))
             .thenReturn(new X509Certificate[]{idCert});
     }
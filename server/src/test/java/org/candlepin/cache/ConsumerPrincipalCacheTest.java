@@ -0,0 +1,205 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.candlepin.auth.ConsumerPrincipal;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.Owner;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+
+
+/**
+ * ConsumerPrincipalCacheTest
+ */
+public class ConsumerPrincipalCacheTest {
+
+    private AtomicLong clock;
+
+    @BeforeEach
+    public void init() {
+        this.clock = new AtomicLong(1000);
+    }
+
+    private ConsumerPrincipalCache buildCache(int maxSize) {
+        return new ConsumerPrincipalCache(maxSize, 100, this.clock::get);
+    }
+
+    private Owner buildOwner(String id) {
+        Owner owner = new Owner(id + "_key", id + "_name");
+        owner.setId(id);
+
+        return owner;
+    }
+
+    private Consumer buildConsumer(String uuid, Owner owner) {
+        Consumer consumer = new Consumer(uuid, "test user", owner, null);
+        consumer.setId(uuid + "_id");
+        consumer.setUuid(uuid);
+
+        return consumer;
+    }
+
+    @Test
+    public void testBuildsNewPrincipalForCachedConsumer() {
+        ConsumerPrincipalCache cache = this.buildCache(10);
+        Owner owner = this.buildOwner("owner");
+        Consumer consumer = this.buildConsumer("consumer", owner);
+
+        cache.put("cert", consumer, owner);
+
+        ConsumerPrincipal first = cache.get("cert");
+        ConsumerPrincipal second = cache.get("cert");
+
+        assertNotNull(first);
+        assertNotSame(first, second);
+        assertEquals(first, second);
+        assertNull(cache.get("other cert"));
+    }
+
+    @Test
+    public void testBuildsPrincipalFromDetachedCopies() {
+        ConsumerPrincipalCache cache = this.buildCache(10);
+        Owner owner = this.buildOwner("owner");
+        Consumer consumer = this.buildConsumer("consumer", owner);
+
+        cache.put("cert", consumer, owner);
+
+        // Changes to the entities after they were cached must not be seen by cached lookups
+        consumer.setName("updated");
+        owner.setKey("updated");
+
+        ConsumerPrincipal first = cache.get("cert");
+        ConsumerPrincipal second = cache.get("cert");
+
+        Consumer cached = first.getConsumer();
+        assertNotSame(consumer, cached);
+        assertNotSame(cached, second.getConsumer());
+        assertNotSame(cached.getOwner(), second.getConsumer().getOwner());
+        assertEquals(consumer.getId(), cached.getId());
+        assertEquals(consumer.getUuid(), cached.getUuid());
+        assertEquals("consumer", cached.getName());
+        assertEquals(consumer.getUsername(), cached.getUsername());
+        assertEquals(owner.getId(), cached.getOwnerId());
+        assertEquals(owner.getId(), cached.getOwner().getId());
+        assertEquals("owner_key", cached.getOwner().getKey());
+        assertEquals(owner.getDisplayName(), cached.getOwner().getDisplayName());
+    }
+
+    @Test
+    public void testPrincipalsExpire() {
+        ConsumerPrincipalCache cache = this.buildCache(10);
+        Owner owner = this.buildOwner("owner");
+
+        cache.put("cert", this.buildConsumer("consumer", owner), owner);
+
+        this.clock.addAndGet(99);
+        assertNotNull(cache.get("cert"));
+
+        this.clock.addAndGet(1);
+        assertNull(cache.get("cert"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedPrincipalsAreEvicted() {
+        ConsumerPrincipalCache cache = this.buildCache(2);
+        Owner owner = this.buildOwner("owner");
+
+        cache.put("cert1", this.buildConsumer("consumer1", owner), owner);
+        cache.put("cert2", this.buildConsumer("consumer2", owner), owner);
+        cache.get("cert1");
+        cache.put("cert3", this.buildConsumer("consumer3", owner), owner);
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("cert1"));
+        assertNull(cache.get("cert2"));
+        assertNotNull(cache.get("cert3"));
+    }
+
+    @Test
+    public void testDeletedConsumersExpire() {
+        ConsumerPrincipalCache cache = this.buildCache(10);
+
+        assertFalse(cache.isDeleted("consumer"));
+        cache.markDeleted("consumer");
+        assertTrue(cache.isDeleted("consumer"));
+
+        this.clock.addAndGet(100);
+        assertFalse(cache.isDeleted("consumer"));
+    }
+
+    @Test
+    public void testInvalidateConsumer() {
+        ConsumerPrincipalCache cache = this.buildCache(10);
+        Owner owner = this.buildOwner("owner");
+
+        cache.put("cert1", this.buildConsumer("consumer1", owner), owner);
+        cache.put("cert2", this.buildConsumer("consumer1", owner), owner);
+        cache.put("cert3", this.buildConsumer("consumer2", owner), owner);
+        cache.markDeleted("consumer1");
+
+        cache.invalidateConsumer("consumer1");
+
+        assertNull(cache.get("cert1"));
+        assertNull(cache.get("cert2"));
+        assertNotNull(cache.get("cert3"));
+        assertFalse(cache.isDeleted("consumer1"));
+    }
+
+    @Test
+    public void testInvalidateOwner() {
+        ConsumerPrincipalCache cache = this.buildCache(10);
+        Owner owner1 = this.buildOwner("owner1");
+        Owner owner2 = this.buildOwner("owner2");
+
+        cache.put("cert1", this.buildConsumer("consumer1", owner1), owner1);
+        cache.put("cert2", this.buildConsumer("consumer2", owner2), owner2);
+
+        cache.invalidateOwner("owner1");
+
+        assertNull(cache.get("cert1"));
+        assertNotNull(cache.get("cert2"));
+    }
+
+    @Test
+    public void testDisabledCacheHoldsNothing() {
+        Owner owner = this.buildOwner("owner");
+
+        for (ConsumerPrincipalCache cache : new ConsumerPrincipalCache[] {
+            new ConsumerPrincipalCache(0, 100, this.clock::get),
+            new ConsumerPrincipalCache(10, 0, this.clock::get) }) {
+
+            assertFalse(cache.isEnabled());
+
+            cache.put("cert", this.buildConsumer("consumer", owner), owner);
+            cache.markDeleted("consumer");
+
+            assertNull(cache.get("cert"));
+            assertFalse(cache.isDeleted("consumer"));
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.cache;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+import org.candlepin.model.dto.Content;
+import org.candlepin.model.dto.Product;
+import org.candlepin.util.X509V3ExtensionUtil;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+
+/**
+ * ContentPayloadCacheTest
+ */
+public class ContentPayloadCacheTest {
+
+    private byte[] build(AtomicInteger builds, byte... payload) {
+        builds.incrementAndGet();
+        return payload;
+    }
+
+    @Test
+    public void testPayloadIsBuiltOncePerPathSet() throws IOException {
+        ContentPayloadCache cache = new ContentPayloadCache(10);
+        AtomicInteger builds = new AtomicInteger();
+
+        byte[] first = cache.get(Arrays.asList("/a", "/b"), () -> this.build(builds, (byte) 1, (byte) 2));
+        byte[] second = cache.get(Arrays.asList("/b", "/a"), () -> this.build(builds, (byte) 3));
+
+        assertEquals(1, builds.get());
+        assertArrayEquals(first, second);
+        assertNotSame(first, second);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testDistinctPathSetsAreCachedSeparately() throws IOException {
+        ContentPayloadCache cache = new ContentPayloadCache(10);
+        AtomicInteger builds = new AtomicInteger();
+
+        cache.get(Arrays.asList("/a", "/b"), () -> this.build(builds, (byte) 1));
+        byte[] payload = cache.get(Arrays.asList("/a", "/b", "/c"), () -> this.build(builds, (byte) 2));
+
+        assertEquals(2, builds.get());
+        assertArrayEquals(new byte[] { 2 }, payload);
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testCachedPayloadCannotBeModifiedByCaller() throws IOException {
+        ContentPayloadCache cache = new ContentPayloadCache(10);
+        AtomicInteger builds = new AtomicInteger();
+
+        byte[] payload = cache.get(Collections.singletonList("/a"), () -> this.build(builds, (byte) 1));
+        payload[0] = 9;
+
+        assertArrayEquals(new byte[] { 1 },
+            cache.get(Collections.singletonList("/a"), () -> this.build(builds, (byte) 2)));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedPayloadIsEvicted() throws IOException {
+        ContentPayloadCache cache = new ContentPayloadCache(2);
+        AtomicInteger builds = new AtomicInteger();
+
+        cache.get(Collections.singletonList("/a"), () -> this.build(builds, (byte) 1));
+        cache.get(Collections.singletonList("/b"), () -> this.build(builds, (byte) 2));
+        cache.get(Collections.singletonList("/a"), () -> this.build(builds, (byte) 1));
+        cache.get(Collections.singletonList("/c"), () -> this.build(builds, (byte) 3));
+        assertEquals(3, builds.get());
+        assertEquals(2, cache.size());
+
+        // "/b" was the least recently used, so it must be rebuilt while "/a" is still cached
+        cache.get(Collections.singletonList("/a"), () -> this.build(builds, (byte) 1));
+        assertEquals(3, builds.get());
+        cache.get(Collections.singletonList("/b"), () -> this.build(builds, (byte) 2));
+        assertEquals(4, builds.get());
+    }
+
+    @Test
+    public void testZeroSizeDisablesCaching() throws IOException {
+        ContentPayloadCache cache = new ContentPayloadCache(0);
+        AtomicInteger builds = new AtomicInteger();
+
+        cache.get(Collections.singletonList("/a"), () -> this.build(builds, (byte) 1));
+        cache.get(Collections.singletonList("/a"), () -> this.build(builds, (byte) 1));
+
+        assertEquals(2, builds.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testCachedPayloadHydratesToSameContent() throws IOException {
+        ContentPayloadCache cache = new ContentPayloadCache(10);
+        X509V3ExtensionUtil util = new X509V3ExtensionUtil(null, null, null, cache);
+
+        List<Content> contents = new ArrayList<>();
+        for (String path : Arrays.asList("/content/dist/rhel/server/7/os", "/content/beta/rhel/server/7/os",
+            "/content/dist/rhel/server/7/debug")) {
+
+            Content content = new Content();
+            content.setPath(path);
+            contents.add(content);
+        }
+
+        Product product = new Product();
+        product.setContent(contents);
+
+        byte[] first = util.getByteExtensions(null, Collections.singletonList(product), null, null)
+            .iterator().next().getValue();
+        byte[] second = util.getByteExtensions(null, Collections.singletonList(product), null, null)
+            .iterator().next().getValue();
+
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertArrayEquals(first, second);
+        assertEquals(new HashSet<>(util.hydrateContentPackage(first)),
+            new HashSet<>(util.hydrateContentPackage(second)));
+    }
+}
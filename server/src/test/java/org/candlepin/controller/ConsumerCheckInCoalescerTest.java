@@ -0,0 +1,215 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.candlepin.config.CandlepinCommonTestConfig;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.controller.mode.CandlepinModeManager;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerCurator;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+
+/**
+ * Test suite for the ConsumerCheckInCoalescer class
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class ConsumerCheckInCoalescerTest {
+
+    @Mock private ConsumerCurator mockConsumerCurator;
+    @Mock private CandlepinModeManager mockModeManager;
+
+    private CandlepinCommonTestConfig config;
+    private ConsumerCheckInCoalescer coalescer;
+
+    @BeforeEach
+    public void init() {
+        this.config = new CandlepinCommonTestConfig();
+
+        // Use an interval long enough that the background writer never gets in the way
+        this.config.setProperty(ConfigProperties.CONSUMER_CHECKIN_FLUSH_INTERVAL, "3600000");
+        this.config.setProperty(ConfigProperties.CONSUMER_CHECKIN_FLUSH_THRESHOLD, "1000");
+    }
+
+    @AfterEach
+    public void cleanup() {
+        if (this.coalescer != null) {
+            this.coalescer.shutdown();
+        }
+    }
+
+    private ConsumerCheckInCoalescer buildCoalescer() {
+        this.coalescer = new ConsumerCheckInCoalescer(this.config, this.mockConsumerCurator,
+            this.mockModeManager);
+
+        return this.coalescer;
+    }
+
+    private Consumer buildConsumer(String id) {
+        Consumer consumer = new Consumer();
+        consumer.setId(id);
+
+        return consumer;
+    }
+
+    @Test
+    public void testWritesImmediatelyUntilStarted() {
+        Consumer consumer = this.buildConsumer("consumer-1");
+        Date checkin = new Date();
+
+        ConsumerCheckInCoalescer coalescer = this.buildCoalescer();
+        coalescer.checkIn(consumer, checkin);
+
+        verify(this.mockConsumerCurator, times(1)).updateLastCheckin(eq(consumer), eq(checkin));
+        assertEquals(0, coalescer.getPendingCount());
+    }
+
+    @Test
+    public void testWritesImmediatelyWithoutFlushInterval() {
+        this.config.setProperty(ConfigProperties.CONSUMER_CHECKIN_FLUSH_INTERVAL, "0");
+        Consumer consumer = this.buildConsumer("consumer-1");
+        Date checkin = new Date();
+
+        ConsumerCheckInCoalescer coalescer = this.buildCoalescer();
+        coalescer.start();
+        coalescer.checkIn(consumer, checkin);
+
+        verify(this.mockConsumerCurator, times(1)).updateLastCheckin(eq(consumer), eq(checkin));
+        verify(this.mockModeManager, never()).registerModeChangeListener(any());
+        assertEquals(0, coalescer.getPendingCount());
+    }
+
+    @Test
+    public void testKeepsLatestCheckinOfEachConsumer() {
+        Consumer consumer1 = this.buildConsumer("consumer-1");
+        Consumer consumer2 = this.buildConsumer("consumer-2");
+        Date earlier = new Date(1000);
+        Date later = new Date(2000);
+
+        ConsumerCheckInCoalescer coalescer = this.buildCoalescer();
+        coalescer.start();
+
+        coalescer.checkIn(consumer1, later);
+        coalescer.checkIn(consumer1, earlier);
+        coalescer.checkIn(consumer2, earlier);
+        coalescer.checkIn(consumer2, later);
+
+        assertEquals(2, coalescer.getPendingCount());
+        verify(this.mockConsumerCurator, never()).updateLastCheckin(any(), any());
+
+        List<Map<String, Date>> written = new ArrayList<>();
+        doAnswer(iom -> {
+            Map<String, Date> checkins = iom.getArgument(0);
+            written.add(new HashMap<>(checkins));
+            return checkins.size();
+        }).when(this.mockConsumerCurator).updateLastCheckins(anyMap());
+
+        assertEquals(2, coalescer.flush());
+        assertEquals(0, coalescer.getPendingCount());
+
+        Map<String, Date> expected = new HashMap<>();
+        expected.put("consumer-1", later);
+        expected.put("consumer-2", later);
+        assertEquals(Collections.singletonList(expected), written);
+    }
+
+    @Test
+    public void testFlushWithoutCheckinsDoesNotWrite() {
+        ConsumerCheckInCoalescer coalescer = this.buildCoalescer();
+        coalescer.start();
+
+        assertEquals(0, coalescer.flush());
+        verify(this.mockConsumerCurator, never()).updateLastCheckins(anyMap());
+    }
+
+    @Test
+    public void testFailedFlushKeepsCheckins() {
+        Consumer consumer = this.buildConsumer("consumer-1");
+        Date failed = new Date(1000);
+        Date later = new Date(2000);
+
+        ConsumerCheckInCoalescer coalescer = this.buildCoalescer();
+        coalescer.start();
+        coalescer.checkIn(consumer, failed);
+
+        RuntimeException failure = new RuntimeException("flush failure");
+        doThrow(failure).when(this.mockConsumerCurator).updateLastCheckins(anyMap());
+
+        RuntimeException thrown = assertThrows(RuntimeException.class, coalescer::flush);
+        assertSame(failure, thrown);
+        assertEquals(1, coalescer.getPendingCount());
+
+        // A newer check-in received while retrying should win over the failed one
+        coalescer.checkIn(consumer, later);
+
+        doAnswer(iom -> {
+            assertEquals(Collections.singletonMap("consumer-1", later), iom.getArgument(0));
+            return 1;
+        }).when(this.mockConsumerCurator).updateLastCheckins(anyMap());
+
+        assertEquals(1, coalescer.flush());
+        assertEquals(0, coalescer.getPendingCount());
+    }
+
+    @Test
+    public void testShutdownWritesPendingCheckins() {
+        Consumer consumer = this.buildConsumer("consumer-1");
+        Date checkin = new Date();
+
+        ConsumerCheckInCoalescer coalescer = this.buildCoalescer();
+        coalescer.start();
+        coalescer.checkIn(consumer, checkin);
+        coalescer.shutdown();
+
+        verify(this.mockConsumerCurator, times(1))
+            .updateLastCheckins(eq(Collections.singletonMap("consumer-1", checkin)));
+        verify(this.mockModeManager, times(1)).registerModeChangeListener(eq(coalescer));
+        verify(this.mockModeManager, times(1)).removeModeChangeListener(eq(coalescer));
+        assertEquals(0, coalescer.getPendingCount());
+
+        // Once shut down, check-ins are written immediately
+        coalescer.checkIn(consumer, checkin);
+        verify(this.mockConsumerCurator, times(1)).updateLastCheckin(eq(consumer), eq(checkin));
+    }
+}
@@ -0,0 +1,276 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.candlepin.audit.Event;
+import org.candlepin.audit.EventSink;
+import org.candlepin.auth.Principal;
+import org.candlepin.auth.SystemPrincipal;
+import org.candlepin.config.CandlepinCommonTestConfig;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.controller.EntitlementCertificateRegenerator.ProgressListener;
+import org.candlepin.guice.PrincipalProvider;
+import org.candlepin.model.EntitlementCurator;
+import org.candlepin.model.Owner;
+import org.candlepin.model.Pool;
+import org.candlepin.model.PoolCurator;
+
+import org.jboss.resteasy.core.ResteasyContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.persistence.EntityTransaction;
+
+
+
+/**
+ * Test suite for the EntitlementCertificateRegenerator class
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class EntitlementCertificateRegeneratorTest {
+
+    @Mock private EntitlementCertificateGenerator mockEcGenerator;
+    @Mock private EntitlementCurator mockEntitlementCurator;
+    @Mock private PoolCurator mockPoolCurator;
+    @Mock private EventSink mockEventSink;
+    @Mock private PrincipalProvider mockPrincipalProvider;
+
+    private CandlepinCommonTestConfig config;
+    private Principal principal;
+
+    @BeforeEach
+    public void init() {
+        this.config = new CandlepinCommonTestConfig();
+        this.config.setProperty(ConfigProperties.ENTITLEMENT_CERT_REGEN_CHUNK_SIZE, "3");
+        this.config.setProperty(ConfigProperties.ENTITLEMENT_CERT_REGEN_THREADS, "2");
+
+        this.principal = new SystemPrincipal();
+        doReturn(this.principal).when(this.mockPrincipalProvider).get();
+    }
+
+    private EntitlementCertificateRegenerator buildRegenerator() {
+        return new EntitlementCertificateRegenerator(this.config, this.mockEcGenerator,
+            this.mockEntitlementCurator, this.mockPoolCurator, this.mockEventSink,
+            this.mockPrincipalProvider);
+    }
+
+    private List<String> buildEntitlementIds(int count) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            ids.add("ent-" + i);
+        }
+
+        return ids;
+    }
+
+    @Test
+    public void testRegeneratesInChunks() {
+        List<String> ids = this.buildEntitlementIds(8);
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        Set<Principal> principals = ConcurrentHashMap.newKeySet();
+
+        doAnswer(iom -> {
+            Collection<String> chunk = iom.getArgument(0);
+            assertTrue(chunk.size() <= 3);
+            seen.addAll(chunk);
+            principals.add(ResteasyContext.getContextData(Principal.class));
+
+            return new ArrayList<>(Collections.nCopies(chunk.size(), new Event()));
+        }).when(this.mockEcGenerator).regenerateDirtyCertificates(anyCollection());
+
+        List<Integer> progress = new ArrayList<>();
+        List<String> checkpoints = new ArrayList<>();
+        int regenerated = this.buildRegenerator()
+            .regenerateCertificates(ids, null, (processed, total, checkpoint) -> {
+                assertEquals(8, total);
+                progress.add(processed);
+                checkpoints.add(checkpoint);
+            });
+
+        assertEquals(8, regenerated);
+        assertEquals(Arrays.asList(3, 6, 8), progress);
+        assertEquals(Arrays.asList("ent-2", "ent-5", "ent-7"), checkpoints);
+        assertEquals(ids.size(), seen.size());
+        assertEquals(Collections.singleton(this.principal), principals);
+
+        verify(this.mockEntitlementCurator, times(1)).markEntitlementsDirty(eq(ids));
+        verify(this.mockEcGenerator, times(3)).regenerateDirtyCertificates(anyCollection());
+        verify(this.mockEventSink, times(8)).queueEvent(any(Event.class));
+        verify(this.mockEventSink, times(3)).sendEvents();
+    }
+
+    @Test
+    public void testResumesAfterCheckpoint() {
+        List<String> ids = this.buildEntitlementIds(8);
+        Collections.shuffle(ids);
+
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        doAnswer(iom -> {
+            Collection<String> chunk = iom.getArgument(0);
+            seen.addAll(chunk);
+
+            return new ArrayList<>(Collections.nCopies(chunk.size(), new Event()));
+        }).when(this.mockEcGenerator).regenerateDirtyCertificates(anyCollection());
+
+        List<Integer> progress = new ArrayList<>();
+        int regenerated = this.buildRegenerator()
+            .regenerateCertificates(ids, "ent-2", (processed, total, checkpoint) -> progress.add(processed));
+
+        List<String> remaining = Arrays.asList("ent-3", "ent-4", "ent-5", "ent-6", "ent-7");
+
+        assertEquals(5, regenerated);
+        assertEquals(Arrays.asList(6, 8), progress);
+        assertEquals(new HashSet<>(remaining), seen);
+        verify(this.mockEntitlementCurator, times(1)).markEntitlementsDirty(eq(remaining));
+    }
+
+    @Test
+    public void testNothingToResumeAfterFinalCheckpoint() {
+        List<String> ids = this.buildEntitlementIds(4);
+
+        int regenerated = this.buildRegenerator().regenerateCertificates(ids, "ent-3", null);
+
+        assertEquals(0, regenerated);
+        verify(this.mockEntitlementCurator, never()).markEntitlementsDirty(anyCollection());
+        verify(this.mockEcGenerator, never()).regenerateDirtyCertificates(anyCollection());
+    }
+
+    @Test
+    public void testSkippedEntitlementsAreNotCounted() {
+        List<String> ids = this.buildEntitlementIds(5);
+
+        // Only one entitlement of each chunk is still dirty
+        doAnswer(iom -> Collections.singletonList(new Event()))
+            .when(this.mockEcGenerator).regenerateDirtyCertificates(anyCollection());
+
+        int regenerated = this.buildRegenerator().regenerateCertificates(ids, null, null);
+
+        assertEquals(2, regenerated);
+        verify(this.mockEventSink, times(2)).queueEvent(any(Event.class));
+    }
+
+    @Test
+    public void testChunkFailureIsPropagated() {
+        List<String> ids = this.buildEntitlementIds(6);
+        RuntimeException failure = new RuntimeException("chunk failure");
+
+        doThrow(failure).when(this.mockEcGenerator).regenerateDirtyCertificates(anyCollection());
+
+        EntitlementCertificateRegenerator regenerator = this.buildRegenerator();
+        RuntimeException thrown = assertThrows(RuntimeException.class,
+            () -> regenerator.regenerateCertificates(ids, null, null));
+
+        assertSame(failure, thrown);
+        verify(this.mockEventSink, never()).queueEvent(any(Event.class));
+    }
+
+    @Test
+    public void testEventsOfCommittedChunksAreSentWhenLaterChunkFails() {
+        List<String> ids = this.buildEntitlementIds(6);
+        RuntimeException failure = new RuntimeException("chunk failure");
+
+        doAnswer(iom -> {
+            Collection<String> chunk = iom.getArgument(0);
+            if (chunk.contains("ent-5")) {
+                throw failure;
+            }
+
+            return new ArrayList<>(Collections.nCopies(chunk.size(), new Event()));
+        }).when(this.mockEcGenerator).regenerateDirtyCertificates(anyCollection());
+
+        List<String> checkpoints = new ArrayList<>();
+        ProgressListener listener = (processed, total, checkpoint) -> checkpoints.add(checkpoint);
+
+        EntitlementCertificateRegenerator regenerator = this.buildRegenerator();
+        RuntimeException thrown = assertThrows(RuntimeException.class,
+            () -> regenerator.regenerateCertificates(ids, null, listener));
+
+        assertSame(failure, thrown);
+        assertEquals(Collections.singletonList("ent-2"), checkpoints);
+        verify(this.mockEventSink, times(3)).queueEvent(any(Event.class));
+        verify(this.mockEventSink, times(1)).sendEvents();
+    }
+
+    @Test
+    public void testCannotRegenerateWithinActiveTransaction() {
+        EntityTransaction transaction = mock(EntityTransaction.class);
+        doReturn(true).when(transaction).isActive();
+        doReturn(transaction).when(this.mockEntitlementCurator).getTransaction();
+
+        EntitlementCertificateRegenerator regenerator = this.buildRegenerator();
+        List<String> ids = this.buildEntitlementIds(2);
+
+        assertThrows(IllegalStateException.class, () -> regenerator.regenerateCertificates(ids, null, null));
+        verify(this.mockEntitlementCurator, never()).markEntitlementsDirty(anyCollection());
+        verify(this.mockEcGenerator, never()).regenerateDirtyCertificates(anyCollection());
+    }
+
+    @Test
+    public void testRegenerateCertificatesOfOwnersAndProducts() {
+        Owner owner = new Owner("owner_key", "owner_name");
+        Pool pool1 = new Pool();
+        pool1.setId("pool-1");
+        Pool pool2 = new Pool();
+        pool2.setId("pool-2");
+
+        Set<String> productIds = Collections.singleton("product");
+        List<String> ids = this.buildEntitlementIds(2);
+
+        doReturn(Arrays.asList(pool1, pool2)).when(this.mockPoolCurator)
+            .listAvailableEntitlementPools(isNull(), eq(owner), eq(productIds), any(Date.class));
+        doReturn(ids).when(this.mockEntitlementCurator).listEntitlementIdsByPoolIds(
+            eq(new HashSet<>(Arrays.asList("pool-1", "pool-2"))));
+        doAnswer(iom -> Collections.nCopies(((Collection<?>) iom.getArgument(0)).size(), new Event()))
+            .when(this.mockEcGenerator).regenerateDirtyCertificates(anyCollection());
+
+        int regenerated = this.buildRegenerator()
+            .regenerateCertificatesOf(Collections.singleton(owner), productIds, null, null);
+
+        assertEquals(2, regenerated);
+        verify(this.mockEntitlementCurator, times(1)).markEntitlementsDirty(eq(ids));
+    }
+}
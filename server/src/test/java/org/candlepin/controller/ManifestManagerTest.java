@@ -15,6 +15,7 @@
 package org.candlepin.controller;
 
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -22,6 +23,8 @@ import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.nullable;
 import static org.mockito.Mockito.anyCollection;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -51,6 +54,7 @@ import org.candlepin.model.Entitlement;
 import org.candlepin.model.EntitlementCurator;
 import org.candlepin.model.Owner;
 import org.candlepin.sync.ConflictOverrides;
+import org.candlepin.sync.ExportCreationException;
 import org.candlepin.sync.ExportResult;
 import org.candlepin.sync.Exporter;
 import org.candlepin.sync.Importer;
@@ -71,14 +75,17 @@ import org.mockito.quality.Strictness;
 import org.xnap.commons.i18n.I18n;
 import org.xnap.commons.i18n.I18nFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Random;
 
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
@@ -242,6 +249,96 @@ public class ManifestManagerTest {
         verifyZeroInteractions(fileService);
     }
 
+    @Test
+    public void testWriteManifestToResponse() throws Exception {
+        Consumer consumer = this.createMockConsumer(true);
+        Cdn cdn = new Cdn("test-cdn", "Test CDN", "");
+        String webAppPrefix = "webapp-prefix";
+        String apiUrl = "api-url";
+        Map<String, String> extData = new HashMap<>();
+
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        ServletOutputStream responseOutputStream = mock(ServletOutputStream.class);
+        when(response.getOutputStream()).thenReturn(responseOutputStream);
+
+        Event event = mock(Event.class);
+        when(eventFactory.exportCreated(eq(consumer))).thenReturn(event);
+        when(consumerCurator.verifyAndLookupConsumer(eq(consumer.getUuid()))).thenReturn(consumer);
+        when(cdnCurator.getByLabel(eq(cdn.getLabel()))).thenReturn(cdn);
+
+        manager.writeManifestToResponse(consumer.getUuid(), cdn.getLabel(), webAppPrefix, apiUrl, extData,
+            response);
+
+        verify(poolManager).regenerateDirtyEntitlements(eq(consumer));
+        verify(exporter).writeFullExport(eq(consumer), eq(cdn.getLabel()), eq(webAppPrefix), eq(apiUrl),
+            eq(extData), any(OutputStream.class));
+        verify(response).setContentType("application/zip");
+        verify(response).setHeader(eq("Content-Disposition"),
+            eq("attachment; filename=" + consumer.getUuid() + "-export.zip"));
+        verify(responseOutputStream).flush();
+
+        verify(eventSink).queueEvent(eq(event));
+        verifyZeroInteractions(fileService);
+    }
+
+    @Test
+    public void testWriteManifestToResponseLeavesResponseUntouchedOnFailure() throws Exception {
+        Consumer consumer = this.createMockConsumer(true);
+        Cdn cdn = new Cdn("test-cdn", "Test CDN", "");
+
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        when(consumerCurator.verifyAndLookupConsumer(eq(consumer.getUuid()))).thenReturn(consumer);
+        when(cdnCurator.getByLabel(eq(cdn.getLabel()))).thenReturn(cdn);
+
+        // Fail after part of the manifest has been written
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(5);
+            out.write(new byte[1024]);
+            throw new ExportCreationException("Unable to create export archive");
+        }).when(exporter)
+            .writeFullExport(eq(consumer), eq(cdn.getLabel()), any(), any(), any(), any(OutputStream.class));
+
+        assertThrows(ExportCreationException.class, () -> manager.writeManifestToResponse(
+            consumer.getUuid(), cdn.getLabel(), null, null, new HashMap<>(), response));
+
+        verifyZeroInteractions(response);
+        verifyZeroInteractions(eventSink);
+    }
+
+    @Test
+    public void testWriteManifestToResponseWritesManifestLargerThanMemoryThreshold() throws Exception {
+        Consumer consumer = this.createMockConsumer(true);
+        Cdn cdn = new Cdn("test-cdn", "Test CDN", "");
+
+        byte[] manifest = new byte[ManifestManager.EXPORT_MEMORY_THRESHOLD + 1024];
+        new Random(1).nextBytes(manifest);
+
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                written.write(b);
+            }
+        });
+
+        when(consumerCurator.verifyAndLookupConsumer(eq(consumer.getUuid()))).thenReturn(consumer);
+        when(cdnCurator.getByLabel(eq(cdn.getLabel()))).thenReturn(cdn);
+
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(5);
+            out.write(manifest);
+            return null;
+        }).when(exporter)
+            .writeFullExport(eq(consumer), eq(cdn.getLabel()), any(), any(), any(), any(OutputStream.class));
+
+        manager.writeManifestToResponse(consumer.getUuid(), cdn.getLabel(), null, null, new HashMap<>(),
+            response);
+
+        assertArrayEquals(manifest, written.toByteArray());
+        verify(response).setContentType("application/zip");
+    }
+
     @Test
     public void testGenerateAndStoreManifest() throws Exception {
         Consumer consumer = this.createMockConsumer(true);
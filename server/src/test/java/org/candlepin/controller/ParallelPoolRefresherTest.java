@@ -0,0 +1,293 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.candlepin.audit.EventSink;
+import org.candlepin.auth.Principal;
+import org.candlepin.auth.SystemPrincipal;
+import org.candlepin.guice.CandlepinRequestScope;
+import org.candlepin.guice.PrincipalProvider;
+import org.candlepin.model.Owner;
+import org.candlepin.model.PoolCurator;
+import org.candlepin.model.Product;
+import org.candlepin.service.SubscriptionServiceAdapter;
+import org.candlepin.service.model.SubscriptionInfo;
+import org.candlepin.test.TestUtil;
+
+import com.google.inject.persist.UnitOfWork;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.persistence.EntityTransaction;
+
+
+
+/**
+ * Test suite for the ParallelPoolRefresher class
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class ParallelPoolRefresherTest {
+
+    @Mock private CandlepinPoolManager mockPoolManager;
+    @Mock private OwnerManager mockOwnerManager;
+    @Mock private PoolCurator mockPoolCurator;
+    @Mock private EventSink mockEventSink;
+    @Mock private UnitOfWork mockUnitOfWork;
+    @Mock private PrincipalProvider mockPrincipalProvider;
+    @Mock private SubscriptionServiceAdapter mockSubAdapter;
+
+    private Owner owner;
+    private Principal principal;
+
+    @BeforeEach
+    public void init() {
+        this.owner = TestUtil.createOwner("owner_key");
+        this.principal = new SystemPrincipal();
+
+        doReturn(this.principal).when(this.mockPrincipalProvider).get();
+        doReturn(this.owner).when(this.mockPoolManager).completePoolRefresh(any(PoolRefreshPlan.class),
+            anyBoolean());
+    }
+
+    private ParallelPoolRefresher buildRefresher() {
+        return new ParallelPoolRefresher(this.mockPoolManager, () -> this.mockPoolManager,
+            this.mockOwnerManager, this.mockPoolCurator, () -> this.mockEventSink,
+            new CandlepinRequestScope(), this.mockUnitOfWork, this.mockPrincipalProvider);
+    }
+
+    private SubscriptionInfo buildSubscription(String id, String stackingId) {
+        Product product = TestUtil.createProduct();
+        if (stackingId != null) {
+            product.setAttribute(Product.Attributes.STACKING_ID, stackingId);
+        }
+
+        org.candlepin.model.dto.Subscription subscription = TestUtil.createSubscription(this.owner, product);
+        subscription.setId(id);
+
+        return subscription;
+    }
+
+    private PoolRefreshPlan buildPlan(List<SubscriptionInfo> pending, int unchanged) {
+        return this.buildPlan(pending, new HashMap<>(), unchanged);
+    }
+
+    private PoolRefreshPlan buildPlan(List<SubscriptionInfo> pending, Map<String, String> fingerprints,
+        int unchanged) {
+
+        Set<String> subscriptionIds = new HashSet<>();
+        for (SubscriptionInfo sub : pending) {
+            subscriptionIds.add(sub.getId());
+        }
+
+        for (int i = 0; i < unchanged; ++i) {
+            subscriptionIds.add("unchanged-" + i);
+        }
+
+        PoolRefreshPlan plan = new PoolRefreshPlan(this.owner, new Date(), subscriptionIds, pending,
+            fingerprints, new HashMap<>(), new HashMap<>());
+
+        doReturn(plan).when(this.mockPoolManager).planPoolRefresh(eq(this.mockSubAdapter), eq(this.owner),
+            anyBoolean());
+
+        return plan;
+    }
+
+    private static Set<String> ids(Collection<SubscriptionInfo> subscriptions) {
+        Set<String> ids = new HashSet<>();
+        for (SubscriptionInfo sub : subscriptions) {
+            ids.add(sub.getId());
+        }
+
+        return ids;
+    }
+
+    @Test
+    public void testPartitionGroupsSubscriptionsByStack() {
+        SubscriptionInfo sub1 = this.buildSubscription("sub-1", "stack-1");
+        SubscriptionInfo sub2 = this.buildSubscription("sub-2", null);
+        SubscriptionInfo sub3 = this.buildSubscription("sub-3", "stack-1");
+        SubscriptionInfo sub4 = this.buildSubscription("sub-4", "stack-2");
+        SubscriptionInfo sub5 = this.buildSubscription("sub-5", null);
+
+        Map<String, List<SubscriptionInfo>> groups = ParallelPoolRefresher.partition(
+            Arrays.asList(sub5, sub1, sub2, sub3, sub4));
+
+        assertEquals(Arrays.asList("stack:stack-1", "stack:stack-2", "subscription:sub-2",
+            "subscription:sub-5"), new ArrayList<>(groups.keySet()));
+        assertEquals(Arrays.asList(sub1, sub3), groups.get("stack:stack-1"));
+        assertEquals(Collections.singletonList(sub4), groups.get("stack:stack-2"));
+        assertEquals(Collections.singletonList(sub2), groups.get("subscription:sub-2"));
+        assertEquals(Collections.singletonList(sub5), groups.get("subscription:sub-5"));
+    }
+
+    @Test
+    public void testRefreshesGroupsInSeparateUnitsOfWork() {
+        List<SubscriptionInfo> pending = Arrays.asList(this.buildSubscription("sub-1", "stack"),
+            this.buildSubscription("sub-2", "stack"), this.buildSubscription("sub-3", null));
+        PoolRefreshPlan plan = this.buildPlan(pending, 2);
+
+        Set<Set<String>> groups = ConcurrentHashMap.newKeySet();
+        doAnswer(iom -> groups.add(ids(iom.getArgument(1))))
+            .when(this.mockPoolManager).refreshSubscriptionGroup(eq(plan), anyCollection(), eq(true));
+
+        ParallelPoolRefresher.Result result = this.buildRefresher()
+            .refresh(this.mockSubAdapter, this.owner, true, false, null, 4);
+
+        assertEquals(2, result.getGroups());
+        assertEquals(3, result.getRefreshed());
+        assertEquals(0, result.getFailed());
+        assertEquals(2, result.getUnchanged());
+        assertEquals(0, result.getResumed());
+        assertEquals("subscription:sub-3", result.getCheckpoint());
+        assertEquals(new HashSet<>(Arrays.asList(new HashSet<>(Arrays.asList("sub-1", "sub-2")),
+            Collections.singleton("sub-3"))), groups);
+
+        verify(this.mockUnitOfWork, times(2)).begin();
+        verify(this.mockUnitOfWork, times(2)).end();
+        verify(this.mockEventSink, times(2)).sendEvents();
+        verify(this.mockPoolManager, times(1)).completePoolRefresh(eq(plan), eq(true));
+        verify(this.mockPoolManager, times(1)).recalculatePoolQuantitiesForOwner(eq(this.owner));
+        verify(this.mockOwnerManager, times(1)).updateRefreshDate(eq(this.owner));
+    }
+
+    @Test
+    public void testFailedGroupDoesNotStopRefresh() {
+        List<SubscriptionInfo> pending = new ArrayList<>();
+        for (int i = 0; i < 5; ++i) {
+            pending.add(this.buildSubscription("sub-" + i, null));
+        }
+
+        PoolRefreshPlan plan = this.buildPlan(pending, 0);
+
+        doThrow(new RuntimeException("group failure")).when(this.mockPoolManager)
+            .refreshSubscriptionGroup(eq(plan), argThat(group -> ids(group).contains("sub-2")), anyBoolean());
+
+        ParallelPoolRefresher.Result result = this.buildRefresher()
+            .refresh(this.mockSubAdapter, this.owner, false, true, null, 2);
+
+        assertEquals(5, result.getGroups());
+        assertEquals(4, result.getRefreshed());
+        assertEquals(1, result.getFailed());
+
+        // Only the groups before the failed one may be skipped when resuming
+        assertEquals("subscription:sub-1", result.getCheckpoint());
+
+        verify(this.mockPoolManager, times(1)).planPoolRefresh(eq(this.mockSubAdapter), eq(this.owner),
+            eq(true));
+        verify(this.mockEventSink, times(4)).sendEvents();
+        verify(this.mockEventSink, times(1)).rollback();
+        verify(this.mockUnitOfWork, times(5)).end();
+
+        // The pools of the owner are still brought up to date, but the refresh is not complete
+        verify(this.mockPoolManager, times(1)).completePoolRefresh(eq(plan), eq(false));
+        verify(this.mockOwnerManager, never()).updateRefreshDate(any(Owner.class));
+    }
+
+    @Test
+    public void testResumeSkipsUnchangedGroupsUpToCheckpoint() {
+        List<SubscriptionInfo> pending = new ArrayList<>();
+        for (int i = 0; i < 5; ++i) {
+            pending.add(this.buildSubscription("sub-" + i, null));
+        }
+
+        // sub-1 changed after the refresh being resumed committed its group
+        PoolRefreshPlan plan = this.buildPlan(pending, Collections.singletonMap("sub-1", "fingerprint"), 0);
+
+        Set<String> refreshed = ConcurrentHashMap.newKeySet();
+        doAnswer(iom -> refreshed.addAll(ids(iom.getArgument(1))))
+            .when(this.mockPoolManager).refreshSubscriptionGroup(eq(plan), anyCollection(), eq(true));
+
+        ParallelPoolRefresher.Result result = this.buildRefresher()
+            .refresh(this.mockSubAdapter, this.owner, true, false, "subscription:sub-2", 2);
+
+        assertEquals(3, result.getGroups());
+        assertEquals(3, result.getRefreshed());
+        assertEquals(2, result.getResumed());
+        assertEquals("subscription:sub-4", result.getCheckpoint());
+        assertEquals(new HashSet<>(Arrays.asList("sub-1", "sub-3", "sub-4")), refreshed);
+
+        // Whether unchanged subscriptions are skipped is unaffected by resuming
+        verify(this.mockPoolManager, times(1)).planPoolRefresh(eq(this.mockSubAdapter), eq(this.owner),
+            eq(false));
+    }
+
+    @Test
+    public void testRefreshWithNoPendingSubscriptions() {
+        PoolRefreshPlan plan = this.buildPlan(Collections.emptyList(), 3);
+
+        ParallelPoolRefresher.Result result = this.buildRefresher()
+            .refresh(this.mockSubAdapter, this.owner, true, true, null, 4);
+
+        assertEquals(0, result.getGroups());
+        assertEquals(0, result.getRefreshed());
+        assertEquals(3, result.getUnchanged());
+        assertNull(result.getCheckpoint());
+
+        verify(this.mockPoolManager, never()).refreshSubscriptionGroup(any(PoolRefreshPlan.class),
+            anyCollection(), anyBoolean());
+        verify(this.mockPoolManager, times(1)).completePoolRefresh(eq(plan), eq(true));
+    }
+
+    @Test
+    public void testCannotRefreshWithinActiveTransaction() {
+        EntityTransaction transaction = mock(EntityTransaction.class);
+        doReturn(true).when(transaction).isActive();
+        doReturn(transaction).when(this.mockPoolCurator).getTransaction();
+
+        ParallelPoolRefresher refresher = this.buildRefresher();
+
+        assertFalse(refresher.canRefresh());
+        assertThrows(IllegalStateException.class,
+            () -> refresher.refresh(this.mockSubAdapter, this.owner, true, false, null, 4));
+        verify(this.mockPoolManager, never()).planPoolRefresh(any(SubscriptionServiceAdapter.class),
+            any(Owner.class), anyBoolean());
+    }
+}
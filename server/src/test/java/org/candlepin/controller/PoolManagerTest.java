@@ -85,10 +85,12 @@ import org.candlepin.model.Eventful;
 import org.candlepin.model.Owner;
 import org.candlepin.model.OwnerContentCurator;
 import org.candlepin.model.OwnerCurator;
+import org.candlepin.model.OwnerInfoSummaryCurator;
 import org.candlepin.model.OwnerProductCurator;
 import org.candlepin.model.Pool;
 import org.candlepin.model.Pool.PoolType;
 import org.candlepin.model.PoolCurator;
+import org.candlepin.model.PoolIndex;
 import org.candlepin.model.PoolFilterBuilder;
 import org.candlepin.model.PoolQuantity;
 import org.candlepin.model.Product;
@@ -116,6 +118,7 @@ import org.candlepin.service.SubscriptionServiceAdapter;
 import org.candlepin.service.model.SubscriptionInfo;
 import org.candlepin.test.MockResultIterator;
 import org.candlepin.test.TestUtil;
+import org.candlepin.util.Util;
 
 import org.hamcrest.core.IsCollectionContaining;
 import org.junit.jupiter.api.BeforeEach;
@@ -185,6 +188,7 @@ public class PoolManagerTest {
     @Mock private OwnerContentCurator mockOwnerContentCurator;
     @Mock private OwnerProductCurator mockOwnerProductCurator;
     @Mock private OwnerManager mockOwnerManager;
+    @Mock private OwnerInfoSummaryCurator mockOwnerInfoSummaryCurator;
     @Mock private CdnCurator mockCdnCurator;
     @Mock private BindChainFactory mockBindChainFactory;
     @Mock private BindContextFactory mockBindContextFactory;
@@ -223,7 +227,7 @@ public class PoolManagerTest {
             mockECGenerator, complianceRules, systemPurposeComplianceRules, autobindRules,
             activationKeyRules, mockProductCurator, mockProductManager, mockContentManager,
             mockOwnerContentCurator, mockOwnerCurator, mockOwnerProductCurator, mockOwnerManager,
-            mockCdnCurator, i18n, mockBindChainFactory
+            mockCdnCurator, i18n, mockBindChainFactory, new PoolIndex(), mockOwnerInfoSummaryCurator
         ));
 
         setupBindChain();
@@ -310,6 +314,7 @@ public class PoolManagerTest {
                         consumerCuratorMock,
                         consumerTypeCuratorMock,
                         mockOwnerCurator,
+                        mock(PoolQuantityEscrow.class),
                         i18n,
                         consumer,
                         pQ);
@@ -479,6 +484,83 @@ public class PoolManagerTest {
         TestUtil.assertPoolsAreEqual(TestUtil.copyFromSub(sub), argPool.getValue());
     }
 
+    @Test
+    public void testIncrementalRefreshSkipsUnchangedSubscriptions() {
+        Owner owner = this.getOwner();
+        Product product = TestUtil.createProduct();
+        Subscription sub = TestUtil.createSubscription(owner, product);
+        sub.setId("testing-subid");
+
+        Pool pool = TestUtil.createPool(product);
+        pool.setSourceSubscription(new SourceSubscription(sub.getId(), "master"));
+        pool.setOwner(owner);
+
+        this.mockSubscriptions(owner, Collections.singletonList(sub));
+        this.mockPoolsList(Collections.singletonList(pool));
+        when(mockOwnerCurator.getByKey(owner.getKey())).thenReturn(owner);
+        this.mockProducts(owner, product);
+        this.mockProductImport(owner, product);
+        this.mockContentImport(owner, new Content[] {});
+
+        String fingerprint = SubscriptionFingerprinter.fingerprint(sub,
+            Collections.singletonMap(product.getId(), product));
+
+        when(mockConfig.getBoolean(eq(ConfigProperties.INCREMENTAL_POOL_REFRESH))).thenReturn(true);
+        when(mockPoolCurator.getMasterPoolRefreshFingerprints(eq(owner)))
+            .thenReturn(Collections.singletonMap(sub.getId(), fingerprint));
+
+        CandlepinQuery<Pool> cqmock = mock(CandlepinQuery.class);
+        when(cqmock.list()).thenReturn(Collections.singletonList(pool));
+        when(cqmock.iterator()).thenReturn(Collections.singletonList(pool).iterator());
+        when(mockPoolCurator.listByOwnerAndType(eq(owner), any(PoolType.class))).thenReturn(cqmock);
+
+        this.manager.getRefresher(mockSubAdapter).add(owner).run();
+
+        verify(this.manager, never()).refreshPoolsForMasterPool(any(Pool.class), anyBoolean(), anyBoolean(),
+            any(Map.class));
+        verify(this.manager, never()).updateFloatingPools(any(List.class), anyBoolean(), any(Map.class));
+        verify(mockPoolCurator, never())
+            .updateMasterPoolRefreshFingerprints(any(Owner.class), any(Map.class));
+    }
+
+    @Test
+    public void testIncrementalRefreshProcessesChangedSubscriptions() {
+        Owner owner = this.getOwner();
+        Product product = TestUtil.createProduct();
+        Subscription sub = TestUtil.createSubscription(owner, product);
+        sub.setId("testing-subid");
+
+        Pool pool = TestUtil.createPool(product);
+        pool.setSourceSubscription(new SourceSubscription(sub.getId(), "master"));
+        pool.setOwner(owner);
+
+        this.mockSubscriptions(owner, Collections.singletonList(sub));
+        this.mockPoolsList(Collections.singletonList(pool));
+        when(mockOwnerCurator.getByKey(owner.getKey())).thenReturn(owner);
+        this.mockProducts(owner, product);
+        this.mockProductImport(owner, product);
+        this.mockContentImport(owner, new Content[] {});
+
+        String fingerprint = SubscriptionFingerprinter.fingerprint(sub,
+            Collections.singletonMap(product.getId(), product));
+
+        when(mockConfig.getBoolean(eq(ConfigProperties.INCREMENTAL_POOL_REFRESH))).thenReturn(true);
+        when(mockPoolCurator.getMasterPoolRefreshFingerprints(eq(owner)))
+            .thenReturn(Collections.singletonMap(sub.getId(), "stale"));
+
+        CandlepinQuery<Pool> cqmock = mock(CandlepinQuery.class);
+        when(cqmock.list()).thenReturn(Collections.singletonList(pool));
+        when(cqmock.iterator()).thenReturn(Collections.singletonList(pool).iterator());
+        when(mockPoolCurator.listByOwnerAndType(eq(owner), any(PoolType.class))).thenReturn(cqmock);
+
+        this.manager.getRefresher(mockSubAdapter).add(owner).run();
+
+        verify(this.manager, times(1)).refreshPoolsForMasterPool(any(Pool.class), eq(false), eq(true),
+            any(Map.class));
+        verify(mockPoolCurator, times(1)).updateMasterPoolRefreshFingerprints(eq(owner),
+            eq(Collections.singletonMap(sub.getId(), fingerprint)));
+    }
+
     private void mockSubscriptions(Owner owner, Collection<? extends SubscriptionInfo> subscriptions) {
         Set<String> sids = new HashSet<>();
 
@@ -1181,6 +1263,89 @@ public class PoolManagerTest {
         assertEquals(e.size(), 1);
     }
 
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @Test
+    public void testEntitleByProductsReusesPoolSelectionRulesResults() throws Exception {
+        Product product = TestUtil.createProduct();
+        Pool pool1 = TestUtil.createPool(product);
+        pool1.setId("poolId1");
+        Pool pool2 = TestUtil.createPool(product);
+        pool2.setId("poolId2");
+        pool2.setAttribute(Product.Attributes.INSTANCE_MULTIPLIER, "2");
+        Pool pool3 = TestUtil.createPool(TestUtil.createProduct());
+        pool3.setId("poolId3");
+        List<Pool> pools = Arrays.asList(pool1, pool2);
+        Date now = new Date();
+
+        Page page = mock(Page.class);
+        when(page.getPageData()).thenReturn(pools);
+        when(mockPoolCurator.listAvailableEntitlementPools(any(Consumer.class),
+            any(String.class), nullable(String.class), nullable(String.class), eq(now),
+            any(PoolFilterBuilder.class), nullable(PageRequest.class), eq(true), eq(false),
+            eq(false), nullable(Date.class)))
+            .thenReturn(page);
+
+        CandlepinQuery mockQuery = mock(CandlepinQuery.class);
+        when(mockPoolCurator.listAllByIds(nullable(Set.class))).thenReturn(mockQuery);
+        when(mockQuery.iterator()).thenReturn(Arrays.asList(pool3).listIterator());
+
+        when(enforcerMock.preEntitlement(any(Consumer.class), anyCollectionOf(PoolQuantity.class),
+            any(CallerType.class))).thenAnswer(invocation -> {
+                Map<String, ValidationResult> results = new HashMap<>();
+                for (PoolQuantity pq : (Collection<PoolQuantity>) invocation.getArguments()[1]) {
+                    results.put(pq.getPool().getId(), new ValidationResult());
+                }
+
+                return results;
+            });
+        when(enforcerMock.postEntitlement(eq(manager), any(Consumer.class), nullable(Owner.class), anyMap(),
+            anyList(), eq(false), anyMap())).thenReturn(new PoolOperationCallback());
+
+        Map<String, EntitlementCertificate> certs = new HashMap<>();
+        for (String poolId : Arrays.asList("poolId1", "poolId2", "poolId3")) {
+            certs.put(poolId, new EntitlementCertificate());
+        }
+
+        when(mockECGenerator.generateEntitlementCertificates(any(Consumer.class), any(Map.class),
+            any(Map.class), any(Map.class), eq(false))).thenReturn(certs);
+
+        List<PoolQuantity> bestPools = new ArrayList<>();
+        bestPools.add(new PoolQuantity(pool1, 1));
+        bestPools.add(new PoolQuantity(pool2, 1));
+        bestPools.add(new PoolQuantity(pool3, 1));
+        when(autobindRules.selectBestPools(any(Consumer.class), any(String[].class),
+            any(List.class), nullable(ComplianceStatus.class), nullable(String.class),
+            any(Set.class), eq(false)))
+            .thenReturn(bestPools);
+
+        ConsumerType ctype = this.mockConsumerType(TestUtil.createConsumerType());
+        Consumer consumer = TestUtil.createConsumer(ctype, owner);
+
+        AutobindData data = AutobindData.create(consumer, owner)
+            .forProducts(new String[] { product.getId() }).on(now);
+
+        List<Entitlement> entitlements = manager.entitleByProducts(data);
+        assertEquals(3, entitlements.size());
+
+        // All candidates are validated in a single pass during pool selection
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(enforcerMock).preEntitlement(any(Consumer.class), captor.capture(),
+            eq(CallerType.BEST_POOLS));
+        assertEquals(2, captor.getValue().size());
+        verify(enforcerMock, never()).preEntitlement(any(Consumer.class), any(Pool.class), anyInt(),
+            any(CallerType.class));
+
+        // Only the pools with quantity-sensitive checks or no selection result are re-validated
+        verify(enforcerMock).preEntitlement(any(Consumer.class), captor.capture(), eq(CallerType.BIND));
+        Set<String> revalidated = new HashSet<>();
+        for (Object pq : captor.getValue()) {
+            revalidated.add(((PoolQuantity) pq).getPool().getId());
+        }
+
+        assertEquals(Util.asSet("poolId2", "poolId3"), revalidated);
+        verify(mockPoolCurator).listAllByIds(eq(Util.asSet("poolId3")));
+    }
+
     @Test
     public void testEntitlebyProductRetry() throws Exception {
         Product product = TestUtil.createProduct();
@@ -2033,6 +2198,28 @@ public class PoolManagerTest {
         assertThat(saved, IsCollectionContaining.hasItems(pools.toArray(new Pool[0])));
     }
 
+    @Test
+    public void testCreatePoolsMarksOwnerInfoStale() {
+        when(mockConfig.getBoolean(eq(ConfigProperties.OWNER_INFO_SUMMARY_ENABLED))).thenReturn(true);
+        owner.setId("test_owner_id");
+
+        manager.createPools(Arrays.asList(
+            TestUtil.createPool(owner, product),
+            TestUtil.createPool(owner, product)));
+
+        verify(mockOwnerInfoSummaryCurator, times(1)).markStale(eq(Collections.singleton(owner.getId())));
+    }
+
+    @Test
+    public void testCreatePoolsDoesNotMarkOwnerInfoStaleWhenSummariesDisabled() {
+        when(mockConfig.getBoolean(eq(ConfigProperties.OWNER_INFO_SUMMARY_ENABLED))).thenReturn(false);
+        owner.setId("test_owner_id");
+
+        manager.createPools(Arrays.asList(TestUtil.createPool(owner, product)));
+
+        verify(mockOwnerInfoSummaryCurator, never()).markStale(any());
+    }
+
     @Test
     public void testFind() {
         List<Pool> pools = new ArrayList<>();
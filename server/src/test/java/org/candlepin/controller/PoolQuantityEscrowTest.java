@@ -0,0 +1,368 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import org.candlepin.config.CandlepinCommonTestConfig;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.controller.PoolQuantityEscrow.Reservation;
+import org.candlepin.model.ConsumerType;
+import org.candlepin.model.ConsumerType.ConsumerTypeEnum;
+import org.candlepin.model.Owner;
+import org.candlepin.model.Pool;
+import org.candlepin.model.PoolCurator;
+import org.candlepin.model.PoolQuantityLease;
+import org.candlepin.model.PoolQuantityLeaseCurator;
+import org.candlepin.model.Product;
+import org.candlepin.test.TestUtil;
+
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.hibernate.resource.transaction.spi.TransactionStatus;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+
+
+/**
+ * Test suite for the PoolQuantityEscrow class
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class PoolQuantityEscrowTest {
+
+    @Mock private PoolCurator mockPoolCurator;
+    @Mock private PoolQuantityLeaseCurator mockLeaseCurator;
+    @Mock private Session mockSession;
+    @Mock private Transaction mockTransaction;
+
+    private CandlepinCommonTestConfig config;
+    private PoolQuantityEscrow escrow;
+    private Map<String, PoolQuantityLease> leases;
+    private ConsumerType systemType;
+    private List<Synchronization> synchronizations;
+
+    @BeforeEach
+    public void init() {
+        this.config = new CandlepinCommonTestConfig();
+        this.config.setProperty(ConfigProperties.POOL_ESCROW_ENABLED, "true");
+        this.config.setProperty(ConfigProperties.POOL_ESCROW_MIN_QUANTITY, "1000");
+        this.config.setProperty(ConfigProperties.POOL_ESCROW_LEASE_SIZE, "50");
+
+        // Use an interval long enough that the background reconciliation never gets in the way
+        this.config.setProperty(ConfigProperties.POOL_ESCROW_RECONCILE_INTERVAL, "3600000");
+
+        this.leases = new HashMap<>();
+        this.systemType = new ConsumerType(ConsumerTypeEnum.SYSTEM);
+
+        doAnswer(invocation -> {
+            PoolQuantityLease lease = invocation.getArgument(0);
+            lease.setId("lease-" + (this.leases.size() + 1));
+            this.leases.put(lease.getId(), lease);
+
+            return lease;
+        }).when(this.mockLeaseCurator).create(any(PoolQuantityLease.class), anyBoolean());
+
+        doAnswer(invocation -> this.leases.get(invocation.getArgument(0)))
+            .when(this.mockLeaseCurator).get(any(String.class));
+
+        doAnswer(invocation -> {
+            PoolQuantityLease lease = this.leases.get(invocation.getArgument(0));
+            lease.setQuantity(lease.getQuantity() - (long) invocation.getArgument(1));
+            return 1;
+        }).when(this.mockLeaseCurator).useQuantity(any(String.class), anyLong());
+
+        // Reservations are tied to the current transaction
+        this.synchronizations = new ArrayList<>();
+        when(this.mockLeaseCurator.currentSession()).thenReturn(this.mockSession);
+        when(this.mockSession.getTransaction()).thenReturn(this.mockTransaction);
+        when(this.mockTransaction.getStatus()).thenReturn(TransactionStatus.ACTIVE);
+        doAnswer(invocation -> this.synchronizations.add(invocation.getArgument(0)))
+            .when(this.mockTransaction).registerSynchronization(any(Synchronization.class));
+    }
+
+    private void completeTransaction(int status) {
+        for (Synchronization synchronization : this.synchronizations) {
+            if (status == Status.STATUS_COMMITTED) {
+                synchronization.beforeCompletion();
+            }
+
+            synchronization.afterCompletion(status);
+        }
+
+        this.synchronizations.clear();
+    }
+
+    @AfterEach
+    public void cleanup() {
+        if (this.escrow != null) {
+            this.escrow.shutdown();
+        }
+    }
+
+    private PoolQuantityEscrow buildEscrow() {
+        this.escrow = new PoolQuantityEscrow(this.config, this.mockPoolCurator, this.mockLeaseCurator);
+        return this.escrow;
+    }
+
+    private Pool buildPool(String id, long quantity, long consumed) {
+        Owner owner = new Owner("test_owner");
+        Product product = TestUtil.createProduct();
+
+        Pool pool = TestUtil.createPool(owner, product, (int) quantity);
+        pool.setId(id);
+        pool.setConsumed(consumed);
+
+        when(this.mockPoolCurator.lockAndLoad(eq(id))).thenReturn(pool);
+
+        return pool;
+    }
+
+    @Test
+    public void testReserveDoesNothingUntilStarted() {
+        Pool pool = this.buildPool("pool-1", 5000, 0);
+        PoolQuantityEscrow escrow = this.buildEscrow();
+
+        assertFalse(escrow.isEnabled());
+        assertNull(escrow.reserve(pool, 1));
+        verifyZeroInteractions(this.mockPoolCurator, this.mockLeaseCurator);
+    }
+
+    @Test
+    public void testReserveDoesNothingWhenDisabled() {
+        this.config.setProperty(ConfigProperties.POOL_ESCROW_ENABLED, "false");
+        Pool pool = this.buildPool("pool-1", 5000, 0);
+        PoolQuantityEscrow escrow = this.buildEscrow();
+        escrow.start();
+
+        assertFalse(escrow.isEnabled());
+        assertNull(escrow.reserve(pool, 1));
+        verifyZeroInteractions(this.mockPoolCurator, this.mockLeaseCurator);
+    }
+
+    @Test
+    public void testReserveLeasesBlockOfPoolQuantity() {
+        Pool pool = this.buildPool("pool-1", 5000, 100);
+        PoolQuantityEscrow escrow = this.buildEscrow();
+        escrow.start();
+
+        Reservation reservation = escrow.reserve(pool, 1);
+
+        assertNotNull(reservation);
+        assertEquals(1, reservation.getQuantity());
+        assertEquals(150, (long) pool.getConsumed());
+        assertEquals(1, this.leases.size());
+        assertEquals(50, (long) this.leases.get("lease-1").getQuantity());
+        assertEquals("pool-1", this.leases.get("lease-1").getPoolId());
+    }
+
+    @Test
+    public void testReserveUsesLeaseWithoutLockingPool() {
+        Pool pool = this.buildPool("pool-1", 5000, 0);
+        PoolQuantityEscrow escrow = this.buildEscrow();
+        escrow.start();
+
+        for (int i = 0; i < 50; ++i) {
+            assertNotNull(escrow.reserve(pool, 1));
+        }
+
+        assertEquals(50, (long) pool.getConsumed());
+        verify(this.mockPoolCurator, times(1)).lockAndLoad(eq("pool-1"));
+
+        // The lease is used up; the next reservation leases another block
+        assertNotNull(escrow.reserve(pool, 1));
+        assertEquals(100, (long) pool.getConsumed());
+        verify(this.mockPoolCurator, times(2)).lockAndLoad(eq("pool-1"));
+        assertEquals(1, this.leases.size());
+    }
+
+    @Test
+    public void testReserveLeasesAtLeastRequestedQuantity() {
+        Pool pool = this.buildPool("pool-1", 5000, 0);
+        PoolQuantityEscrow escrow = this.buildEscrow();
+        escrow.start();
+
+        assertNotNull(escrow.reserve(pool, 80));
+        assertEquals(80, (long) pool.getConsumed());
+    }
+
+    @Test
+    public void testReserveLeasesRemainingQuantity() {
+        Pool pool = this.buildPool("pool-1", 1000, 980);
+        PoolQuantityEscrow escrow = this.buildEscrow();
+        escrow.start();
+
+        assertNotNull(escrow.reserve(pool, 5));
+        assertEquals(1000, (long) pool.getConsumed());
+        assertEquals(20, (long) this.leases.get("lease-1").getQuantity());
+    }
+
+    @Test
+    public void testReserveFailsWithoutAvailableQuantity() {
+        Pool pool = this.buildPool("pool-1", 1000, 990);
+        PoolQuantityEscrow escrow = this.buildEscrow();
+        escrow.start();
+
+        assertNull(escrow.reserve(pool, 20));
+        assertEquals(990, (long) pool.getConsumed());
+        verify(this.mockLeaseCurator, never()).create(any(PoolQuantityLease.class), anyBoolean());
+    }
+
+    @Test
+    public void testCancelReturnsQuantityToLease() {
+        Pool pool = this.buildPool("pool-1", 5000, 0);
+        PoolQuantityEscrow escrow = this.buildEscrow();
+        escrow.start();
+
+        Reservation reservation = escrow.reserve(pool, 50);
+        escrow.cancel(reservation);
+
+        assertNotNull(escrow.reserve(pool, 50));
+        assertEquals(50, (long) pool.getConsumed());
+        verify(this.mockPoolCurator, times(1)).lockAndLoad(eq("pool-1"));
+    }
+
+    @Test
+    public void testCommittedReservationIsDeductedFromLease() {
+        Pool pool = this.buildPool("pool-1", 5000, 0);
+        PoolQuantityEscrow escrow = this.buildEscrow();
+        escrow.start();
+
+        escrow.reserve(pool, 10);
+        assertEquals(50, (long) this.leases.get("lease-1").getQuantity());
+
+        this.completeTransaction(Status.STATUS_COMMITTED);
+
+        // The entitlement now counts the used quantity, so the lease only counts the rest
+        assertEquals(40, (long) this.leases.get("lease-1").getQuantity());
+        assertEquals(50, (long) pool.getConsumed());
+    }
+
+    @Test
+    public void testRolledBackReservationIsReturnedToLease() {
+        Pool pool = this.buildPool("pool-1", 5000, 0);
+        PoolQuantityEscrow escrow = this.buildEscrow();
+        escrow.start();
+
+        assertNotNull(escrow.reserve(pool, 50));
+        this.completeTransaction(Status.STATUS_ROLLEDBACK);
+
+        assertNotNull(escrow.reserve(pool, 50));
+        assertEquals(50, (long) pool.getConsumed());
+        verify(this.mockPoolCurator, times(1)).lockAndLoad(eq("pool-1"));
+        verify(this.mockLeaseCurator, never()).useQuantity(any(String.class), anyLong());
+    }
+
+    @Test
+    public void testCancelledReservationIsNotDeductedOrReturnedTwice() {
+        Pool pool = this.buildPool("pool-1", 5000, 0);
+        PoolQuantityEscrow escrow = this.buildEscrow();
+        escrow.start();
+
+        Reservation reservation = escrow.reserve(pool, 50);
+        escrow.cancel(reservation);
+        this.completeTransaction(Status.STATUS_COMMITTED);
+
+        assertEquals(50, (long) this.leases.get("lease-1").getQuantity());
+        verify(this.mockLeaseCurator, never()).useQuantity(any(String.class), anyLong());
+
+        // Cancelling again must not return the quantity to the lease a second time
+        escrow.cancel(reservation);
+        assertNotNull(escrow.reserve(pool, 50));
+        verify(this.mockPoolCurator, times(1)).lockAndLoad(eq("pool-1"));
+
+        assertNotNull(escrow.reserve(pool, 1));
+        verify(this.mockPoolCurator, times(2)).lockAndLoad(eq("pool-1"));
+    }
+
+    @Test
+    public void testReconcileRenewsLeaseWithUnusedQuantity() {
+        Pool pool = this.buildPool("pool-1", 5000, 0);
+        PoolQuantityEscrow escrow = this.buildEscrow();
+        escrow.start();
+
+        escrow.reserve(pool, 10);
+        this.completeTransaction(Status.STATUS_COMMITTED);
+        escrow.reconcile();
+
+        PoolQuantityLease lease = this.leases.get("lease-1");
+        assertEquals(40, (long) lease.getQuantity());
+        assertTrue(lease.getExpiration().getTime() > System.currentTimeMillis());
+        assertEquals(50, (long) pool.getConsumed());
+        verify(this.mockLeaseCurator).getPoolIdsWithExpiredLeases(any());
+    }
+
+    @Test
+    public void testShutdownReleasesUnusedQuantity() {
+        Pool pool = this.buildPool("pool-1", 5000, 0);
+        PoolQuantityEscrow escrow = this.buildEscrow();
+        escrow.start();
+
+        escrow.reserve(pool, 10);
+        escrow.shutdown();
+
+        assertEquals(10, (long) pool.getConsumed());
+        verify(this.mockLeaseCurator).delete(eq(this.leases.get("lease-1")));
+        assertNull(escrow.reserve(pool, 1));
+    }
+
+    @Test
+    public void testIsEligible() {
+        PoolQuantityEscrow escrow = this.buildEscrow();
+        escrow.start();
+
+        Pool large = this.buildPool("pool-1", 5000, 0);
+        Pool small = this.buildPool("pool-2", 100, 0);
+        Pool unlimited = this.buildPool("pool-3", -1, 0);
+        Pool virtLimited = this.buildPool("pool-4", 5000, 0);
+        virtLimited.getProduct().setAttribute(Product.Attributes.VIRT_LIMIT, "4");
+
+        assertTrue(escrow.isEligible(large, this.systemType));
+        assertFalse(escrow.isEligible(small, this.systemType));
+        assertTrue(escrow.isEligible(unlimited, this.systemType));
+        assertFalse(escrow.isEligible(virtLimited, this.systemType));
+        assertFalse(escrow.isEligible(large, new ConsumerType(ConsumerTypeEnum.CANDLEPIN)));
+    }
+}
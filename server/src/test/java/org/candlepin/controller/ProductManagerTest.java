@@ -37,6 +37,7 @@ import org.candlepin.model.Content;
 import org.candlepin.model.Owner;
 import org.candlepin.model.Pool;
 import org.candlepin.model.Product;
+import org.candlepin.model.ProductDigest;
 import org.candlepin.test.DatabaseTestFixture;
 import org.candlepin.test.TestUtil;
 
@@ -553,6 +554,61 @@ public class ProductManagerTest extends DatabaseTestFixture {
         assertEquals(1, this.ownerProductCurator.getProductById(owner, "p1").getBranding().size());
     }
 
+    @Test
+    public void testImportProductsSkipsUnchangedProducts() {
+        Owner owner = this.createOwner("test-owner", "Test Owner");
+
+        Product product = TestUtil.createProduct("p1", "prod1");
+        product.setLocked(true);
+        product.addBranding(new Branding(null, "eng_prod_id_1", "brand_name_1", "OS"));
+        product = this.createProduct(product, owner);
+
+        Map<String, Product> productData = new HashMap<>();
+        productData.put("p1", (Product) product.clone());
+
+        ImportResult<Product> result =
+            this.productManager.importProducts(owner, productData, new HashMap<>());
+
+        assertEquals(1, result.getSkippedEntities().size());
+        assertEquals(0, result.getCreatedEntities().size());
+        assertEquals(0, result.getUpdatedEntities().size());
+        assertEquals(product.getUuid(), result.getSkippedEntities().get("p1").getUuid());
+        assertEquals(product, this.ownerProductCurator.getProductById(owner, "p1"));
+    }
+
+    @Test
+    public void testImportProductsStoresDigestOfUnchangedLegacyProducts() {
+        Owner owner = this.createOwner("test-owner", "Test Owner");
+
+        Product product = TestUtil.createProduct("p1", "prod1");
+        product.setLocked(true);
+        product = this.createProduct(product, owner);
+
+        // Simulate a product persisted before content digests were calculated
+        this.getEntityManager()
+            .createNativeQuery("UPDATE cp2_products SET content_digest = NULL WHERE uuid = ?")
+            .setParameter(1, product.getUuid())
+            .executeUpdate();
+
+        this.getEntityManager().clear();
+
+        Map<String, Product> productData = new HashMap<>();
+        productData.put("p1", (Product) product.clone());
+
+        ImportResult<Product> result =
+            this.productManager.importProducts(owner, productData, new HashMap<>());
+
+        assertEquals(1, result.getSkippedEntities().size());
+        assertEquals(0, result.getUpdatedEntities().size());
+
+        Object digest = this.getEntityManager()
+            .createNativeQuery("SELECT content_digest FROM cp2_products WHERE uuid = ?")
+            .setParameter(1, product.getUuid())
+            .getSingleResult();
+
+        assertEquals(ProductDigest.calculate(product), digest);
+    }
+
     @Test
     public void testImportProductsUpdatesProductWhenAddingBranding() {
         Owner owner = this.createOwner("test-owner", "Test Owner");
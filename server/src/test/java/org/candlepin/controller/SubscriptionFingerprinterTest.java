@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.candlepin.model.Owner;
+import org.candlepin.model.Product;
+import org.candlepin.model.dto.Subscription;
+import org.candlepin.test.TestUtil;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+
+
+/**
+ * Test suite for the SubscriptionFingerprinter class
+ */
+public class SubscriptionFingerprinterTest {
+
+    private Owner owner;
+    private Product product;
+    private Product provided1;
+    private Product provided2;
+    private Map<String, Product> products;
+
+    @BeforeEach
+    public void init() {
+        this.owner = TestUtil.createOwner();
+        this.product = TestUtil.createProduct("product");
+        this.provided1 = TestUtil.createProduct("provided-1");
+        this.provided2 = TestUtil.createProduct("provided-2");
+
+        this.products = new HashMap<>();
+        for (Product p : Arrays.asList(this.product, this.provided1, this.provided2)) {
+            this.products.put(p.getId(), p);
+        }
+    }
+
+    private Subscription buildSubscription(Product... provided) {
+        Subscription subscription = TestUtil.createSubscription(this.owner, this.product,
+            Arrays.asList(provided));
+        subscription.setId("sub-id");
+
+        return subscription;
+    }
+
+    @Test
+    public void testFingerprintIsStable() {
+        Subscription subscription = this.buildSubscription(this.provided1, this.provided2);
+
+        String fingerprint = SubscriptionFingerprinter.fingerprint(subscription, this.products);
+
+        assertEquals(64, fingerprint.length());
+        assertEquals(fingerprint, SubscriptionFingerprinter.fingerprint(subscription, this.products));
+    }
+
+    @Test
+    public void testFingerprintIgnoresProvidedProductOrder() {
+        Subscription subscription1 = this.buildSubscription(this.provided1, this.provided2);
+        Subscription subscription2 = this.buildSubscription(this.provided2, this.provided1);
+        subscription2.setStartDate(subscription1.getStartDate());
+        subscription2.setEndDate(subscription1.getEndDate());
+        subscription2.setModified(subscription1.getModified());
+
+        assertEquals(SubscriptionFingerprinter.fingerprint(subscription1, this.products),
+            SubscriptionFingerprinter.fingerprint(subscription2, this.products));
+    }
+
+    @Test
+    public void testFingerprintChangesWithQuantity() {
+        Subscription subscription = this.buildSubscription(this.provided1);
+        String fingerprint = SubscriptionFingerprinter.fingerprint(subscription, this.products);
+
+        subscription.setQuantity(subscription.getQuantity() + 1);
+
+        assertNotEquals(fingerprint, SubscriptionFingerprinter.fingerprint(subscription, this.products));
+    }
+
+    @Test
+    public void testFingerprintChangesWithProvidedProducts() {
+        Subscription subscription = this.buildSubscription(this.provided1);
+        String fingerprint = SubscriptionFingerprinter.fingerprint(subscription, this.products);
+
+        subscription.setProvidedProducts(Arrays.asList(this.provided1.toDTO(), this.provided2.toDTO()));
+
+        assertNotEquals(fingerprint, SubscriptionFingerprinter.fingerprint(subscription, this.products));
+    }
+
+    @Test
+    public void testFingerprintChangesWithProductVersion() {
+        Subscription subscription = this.buildSubscription(this.provided1);
+        String fingerprint = SubscriptionFingerprinter.fingerprint(subscription, this.products);
+
+        this.provided1.setAttribute("arch", "x86_64");
+
+        assertNotEquals(fingerprint, SubscriptionFingerprinter.fingerprint(subscription, this.products));
+    }
+
+    @Test
+    public void testFingerprintRequiresSubscription() {
+        assertThrows(IllegalArgumentException.class,
+            () -> SubscriptionFingerprinter.fingerprint(null, this.products));
+    }
+}
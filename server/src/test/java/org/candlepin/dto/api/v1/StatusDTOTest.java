@@ -57,6 +57,12 @@ public class StatusDTOTest extends AbstractDTOTest<StatusDTO> {
         this.values.put("TimeUTC", new Date());
         this.values.put("RulesSource", "rules-source");
         this.values.put("Capabilities", capabilities);
+        this.values.put("KeyPairPool", new KeyPairPoolStatusDTO()
+            .setEnabled(true)
+            .setDepth(3)
+            .setCapacity(5)
+            .setHits(9L)
+            .setMisses(2L));
     }
 
     /**
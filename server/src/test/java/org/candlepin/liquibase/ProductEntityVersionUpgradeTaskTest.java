@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.liquibase;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.candlepin.model.Branding;
+import org.candlepin.model.Content;
+import org.candlepin.model.Product;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+
+
+/**
+ * Test suite for the ProductEntityVersionUpgradeTask class
+ */
+public class ProductEntityVersionUpgradeTaskTest {
+
+    @Test
+    public void testCalculatedVersionMatchesProductVersion() {
+        Content content1 = new Content("c1", "content-1", "yum", "label-1", "vendor");
+        Content content2 = new Content("c2", "content-2", "yum", "label-2", "vendor");
+
+        Product product = new Product("p1", "product-1", 4L);
+        product.setAttribute("arch", "x86_64");
+        product.setAttribute("version", "1.0");
+        product.addDependentProductId("p2");
+        product.addContent(content1, true);
+        product.addContent(content2, false);
+        product.addBranding(new Branding(product, "eng_prod_1", "brand_1", "OS"));
+        product.addBranding(new Branding(product, "eng_prod_2", "brand_2", "OS"));
+
+        Map<String, String> attributes = new HashMap<>();
+        attributes.put("arch", "x86_64");
+        attributes.put("version", "1.0");
+
+        int version = ProductEntityVersionUpgradeTask.calculateEntityVersion("p1", "product-1", 4L,
+            attributes, Collections.singletonList("p2"),
+            Arrays.asList(
+                ProductEntityVersionUpgradeTask.calculateContentVersion(content1.getEntityVersion(), true),
+                ProductEntityVersionUpgradeTask.calculateContentVersion(content2.getEntityVersion(), false)),
+            Arrays.asList(
+                ProductEntityVersionUpgradeTask.calculateBrandingVersion("brand_1", "eng_prod_1", "OS"),
+                ProductEntityVersionUpgradeTask.calculateBrandingVersion("brand_2", "eng_prod_2", "OS")));
+
+        assertEquals(product.getEntityVersion(), version);
+    }
+
+    @Test
+    public void testCalculatedVersionMatchesMinimalProductVersion() {
+        Product product = new Product("p1", "product-1");
+        product.addBranding(new Branding(product, "eng_prod_1", "brand_1", "OS"));
+
+        int version = ProductEntityVersionUpgradeTask.calculateEntityVersion("p1", "product-1", null,
+            new HashMap<>(), Collections.emptyList(), Collections.emptyList(),
+            Collections.singletonList(
+                ProductEntityVersionUpgradeTask.calculateBrandingVersion("brand_1", "eng_prod_1", "OS")));
+
+        assertEquals(product.getEntityVersion(), version);
+    }
+}
@@ -923,6 +923,32 @@ public class ConsumerCuratorTest extends DatabaseTestFixture {
         assertTrue(consumer.getLastCheckin().getTime() > date.getTime());
     }
 
+    @Test
+    public void updateLastCheckinsOfMultipleConsumers() {
+        Consumer consumer1 = consumerCurator.create(new Consumer("consumer1", "testUser", owner, ct));
+        Consumer consumer2 = consumerCurator.create(new Consumer("consumer2", "testUser", owner, ct));
+        Consumer consumer3 = consumerCurator.create(new Consumer("consumer3", "testUser", owner, ct));
+        Date date3 = consumer3.getLastCheckin();
+
+        Date date1 = ResourceDateParser.parseDateString("2011-09-26T18:10:50.184081+00:00");
+        Date date2 = ResourceDateParser.parseDateString("2012-09-26T18:10:50.184081+00:00");
+
+        Map<String, Date> checkins = new HashMap<>();
+        checkins.put(consumer1.getId(), date1);
+        checkins.put(consumer2.getId(), date2);
+        checkins.put("unknown-consumer", date2);
+
+        assertEquals(2, consumerCurator.updateLastCheckins(checkins));
+
+        consumerCurator.refresh(consumer1);
+        consumerCurator.refresh(consumer2);
+        consumerCurator.refresh(consumer3);
+
+        assertEquals(date1.getTime(), consumer1.getLastCheckin().getTime());
+        assertEquals(date2.getTime(), consumer2.getLastCheckin().getTime());
+        assertEquals(date3, consumer3.getLastCheckin());
+    }
+
     @Test
     public void delete() {
         Consumer consumer = new Consumer("testConsumer", "testUser", owner, ct);
@@ -1403,6 +1429,48 @@ public class ConsumerCuratorTest extends DatabaseTestFixture {
         assertEquals(consumer2, hypervisorMap.get(hypervisorId2));
     }
 
+    @Test
+    public void testGetHostConsumersByHypervisorId() {
+        Consumer consumer1 = new Consumer("testConsumer1", "testUser", owner, ct);
+        HypervisorId hypervisorId1 = new HypervisorId("Hypervisor1");
+        hypervisorId1.setOwner(owner);
+        consumer1.setHypervisorId(hypervisorId1);
+        consumer1.setFact("fact", "value");
+        consumer1 = consumerCurator.create(consumer1);
+
+        Consumer consumer2 = new Consumer("testConsumer2", "testUser", owner, ct);
+        HypervisorId hypervisorId2 = new HypervisorId("hypervisor2");
+        hypervisorId2.setOwner(owner);
+        consumer2.setHypervisorId(hypervisorId2);
+        consumer2 = consumerCurator.create(consumer2);
+
+        Map<String, Consumer> hosts = consumerCurator.getHostConsumersByHypervisorId(owner.getId(),
+            Arrays.asList("HYPERVISOR1", "hypervisor2", "not really a hypervisor"));
+
+        assertEquals(2, hosts.size());
+        assertEquals(consumer1, hosts.get("hypervisor1"));
+        assertEquals(consumer2, hosts.get("hypervisor2"));
+        assertEquals("value", hosts.get("hypervisor1").getFact("fact"));
+    }
+
+    @Test
+    public void testGetConsumersBySystemUuid() {
+        Consumer consumer1 = new Consumer("testConsumer1", "testUser", owner, ct);
+        consumer1.setFact(Consumer.Facts.SYSTEM_UUID, "UUID1");
+        consumer1 = consumerCurator.create(consumer1);
+
+        Consumer consumer2 = new Consumer("testConsumer2", "testUser", owner, ct);
+        consumer2.setFact(Consumer.Facts.SYSTEM_UUID, "uuid2");
+        consumer2 = consumerCurator.create(consumer2);
+
+        Map<String, Consumer> consumers = consumerCurator.getConsumersBySystemUuid(owner.getId(),
+            Arrays.asList("uuid1", "UUID2", "uuid3"));
+
+        assertEquals(2, consumers.size());
+        assertEquals(consumer1, consumers.get("uuid1"));
+        assertEquals(consumer2, consumers.get("uuid2"));
+    }
+
     @Test
     public void testGetHypervisorsBulk() {
         String hypervisorid = "hypervisor";
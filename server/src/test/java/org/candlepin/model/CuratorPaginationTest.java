@@ -16,6 +16,7 @@ package org.candlepin.model;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.candlepin.common.paging.Page;
 import org.candlepin.common.paging.PageRequest;
@@ -24,6 +25,7 @@ import org.candlepin.test.DatabaseTestFixture;
 import org.hibernate.Criteria;
 import org.hibernate.Session;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.engine.spi.EntityKey;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -188,6 +190,51 @@ public class CuratorPaginationTest extends DatabaseTestFixture {
         assertEquals(pageRequest, pageRequest2);
     }
 
+    @Test
+    public void testPostFilteringEvictsResultsNotOnPage() {
+        session.flush();
+        session.clear();
+
+        // Owners already in the session belong to the caller and must not be evicted
+        Owner managed = ownerCurator.getByKey("0");
+
+        PageRequest pageRequest = new PageRequest();
+        pageRequest.setSortBy("key");
+        pageRequest.setOrder(PageRequest.Order.ASCENDING);
+        pageRequest.setPage(1);
+        pageRequest.setPerPage(2);
+
+        Criteria criteria = session.createCriteria(Owner.class);
+        Page<List<Owner>> p = ownerCurator.listByCriteria(criteria, pageRequest, batch -> {
+            List<Owner> kept = new ArrayList<>();
+            for (Owner owner : batch) {
+                if (Integer.parseInt(owner.getKey()) % 2 == 1) {
+                    kept.add(owner);
+                }
+            }
+
+            return kept;
+        });
+
+        assertEquals(Integer.valueOf(5), p.getMaxRecords());
+
+        List<Owner> ownerList = p.getPageData();
+        assertEquals(2, ownerList.size());
+        assertEquals("1", ownerList.get(0).getKey());
+        assertEquals("3", ownerList.get(1).getKey());
+
+        assertTrue(session.contains(managed));
+        for (Owner owner : ownerList) {
+            assertTrue(session.contains(owner));
+        }
+
+        long owners = session.getStatistics().getEntityKeys().stream()
+            .filter(key -> Owner.class.getName().equals(((EntityKey) key).getEntityName()))
+            .count();
+
+        assertEquals(3, owners);
+    }
+
     private List<Owner> createOwners(int owners) {
         List<Owner> ownerList = new ArrayList<>();
         for (int i = 0; i < owners; i++) {
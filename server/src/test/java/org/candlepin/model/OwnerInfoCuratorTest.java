@@ -15,11 +15,16 @@
 package org.candlepin.model;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.candlepin.auth.Principal;
 import org.candlepin.auth.UserPrincipal;
 import org.candlepin.auth.permissions.Permission;
 import org.candlepin.auth.permissions.UsernameConsumersPermission;
+import org.candlepin.config.ConfigProperties;
 import org.candlepin.policy.js.compliance.ComplianceStatus;
 import org.candlepin.test.DatabaseTestFixture;
 import org.candlepin.test.TestUtil;
@@ -28,6 +33,9 @@ import org.candlepin.util.Util;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -750,6 +758,116 @@ public class OwnerInfoCuratorTest extends DatabaseTestFixture {
         assertEquals(expectedEntitlementsConsumed, info.getEntitlementsConsumedByType());
     }
 
+    @Test
+    public void testOwnerInfoServedFromSummaryUntilMarkedStale() {
+        config.setProperty(ConfigProperties.OWNER_INFO_SUMMARY_ENABLED, "true");
+        OwnerInfoSummaryCurator summaryCurator = this.injector.getInstance(OwnerInfoSummaryCurator.class);
+
+        OwnerInfo info = ownerInfoCurator.getByOwner(owner);
+        assertEquals((Integer) 0, info.getConsumerCounts().get("system"));
+
+        OwnerInfoSummary summary = summaryCurator.get(owner.getId());
+        assertNotNull(summary);
+        assertFalse(summary.isStale());
+
+        ConsumerType type = consumerTypeCurator.getByLabel("system");
+        consumerCurator.create(new Consumer("test-consumer", "test-user", owner, type));
+
+        // The summary does not track consumer registration, so the stored counts are returned
+        info = ownerInfoCurator.getByOwner(owner);
+        assertEquals((Integer) 0, info.getConsumerCounts().get("system"));
+
+        assertEquals(1, summaryCurator.markStale(Collections.singleton(owner.getId())));
+        assertEquals(0, summaryCurator.markStale(Collections.singleton(owner.getId())));
+        summaryCurator.refresh(summary);
+
+        info = ownerInfoCurator.getByOwner(owner);
+        assertEquals((Integer) 1, info.getConsumerCounts().get("system"));
+    }
+
+    @Test
+    public void testOwnerInfoSummaryRecomputedOnceExpired() {
+        config.setProperty(ConfigProperties.OWNER_INFO_SUMMARY_ENABLED, "true");
+        config.setProperty(ConfigProperties.OWNER_INFO_SUMMARY_MAX_AGE, "0");
+
+        OwnerInfo info = ownerInfoCurator.getByOwner(owner);
+        assertEquals((Integer) 0, info.getConsumerCounts().get("system"));
+
+        ConsumerType type = consumerTypeCurator.getByLabel("system");
+        consumerCurator.create(new Consumer("test-consumer", "test-user", owner, type));
+
+        info = ownerInfoCurator.getByOwner(owner);
+        assertEquals((Integer) 1, info.getConsumerCounts().get("system"));
+    }
+
+    @Test
+    public void testOwnerInfoSummaryNotUsedForRestrictedPrincipals() {
+        config.setProperty(ConfigProperties.OWNER_INFO_SUMMARY_ENABLED, "true");
+        OwnerInfoSummaryCurator summaryCurator = this.injector.getInstance(OwnerInfoSummaryCurator.class);
+
+        setupOnlyMyConsumersPrincipal();
+        ownerInfoCurator.getByOwner(owner);
+
+        assertNull(summaryCurator.get(owner.getId()));
+    }
+
+    @Test
+    public void testOwnerInfoSummaryPreservesCounts() {
+        pool1.setAttribute(Pool.Attributes.PRODUCT_FAMILY, "test family");
+        poolCurator.merge(pool1);
+
+        ConsumerType type = consumerTypeCurator.getByLabel("system");
+        Consumer consumer = consumerCurator.create(new Consumer("test-consumer", "test-user", owner, type));
+        consumer.setEntitlementStatus(ComplianceStatus.GREEN);
+        consumerCurator.merge(consumer);
+
+        Entitlement entitlement = createEntitlement(owner, consumer, pool1,
+            createEntitlementCertificate("entkey", "ecert"));
+        entitlement.setQuantity(2);
+        entitlementCurator.create(entitlement);
+
+        OwnerInfo expected = ownerInfoCurator.getByOwner(owner);
+        OwnerInfo stored = new OwnerInfoSummary(owner.getId())
+            .setOwnerInfo(expected)
+            .getOwnerInfo();
+
+        assertEquals(expected.getConsumerCounts(), stored.getConsumerCounts());
+        assertEquals(expected.getConsumerGuestCounts(), stored.getConsumerGuestCounts());
+        assertEquals(expected.getEntitlementsConsumedByType(), stored.getEntitlementsConsumedByType());
+        assertEquals(expected.getConsumerTypeCountByPool(), stored.getConsumerTypeCountByPool());
+        assertEquals(expected.getEnabledConsumerTypeCountByPool(),
+            stored.getEnabledConsumerTypeCountByPool());
+        assertEquals(expected.getConsumerCountsByComplianceStatus(),
+            stored.getConsumerCountsByComplianceStatus());
+        assertEquals(expected.getEntitlementsConsumedByFamily(), stored.getEntitlementsConsumedByFamily());
+        assertEquals(new OwnerInfo.ConsumptionTypeCounts(2, 0),
+            stored.getEntitlementsConsumedByFamily().get("test family"));
+    }
+
+    @Test
+    public void testStoreOwnerInfoKeepsConcurrentlyStoredSummary() {
+        OwnerInfoSummaryCurator summaryCurator = this.injector.getInstance(OwnerInfoSummaryCurator.class);
+        OwnerInfo info = ownerInfoCurator.getByOwner(owner);
+        assertTrue(summaryCurator.storeOwnerInfo(owner.getId(), info, new Date()));
+
+        // Simulate a request which checked for the summary before another request stored it
+        OwnerInfoSummaryCurator racingCurator = new OwnerInfoSummaryCurator() {
+            @Override
+            public OwnerInfoSummary get(Serializable id) {
+                return null;
+            }
+        };
+        this.injectMembers(racingCurator);
+
+        assertFalse(racingCurator.storeOwnerInfo(owner.getId(), new OwnerInfo(), new Date()));
+
+        // The transaction remains usable and the existing summary is kept
+        OwnerInfoSummary summary = summaryCurator.get(owner.getId());
+        assertNotNull(summary);
+        assertEquals((Integer) 0, summary.getOwnerInfo().getConsumerCounts().get("system"));
+        assertNotNull(ownerCurator.get(owner.getId()));
+    }
+
     private void setupConsumerCountTest(String username) {
         ConsumerType systemType = consumerTypeCurator.getByLabel("system");
         Consumer consumer1 = new Consumer("test-consumer1", username, owner, systemType);
@@ -0,0 +1,188 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.candlepin.test.TestUtil;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+
+
+/**
+ * PoolIndexTest
+ */
+public class PoolIndexTest {
+
+    private PoolIndex index;
+    private Owner owner;
+    private Map<String, Set<String>> provided;
+    private int fetches;
+    private Function<Collection<Pool>, Map<String, Set<String>>> fetcher;
+
+    @BeforeEach
+    public void setUp() {
+        this.index = new PoolIndex();
+        this.owner = TestUtil.createOwner("test_owner");
+        this.provided = new HashMap<>();
+        this.fetches = 0;
+
+        this.fetcher = pools -> {
+            this.fetches += pools.size();
+
+            Map<String, Set<String>> output = new HashMap<>();
+            for (Pool pool : pools) {
+                if (this.provided.containsKey(pool.getId())) {
+                    output.put(pool.getId(), new HashSet<>(this.provided.get(pool.getId())));
+                }
+            }
+
+            return output;
+        };
+    }
+
+    private Pool createPool(String id, String productId, String... providedIds) {
+        Product product = TestUtil.createProduct(productId);
+        product.setUuid(productId + "-uuid");
+
+        Pool pool = TestUtil.createPool(this.owner, product);
+        pool.setId(id);
+        pool.setUpdated(new Date(1000));
+        this.provided.put(id, new HashSet<>(Arrays.asList(providedIds)));
+
+        return pool;
+    }
+
+    private List<Pool> select(List<Pool> pools, Collection<String> productIds, Collection<String> stackIds,
+        Collection<String> addons, String role) {
+
+        return this.index.select(this.owner.getId(), pools, this.fetcher, productIds, stackIds, addons,
+            role);
+    }
+
+    @Test
+    public void testSelectByProductAndProvidedProduct() {
+        Pool pool1 = this.createPool("pool1", "sku1", "prov1");
+        Pool pool2 = this.createPool("pool2", "sku2", "prov2");
+        Pool pool3 = this.createPool("pool3", "sku3");
+        List<Pool> pools = Arrays.asList(pool1, pool2, pool3);
+
+        assertEquals(Arrays.asList(pool1, pool3),
+            this.select(pools, Arrays.asList("prov1", "sku3"), null, null, null));
+        assertEquals(Collections.singletonList(pool2),
+            this.select(pools, Collections.singletonList("sku2"), null, null, null));
+    }
+
+    @Test
+    public void testSelectByStackAddOnAndRole() {
+        Pool stacked = this.createPool("pool1", "sku1");
+        stacked.getProduct().setAttribute(Product.Attributes.STACKING_ID, "stack1");
+        Pool addon = this.createPool("pool2", "sku2");
+        addon.getProduct().setAttribute(Product.Attributes.ADDONS, " Addon1 , addon2");
+        Pool role = this.createPool("pool3", "sku3");
+        role.getProduct().setAttribute(Product.Attributes.ROLES, "Role1,role2");
+        List<Pool> pools = Arrays.asList(stacked, addon, role);
+
+        assertEquals(Collections.singletonList(stacked),
+            this.select(pools, null, Collections.singleton("stack1"), null, null));
+        assertEquals(Collections.singletonList(addon),
+            this.select(pools, null, null, Collections.singleton(" ADDON1 "), null));
+        assertEquals(Collections.singletonList(role), this.select(pools, null, null, null, "ROLE1"));
+        assertEquals(Collections.emptyList(), this.select(pools, null, null, null, "role3"));
+    }
+
+    @Test
+    public void testProvidedProductsFetchedOnlyForStalePools() {
+        Pool pool1 = this.createPool("pool1", "sku1", "prov1");
+        Pool pool2 = this.createPool("pool2", "sku2", "prov2");
+        List<Pool> pools = Arrays.asList(pool1, pool2);
+
+        this.select(pools, Collections.singleton("prov1"), null, null, null);
+        assertEquals(2, this.fetches);
+
+        this.select(pools, Collections.singleton("prov2"), null, null, null);
+        assertEquals(2, this.fetches);
+
+        // Updating the pool changes its stamp, forcing it to be re-indexed
+        pool2.setUpdated(new Date(2000));
+        this.provided.put("pool2", Collections.singleton("prov3"));
+
+        assertEquals(Collections.singletonList(pool2),
+            this.select(pools, Collections.singleton("prov3"), null, null, null));
+        assertEquals(3, this.fetches);
+        assertEquals(Collections.emptyList(), this.select(pools, Collections.singleton("prov2"), null,
+            null, null));
+    }
+
+    @Test
+    public void testInvalidateForcesReindex() {
+        Pool pool1 = this.createPool("pool1", "sku1", "prov1");
+        List<Pool> pools = Collections.singletonList(pool1);
+
+        this.select(pools, Collections.singleton("prov1"), null, null, null);
+        long version = this.index.getVersion(this.owner.getId());
+
+        this.provided.put("pool1", Collections.singleton("prov2"));
+        this.index.invalidate(pool1);
+        assertTrue(this.index.getVersion(this.owner.getId()) > version);
+
+        assertEquals(pools, this.select(pools, Collections.singleton("prov2"), null, null, null));
+        assertEquals(2, this.fetches);
+    }
+
+    @Test
+    public void testRemovedPoolsAreNotSelected() {
+        Pool pool1 = this.createPool("pool1", "sku1");
+        Pool pool2 = this.createPool("pool2", "sku1");
+
+        this.select(Arrays.asList(pool1, pool2), Collections.singleton("sku1"), null, null, null);
+        this.index.remove(pool1);
+
+        Pool pool3 = this.createPool("pool3", "sku1");
+        assertEquals(Arrays.asList(pool2, pool3),
+            this.select(Arrays.asList(pool2, pool3), Collections.singleton("sku1"), null, null, null));
+    }
+
+    @Test
+    public void testInvalidateOwnerDropsIndex() {
+        Pool pool1 = this.createPool("pool1", "sku1");
+        List<Pool> pools = Collections.singletonList(pool1);
+
+        this.select(pools, Collections.singleton("sku1"), null, null, null);
+        this.index.invalidate(pool1);
+        assertTrue(this.index.getVersion(this.owner.getId()) > 0);
+
+        this.index.invalidateOwner(this.owner.getId());
+        assertEquals(0, this.index.getVersion(this.owner.getId()));
+
+        // The pools are indexed again when next considered
+        assertEquals(pools, this.select(pools, Collections.singleton("sku1"), null, null, null));
+        assertEquals(2, this.fetches);
+    }
+}
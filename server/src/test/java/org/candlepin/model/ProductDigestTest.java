@@ -0,0 +1,152 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+
+
+/**
+ * ProductDigestTest
+ */
+public class ProductDigestTest {
+
+    private Product buildProduct(Content... content) {
+        Product product = new Product("p1", "prod1", 2L);
+        product.setAttribute("a1", "v1");
+        product.setAttribute("a2", "v2");
+        product.addDependentProductId("dp1");
+        product.addDependentProductId("dp2");
+        product.addBranding(new Branding(null, "eng_prod_id_1", "brand_name_1", "OS"));
+
+        for (int i = 0; i < content.length; ++i) {
+            product.addContent(content[i], i % 2 == 0);
+        }
+
+        return product;
+    }
+
+    @Test
+    public void testDigestIsHexEncodedSha256() {
+        String digest = ProductDigest.calculate(this.buildProduct());
+
+        assertNotNull(digest);
+        assertEquals(64, digest.length());
+    }
+
+    @Test
+    public void testDigestIsStable() {
+        Content content = new Content("c1", "content-1", "test_type", "test_label-1", "test_vendor-1");
+
+        assertEquals(ProductDigest.calculate(this.buildProduct(content)),
+            ProductDigest.calculate(this.buildProduct(content)));
+    }
+
+    @Test
+    public void testDigestIgnoresOrderOfProductContent() {
+        Content content1 = new Content("c1", "content-1", "test_type", "test_label-1", "test_vendor-1");
+        Content content2 = new Content("c2", "content-2", "test_type", "test_label-2", "test_vendor-2");
+
+        Product product1 = new Product("p1", "prod1");
+        product1.addContent(content1, true);
+        product1.addContent(content2, false);
+
+        Product product2 = new Product("p1", "prod1");
+        product2.addContent(content2, false);
+        product2.addContent(content1, true);
+
+        assertEquals(ProductDigest.calculate(product1), ProductDigest.calculate(product2));
+    }
+
+    @Test
+    public void testDigestNormalizesMultiplier() {
+        Product product1 = new Product("p1", "prod1");
+        Product product2 = new Product("p1", "prod1", 1L);
+        Product product3 = new Product("p1", "prod1");
+        product3.setMultiplier(-5L);
+
+        assertEquals(ProductDigest.calculate(product1), ProductDigest.calculate(product2));
+        assertEquals(ProductDigest.calculate(product1), ProductDigest.calculate(product3));
+    }
+
+    @Test
+    public void testDigestChangesWithProductData() {
+        String digest = ProductDigest.calculate(this.buildProduct());
+
+        Product product = this.buildProduct();
+        product.setName("prod1-updated");
+        assertNotEquals(digest, ProductDigest.calculate(product));
+
+        product = this.buildProduct();
+        product.setMultiplier(3L);
+        assertNotEquals(digest, ProductDigest.calculate(product));
+
+        product = this.buildProduct();
+        product.setAttribute("a2", "v3");
+        assertNotEquals(digest, ProductDigest.calculate(product));
+
+        product = this.buildProduct();
+        product.addDependentProductId("dp3");
+        assertNotEquals(digest, ProductDigest.calculate(product));
+
+        product = this.buildProduct();
+        product.addBranding(new Branding(null, "eng_prod_id_2", "brand_name_2", "OS"));
+        assertNotEquals(digest, ProductDigest.calculate(product));
+    }
+
+    @Test
+    public void testDigestChangesWithContentData() {
+        Content content = new Content("c1", "content-1", "test_type", "test_label-1", "test_vendor-1");
+        String digest = ProductDigest.calculate(this.buildProduct(content));
+
+        Content updated = content.clone();
+        updated.setContentUrl("http://example.com/c1");
+
+        assertNotEquals(digest, ProductDigest.calculate(this.buildProduct(updated)));
+
+        Product product = new Product("p1", "prod1", 2L);
+        product.addContent(content, false);
+        assertNotEquals(ProductDigest.calculate(this.buildProduct(content)),
+            ProductDigest.calculate(product));
+    }
+
+    @Test
+    public void testDigestResolvesContentFromContentMap() {
+        Content content = new Content("c1", "content-1", "test_type", "test_label-1", "test_vendor-1");
+        Content updated = content.clone();
+        updated.setArches("x86_64");
+
+        Map<String, Content> contentMap = new HashMap<>();
+        contentMap.put(updated.getId(), updated);
+
+        assertEquals(ProductDigest.calculate(this.buildProduct(updated)),
+            ProductDigest.calculate(this.buildProduct(content), contentMap));
+    }
+
+    @Test
+    public void testDigestIsNullForUnresolvableContent() {
+        Content content = new Content("c1", "content-1", "test_type", "test_label-1", "test_vendor-1");
+
+        assertNull(ProductDigest.calculate(this.buildProduct(content), new HashMap<>()));
+    }
+}
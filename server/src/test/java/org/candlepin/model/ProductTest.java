@@ -204,6 +204,17 @@ public class ProductTest {
         assertNotEquals(lhs.getEntityVersion(), rhs.getEntityVersion());
     }
 
+    @Test
+    public void testEntityVersionIgnoresProductUuid() {
+        Product lhs = new Product("p1", "product-1");
+        lhs.addBranding(new Branding(lhs, "eng_prod_id", "brand_name", "OS"));
+
+        Product rhs = (Product) lhs.clone();
+        rhs.setUuid("p1_uuid");
+
+        assertEquals(lhs.getEntityVersion(), rhs.getEntityVersion());
+    }
+
     @ParameterizedTest
     @MethodSource("getValuesForEqualityAndReplication")
     public void testClone(String valueName, Object value1, Object value2) throws Exception {
@@ -0,0 +1,177 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pki;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+
+/**
+ * Test suite for the KeyPairPool class
+ */
+public class KeyPairPoolTest {
+
+    private PKIUtility pki;
+    private KeyPairPool pool;
+
+    @BeforeEach
+    public void init() throws Exception {
+        this.pki = mock(PKIUtility.class);
+        doAnswer(iom -> new KeyPair(mock(PublicKey.class), mock(PrivateKey.class)))
+            .when(this.pki).generateNewKeyPair();
+    }
+
+    @AfterEach
+    public void cleanup() {
+        if (this.pool != null) {
+            this.pool.shutdown();
+        }
+    }
+
+    private void waitForDepth(int depth) throws InterruptedException {
+        for (int i = 0; i < 500 && this.pool.getDepth() < depth; ++i) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(depth, this.pool.getDepth());
+    }
+
+    @Test
+    public void testGeneratesInlineUntilStarted() throws Exception {
+        this.pool = new KeyPairPool(this.pki, 5, 1);
+
+        KeyPair pair = this.pool.take();
+
+        assertNotNull(pair);
+        assertEquals(0, this.pool.getDepth());
+        assertEquals(0, this.pool.getHits());
+        assertEquals(1, this.pool.getMisses());
+        verify(this.pki, times(1)).generateNewKeyPair();
+    }
+
+    @Test
+    public void testFillsToCapacity() throws Exception {
+        this.pool = new KeyPairPool(this.pki, 3, 2);
+        this.pool.start();
+
+        this.waitForDepth(3);
+        assertTrue(this.pool.getGeneratedCount() >= 3);
+        assertTrue(this.pool.getRefillRate() > 0);
+    }
+
+    @Test
+    public void testServesPairsFromPoolOnce() throws Exception {
+        this.pool = new KeyPairPool(this.pki, 4, 1);
+        this.pool.start();
+        this.waitForDepth(4);
+
+        Set<KeyPair> pairs = new HashSet<>();
+        for (int i = 0; i < 4; ++i) {
+            pairs.add(this.pool.take());
+        }
+
+        assertEquals(4, pairs.size());
+        assertEquals(4, this.pool.getHits());
+        assertEquals(0, this.pool.getMisses());
+    }
+
+    @Test
+    public void testShutdownDiscardsPairs() throws Exception {
+        this.pool = new KeyPairPool(this.pki, 2, 1);
+        this.pool.start();
+        this.waitForDepth(2);
+
+        this.pool.shutdown();
+        assertEquals(0, this.pool.getDepth());
+
+        KeyPair first = this.pool.take();
+        KeyPair second = this.pool.take();
+
+        assertNotSame(first, second);
+        assertEquals(2, this.pool.getMisses());
+    }
+
+    @Test
+    public void testDisabledPoolDoesNotGenerateInBackground() throws Exception {
+        this.pool = new KeyPairPool(this.pki, 0, 2);
+        assertFalse(this.pool.isEnabled());
+
+        this.pool.start();
+        Thread.sleep(50);
+
+        assertEquals(0, this.pool.getDepth());
+        assertEquals(0, this.pool.getGeneratedCount());
+        verify(this.pki, never()).generateNewKeyPair();
+    }
+
+    @Test
+    public void testFailedGenerationFallsBackToInline() throws Exception {
+        KeyPair inline = new KeyPair(mock(PublicKey.class), mock(PrivateKey.class));
+        PKIUtility failing = mock(PKIUtility.class);
+        doAnswer(iom -> {
+            if (Thread.currentThread().getName().startsWith("key-pair-pool")) {
+                throw new IllegalStateException("generation failure");
+            }
+
+            return inline;
+        }).when(failing).generateNewKeyPair();
+
+        this.pool = new KeyPairPool(failing, 2, 1);
+        this.pool.start();
+
+        assertSame(inline, this.pool.take());
+        assertEquals(0, this.pool.getGeneratedCount());
+    }
+
+    @Test
+    public void testRecoversFromFailedGeneration() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        PKIUtility flaky = mock(PKIUtility.class);
+        doAnswer(iom -> {
+            if (calls.getAndIncrement() == 0) {
+                throw new IllegalStateException("generation failure");
+            }
+
+            return new KeyPair(mock(PublicKey.class), mock(PrivateKey.class));
+        }).when(flaky).generateNewKeyPair();
+
+        this.pool = new KeyPairPool(flaky, 2, 1);
+        this.pool.start();
+
+        this.waitForDepth(2);
+        assertEquals(2, this.pool.getGeneratedCount());
+    }
+}
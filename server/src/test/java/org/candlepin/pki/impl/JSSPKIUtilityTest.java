@@ -61,6 +61,7 @@ import org.mozilla.jss.netscape.security.x509.KeyIdentifier;
 import org.mozilla.jss.netscape.security.x509.PKIXExtensions;
 import org.mozilla.jss.netscape.security.x509.X500Name;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -69,6 +70,7 @@ import java.math.BigInteger;
 import java.security.KeyFactory;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
 import java.security.PublicKey;
 import java.security.cert.CRLReason;
 import java.security.cert.CertificateFactory;
@@ -348,4 +350,16 @@ public class JSSPKIUtilityTest {
 
         assertArrayEquals(expectedKeyIdentifier, actualKeyIdentifier);
     }
+
+    @Test
+    public void testVerifySHA256DigestAgainstCACerts() throws Exception {
+        byte[] data = "signed manifest contents".getBytes(Charsets.UTF_8);
+        byte[] signature = jssUtil.getSHA256WithRSAHash(new ByteArrayInputStream(data));
+
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+        assertTrue(jssUtil.verifySHA256DigestAgainstCACerts(digest, signature));
+
+        digest[0] ^= 1;
+        assertFalse(jssUtil.verifySHA256DigestAgainstCACerts(digest, signature));
+    }
 }
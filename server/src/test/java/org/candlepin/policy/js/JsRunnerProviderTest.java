@@ -100,4 +100,43 @@ public class JsRunnerProviderTest {
         verify(rulesCurator, times(3)).getUpdated();
     }
 
+    @Test
+    public void namespacesArePreInitialized() {
+        when(rules.getRules()).thenReturn("function test_name_space() { return Test; }\n" +
+            "var Test = { echo: function() { return 'ok'; } };");
+        provider.compileRules(true);
+        when(cacheProvider.get()).thenReturn(new JsRunnerRequestCache());
+
+        JsRunner runner = provider.get();
+        runner.init("test_name_space");
+        Assert.assertEquals("ok", runner.invokeRule("echo"));
+
+        provider.get().init("test_name_space");
+        Assert.assertEquals(2, provider.getNamespaceHits());
+        Assert.assertEquals(0, provider.getNamespaceMisses());
+    }
+
+    @Test
+    public void rulesChangeSwapsRuntime() {
+        when(rules.getRules()).thenReturn("function test_name_space() { return Test; }\n" +
+            "var Test = { echo: function() { return 'v1'; } };");
+        provider.compileRules(true);
+        when(cacheProvider.get()).thenReturn(new JsRunnerRequestCache());
+
+        JsRunner oldRunner = provider.get();
+        oldRunner.init("test_name_space");
+
+        Date time2 = new Date(time1.getTime() + 1000);
+        when(rulesCurator.getUpdated()).thenReturn(time2);
+        when(rules.getRules()).thenReturn("function test_name_space() { return Test; }\n" +
+            "var Test = { echo: function() { return 'v2'; } };");
+        when(cacheProvider.get()).thenReturn(new JsRunnerRequestCache());
+
+        JsRunner newRunner = provider.get();
+        newRunner.init("test_name_space");
+
+        Assert.assertEquals("v1", oldRunner.invokeRule("echo"));
+        Assert.assertEquals("v2", newRunner.invokeRule("echo"));
+        Assert.assertEquals(3, provider.getCompileCount());
+    }
 }
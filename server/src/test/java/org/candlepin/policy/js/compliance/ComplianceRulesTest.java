@@ -27,6 +27,9 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import org.candlepin.audit.EventSink;
+import org.candlepin.cache.ComplianceStatusCache;
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.CandlepinCommonTestConfig;
 import org.candlepin.dto.ModelTranslator;
 import org.candlepin.dto.StandardTranslator;
 import org.candlepin.jackson.ProductCachedSerializationModule;
@@ -105,6 +108,7 @@ public class ComplianceRulesTest {
     @Mock private EnvironmentCurator environmentCurator;
 
     private ModelTranslator translator;
+    private Configuration config;
     private I18n i18n;
     private JsRunnerProvider provider;
     private Consumer consumer;
@@ -115,6 +119,7 @@ public class ComplianceRulesTest {
     public void setUp() {
         MockitoAnnotations.initMocks(this);
         translator = new StandardTranslator(consumerTypeCurator, environmentCurator, mockOwnerCurator);
+        config = new CandlepinCommonTestConfig();
 
         Locale locale = new Locale("en_US");
         i18n = I18nFactory.getI18n(getClass(), "org.candlepin.i18n.Messages", locale, I18nFactory.FALLBACK);
@@ -127,7 +132,8 @@ public class ComplianceRulesTest {
         provider = new JsRunnerProvider(rulesCuratorMock, cacheProvider);
         compliance = new ComplianceRules(provider.get(), entCurator, new StatusReasonMessageGenerator(i18n),
             eventSink, consumerCurator, consumerTypeCurator,
-            new RulesObjectMapper(new ProductCachedSerializationModule(productCurator)), translator);
+            new RulesObjectMapper(new ProductCachedSerializationModule(productCurator)), translator, config,
+            new ComplianceStatusCache(0));
 
         owner = new Owner("test");
         owner.setId(TestUtil.randomString());
@@ -151,7 +157,8 @@ public class ComplianceRulesTest {
         JsRunner mockRunner = mock(JsRunner.class);
         compliance = new ComplianceRules(mockRunner, entCurator, new StatusReasonMessageGenerator(i18n),
             eventSink, consumerCurator, consumerTypeCurator,
-            new RulesObjectMapper(new ProductCachedSerializationModule(productCurator)), translator);
+            new RulesObjectMapper(new ProductCachedSerializationModule(productCurator)), translator, config,
+            new ComplianceStatusCache(0));
 
         when(mockRunner.runJsFunction(any(Class.class), eq("get_status"),
             any(JsContext.class))).thenReturn("{\"unknown\": \"thing\"}");
@@ -161,6 +168,116 @@ public class ComplianceRulesTest {
         compliance.getStatus(c, TestUtil.createDate(2011, 8, 30));
     }
 
+    private ComplianceRules buildCachingComplianceRules(ComplianceStatusCache statusCache) {
+        return new ComplianceRules(provider.get(), entCurator, new StatusReasonMessageGenerator(i18n),
+            eventSink, consumerCurator, consumerTypeCurator,
+            new RulesObjectMapper(new ProductCachedSerializationModule(productCurator)), translator, config,
+            statusCache);
+    }
+
+    @Test
+    public void unchangedConsumerReusesCachedResult() {
+        ComplianceStatusCache statusCache = new ComplianceStatusCache(10);
+        ComplianceRules rules = this.buildCachingComplianceRules(statusCache);
+
+        Consumer c = mockConsumer(PRODUCT_1, PRODUCT_2);
+        c.setUuid("test-consumer");
+        mockEntCurator(c, Arrays.asList(mockEntitlement(c, TestUtil.createProduct("Awesome Product"),
+            PRODUCT_1)));
+
+        Date date = TestUtil.createDate(2011, 8, 30);
+        ComplianceStatus first = rules.getStatus(c, date);
+        ComplianceStatus second = rules.getStatus(c, new Date(date.getTime() + 1000));
+
+        assertEquals(1, statusCache.getMisses());
+        assertEquals(1, statusCache.getHits());
+        assertEquals(first.getStatus(), second.getStatus());
+        assertEquals(first.getNonCompliantProducts(), second.getNonCompliantProducts());
+        assertEquals(first.getCompliantProducts().keySet(), second.getCompliantProducts().keySet());
+        assertEquals(new Date(date.getTime() + 1000), second.getDate());
+    }
+
+    @Test
+    public void changedConsumerDoesNotReuseCachedResult() {
+        ComplianceStatusCache statusCache = new ComplianceStatusCache(10);
+        ComplianceRules rules = this.buildCachingComplianceRules(statusCache);
+
+        Consumer c = mockConsumer(PRODUCT_1, PRODUCT_2);
+        c.setUuid("test-consumer");
+        List<Entitlement> ents = new LinkedList<>();
+        ents.add(mockEntitlement(c, TestUtil.createProduct("Awesome Product"), PRODUCT_1));
+        mockEntCurator(c, ents);
+
+        Date date = TestUtil.createDate(2011, 8, 30);
+        ComplianceStatus status = rules.getStatus(c, date);
+        assertEquals(1, status.getNonCompliantProducts().size());
+
+        ents.add(mockEntitlement(c, TestUtil.createProduct("Another Product"), PRODUCT_2));
+        mockEntCurator(c, ents);
+        status = rules.getStatus(c, date);
+        assertEquals(0, status.getNonCompliantProducts().size());
+
+        c.setFact("cpu.cpu_socket(s)", "16");
+        rules.getStatus(c, date);
+
+        assertEquals(3, statusCache.getMisses());
+        assertEquals(0, statusCache.getHits());
+    }
+
+    @Test
+    public void cachedResultNotReusedAcrossDateBuckets() {
+        ComplianceStatusCache statusCache = new ComplianceStatusCache(10);
+        ComplianceRules rules = this.buildCachingComplianceRules(statusCache);
+
+        Consumer c = mockFullyEntitledConsumer();
+        c.setUuid("test-consumer");
+
+        Date date = TestUtil.createDate(2011, 8, 30);
+        rules.getStatus(c, date);
+        rules.getStatus(c, new Date(date.getTime() + 2 * 60 * 60 * 1000));
+
+        assertEquals(2, statusCache.getMisses());
+        assertEquals(0, statusCache.getHits());
+    }
+
+    @Test
+    public void cachedDateRangesNotReusedForDifferentDate() {
+        ComplianceStatusCache statusCache = new ComplianceStatusCache(10);
+        ComplianceRules rules = this.buildCachingComplianceRules(statusCache);
+
+        Consumer c = mockFullyEntitledConsumer();
+        c.setUuid("test-consumer");
+
+        Date date = TestUtil.createDate(2011, 8, 30);
+        rules.getStatus(c, null, date, false, false, true, false);
+        rules.getStatus(c, null, new Date(date.getTime() + 1000), false, false, true, false);
+        rules.getStatus(c, null, new Date(date.getTime() + 1000), false, false, true, false);
+
+        // The date ranges start at the date of the calculation, so only the same date may be reused
+        assertEquals(2, statusCache.getMisses());
+        assertEquals(1, statusCache.getHits());
+    }
+
+    @Test
+    public void unknownRulesVersionIsNotCached() {
+        ComplianceStatusCache statusCache = new ComplianceStatusCache(10);
+        JsRunner mockRunner = mock(JsRunner.class);
+        compliance = new ComplianceRules(mockRunner, entCurator, new StatusReasonMessageGenerator(i18n),
+            eventSink, consumerCurator, consumerTypeCurator,
+            new RulesObjectMapper(new ProductCachedSerializationModule(productCurator)), translator, config,
+            statusCache);
+
+        when(mockRunner.runJsFunction(any(Class.class), eq("get_status"),
+            any(JsContext.class))).thenReturn("{}");
+        Consumer c = mockConsumerWithTwoProductsAndNoEntitlements();
+
+        compliance.getStatus(c, TestUtil.createDate(2011, 8, 30));
+        compliance.getStatus(c, TestUtil.createDate(2011, 8, 30));
+
+        assertEquals(0, statusCache.size());
+        assertEquals(0, statusCache.getMisses());
+    }
+
     private Consumer mockConsumer(Product ... installedProducts) {
         ConsumerType ctype = new ConsumerType(ConsumerType.ConsumerTypeEnum.SYSTEM);
         ctype.setId("test-ctype-" + TestUtil.randomInt());
@@ -0,0 +1,333 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.compliance;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+import org.candlepin.audit.EventSink;
+import org.candlepin.cache.ComplianceStatusCache;
+import org.candlepin.config.CandlepinCommonTestConfig;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.dto.ModelTranslator;
+import org.candlepin.dto.StandardTranslator;
+import org.candlepin.jackson.ProductCachedSerializationModule;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerCurator;
+import org.candlepin.model.ConsumerInstalledProduct;
+import org.candlepin.model.ConsumerType;
+import org.candlepin.model.ConsumerTypeCurator;
+import org.candlepin.model.Entitlement;
+import org.candlepin.model.EntitlementCurator;
+import org.candlepin.model.EnvironmentCurator;
+import org.candlepin.model.GuestId;
+import org.candlepin.model.Owner;
+import org.candlepin.model.OwnerCurator;
+import org.candlepin.model.Pool;
+import org.candlepin.model.Product;
+import org.candlepin.model.ProductCurator;
+import org.candlepin.model.Rules;
+import org.candlepin.model.RulesCurator;
+import org.candlepin.policy.js.JsRunnerProvider;
+import org.candlepin.policy.js.JsRunnerRequestCache;
+import org.candlepin.policy.js.RulesObjectMapper;
+import org.candlepin.util.DateRange;
+import org.candlepin.util.Util;
+
+import com.google.inject.Provider;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.xnap.commons.i18n.I18n;
+import org.xnap.commons.i18n.I18nFactory;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+
+
+/**
+ * Differential test verifying the native compliance engine produces the same results as the
+ * JavaScript rules for randomly generated consumers and entitlements.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class NativeComplianceEngineTest {
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    private static final String[] ARCHES = { "x86_64", "i386", "ppc64", "s390x", "ALL" };
+    private static final String[] STACKS = { "stack-1", "stack-2" };
+    private static final String[] COUNTS = { "0", "1", "2", "4", "8", "16" };
+
+    @Mock private ConsumerCurator consumerCurator;
+    @Mock private ConsumerTypeCurator consumerTypeCurator;
+    @Mock private OwnerCurator ownerCurator;
+    @Mock private EntitlementCurator entCurator;
+    @Mock private RulesCurator rulesCurator;
+    @Mock private EventSink eventSink;
+    @Mock private Provider<JsRunnerRequestCache> cacheProvider;
+    @Mock private JsRunnerRequestCache cache;
+    @Mock private ProductCurator productCurator;
+    @Mock private EnvironmentCurator environmentCurator;
+
+    private ComplianceRules jsCompliance;
+    private ComplianceRules nativeCompliance;
+    private Map<String, Set<Product>> providedProducts;
+    private Owner owner;
+    private Date now;
+
+    @BeforeEach
+    public void setUp() {
+        ModelTranslator translator = new StandardTranslator(this.consumerTypeCurator,
+            this.environmentCurator, this.ownerCurator);
+        I18n i18n = I18nFactory.getI18n(getClass(), "org.candlepin.i18n.Messages", new Locale("en_US"),
+            I18nFactory.FALLBACK);
+
+        InputStream is = this.getClass().getResourceAsStream(RulesCurator.DEFAULT_RULES_FILE);
+        Rules rules = new Rules(Util.readFile(is));
+        when(this.rulesCurator.getUpdated()).thenReturn(new Date());
+        when(this.rulesCurator.getRules()).thenReturn(rules);
+        when(this.cacheProvider.get()).thenReturn(this.cache);
+
+        this.providedProducts = new HashMap<>();
+        when(this.productCurator.getPoolProvidedProductsCached(anyString()))
+            .thenAnswer(invocation -> this.providedProducts.get((String) invocation.getArgument(0)));
+
+        RulesObjectMapper mapper = new RulesObjectMapper(
+            new ProductCachedSerializationModule(this.productCurator));
+        JsRunnerProvider provider = new JsRunnerProvider(this.rulesCurator, this.cacheProvider);
+
+        CandlepinCommonTestConfig jsConfig = new CandlepinCommonTestConfig();
+        jsConfig.setProperty(ConfigProperties.COMPLIANCE_ENGINE, ConfigProperties.COMPLIANCE_ENGINE_JS);
+        this.jsCompliance = new ComplianceRules(provider.get(), this.entCurator,
+            new StatusReasonMessageGenerator(i18n), this.eventSink, this.consumerCurator,
+            this.consumerTypeCurator, mapper, translator, jsConfig, new ComplianceStatusCache(0));
+
+        CandlepinCommonTestConfig nativeConfig = new CandlepinCommonTestConfig();
+        nativeConfig.setProperty(ConfigProperties.COMPLIANCE_ENGINE,
+            ConfigProperties.COMPLIANCE_ENGINE_NATIVE);
+        this.nativeCompliance = new ComplianceRules(provider.get(), this.entCurator,
+            new StatusReasonMessageGenerator(i18n), this.eventSink, this.consumerCurator,
+            this.consumerTypeCurator, mapper, translator, nativeConfig, new ComplianceStatusCache(0));
+
+        this.owner = new Owner("test_owner");
+        this.owner.setId("test_owner_id");
+        this.now = new Date();
+    }
+
+    public static Stream<Long> seeds() {
+        return LongStream.range(0, 250).boxed();
+    }
+
+    @ParameterizedTest
+    @MethodSource("seeds")
+    public void nativeEngineMatchesJavaScriptRules(long seed) {
+        Random rnd = new Random(seed);
+        Consumer consumer = this.buildConsumer(rnd);
+
+        ComplianceStatus expected = this.jsCompliance.getStatus(consumer, null, this.now, true, false,
+            true, false);
+        ComplianceStatus actual = this.nativeCompliance.getStatus(consumer, null, this.now, true, false,
+            true, false);
+
+        assertEquals(this.describe(expected), this.describe(actual), "seed: " + seed);
+
+        Set<String> stackIds = consumer.getEntitlements().stream()
+            .map(ent -> ent.getPool().getProduct().getAttributeValue(Product.Attributes.STACKING_ID))
+            .filter(stackId -> stackId != null)
+            .collect(Collectors.toSet());
+
+        List<Entitlement> ents = new ArrayList<>(consumer.getEntitlements());
+        for (String stackId : stackIds) {
+            assertEquals(this.jsCompliance.isStackCompliant(consumer, stackId, ents),
+                this.nativeCompliance.isStackCompliant(consumer, stackId, ents),
+                "seed: " + seed + ", stack: " + stackId);
+        }
+    }
+
+    private Consumer buildConsumer(Random rnd) {
+        ConsumerType ctype = new ConsumerType(ConsumerType.ConsumerTypeEnum.SYSTEM);
+        ctype.setId("test-ctype");
+
+        Consumer consumer = new Consumer("consumer", "user", this.owner, ctype);
+        consumer.setUuid("consumer-uuid");
+        when(this.consumerTypeCurator.getConsumerType(consumer)).thenReturn(ctype);
+        when(this.consumerTypeCurator.get(ctype.getId())).thenReturn(ctype);
+
+        boolean guest = rnd.nextBoolean();
+        consumer.setFact("virt.is_guest", guest ? "true" : "false");
+        this.maybeSetFact(rnd, consumer, "cpu.cpu_socket(s)", COUNTS[1 + rnd.nextInt(COUNTS.length - 1)]);
+        this.maybeSetFact(rnd, consumer, "cpu.core(s)_per_socket",
+            COUNTS[1 + rnd.nextInt(COUNTS.length - 1)]);
+        this.maybeSetFact(rnd, consumer, "memory.memtotal", String.valueOf(rnd.nextInt(32 * 1024 * 1024)));
+        this.maybeSetFact(rnd, consumer, "uname.machine", ARCHES[rnd.nextInt(ARCHES.length - 1)]);
+        this.maybeSetFact(rnd, consumer, "lscpu.socket(s)", COUNTS[1 + rnd.nextInt(COUNTS.length - 1)]);
+        this.maybeSetFact(rnd, consumer, "ceph_usage", String.valueOf(rnd.nextInt(512)));
+
+        for (int i = 0; i < 6; i++) {
+            if (rnd.nextBoolean()) {
+                consumer.addInstalledProduct(new ConsumerInstalledProduct("P" + i, "Product " + i));
+            }
+        }
+
+        int guests = rnd.nextInt(4);
+        for (int i = 0; i < guests; i++) {
+            GuestId guestId = new GuestId("guest-" + i, consumer);
+            if (rnd.nextBoolean()) {
+                Map<String, String> attrs = new HashMap<>();
+                attrs.put("virtWhoType", "libvirt");
+                attrs.put("active", "1");
+                guestId.setAttributes(attrs);
+            }
+
+            consumer.addGuestId(guestId);
+        }
+
+        Set<Entitlement> ents = new HashSet<>();
+        int count = rnd.nextInt(6);
+        for (int i = 0; i < count; i++) {
+            ents.add(this.buildEntitlement(rnd, consumer, i));
+        }
+
+        consumer.setEntitlements(ents);
+        return consumer;
+    }
+
+    private void maybeSetFact(Random rnd, Consumer consumer, String fact, String value) {
+        if (rnd.nextInt(5) > 0) {
+            consumer.setFact(fact, value);
+        }
+    }
+
+    private Entitlement buildEntitlement(Random rnd, Consumer consumer, int index) {
+        Product product = new Product("SKU" + index, "SKU " + index);
+        this.maybeSetAttribute(rnd, product, Product.Attributes.SOCKETS, COUNTS);
+        this.maybeSetAttribute(rnd, product, Product.Attributes.CORES, COUNTS);
+        this.maybeSetAttribute(rnd, product, Product.Attributes.RAM, COUNTS);
+        this.maybeSetAttribute(rnd, product, Product.Attributes.VCPU, COUNTS);
+        this.maybeSetAttribute(rnd, product, Product.Attributes.ARCHITECTURE, ARCHES);
+        this.maybeSetAttribute(rnd, product, Product.Attributes.STACKING_ID, STACKS);
+        this.maybeSetAttribute(rnd, product, Product.Attributes.INSTANCE_MULTIPLIER, new String[] { "2" });
+        this.maybeSetAttribute(rnd, product, Product.Attributes.GUEST_LIMIT,
+            new String[] { "-1", "0", "1", "4" });
+        this.maybeSetAttribute(rnd, product, "storage_band", new String[] { "1", "256" });
+
+        Set<Product> provided = new HashSet<>();
+        for (int i = 0; i < 6; i++) {
+            if (rnd.nextInt(3) == 0) {
+                provided.add(new Product("P" + i, "Product " + i));
+            }
+        }
+
+        Date start = new Date(this.now.getTime() - (rnd.nextInt(60) - 10) * DAY);
+        Date end = new Date(start.getTime() + (1 + rnd.nextInt(90)) * DAY);
+
+        Pool pool = new Pool(this.owner, product, provided, 100L, start, end, "contract", "account",
+            "order");
+        pool.setId("pool-" + index);
+        pool.setCreated(start);
+        pool.setUpdated(start);
+
+        if (rnd.nextInt(4) == 0) {
+            pool.setAttribute(Pool.Attributes.REQUIRES_HOST, "host-uuid");
+        }
+
+        if (rnd.nextInt(6) == 0) {
+            pool.setAttribute(Pool.Attributes.UNMAPPED_GUESTS_ONLY, "true");
+        }
+
+        this.providedProducts.put(pool.getId(), provided);
+
+        Entitlement ent = new Entitlement(pool, consumer, this.owner, 1 + rnd.nextInt(4));
+        ent.setId("ent-" + index);
+        ent.setCreated(start);
+        ent.setUpdated(start);
+
+        return ent;
+    }
+
+    private void maybeSetAttribute(Random rnd, Product product, String attribute, String[] values) {
+        if (rnd.nextInt(3) == 0) {
+            product.setAttribute(attribute, values[rnd.nextInt(values.length)]);
+        }
+    }
+
+    private String describe(ComplianceStatus status) {
+        StringBuilder builder = new StringBuilder()
+            .append("status=").append(status.getStatus())
+            .append("\ndate=").append(status.getDate())
+            .append("\ncompliantUntil=").append(status.getCompliantUntil())
+            .append("\nnonCompliant=").append(new TreeSet<>(status.getNonCompliantProducts()))
+            .append("\ncompliant=").append(this.describe(status.getCompliantProducts()))
+            .append("\npartial=").append(this.describe(status.getPartiallyCompliantProducts()))
+            .append("\npartialStacks=").append(this.describe(status.getPartialStacks()));
+
+        Map<String, String> ranges = new TreeMap<>();
+        for (Map.Entry<String, DateRange> entry : status.getProductComplianceDateRanges().entrySet()) {
+            DateRange range = entry.getValue();
+            ranges.put(entry.getKey(), range == null ? "null" :
+                range.getStartDate() + " - " + range.getEndDate());
+        }
+
+        builder.append("\nranges=").append(ranges);
+
+        Set<String> reasons = new TreeSet<>();
+        for (ComplianceReason reason : status.getReasons()) {
+            reasons.add(reason.getKey() + ": " + reason.getMessage() + " " +
+                new TreeMap<>(reason.getAttributes()));
+        }
+
+        return builder.append("\nreasons=").append(reasons).toString();
+    }
+
+    private Map<String, Set<String>> describe(Map<String, Set<Entitlement>> entitlements) {
+        Map<String, Set<String>> output = new TreeMap<>();
+        for (Map.Entry<String, Set<Entitlement>> entry : entitlements.entrySet()) {
+            output.put(entry.getKey(), this.describe(entry.getValue()));
+        }
+
+        return output;
+    }
+
+    private Set<String> describe(Collection<Entitlement> entitlements) {
+        Set<String> output = new TreeSet<>();
+        for (Entitlement ent : entitlements) {
+            output.add(ent.getId() + new TreeMap<>(ent.getPool().getAttributes()));
+        }
+
+        return output;
+    }
+}
@@ -23,6 +23,7 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 import org.candlepin.async.JobException;
 import org.candlepin.async.JobManager;
@@ -94,6 +95,7 @@ import java.util.Set;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.core.Response;
 
@@ -298,7 +300,7 @@ public class ConsumerResourceIntegrationTest extends DatabaseTestFixture {
     }
 
     @Test
-    public void testReadOnlyUsersCanGenerateExports() {
+    public void testReadOnlyUsersCanGenerateExports() throws Exception {
         // add an identity certificate for the export
         IdentityCertificate idCert = TestUtil.createIdCert();
         idCert.setId(null); // needs to be null to persist
@@ -310,8 +312,11 @@ public class ConsumerResourceIntegrationTest extends DatabaseTestFixture {
         consumerCurator.update(consumer);
         setupPrincipal(owner, Access.READ_ONLY);
         securityInterceptor.enable();
-        consumerResource.exportData(mock(HttpServletResponse.class), consumer.getUuid(), null, null, null,
-            new ArrayList<>());
+
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        when(response.getOutputStream()).thenReturn(mock(ServletOutputStream.class));
+
+        consumerResource.exportData(response, consumer.getUuid(), null, null, null, new ArrayList<>());
         // if no exception, we're good
     }
 
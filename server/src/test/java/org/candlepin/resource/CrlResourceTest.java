@@ -25,6 +25,7 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import org.candlepin.common.config.Configuration;
+import org.candlepin.common.exceptions.NotFoundException;
 import org.candlepin.config.ConfigProperties;
 import org.candlepin.model.CandlepinQuery;
 import org.candlepin.model.CertificateSerial;
@@ -38,11 +39,14 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.xnap.commons.i18n.I18nFactory;
 
 import java.io.File;
+import java.nio.file.Files;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 
 
 
@@ -66,7 +70,8 @@ public class CrlResourceTest {
 
         when(config.getString(ConfigProperties.CRL_FILE_PATH)).thenReturn(this.testFile.getAbsolutePath());
         this.resource = new CrlResource(
-            this.config, this.crlFileUtil, this.pkiUtility, this.certSerialCurator
+            this.config, this.crlFileUtil, this.pkiUtility, this.certSerialCurator,
+            I18nFactory.getI18n(getClass(), Locale.US, I18nFactory.FALLBACK)
         );
     }
 
@@ -94,6 +99,32 @@ public class CrlResourceTest {
         verify(crlFileUtil).syncCRLWithDB(any(File.class));
     }
 
+    @Test(expected = NotFoundException.class)
+    public void testGetDeltaCrlWhenDisabled() throws Exception {
+        when(crlFileUtil.isDeltaCRLEnabled()).thenReturn(false);
+
+        this.resource.getDeltaCrl(null);
+    }
+
+    @Test
+    public void testGetDeltaCrl() throws Exception {
+        File deltaFile = File.createTempFile("test-", "delta-crl");
+
+        try {
+            Files.write(deltaFile.toPath(), "delta".getBytes());
+            when(crlFileUtil.isDeltaCRLEnabled()).thenReturn(true);
+            when(crlFileUtil.getDeltaCRLFile()).thenReturn(deltaFile);
+
+            Object response = this.resource.getDeltaCrl(null);
+
+            assertTrue(response != null);
+            verify(crlFileUtil).syncCRLWithDB(eq(this.testFile));
+        }
+        finally {
+            deltaFile.delete();
+        }
+    }
+
     @Test
     @SuppressWarnings("unchecked")
     public void testUnrevokeWithArguments() throws Exception {
@@ -110,7 +141,7 @@ public class CrlResourceTest {
 
         this.resource.unrevoke(input);
 
-        verify(crlFileUtil).updateCRLFile(any(File.class), nullable(Collection.class),
+        verify(crlFileUtil).updateCRL(any(File.class), nullable(Collection.class),
             anyCollection());
     }
 
@@ -39,11 +39,13 @@ import org.candlepin.common.paging.PageRequest;
 import org.candlepin.config.CandlepinCommonTestConfig;
 import org.candlepin.config.ConfigProperties;
 import org.candlepin.dto.api.v1.AsyncJobStatusDTO;
+import org.candlepin.dto.api.v1.JobQueueStatisticsDTO;
 import org.candlepin.dto.api.v1.SchedulerStatusDTO;
 import org.candlepin.model.AsyncJobStatus;
 import org.candlepin.model.AsyncJobStatus.JobState;
 import org.candlepin.model.AsyncJobStatusCurator;
 import org.candlepin.model.AsyncJobStatusCurator.AsyncJobStatusQueryBuilder;
+import org.candlepin.model.AsyncJobStatusCurator.JobQueueStatistics;
 import org.candlepin.model.InvalidOrderKeyException;
 import org.candlepin.model.Owner;
 import org.candlepin.resource.util.JobStateMapper;
@@ -889,6 +891,47 @@ public class JobResourceTest extends DatabaseTestFixture {
             resource.listJobStatuses(null, null, null, null, null, null, null, null, null));
     }
 
+    @Test
+    public void testGetJobQueueStatistics() {
+        Date oldestPending = new Date(System.currentTimeMillis() - 60000);
+
+        JobQueueStatistics pending = mock(JobQueueStatistics.class);
+        doReturn("pending_job").when(pending).getJobKey();
+        doReturn(3L).when(pending).getWaiting();
+        doReturn(2L).when(pending).getQueued();
+        doReturn(1L).when(pending).getRunning();
+        doReturn(oldestPending).when(pending).getOldestPending();
+
+        JobQueueStatistics running = mock(JobQueueStatistics.class);
+        doReturn("running_job").when(running).getJobKey();
+        doReturn(4L).when(running).getRunning();
+
+        doReturn(Arrays.asList(pending, running)).when(this.jobCurator).getJobQueueStatistics();
+
+        JobResource resource = this.buildJobResource();
+        List<JobQueueStatisticsDTO> output = resource.getJobQueueStatistics()
+            .collect(Collectors.toList());
+
+        assertNotNull(output);
+        assertEquals(2, output.size());
+
+        JobQueueStatisticsDTO dto = output.get(0);
+        assertEquals("pending_job", dto.getJobKey());
+        assertEquals(3L, (long) dto.getWaiting());
+        assertEquals(2L, (long) dto.getQueued());
+        assertEquals(1L, (long) dto.getRunning());
+        assertEquals(oldestPending, dto.getOldestPending());
+        assertTrue(dto.getLongestWait() >= 60000);
+
+        dto = output.get(1);
+        assertEquals("running_job", dto.getJobKey());
+        assertEquals(0L, (long) dto.getWaiting());
+        assertEquals(0L, (long) dto.getQueued());
+        assertEquals(4L, (long) dto.getRunning());
+        assertNull(dto.getOldestPending());
+        assertNull(dto.getLongestWait());
+    }
+
     @Test
     public void testListJobStatusesDoesNotFailWhenResultMaxLimitNotExceeded() {
         doReturn(10000L).when(this.jobCurator).getJobCount(any(AsyncJobStatusQueryBuilder.class));
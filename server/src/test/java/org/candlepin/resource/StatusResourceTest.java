@@ -31,11 +31,13 @@ import org.candlepin.common.config.Configuration;
 import org.candlepin.config.ConfigProperties;
 import org.candlepin.controller.mode.CandlepinModeManager;
 import org.candlepin.controller.mode.CandlepinModeManager.Mode;
+import org.candlepin.dto.api.v1.KeyPairPoolStatusDTO;
 import org.candlepin.dto.api.v1.KeycloakStatusDTO;
 import org.candlepin.dto.api.v1.StatusDTO;
 import org.candlepin.model.CandlepinQuery;
 import org.candlepin.model.Rules;
 import org.candlepin.model.RulesCurator;
+import org.candlepin.pki.KeyPairPool;
 import org.candlepin.policy.js.JsRunnerProvider;
 
 import ch.qos.logback.classic.Level;
@@ -77,6 +79,7 @@ public class StatusResourceTest {
     @Mock private CandlepinModeManager modeManager;
     @Mock private KeycloakConfiguration keycloakConfig;
     @Mock private AdapterConfig mockKeycloakAdapterConfig;
+    @Mock private KeyPairPool keyPairPool;
 
     @BeforeEach
     public void setUp() {
@@ -101,7 +104,27 @@ public class StatusResourceTest {
 
     private StatusResource createResource() {
         return new StatusResource(this.rulesCurator, this.config, this.jsProvider, this.candlepinCache,
-            this.modeManager, this.keycloakConfig);
+            this.modeManager, this.keycloakConfig, this.keyPairPool);
+    }
+
+    @Test
+    public void testStatusIncludesKeyPairPool() {
+        when(this.keyPairPool.isEnabled()).thenReturn(true);
+        when(this.keyPairPool.getDepth()).thenReturn(3);
+        when(this.keyPairPool.getCapacity()).thenReturn(5);
+        when(this.keyPairPool.getGeneratedCount()).thenReturn(12L);
+        when(this.keyPairPool.getHits()).thenReturn(9L);
+        when(this.keyPairPool.getMisses()).thenReturn(2L);
+
+        KeyPairPoolStatusDTO output = this.createResource().status().getKeyPairPool();
+
+        assertNotNull(output);
+        assertTrue(output.isEnabled());
+        assertEquals(Integer.valueOf(3), output.getDepth());
+        assertEquals(Integer.valueOf(5), output.getCapacity());
+        assertEquals(Long.valueOf(12), output.getGenerated());
+        assertEquals(Long.valueOf(9), output.getHits());
+        assertEquals(Long.valueOf(2), output.getMisses());
     }
 
     @Test
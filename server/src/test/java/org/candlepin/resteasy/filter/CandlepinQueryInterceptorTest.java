@@ -14,10 +14,15 @@
  */
 package org.candlepin.resteasy.filter;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.Mockito.*;
 
+import org.candlepin.common.paging.Page;
 import org.candlepin.common.paging.PageRequest;
+import org.candlepin.config.CandlepinCommonTestConfig;
+import org.candlepin.config.ConfigProperties;
 import org.candlepin.model.Owner;
 import org.candlepin.resteasy.JsonProvider;
 import org.candlepin.test.DatabaseTestFixture;
@@ -26,8 +31,11 @@ import org.candlepin.test.SessionWrapper;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.google.inject.Provider;
 
+import org.hibernate.CacheMode;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.Order;
@@ -60,6 +68,7 @@ public class CandlepinQueryInterceptorTest extends DatabaseTestFixture {
     private JsonFactory mockJsonFactory;
     private JsonGenerator mockJsonGenerator;
     private ObjectMapper mockObjectMapper;
+    private ObjectWriter mockObjectWriter;
     private OutputStream mockOutputStream;
     private Provider<EntityManager> emProvider;
     private Session session;
@@ -73,6 +82,7 @@ public class CandlepinQueryInterceptorTest extends DatabaseTestFixture {
         this.mockJsonFactory = mock(JsonFactory.class);
         this.mockJsonGenerator = mock(JsonGenerator.class);
         this.mockObjectMapper = mock(ObjectMapper.class);
+        this.mockObjectWriter = mock(ObjectWriter.class);
         this.mockOutputStream = mock(OutputStream.class);
 
         try {
@@ -80,6 +90,9 @@ public class CandlepinQueryInterceptorTest extends DatabaseTestFixture {
                 .thenReturn(this.mockObjectMapper);
 
             when(this.mockObjectMapper.getJsonFactory()).thenReturn(this.mockJsonFactory);
+            when(this.mockObjectMapper.writer()).thenReturn(this.mockObjectWriter);
+            when(this.mockObjectWriter.without(any(SerializationFeature.class)))
+                .thenReturn(this.mockObjectWriter);
 
             when(this.mockJsonFactory.createGenerator(eq(this.mockOutputStream)))
                 .thenReturn(this.mockJsonGenerator);
@@ -103,6 +116,8 @@ public class CandlepinQueryInterceptorTest extends DatabaseTestFixture {
         when(mockSession.getSessionFactory()).thenReturn(mockSessionFactory);
         when(mockSessionFactory.openSession()).thenReturn(this.session);
         doNothing().when(this.session).close();
+        doNothing().when(this.session).setDefaultReadOnly(anyBoolean());
+        doNothing().when(this.session).setCacheMode(any(CacheMode.class));
 
         // Create some owners to play with
         for (int i = 0; i < 5; ++i) {
@@ -117,7 +132,8 @@ public class CandlepinQueryInterceptorTest extends DatabaseTestFixture {
     public void testWriteCandlepinQueryContents() throws IOException {
         List<Owner> owners = this.ownerCurator.listAll().list();
 
-        CandlepinQueryInterceptor cqi = new CandlepinQueryInterceptor(this.mockJsonProvider, this.emProvider);
+        CandlepinQueryInterceptor cqi = new CandlepinQueryInterceptor(this.mockJsonProvider, this.emProvider,
+            this.i18nProvider, this.config);
 
         ContainerRequestContext requestContext = mock(ContainerRequestContext.class);
         ContainerResponseContext responseContext = mock(ContainerResponseContext.class);
@@ -132,7 +148,7 @@ public class CandlepinQueryInterceptorTest extends DatabaseTestFixture {
 
         verify(this.mockJsonGenerator, times(1)).writeStartArray();
         for (Owner owner : owners) {
-            verify(this.mockObjectMapper, times(1)).writeValue(eq(this.mockJsonGenerator), eq(owner));
+            verify(this.mockObjectWriter, times(1)).writeValue(eq(this.mockJsonGenerator), eq(owner));
         }
         verify(this.mockJsonGenerator, times(1)).writeEndArray();
     }
@@ -168,7 +184,8 @@ public class CandlepinQueryInterceptorTest extends DatabaseTestFixture {
         pageRequest.setSortBy(sortBy);
         pageRequest.setOrder(order);
 
-        CandlepinQueryInterceptor cqi = new CandlepinQueryInterceptor(this.mockJsonProvider, this.emProvider);
+        CandlepinQueryInterceptor cqi = new CandlepinQueryInterceptor(this.mockJsonProvider, this.emProvider,
+            this.i18nProvider, this.config);
 
         ContainerRequestContext requestContext = mock(ContainerRequestContext.class);
         ContainerResponseContext responseContext = mock(ContainerResponseContext.class);
@@ -187,15 +204,90 @@ public class CandlepinQueryInterceptorTest extends DatabaseTestFixture {
             Owner owner = owners.get(i);
 
             if (i < offset || i >= end) {
-                verify(this.mockObjectMapper, never()).writeValue(eq(this.mockJsonGenerator), eq(owner));
+                verify(this.mockObjectWriter, never()).writeValue(eq(this.mockJsonGenerator), eq(owner));
             }
             else {
-                verify(this.mockObjectMapper, times(1)).writeValue(eq(this.mockJsonGenerator), eq(owner));
+                verify(this.mockObjectWriter, times(1)).writeValue(eq(this.mockJsonGenerator), eq(owner));
             }
         }
         verify(this.mockJsonGenerator, times(1)).writeEndArray();
     }
 
+    @Test
+    public void testWriteCursorPagedCandlepinQueryContents() throws IOException {
+        List<Owner> owners = this.ownerCurator.listAll()
+            .addOrder(Order.asc("key"))
+            .list();
+
+        CandlepinQueryInterceptor cqi = new CandlepinQueryInterceptor(this.mockJsonProvider, this.emProvider,
+            this.i18nProvider, this.config);
+
+        String cursor = "";
+        for (int offset = 0; offset < owners.size(); offset += 2) {
+            PageRequest pageRequest = new PageRequest();
+            pageRequest.setPerPage(2);
+            pageRequest.setSortBy("key");
+            pageRequest.setOrder(PageRequest.Order.ASCENDING);
+            pageRequest.setCursor(cursor);
+
+            ContainerRequestContext requestContext = mock(ContainerRequestContext.class);
+            ContainerResponseContext responseContext = mock(ContainerResponseContext.class);
+            doReturn(this.ownerCurator.listAll()).when(responseContext).getEntity();
+
+            ResteasyContext.pushContext(PageRequest.class, pageRequest);
+            cqi.filter(requestContext, responseContext);
+
+            ArgumentCaptor<StreamingOutput> captor = ArgumentCaptor.forClass(StreamingOutput.class);
+            verify(responseContext, times(1)).setEntity(captor.capture());
+
+            ((StreamingOutput) captor.getValue()).write(this.mockOutputStream);
+
+            for (int i = offset; i < Math.min(offset + 2, owners.size()); ++i) {
+                verify(this.mockObjectWriter, times(1))
+                    .writeValue(eq(this.mockJsonGenerator), eq(owners.get(i)));
+            }
+
+            // The next cursor is derived from the last owner on the page, and only issued while
+            // more owners follow it
+            Page page = ResteasyContext.getContextData(Page.class);
+            assertNotNull(page);
+            assertEquals(offset + 2 < owners.size(), page.getNextCursor() != null);
+
+            cursor = page.getNextCursor();
+            ResteasyContext.popContextData(Page.class);
+        }
+
+        verify(this.mockObjectWriter, times(owners.size()))
+            .writeValue(eq(this.mockJsonGenerator), any(Owner.class));
+    }
+
+    @Test
+    public void testWritesResultsInBatches() throws IOException {
+        CandlepinCommonTestConfig config = new CandlepinCommonTestConfig();
+        config.setProperty(ConfigProperties.QUERY_STREAM_BATCH_SIZE, "2");
+        doNothing().when(this.session).clear();
+
+        CandlepinQueryInterceptor cqi = new CandlepinQueryInterceptor(this.mockJsonProvider, this.emProvider,
+            this.i18nProvider, config);
+
+        ContainerRequestContext requestContext = mock(ContainerRequestContext.class);
+        ContainerResponseContext responseContext = mock(ContainerResponseContext.class);
+        doReturn(this.ownerCurator.listAll()).when(responseContext).getEntity();
+
+        cqi.filter(requestContext, responseContext);
+
+        ArgumentCaptor<StreamingOutput> captor = ArgumentCaptor.forClass(StreamingOutput.class);
+        verify(responseContext, times(1)).setEntity(captor.capture());
+
+        ((StreamingOutput) captor.getValue()).write(this.mockOutputStream);
+
+        // Five owners in batches of two: two full batches, then the final flush
+        verify(this.mockObjectWriter, times(5)).writeValue(eq(this.mockJsonGenerator), any(Owner.class));
+        verify(this.session, times(2)).clear();
+        verify(this.mockJsonGenerator, times(3)).flush();
+        verify(this.session, times(1)).close();
+    }
+
     // These tests can't possibly be all-inclusive, so we'll just test most our common cases
 
     @Test
@@ -203,7 +295,8 @@ public class CandlepinQueryInterceptorTest extends DatabaseTestFixture {
         // List of entities
         List<Owner> owners = this.ownerCurator.listAll().list();
 
-        CandlepinQueryInterceptor cqi = new CandlepinQueryInterceptor(this.mockJsonProvider, this.emProvider);
+        CandlepinQueryInterceptor cqi = new CandlepinQueryInterceptor(this.mockJsonProvider, this.emProvider,
+            this.i18nProvider, this.config);
 
         ContainerRequestContext requestContext = mock(ContainerRequestContext.class);
         ContainerResponseContext responseContext = mock(ContainerResponseContext.class);
@@ -220,7 +313,8 @@ public class CandlepinQueryInterceptorTest extends DatabaseTestFixture {
         // Single entity
         Owner owner = this.ownerCurator.listAll().list().get(0);
 
-        CandlepinQueryInterceptor cqi = new CandlepinQueryInterceptor(this.mockJsonProvider, this.emProvider);
+        CandlepinQueryInterceptor cqi = new CandlepinQueryInterceptor(this.mockJsonProvider, this.emProvider,
+            this.i18nProvider, this.config);
 
         ContainerRequestContext requestContext = mock(ContainerRequestContext.class);
         ContainerResponseContext responseContext = mock(ContainerResponseContext.class);
@@ -236,7 +330,8 @@ public class CandlepinQueryInterceptorTest extends DatabaseTestFixture {
         doThrow(new RuntimeException()).when(this.mockJsonProvider)
             .locateMapper(Object.class, MediaType.APPLICATION_JSON_TYPE);
 
-        CandlepinQueryInterceptor cqi = new CandlepinQueryInterceptor(this.mockJsonProvider, this.emProvider);
+        CandlepinQueryInterceptor cqi = new CandlepinQueryInterceptor(this.mockJsonProvider, this.emProvider,
+            this.i18nProvider, this.config);
 
         try {
             ContainerRequestContext requestContext = mock(ContainerRequestContext.class);
@@ -24,6 +24,7 @@ import static org.mockito.Mockito.nullable;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import org.candlepin.cache.ConsumerPrincipalCache;
 import org.candlepin.model.CertificateSerial;
 import org.candlepin.model.CertificateSerialCurator;
 import org.candlepin.model.Consumer;
@@ -71,7 +72,7 @@ public class DefaultIdentityCertServiceAdapterTest {
     @BeforeEach
     public void setUp() {
         dicsa = new DefaultIdentityCertServiceAdapter(pki, idcur, kpc, csc,
-            new ExpiryDateFunction(1));
+            new ConsumerPrincipalCache(0, 0), new ExpiryDateFunction(1));
     }
 
     // can't mock a final class, so create a dummy one
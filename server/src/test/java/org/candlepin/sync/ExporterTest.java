@@ -14,6 +14,7 @@
  */
 package org.candlepin.sync;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -70,17 +71,20 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -245,7 +249,7 @@ public class ExporterTest {
 
         when(ent.getPool()).thenReturn(pool);
         when(mrules.getRules()).thenReturn("foobar");
-        when(pki.getSHA256WithRSAHash(any(InputStream.class))).thenReturn("signature".getBytes());
+        when(pki.signSHA256Digest(any(byte[].class))).thenReturn("signature".getBytes());
         when(rc.getRules()).thenReturn(mrules);
         when(consumer.getEntitlements()).thenReturn(entitlements);
         when(psa.getProductCertificate(any(String.class), any(String.class))).thenReturn(pcert);
@@ -309,8 +313,7 @@ public class ExporterTest {
         List<Entitlement> entitlements = new ArrayList<>();
         entitlements.add(ent);
 
-        when(pki.getSHA256WithRSAHash(any(InputStream.class))).thenReturn(
-            "signature".getBytes());
+        when(pki.signSHA256Digest(any(byte[].class))).thenReturn("signature".getBytes());
         when(pprov.get()).thenReturn(principal);
         when(principal.getUsername()).thenReturn("testUser");
 
@@ -348,7 +351,7 @@ public class ExporterTest {
         IdentityCertificate idcert = new IdentityCertificate();
 
         when(mrules.getRules()).thenReturn("foobar");
-        when(pki.getSHA256WithRSAHash(any(InputStream.class))).thenReturn("signature".getBytes());
+        when(pki.signSHA256Digest(any(byte[].class))).thenReturn("signature".getBytes());
         when(rc.getRules()).thenReturn(mrules);
         when(pprov.get()).thenReturn(principal);
         when(principal.getUsername()).thenReturn("testUser");
@@ -397,7 +400,7 @@ public class ExporterTest {
         Principal principal = mock(Principal.class);
 
         when(mrules.getRules()).thenReturn("foobar");
-        when(pki.getSHA256WithRSAHash(any(InputStream.class))).thenReturn("signature".getBytes());
+        when(pki.signSHA256Digest(any(byte[].class))).thenReturn("signature".getBytes());
         when(rc.getRules()).thenReturn(mrules);
         when(pprov.get()).thenReturn(principal);
         when(principal.getUsername()).thenReturn("testUser");
@@ -446,7 +449,7 @@ public class ExporterTest {
         Principal principal = mock(Principal.class);
 
         when(mrules.getRules()).thenReturn("foobar");
-        when(pki.getSHA256WithRSAHash(any(InputStream.class))).thenReturn("signature".getBytes());
+        when(pki.signSHA256Digest(any(byte[].class))).thenReturn("signature".getBytes());
         when(rc.getRules()).thenReturn(mrules);
         when(pprov.get()).thenReturn(principal);
         when(principal.getUsername()).thenReturn("testUser");
@@ -501,7 +504,7 @@ public class ExporterTest {
         Principal principal = mock(Principal.class);
 
         when(mrules.getRules()).thenReturn("foobar");
-        when(pki.getSHA256WithRSAHash(any(InputStream.class))).thenReturn("signature".getBytes());
+        when(pki.signSHA256Digest(any(byte[].class))).thenReturn("signature".getBytes());
         when(rc.getRules()).thenReturn(mrules);
         when(pprov.get()).thenReturn(principal);
         when(principal.getUsername()).thenReturn("testUser");
@@ -577,7 +580,7 @@ public class ExporterTest {
 
         Rules mrules = mock(Rules.class);
         when(mrules.getRules()).thenReturn("foobar");
-        when(pki.getSHA256WithRSAHash(any(InputStream.class))).thenReturn("signature".getBytes());
+        when(pki.signSHA256Digest(any(byte[].class))).thenReturn("signature".getBytes());
         when(rc.getRules()).thenReturn(mrules);
 
         // specific to this test
@@ -595,6 +598,79 @@ public class ExporterTest {
         verify(exportExtensionAdapter).extendManifest(any(File.class), eq(consumer), eq(extensionData));
     }
 
+    @Test
+    public void writeFullExportSignsConsumerExportDigest() throws Exception {
+        CandlepinQuery emptyIteratorMock = mock(CandlepinQuery.class);
+        when(emptyIteratorMock.iterate()).thenReturn(new MockResultIterator(Arrays.asList().iterator()));
+        when(emptyIteratorMock.iterator()).thenReturn(Arrays.asList().iterator());
+        when(cdnc.listAll()).thenReturn(emptyIteratorMock);
+        when(ctc.listAll()).thenReturn(emptyIteratorMock);
+
+        Exporter e = new Exporter(ctc, oc, me, ce, cte, re, ece, ecsa, pe, psa,
+            pce, ec, ee, pki, config, exportRules, pprov, dvc, dve, cdnc, cdne, pc, su,
+            exportExtensionAdapter, translator);
+
+        Principal principal = mock(Principal.class);
+        when(pprov.get()).thenReturn(principal);
+        when(principal.getUsername()).thenReturn("testUser");
+
+        Consumer consumer = mock(Consumer.class);
+
+        Rules mrules = mock(Rules.class);
+        when(mrules.getRules()).thenReturn("foobar");
+        when(pki.signSHA256Digest(any(byte[].class))).thenReturn("signature".getBytes());
+        when(rc.getRules()).thenReturn(mrules);
+
+        IdentityCertificate idcert = new IdentityCertificate();
+        idcert.setSerial(new CertificateSerial(10L, new Date()));
+        idcert.setKey("euh0876puhapodifbvj094");
+        idcert.setCert("hpj-08ha-w4gpoknpon*)&^%#");
+        idcert.setCreated(new Date());
+        idcert.setUpdated(new Date());
+        when(consumer.getIdCert()).thenReturn(idcert);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        e.writeFullExport(consumer, "cdn-key", "webapp-prefix", "api-url", new HashMap<>(), output);
+
+        Map<String, byte[]> entries = readEntries(output.toByteArray());
+        assertEquals(2, entries.size());
+        assertArrayEquals("signature".getBytes(), entries.get(Exporter.SIGNATURE));
+
+        ArgumentCaptor<byte[]> digest = ArgumentCaptor.forClass(byte[].class);
+        verify(pki).signSHA256Digest(digest.capture());
+
+        byte[] consumerExport = entries.get(Exporter.CONSUMER_EXPORT);
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(consumerExport), digest.getValue());
+
+        Map<String, byte[]> exported = readEntries(consumerExport);
+        assertTrue(exported.containsKey("export/meta.json"));
+        assertTrue(exported.containsKey("export/consumer.json"));
+        assertTrue(exported.containsKey("export/upstream_consumer/10.json"));
+        assertTrue(exported.containsKey("export/rules2/rules.js"));
+        assertTrue(exported.containsKey("export/rules/default-rules.js"));
+    }
+
+    private Map<String, byte[]> readEntries(byte[] archive) throws IOException {
+        Map<String, byte[]> entries = new HashMap<>();
+
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                ByteArrayOutputStream content = new ByteArrayOutputStream();
+                byte[] buf = new byte[1024];
+
+                int n;
+                while ((n = zis.read(buf, 0, buf.length)) > -1) {
+                    content.write(buf, 0, n);
+                }
+
+                entries.put(entry.getName(), content.toByteArray());
+            }
+        }
+
+        return entries;
+    }
+
     /**
      * return true if export has a given entry named name.
      * @param export zip file to inspect
@@ -29,7 +29,9 @@ import org.candlepin.dto.ModelTranslator;
 import org.candlepin.dto.StandardTranslator;
 import org.candlepin.dto.manifest.v1.ConsumerDTO;
 import org.candlepin.dto.manifest.v1.ConsumerTypeDTO;
+import org.candlepin.dto.manifest.v1.EntitlementDTO;
 import org.candlepin.dto.manifest.v1.OwnerDTO;
+import org.candlepin.dto.manifest.v1.ProductDTO;
 import org.candlepin.dto.manifest.v1.SubscriptionDTO;
 import org.candlepin.jackson.ProductCachedSerializationModule;
 import org.candlepin.model.CdnCurator;
@@ -60,7 +62,6 @@ import org.candlepin.model.dto.Subscription;
 import org.candlepin.pki.PKIUtility;
 import org.candlepin.pki.impl.JSSProviderLoader;
 import org.candlepin.service.SubscriptionServiceAdapter;
-import org.candlepin.sync.Importer.ImportFile;
 
 import com.fasterxml.jackson.core.JsonGenerationException;
 import com.fasterxml.jackson.databind.JsonMappingException;
@@ -139,7 +140,6 @@ public class ImporterTest {
 
     private ObjectMapper mapper;
     private ClassLoader classLoader = getClass().getClassLoader();
-    private String mockJsPath;
 
     static {
         JSSProviderLoader.addProvider();
@@ -158,7 +158,6 @@ public class ImporterTest {
             this.mockProductCurator);
         this.syncUtils = new SyncUtils(this.config, productCachedModule);
         this.mapper = this.syncUtils.getObjectMapper();
-        this.mockJsPath = new File(this.tmpFolder, "empty.js").getPath();
 
         this.updateReleaseVersion("0.0.3", "1");
     }
@@ -201,18 +200,6 @@ public class ImporterTest {
         return file;
     }
 
-    private File[] createMockJsFile(String filename)
-        throws IOException {
-
-        FileWriter f = new FileWriter(filename);
-        f.write("// nothing to see here");
-        f.close();
-
-        File[] fileArray = new File[1];
-        fileArray[0] = new File(filename);
-        return fileArray;
-    }
-
     private Date getDateBeforeDays(int days) {
         long daysinmillis = 24 * 60 * 60 * 1000;
         long ms = System.currentTimeMillis() - (days * daysinmillis);
@@ -235,17 +222,19 @@ public class ImporterTest {
         in.close();
     }
 
-    private Map<String, File> getTestImportFiles() {
-        Map<String, File> importFiles = new HashMap<>();
-        importFiles.put(ImportFile.META.fileName(), mock(File.class));
-        importFiles.put(ImportFile.RULES_FILE.fileName(), mock(File.class));
-        importFiles.put(ImportFile.CONSUMER_TYPE.fileName(), mock(File.class));
-        importFiles.put(ImportFile.CONSUMER.fileName(), mock(File.class));
-        importFiles.put(ImportFile.PRODUCTS.fileName(), mock(File.class));
-        importFiles.put(ImportFile.ENTITLEMENTS.fileName(), mock(File.class));
-        importFiles.put(ImportFile.DISTRIBUTOR_VERSIONS.fileName(), mock(File.class));
+    private ManifestContents buildTestManifestContents(Meta meta, ConsumerDTO consumer, boolean products) {
+        ManifestContents contents = new ManifestContents();
+        contents.setMeta(meta);
+        contents.setRules("// nothing to see here");
+        contents.addConsumerType(new ConsumerType(ConsumerTypeEnum.CANDLEPIN));
+        contents.setConsumer(consumer);
+
+        if (products) {
+            contents.addProductsDirectory();
+            contents.addEntitlement(new EntitlementDTO());
+        }
 
-        return importFiles;
+        return contents;
     }
 
     private ConsumerType mockConsumerType(ConsumerType mock) {
@@ -511,7 +500,7 @@ public class ImporterTest {
         // Mock a passed signature check:
         doReturn(true)
             .when(this.mockPKIUtility)
-            .verifySHA256WithRSAHashAgainstCACerts(any(File.class), any(byte [].class));
+            .verifySHA256DigestAgainstCACerts(any(byte [].class), any(byte [].class));
 
         Owner owner = mock(Owner.class);
         ConflictOverrides co = mock(ConflictOverrides.class);
@@ -542,7 +531,7 @@ public class ImporterTest {
         // Mock a passed signature check:
         doReturn(true)
             .when(this.mockPKIUtility)
-            .verifySHA256WithRSAHashAgainstCACerts(any(File.class), any(byte [].class));
+            .verifySHA256DigestAgainstCACerts(any(byte [].class), any(byte [].class));
 
         Owner owner = mock(Owner.class);
         ConflictOverrides co = mock(ConflictOverrides.class);
@@ -573,12 +562,11 @@ public class ImporterTest {
         Owner owner = mock(Owner.class);
         ConflictOverrides co = mock(ConflictOverrides.class);
 
-        Map<String, File> importFiles = this.getTestImportFiles();
-        importFiles.put(ImportFile.META.fileName(), null);
+        ManifestContents contents = this.buildTestManifestContents(null, new ConsumerDTO(), true);
 
         Importer importer = this.buildImporter();
         Throwable throwable = assertThrows(ImporterException.class,
-            () -> importer.importObjects(owner, importFiles, co));
+            () -> importer.importManifest(owner, contents, co));
 
         String errmsg = i18n.tr("The archive does not contain the required meta.json file");
         assertThat(throwable.getMessage(), StringContains.containsString(errmsg));
@@ -588,13 +576,13 @@ public class ImporterTest {
     public void testImportNoConsumerTypesDir() throws IOException, ImporterException {
         Owner owner = mock(Owner.class);
         ConflictOverrides co = mock(ConflictOverrides.class);
-        Map<String, File> importFiles = this.getTestImportFiles();
-
-        importFiles.put(ImportFile.CONSUMER_TYPE.fileName(), null);
+        ManifestContents contents = new ManifestContents();
+        contents.setMeta(new Meta());
+        contents.setConsumer(new ConsumerDTO());
 
         Importer importer = this.buildImporter();
         Throwable throwable = assertThrows(ImporterException.class,
-            () -> importer.importObjects(owner, importFiles, co));
+            () -> importer.importManifest(owner, contents, co));
 
         String errmsg = i18n.tr("The archive does not contain the required consumer_types directory");
         assertThat(throwable.getMessage(), StringContains.containsString(errmsg));
@@ -604,13 +592,11 @@ public class ImporterTest {
     public void testImportNoConsumer() throws IOException, ImporterException {
         Owner owner = mock(Owner.class);
         ConflictOverrides co = mock(ConflictOverrides.class);
-        Map<String, File> importFiles = this.getTestImportFiles();
-
-        importFiles.put(ImportFile.CONSUMER.fileName(), null);
+        ManifestContents contents = this.buildTestManifestContents(new Meta(), null, true);
 
         Importer importer = this.buildImporter();
         Throwable throwable = assertThrows(ImporterException.class,
-            () -> importer.importObjects(owner, importFiles, co));
+            () -> importer.importManifest(owner, contents, co));
 
         String errmsg = i18n.tr("The archive does not contain the required consumer.json file");
         assertThat(throwable.getMessage(), StringContains.containsString(errmsg));
@@ -621,12 +607,6 @@ public class ImporterTest {
         Owner owner = mock(Owner.class);
         ConflictOverrides co = mock(ConflictOverrides.class);
 
-        Map<String, File> importFiles = this.getTestImportFiles();
-        File ruleDir = mock(File.class);
-        File[] rulesFiles = createMockJsFile(mockJsPath);
-        when(ruleDir.listFiles()).thenReturn(rulesFiles);
-        File actualmeta = createFile("meta.json", "0.0.3", new Date(), "test_user", "prefix");
-
         // this is the hook to stop testing. we confirm that the archive component tests
         //  are passed and then jump out instead of trying to fake the actual file
         //  processing.
@@ -635,15 +615,12 @@ public class ImporterTest {
             .when(this.mockRulesImporter)
             .importObject(any(Reader.class));
 
-        importFiles.put(ImportFile.META.fileName(), actualmeta);
-        importFiles.put(ImportFile.RULES_FILE.fileName(), rulesFiles[0]);
-        importFiles.put(ImportFile.PRODUCTS.fileName(), null);
-        importFiles.put(ImportFile.ENTITLEMENTS.fileName(), null);
-        importFiles.put(ImportFile.UPSTREAM_CONSUMER.fileName(), mock(File.class));
+        ManifestContents contents = this.buildTestManifestContents(
+            new Meta("0.0.3", new Date(), "test_user", "prefix", null), new ConsumerDTO(), false);
 
         Importer importer = this.buildImporter();
         Throwable throwable = assertThrows(RuntimeException.class,
-            () -> importer.importObjects(owner, importFiles, co));
+            () -> importer.importManifest(owner, contents, co));
 
         String errmsg = "Done with the test";
         assertThat(throwable.getMessage(), StringContains.containsString(errmsg));
@@ -663,14 +640,6 @@ public class ImporterTest {
             .when(this.mockPoolManager)
             .getRefresher(any(SubscriptionServiceAdapter.class));
 
-        Map<String, File> importFiles = new HashMap<>();
-        File ruleDir = mock(File.class);
-        File[] rulesFiles = createMockJsFile(mockJsPath);
-        when(ruleDir.listFiles()).thenReturn(rulesFiles);
-
-        File actualmeta = createFile("meta.json", "0.0.3", new Date(), "test_user", "prefix");
-        importFiles.put(ImportFile.META.fileName(), actualmeta);
-
         ConsumerDTO consumerDTO = new ConsumerDTO();
         consumerDTO.setUuid("eb5e04bf-be27-44cf-abe3-0c0b1edd523e");
         consumerDTO.setName("mymachine");
@@ -690,56 +659,118 @@ public class ImporterTest {
         ctype.setId("test-ctype");
         this.mockConsumerType(ctype);
 
-        File consumerFile = new File(this.tmpFolder, "consumer.json");
-        this.mapper.writeValue(consumerFile, consumerDTO);
-        importFiles.put(ImportFile.CONSUMER.fileName(), consumerFile);
-
-        File cTypes = mock(File.class);
-        when(cTypes.listFiles()).thenReturn(new File[]{});
-        importFiles.put(ImportFile.CONSUMER_TYPE.fileName(), cTypes);
-
         Product prod = new Product("prodId", "prodTest", null);
         prod.setDependentProductIds(null);
-        File prodFile = new File(this.tmpFolder, "product.json");
-        this.mapper.writeValue(prodFile, prod);
-        File products = mock(File.class);
-        when(products.listFiles()).thenReturn(new File[]{prodFile});
-        importFiles.put(ImportFile.PRODUCTS.fileName(), products);
 
         Entitlement ent = new Entitlement();
         Pool pool = new Pool();
         pool.setProduct(prod);
         ent.setPool(pool);
         ent.setQuantity(2);
-        File entFile = new File(this.tmpFolder, "entitlement.json");
-        this.mapper.writeValue(entFile, ent);
-        File entitlements = mock(File.class);
-        when(entitlements.listFiles()).thenReturn(new File[]{entFile});
 
-        importFiles.put(ImportFile.ENTITLEMENTS.fileName(), entitlements);
-        importFiles.put(ImportFile.RULES_FILE.fileName(), rulesFiles[0]);
+        ManifestContents contents = new ManifestContents();
+        contents.setMeta(new Meta("0.0.3", new Date(), "test_user", "prefix", null));
+        contents.setRules("// nothing to see here");
+        contents.addConsumerType(ctype);
+        contents.setConsumer(consumerDTO);
+        contents.addProduct(this.mapper.convertValue(prod, ProductDTO.class));
+        contents.addEntitlement(this.mapper.convertValue(ent, EntitlementDTO.class));
 
         ConflictOverrides co = mock(ConflictOverrides.class);
 
         Importer importer = this.buildImporter();
-        List<SubscriptionDTO> subscriptions = importer.importObjects(owner, importFiles, co);
+        List<SubscriptionDTO> subscriptions = importer.importManifest(owner, contents, co);
 
         assertEquals(1, subscriptions.size());
         assertEquals("prodId", subscriptions.get(0).getProduct().getId());
         assertEquals(2, subscriptions.get(0).getQuantity().longValue());
     }
 
+    @Test
+    public void testLoadExportImportsStreamedManifest() throws Exception {
+        Owner owner = new Owner("admin", "Admin Owner");
+
+        ConsumerType ctype = new ConsumerType(ConsumerTypeEnum.CANDLEPIN);
+        ctype.setId("test-ctype");
+        this.mockConsumerType(ctype);
+
+        Refresher mockRefresher = mock(Refresher.class);
+        doReturn(mockRefresher)
+            .when(this.mockPoolManager)
+            .getRefresher(any(SubscriptionServiceAdapter.class));
+
+        doReturn(true)
+            .when(this.mockPKIUtility)
+            .verifySHA256DigestAgainstCACerts(any(byte [].class), any(byte [].class));
+
+        ConsumerDTO consumerDTO = new ConsumerDTO();
+        consumerDTO.setUuid("eb5e04bf-be27-44cf-abe3-0c0b1edd523e");
+        consumerDTO.setName("mymachine");
+        ConsumerTypeDTO typeDTO = new ConsumerTypeDTO();
+        typeDTO.setLabel("candlepin");
+        typeDTO.setManifest(true);
+        consumerDTO.setType(typeDTO);
+        consumerDTO.setUrlWeb("foo.example.com/subscription");
+        consumerDTO.setUrlApi("/candlepin");
+        consumerDTO.setContentAccessMode("");
+
+        Product prod = new Product("prodId", "prodTest", null);
+        prod.setDependentProductIds(null);
+
+        Entitlement ent = new Entitlement();
+        Pool pool = new Pool();
+        pool.setProduct(prod);
+        ent.setPool(pool);
+        ent.setQuantity(2);
+
+        // Write the consumer export with the entitlements ahead of everything they depend upon
+        File ceArchive = new File(this.tmpFolder, "consumer_export.zip");
+        try (ZipOutputStream cezip = new ZipOutputStream(new FileOutputStream(ceArchive))) {
+            cezip.putNextEntry(new ZipEntry("export/entitlements/entitlement.json"));
+            cezip.write(this.mapper.writeValueAsBytes(ent));
+            cezip.putNextEntry(new ZipEntry("export/products/prodId.json"));
+            cezip.write(this.mapper.writeValueAsBytes(prod));
+            cezip.putNextEntry(new ZipEntry("export/consumer.json"));
+            cezip.write(this.mapper.writeValueAsBytes(consumerDTO));
+            cezip.putNextEntry(new ZipEntry("export/consumer_types/candlepin.json"));
+            cezip.write(this.mapper.writeValueAsBytes(typeDTO));
+            cezip.putNextEntry(new ZipEntry("export/rules2/rules.js"));
+            cezip.write("// nothing to see here".getBytes());
+            cezip.putNextEntry(new ZipEntry("export/meta.json"));
+            cezip.write(this.mapper.writeValueAsBytes(new Meta("0.0.3", new Date(), "test_user", "prefix",
+                null)));
+        }
+
+        File archive = new File(this.tmpFolder, "file.zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(archive))) {
+            addFileToArchive(out, ceArchive);
+            out.putNextEntry(new ZipEntry("signature"));
+            out.write("This is the placeholder for the signature file".getBytes());
+        }
+
+        Importer importer = this.buildImporter();
+        ImportRecord record = importer.loadExport(owner, archive, new ConflictOverrides(),
+            "original_file.zip");
+
+        assertEquals(ImportRecord.Status.SUCCESS, record.getStatus());
+        assertEquals("test_user", record.getGeneratedBy());
+        assertEquals("original_file.zip", record.getFileName());
+
+        verify(this.mockRulesImporter).importObject(any(Reader.class));
+        verify(mockRefresher).run();
+        verify(this.mockImportRecordCurator).create(eq(record));
+    }
+
     @Test
     public void testImportProductNoEntitlementDir() throws IOException, ImporterException {
         Owner owner = mock(Owner.class);
         ConflictOverrides co = mock(ConflictOverrides.class);
-        Map<String, File> importFiles = this.getTestImportFiles();
-
-        importFiles.put(ImportFile.ENTITLEMENTS.fileName(), null);
+        ManifestContents contents = this.buildTestManifestContents(new Meta(), new ConsumerDTO(), false);
+        contents.addProductsDirectory();
 
         Importer importer = this.buildImporter();
         Throwable throwable = assertThrows(ImporterException.class,
-            () -> importer.importObjects(owner, importFiles, co));
+            () -> importer.importManifest(owner, contents, co));
 
         String errmsg = i18n.tr("The archive does not contain the required entitlements directory");
         assertThat(throwable.getMessage(), StringContains.containsString(errmsg));
@@ -847,40 +878,19 @@ public class ImporterTest {
         OwnerCurator oc = mock(OwnerCurator.class);
         Owner owner = mock(Owner.class);
         ConflictOverrides co = mock(ConflictOverrides.class);
-        Map<String, File> importFiles = createAndSetImportFiles();
+        ManifestContents contents = this.buildTestManifestContents(
+            new Meta("0.0.3", new Date(), "test_user", "prefix", null), new ConsumerDTO(), false);
 
         Importer importer = this.buildImporter();
         Throwable throwable = assertThrows(RuntimeException.class,
-            () -> importer.importObjects(owner, importFiles, co));
+            () -> importer.importManifest(owner, contents, co));
+
+        verify(this.mockDistributorVersionCurator, never()).create(any(DistributorVersion.class));
 
         String errmsg = "Done with the test";
         assertThat(throwable.getMessage(), StringContains.containsString(errmsg));
     }
 
-    private Map<String, File> createAndSetImportFiles()
-        throws IOException, JsonGenerationException, JsonMappingException {
-
-        File[] rulesFiles = createMockJsFile(mockJsPath);
-        File ruleDir = mock(File.class);
-        when(ruleDir.listFiles()).thenReturn(rulesFiles);
-
-        File actualmeta = createFile("meta.json", "0.0.3", new Date(), "test_user", "prefix");
-
-        Map<String, File> importFiles = this.getTestImportFiles();
-        importFiles.put(ImportFile.META.fileName(), actualmeta);
-        importFiles.put(ImportFile.RULES_FILE.fileName(), rulesFiles[0]);
-        importFiles.put(ImportFile.PRODUCTS.fileName(), null);
-        importFiles.put(ImportFile.ENTITLEMENTS.fileName(), null);
-        importFiles.put(ImportFile.DISTRIBUTOR_VERSIONS.fileName(), null);
-
-        File cTypes = mock(File.class);
-        when(cTypes.listFiles()).thenReturn(new File[]{});
-
-        importFiles.put(ImportFile.CONSUMER_TYPE.fileName(), cTypes);
-
-        return importFiles;
-    }
-
     @Test
     public void testRecordImportSuccess() {
         String expectedOwnerKey = "TEST_OWNER";
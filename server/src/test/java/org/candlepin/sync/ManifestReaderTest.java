@@ -0,0 +1,250 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.sync;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import org.candlepin.common.config.MapConfiguration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.dto.manifest.v1.ProductDTO;
+import org.candlepin.model.CdnCurator;
+import org.candlepin.model.ConsumerTypeCurator;
+import org.candlepin.model.DistributorVersionCurator;
+import org.candlepin.pki.PKIUtility;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.xnap.commons.i18n.I18n;
+import org.xnap.commons.i18n.I18nFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+
+
+/**
+ * Test suite for the ManifestReader class
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class ManifestReaderTest {
+
+    private static final byte[] SIGNATURE = "signature".getBytes(StandardCharsets.UTF_8);
+
+    @Mock private PKIUtility mockPKIUtility;
+    @Mock private ConsumerTypeCurator mockConsumerTypeCurator;
+    @Mock private DistributorVersionCurator mockDistributorVersionCurator;
+    @Mock private CdnCurator mockCdnCurator;
+
+    @TempDir protected File workDir;
+
+    private ObjectMapper mapper;
+    private I18n i18n;
+
+    @BeforeEach
+    public void init() {
+        MapConfiguration config = new MapConfiguration(
+            Collections.singletonMap(ConfigProperties.FAIL_ON_UNKNOWN_IMPORT_PROPERTIES, "false"));
+
+        this.mapper = TestSyncUtils.getTestSyncUtils(config);
+        this.i18n = I18nFactory.getI18n(this.getClass(), Locale.US, I18nFactory.FALLBACK);
+    }
+
+    private ManifestReader buildReader() {
+        return new ManifestReader(this.mapper, this.mockPKIUtility, this.i18n, this.mockConsumerTypeCurator,
+            this.mockDistributorVersionCurator, this.mockCdnCurator, this.workDir);
+    }
+
+    private byte[] zip(Map<String, byte[]> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                out.putNextEntry(new ZipEntry(entry.getKey()));
+                out.write(entry.getValue());
+                out.closeEntry();
+            }
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private byte[] buildConsumerExport() throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+
+        // Entitlements ahead of the products and consumer they depend upon
+        String entitlement = "{\"id\":\"ent-1\",\"quantity\":2,\"pool\":{\"id\":\"pool-1\"}}";
+        entries.put("export/entitlements/ent-1.json", entitlement.getBytes(StandardCharsets.UTF_8));
+        entries.put("export/products/prod-1.pem", "pem".getBytes(StandardCharsets.UTF_8));
+        entries.put("export/products/prod-1.json",
+            "{\"id\":\"prod-1\",\"name\":\"Product 1\",\"multiplier\":4}".getBytes(StandardCharsets.UTF_8));
+        entries.put("export/consumer_types/system.json",
+            "{\"label\":\"system\",\"manifest\":false}".getBytes(StandardCharsets.UTF_8));
+        entries.put("export/consumer.json",
+            "{\"uuid\":\"consumer-uuid\",\"name\":\"consumer\"}".getBytes(StandardCharsets.UTF_8));
+        entries.put("export/upstream_consumer/cert-1.json",
+            "{\"id\":\"cert-1\",\"key\":\"key\",\"cert\":\"cert\"}".getBytes(StandardCharsets.UTF_8));
+        entries.put("export/rules2/rules.js", "// rules".getBytes(StandardCharsets.UTF_8));
+        entries.put("export/meta.json",
+            this.mapper.writeValueAsBytes(new Meta("1.0.0", new Date(), "admin", "prefix", null)));
+
+        return this.zip(entries);
+    }
+
+    private byte[] buildArchive(byte[] consumerExport) throws IOException {
+        // The signature follows the consumer export, as written by the exporter
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put(ManifestReader.CONSUMER_EXPORT, consumerExport);
+        entries.put(ManifestReader.SIGNATURE, SIGNATURE);
+
+        return this.zip(entries);
+    }
+
+    @Test
+    public void testReadsManifestContents() throws Exception {
+        byte[] consumerExport = this.buildConsumerExport();
+        doReturn(true).when(this.mockPKIUtility).verifySHA256DigestAgainstCACerts(any(), any());
+
+        ManifestContents contents = this.buildReader().read("manifest.zip",
+            new ByteArrayInputStream(this.buildArchive(consumerExport)), new ConflictOverrides());
+
+        assertNotNull(contents.getMeta());
+        assertEquals("admin", contents.getMeta().getPrincipalName());
+        assertEquals("// rules", contents.getRules());
+        assertEquals("consumer-uuid", contents.getConsumer().getUuid());
+        assertEquals("cert-1", contents.getUpstreamIdentityCertificate().getId());
+        assertEquals(1, contents.getConsumerTypes().size());
+        assertEquals("system", contents.getConsumerTypes().iterator().next().getLabel());
+        assertNull(contents.getDistributorVersions());
+        assertNull(contents.getCdns());
+
+        assertEquals(1, contents.getProducts().size());
+        ProductDTO product = contents.getProducts().iterator().next();
+        assertEquals("prod-1", product.getId());
+        assertEquals(1L, product.getMultiplier().longValue());
+
+        assertEquals(1, contents.getEntitlements().size());
+        assertEquals("ent-1", contents.getEntitlements().get(0).getId());
+    }
+
+    @Test
+    public void testVerifiesSignatureAgainstDigestOfConsumerExport() throws Exception {
+        byte[] consumerExport = this.buildConsumerExport();
+        ArgumentCaptor<byte[]> captor = ArgumentCaptor.forClass(byte[].class);
+        doReturn(true).when(this.mockPKIUtility)
+            .verifySHA256DigestAgainstCACerts(captor.capture(), eq(SIGNATURE));
+
+        this.buildReader().read("manifest.zip", new ByteArrayInputStream(this.buildArchive(consumerExport)),
+            new ConflictOverrides());
+
+        byte[] expected = MessageDigest.getInstance("SHA-256").digest(consumerExport);
+        assertArrayEquals(expected, captor.getValue());
+    }
+
+    @Test
+    public void testFailedSignatureCheckIsReportedBeforeContentErrors() throws Exception {
+        byte[] archive = this.buildArchive("This is just a flat file".getBytes(StandardCharsets.UTF_8));
+        doReturn(false).when(this.mockPKIUtility).verifySHA256DigestAgainstCACerts(any(), any());
+
+        ManifestReader reader = this.buildReader();
+        ImportConflictException exception = assertThrows(ImportConflictException.class,
+            () -> reader.read("manifest.zip", new ByteArrayInputStream(archive), new ConflictOverrides()));
+
+        assertTrue(exception.message().getConflicts().contains(Importer.Conflict.SIGNATURE_CONFLICT));
+    }
+
+    @Test
+    public void testConsumerExportIsSpooledUntilSignatureIsVerified() throws Exception {
+        byte[] archive = this.buildArchive(this.buildConsumerExport());
+
+        doAnswer(iom -> {
+            // Only the unparsed consumer export has been written out at this point
+            assertEquals(1, this.workDir.list().length);
+            return false;
+        }).when(this.mockPKIUtility).verifySHA256DigestAgainstCACerts(any(), any());
+
+        ManifestReader reader = this.buildReader();
+        assertThrows(ImportConflictException.class,
+            () -> reader.read("manifest.zip", new ByteArrayInputStream(archive), new ConflictOverrides()));
+
+        assertEquals(0, this.workDir.list().length);
+    }
+
+    @Test
+    public void testSpoolFileIsRemovedAfterRead() throws Exception {
+        byte[] archive = this.buildArchive(this.buildConsumerExport());
+        doReturn(true).when(this.mockPKIUtility).verifySHA256DigestAgainstCACerts(any(), any());
+
+        this.buildReader().read("manifest.zip", new ByteArrayInputStream(archive), new ConflictOverrides());
+
+        assertEquals(0, this.workDir.list().length);
+    }
+
+    @Test
+    public void testForcedSignatureConflictIsIgnored() throws Exception {
+        byte[] archive = this.buildArchive(this.buildConsumerExport());
+        doReturn(false).when(this.mockPKIUtility).verifySHA256DigestAgainstCACerts(any(), any());
+
+        ConflictOverrides overrides = new ConflictOverrides(Importer.Conflict.SIGNATURE_CONFLICT);
+        ManifestContents contents = this.buildReader().read("manifest.zip", new ByteArrayInputStream(archive),
+            overrides);
+
+        assertEquals("consumer-uuid", contents.getConsumer().getUuid());
+    }
+
+    @Test
+    public void testMissingConsumerExport() throws Exception {
+        byte[] archive = this.zip(Collections.singletonMap(ManifestReader.SIGNATURE, SIGNATURE));
+
+        ManifestReader reader = this.buildReader();
+        ImportExtractionException exception = assertThrows(ImportExtractionException.class,
+            () -> reader.read("manifest.zip", new ByteArrayInputStream(archive), new ConflictOverrides()));
+
+        assertEquals("The archive does not contain the required consumer_export.zip file",
+            exception.getMessage());
+        verify(this.mockPKIUtility, never()).verifySHA256DigestAgainstCACerts(any(), any());
+    }
+}
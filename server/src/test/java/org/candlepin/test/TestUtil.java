@@ -795,6 +795,7 @@ public class TestUtil {
             @Override
             public void begin() {
                 this.active = true;
+                this.rollbackOnly = false;
             }
 
             @Override
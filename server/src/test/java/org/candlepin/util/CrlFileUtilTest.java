@@ -21,6 +21,8 @@ import static org.mockito.Mockito.*;
 
 import org.candlepin.TestingModules;
 import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.CandlepinQuery;
 import org.candlepin.model.CertificateSerialCurator;
 import org.candlepin.pki.CertificateReader;
 import org.candlepin.pki.PKIUtility;
@@ -47,11 +49,15 @@ import java.io.FileInputStream;
 import java.io.FileReader;
 import java.math.BigInteger;
 import java.net.URL;
+import java.nio.file.Files;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509CRL;
 import java.security.cert.X509CRLEntry;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import javax.inject.Inject;
@@ -222,6 +228,126 @@ public class CrlFileUtilTest {
         assertFalse(new ContainsSerials(temp).matchesSafely(unrevoke));
     }
 
+    @Test
+    public void testUpdateCRLWritesChangesToDeltaCRL() throws Exception {
+        Set<BigInteger> prime = new HashSet<>(Arrays.asList(
+            new BigInteger("3180318252"),
+            new BigInteger("7263191826"),
+            new BigInteger("1290218725")
+        ));
+
+        Set<BigInteger> revoke = new HashSet<>(Arrays.asList(
+            new BigInteger("6128310572"),
+            new BigInteger("2037162813")
+        ));
+
+        File delta = this.enableDeltaCRL(10, prime);
+
+        try {
+            this.cfu.initializeCRLFile(temp, prime);
+            this.cfu.updateCRL(temp, null, null);
+            this.cfu.updateCRL(temp, revoke, null);
+
+            assertThat(prime, new ContainsSerials(temp));
+            assertFalse(new ContainsSerials(temp).matchesSafely(revoke));
+            assertThat(revoke, new ContainsSerials(delta));
+        }
+        finally {
+            delta.delete();
+        }
+    }
+
+    @Test
+    public void testUpdateCRLRebuildsCRLFileWhenDeltaCRLIsFull() throws Exception {
+        Set<BigInteger> prime = new HashSet<>(Arrays.asList(
+            new BigInteger("8261037265"),
+            new BigInteger("1528301826")
+        ));
+
+        Set<BigInteger> revoke = new HashSet<>(Arrays.asList(
+            new BigInteger("4102836152"),
+            new BigInteger("5720183627"),
+            new BigInteger("9301827351")
+        ));
+
+        File delta = this.enableDeltaCRL(2, prime);
+
+        try {
+            this.cfu.initializeCRLFile(temp, prime);
+            this.cfu.updateCRL(temp, null, null);
+            this.cfu.updateCRL(temp, revoke, null);
+
+            revoke.addAll(prime);
+            assertThat(revoke, new ContainsSerials(temp));
+        }
+        finally {
+            delta.delete();
+        }
+    }
+
+    @Test
+    public void testUpdateCRLRebuildsCRLFileFromDatabaseWithoutUsableDeltaCRL() throws Exception {
+        Set<BigInteger> prime = new HashSet<>(Arrays.asList(
+            new BigInteger("6301827364"),
+            new BigInteger("2817364519")
+        ));
+
+        // Collected serials which were only listed on the lost delta CRL
+        Set<BigInteger> collected = new HashSet<>(Arrays.asList(
+            new BigInteger("7482910365"),
+            new BigInteger("1930482716")
+        ));
+
+        Set<BigInteger> revoke = new HashSet<>(Arrays.asList(
+            new BigInteger("5192837465")
+        ));
+
+        // The expired serial has since been deleted from the database
+        BigInteger expired = new BigInteger("8392017465");
+        prime.add(expired);
+
+        Set<BigInteger> revoked = new HashSet<>(prime);
+        revoked.remove(expired);
+        revoked.addAll(collected);
+
+        File delta = this.enableDeltaCRL(10, revoked);
+
+        try {
+            this.cfu.initializeCRLFile(temp, prime);
+            Files.write(delta.toPath(), "not a delta CRL".getBytes());
+
+            this.cfu.updateCRL(temp, revoke, null);
+
+            revoked.addAll(revoke);
+            assertThat(revoked, new ContainsSerials(temp));
+            assertFalse(new ContainsSerials(temp).matchesSafely(Collections.singleton(expired)));
+        }
+        finally {
+            delta.delete();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private File enableDeltaCRL(int maxEntries, Set<BigInteger> revoked) throws Exception {
+        File delta = File.createTempFile("cp_test_delta_crl-", ".pem");
+
+        List<Long> serials = new ArrayList<>();
+        for (BigInteger serial : revoked) {
+            serials.add(serial.longValue());
+        }
+
+        CandlepinQuery<Long> query = mock(CandlepinQuery.class);
+        when(query.list()).thenReturn(serials);
+        when(this.certSerialCurator.getRevokedCertSerials()).thenReturn(query);
+
+        when(this.config.getBoolean(ConfigProperties.CRL_DELTA_ENABLED)).thenReturn(true);
+        when(this.config.getString(ConfigProperties.CRL_DELTA_FILE_PATH)).thenReturn(delta.getAbsolutePath());
+        when(this.config.getInt(ConfigProperties.CRL_DELTA_MAX_ENTRIES)).thenReturn(maxEntries);
+        when(this.config.getLong(ConfigProperties.CRL_DELTA_REBUILD_INTERVAL)).thenReturn(12L);
+
+        return delta;
+    }
+
     public class ContainsSerials extends TypeSafeMatcher<Set<BigInteger>> {
         private Set<BigInteger> serials;
 
@@ -0,0 +1,279 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import org.candlepin.model.dto.Content;
+import org.candlepin.util.X509V3ExtensionUtil.HuffNode;
+import org.candlepin.util.X509V3ExtensionUtil.NodePair;
+import org.candlepin.util.X509V3ExtensionUtil.PathNode;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+
+/**
+ * Compares the bit-string Huffman encoding and decoding previously used for the V3 entitlement
+ * content payload against the table-driven, bit-level HuffmanCodec, along with the time to
+ * generate and hydrate a complete content payload.
+ * <p></p>
+ * Run with <tt>./gradlew :candlepin:jmh -PjmhArgs="HuffmanCodecBenchmark -prof gc"</tt> to
+ * include allocation rates in the results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class HuffmanCodecBenchmark {
+
+    private static final String[] SEGMENTS = { "content", "dist", "rhel", "server", "7", "$releasever",
+        "$basearch", "os", "debug", "source", "SRPMS", "optional", "extras", "beta", "htb" };
+
+    @Param({ "100", "1000", "5000" })
+    public int contentCount;
+
+    private X509V3ExtensionUtil util;
+    private List<org.candlepin.model.dto.Product> productModels;
+
+    private HuffNode stringTrie;
+    private HuffNode nodeTrie;
+    private Object endNode;
+    private List<PathNode> pathNodes;
+
+    private byte[] encoded;
+    private byte[] payload;
+
+    @Setup
+    public void setup() throws IOException {
+        this.util = new X509V3ExtensionUtil(null, null, null, null);
+
+        Random random = new Random(this.contentCount);
+        List<Content> contents = new ArrayList<>();
+        for (int i = 0; i < this.contentCount; i++) {
+            StringBuilder path = new StringBuilder();
+            int depth = 3 + random.nextInt(5);
+
+            for (int d = 0; d < depth; d++) {
+                path.append('/').append(SEGMENTS[random.nextInt(SEGMENTS.length)]);
+                if (random.nextInt(3) == 0) {
+                    path.append(random.nextInt(this.contentCount));
+                }
+            }
+
+            Content content = new Content();
+            content.setPath(path.toString());
+            contents.add(content);
+        }
+
+        org.candlepin.model.dto.Product product = new org.candlepin.model.dto.Product();
+        product.setContent(contents);
+        this.productModels = Collections.singletonList(product);
+
+        // Build the tries the same way the payload generation does
+        PathNode root = this.util.makePathTree(contents, this.util.new PathNode());
+        List<String> strings = this.util.orderStrings(root);
+
+        List<HuffNode> stringNodes = new ArrayList<>();
+        int weight = 1;
+        for (String string : strings) {
+            stringNodes.add(this.util.new HuffNode(string, weight++));
+        }
+
+        // The end marker is the last, heaviest symbol in the string trie
+        HuffNode endMarker = this.util.new HuffNode(new Object(), weight);
+        stringNodes.add(endMarker);
+        this.endNode = endMarker.getValue();
+        this.stringTrie = this.util.makeTrie(stringNodes);
+
+        this.pathNodes = new ArrayList<>();
+        Map<PathNode, Boolean> seen = new IdentityHashMap<>();
+        LinkedList<PathNode> queue = new LinkedList<>();
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            PathNode node = queue.removeFirst();
+            if (seen.put(node, Boolean.TRUE) == null) {
+                this.pathNodes.add(node);
+                for (NodePair pair : node.getChildren()) {
+                    queue.add(pair.getConnection());
+                }
+            }
+        }
+
+        List<HuffNode> pathHuffNodes = new ArrayList<>();
+        weight = 0;
+        for (PathNode node : this.pathNodes) {
+            pathHuffNodes.add(this.util.new HuffNode(node, weight++));
+        }
+
+        this.nodeTrie = this.util.makeTrie(pathHuffNodes);
+
+        this.encoded = this.encodeCodec();
+        this.payload = this.util.getByteExtensions(null, this.productModels, null, null)
+            .iterator().next().getValue();
+    }
+
+    @Benchmark
+    public byte[] encodeBitString() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        StringBuilder bits = new StringBuilder();
+        String endNodeLocation = this.util.findHuffPath(this.stringTrie, this.endNode);
+
+        for (PathNode node : this.pathNodes) {
+            for (NodePair pair : node.getChildren()) {
+                bits.append(this.util.findHuffPath(this.stringTrie, pair.getName()));
+                bits.append(this.util.findHuffPath(this.nodeTrie, pair.getConnection()));
+            }
+
+            bits.append(endNodeLocation);
+            while (bits.length() >= 8) {
+                int next = 0;
+                for (int i = 0; i < 8; i++) {
+                    next = (byte) next << 1;
+                    if (bits.charAt(i) == '1') {
+                        next++;
+                    }
+                }
+
+                output.write(next);
+                bits.delete(0, 8);
+            }
+        }
+
+        if (bits.length() > 0) {
+            int next = 0;
+            for (int i = 0; i < 8; i++) {
+                next = (byte) next << 1;
+                if (i < bits.length() && bits.charAt(i) == '1') {
+                    next++;
+                }
+            }
+
+            output.write(next);
+        }
+
+        return output.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] encodeCodec() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        HuffmanCodec stringCodec = new HuffmanCodec(this.stringTrie);
+        HuffmanCodec nodeCodec = new HuffmanCodec(this.nodeTrie);
+        HuffmanCodec.BitWriter writer = new HuffmanCodec.BitWriter(output);
+
+        for (PathNode node : this.pathNodes) {
+            for (NodePair pair : node.getChildren()) {
+                stringCodec.encode(writer, pair.getName());
+                nodeCodec.encode(writer, pair.getConnection());
+            }
+
+            stringCodec.encode(writer, this.endNode);
+        }
+
+        writer.flush();
+        return output.toByteArray();
+    }
+
+    @Benchmark
+    public int decodeBitString() {
+        StringBuilder bits = new StringBuilder();
+        for (byte value : this.encoded) {
+            String someBits = Integer.toString(value & 0xFF, 2);
+            for (int pad = 0; pad < 8 - someBits.length(); pad++) {
+                bits.append('0');
+            }
+            bits.append(someBits);
+        }
+
+        int decoded = 0;
+        int offset = 0;
+        for (int i = 0; i < this.pathNodes.size() && offset < bits.length(); i++) {
+            boolean nameTurn = true;
+            while (offset < bits.length()) {
+                HuffNode trie = nameTurn ? this.stringTrie : this.nodeTrie;
+                Object value = null;
+                int end = offset;
+
+                while (value == null && end < bits.length()) {
+                    value = this.util.findHuffNodeValueByBits(trie, bits.substring(offset, ++end));
+                }
+
+                offset = end;
+                decoded++;
+
+                if (nameTurn && value == this.endNode) {
+                    break;
+                }
+
+                nameTurn = !nameTurn;
+            }
+        }
+
+        return decoded;
+    }
+
+    @Benchmark
+    public int decodeCodec() {
+        HuffmanCodec stringCodec = new HuffmanCodec(this.stringTrie);
+        HuffmanCodec nodeCodec = new HuffmanCodec(this.nodeTrie);
+        HuffmanCodec.BitReader reader = new HuffmanCodec.BitReader(this.encoded, 0, this.encoded.length);
+
+        int decoded = 0;
+        for (int i = 0; i < this.pathNodes.size(); i++) {
+            Object value;
+            while ((value = stringCodec.decode(reader)) != null && value != this.endNode) {
+                nodeCodec.decode(reader);
+                decoded += 2;
+            }
+
+            decoded++;
+        }
+
+        return decoded;
+    }
+
+    @Benchmark
+    public byte[] generatePayload() throws IOException {
+        return this.util.getByteExtensions(null, this.productModels, null, null).iterator().next()
+            .getValue();
+    }
+
+    @Benchmark
+    public List<String> hydratePayload() throws IOException {
+        return this.util.hydrateContentPackage(this.payload);
+    }
+}
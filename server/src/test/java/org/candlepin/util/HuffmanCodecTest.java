@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2009 - 2020 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.candlepin.util.X509V3ExtensionUtil.HuffNode;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+
+
+/**
+ * HuffmanCodecTest
+ */
+public class HuffmanCodecTest {
+
+    private X509V3ExtensionUtil util;
+    private List<Object> symbols;
+    private HuffNode trie;
+
+    @BeforeEach
+    public void init() {
+        this.util = new X509V3ExtensionUtil(null, null, null, null);
+        this.symbols = new ArrayList<>();
+
+        List<HuffNode> nodes = new ArrayList<>();
+        for (int i = 1; i <= 50; i++) {
+            String symbol = "segment-" + i;
+            nodes.add(this.util.new HuffNode(symbol, i));
+            this.symbols.add(symbol);
+        }
+
+        this.trie = this.util.makeTrie(nodes);
+    }
+
+    private String toBitString(long code, int length) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = length - 1; i >= 0; i--) {
+            builder.append((code >>> i) & 1);
+        }
+
+        return builder.toString();
+    }
+
+    private byte[] pack(String bits) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        for (int offset = 0; offset < bits.length(); offset += 8) {
+            int value = 0;
+            for (int i = offset; i < offset + 8; i++) {
+                value = (value << 1) | (i < bits.length() && bits.charAt(i) == '1' ? 1 : 0);
+            }
+
+            output.write(value);
+        }
+
+        return output.toByteArray();
+    }
+
+    @Test
+    public void testCodesMatchTriePaths() {
+        HuffmanCodec codec = new HuffmanCodec(this.trie);
+
+        for (Object symbol : this.symbols) {
+            assertEquals(this.util.findHuffPath(this.trie, symbol),
+                this.toBitString(codec.getCode(symbol), codec.getCodeLength(symbol)));
+        }
+    }
+
+    @Test
+    public void testEncodingMatchesBitStringEncoding() {
+        HuffmanCodec codec = new HuffmanCodec(this.trie);
+        Random random = new Random(8675309);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        HuffmanCodec.BitWriter writer = new HuffmanCodec.BitWriter(output);
+        StringBuilder expected = new StringBuilder();
+
+        for (int i = 0; i < 1000; i++) {
+            Object symbol = this.symbols.get(random.nextInt(this.symbols.size()));
+            codec.encode(writer, symbol);
+            expected.append(this.util.findHuffPath(this.trie, symbol));
+        }
+
+        writer.flush();
+        assertArrayEquals(this.pack(expected.toString()), output.toByteArray());
+    }
+
+    @Test
+    public void testRoundTrip() {
+        HuffmanCodec codec = new HuffmanCodec(this.trie);
+        Random random = new Random(5551212);
+
+        List<Object> encoded = new ArrayList<>();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        HuffmanCodec.BitWriter writer = new HuffmanCodec.BitWriter(output);
+
+        for (int i = 0; i < 1000; i++) {
+            Object symbol = this.symbols.get(random.nextInt(this.symbols.size()));
+            codec.encode(writer, symbol);
+            encoded.add(symbol);
+        }
+
+        writer.flush();
+        byte[] bytes = output.toByteArray();
+        HuffmanCodec.BitReader reader = new HuffmanCodec.BitReader(bytes, 0, bytes.length);
+
+        for (Object symbol : encoded) {
+            assertEquals(symbol, codec.decode(reader));
+        }
+    }
+
+    @Test
+    public void testDecodeReturnsNullWhenOutOfBits() {
+        HuffmanCodec codec = new HuffmanCodec(this.trie);
+        HuffmanCodec.BitReader reader = new HuffmanCodec.BitReader(new byte[0], 0, 0);
+
+        assertNull(codec.decode(reader));
+    }
+
+    @Test
+    public void testEncodeUnknownSymbol() {
+        HuffmanCodec codec = new HuffmanCodec(this.trie);
+        HuffmanCodec.BitWriter writer = new HuffmanCodec.BitWriter(new ByteArrayOutputStream());
+
+        assertThrows(IllegalArgumentException.class, () -> codec.encode(writer, "unknown"));
+    }
+
+    @Test
+    public void testBitWriterHandlesFullWidthValues() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        HuffmanCodec.BitWriter writer = new HuffmanCodec.BitWriter(output);
+
+        writer.write(0x5L, 3);
+        writer.write(0x8000000000000001L, 64);
+        writer.flush();
+
+        String expected = "101" + this.toBitString(0x8000000000000001L, 64);
+        assertArrayEquals(this.pack(expected), output.toByteArray());
+
+        byte[] bytes = output.toByteArray();
+        HuffmanCodec.BitReader reader = new HuffmanCodec.BitReader(bytes, 0, bytes.length);
+        StringBuilder read = new StringBuilder();
+        for (int bit = reader.read(); bit >= 0; bit = reader.read()) {
+            read.append(bit);
+        }
+
+        assertEquals(72, read.length());
+        assertEquals(expected, read.substring(0, expected.length()));
+    }
+}
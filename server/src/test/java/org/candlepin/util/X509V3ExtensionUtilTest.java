@@ -72,7 +72,7 @@ public class X509V3ExtensionUtilTest {
             new TestingModules.StandardTest()
         );
         injector.injectMembers(this);
-        util = new X509V3ExtensionUtil(config, ec, this.mapper);
+        util = new X509V3ExtensionUtil(config, ec, this.mapper, null);
     }
 
     @Test